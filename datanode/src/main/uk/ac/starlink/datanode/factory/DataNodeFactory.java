@@ -120,6 +120,7 @@ public class DataNodeFactory {
     private List builders;
     private Set shunnedClasses;
     private Set deprecatedClasses;
+    private NodeDescriptorCache descCache;
 
     private static List defaultClassList;
     private static Logger logger = 
@@ -133,6 +134,7 @@ public class DataNodeFactory {
         builders = new ArrayList();
         shunnedClasses = new HashSet();
         deprecatedClasses = new HashSet();
+        descCache = NodeDescriptorCache.getDefaultInstance();
         builders.addAll( getSpecialBuilders() );
         for ( Iterator it = getDefaultClassList().iterator(); it.hasNext(); ) {
             Class clazz = (Class) it.next();
@@ -158,6 +160,7 @@ public class DataNodeFactory {
         }
         shunnedClasses = new HashSet( orig.shunnedClasses );
         deprecatedClasses = new HashSet( orig.deprecatedClasses );
+        descCache = orig.descCache;
         debug = orig.debug;
     }
 
@@ -275,6 +278,28 @@ public class DataNodeFactory {
         return builders;
     }
 
+    /**
+     * Sets the cache used to remember which builder succeeded for
+     * each regular file.  By default the
+     * {@link NodeDescriptorCache#getDefaultInstance default instance}
+     * is used.
+     *
+     * @param  descCache  descriptor cache, or null for no caching
+     */
+    public void setDescriptorCache( NodeDescriptorCache descCache ) {
+        this.descCache = descCache;
+    }
+
+    /**
+     * Returns the cache used to remember which builder succeeded for
+     * each regular file.
+     *
+     * @return  descriptor cache, may be null
+     */
+    public NodeDescriptorCache getDescriptorCache() {
+        return descCache;
+    }
+
     /**
      * Generates a new DataNode from a given object.
      * It goes through this factory's list of builder objects and
@@ -313,7 +338,54 @@ public class DataNodeFactory {
                    .append( objClass.getName() )
                    .append( '\n' );
         }
-        for ( Iterator it = new ArrayList( builders ).iterator(); 
+        List<DataNodeBuilder> builderList = new ArrayList<DataNodeBuilder>();
+        synchronized ( builders ) {
+            for ( Iterator it = builders.iterator(); it.hasNext(); ) {
+                builderList.add( (DataNodeBuilder) it.next() );
+            }
+        }
+
+        /* If we have built a node from this file before, try the builder
+         * that worked last time first.  The result is only accepted if
+         * it is the same kind of node as before, in which case it is
+         * what the full search below would have come up with. */
+        NodeDescriptorCache cache = debug ? null : descCache;
+        File descFile = cache != null && obj instanceof File
+                     && ((File) obj).isFile()
+                      ? (File) obj
+                      : null;
+        int signature = descFile == null ? 0 : getSignature( builderList );
+        if ( descFile != null ) {
+            NodeDescriptorCache.Descriptor desc =
+                cache.getDescriptor( descFile, signature );
+            DataNodeBuilder hintBuilder = null;
+            if ( desc != null ) {
+                for ( Iterator it = builderList.iterator();
+                      it.hasNext() && hintBuilder == null; ) {
+                    DataNodeBuilder builder = (DataNodeBuilder) it.next();
+                    if ( builder.toString()
+                                .equals( desc.getBuilderName() ) ) {
+                        hintBuilder = builder;
+                    }
+                }
+            }
+            if ( hintBuilder != null ) {
+                try {
+                    DataNode node = hintBuilder.buildNode( obj );
+                    if ( node.getClass().getName()
+                                        .equals( desc.getNodeClassName() ) ) {
+                        newNode = node;
+                        successfulBuilder = hintBuilder;
+                        descFile = null;
+                    }
+                }
+                catch ( NoSuchDataException e ) {
+                    // fall back to trying all builders
+                }
+            }
+        }
+
+        for ( Iterator it = builderList.iterator(); 
               it.hasNext() && newNode == null; ) {
             DataNodeBuilder builder = (DataNodeBuilder) it.next();
             if ( builder.suitable( objClass ) ) {
@@ -408,6 +480,11 @@ public class DataNodeFactory {
          * configuration before returning it to the caller. */
         assert newNode != null;
         assert successfulBuilder != null;
+        if ( descFile != null ) {
+            cache.putDescriptor( descFile, signature,
+                                 successfulBuilder.toString(),
+                                 newNode.getClass().getName() );
+        }
         configureDataNode( newNode, parent, obj );
         CreationState creator = newNode.getCreator();
         creator.setFactory( this );
@@ -418,6 +495,27 @@ public class DataNodeFactory {
         return newNode;
     }
 
+    /**
+     * Returns a value which characterises the way that this factory
+     * will turn objects into nodes, given its current builder list.
+     *
+     * @param  builderList  snapshot of the builder list
+     * @return  signature
+     */
+    private int getSignature( List<DataNodeBuilder> builderList ) {
+        int sig = 0;
+        for ( Iterator it = builderList.iterator(); it.hasNext(); ) {
+            sig = 31 * sig + it.next().toString().hashCode();
+        }
+        for ( Iterator it = shunnedClasses.iterator(); it.hasNext(); ) {
+            sig += 17 * ((Class) it.next()).getName().hashCode();
+        }
+        for ( Iterator it = deprecatedClasses.iterator(); it.hasNext(); ) {
+            sig += 13 * ((Class) it.next()).getName().hashCode();
+        }
+        return sig;
+    }
+
     /**
      * Performs some of the desirable configuration on a new DataNode which
      * is about to get inserted into the tree.  This method is called
@@ -0,0 +1,414 @@
+package uk.ac.starlink.datanode.factory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers which builder succeeded in making a DataNode from a given file.
+ *
+ * <p>Working out what kind of node a file should be turned into can
+ * be slow, since a {@link DataNodeFactory} may have to try many builders,
+ * each of which reads the file, before one succeeds.
+ * This is particularly noticeable for large directories containing
+ * files which are not recognised by the specialised builders.
+ * This cache records, for each regular file, a descriptor giving the
+ * builder which succeeded and the class of node it produced,
+ * so that next time the same file is seen that builder can be tried first.
+ *
+ * <p>Entries are keyed by absolute path, and are only used if the
+ * file's modification time and length, and a signature of the
+ * factory's builder configuration, are the same as when the entry
+ * was recorded.
+ *
+ * <p>If a file is supplied at construction time, entries are
+ * appended to it as they are recorded, and read back on first use,
+ * so that the cache persists between sessions.
+ * The default instance uses the file named by the
+ * {@link #CACHEFILE_PROP} system property, if any.
+ *
+ * <p>This class is thread-safe.
+ */
+public class NodeDescriptorCache {
+
+    private final File file_;
+    private final Map<String,Descriptor> map_;
+    private boolean loaded_;
+    private boolean persistent_;
+    private Writer out_;
+
+    /**
+     * Name of system property giving the file in which the default
+     * instance persists its entries.  If not set, the default instance
+     * holds entries in memory only.
+     */
+    public static final String CACHEFILE_PROP = "datanode.nodecache.file";
+
+    /** Default maximum number of entries. */
+    public static final int DFLT_MAXENTRY = 100000;
+
+    private static NodeDescriptorCache dfltInstance_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.datanode.factory" );
+
+    /**
+     * Constructor.
+     *
+     * @param  file  file for persistent storage of entries,
+     *               or null for memory only
+     * @param  maxEntry  maximum number of entries held;
+     *                   the least recently used are discarded
+     */
+    public NodeDescriptorCache( File file, final int maxEntry ) {
+        file_ = file;
+        persistent_ = file != null;
+        map_ = new LinkedHashMap<String,Descriptor>( 16, 0.75f, true ) {
+            @Override
+            protected boolean
+                    removeEldestEntry( Map.Entry<String,Descriptor> entry ) {
+                return size() > maxEntry;
+            }
+        };
+    }
+
+    /**
+     * Returns the default instance of this class.
+     * It is persistent if the {@link #CACHEFILE_PROP} system property
+     * is set.
+     *
+     * @return  default cache
+     */
+    public static synchronized NodeDescriptorCache getDefaultInstance() {
+        if ( dfltInstance_ == null ) {
+            String fname;
+            try {
+                fname = System.getProperty( CACHEFILE_PROP );
+            }
+            catch ( SecurityException e ) {
+                fname = null;
+            }
+            File file = fname != null && fname.trim().length() > 0
+                      ? new File( fname.trim() )
+                      : null;
+            if ( file != null ) {
+                logger_.info( "Node descriptor cache file: " + file );
+            }
+            dfltInstance_ = new NodeDescriptorCache( file, DFLT_MAXENTRY );
+        }
+        return dfltInstance_;
+    }
+
+    /**
+     * Returns the descriptor recorded for a file, if it is still valid.
+     *
+     * @param  file  regular file
+     * @param  signature  signature of the builder configuration
+     *                    for the current lookup
+     * @return  descriptor, or null
+     */
+    public synchronized Descriptor getDescriptor( File file, int signature ) {
+        load();
+        Descriptor desc = map_.get( file.getAbsolutePath() );
+        return desc != null && desc.mtime_ == file.lastModified()
+                            && desc.length_ == file.length()
+                            && desc.signature_ == signature
+             ? desc
+             : null;
+    }
+
+    /**
+     * Records the builder which succeeded for a file.
+     *
+     * @param  file  regular file
+     * @param  signature  signature of the builder configuration
+     * @param  builderName  string representation of the successful builder
+     * @param  nodeClassName  class name of the node it built
+     */
+    public synchronized void putDescriptor( File file, int signature,
+                                            String builderName,
+                                            String nodeClassName ) {
+        load();
+        Descriptor desc =
+            new Descriptor( file.getAbsolutePath(), file.lastModified(),
+                            file.length(), signature, builderName,
+                            nodeClassName );
+        if ( ! desc.isStorable() ) {
+            return;
+        }
+        Descriptor old = map_.put( desc.path_, desc );
+        if ( persistent_ && ! desc.equals( old ) ) {
+            try {
+                if ( out_ == null ) {
+                    out_ = openWriter();
+                }
+                out_.write( desc.toLine() );
+                out_.flush();
+            }
+            catch ( IOException e ) {
+                logger_.log( Level.WARNING,
+                             "Can't write node descriptor cache " + file_
+                           + " - continuing in memory only", e );
+                closeWriter();
+                persistent_ = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held.
+     *
+     * @return  entry count
+     */
+    public synchronized int size() {
+        return map_.size();
+    }
+
+    /**
+     * Reads entries from the persistent store if that has not already
+     * been done.  If the store contains many superseded entries,
+     * it is rewritten in compact form.
+     */
+    private void load() {
+        if ( loaded_ ) {
+            return;
+        }
+        loaded_ = true;
+        if ( file_ == null || ! file_.isFile() ) {
+            return;
+        }
+        int nline = 0;
+        try ( BufferedReader in =
+                  new BufferedReader(
+                      new InputStreamReader( new FileInputStream( file_ ),
+                                             StandardCharsets.UTF_8 ) ) ) {
+            for ( String line; ( line = in.readLine() ) != null; ) {
+                nline++;
+                Descriptor desc = Descriptor.fromLine( line );
+                if ( desc != null ) {
+                    map_.put( desc.path_, desc );
+                }
+            }
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.WARNING,
+                         "Error reading node descriptor cache " + file_, e );
+        }
+        logger_.config( "Read " + map_.size() + " node descriptors from "
+                      + file_ );
+        if ( nline > 2 * map_.size() + 1000 ) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the persistent store so that it contains only the
+     * current entries.
+     */
+    private void compact() {
+        File tmpFile = new File( file_.getPath() + ".tmp" );
+        try {
+            try ( Writer out =
+                      new BufferedWriter(
+                          new OutputStreamWriter(
+                              new FileOutputStream( tmpFile ),
+                              StandardCharsets.UTF_8 ) ) ) {
+                for ( Descriptor desc : map_.values() ) {
+                    out.write( desc.toLine() );
+                }
+            }
+            Files.move( tmpFile.toPath(), file_.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.WARNING,
+                         "Error compacting node descriptor cache " + file_,
+                         e );
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Opens a writer which appends to the persistent store.
+     *
+     * @return  writer
+     */
+    private Writer openWriter() throws IOException {
+        File parent = file_.getAbsoluteFile().getParentFile();
+        if ( parent != null ) {
+            parent.mkdirs();
+        }
+        return new BufferedWriter(
+                   new OutputStreamWriter(
+                       new FileOutputStream( file_, true ),
+                       StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Closes the output writer if it is open.
+     */
+    private void closeWriter() {
+        if ( out_ != null ) {
+            try {
+                out_.close();
+            }
+            catch ( IOException e ) {
+                // never mind
+            }
+            out_ = null;
+        }
+    }
+
+    /**
+     * Records what kind of node was built from a file.
+     */
+    public static class Descriptor {
+        private final String path_;
+        private final long mtime_;
+        private final long length_;
+        private final int signature_;
+        private final String builderName_;
+        private final String nodeClassName_;
+
+        /**
+         * Constructor.
+         *
+         * @param  path  absolute path of file
+         * @param  mtime  modification time of file
+         * @param  length  length of file
+         * @param  signature  builder configuration signature
+         * @param  builderName  string representation of successful builder
+         * @param  nodeClassName  class name of built node
+         */
+        private Descriptor( String path, long mtime, long length,
+                            int signature, String builderName,
+                            String nodeClassName ) {
+            path_ = path;
+            mtime_ = mtime;
+            length_ = length;
+            signature_ = signature;
+            builderName_ = builderName;
+            nodeClassName_ = nodeClassName;
+        }
+
+        /**
+         * Returns the string representation of the builder which
+         * succeeded for the file.
+         *
+         * @return  builder name
+         */
+        public String getBuilderName() {
+            return builderName_;
+        }
+
+        /**
+         * Returns the class name of the node that was built from the file.
+         *
+         * @return  node class name
+         */
+        public String getNodeClassName() {
+            return nodeClassName_;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( o instanceof Descriptor ) {
+                Descriptor other = (Descriptor) o;
+                return this.path_.equals( other.path_ )
+                    && this.mtime_ == other.mtime_
+                    && this.length_ == other.length_
+                    && this.signature_ == other.signature_
+                    && this.builderName_.equals( other.builderName_ )
+                    && this.nodeClassName_.equals( other.nodeClassName_ );
+            }
+            else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return path_.hashCode() + 23 * Long.hashCode( mtime_ );
+        }
+
+        /**
+         * Indicates whether this descriptor can be written to a
+         * line of the persistent store.
+         *
+         * @return  true iff no field contains a tab or line end
+         */
+        boolean isStorable() {
+            return isPlain( path_ ) && isPlain( builderName_ )
+                                    && isPlain( nodeClassName_ );
+        }
+
+        /**
+         * Returns a line representing this descriptor in the
+         * persistent store.
+         *
+         * @return  line including terminator
+         */
+        String toLine() {
+            return new StringBuffer()
+                  .append( path_ )
+                  .append( '\t' )
+                  .append( mtime_ )
+                  .append( '\t' )
+                  .append( length_ )
+                  .append( '\t' )
+                  .append( signature_ )
+                  .append( '\t' )
+                  .append( builderName_ )
+                  .append( '\t' )
+                  .append( nodeClassName_ )
+                  .append( '\n' )
+                  .toString();
+        }
+
+        /**
+         * Decodes a line from the persistent store.
+         *
+         * @param  line  line without terminator
+         * @return  descriptor, or null if the line is not well-formed
+         */
+        static Descriptor fromLine( String line ) {
+            String[] fields = line.split( "\t", -1 );
+            if ( fields.length != 6 ) {
+                return null;
+            }
+            try {
+                return new Descriptor( fields[ 0 ],
+                                       Long.parseLong( fields[ 1 ] ),
+                                       Long.parseLong( fields[ 2 ] ),
+                                       Integer.parseInt( fields[ 3 ] ),
+                                       fields[ 4 ], fields[ 5 ] );
+            }
+            catch ( NumberFormatException e ) {
+                return null;
+            }
+        }
+
+        /**
+         * Indicates whether a string contains no tabs or line ends.
+         *
+         * @param  txt  string
+         * @return  true iff txt is safe for the line format
+         */
+        private static boolean isPlain( String txt ) {
+            return txt.indexOf( '\t' ) < 0 && txt.indexOf( '\n' ) < 0
+                                           && txt.indexOf( '\r' ) < 0;
+        }
+    }
+}
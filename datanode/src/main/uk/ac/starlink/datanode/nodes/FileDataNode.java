@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.Set;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
+import uk.ac.starlink.datanode.factory.DataNodeFactory;
 import uk.ac.starlink.datanode.viewers.TextViewer;
 import uk.ac.starlink.hds.HDSException;
 import uk.ac.starlink.hds.HDSObject;
@@ -41,7 +42,8 @@ public class FileDataNode extends DefaultDataNode {
     private File parentFile;
     private DataSource datsrc;
     private static boolean showHidden = false;
-    private static Map knowndirs = new HashMap();
+    private static Map<String,Set<String>> knowndirs =
+        new HashMap<String,Set<String>>();
 
     /**
      * Initialises a <code>FileDataNode</code> from a <code>File</code> object.
@@ -104,20 +106,18 @@ public class FileDataNode extends DefaultDataNode {
             }
         }
         Collections.sort( files );
-        final Iterator it = files.iterator();
-        return new Iterator() {
-            public boolean hasNext() {
-                return it.hasNext();
-            }
-            public Object next() {
-                File file = (File) it.next();
-                DataNode child = makeChild( file );
+
+        /* Children are built in parallel, since examining each file
+         * to see what kind of node it is can be slow. */
+        final DataNodeFactory childMaker = getChildMaker();
+        final DataNode parent = this;
+        return new ParallelChildIterator( files ) {
+            protected DataNode createChild( Object item ) {
+                File file = (File) item;
+                DataNode child = childMaker.makeChildNode( parent, file );
                 child.setLabel( file.getName() );
                 return child;
             }
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
         };
     }
 
@@ -185,11 +185,13 @@ public class FileDataNode extends DefaultDataNode {
         }
         else {
             here = false;
-            Set knownfiles = null;
+            Set<String> knownfiles = null;
             File parent = file.getAbsoluteFile().getParentFile();
             String dirkey = parent.toString();
-            if ( knowndirs.containsKey( dirkey ) ) {
-                knownfiles = (Set) knowndirs.get( dirkey );
+            synchronized ( knowndirs ) {
+                knownfiles = knowndirs.get( dirkey );
+            }
+            if ( knownfiles != null ) {
                 here = knownfiles.contains( file.getName().intern() );
             }
             if ( ! here ) {
@@ -197,11 +199,13 @@ public class FileDataNode extends DefaultDataNode {
                 if ( flist == null ) {
                     return false;
                 }
-                knownfiles = new HashSet( flist.length );
+                knownfiles = new HashSet<String>( flist.length );
                 for ( int i = 0; i < flist.length; i++ ) {
                     knownfiles.add( flist[ i ] );
                 }
-                knowndirs.put( dirkey, knownfiles );
+                synchronized ( knowndirs ) {
+                    knowndirs.put( dirkey, knownfiles );
+                }
             }
             here = knownfiles.contains( file.getName().intern() );
         }
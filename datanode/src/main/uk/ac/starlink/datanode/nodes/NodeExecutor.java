@@ -0,0 +1,171 @@
+package uk.ac.starlink.datanode.nodes;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread pool shared by all node expansion work.
+ *
+ * <p>Tasks are queued with one of two priorities.
+ * Visible tasks, such as expanding a node which is currently displayed
+ * in a tree, are started before any background tasks, such as
+ * building children of a node ahead of the point where they are
+ * required.  Within each priority tasks are started in submission order.
+ *
+ * <p>Tasks are returned as <code>RunnableFuture</code>s.
+ * A caller that needs the result of a task which may still be queued
+ * can invoke its <code>run</code> method directly to execute it in the
+ * calling thread; if the task has already been started by the pool
+ * this does nothing, and <code>get</code> will wait for it as usual.
+ * Doing that means that tasks which wait for other tasks
+ * on the same pool cannot deadlock it.
+ *
+ * <p>The pool threads are daemon threads, and are discarded
+ * when they have been idle for a while.
+ */
+public class NodeExecutor {
+
+    private final ThreadPoolExecutor pool_;
+    private final AtomicLong seq_;
+
+    /**
+     * Default number of threads for the shared instance:
+     * the number of available processors, at least 4 and at most 16.
+     * Node construction is usually dominated by I/O rather than CPU,
+     * so a modest number of threads is worthwhile even on small machines.
+     */
+    public static final int DFLT_NTHREAD =
+        Math.max( 4, Math.min( 16,
+                               Runtime.getRuntime().availableProcessors() ) );
+
+    private static NodeExecutor instance_;
+
+    /**
+     * Constructor.
+     *
+     * @param  nthread  maximum number of tasks to run concurrently
+     */
+    public NodeExecutor( int nthread ) {
+        final AtomicInteger ithread = new AtomicInteger();
+        ThreadFactory thfact = new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+                Thread th = new Thread( r, "Node expander-"
+                                         + ithread.incrementAndGet() );
+                th.setDaemon( true );
+                return th;
+            }
+        };
+        pool_ = new ThreadPoolExecutor( nthread, nthread,
+                                        30, TimeUnit.SECONDS,
+                                        new PriorityBlockingQueue<Runnable>(),
+                                        thfact );
+        pool_.allowCoreThreadTimeOut( true );
+        seq_ = new AtomicLong();
+    }
+
+    /**
+     * Returns the shared instance of this class.
+     *
+     * @return  shared executor
+     */
+    public static synchronized NodeExecutor getInstance() {
+        if ( instance_ == null ) {
+            instance_ = new NodeExecutor( DFLT_NTHREAD );
+        }
+        return instance_;
+    }
+
+    /**
+     * Queues a task for execution.
+     *
+     * @param  callable  task
+     * @param  isVisible  true if the result of the task is of immediate
+     *                    interest to the user, false for background work
+     * @return  future for the task's result;
+     *          invoking its <code>run</code> method executes it
+     *          in the calling thread if it has not yet started
+     */
+    public <T> RunnableFuture<T> submit( Callable<T> callable,
+                                         boolean isVisible ) {
+        NodeTask<T> task =
+            new NodeTask<T>( callable, isVisible, seq_.getAndIncrement() );
+        pool_.execute( task );
+        return task;
+    }
+
+    /**
+     * Queues a task for execution.
+     *
+     * @param  runnable  task
+     * @param  isVisible  true if the result of the task is of immediate
+     *                    interest to the user, false for background work
+     * @return  future for the task's completion
+     */
+    public RunnableFuture<?> submit( Runnable runnable, boolean isVisible ) {
+        NodeTask<Object> task =
+            new NodeTask<Object>( runnable, isVisible,
+                                  seq_.getAndIncrement() );
+        pool_.execute( task );
+        return task;
+    }
+
+    /**
+     * Returns the number of tasks queued but not yet started.
+     *
+     * @return  queue length
+     */
+    public int getQueueLength() {
+        return pool_.getQueue().size();
+    }
+
+    /**
+     * Future task which knows its position in the queue.
+     */
+    private static class NodeTask<T> extends FutureTask<T>
+                                     implements Comparable<NodeTask<?>> {
+        private final int rank_;
+        private final long seq_;
+
+        /**
+         * Constructs a task from a callable.
+         *
+         * @param  callable  callable
+         * @param  isVisible  true for high priority
+         * @param  seq   submission sequence number
+         */
+        NodeTask( Callable<T> callable, boolean isVisible, long seq ) {
+            super( callable );
+            rank_ = isVisible ? 0 : 1;
+            seq_ = seq;
+        }
+
+        /**
+         * Constructs a task from a runnable.
+         *
+         * @param  runnable  runnable
+         * @param  isVisible  true for high priority
+         * @param  seq   submission sequence number
+         */
+        NodeTask( Runnable runnable, boolean isVisible, long seq ) {
+            super( runnable, null );
+            rank_ = isVisible ? 0 : 1;
+            seq_ = seq;
+        }
+
+        public int compareTo( NodeTask<?> other ) {
+            if ( rank_ != other.rank_ ) {
+                return Integer.compare( rank_, other.rank_ );
+            }
+            else {
+                return Long.compare( seq_, other.seq_ );
+            }
+        }
+    }
+}
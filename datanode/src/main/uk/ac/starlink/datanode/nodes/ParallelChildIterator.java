@@ -0,0 +1,137 @@
+package uk.ac.starlink.datanode.nodes;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableFuture;
+
+/**
+ * Child iterator which constructs child nodes in parallel.
+ * It is constructed from a list of objects on which children are based,
+ * and submits the construction of children a bounded number of
+ * positions ahead of the current one to a {@link NodeExecutor} as
+ * background tasks.
+ * Children are still returned in list order, and if the next child
+ * has not been started by the time it is required, it is constructed
+ * in the calling thread.
+ *
+ * <p>If iteration is abandoned before the end of the list, the
+ * {@link #cancel} method should be called so that no further work
+ * is done on behalf of this iterator.
+ * This class is not itself thread-safe, and should be used from a
+ * single thread.
+ *
+ * <p>The {@link #createChild} method will in general be called
+ * from multiple threads concurrently, so it must be thread-safe.
+ */
+public abstract class ParallelChildIterator implements Iterator {
+
+    private final Iterator itemIt_;
+    private final NodeExecutor executor_;
+    private final int nAhead_;
+    private final Queue<RunnableFuture<DataNode>> pending_;
+    private boolean cancelled_;
+
+    /**
+     * Constructs an iterator using the shared executor.
+     *
+     * @param  items  objects from which children are to be constructed
+     */
+    protected ParallelChildIterator( List items ) {
+        this( items, NodeExecutor.getInstance(),
+              2 * NodeExecutor.DFLT_NTHREAD );
+    }
+
+    /**
+     * Constructs an iterator with a given executor.
+     *
+     * @param  items  objects from which children are to be constructed
+     * @param  executor  executor for child construction
+     * @param  nAhead   maximum number of children under construction
+     *                  or constructed ahead of the current position
+     */
+    protected ParallelChildIterator( List items, NodeExecutor executor,
+                                     int nAhead ) {
+        itemIt_ = items.iterator();
+        executor_ = executor;
+        nAhead_ = Math.max( 1, nAhead );
+        pending_ = new ArrayDeque<RunnableFuture<DataNode>>();
+    }
+
+    /**
+     * Constructs the child node based on a given item.
+     * Should not throw an exception; failures should be represented
+     * by returning an error node instead.
+     *
+     * @param  item  element of the list supplied at construction time
+     * @return  child node
+     */
+    protected abstract DataNode createChild( Object item );
+
+    public boolean hasNext() {
+        return ! cancelled_ && ( ! pending_.isEmpty() || itemIt_.hasNext() );
+    }
+
+    public Object next() {
+        if ( ! hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        fill();
+        RunnableFuture<DataNode> future = pending_.remove();
+        fill();
+
+        /* Build the child here if no pool thread has got to it yet. */
+        future.run();
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return new ErrorDataNode( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                return new ErrorDataNode( cause );
+            }
+        }
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Abandons iteration.  Child construction which has not yet started
+     * will not be done, and subsequent calls to <code>hasNext</code>
+     * will return false.
+     */
+    public void cancel() {
+        cancelled_ = true;
+        for ( RunnableFuture<DataNode> future : pending_ ) {
+            future.cancel( false );
+        }
+        pending_.clear();
+    }
+
+    /**
+     * Submits tasks for upcoming items until the lookahead limit is
+     * reached or the items are exhausted.
+     */
+    private void fill() {
+        while ( pending_.size() < nAhead_ && itemIt_.hasNext() ) {
+            final Object item = itemIt_.next();
+            pending_.add( executor_.submit( () -> createChild( item ),
+                                            false ) );
+        }
+    }
+}
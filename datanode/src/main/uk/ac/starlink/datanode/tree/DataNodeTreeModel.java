@@ -14,6 +14,7 @@ import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 import uk.ac.starlink.datanode.nodes.DataNode;
 import uk.ac.starlink.datanode.nodes.EmptyDataNode;
+import uk.ac.starlink.datanode.nodes.NodeExecutor;
 
 /**
  * A TreeModel for storing {@link DataNode}s.  
@@ -107,9 +108,11 @@ public class DataNodeTreeModel implements TreeModel {
      * a time-consuming business, so this method will return a 
      * number of children which can be determined without delay
      * (this may be zero), and will initiate the process of retrieving
-     * all the other children.  This is done in a separate thread,
-     * and a suitable <code>TreeModelEvent</code> is fired each time a
-     * child arrives.  The expansion process will continue until 
+     * all the other children.  This is done in a thread from the
+     * shared {@link NodeExecutor}, where it takes priority over
+     * background work, and a suitable <code>TreeModelEvent</code>
+     * is fired each time a child arrives.
+     * The expansion process will continue until 
      * all the children have been found.  No notification is currently
      * made when the set of children is complete.
      * <p>
@@ -129,11 +132,11 @@ public class DataNodeTreeModel implements TreeModel {
                 final NodeExpander expander = 
                     new NodeExpander( this, modelNode );
                 modelNode.setExpander( expander );
-                new Thread( "Node expander: " + dataNode ) {
+                NodeExecutor.getInstance().submit( new Runnable() {
                     public void run() {
                         expander.expandNode();
                     }
-                }.start();
+                }, true );
             }
             return modelNode.getChildren().size();
         }
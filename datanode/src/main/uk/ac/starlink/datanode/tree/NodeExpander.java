@@ -4,6 +4,7 @@ import java.util.Iterator;
 import java.util.List;
 import javax.swing.SwingUtilities;
 import uk.ac.starlink.datanode.nodes.DataNode;
+import uk.ac.starlink.datanode.nodes.ParallelChildIterator;
 
 /**
  * Object which can obtain children from a node and add them to a TreeModel
@@ -19,8 +20,8 @@ import uk.ac.starlink.datanode.nodes.DataNode;
  */
 public class NodeExpander {
 
-    private boolean stopped;
-    private boolean complete;
+    private volatile boolean stopped;
+    private volatile boolean complete;
     private DataNodeTreeModel treeModel;
     private TreeModelNode modelNode;
     private DataNode dataNode;
@@ -62,8 +63,8 @@ public class NodeExpander {
             repaintNode();
 
             /* Get each child in turn from the data node. */
-            for ( Iterator it = dataNode.getChildIterator();
-                  ! stopped && it.hasNext(); ) {
+            Iterator it = dataNode.getChildIterator();
+            while ( ! stopped && it.hasNext() ) {
 
                 /* Get the next child. */
                 DataNode childDataNode = (DataNode) it.next();
@@ -88,6 +89,12 @@ public class NodeExpander {
                 stopped = true;
                 complete = true;
             }
+
+            /* If we gave up early, make sure that no more work is done
+             * building children that will not be used. */
+            else if ( it instanceof ParallelChildIterator ) {
+                ((ParallelChildIterator) it).cancel();
+            }
             repaintNode();
         }
     }
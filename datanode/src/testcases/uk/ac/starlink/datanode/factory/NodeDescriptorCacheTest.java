@@ -0,0 +1,116 @@
+package uk.ac.starlink.datanode.factory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import junit.framework.TestCase;
+
+public class NodeDescriptorCacheTest extends TestCase {
+
+    private File dir_;
+
+    public NodeDescriptorCacheTest( String name ) {
+        super( name );
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        dir_ = File.createTempFile( "ndc", "" );
+        dir_.delete();
+        dir_.mkdir();
+    }
+
+    @Override
+    protected void tearDown() {
+        for ( File f : dir_.listFiles() ) {
+            f.delete();
+        }
+        dir_.delete();
+    }
+
+    public void testRoundTrip() throws IOException {
+        File store = new File( dir_, "cache.txt" );
+        File f1 = writeFile( "f1.dat", "abcdef", false );
+        File f2 = writeFile( "f2.dat", "xyz", false );
+
+        NodeDescriptorCache cache1 = new NodeDescriptorCache( store, 100 );
+        assertNull( cache1.getDescriptor( f1, 23 ) );
+        cache1.putDescriptor( f1, 23, "FITS builder", "a.FITSNode" );
+        cache1.putDescriptor( f2, 23, "Plain builder", "a.PlainNode" );
+        cache1.putDescriptor( f2, 23, "Plain builder", "a.PlainNode" );
+        assertEquals( 2, cache1.size() );
+        NodeDescriptorCache.Descriptor d1 = cache1.getDescriptor( f1, 23 );
+        assertEquals( "FITS builder", d1.getBuilderName() );
+        assertEquals( "a.FITSNode", d1.getNodeClassName() );
+        assertNull( cache1.getDescriptor( f1, 24 ) );
+
+        /* Read the entries back in a new instance. */
+        assertTrue( store.isFile() );
+        NodeDescriptorCache cache2 = new NodeDescriptorCache( store, 100 );
+        assertEquals( d1, cache2.getDescriptor( f1, 23 ) );
+        assertEquals( "Plain builder",
+                      cache2.getDescriptor( f2, 23 ).getBuilderName() );
+        assertEquals( 2, cache2.size() );
+        assertNull( cache2.getDescriptor( f2, 99 ) );
+
+        /* Unstorable names are ignored. */
+        cache2.putDescriptor( f1, 23, "Bad\tname", "a.Node" );
+        assertEquals( d1, cache2.getDescriptor( f1, 23 ) );
+        assertEquals( d1,
+                      new NodeDescriptorCache( store, 100 )
+                     .getDescriptor( f1, 23 ) );
+    }
+
+    public void testInvalidation() throws IOException {
+        File store = new File( dir_, "cache.txt" );
+        File f1 = writeFile( "f1.dat", "abcdef", false );
+        File f2 = writeFile( "f2.dat", "ghijkl", false );
+        NodeDescriptorCache cache = new NodeDescriptorCache( store, 100 );
+        cache.putDescriptor( f1, 5, "B1", "N1" );
+        cache.putDescriptor( f2, 5, "B2", "N2" );
+        assertNotNull( cache.getDescriptor( f1, 5 ) );
+        assertNotNull( cache.getDescriptor( f2, 5 ) );
+
+        /* Length change. */
+        writeFile( "f1.dat", "more", true );
+        assertNull( cache.getDescriptor( f1, 5 ) );
+
+        /* Modification time change, with the same length. */
+        long mtime = f2.lastModified();
+        writeFile( "f2.dat", "GHIJKL", false );
+        assertTrue( f2.setLastModified( mtime + 10000 ) );
+        assertNull( cache.getDescriptor( f2, 5 ) );
+        assertNull( new NodeDescriptorCache( store, 100 )
+                   .getDescriptor( f2, 5 ) );
+
+        /* A new entry supersedes the old one. */
+        cache.putDescriptor( f2, 5, "B3", "N3" );
+        assertEquals( "B3", new NodeDescriptorCache( store, 100 )
+                           .getDescriptor( f2, 5 ).getBuilderName() );
+    }
+
+    public void testMemory() throws IOException {
+        NodeDescriptorCache cache = new NodeDescriptorCache( null, 3 );
+        File[] files = new File[ 5 ];
+        for ( int i = 0; i < files.length; i++ ) {
+            files[ i ] = writeFile( "f" + i, "data" + i, false );
+            cache.putDescriptor( files[ i ], 1, "B", "N" );
+        }
+        assertEquals( 3, cache.size() );
+        assertNull( cache.getDescriptor( files[ 0 ], 1 ) );
+        assertNotNull( cache.getDescriptor( files[ 4 ], 1 ) );
+
+        /* No persistent store is written. */
+        assertEquals( files.length, dir_.listFiles().length );
+    }
+
+    private File writeFile( String name, String content, boolean append )
+            throws IOException {
+        File file = new File( dir_, name );
+        try ( OutputStream out = new FileOutputStream( file, append ) ) {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+        return file;
+    }
+}
@@ -0,0 +1,140 @@
+package uk.ac.starlink.datanode.nodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class ParallelChildIteratorTest extends TestCase {
+
+    public ParallelChildIteratorTest( String name ) {
+        super( name );
+    }
+
+    public void testOrder() throws InterruptedException {
+        NodeExecutor executor = new NodeExecutor( 4 );
+        List<Integer> items = range( 40 );
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final Random rnd = new Random( 230199L );
+        final int[] delays = new int[ items.size() ];
+        for ( int i = 0; i < delays.length; i++ ) {
+            delays[ i ] = rnd.nextInt( 20 );
+        }
+        ParallelChildIterator it =
+                new ParallelChildIterator( items, executor, 8 ) {
+            protected DataNode createChild( Object item ) {
+                threads.add( Thread.currentThread().getName() );
+                int i = ((Integer) item).intValue();
+                sleep( delays[ i ] );
+                return new DefaultDataNode( "n" + i );
+            }
+        };
+        for ( int i = 0; i < items.size(); i++ ) {
+            assertTrue( it.hasNext() );
+            assertEquals( "n" + i, ((DataNode) it.next()).getName() );
+        }
+        assertFalse( it.hasNext() );
+        assertTrue( threads.size() > 1 );
+    }
+
+    public void testCancel() throws InterruptedException {
+        NodeExecutor executor = new NodeExecutor( 2 );
+        final AtomicInteger nCreate = new AtomicInteger();
+        ParallelChildIterator it =
+                new ParallelChildIterator( range( 100 ), executor, 4 ) {
+            protected DataNode createChild( Object item ) {
+                nCreate.incrementAndGet();
+                sleep( 10 );
+                return new DefaultDataNode( item.toString() );
+            }
+        };
+        assertEquals( "0", ((DataNode) it.next()).getName() );
+        assertEquals( "1", ((DataNode) it.next()).getName() );
+        it.cancel();
+        assertFalse( it.hasNext() );
+        Thread.sleep( 100 );
+        int nc = nCreate.get();
+        assertTrue( nc >= 2 && nc <= 2 + 4 );
+        Thread.sleep( 100 );
+        assertEquals( nc, nCreate.get() );
+    }
+
+    public void testBusyPool() throws InterruptedException {
+
+        /* The only pool thread is blocked, so children must be built
+         * in the iterating thread. */
+        NodeExecutor executor = new NodeExecutor( 1 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        executor.submit( () -> {
+            try {
+                latch.await( 10, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e ) {
+            }
+        }, true );
+        final String caller = Thread.currentThread().getName();
+        ParallelChildIterator it =
+                new ParallelChildIterator( range( 5 ), executor, 2 ) {
+            protected DataNode createChild( Object item ) {
+                assertEquals( caller, Thread.currentThread().getName() );
+                return new DefaultDataNode( item.toString() );
+            }
+        };
+        List<String> names = new ArrayList<String>();
+        while ( it.hasNext() ) {
+            names.add( ((DataNode) it.next()).getName() );
+        }
+        latch.countDown();
+        assertEquals( "[0, 1, 2, 3, 4]", names.toString() );
+    }
+
+    public void testPriority() throws Exception {
+        NodeExecutor executor = new NodeExecutor( 1 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        executor.submit( () -> {
+            try {
+                latch.await( 10, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e ) {
+            }
+        }, true );
+        final List<String> order =
+            Collections.synchronizedList( new ArrayList<String>() );
+        RunnableFuture<?> f1 = executor.submit( () -> order.add( "bg1" ),
+                                                false );
+        RunnableFuture<?> f2 = executor.submit( () -> order.add( "vis" ),
+                                                true );
+        RunnableFuture<?> f3 = executor.submit( () -> order.add( "bg2" ),
+                                                false );
+        assertEquals( 3, executor.getQueueLength() );
+        latch.countDown();
+        f1.get();
+        f2.get();
+        f3.get();
+        assertEquals( "[vis, bg1, bg2]", order.toString() );
+    }
+
+    private static List<Integer> range( int n ) {
+        List<Integer> list = new ArrayList<Integer>();
+        for ( int i = 0; i < n; i++ ) {
+            list.add( Integer.valueOf( i ) );
+        }
+        return list;
+    }
+
+    private static void sleep( int millis ) {
+        try {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package uk.ac.starlink.diva.images;
+
+/**
+ * Simple class for placeholding the directory of images. 
+ *
+ * Use this to access images using the getResource method of Class. 
+ * For instance the code snippet following loads the "exit.gif" image.
+ * <pre>
+ *    import uk.ac.starlink.diva.images.ImageHolder;
+ *    ....
+ *    ImageIcon icon = ImageHolder.class.getResource( "exit.gif" );
+ * </pre>
+ */
+public class ImageHolder 
+{
+    //  Does nothing.
+}
@@ -448,6 +448,61 @@ public abstract class BintableStarTable extends AbstractStarTable {
         return colReaders_[ icol ].readValue( stream );
     }
 
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a double precision value.
+     * Blank or non-numeric values give NaN.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     */
+    protected double readDoubleCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readDouble( stream );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a long integer value.
+     * Blank or non-numeric values give zero.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     */
+    protected long readLongCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readLong( stream );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as an integer value.
+     * Blank or non-numeric values give zero.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     */
+    protected int readIntCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readInt( stream );
+    }
+
+    /**
+     * Determines whether a cell from a given column at the current position
+     * in a stream is null.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     */
+    protected boolean readIsNullCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readIsNull( stream );
+    }
+
     /**
      * Reads a whole row of the table from the current position in a stream,
      * returning a new Object[] array.
@@ -863,6 +918,34 @@ public abstract class BintableStarTable extends AbstractStarTable {
                         throw new IllegalStateException();
                     }
                 }
+                @Override
+                public double getDouble( int icol ) throws IOException {
+                    seekCell( icol );
+                    return readDoubleCell( input, icol );
+                }
+                @Override
+                public long getLong( int icol ) throws IOException {
+                    seekCell( icol );
+                    return readLongCell( input, icol );
+                }
+                @Override
+                public int getInt( int icol ) throws IOException {
+                    seekCell( icol );
+                    return readIntCell( input, icol );
+                }
+                @Override
+                public boolean isNull( int icol ) throws IOException {
+                    seekCell( icol );
+                    return readIsNullCell( input, icol );
+                }
+                private void seekCell( int icol ) throws IOException {
+                    if ( pos >= 0 && pos < endPos ) {
+                        input.seek( pos + colOffsets_[ icol ] );
+                    }
+                    else {
+                        throw new IllegalStateException();
+                    }
+                }
                 public void close() throws IOException {
                     input.close();
                 }
@@ -885,6 +968,26 @@ public abstract class BintableStarTable extends AbstractStarTable {
                     input.seek( irow_ * rowLength_ );
                     return readRow( input );
                 }
+                @Override
+                public double getDouble( int icol ) throws IOException {
+                    input.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+                    return readDoubleCell( input, icol );
+                }
+                @Override
+                public long getLong( int icol ) throws IOException {
+                    input.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+                    return readLongCell( input, icol );
+                }
+                @Override
+                public int getInt( int icol ) throws IOException {
+                    input.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+                    return readIntCell( input, icol );
+                }
+                @Override
+                public boolean isNull( int icol ) throws IOException {
+                    input.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+                    return readIsNullCell( input, icol );
+                }
                 public void close() throws IOException {
                     input.close();
                 }
@@ -71,6 +71,73 @@ abstract class ColumnReader {
      */
     abstract Object readValue( BasicInput stream ) throws IOException;
 
+    /**
+     * Reads bytes from a stream to return a double precision value.
+     * The number of bytes read is the same as for {@link #readValue}.
+     * The result is NaN if the value is blank or non-numeric.
+     *
+     * <p>The default implementation uses <code>readValue</code>;
+     * readers for scalar numeric columns override it to avoid
+     * object creation.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @return  numeric value or NaN
+     */
+    double readDouble( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Reads bytes from a stream to return a long integer value.
+     * The number of bytes read is the same as for {@link #readValue}.
+     * The result is zero if the value is blank or non-numeric.
+     *
+     * <p>The default implementation uses <code>readValue</code>;
+     * readers for scalar integer columns override it to avoid
+     * object creation.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @return  numeric value or zero
+     */
+    long readLong( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Reads bytes from a stream to return an integer value.
+     * The number of bytes read is the same as for {@link #readValue}.
+     * The result is zero if the value is blank or non-numeric.
+     *
+     * <p>The default implementation uses <code>readValue</code>;
+     * readers for scalar integer columns override it to avoid
+     * object creation.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @return  numeric value or zero
+     */
+    int readInt( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * Reads bytes from a stream to determine whether the value is null.
+     * The number of bytes read is the same as for {@link #readValue}.
+     *
+     * <p>The default implementation uses <code>readValue</code>;
+     * readers for scalar numeric columns override it to avoid
+     * object creation.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @return  true iff <code>readValue</code> would return null
+     */
+    boolean readIsNull( BasicInput stream ) throws IOException {
+        return readValue( stream ) == null;
+    }
+
     /**
      * Returns the class which objects returned by <code>readValue</code>
      * will belong to.
@@ -477,6 +544,33 @@ abstract class ColumnReader {
                                  ? null
                                  : Integer.valueOf( (int) ( val + iZero ) );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return hasBlank && val == (short) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? Double.NaN
+                                 : (double) ( val + iZero );
+                        }
+                        @Override
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? 0L
+                                 : (long) ( val + iZero );
+                        }
+                        @Override
+                        int readInt( BasicInput stream )
+                                throws IOException {
+                            return (int) readLong( stream );
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -500,6 +594,33 @@ abstract class ColumnReader {
                                         ? null
                                         : Short.valueOf( val );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return hasBlank && val == (short) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? Double.NaN
+                                        : (double) val;
+                        }
+                        @Override
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? 0L
+                                        : (long) val;
+                        }
+                        @Override
+                        int readInt( BasicInput stream )
+                                throws IOException {
+                            return (int) readLong( stream );
+                        }
                     };
                 }
                 return reader;
@@ -530,6 +651,20 @@ abstract class ColumnReader {
                                         ? null
                                         : Double.valueOf( val * scale + dZero );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return hasBlank && val == (int) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? Double.NaN
+                                        : val * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -542,6 +677,33 @@ abstract class ColumnReader {
                                         ? null
                                         : Integer.valueOf( val );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return hasBlank && val == (int) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? Double.NaN
+                                        : (double) val;
+                        }
+                        @Override
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? 0L
+                                        : (long) val;
+                        }
+                        @Override
+                        int readInt( BasicInput stream )
+                                throws IOException {
+                            return (int) readLong( stream );
+                        }
                     };
                 }
                 return reader;
@@ -628,6 +790,20 @@ abstract class ColumnReader {
                                         ? null
                                         : Double.valueOf( val * scale + dZero );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return hasBlank && val == (long) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? Double.NaN
+                                        : val * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -639,6 +815,33 @@ abstract class ColumnReader {
                                         ? null
                                         : Long.valueOf( val );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return hasBlank && val == (long) blank;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? Double.NaN
+                                        : (double) val;
+                        }
+                        @Override
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? 0L
+                                        : val;
+                        }
+                        @Override
+                        int readInt( BasicInput stream )
+                                throws IOException {
+                            return (int) readLong( stream );
+                        }
                     };
                 }
                 return reader;
@@ -666,6 +869,18 @@ abstract class ColumnReader {
                             return Float.valueOf( (float)
                                                   ( val * scale + dZero ) );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 4 );
+                            return false;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            float val = stream.readFloat();
+                            return (float) ( val * scale + dZero );
+                        }
                     };
                 }
                 else {
@@ -675,6 +890,17 @@ abstract class ColumnReader {
                             float val = stream.readFloat();
                             return Float.valueOf( val );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 4 );
+                            return false;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readFloat();
+                        }
                     };
                 }
                 return reader;    
@@ -689,6 +915,17 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return Double.valueOf( val * scale + dZero );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 8 );
+                            return false;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readDouble() * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -699,6 +936,17 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return Double.valueOf( val );
                         }
+                        @Override
+                        boolean readIsNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 8 );
+                            return false;
+                        }
+                        @Override
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readDouble();
+                        }
                     };
                 }
                 return reader;
@@ -161,6 +161,11 @@ public class Gram implements GramAccess, AnalyticSeries, Serializable
      * Gram isn't a periodogram at all, its a "Simple Line"
      */
     public final static int LINE = 12;   
+
+    /**
+     * Gram is a (generalised) Lomb-Scargle periodogram
+     */
+    public final static int LOMBSCARGLE = 13;
        
     
     //  ===================
@@ -31,12 +31,27 @@ public class ChisqPeriodogram
     }
 
     /**
-     * Static method for generating a fourier transform
+     * Static method for generating a chi-squared periodogram, the trial
+     * frequencies are shared out between all the available processors.
      */
     
     public static GramImpl make( TimeSeries currentSeries, boolean window,
                 double minFreq, double maxFreq, double freqInterval ) 
     {
+         return make( currentSeries, window, minFreq, maxFreq, freqInterval,
+                      true );
+    }
+    
+    /**
+     * Static method for generating a chi-squared periodogram, optionally
+     * evaluating the trial frequencies in parallel. Each trial frequency
+     * is independent of the others, so the result is the same either way.
+     */
+    
+    public static GramImpl make( TimeSeries currentSeries, boolean window,
+                double minFreq, double maxFreq, double freqInterval,
+                boolean parallel ) 
+    {
  
          debugManager.print( "            ChisqPeriodogram.make()" );
          debugManager.print( "            minFreq  = " + minFreq );
@@ -59,8 +74,8 @@ public class ChisqPeriodogram
          // copy the arrays, this sucks as it double the memory requirement
          // or the application at a stroke, but we currently have only
          // references to the data held in the currentSeries object.
-         double xData[] = (double[]) xRef.clone();
-         double yData[] = (double[]) yRef.clone();
+         final double xData[] = (double[]) xRef.clone();
+         final double yData[] = (double[]) yRef.clone();
          double errors[] = null;
          if( currentSeries.haveYDataErrors() ) {
          
@@ -101,21 +116,15 @@ public class ChisqPeriodogram
          
          // Allocate arrays
          double[] frequency = new double[numOfSteps];
-         double[] power = new double[numOfSteps];
           
-         // Loop over freqency 
+         // fill the frequency array
          for ( int i = 0; i < numOfSteps; i++ ) {
-         
-             // fill the frequency array
              frequency[i] = minFreq + ((double)i+1)*freqInterval;
-             
-             // period for this frequency
-             double period = 1.0/frequency[i]; 
-             
-             // calculate power
-             power[i] = sinfit( xData, yData, errors, period );
-
          }
+         
+         // Loop over freqency, calculating the power for the period
+         // corresponding to each frequency
+         double[] power = power( xData, yData, errors, frequency, parallel );
     
          String name = "Chi Squared Periodogram of " +
                        currentSeries.getShortName();
@@ -127,6 +136,38 @@ public class ChisqPeriodogram
     
     }
     
+    /**
+     * Calculate the chi-squared of the best sine fit at each of a set
+     * of trial frequencies.
+     *
+     * @param xData the date stamps
+     * @param yData the fluxes
+     * @param errors the errors in flux
+     * @param frequency the trial frequencies
+     * @param parallel if true share the frequencies out between the
+     *                 available processors, otherwise evaluate them in turn
+     * @return the chi-squared at each trial frequency
+     */
+    public static double[] power( final double[] xData, final double[] yData,
+                                  final double[] errors, double[] frequency,
+                                  boolean parallel )
+    {
+         double[] power = new double[frequency.length];
+         FrequencyLoop loop = new FrequencyLoop() {
+             protected double evaluate( double freq ) {
+                 return sinfit( xData, yData, errors, 1.0/freq );
+             }
+         };
+         if ( parallel ) {
+            loop.run( frequency, power );
+         } else {
+            for ( int i = 0; i < frequency.length; i++ ) {
+               power[i] = loop.evaluate( frequency[i] );
+            }
+         }
+         return power;
+    }
+
    /**
      * Original algorithim written in Fortran as part of KDHLIB and 
      * used by Keith to work out gamma, K-velocity and zero crossing 
@@ -150,7 +191,7 @@ public class ChisqPeriodogram
         // define stuff
    
         int np = 0; // number of points with non-zero error
-        double[] phase = new double[ xData.length ]; // phase for point
+        double phase; // phase for point
         
         double a = 0.0;   // constant term (fitted parameter)
         double b = 0.0;   // sin() term (fitted parameter)
@@ -185,11 +226,11 @@ public class ChisqPeriodogram
             np += 1;
             
             // calculate phase for data point on this trial period
-            phase[j] = xData[j]/period;
-            phase[j] = Math.abs( phase[j] - (int)phase[j] );
+            phase = xData[j]/period;
+            phase = Math.abs( phase - (int)phase );
                  
             // define some commonly used terms
-            xx = 360.0*phase[j];
+            xx = 360.0*phase;
             sn = Math.sin(xx*Math.PI/180.0);
             cn = Math.cos(xx*Math.PI/180.0);
             ww = 1.0/errors[j]/errors[j];
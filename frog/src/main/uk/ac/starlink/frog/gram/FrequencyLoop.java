@@ -0,0 +1,116 @@
+package uk.ac.starlink.frog.gram;
+
+import uk.ac.starlink.frog.util.FrogDebug;
+
+/**
+ * Evaluates a periodogram over a grid of trial frequencies, sharing
+ * the frequencies out between several threads. Each trial frequency
+ * is independent of the others, so the results are exactly the same
+ * as evaluating them one after another, just quicker on a multi-core
+ * machine.
+ *
+ * @version $Id$
+ */
+
+abstract class FrequencyLoop
+{
+    /**
+     *  Application wide debug manager
+     */
+    protected static FrogDebug debugManager = FrogDebug.getReference();
+
+    /**
+     * Minimum number of frequencies worth giving to a thread of its own
+     */
+    private static final int MIN_STEPS_PER_THREAD = 64;
+
+    /**
+     * Evaluate the periodogram at a single trial frequency. This will be
+     * called concurrently from several threads, so must not modify any
+     * shared state.
+     *
+     * @param frequency the trial frequency
+     * @return the periodogram value at that frequency
+     */
+    protected abstract double evaluate( double frequency );
+
+    /**
+     * Evaluate the periodogram at each of a set of trial frequencies.
+     *
+     * @param frequency the trial frequencies
+     * @param power array to be filled with the periodogram values
+     */
+    public void run( double[] frequency, double[] power )
+    {
+         int numOfThreads =
+            Math.max( 1, Math.min( Runtime.getRuntime().availableProcessors(),
+                                   frequency.length / MIN_STEPS_PER_THREAD ) );
+         run( frequency, power, numOfThreads );
+    }
+
+    /**
+     * Evaluate the periodogram at each of a set of trial frequencies
+     * using a given number of threads.
+     *
+     * @param frequency the trial frequencies
+     * @param power array to be filled with the periodogram values
+     * @param numOfThreads the number of threads to use
+     */
+    void run( final double[] frequency, final double[] power,
+              int numOfThreads )
+    {
+         int numOfSteps = frequency.length;
+         debugManager.print( "            Threads  = " + numOfThreads );
+
+         // Don't bother with threads if there is only one
+         if ( numOfThreads == 1 ) {
+            evaluateRange( frequency, power, 0, numOfSteps );
+            return;
+         }
+
+         // Give each thread a contiguous block of frequencies, the work
+         // for every frequency is the same so this balances well enough
+         Thread[] threads = new Thread[numOfThreads];
+         for ( int i = 0; i < numOfThreads; i++ ) {
+            final int start = (int)( (long)numOfSteps * i / numOfThreads );
+            final int end = (int)( (long)numOfSteps * (i+1) / numOfThreads );
+            threads[i] = new Thread( "Periodogram " + i ) {
+                public void run() {
+                    evaluateRange( frequency, power, start, end );
+                }
+            };
+            threads[i].start();
+         }
+
+         // wait for them all to finish
+         boolean interrupted = false;
+         for ( int i = 0; i < numOfThreads; i++ ) {
+            while ( threads[i].isAlive() ) {
+               try {
+                  threads[i].join();
+               } catch ( InterruptedException e ) {
+                  interrupted = true;
+               }
+            }
+         }
+         if ( interrupted ) {
+            Thread.currentThread().interrupt();
+         }
+    }
+
+    /**
+     * Evaluate the periodogram for a block of frequencies
+     *
+     * @param frequency the trial frequencies
+     * @param power array to be filled with the periodogram values
+     * @param start index of first frequency to evaluate
+     * @param end index after last frequency to evaluate
+     */
+    private void evaluateRange( double[] frequency, double[] power,
+                                int start, int end )
+    {
+         for ( int i = start; i < end; i++ ) {
+            power[i] = evaluate( frequency[i] );
+         }
+    }
+}
@@ -0,0 +1,374 @@
+package uk.ac.starlink.frog.gram;
+
+import uk.ac.starlink.frog.util.FrogDebug;
+import uk.ac.starlink.frog.data.GramImpl;
+import uk.ac.starlink.frog.data.MEMGramImpl;
+import uk.ac.starlink.frog.data.TimeSeries;
+
+/**
+ * Static class to build a generalised Lomb-Scargle periodogram.
+ * <p>
+ * This is the "floating mean" form of the Lomb-Scargle periodogram
+ * described by Zechmeister &amp; K&uuml;rster (2009, A&amp;A 496, 577),
+ * which fits Y = A + B*sin(2pi*f*X) + C*cos(2pi*f*X) weighted by the
+ * errors (if any), and reports the fractional reduction in chi-squared
+ * compared to a constant fit. The power is therefore between 0 and 1.
+ * <p>
+ * By default the trigonometric sums are evaluated for all trial
+ * frequencies at once using the method of Press &amp; Rybicki (1989,
+ * ApJ 338, 277); the data are "extirpolated" on to a regular grid and
+ * then Fourier transformed, so the cost is O(N + F log F) rather than
+ * O(N*F) for N data points and F frequencies. The direct sums are also
+ * available, and are evaluated in parallel.
+ *
+ * @version $Id$
+ */
+
+public class LombScargle
+{
+    /**
+     *  Application wide debug manager
+     */
+    protected static FrogDebug debugManager = FrogDebug.getReference();
+
+    /**
+     * Oversampling of the FFT grid relative to the highest (doubled)
+     * trial frequency; larger values give more accurate sums
+     */
+    private static final int OVERSAMPLE = 4;
+
+    /**
+     * Number of grid points each data point is extirpolated on to
+     */
+    private static final int MACC = 6;
+
+    /**
+     *  Default constructor
+     */
+    private LombScargle()
+    {
+        //  Do nothing.
+    }
+
+    /**
+     * Static method for generating a Lomb-Scargle periodogram using the
+     * fast method.
+     */
+
+    public static GramImpl make( TimeSeries currentSeries, boolean window,
+                double minFreq, double maxFreq, double freqInterval )
+    {
+         return make( currentSeries, window, minFreq, maxFreq, freqInterval,
+                      true );
+    }
+
+    /**
+     * Static method for generating a Lomb-Scargle periodogram.
+     *
+     * @param currentSeries the time series
+     * @param window ignored, the floating mean means that the periodogram
+     *               of a window function is zero everywhere
+     * @param minFreq the lowest trial frequency
+     * @param maxFreq the highest trial frequency
+     * @param freqInterval the frequency step
+     * @param fast if true use the Press-Rybicki method, otherwise evaluate
+     *             the sums directly
+     * @return the periodogram
+     */
+
+    public static GramImpl make( TimeSeries currentSeries, boolean window,
+                double minFreq, double maxFreq, double freqInterval,
+                boolean fast )
+    {
+
+         debugManager.print( "            LombScargle.make()" );
+         debugManager.print( "            minFreq  = " + minFreq );
+         debugManager.print( "            maxFreq  = " + maxFreq );
+         debugManager.print( "            Interval = " + freqInterval );
+         debugManager.print( "            Fast     = " + fast );
+
+         // grab data, these are only read so there is no need to copy
+         double xData[] = currentSeries.getXData();
+         double yData[] = currentSeries.getYData();
+         double errors[] = null;
+         if( currentSeries.haveYDataErrors() ) {
+            errors = currentSeries.getYDataErrors();
+         }
+
+         // Work out how many steps we need betweem freqMin and freqMax
+         int numOfSteps = (int)((maxFreq - minFreq)/freqInterval) + 1;
+
+         double[] frequency = new double[numOfSteps];
+         for ( int i = 0; i < numOfSteps; i++ ) {
+             frequency[i] = minFreq + ((double)i)*freqInterval;
+         }
+
+         double[] power = fast
+                        ? fastPower( xData, yData, errors,
+                                     minFreq, freqInterval, numOfSteps )
+                        : directPower( xData, yData, errors, frequency );
+
+         String name = "Lomb-Scargle Periodogram of " +
+                       currentSeries.getShortName();
+         MEMGramImpl memImpl = new MEMGramImpl( name );
+
+         memImpl.setData( power, frequency );
+         return memImpl;
+    }
+
+    /**
+     * Calculate the periodogram at a set of trial frequencies by
+     * evaluating the trigonometric sums directly. The frequencies are
+     * shared out between the available processors.
+     *
+     * @param xData the date stamps
+     * @param yData the fluxes
+     * @param errors the errors in flux, or null
+     * @param frequency the trial frequencies
+     * @return the power at each trial frequency
+     */
+    public static double[] directPower( double[] xData, double[] yData,
+                                        double[] errors, double[] frequency )
+    {
+         final Weighted data = new Weighted( xData, yData, errors );
+         double[] power = new double[frequency.length];
+         new FrequencyLoop() {
+             protected double evaluate( double freq ) {
+                 double omega = 2.0*Math.PI*freq;
+                 double c = 0.0;
+                 double s = 0.0;
+                 double yc = 0.0;
+                 double ys = 0.0;
+                 double cc = 0.0;
+                 double cs = 0.0;
+                 for ( int j = 0; j < data.np; j++ ) {
+                    double expo = omega*data.t[j];
+                    double cn = Math.cos( expo );
+                    double sn = Math.sin( expo );
+                    double w = data.w[j];
+                    double wc = w*cn;
+                    double ws = w*sn;
+                    c += wc;
+                    s += ws;
+                    yc += wc*data.y[j];
+                    ys += ws*data.y[j];
+                    cc += wc*cn;
+                    cs += wc*sn;
+                 }
+                 return data.power( c, s, cc, 1.0 - cc, cs, yc, ys );
+             }
+         }.run( frequency, power );
+         return power;
+    }
+
+    /**
+     * Calculate the periodogram at a regular grid of trial frequencies
+     * using the Press-Rybicki method.
+     *
+     * @param xData the date stamps
+     * @param yData the fluxes
+     * @param errors the errors in flux, or null
+     * @param minFreq the first trial frequency
+     * @param freqInterval the frequency step
+     * @param numOfSteps the number of trial frequencies
+     * @return the power at each trial frequency
+     */
+    public static double[] fastPower( double[] xData, double[] yData,
+                                      double[] errors, double minFreq,
+                                      double freqInterval, int numOfSteps )
+    {
+         Weighted data = new Weighted( xData, yData, errors );
+
+         // size of the FFT, needs to hold twice the highest frequency
+         // index for the cos(2wt), sin(2wt) sums
+         int nfft = 64;
+         while ( nfft < OVERSAMPLE*2*numOfSteps ) {
+            nfft *= 2;
+         }
+         debugManager.print( "            FFT size = " + nfft );
+
+         // extirpolate w*exp(i*w0*t), w*y*exp(i*w0*t) and w*exp(2i*w0*t)
+         // on to the grid, where w0 is the first trial frequency; the
+         // FFT then gives the sums at frequencies w0 + k*dw
+         double[] wRe = new double[nfft];
+         double[] wIm = new double[nfft];
+         double[] yRe = new double[nfft];
+         double[] yIm = new double[nfft];
+         double[] w2Re = new double[nfft];
+         double[] w2Im = new double[nfft];
+         double omega0 = 2.0*Math.PI*minFreq;
+         double scale = freqInterval*nfft;
+         for ( int j = 0; j < data.np; j++ ) {
+            double pos = data.t[j]*scale;
+            pos = pos - nfft*Math.floor( pos/nfft );
+            double expo = omega0*data.t[j];
+            double cn = Math.cos( expo );
+            double sn = Math.sin( expo );
+            double w = data.w[j];
+            double wy = w*data.y[j];
+            spread( wRe, wIm, pos, w*cn, w*sn );
+            spread( yRe, yIm, pos, wy*cn, wy*sn );
+            spread( w2Re, w2Im, pos, w*(cn*cn - sn*sn), w*2.0*sn*cn );
+         }
+         fft( wRe, wIm );
+         fft( yRe, yIm );
+         fft( w2Re, w2Im );
+
+         // calculate power at each frequency, noting that
+         // cos^2 = (1+cos2)/2, sin^2 = (1-cos2)/2 and cos*sin = sin2/2
+         double[] power = new double[numOfSteps];
+         for ( int k = 0; k < numOfSteps; k++ ) {
+            double c2 = w2Re[2*k];
+            double s2 = w2Im[2*k];
+            power[k] = data.power( wRe[k], wIm[k], 0.5*(1.0 + c2),
+                                   0.5*(1.0 - c2), 0.5*s2, yRe[k], yIm[k] );
+         }
+         return power;
+    }
+
+    /**
+     * Add a complex value to a periodic grid at a non-integral position,
+     * by Lagrange interpolation "in reverse" over the nearest MACC points.
+     *
+     * @param re the real part of the grid
+     * @param im the imaginary part of the grid
+     * @param pos the position, between 0 and the grid size
+     * @param valRe the real part of the value
+     * @param valIm the imaginary part of the value
+     */
+    private static void spread( double[] re, double[] im, double pos,
+                                double valRe, double valIm )
+    {
+         int n = re.length;
+         int ilo = (int)Math.floor( pos ) - MACC/2 + 1;
+         for ( int l = 0; l < MACC; l++ ) {
+            double fac = 1.0;
+            for ( int m = 0; m < MACC; m++ ) {
+               if ( m != l ) {
+                  fac *= ( pos - ( ilo + m ) ) / ( l - m );
+               }
+            }
+            int i = ( ilo + l + n ) % n;
+            re[i] += fac*valRe;
+            im[i] += fac*valIm;
+         }
+    }
+
+    /**
+     * In-place complex FFT of a power of two length array, using the
+     * exp(+2pi*i*k*m/n) sign convention.
+     *
+     * @param re the real part of the data
+     * @param im the imaginary part of the data
+     */
+    private static void fft( double[] re, double[] im )
+    {
+         int n = re.length;
+
+         // bit reversal
+         for ( int i = 1, j = 0; i < n; i++ ) {
+            int bit = n >> 1;
+            for ( ; ( j & bit ) != 0; bit >>= 1 ) {
+               j ^= bit;
+            }
+            j ^= bit;
+            if ( i < j ) {
+               double t = re[i];
+               re[i] = re[j];
+               re[j] = t;
+               t = im[i];
+               im[i] = im[j];
+               im[j] = t;
+            }
+         }
+
+         // butterflies
+         for ( int len = 2; len <= n; len <<= 1 ) {
+            double theta = 2.0*Math.PI/len;
+            double wpr = Math.cos( theta );
+            double wpi = Math.sin( theta );
+            int half = len >> 1;
+            for ( int i = 0; i < n; i += len ) {
+               double wr = 1.0;
+               double wi = 0.0;
+               for ( int k = 0; k < half; k++ ) {
+                  int a = i + k;
+                  int b = a + half;
+                  double tr = wr*re[b] - wi*im[b];
+                  double ti = wr*im[b] + wi*re[b];
+                  re[b] = re[a] - tr;
+                  im[b] = im[a] - ti;
+                  re[a] += tr;
+                  im[a] += ti;
+                  double wt = wr;
+                  wr = wt*wpr - wi*wpi;
+                  wi = wt*wpi + wi*wpr;
+               }
+            }
+         }
+    }
+
+    /**
+     * The usable data points, with the times measured from the first
+     * one, normalised weights and the weighted mean subtracted from the
+     * fluxes. The periodogram is unaffected by the time offset.
+     */
+    private static class Weighted
+    {
+        int np;
+        double[] t;
+        double[] y;
+        double[] w;
+        double yy;
+
+        Weighted( double[] xData, double[] yData, double[] errors )
+        {
+            int n = xData.length;
+            t = new double[n];
+            y = new double[n];
+            w = new double[n];
+            double sw = 0.0;
+            double sy = 0.0;
+            double tmin = Double.POSITIVE_INFINITY;
+            for ( int j = 0; j < n; j++ ) {
+               double err = errors == null ? 1.0 : errors[j];
+               if ( xData[j] != TimeSeries.BAD && yData[j] != TimeSeries.BAD
+                    && err > 0.0 && err != TimeSeries.BAD ) {
+                  t[np] = xData[j];
+                  y[np] = yData[j];
+                  w[np] = 1.0/err/err;
+                  sw += w[np];
+                  sy += w[np]*y[np];
+                  tmin = Math.min( tmin, t[np] );
+                  np++;
+               }
+            }
+            double mean = sy/sw;
+            for ( int j = 0; j < np; j++ ) {
+               t[j] -= tmin;
+               y[j] -= mean;
+               w[j] /= sw;
+               yy += w[j]*y[j]*y[j];
+            }
+        }
+
+        /**
+         * Power from the weighted trigonometric sums at one frequency
+         * (sums of w*cos, w*sin, w*cos^2, w*sin^2, w*cos*sin, w*y*cos
+         * and w*y*sin).
+         */
+        double power( double c, double s, double cc, double ss, double cs,
+                      double yc, double ys )
+        {
+            cc -= c*c;
+            ss -= s*s;
+            cs -= c*s;
+            double d = cc*ss - cs*cs;
+            if ( ! ( d > 0.0 && yy > 0.0 ) ) {
+               return 0.0;
+            }
+            double p = ( ss*yc*yc + cc*ys*ys - 2.0*cs*yc*ys ) / ( yy*d );
+            return Math.max( 0.0, Math.min( 1.0, p ) );
+        }
+    }
+}
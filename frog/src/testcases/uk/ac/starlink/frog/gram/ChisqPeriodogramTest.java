@@ -0,0 +1,61 @@
+package uk.ac.starlink.frog.gram;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class ChisqPeriodogramTest extends TestCase {
+
+    public ChisqPeriodogramTest( String name ) {
+        super( name );
+    }
+
+    public void testParallel() {
+        Random rnd = new Random( 23302L );
+        int np = 500;
+        final double[] xData = new double[ np ];
+        final double[] yData = new double[ np ];
+        final double[] errors = new double[ np ];
+        for ( int i = 0; i < np; i++ ) {
+            xData[ i ] = 100 * rnd.nextDouble();
+            errors[ i ] = 0.2 + rnd.nextDouble();
+            yData[ i ] = 3 * Math.cos( 2 * Math.PI * 0.81 * xData[ i ] )
+                       + errors[ i ] * rnd.nextGaussian();
+        }
+        int nstep = 4000;
+        double[] frequency = new double[ nstep ];
+        for ( int i = 0; i < nstep; i++ ) {
+            frequency[ i ] = 0.01 + ( i + 1 ) * 0.0005;
+        }
+
+        /* Parallel and serial evaluation must give the same chi-squared
+         * values, with a minimum at the injected frequency. */
+        double[] serial =
+            ChisqPeriodogram.power( xData, yData, errors, frequency, false );
+        double[] parallel =
+            ChisqPeriodogram.power( xData, yData, errors, frequency, true );
+        assertEquals( nstep, parallel.length );
+        int imin = 0;
+        for ( int i = 0; i < nstep; i++ ) {
+            assertEquals( serial[ i ], parallel[ i ],
+                          1e-10 * Math.abs( serial[ i ] ) );
+            if ( serial[ i ] < serial[ imin ] ) {
+                imin = i;
+            }
+        }
+        assertEquals( 0.81, frequency[ imin ], 0.0005 );
+
+        /* Same again with several threads, however many processors
+         * there are. */
+        double[] threaded = new double[ nstep ];
+        new FrequencyLoop() {
+            protected double evaluate( double freq ) {
+                return ChisqPeriodogram.sinfit( xData, yData, errors,
+                                                1.0 / freq );
+            }
+        }.run( frequency, threaded, 5 );
+        for ( int i = 0; i < nstep; i++ ) {
+            assertEquals( serial[ i ], threaded[ i ],
+                          1e-10 * Math.abs( serial[ i ] ) );
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.starlink.frog.gram;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class LombScargleTest extends TestCase {
+
+    public LombScargleTest( String name ) {
+        super( name );
+    }
+
+    public void testFastPower() {
+        Random rnd = new Random( 44901L );
+        int np = 2000;
+        double[] xData = new double[ np ];
+        double[] yData = new double[ np ];
+        double[] errors = new double[ np ];
+        double freq0 = 2.37;
+        for ( int i = 0; i < np; i++ ) {
+            xData[ i ] = 50000 + 40 * rnd.nextDouble();
+            errors[ i ] = 0.5 + rnd.nextDouble();
+            yData[ i ] = 12 + Math.sin( 2 * Math.PI * freq0 * xData[ i ] )
+                       + errors[ i ] * rnd.nextGaussian();
+        }
+        double minFreq = 0.1;
+        double freqInterval = 0.002;
+        int nstep = 2500;
+        double[] frequency = new double[ nstep ];
+        for ( int i = 0; i < nstep; i++ ) {
+            frequency[ i ] = minFreq + i * freqInterval;
+        }
+
+        /* The fast and direct methods must agree, with and without
+         * errors, and both must find the injected signal. */
+        for ( double[] errs : new double[][] { errors, null } ) {
+            double[] direct =
+                LombScargle.directPower( xData, yData, errs, frequency );
+            double[] fast =
+                LombScargle.fastPower( xData, yData, errs, minFreq,
+                                       freqInterval, nstep );
+            assertEquals( nstep, fast.length );
+            int imax = 0;
+            for ( int i = 0; i < nstep; i++ ) {
+                assertTrue( direct[ i ] >= 0 && direct[ i ] <= 1 );
+                assertEquals( direct[ i ], fast[ i ], 1e-6 );
+                if ( direct[ i ] > direct[ imax ] ) {
+                    imax = i;
+                }
+            }
+            assertEquals( freq0, frequency[ imax ], freqInterval );
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package uk.ac.starlink.hapi;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import uk.ac.starlink.util.CgiQuery;
 import uk.ac.starlink.util.IOConsumer;
@@ -17,6 +27,23 @@ import uk.ac.starlink.util.IOSupplier;
  * that encounter service errors with the status
  * 1408 "Bad Status - too much time or data requested".
  *
+ * <p>By default chunks are requested one after another,
+ * each only once the previous one has been read.
+ * If a parallelism greater than one is configured,
+ * once a chunk size acceptable to the service has been found,
+ * the rest of the range is divided into chunks of that size
+ * and several of the following chunks are fetched concurrently
+ * into memory while the current one is being consumed.
+ * Chunks are always delivered in time order.
+ *
+ * <p>If a {@link HapiCache} is supplied, any parts of the requested
+ * range that have been cached are read from disk, only the gaps
+ * are requested from the service, and the newly downloaded data is
+ * added to the cache.
+ * In that case the returned stream has exclusive use of the relevant
+ * cache entry until it has been read to the end or closed,
+ * so concurrent requests for the same data will wait for each other.
+ *
  * @author   Mark Taylor
  * @since    26 Jan 2024
  */
@@ -25,6 +52,9 @@ public class ChunkStreamer {
     private final HapiService service_;
     private final int chunkLimit_;
     private final IOConsumer<String> limitCallback_;
+    private final int parallelism_;
+    private final HapiCache cache_;
+    private final HapiParam[] params_;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.hapi" );
@@ -47,9 +77,37 @@ public class ChunkStreamer {
      */
     public ChunkStreamer( HapiService service, int chunkLimit,
                           IOConsumer<String> limitCallback ) {
+        this( service, chunkLimit, limitCallback, 1, null, null );
+    }
+
+    /**
+     * Constructor with parallel and caching options.
+     *
+     * <p>When parallelism is greater than one, up to that number of
+     * chunks are held in memory at once.
+     * The cache is only used for requests that it is able to handle,
+     * which requires binary format data without a header and
+     * the parameter list.
+     *
+     * @param  service  service to which requests will be made
+     * @param  chunkLimit   maximum number of chunks that a data stream will
+     *                      include
+     * @param  limitCallback  called with a failure message
+     *                        if chunk limit is exceeded; may be null
+     * @param  parallelism  maximum number of concurrent chunk requests
+     * @param  cache   persistent data cache, or null for no caching
+     * @param  params   parameters returned by requests,
+     *                  required for caching; may be null
+     */
+    public ChunkStreamer( HapiService service, int chunkLimit,
+                          IOConsumer<String> limitCallback, int parallelism,
+                          HapiCache cache, HapiParam[] params ) {
         service_ = service;
         chunkLimit_ = chunkLimit;
         limitCallback_ = limitCallback;
+        parallelism_ = Math.max( 1, parallelism );
+        cache_ = cache;
+        params_ = params;
     }
 
     /**
@@ -62,6 +120,16 @@ public class ChunkStreamer {
         return chunkLimit_;
     }
 
+    /**
+     * Returns the maximum number of chunk requests that this streamer
+     * will make concurrently.
+     *
+     * @return  parallelism
+     */
+    public int getParallelism() {
+        return parallelism_;
+    }
+
     /**
      * Returns an input stream corresponding to the supplied HAPI data request
      * URL, but which may be assembled from the concatenation of
@@ -96,9 +164,85 @@ public class ChunkStreamer {
             }
         }
 
-        /* Make a chunked request. */
-        return chunkStream( requestUrl, tmin, tmax,
-                            new Progress( tmin.isoTime_, tmax.isoTime_ ) );
+        Progress progress = new Progress( tmin.isoTime_, tmax.isoTime_ );
+
+        /* If the request is cachable, assemble the stream from cached
+         * intervals and chunked requests for the gaps between them. */
+        HapiCache.Entry entry = cache_ == null
+                              ? null
+                              : cache_.getEntry( requestUrl, params_ );
+        long tmin0 = HapiCache.isoToMillis( tmin.isoTime_ );
+        long tmax0 = HapiCache.isoToMillis( tmax.isoTime_ );
+        if ( entry != null && tmin0 != Long.MIN_VALUE &&
+                              tmax0 != Long.MIN_VALUE && tmin0 < tmax0 ) {
+            HapiCache.Entry.Session session = entry.openSession();
+            try {
+                List<IOSupplier<InputStream>> suppliers = new ArrayList<>();
+                for ( HapiCache.Interval ival : session.plan( tmin0, tmax0 ) ) {
+                    long t0 = ival.getMinMillis();
+                    long t1 = ival.getMaxMillis();
+                    if ( ival.isCached() ) {
+                        logger_.info( "HAPI data from cache: " + ival );
+                        suppliers.add( () -> progress.isHalted()
+                                           ? null
+                                           : session.openCached( ival ) );
+                    }
+                    else {
+                        Limit lo = t0 == tmin0
+                                 ? tmin
+                                 : tmin.replaceTime( HapiCache
+                                                    .millisToIso( t0 ) );
+                        Limit hi = t1 == tmax0
+                                 ? tmax
+                                 : tmax.replaceTime( HapiCache
+                                                    .millisToIso( t1 ) );
+                        suppliers.add( () -> {
+                            if ( progress.isHalted() ) {
+                                return null;
+                            }
+                            InputStream in =
+                                rangeStream( requestUrl, lo, hi, progress );
+                            return in == null
+                                 ? null
+                                 : session.recordStream( in, t0, t1,
+                                                         () -> ! progress
+                                                                .isHalted() );
+                        } );
+                    }
+                }
+                return new SessionInputStream(
+                           new SeqInputStream( suppliers.iterator() ),
+                           session, progress );
+            }
+            catch ( IOException | RuntimeException e ) {
+                session.close();
+                throw e;
+            }
+        }
+
+        /* Otherwise make a chunked request for the whole range. */
+        else {
+            return rangeStream( requestUrl, tmin, tmax, progress );
+        }
+    }
+
+    /**
+     * Returns a stream for a time range using chunked requests to
+     * the service, serially or in parallel as configured.
+     *
+     * @param  requestUrl  HAPI data request URL
+     * @param  tmin   start time
+     * @param  tmax   end time
+     * @param  progress  progress object
+     * @return  input stream containing all data in requested range,
+     *          subject to chunk limit
+     */
+    private InputStream rangeStream( URL requestUrl, Limit tmin, Limit tmax,
+                                     Progress progress )
+            throws IOException {
+        return parallelism_ > 1
+             ? new ParallelChunkInputStream( requestUrl, tmin, tmax, progress )
+             : chunkStream( requestUrl, tmin, tmax, progress );
     }
 
     /**
@@ -117,23 +261,14 @@ public class ChunkStreamer {
 
         /* Check if chunk limit has been exceeded. */
         if ( progress.ichunk_ >= chunkLimit_ ) {
-            if ( ! progress.hasExceeded_ ) {
-                progress.hasExceeded_ = true;
-                if ( limitCallback_ != null ) {
-                    String msg = "HAPI load chunk limit exceeded"
-                               + " (" + chunkLimit_ + " "
-                               + ( chunkLimit_ == 1 ? "chunk" : "chunks" )
-                               + ", " + progress.getTimePercent( tmax.isoTime_ )
-                               + "%)";
-                    limitCallback_.accept( msg );
-                }
-            }
+            limitExceeded( progress, tmax );
             return null;
         }
 
         /* Attempt a direct request to the service for the whole range. */
         try {
-            return openStream( requestUrl, tmin, tmax, progress );
+            return openStream( requestUrl, tmin, tmax, progress,
+                               progress.ichunk_ == 0 );
         }
 
         /* If that fails on a 1408, split the request in two and recurse. */
@@ -156,6 +291,28 @@ public class ChunkStreamer {
         }
     }
 
+    /**
+     * Records that the chunk limit has been exceeded,
+     * informing the callback if this is the first time.
+     *
+     * @param  progress  progress object
+     * @param  tmax   end time of the first chunk not retrieved
+     */
+    private void limitExceeded( Progress progress, Limit tmax )
+            throws IOException {
+        if ( ! progress.hasExceeded_ ) {
+            progress.hasExceeded_ = true;
+            if ( limitCallback_ != null ) {
+                String msg = "HAPI load chunk limit exceeded"
+                           + " (" + chunkLimit_ + " "
+                           + ( chunkLimit_ == 1 ? "chunk" : "chunks" )
+                           + ", " + progress.getTimePercent( tmax.isoTime_ )
+                           + "%)";
+                limitCallback_.accept( msg );
+            }
+        }
+    }
+
     /**
      * Performs a direct request to the HAPI service.
      *
@@ -163,12 +320,14 @@ public class ChunkStreamer {
      * @param  tmin    lower bound time for this request
      * @param  tmax    upper bound time for this request
      * @param  progress object
+     * @param  isFirst  true if this is the first chunk of the stream,
+     *                  in which case any header requested will be retained
      * @return   input stream for the whole range if possible
      * @throws   IOException if request failed;
      *           may be a 1408 HapiServiceException
      */
     private InputStream openStream( URL templateUrl, Limit tmin, Limit tmax,
-                                    Progress progress )
+                                    Progress progress, boolean isFirst )
             throws IOException {
 
         /* Assemble the actual request URL. */
@@ -176,7 +335,7 @@ public class ChunkStreamer {
         urlBase = urlBase.substring( 0, urlBase.indexOf( '?' ) );
         Map<String,String> reqParams =
             HapiService.getRequestParameters( templateUrl ); 
-        if ( progress.ichunk_ > 0 ) {
+        if ( ! isFirst ) {
             reqParams.remove( "include" );
         }
         reqParams.put( tmin.reqParam_, tmin.isoTime_ );
@@ -191,8 +350,11 @@ public class ChunkStreamer {
         InputStream in = service_.openStream( query.toURL() );
 
         /* If the request was successful, update and log progress. */
-        progress.ichunk_++;
-        logger_.info( "HAPI data chunk request " + progress.ichunk_
+        int ichunk;
+        synchronized ( progress ) {
+            ichunk = ++progress.ichunk_;
+        }
+        logger_.info( "HAPI data chunk request " + ichunk
                     + " of max " + chunkLimit_ + ", "
                     + progress.getTimePercent( tmax.isoTime_ ) + "%" );
 
@@ -215,6 +377,40 @@ public class ChunkStreamer {
                                         "yyyy-MM-dd'T'HH:mm:ss" );
     }
 
+    /**
+     * Returns a list of ISO-8601 timestamps dividing a range into
+     * a given number of equal parts.
+     *
+     * @param  isoMin   start timestamp
+     * @param  isoMax   end timestamp
+     * @param  npart    number of parts
+     * @return  (npart-1)-element array of internal boundaries
+     */
+    private static String[] getIsoDivisions( String isoMin, String isoMax,
+                                             int npart ) {
+        double secMin = Times.isoToUnixSeconds( isoMin );
+        double secMax = Times.isoToUnixSeconds( isoMax );
+        String[] divs = new String[ npart - 1 ];
+        for ( int i = 1; i < npart; i++ ) {
+            double sec = secMin + ( secMax - secMin ) * i / npart;
+            divs[ i - 1 ] = Times.formatUnixSeconds( (long) sec,
+                                                     "yyyy-MM-dd'T'HH:mm:ss" );
+        }
+        return divs;
+    }
+
+    /**
+     * Returns the duration of a time range in seconds.
+     *
+     * @param  tmin  start time
+     * @param  tmax  end time
+     * @return  duration in seconds
+     */
+    private static double getDuration( Limit tmin, Limit tmax ) {
+        return Times.isoToUnixSeconds( tmax.isoTime_ )
+             - Times.isoToUnixSeconds( tmin.isoTime_ );
+    }
+
     /**
      * Characterises an epoch sent as part of a HAPI data request.
      */
@@ -251,7 +447,9 @@ public class ChunkStreamer {
         final String startIso_;
         final String stopIso_;
         int ichunk_;
-        boolean hasExceeded_;
+        int nSubmitted_;
+        volatile boolean hasExceeded_;
+        volatile boolean isClosed_;
  
         /**
          * Constructor.
@@ -264,6 +462,17 @@ public class ChunkStreamer {
             stopIso_ = stopIso;
         }
 
+        /**
+         * Indicates whether no more data should be read,
+         * either because the chunk limit has been exceeded
+         * or because the output stream has been closed.
+         *
+         * @return  true if no more requests should be made
+         */
+        public boolean isHalted() {
+            return hasExceeded_ || isClosed_;
+        }
+
         /**
          * Returns the fraction of the full request that a given
          * epoch string corresponds to.
@@ -290,6 +499,297 @@ public class ChunkStreamer {
         }
     }
 
+    /**
+     * InputStream that fetches chunks of a time range from the service
+     * concurrently, and supplies their content in time order.
+     *
+     * <p>Ranges are first requested whole, and split in two if the service
+     * rejects them as too large.  Once a chunk duration that the service
+     * accepts has been found, any later ranges longer than that are
+     * divided up into chunks of that duration before being requested.
+     * Each chunk is read fully into memory by a worker thread,
+     * so that up to the configured parallelism of chunks may be
+     * resident at once.
+     */
+    private class ParallelChunkInputStream extends InputStream {
+
+        private final URL templateUrl_;
+        private final Progress progress_;
+        private final LinkedList<Slot> slots_;
+        private final ExecutorService executor_;
+        private double chunkSec_;
+        private InputStream in_;
+        private boolean done_;
+
+        /**
+         * Constructor.
+         *
+         * @param  templateUrl  HAPI data request URL
+         * @param  tmin   start time
+         * @param  tmax   end time
+         * @param  progress  progress object
+         */
+        ParallelChunkInputStream( URL templateUrl, Limit tmin, Limit tmax,
+                                  Progress progress ) {
+            templateUrl_ = templateUrl;
+            progress_ = progress;
+            slots_ = new LinkedList<Slot>();
+            slots_.add( new Slot( tmin, tmax ) );
+            chunkSec_ = Double.NaN;
+            executor_ = Executors.newFixedThreadPool( parallelism_, r -> {
+                Thread th = new Thread( r, "HAPI chunk loader" );
+                th.setDaemon( true );
+                return th;
+            } );
+        }
+
+        @Override
+        public int read() throws IOException {
+            while ( ! done_ ) {
+                if ( in_ != null ) {
+                    int c = in_.read();
+                    if ( c >= 0 ) {
+                        return c;
+                    }
+                }
+                in_ = nextChunk();
+            }
+            return -1;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+            while ( ! done_ ) {
+                if ( in_ != null ) {
+                    int n = in_.read( b, off, len );
+                    if ( n > 0 ) {
+                        return n;
+                    }
+                }
+                in_ = nextChunk();
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+
+        /**
+         * Returns a stream for the next chunk in sequence,
+         * waiting for it to be retrieved if necessary.
+         *
+         * @return  chunk stream, or null at end of data
+         */
+        private InputStream nextChunk() throws IOException {
+            while ( ! slots_.isEmpty() ) {
+                submitSlots();
+                Slot slot = slots_.getFirst();
+                if ( slot.future_ == null ) {
+                    limitExceeded( progress_, slot.tmax_ );
+                    break;
+                }
+                try {
+                    byte[] data = slot.future_.get();
+                    slots_.removeFirst();
+                    if ( Double.isNaN( chunkSec_ ) ) {
+                        chunkSec_ = getDuration( slot.tmin_, slot.tmax_ );
+                    }
+                    return new ByteArrayInputStream( data );
+                }
+                catch ( InterruptedException e ) {
+                    finish();
+                    throw (IOException)
+                          new InterruptedIOException().initCause( e );
+                }
+                catch ( ExecutionException e ) {
+                    Throwable err = e.getCause();
+                    slots_.removeFirst();
+                    progress_.nSubmitted_--;
+                    if ( err instanceof HapiServiceException &&
+                         ((HapiServiceException) err).getHapiCode()
+                         == HapiServiceException.CODE_TOOMUCH ) {
+                        String midIso = getIsoMidpoint( slot.tmin_.isoTime_,
+                                                        slot.tmax_.isoTime_ );
+                        Limit midLo = slot.tmin_.replaceTime( midIso );
+                        Limit midHi = slot.tmax_.replaceTime( midIso );
+                        slots_.addFirst( new Slot( midLo, slot.tmax_ ) );
+                        slots_.addFirst( new Slot( slot.tmin_, midHi ) );
+                        double halfSec = getDuration( slot.tmin_, midHi );
+                        chunkSec_ = Double.isNaN( chunkSec_ )
+                                  ? halfSec
+                                  : Math.min( chunkSec_, halfSec );
+                    }
+                    else {
+                        finish();
+                        throw err instanceof IOException
+                            ? (IOException) err
+                            : new IOException( "HAPI chunk load failed", err );
+                    }
+                }
+            }
+            finish();
+            return null;
+        }
+
+        /**
+         * Divides pending ranges into chunks of the known acceptable size,
+         * and submits requests for the first few, subject to the
+         * parallelism and chunk limit.
+         */
+        private void submitSlots() {
+            int is = 0;
+            for ( Iterator<Slot> it = slots_.iterator();
+                  it.hasNext() && is < parallelism_; is++ ) {
+                Slot slot = it.next();
+                if ( slot.future_ == null ) {
+                    int nsplit = Double.isNaN( chunkSec_ )
+                               ? 1
+                               : (int) Math.ceil( getDuration( slot.tmin_,
+                                                               slot.tmax_ )
+                                                / chunkSec_ * 0.999 );
+                    if ( nsplit > 1 && chunkSec_ >= 1 ) {
+                        nsplit = Math.min( nsplit, 1024 * 1024 );
+                        String[] divs =
+                            getIsoDivisions( slot.tmin_.isoTime_,
+                                             slot.tmax_.isoTime_, nsplit );
+                        int index = slots_.indexOf( slot );
+                        List<Slot> parts = new ArrayList<>();
+                        Limit lo = slot.tmin_;
+                        for ( String div : divs ) {
+                            Limit hi = slot.tmax_.replaceTime( div );
+                            parts.add( new Slot( lo, hi ) );
+                            lo = slot.tmin_.replaceTime( div );
+                        }
+                        parts.add( new Slot( lo, slot.tmax_ ) );
+                        slots_.remove( index );
+                        slots_.addAll( index, parts );
+                        submitSlots();
+                        return;
+                    }
+                    if ( progress_.nSubmitted_ >= chunkLimit_ ) {
+                        return;
+                    }
+                    slot.future_ = executor_.submit( () -> loadChunk( slot ) );
+                    progress_.nSubmitted_++;
+                }
+            }
+        }
+
+        /**
+         * Reads the content of a single chunk into memory.
+         *
+         * @param  slot  chunk to read
+         * @return   chunk content
+         */
+        private byte[] loadChunk( Slot slot ) throws IOException {
+            boolean isFirst = slot.tmin_.isoTime_.equals( progress_.startIso_ );
+            try ( InputStream in =
+                      openStream( templateUrl_, slot.tmin_, slot.tmax_,
+                                  progress_, isFirst ) ) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[ 64 * 1024 ];
+                for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+                    out.write( buf, 0, n );
+                }
+                return out.toByteArray();
+            }
+        }
+
+        /**
+         * Stops any outstanding requests and releases resources.
+         */
+        private void finish() {
+            done_ = true;
+            for ( Slot slot : slots_ ) {
+                if ( slot.future_ != null ) {
+                    slot.future_.cancel( true );
+                }
+            }
+            slots_.clear();
+            executor_.shutdownNow();
+        }
+    }
+
+    /**
+     * Time range which may have a load request associated with it.
+     */
+    private static class Slot {
+        final Limit tmin_;
+        final Limit tmax_;
+        Future<byte[]> future_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tmin  lower bound time
+         * @param  tmax  upper bound time
+         */
+        Slot( Limit tmin, Limit tmax ) {
+            tmin_ = tmin;
+            tmax_ = tmax;
+        }
+    }
+
+    /**
+     * InputStream wrapper that closes a cache session when the end
+     * of the stream is reached or the stream is closed.
+     */
+    private static class SessionInputStream extends FilterInputStream {
+
+        private final HapiCache.Entry.Session session_;
+        private final Progress progress_;
+
+        /**
+         * Constructor.
+         *
+         * @param  in  base input stream
+         * @param  session  open session to close at end of stream
+         * @param  progress  progress object
+         */
+        SessionInputStream( InputStream in, HapiCache.Entry.Session session,
+                            Progress progress ) {
+            super( in );
+            session_ = session;
+            progress_ = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if ( c < 0 ) {
+                session_.close();
+            }
+            return c;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+            int n = super.read( b, off, len );
+            if ( n < 0 ) {
+                session_.close();
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            progress_.isClosed_ = true;
+            try {
+                super.close();
+            }
+            finally {
+                session_.close();
+            }
+        }
+    }
+
     /**
      * InputStream composed of a sequence of other input streams
      * concatenated together.
@@ -0,0 +1,820 @@
+package uk.ac.starlink.hapi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent disk cache for HAPI data streams.
+ *
+ * <p>Data is stored per request signature, that is the service URL,
+ * dataset, parameter list and any other request parameters apart from
+ * the start and stop times.  For each signature a set of
+ * non-overlapping time intervals is held, each in its own file
+ * containing the HAPI binary-format records (without header) that
+ * the service returned for that interval.
+ * Binary records are fixed length with the timestamp first,
+ * so that they can be filtered by time and concatenated without
+ * parsing the rest of the record.
+ * When a new interval is added, any intervals that it abuts or overlaps
+ * are merged with it, so that repeated requests for growing time ranges
+ * end up as a single file.
+ *
+ * <p>A request for a given time range can then be served from
+ * a mixture of cached intervals and requests to the service for
+ * only the gaps between them; see {@link #getEntry getEntry}.
+ * Only binary-format requests without a header are cached.
+ *
+ * <p>All reads and writes of an entry's data take place within a
+ * {@link Entry.Session}, which has exclusive use of that entry
+ * for as long as it is open, so that concurrent loads of the same
+ * request signature from within a JVM do not interfere with each other.
+ * Exclusion is per cache instance, so the same directory should not
+ * be used by more than one instance at once.
+ */
+public class HapiCache {
+
+    private final File dir_;
+    private final ConcurrentMap<String,Entry> entries_;
+
+    /**
+     * Name of system property that may be used to configure the
+     * default cache directory ({@value}).
+     */
+    public static final String CACHEDIR_PROP = "hapi.cache.dir";
+
+    private static final String SUFFIX = ".hapibin";
+    private static final Pattern INTERVAL_REGEX =
+        Pattern.compile( "(-?[0-9]+)_(-?[0-9]+)" + Pattern.quote( SUFFIX ) );
+    private static final String KEY_FILE = "key.txt";
+    private static final String ISO_MILLIS_FMT =
+        "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    private static HapiCache dfltCache_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.hapi" );
+
+    /**
+     * Constructor.
+     *
+     * @param  dir  directory under which cached data will be stored;
+     *              it will be created if necessary
+     */
+    public HapiCache( File dir ) {
+        dir_ = dir;
+        entries_ = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the directory under which this cache stores its data.
+     *
+     * @return  cache directory
+     */
+    public File getDir() {
+        return dir_;
+    }
+
+    /**
+     * Returns a cache entry for a given HAPI data request, if it is
+     * suitable for caching.
+     * The request must be for binary format data without a header,
+     * and the first parameter must be the fixed-length time parameter.
+     * The same entry instance is returned for all requests with the
+     * same signature.
+     *
+     * @param  requestUrl  HAPI data request URL
+     * @param  params   parameters that the request will return
+     * @return  cache entry, or null if the request cannot be cached
+     */
+    public Entry getEntry( URL requestUrl, HapiParam[] params ) {
+        if ( params == null || params.length == 0 ||
+             params[ 0 ].getType() != HapiType.ISOTIME ) {
+            return null;
+        }
+        Map<String,String> reqParams =
+            new TreeMap<>( HapiService.getRequestParameters( requestUrl ) );
+        if ( ! "binary".equals( reqParams.get( "format" ) ) ||
+             reqParams.containsKey( "include" ) ) {
+            return null;
+        }
+        for ( HapiVersion version : HapiVersion.getStandardVersions() ) {
+            reqParams.remove( version.getStartRequestParam() );
+            reqParams.remove( version.getStopRequestParam() );
+        }
+        ParamReader[] prdrs = new ParamReader[ params.length ];
+        int recSize = 0;
+        for ( int ip = 0; ip < params.length; ip++ ) {
+            prdrs[ ip ] = ParamReader.createReader( params[ ip ] );
+            recSize += prdrs[ ip ].getByteCount();
+        }
+        int timeLeng = prdrs[ 0 ].getByteCount();
+        if ( timeLeng <= 0 || recSize <= 0 ) {
+            return null;
+        }
+        String urlTxt = requestUrl.toString();
+        StringBuffer kbuf = new StringBuffer()
+            .append( urlTxt.substring( 0, urlTxt.indexOf( '?' ) ) );
+        for ( Map.Entry<String,String> entry : reqParams.entrySet() ) {
+            kbuf.append( '\n' )
+                .append( entry.getKey() )
+                .append( '=' )
+                .append( entry.getValue() );
+        }
+        kbuf.append( "\nrecord=" )
+            .append( recSize );
+        String key = kbuf.toString();
+        int recSize0 = recSize;
+        return entries_.computeIfAbsent( key, k ->
+            new Entry( new File( dir_, hash( k ) ), k, recSize0, timeLeng ) );
+    }
+
+    /**
+     * Returns a default cache instance.
+     * Its location is given by the {@value #CACHEDIR_PROP} system property
+     * if defined, or a directory under <code>java.io.tmpdir</code>
+     * otherwise.
+     *
+     * @return  default cache
+     */
+    public static synchronized HapiCache getDefaultCache() {
+        if ( dfltCache_ == null ) {
+            String dirname = null;
+            try {
+                dirname = System.getProperty( CACHEDIR_PROP );
+            }
+            catch ( SecurityException e ) {
+            }
+            File dir = dirname != null && dirname.trim().length() > 0
+                     ? new File( dirname )
+                     : new File( System.getProperty( "java.io.tmpdir" ),
+                                 "hapi-cache" );
+            dfltCache_ = new HapiCache( dir );
+        }
+        return dfltCache_;
+    }
+
+    /**
+     * Converts an ISO-8601 time to Unix milliseconds.
+     *
+     * @param  isoTime  ISO-8601 epoch
+     * @return  milliseconds since the Unix epoch,
+     *          or Long.MIN_VALUE if it can't be parsed
+     */
+    static long isoToMillis( String isoTime ) {
+        double sec = Times.isoToUnixSeconds( isoTime );
+        return Double.isNaN( sec ) ? Long.MIN_VALUE
+                                   : Math.round( sec * 1000 );
+    }
+
+    /**
+     * Formats Unix milliseconds as an ISO-8601 time suitable for
+     * use in HAPI requests.
+     *
+     * @param  millis  milliseconds since the Unix epoch
+     * @return  ISO-8601 time
+     */
+    static String millisToIso( long millis ) {
+        DateFormat fmt = Times.createDateFormat( ISO_MILLIS_FMT );
+        return fmt.format( millis );
+    }
+
+    /**
+     * Returns a hex digest of a string, suitable for use as a filename.
+     *
+     * @param  txt  text
+     * @return  hash string
+     */
+    private static String hash( String txt ) {
+        try {
+            byte[] digest = MessageDigest.getInstance( "SHA-1" )
+                           .digest( txt.getBytes( StandardCharsets.UTF_8 ) );
+            StringBuffer sbuf = new StringBuffer();
+            for ( byte b : digest ) {
+                sbuf.append( String.format( "%02x", b & 0xff ) );
+            }
+            return sbuf.toString();
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            return Integer.toHexString( txt.hashCode() );
+        }
+    }
+
+    /**
+     * Cached data for a single request signature.
+     */
+    public static class Entry {
+
+        private final File dir_;
+        private final String key_;
+        private final int recSize_;
+        private final int timeLeng_;
+        private final Semaphore lock_;
+
+        /**
+         * Constructor.
+         *
+         * @param  dir   directory holding interval files
+         * @param  key   request signature
+         * @param  recSize   number of bytes in each binary record
+         * @param  timeLeng  number of bytes in the timestamp at the
+         *                   start of each record
+         */
+        Entry( File dir, String key, int recSize, int timeLeng ) {
+            dir_ = dir;
+            key_ = key;
+            recSize_ = recSize;
+            timeLeng_ = timeLeng;
+            lock_ = new Semaphore( 1, true );
+        }
+
+        /**
+         * Returns the directory in which this entry's data is stored.
+         *
+         * @return  entry directory
+         */
+        public File getDir() {
+            return dir_;
+        }
+
+        /**
+         * Returns the time intervals currently held by this entry,
+         * in ascending order.
+         *
+         * @return  list of cached intervals
+         */
+        public synchronized List<Interval> getIntervals() {
+            List<Interval> list = new ArrayList<>();
+            File[] files = dir_.listFiles();
+            if ( files != null ) {
+                for ( File f : files ) {
+                    Matcher matcher = INTERVAL_REGEX.matcher( f.getName() );
+                    if ( matcher.matches() ) {
+                        list.add( new Interval( Long
+                                               .parseLong( matcher.group( 1 ) ),
+                                                Long
+                                               .parseLong( matcher.group( 2 ) ),
+                                                f ) );
+                    }
+                }
+            }
+            Collections.sort( list );
+            return list;
+        }
+
+        /**
+         * Opens a session giving exclusive use of this entry,
+         * blocking until any other open session has been closed.
+         * The session must be closed after use.
+         *
+         * @return  new open session
+         * @throws  InterruptedIOException  if interrupted while waiting
+         */
+        public Session openSession() throws IOException {
+            try {
+                lock_.acquire();
+            }
+            catch ( InterruptedException e ) {
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted waiting for "
+                                                + "HAPI cache entry" )
+                     .initCause( e );
+            }
+            return new Session();
+        }
+
+        /**
+         * Adds completed interval files to the cache, and merges them
+         * with any intervals that they touch.
+         *
+         * @param  parts  intervals whose files contain all the records
+         *                for the interval, but are not yet named as
+         *                cache interval files
+         */
+        private void commit( List<Interval> parts ) throws IOException {
+            IOException error = null;
+            for ( Interval part : parts ) {
+                File ivalFile =
+                    new File( dir_, part.tmin_ + "_" + part.tmax_ + SUFFIX );
+                if ( ! part.file_.renameTo( ivalFile ) ) {
+                    part.file_.delete();
+                    error = new IOException( "Failed to write " + ivalFile );
+                }
+            }
+            List<Interval> ivals = getIntervals();
+            List<Interval> run = new ArrayList<>();
+            for ( Interval ival : ivals ) {
+                if ( run.isEmpty() ||
+                     ival.tmin_ <= run.get( run.size() - 1 ).tmax_ ) {
+                    run.add( ival );
+                }
+                else {
+                    merge( run );
+                    run.clear();
+                    run.add( ival );
+                }
+            }
+            merge( run );
+            if ( error != null ) {
+                throw error;
+            }
+        }
+
+        /**
+         * Merges a run of touching or overlapping intervals into one.
+         *
+         * @param  run  ascending list of intervals, each starting no later
+         *              than the end of its predecessor
+         */
+        private void merge( List<Interval> run ) throws IOException {
+            if ( run.size() < 2 ) {
+                return;
+            }
+            long tmin = run.get( 0 ).tmin_;
+            long tmax = tmin;
+            File tmpFile = File.createTempFile( "merge", ".tmp", dir_ );
+            try ( OutputStream out =
+                      new BufferedOutputStream(
+                          new FileOutputStream( tmpFile ) ) ) {
+                byte[] buf = new byte[ 64 * 1024 ];
+                for ( Interval ival : run ) {
+                    long lo = Math.max( tmax, ival.tmin_ );
+                    long hi = Math.max( lo, ival.tmax_ );
+                    try ( InputStream in =
+                              new RangeInputStream(
+                                  new BufferedInputStream(
+                                      new FileInputStream( ival.file_ ) ),
+                                  lo, hi ) ) {
+                        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+                            out.write( buf, 0, n );
+                        }
+                    }
+                    tmax = hi;
+                }
+            }
+            File merged = new File( dir_, tmin + "_" + tmax + SUFFIX );
+            for ( Interval ival : run ) {
+                ival.file_.delete();
+            }
+            if ( ! tmpFile.renameTo( merged ) ) {
+                tmpFile.delete();
+                throw new IOException( "Failed to write " + merged );
+            }
+            logger_.info( "Merged " + run.size() + " HAPI cache intervals to "
+                        + merged );
+        }
+
+        /**
+         * Returns the time of a binary record in Unix milliseconds.
+         *
+         * @param  rec  buffer containing the record
+         * @return  record time, or Double.NaN if it can't be parsed
+         */
+        private double getRecordMillis( byte[] rec ) {
+            int n = timeLeng_;
+            while ( n > 0 && ( rec[ n - 1 ] == 0 || rec[ n - 1 ] == ' ' ) ) {
+                n--;
+            }
+            String iso = new String( rec, 0, n, StandardCharsets.US_ASCII );
+            return 1000 * Times.isoToUnixSeconds( iso );
+        }
+
+        /**
+         * Reads a complete record into a buffer.
+         *
+         * @param  in  input stream
+         * @param  rec  record buffer
+         * @return  true if a record was read, false at end of stream
+         */
+        private static boolean readRecord( InputStream in, byte[] rec )
+                throws IOException {
+            int off = 0;
+            while ( off < rec.length ) {
+                int n = in.read( rec, off, rec.length - off );
+                if ( n < 0 ) {
+                    if ( off == 0 ) {
+                        return false;
+                    }
+                    else {
+                        throw new EOFException( "Truncated HAPI cache record" );
+                    }
+                }
+                off += n;
+            }
+            return true;
+        }
+
+        /**
+         * Input stream that passes only those records of a time-ordered
+         * binary stream that fall within a given time range.
+         */
+        private class RangeInputStream extends InputStream {
+
+            private final InputStream in_;
+            private final long tmin_;
+            private final long tmax_;
+            private final byte[] rec_;
+            private int ipos_;
+            private boolean done_;
+
+            /**
+             * Constructor.
+             *
+             * @param  in  binary record stream
+             * @param  tmin  start time in Unix milliseconds, inclusive
+             * @param  tmax  end time in Unix milliseconds, exclusive
+             */
+            RangeInputStream( InputStream in, long tmin, long tmax ) {
+                in_ = in;
+                tmin_ = tmin;
+                tmax_ = tmax;
+                rec_ = new byte[ recSize_ ];
+                ipos_ = recSize_;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return nextRecord() ? rec_[ ipos_++ ] & 0xff : -1;
+            }
+
+            @Override
+            public int read( byte[] b, int off, int len ) throws IOException {
+                if ( len == 0 ) {
+                    return 0;
+                }
+                if ( ! nextRecord() ) {
+                    return -1;
+                }
+                int n = Math.min( len, recSize_ - ipos_ );
+                System.arraycopy( rec_, ipos_, b, off, n );
+                ipos_ += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in_.close();
+            }
+
+            /**
+             * Ensures that there are unread bytes in the record buffer.
+             *
+             * @return  false if there are no more records in range
+             */
+            private boolean nextRecord() throws IOException {
+                while ( ipos_ >= recSize_ && ! done_ ) {
+                    if ( readRecord( in_, rec_ ) ) {
+                        double t = getRecordMillis( rec_ );
+                        if ( t >= tmax_ ) {
+                            done_ = true;
+                        }
+                        else if ( ! ( t < tmin_ ) ) {
+                            ipos_ = 0;
+                        }
+                    }
+                    else {
+                        done_ = true;
+                    }
+                }
+                return ipos_ < recSize_;
+            }
+        }
+
+        /**
+         * Input stream that writes a copy of the data passing through it
+         * to a temporary file, and commits it to the cache on completion.
+         */
+        private class TeeInputStream extends FilterInputStream {
+
+            private final Session session_;
+            private final File tmpFile_;
+            private final long tmin_;
+            private final long tmax_;
+            private final BooleanSupplier isComplete_;
+            private OutputStream out_;
+
+            /**
+             * Constructor.
+             *
+             * @param  session  session to which completed data is added
+             * @param  in  input stream
+             * @param  tmpFile  temporary file for record copy
+             * @param  tmin  start time in Unix milliseconds, inclusive
+             * @param  tmax  end time in Unix milliseconds, exclusive
+             * @param  isComplete  test for complete data at end of stream
+             */
+            TeeInputStream( Session session, InputStream in, File tmpFile,
+                            long tmin, long tmax, BooleanSupplier isComplete )
+                    throws IOException {
+                super( in );
+                session_ = session;
+                tmpFile_ = tmpFile;
+                tmin_ = tmin;
+                tmax_ = tmax;
+                isComplete_ = isComplete;
+                out_ = new BufferedOutputStream(
+                           new FileOutputStream( tmpFile ) );
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if ( b >= 0 ) {
+                    if ( out_ != null ) {
+                        out_.write( b );
+                    }
+                }
+                else {
+                    finish( true );
+                }
+                return b;
+            }
+
+            @Override
+            public int read( byte[] b, int off, int len ) throws IOException {
+                int n = super.read( b, off, len );
+                if ( n > 0 ) {
+                    if ( out_ != null ) {
+                        out_.write( b, off, n );
+                    }
+                }
+                else if ( n < 0 ) {
+                    finish( true );
+                }
+                return n;
+            }
+
+            @Override
+            public long skip( long n ) throws IOException {
+                byte[] buf = new byte[ (int) Math.min( n, 64 * 1024 ) ];
+                int nr = read( buf, 0, buf.length );
+                return Math.max( nr, 0 );
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                finish( false );
+                super.close();
+            }
+
+            /**
+             * Closes the copy and either passes it to the session
+             * for commit or discards it.
+             *
+             * @param  eof  true if the end of the input has been reached
+             */
+            private void finish( boolean eof ) throws IOException {
+                if ( out_ != null ) {
+                    out_.close();
+                    out_ = null;
+                    boolean isGood = eof && isComplete_.getAsBoolean()
+                                  && tmpFile_.length() % recSize_ == 0;
+                    Interval ival = new Interval( tmin_, tmax_, tmpFile_ );
+                    if ( ! ( isGood && session_.addCompleted( ival ) ) ) {
+                        tmpFile_.delete();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Exclusive use of a cache entry.
+         * Cached data read during a session will not be modified
+         * until it is closed, and data recorded during the session
+         * is only added to the cache, and merged with existing
+         * intervals, when it is closed.
+         */
+        public class Session implements Closeable {
+
+            private final List<Interval> completed_;
+            private boolean closed_;
+
+            /**
+             * Constructor.  Must only be called when the entry lock
+             * has been acquired.
+             */
+            private Session() {
+                completed_ = new ArrayList<>();
+            }
+
+            /**
+             * Returns a list of intervals covering a requested time range
+             * in ascending order.
+             * Intervals with a non-null file are available from the cache,
+             * and those with a null file are gaps that must be requested
+             * from the service.
+             *
+             * @param  tmin  start of range in Unix milliseconds, inclusive
+             * @param  tmax  end of range in Unix milliseconds, exclusive
+             * @return  list of cached and gap intervals covering the range
+             */
+            public List<Interval> plan( long tmin, long tmax ) {
+                List<Interval> plan = new ArrayList<>();
+                long t = tmin;
+                for ( Interval ival : getIntervals() ) {
+                    if ( ival.tmax_ > t && ival.tmin_ < tmax ) {
+                        if ( ival.tmin_ > t ) {
+                            plan.add( new Interval( t, ival.tmin_, null ) );
+                            t = ival.tmin_;
+                        }
+                        long t1 = Math.min( ival.tmax_, tmax );
+                        plan.add( new Interval( t, t1, ival.file_ ) );
+                        t = t1;
+                    }
+                }
+                if ( t < tmax ) {
+                    plan.add( new Interval( t, tmax, null ) );
+                }
+                return plan;
+            }
+
+            /**
+             * Opens a stream containing the cached records that fall
+             * within the range of a cached interval returned by
+             * {@link #plan plan}.
+             *
+             * @param  ival  interval with a non-null file
+             * @return  HAPI binary stream without header
+             */
+            public InputStream openCached( Interval ival ) throws IOException {
+                InputStream in =
+                    new BufferedInputStream(
+                        new FileInputStream( ival.file_ ) );
+                return new RangeInputStream( in, ival.tmin_, ival.tmax_ );
+            }
+
+            /**
+             * Wraps a stream from the service so that the data read from it
+             * will be added to the cache.
+             * The data is only added if the stream is read to the end
+             * and the supplied completion test returns true at that point,
+             * and it is only committed when this session is closed.
+             *
+             * @param  in  HAPI binary stream without header for an interval
+             * @param  tmin  start of interval in Unix milliseconds, inclusive
+             * @param  tmax  end of interval in Unix milliseconds, exclusive
+             * @param  isComplete  tests whether the stream supplied all the
+             *                     data in the interval
+             * @return  input stream supplying the same data as
+             *          <code>in</code>
+             */
+            public InputStream recordStream( InputStream in,
+                                             long tmin, long tmax,
+                                             BooleanSupplier isComplete )
+                    throws IOException {
+                if ( ! dir_.isDirectory() && ! dir_.mkdirs() ) {
+                    logger_.warning( "Can't create HAPI cache directory "
+                                   + dir_ );
+                    return in;
+                }
+                File keyFile = new File( dir_, KEY_FILE );
+                if ( ! keyFile.exists() ) {
+                    try ( OutputStream kout =
+                              new FileOutputStream( keyFile ) ) {
+                        kout.write( key_.getBytes( StandardCharsets.UTF_8 ) );
+                    }
+                }
+                File tmpFile = File.createTempFile( "part", ".tmp", dir_ );
+                tmpFile.deleteOnExit();
+                return new TeeInputStream( this, in, tmpFile, tmin, tmax,
+                                           isComplete );
+            }
+
+            /**
+             * Commits any data recorded during this session to the cache
+             * and relinquishes exclusive use of the entry.
+             * Calling this method more than once has no further effect.
+             */
+            public void close() {
+                List<Interval> completed;
+                synchronized ( this ) {
+                    if ( closed_ ) {
+                        return;
+                    }
+                    closed_ = true;
+                    completed = new ArrayList<>( completed_ );
+                    completed_.clear();
+                }
+                try {
+                    if ( completed.size() > 0 ) {
+                        commit( completed );
+                    }
+                }
+                catch ( IOException e ) {
+                    logger_.log( Level.WARNING, "HAPI cache write failed", e );
+                }
+                finally {
+                    lock_.release();
+                }
+            }
+
+            /**
+             * Records that a completed interval is ready to be added
+             * to the cache.
+             *
+             * @param  ival  interval whose file contains all its records
+             * @return  true if the interval was accepted,
+             *          false if this session has already been closed
+             */
+            private synchronized boolean addCompleted( Interval ival ) {
+                if ( closed_ ) {
+                    return false;
+                }
+                else {
+                    completed_.add( ival );
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Time interval that may be associated with a cache file.
+     */
+    public static class Interval implements Comparable<Interval> {
+
+        final long tmin_;
+        final long tmax_;
+        final File file_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tmin  start time in Unix milliseconds, inclusive
+         * @param  tmax  end time in Unix milliseconds, exclusive
+         * @param  file  file containing cached records, or null
+         */
+        Interval( long tmin, long tmax, File file ) {
+            tmin_ = tmin;
+            tmax_ = tmax;
+            file_ = file;
+        }
+
+        /**
+         * Returns the start time.
+         *
+         * @return  start time in Unix milliseconds, inclusive
+         */
+        public long getMinMillis() {
+            return tmin_;
+        }
+
+        /**
+         * Returns the end time.
+         *
+         * @return  end time in Unix milliseconds, exclusive
+         */
+        public long getMaxMillis() {
+            return tmax_;
+        }
+
+        /**
+         * Indicates whether this interval is available from the cache.
+         *
+         * @return  true for cached data, false for a gap
+         */
+        public boolean isCached() {
+            return file_ != null;
+        }
+
+        public int compareTo( Interval other ) {
+            return Long.compare( this.tmin_, other.tmin_ );
+        }
+
+        @Override
+        public String toString() {
+            return millisToIso( tmin_ ) + " - " + millisToIso( tmax_ )
+                 + ( file_ == null ? " (gap)" : " (cached)" );
+        }
+    }
+}
@@ -122,10 +122,32 @@ public class HapiSource {
     public void streamHapi( TableSink sink, int chunkLimit,
                             IOConsumer<String> limitCallback )
             throws IOException {
+        streamHapi( sink, chunkLimit, limitCallback, 1, null );
+    }
+
+    /**
+     * Streams this object's table to a supplied TableSink,
+     * with parallel and caching options.
+     * The cache is only used if this source was constructed with
+     * a parameter list and a binary-format data URL.
+     *
+     * @param  sink  table destination
+     * @param  chunkLimit  maximum number of chunks allowed
+     * @param  limitCallback  called with a message if chunk limit is exceeded;
+     *                        may be null
+     * @param  parallelism  maximum number of concurrent chunk requests
+     * @param  cache   persistent data cache, or null for no caching
+     */
+    public void streamHapi( TableSink sink, int chunkLimit,
+                            IOConsumer<String> limitCallback,
+                            int parallelism, HapiCache cache )
+            throws IOException {
+        ChunkStreamer streamer =
+            new ChunkStreamer( service_, chunkLimit, limitCallback,
+                               parallelism, cache, params_ );
         if ( params_ == null ) {
             try ( InputStream in =
-                      service_.openChunkedStream( standaloneUrl_, chunkLimit,
-                                                  limitCallback ) ) {
+                      streamer.openMultiChunkStream( standaloneUrl_ ) ) {
                 new HapiTableBuilder().streamStarTable( in, sink, null );
             }
         }
@@ -133,8 +155,7 @@ public class HapiSource {
             HapiTableReader rdr = new HapiTableReader( params_ );
             StarTable meta = rdr.createStarTable( null );
             try ( InputStream in =
-                      service_.openChunkedStream( dataUrl_, chunkLimit,
-                                                  limitCallback ) ) {
+                      streamer.openMultiChunkStream( dataUrl_ ) ) {
                 sink.acceptMetadata( meta );
                 RowSequence rseq =
                     rdr.createRowSequence( in, (Byte) null, format_ );
@@ -42,6 +42,9 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
     private JMenu menu_;
     private Action[] toolActs_;
     private boolean failOnLimit_;
+    private boolean isParallel_;
+    private boolean useCache_;
+    private static final int PARALLELISM = 4;
     private static final Icon ICON_TRUE_ALL = createIcon( "trueAll.png" );
     private static final Icon ICON_FALSE_ALL = createIcon( "falseAll.png" );
     private static final Logger logger_ =
@@ -116,6 +119,20 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
         } );
         menu_.add( failmodeMenuItem );
 
+        JCheckBoxMenuItem parallelMenuItem =
+            new JCheckBoxMenuItem( "Parallel Chunk Requests" );
+        parallelMenuItem.addActionListener( evt -> {
+            isParallel_ = parallelMenuItem.isSelected();
+        } );
+        menu_.add( parallelMenuItem );
+
+        JCheckBoxMenuItem cacheMenuItem =
+            new JCheckBoxMenuItem( "Cache Binary Data" );
+        cacheMenuItem.addActionListener( evt -> {
+            useCache_ = cacheMenuItem.isSelected();
+        } );
+        menu_.add( cacheMenuItem );
+
         JCheckBoxMenuItem headerMenuItem =
             new JCheckBoxMenuItem( "Include Header with Data" );
         headerMenuItem.addActionListener( evt -> {
@@ -162,6 +179,8 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
         HapiSource hsrc = browser_.getHapiSource();
         int chunkLimit = browser_.getChunkLimit();
         boolean failOnLimit = failOnLimit_;
+        int parallelism = isParallel_ ? PARALLELISM : 1;
+        HapiCache cache = useCache_ ? HapiCache.getDefaultCache() : null;
         if ( hsrc != null ) {
             HapiService service = browser_.getService();
             return new TableLoader() {
@@ -176,7 +195,8 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
                             if ( ! isDone_ ) {
                                 isDone_ = true;
                                 return createHapiTable( tfact, hsrc, chunkLimit,
-                                                        failOnLimit );
+                                                        failOnLimit,
+                                                        parallelism, cache );
                             }
                             else {
                                 return null;
@@ -245,12 +265,16 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
      * @param  hsrc   table source
      * @param  chunkLimit  maximum number of chunks to load
      * @param  failOnLimit  action if chunk limit is exceeded
+     * @param  parallelism  maximum number of concurrent chunk requests
+     * @param  cache   persistent data cache, or null
      * @return  random-access table
      */
     private static StarTable createHapiTable( StarTableFactory tfact,
                                               HapiSource hsrc,
                                               int chunkLimit,
-                                              boolean failOnLimit )
+                                              boolean failOnLimit,
+                                              int parallelism,
+                                              HapiCache cache )
             throws IOException {
         RowStore rowStore = tfact.getStoragePolicy().makeRowStore();
         final boolean[] overflowFlag = new boolean[ 1 ];
@@ -263,7 +287,8 @@ public class HapiTableLoadDialog extends AbstractTableLoadDialog {
                 logger_.warning( msg + " - table truncated" );
             }
         };
-        hsrc.streamHapi( rowStore, chunkLimit, limitCallback );
+        hsrc.streamHapi( rowStore, chunkLimit, limitCallback,
+                         parallelism, cache );
         StarTable table = rowStore.getStarTable();
         if ( overflowFlag[ 0 ] ) {
             table.setParameter( new DescribedValue( Tables.QUERY_STATUS_INFO,
@@ -34,8 +34,12 @@ public class HapiTableScheme implements TableScheme, Documented {
         ";parameters=Latitude,Longitude";
     private static final String CHUNKLIMIT_PARAM = "maxChunk";
     private static final String FAILONLIMIT_PARAM = "failOnLimit";
+    private static final String PARALLEL_PARAM = "parallelChunks";
+    private static final String CACHE_PARAM = "cache";
     private static final int CHUNKLIMIT_DFLT = 1;
     private static final boolean FAILONLIMIT_DFLT = false;
+    private static final int PARALLEL_DFLT = 1;
+    private static final boolean CACHE_DFLT = false;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.hapi" );
 
@@ -57,6 +61,8 @@ public class HapiTableScheme implements TableScheme, Documented {
         return "<server-url>;<dataset>;start=<start>;stop=<stop>"
              + "[;" + CHUNKLIMIT_PARAM + "=<n>]"
              + "[;" + FAILONLIMIT_PARAM + "=<true|false>]"
+             + "[;" + PARALLEL_PARAM + "=<n>]"
+             + "[;" + CACHE_PARAM + "=<true|false>]"
              + "[;<key>=<value>...]";
     }
 
@@ -110,6 +116,24 @@ public class HapiTableScheme implements TableScheme, Documented {
             "    if true, the table load will fail,",
             "    but if false as many rows as are available will be loaded.",
             "    </p></dd>",
+            "<dt><code>" + PARALLEL_PARAM + "=&lt;n&gt;</code></dt>",
+            "<dd><p>if the request is divided into chunks,",
+            "    up to <code>&lt;n&gt;</code> chunks will be requested",
+            "    from the service concurrently.",
+            "    Chunks are held in memory until they are read,",
+            "    so this increases memory usage.",
+            "    </p></dd>",
+            "<dt><code>" + CACHE_PARAM + "=&lt;true|false&gt;</code></dt>",
+            "<dd><p>if true, data is stored in a persistent disk cache,",
+            "    and only the parts of the requested time range",
+            "    that have not previously been loaded will be",
+            "    requested from the service.",
+            "    Caching only applies to binary-format requests",
+            "    without a header.",
+            "    The cache directory may be set using the",
+            "    <code>" + HapiCache.CACHEDIR_PROP + "</code>",
+            "    system property.",
+            "    </p></dd>",
             "</dl>",
             "</p>",
             "<p>Some variant syntax is permitted;",
@@ -160,6 +184,8 @@ public class HapiTableScheme implements TableScheme, Documented {
         Map<String,String> extrasMap = new LinkedHashMap<>();
         int chunkLimit = CHUNKLIMIT_DFLT;
         boolean failOnLimit = FAILONLIMIT_DFLT;
+        int parallel = PARALLEL_DFLT;
+        boolean useCache = CACHE_DFLT;
         for ( int i = 2; i < args.length; i++ ) {
             String arg = args[ i ];
             int ieq = arg.indexOf( "=" );
@@ -178,6 +204,18 @@ public class HapiTableScheme implements TableScheme, Documented {
                 else if ( FAILONLIMIT_PARAM.equalsIgnoreCase( key ) ) {
                     failOnLimit = Boolean.parseBoolean( value );
                 }
+                else if ( PARALLEL_PARAM.equalsIgnoreCase( key ) ) {
+                    try {
+                        parallel = Integer.parseInt( value );
+                    }
+                    catch ( NumberFormatException e ) {
+                        String msg = "Bad " + PARALLEL_PARAM + " value";
+                        throw new TableFormatException( msg );
+                    }
+                }
+                else if ( CACHE_PARAM.equalsIgnoreCase( key ) ) {
+                    useCache = Boolean.parseBoolean( value );
+                }
                 else {
                     extrasMap.put( arg.substring( 0, ieq ),
                                    arg.substring( ieq + 1, arg.length() ) );
@@ -190,7 +228,9 @@ public class HapiTableScheme implements TableScheme, Documented {
             }
         }
         return createHapiTable( service, dataset, extrasMap,
-                                chunkLimit, failOnLimit );
+                                chunkLimit, failOnLimit, parallel,
+                                useCache ? HapiCache.getDefaultCache()
+                                         : null );
     }
 
     /**
@@ -201,12 +241,15 @@ public class HapiTableScheme implements TableScheme, Documented {
      * @param  requestParams   request parameters supplied explicitly
      * @param  chunkLimit  chunk limit
      * @param  failOnLimit  chunk overflow policy
+     * @param  parallel  maximum number of concurrent chunk requests
+     * @param  cache   persistent data cache, or null
      */
     private static StarTable createHapiTable( HapiService service,
                                               String dataset,
                                               Map<String,String> requestParams,
                                               int chunkLimit,
-                                              boolean failOnLimit )
+                                              boolean failOnLimit,
+                                              int parallel, HapiCache cache )
             throws IOException {
         String paramlist = requestParams.get( "parameters" );
 
@@ -308,11 +351,13 @@ public class HapiTableScheme implements TableScheme, Documented {
                 logger_.warning( msg + " - table truncated" );
             }
         };
+        ChunkStreamer streamer =
+            new ChunkStreamer( service, chunkLimit, limitCallback, parallel,
+                               cache, infoHdr.getParameters() );
         final IOSupplier<RowSequence> rseqSupplier = () -> {
             InputStream in =
-                new BufferedInputStream( service
-                                        .openChunkedStream( dataUrl, chunkLimit,
-                                                            limitCallback ) );
+                new BufferedInputStream( streamer
+                                        .openMultiChunkStream( dataUrl ) );
             return includeHeader
                 ? rdr.createRowSequenceUsingHeader( in )
                 : rdr.createRowSequence( in, (Byte) null, format );
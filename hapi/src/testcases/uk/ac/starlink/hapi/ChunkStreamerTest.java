@@ -0,0 +1,358 @@
+package uk.ac.starlink.hapi;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONObject;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.TestCase;
+
+public class ChunkStreamerTest extends TestCase {
+
+    private static final int TIME_LENG = 24;
+    private static final int REC_SIZE = TIME_LENG + 8;
+    private static final long HOUR = 3600 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long T0 = HapiCache.isoToMillis( "2020-01-01" );
+
+    private StubServer server_;
+    private HapiService service_;
+    private HapiParam[] params_;
+
+    public ChunkStreamerTest() {
+        Logger.getLogger( "uk.ac.starlink.hapi" ).setLevel( Level.WARNING );
+    }
+
+    @Override
+    public void setUp() throws IOException {
+        server_ = new StubServer( 2 * DAY );
+        service_ = new HapiService( server_.getBaseUrl() );
+        params_ = new HapiParam[] {
+            HapiParam.fromJson( new JSONObject( "{name: 'Time',"
+                                              + " type: 'isotime',"
+                                              + " length: 24}" ) ),
+            HapiParam.fromJson( new JSONObject( "{name: 'hour',"
+                                              + " type: 'double'}" ) ),
+        };
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        server_.close();
+    }
+
+    public void testParallel() throws IOException {
+        URL url = dataUrl( 0, 11 * DAY );
+        byte[] serial =
+            readAll( new ChunkStreamer( service_, 100, null )
+                    .openMultiChunkStream( url ) );
+        checkRecords( serial, 0, 11 * DAY );
+        for ( int np : new int[] { 2, 5 } ) {
+            byte[] parallel =
+                readAll( new ChunkStreamer( service_, 100, null, np,
+                                            null, params_ )
+                        .openMultiChunkStream( url ) );
+            assertArrayEquals( serial, parallel );
+        }
+
+        /* Chunk limit still applies. */
+        String[] limitMsg = new String[ 1 ];
+        byte[] truncated =
+            readAll( new ChunkStreamer( service_, 3, msg -> limitMsg[ 0 ] = msg,
+                                        4, null, params_ )
+                    .openMultiChunkStream( url ) );
+        assertNotNull( limitMsg[ 0 ] );
+        assertTrue( truncated.length > 0 );
+        assertTrue( truncated.length < serial.length );
+        checkRecords( truncated, 0, truncated.length / REC_SIZE * HOUR );
+    }
+
+    public void testCache() throws IOException {
+        File dir = File.createTempFile( "hapicache", ".d" );
+        dir.delete();
+        try {
+            HapiCache cache = new HapiCache( dir );
+            ChunkStreamer streamer =
+                new ChunkStreamer( service_, 100, null, 3, cache, params_ );
+
+            /* First load comes from the service. */
+            server_.nrec_.set( 0 );
+            checkRecords( readAll( streamer
+                                  .openMultiChunkStream( dataUrl( 0, 5*DAY ) ) ),
+                          0, 5 * DAY );
+            assertEquals( 5 * 24, server_.nrec_.get() );
+
+            /* Overlapping load only requests the new interval. */
+            server_.nrec_.set( 0 );
+            checkRecords( readAll( streamer
+                                  .openMultiChunkStream( dataUrl( 3 * DAY,
+                                                                  8 * DAY ) ) ),
+                          3 * DAY, 8 * DAY );
+            assertEquals( 3 * 24, server_.nrec_.get() );
+
+            /* Contained load requests nothing. */
+            server_.nrec_.set( 0 );
+            checkRecords( readAll( streamer
+                                  .openMultiChunkStream( dataUrl( DAY + HOUR,
+                                                                  7 * DAY ) ) ),
+                          DAY + HOUR, 7 * DAY );
+            assertEquals( 0, server_.nrec_.get() );
+
+            /* Intervals have been merged. */
+            HapiCache.Entry entry =
+                cache.getEntry( dataUrl( 0, DAY ), params_ );
+            List<HapiCache.Interval> ivals = entry.getIntervals();
+            assertEquals( 1, ivals.size() );
+            assertEquals( T0, ivals.get( 0 ).getMinMillis() );
+            assertEquals( T0 + 8 * DAY, ivals.get( 0 ).getMaxMillis() );
+
+            /* Non-binary requests are not cached. */
+            Map<String,String> csvParams = new LinkedHashMap<>();
+            csvParams.put( "format", "csv" );
+            assertNull( cache.getEntry( service_
+                                       .createQuery( HapiEndpoint.DATA,
+                                                     csvParams ),
+                                        params_ ) );
+        }
+        finally {
+            for ( File sub : dir.listFiles() ) {
+                for ( File f : sub.listFiles() ) {
+                    f.delete();
+                }
+                sub.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testCacheConcurrency() throws Exception {
+        File dir = File.createTempFile( "hapicache", ".d" );
+        dir.delete();
+        try {
+            HapiCache cache = new HapiCache( dir );
+            URL url = dataUrl( 0, 6 * DAY );
+            assertSame( cache.getEntry( url, params_ ),
+                        cache.getEntry( dataUrl( DAY, 2 * DAY ), params_ ) );
+
+            /* Concurrent loads of the same data do not interfere,
+             * and only one of them goes to the service. */
+            server_.nrec_.set( 0 );
+            int nthread = 4;
+            ExecutorService executor = Executors.newFixedThreadPool( nthread );
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for ( int i = 0; i < nthread; i++ ) {
+                futures.add( executor.submit( () ->
+                    readAll( new ChunkStreamer( service_, 100, null, 2,
+                                                cache, params_ )
+                            .openMultiChunkStream( url ) ) ) );
+            }
+            for ( Future<byte[]> future : futures ) {
+                checkRecords( future.get(), 0, 6 * DAY );
+            }
+            executor.shutdown();
+            assertEquals( 6 * 24, server_.nrec_.get() );
+            assertEquals( 1, cache.getEntry( url, params_ )
+                                  .getIntervals().size() );
+
+            /* A stream closed before the end releases the entry. */
+            try ( InputStream in =
+                      new ChunkStreamer( service_, 100, null, 1,
+                                         cache, params_ )
+                     .openMultiChunkStream( dataUrl( 0, 9 * DAY ) ) ) {
+                assertTrue( in.read() >= 0 );
+            }
+            checkRecords( readAll( new ChunkStreamer( service_, 100, null, 1,
+                                                      cache, params_ )
+                                  .openMultiChunkStream( url ) ),
+                          0, 6 * DAY );
+        }
+        finally {
+            deleteCache( dir );
+        }
+    }
+
+    public void testCacheChunkLimit() throws IOException {
+        for ( int np : new int[] { 1, 3 } ) {
+            File dir = File.createTempFile( "hapicache", ".d" );
+            dir.delete();
+            try {
+                HapiCache cache = new HapiCache( dir );
+                readAll( new ChunkStreamer( service_, 100, null, 1,
+                                            cache, params_ )
+                        .openMultiChunkStream( dataUrl( 2 * DAY, 3 * DAY ) ) );
+
+                /* The chunk limit applies to the whole request,
+                 * not to each of the gaps either side of the
+                 * cached interval. */
+                String[] limitMsg = new String[ 1 ];
+                byte[] data =
+                    readAll( new ChunkStreamer( service_, 1,
+                                                msg -> limitMsg[ 0 ] = msg,
+                                                np, cache, params_ )
+                            .openMultiChunkStream( dataUrl( 0, 5 * DAY ) ) );
+                assertNotNull( limitMsg[ 0 ] );
+                checkRecords( data, 0, 3 * DAY );
+            }
+            finally {
+                deleteCache( dir );
+            }
+        }
+    }
+
+    private static void deleteCache( File dir ) {
+        File[] subs = dir.listFiles();
+        if ( subs != null ) {
+            for ( File sub : subs ) {
+                for ( File f : sub.listFiles() ) {
+                    f.delete();
+                }
+                sub.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private URL dataUrl( long t0, long t1 ) {
+        Map<String,String> params = new LinkedHashMap<>();
+        params.put( "dataset", "test" );
+        params.put( "start", HapiCache.millisToIso( T0 + t0 ) );
+        params.put( "stop", HapiCache.millisToIso( T0 + t1 ) );
+        params.put( "format", "binary" );
+        return service_.createQuery( HapiEndpoint.DATA, params );
+    }
+
+    private static byte[] readAll( InputStream in ) throws IOException {
+        try ( InputStream in1 = in ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtils.copy( in1, out );
+            return out.toByteArray();
+        }
+    }
+
+    private void checkRecords( byte[] data, long t0, long t1 ) {
+        assertEquals( 0, data.length % REC_SIZE );
+        int nrec = data.length / REC_SIZE;
+        assertEquals( ( t1 - t0 ) / HOUR, nrec );
+        ByteBuffer bbuf = ByteBuffer.wrap( data )
+                                    .order( ByteOrder.LITTLE_ENDIAN );
+        for ( int ir = 0; ir < nrec; ir++ ) {
+            double hour = bbuf.getDouble( ir * REC_SIZE + TIME_LENG );
+            assertEquals( ( t0 / HOUR ) + ir, (long) hour );
+        }
+    }
+
+    /**
+     * Minimal HAPI data service serving one binary record per hour,
+     * which rejects requests longer than a given duration with 1408.
+     */
+    private static class StubServer {
+        final ServerSocket serverSocket_;
+        final long maxMillis_;
+        final AtomicInteger nrec_;
+
+        StubServer( long maxMillis ) throws IOException {
+            maxMillis_ = maxMillis;
+            nrec_ = new AtomicInteger();
+            serverSocket_ =
+                new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+            Thread th = new Thread( () -> {
+                while ( ! serverSocket_.isClosed() ) {
+                    try {
+                        Socket sock = serverSocket_.accept();
+                        Thread h = new Thread( () -> serve( sock ) );
+                        h.setDaemon( true );
+                        h.start();
+                    }
+                    catch ( IOException e ) {
+                        // closed
+                    }
+                }
+            } );
+            th.setDaemon( true );
+            th.start();
+        }
+
+        String getBaseUrl() {
+            return "http://localhost:" + serverSocket_.getLocalPort() + "/hapi";
+        }
+
+        void close() throws IOException {
+            serverSocket_.close();
+        }
+
+        private void serve( Socket sock ) {
+            try ( Socket s = sock ) {
+                BufferedReader rdr =
+                    new BufferedReader(
+                        new InputStreamReader( s.getInputStream(),
+                                               StandardCharsets.US_ASCII ) );
+                String reqLine = rdr.readLine();
+                for ( String line; ( line = rdr.readLine() ) != null &&
+                                   line.length() > 0; ) {
+                }
+                if ( reqLine == null ) {
+                    return;
+                }
+                URL url = new URL( "http://localhost"
+                                 + reqLine.split( " " )[ 1 ] );
+                Map<String,String> params =
+                    HapiService.getRequestParameters( url );
+                long t0 = HapiCache.isoToMillis( params.get( "start" ) );
+                long t1 = HapiCache.isoToMillis( params.get( "stop" ) );
+                OutputStream out = s.getOutputStream();
+                if ( t1 - t0 > maxMillis_ ) {
+                    out.write( ( "HTTP/1.1 400 HAPI error 1408: too much time"
+                               + " or data requested\r\n"
+                               + "Content-Length: 0\r\n"
+                               + "Connection: close\r\n\r\n" )
+                              .getBytes( StandardCharsets.US_ASCII ) );
+                }
+                else {
+                    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                    ByteBuffer dbuf =
+                        ByteBuffer.allocate( 8 )
+                                  .order( ByteOrder.LITTLE_ENDIAN );
+                    long h0 = ( t0 - T0 + HOUR - 1 ) / HOUR;
+                    for ( long h = h0; T0 + h * HOUR < t1; h++ ) {
+                        String iso = HapiCache.millisToIso( T0 + h * HOUR );
+                        bout.write( iso.getBytes( StandardCharsets.US_ASCII ) );
+                        dbuf.clear();
+                        dbuf.putDouble( h );
+                        bout.write( dbuf.array() );
+                        nrec_.incrementAndGet();
+                    }
+                    out.write( ( "HTTP/1.1 200 OK\r\n"
+                               + "Content-Type: application/octet-stream\r\n"
+                               + "Content-Length: " + bout.size() + "\r\n"
+                               + "Connection: close\r\n\r\n" )
+                              .getBytes( StandardCharsets.US_ASCII ) );
+                    bout.writeTo( out );
+                }
+                out.flush();
+            }
+            catch ( IOException e ) {
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package uk.ac.starlink.parquet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileAttribute;
@@ -13,11 +14,15 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.apache.parquet.column.ColumnDescriptor;
 import org.apache.parquet.column.ColumnReadStore;
@@ -39,8 +44,24 @@ import uk.ac.starlink.table.storage.StreamColumnStore;
 import uk.ac.starlink.util.IOSupplier;
 
 /**
- * ParquetStarTable implementation that does a parallel read of
- * all the column data at construction time.
+ * ParquetStarTable implementation that caches column data in
+ * local scratch files for random access.
+ *
+ * <p>By default all the column data is read in parallel at
+ * construction time.  In <em>lazy</em> mode, only the metadata is
+ * read at construction time, and each column's data is read into the
+ * cache the first time that any of its cells is accessed.
+ * This makes table load effectively instantaneous, and means that
+ * the time and scratch storage required is proportional only to the
+ * columns that are actually used, which can be a big win for wide
+ * tables of which only a few columns are of interest.
+ * However, the first access to each column blocks until that column
+ * has been read.  Clients that must not block, such as GUI components
+ * reading cells on the event dispatch thread, can use the
+ * {@link #isColumnCached} and {@link #cacheColumn} methods
+ * to find out whether a column is ready and to request it
+ * in the background if not.
+ * The reader thread pool is shut down once all columns have been read.
  *
  * @author   Mark Taylor
  * @since    2 Mar 2021
@@ -50,6 +71,9 @@ public class CachedParquetStarTable extends ParquetStarTable {
     private final ColumnStoreStarTable dataTable_;
     private final Path basePath_;
     private final Collection<File> tmpFiles_; 
+    private final ExecutorService lazyExecutor_;
+    private final LazyColumnStore[] lazyStores_;
+    private final AtomicInteger nUnread_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.parquet" );
 
@@ -62,10 +86,27 @@ public class CachedParquetStarTable extends ParquetStarTable {
      *                   if &lt;=0, a value is chosen based on the number
      *                   of available processors
      */
-    @SuppressWarnings("this-escape")
     public CachedParquetStarTable( IOSupplier<ParquetFileReader> pfrSupplier,
                                    Config config, int nthread )
             throws IOException {
+        this( pfrSupplier, config, nthread, false );
+    }
+
+    /**
+     * Constructor with optional lazy column reads.
+     *
+     * @param  pfrSupplier  access to parquet data file
+     * @param  config   table reading configuration
+     * @param  nthread   number of threads to use for concurrent column reads;
+     *                   if &lt;=0, a value is chosen based on the number
+     *                   of available processors
+     * @param  lazy   if false, all column data is read at construction time;
+     *                if true, each column is read when first required
+     */
+    @SuppressWarnings("this-escape")
+    public CachedParquetStarTable( IOSupplier<ParquetFileReader> pfrSupplier,
+                                   Config config, int nthread, boolean lazy )
+            throws IOException {
         super( pfrSupplier, config );
 
         /* Determine number of read threads. */
@@ -79,7 +120,34 @@ public class CachedParquetStarTable extends ParquetStarTable {
         basePath_.toFile().deleteOnExit();
         tmpFiles_ =
             Collections.newSetFromMap( new ConcurrentHashMap<File,Boolean>() );
-        logger_.info( "Will cache parquet data in " + basePath_ );
+        logger_.info( "Will cache parquet data " + ( lazy ? "lazily " : "" )
+                    + "in " + basePath_ );
+        int ncol = getColumnCount();
+
+        /* In lazy mode, set up column stores that will read their
+         * data on demand using a thread pool that persists for the
+         * lifetime of this table. */
+        if ( lazy ) {
+            lazyExecutor_ = Executors.newFixedThreadPool( nthread, r -> {
+                Thread thread = new Thread( r, "Parquet column reader" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            nUnread_ = new AtomicInteger( ncol );
+            if ( ncol == 0 ) {
+                lazyExecutor_.shutdown();
+            }
+            lazyStores_ = new LazyColumnStore[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                lazyStores_[ icol ] = new LazyColumnStore( icol );
+            }
+            dataTable_ = new ColumnStoreStarTable( this, getRowCount(),
+                                                   lazyStores_ );
+            return;
+        }
+        lazyExecutor_ = null;
+        lazyStores_ = null;
+        nUnread_ = null;
 
         /* Submit one job to read each column.  Parquet is column-oriented,
          * so this makes sense in terms of file access.  The ExecutorService
@@ -87,7 +155,6 @@ public class CachedParquetStarTable extends ParquetStarTable {
          * is executing concurrently. */
         ExecutorService executor = Executors.newFixedThreadPool( nthread );
         List<Future<ColumnStore>> futures = new ArrayList<>();
-        int ncol = getColumnCount();
         for ( int icol = 0; icol < ncol; icol++ ) {
             final int ic = icol;
             Callable<ColumnStore> reader = () -> readColumn( ic );
@@ -138,12 +205,63 @@ public class CachedParquetStarTable extends ParquetStarTable {
         return dataTable_.getRow( irow );
     }
 
+    /**
+     * Indicates whether the data for a given column is available
+     * without waiting for it to be read from the parquet file.
+     * This is always true unless the table is in lazy mode.
+     *
+     * @param  icol  column index
+     * @return  true if reading the column's cells will not block
+     *          waiting for its data to be cached
+     */
+    public boolean isColumnCached( int icol ) {
+        return lazyStores_ == null || lazyStores_[ icol ].isCached();
+    }
+
+    /**
+     * Starts reading the data for a given column into the cache
+     * in the background if it is not already there, and arranges
+     * for a callback when it has been read.
+     * This method does not block.
+     * The callback is invoked on completion whether or not
+     * the read succeeded; in the case of failure
+     * a subsequent attempt to read the column's cells will retry the read.
+     * If the column is already cached, the callback is invoked
+     * synchronously.
+     *
+     * @param  icol  column index
+     * @param  onCached  callback invoked, possibly on a reader thread,
+     *                   when the read has completed
+     */
+    public void cacheColumn( int icol, Runnable onCached ) {
+        if ( lazyStores_ != null ) {
+            try {
+                lazyStores_[ icol ].startRead( onCached );
+            }
+            catch ( IOException e ) {
+                onCached.run();
+            }
+        }
+        else {
+            onCached.run();
+        }
+    }
+
     @Override
     public void close() throws IOException {
         try {
             super.close();
         }
         finally {
+            if ( lazyExecutor_ != null ) {
+
+                /* Cancel pending reads so that nobody waits for them. */
+                for ( Runnable task : lazyExecutor_.shutdownNow() ) {
+                    if ( task instanceof Future ) {
+                        ((Future<?>) task).cancel( false );
+                    }
+                }
+            }
             deleteFiles();
         }
     }
@@ -164,20 +282,56 @@ public class CachedParquetStarTable extends ParquetStarTable {
         Codec codec = Codec.getCodec( cinfo );
         int itemSize = codec.getItemSize();
         boolean fixedSize = itemSize >= 0;
-        File dataFile = createTempFile( icol, "dat" );
-        tmpFiles.add( dataFile );
-        final ColumnStore colStore;
-        if ( fixedSize ) {
-            colStore = new StreamColumnStore( codec, dataFile );
+        ColumnStore colStore = null;
+        try {
+            File dataFile = createTempFile( icol, "dat" );
+            tmpFiles.add( dataFile );
+            if ( fixedSize ) {
+                colStore = new StreamColumnStore( codec, dataFile );
+            }
+            else {
+                File indexFile = createTempFile( icol, "idx" );
+                tmpFiles.add( indexFile );
+                colStore =
+                    new IndexedStreamColumnStore( codec, dataFile, indexFile );
+            }
+            logger_.config( "Caching data for column " + cinfo.getName()
+                          + " " + tmpFiles );
+            readColumnData( incol, cinfo, colStore );
+            colStore.endCells();
+            return colStore;
         }
-        else {
-            File indexFile = createTempFile( icol, "idx" );
-            tmpFiles.add( indexFile );
-            colStore =
-                new IndexedStreamColumnStore( codec, dataFile, indexFile );
+
+        /* On failure, discard any partially written files, so that
+         * the column can be read again from scratch if required. */
+        catch ( IOException | RuntimeException | Error e ) {
+            if ( colStore != null ) {
+                try {
+                    colStore.endCells();
+                }
+                catch ( IOException e2 ) {
+                    // never mind
+                }
+            }
+            for ( File file : tmpFiles ) {
+                file.delete();
+                tmpFiles_.remove( file );
+            }
+            throw e;
         }
-        logger_.config( "Caching data for column " + cinfo.getName()
-                      + " " + tmpFiles );
+    }
+
+    /**
+     * Reads the data for a column from this table's parquet file
+     * into a given column store.
+     *
+     * @param  incol  input column
+     * @param  cinfo  column metadata
+     * @param  colStore  column store to populate; endCells is not called
+     */
+    private void readColumnData( InputColumn<?> incol, ColumnInfo cinfo,
+                                 ColumnStore colStore )
+            throws IOException {
 
         /* Prepare the ParquetFileReader so that it only reads the
          * metadata for the column under consideration.  If you don't do
@@ -198,7 +352,7 @@ public class CachedParquetStarTable extends ParquetStarTable {
         ParquetFileReader pfr = getParquetFileReader();
         pfr.setRequestedSchema( projSchema );
 
-        /* Read the column data into the storage, and return it. */
+        /* Read the column data into the storage. */
         ColumnDescriptor cdesc = incol.getColumnDescriptor();
         final int cdefmax = cdesc.getMaxDefinitionLevel();
         for ( PageReadStore pageStore;
@@ -224,8 +378,6 @@ public class CachedParquetStarTable extends ParquetStarTable {
                 colStore.acceptCell( decoder.getValue() );
             }
         }
-        colStore.endCells();
-        return colStore;
     }
 
     /**
@@ -265,6 +417,196 @@ public class CachedParquetStarTable extends ParquetStarTable {
         }
     }
 
+    /**
+     * ColumnStore implementation that reads the data for one of this
+     * table's columns into a cached column store the first time that
+     * any of its values is requested.
+     * The read is done on this table's lazy executor thread pool;
+     * concurrent requests for the same column wait for the same read.
+     * A failed read is not remembered, so a later request will retry it.
+     */
+    private class LazyColumnStore implements ColumnStore {
+
+        private final int icol_;
+        private final List<Runnable> callbacks_;
+        private Future<ColumnStore> future_;
+
+        /**
+         * Constructor.
+         *
+         * @param  icol  index of the column in this table
+         */
+        LazyColumnStore( int icol ) {
+            icol_ = icol;
+            callbacks_ = new ArrayList<Runnable>();
+        }
+
+        /**
+         * Throws UnsupportedOperationException; this store is read-only.
+         */
+        public void acceptCell( Object value ) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void endCells() {
+        }
+
+        public uk.ac.starlink.table.storage.ColumnReader createReader() {
+            final long nrow = getRowCount();
+            return new uk.ac.starlink.table.storage.ColumnReader() {
+                uk.ac.starlink.table.storage.ColumnReader base_;
+                public long getRowCount() {
+                    return nrow;
+                }
+                public Object getObjectValue( long ix ) throws IOException {
+                    return getBase().getObjectValue( ix );
+                }
+                public double getDoubleValue( long ix ) throws IOException {
+                    return getBase().getDoubleValue( ix );
+                }
+                public int getIntValue( long ix ) throws IOException {
+                    return getBase().getIntValue( ix );
+                }
+                public long getLongValue( long ix ) throws IOException {
+                    return getBase().getLongValue( ix );
+                }
+                public boolean getBooleanValue( long ix ) throws IOException {
+                    return getBase().getBooleanValue( ix );
+                }
+                @Override
+                public boolean isNullValue( long ix ) throws IOException {
+                    return getBase().isNullValue( ix );
+                }
+                private uk.ac.starlink.table.storage.ColumnReader getBase()
+                        throws IOException {
+                    if ( base_ == null ) {
+                        base_ = getStore().createReader();
+                    }
+                    return base_;
+                }
+            };
+        }
+
+        /**
+         * Indicates whether this column's data has been cached.
+         *
+         * @return  true iff reads will not block
+         */
+        synchronized boolean isCached() {
+            return future_ != null && future_.isDone();
+        }
+
+        /**
+         * Ensures that a read of this column's data has been started,
+         * and optionally arranges for a callback when it completes.
+         * If the column has already been read the callback is
+         * invoked immediately.
+         *
+         * @param  onDone  callback invoked on completion, successful or not;
+         *                 may be null
+         * @return  future yielding the populated column store
+         */
+        Future<ColumnStore> startRead( Runnable onDone ) throws IOException {
+            Future<ColumnStore> future;
+            boolean isDone;
+            synchronized ( this ) {
+                if ( future_ == null ) {
+                    FutureTask<ColumnStore> task =
+                            new FutureTask<ColumnStore>( () ->
+                                                         readColumn( icol_ ) ) {
+                        @Override
+                        protected void done() {
+                            readDone( this );
+                        }
+                    };
+                    try {
+                        lazyExecutor_.execute( task );
+                    }
+                    catch ( RejectedExecutionException e ) {
+                        throw new IOException( "Table closed", e );
+                    }
+                    future_ = task;
+                }
+                future = future_;
+                isDone = future.isDone();
+                if ( onDone != null && ! isDone ) {
+                    callbacks_.add( onDone );
+                }
+            }
+            if ( onDone != null && isDone ) {
+                onDone.run();
+            }
+            return future;
+        }
+
+        /**
+         * Called when a read task has completed.
+         * If it succeeded, the count of unread columns is updated;
+         * if it failed, the read is forgotten so that subsequent
+         * requests will try again.
+         *
+         * @param  task  completed task
+         */
+        private void readDone( Future<ColumnStore> task ) {
+            boolean ok;
+            try {
+                task.get();
+                ok = true;
+            }
+            catch ( InterruptedException | ExecutionException
+                    | CancellationException e ) {
+                ok = false;
+            }
+            List<Runnable> callbacks;
+            synchronized ( this ) {
+                if ( ! ok && future_ == task ) {
+                    future_ = null;
+                }
+                callbacks = new ArrayList<>( callbacks_ );
+                callbacks_.clear();
+            }
+            if ( ok && nUnread_.decrementAndGet() == 0 ) {
+                logger_.config( "All columns cached" );
+                lazyExecutor_.shutdown();
+            }
+            for ( Runnable callback : callbacks ) {
+                callback.run();
+            }
+        }
+
+        /**
+         * Returns the populated column store for this column,
+         * reading it if necessary.
+         * This may block until the read has completed.
+         * When the last unread column has been read,
+         * the reader thread pool is shut down.
+         * If the read fails, it will be attempted again next time.
+         *
+         * @return   column store ready for reading
+         */
+        private ColumnStore getStore() throws IOException {
+            Future<ColumnStore> future = startRead( null );
+            try {
+                return future.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted" )
+                     .initCause( e );
+            }
+            catch ( CancellationException e ) {
+                throw new IOException( "Table closed", e );
+            }
+            catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException
+                    ? (IOException) cause
+                    : new IOException( "Column read failure", cause );
+            }
+        }
+    }
+
     /**
      * Returns the default number of read threads if not specified explicitly.
      *
@@ -63,11 +63,13 @@ public class ParquetIO {
             if ( nThread <= 0 ) {
                 nThread = CachedParquetStarTable.getDefaultThreadCount();
             }
+            boolean lazy = builder.getLazyCols();
             logger_.info( "Caching parquet column data for " + datsrc
-                        + " with " + nThread + " threads" );
+                        + " with " + nThread + " threads"
+                        + ( lazy ? " on demand" : "" ) );
             try {
                 return new CachedParquetStarTable( pfrSupplier, config,
-                                                   nThread );
+                                                   nThread, lazy );
             }
             catch ( IOException e ) {
                 logger_.log( Level.WARNING,
@@ -55,6 +55,7 @@ import uk.ac.starlink.votable.VOStarTable;
 public class ParquetTableBuilder extends DocumentedTableBuilder {
 
     private Boolean cacheCols_;
+    private boolean lazyCols_;
     private Boolean votMeta_;
     private Boolean mamlMeta_;
     private int nThread_;
@@ -64,11 +65,24 @@ public class ParquetTableBuilder extends DocumentedTableBuilder {
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.parquet" );
 
+    /**
+     * Name of system property ({@value}) giving the default value
+     * of the <code>lazycols</code> configuration option.
+     */
+    public static final String LAZYCOLS_PROP = "parquet.lazycols";
+
     /**
      * Constructor.
      */
     public ParquetTableBuilder() {
         super( new String[] { "parquet", "parq" } );
+        try {
+            lazyCols_ =
+                Boolean.parseBoolean( System.getProperty( LAZYCOLS_PROP ) );
+        }
+        catch ( SecurityException e ) {
+            lazyCols_ = false;
+        }
     }
 
     public String getFormatName() {
@@ -213,6 +227,49 @@ public class ParquetTableBuilder extends DocumentedTableBuilder {
         return cacheCols_;
     }
 
+    /**
+     * Configures whether cached column data is read lazily.
+     * If true, a cached table reads only the metadata at load time,
+     * and the data for each column is read into the cache
+     * the first time it is used.
+     *
+     * @param  lazyCols  true for on-demand column caching
+     */
+    @ConfigMethod(
+        property = "lazycols",
+        doc = "<p>Controls when column data is read if the columns are\n"
+            + "cached (see the <code>cachecols</code> option).\n"
+            + "If <code>false</code>, all the column data is read\n"
+            + "when the table is loaded.\n"
+            + "If <code>true</code>, only the metadata is read at load time,\n"
+            + "and each column's data is read into the cache\n"
+            + "the first time any of its values is required.\n"
+            + "This makes loading of wide tables much faster,\n"
+            + "and means that time and scratch disk space are only used\n"
+            + "for the columns that are actually accessed.\n"
+            + "When this option is set, columns will also be cached\n"
+            + "where random access is required regardless of file size,\n"
+            + "unless the storage policy prefers memory.\n"
+            + "The default value is <code>false</code>, unless the\n"
+            + "<code>" + LAZYCOLS_PROP + "</code> system property\n"
+            + "is set to <code>true</code>.\n"
+            + "</p>",
+        example = "true"
+    )
+    public void setLazyCols( boolean lazyCols ) {
+        lazyCols_ = lazyCols;
+    }
+
+    /**
+     * Indicates whether cached column data is read lazily.
+     *
+     * @return  true for on-demand column caching,
+     *          false for caching all columns at load time
+     */
+    public boolean getLazyCols() {
+        return lazyCols_;
+    }
+
     /**
      * Sets the number of read threads to use when caching column data.
      * This is the value passed to the {@link CachedParquetStarTable}
@@ -443,7 +500,8 @@ public class ParquetTableBuilder extends DocumentedTableBuilder {
             if ( StoragePolicy.ADAPTIVE.equals( storage ) ) {
                 if ( datsrc instanceof FileDataSource ) {
                     long len = ((FileDataSource) datsrc).getFile().length();
-                    return len > 0.5 * AdaptiveByteStore.getDefaultLimit();
+                    return lazyCols_
+                        || len > 0.5 * AdaptiveByteStore.getDefaultLimit();
                 }
             }
             return false;
@@ -2,6 +2,9 @@ package uk.ac.starlink.parquet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -42,6 +45,58 @@ public class ExampleTest extends TestCase {
         }
     }
 
+    public void testLazyColumns() throws Exception {
+        File file = URLUtils
+                   .urlToFile( ExampleTest.class
+                              .getResource( "example-none.parquet" )
+                              .toString() );
+        IOSupplier<ParquetFileReader> pfrSupplier0 = getPfrSupplier( file );
+        AtomicBoolean broken = new AtomicBoolean();
+        IOSupplier<ParquetFileReader> pfrSupplier = () -> {
+            if ( broken.get() ) {
+                throw new IOException( "broken" );
+            }
+            return pfrSupplier0.get();
+        };
+        ParquetStarTable.Config config = new ParquetStarTable.Config() {
+            public boolean includeUnsupportedColumns() {
+                return false;
+            }
+        };
+        CachedParquetStarTable table =
+            new CachedParquetStarTable( pfrSupplier, config, 2, true );
+        assertFalse( table.isColumnCached( 1 ) );
+
+        /* Background read. */
+        CountDownLatch latch1 = new CountDownLatch( 1 );
+        table.cacheColumn( 1, latch1::countDown );
+        assertTrue( latch1.await( 10, TimeUnit.SECONDS ) );
+        assertTrue( table.isColumnCached( 1 ) );
+        assertFalse( table.isColumnCached( 0 ) );
+        assertEquals( Double.valueOf( 99 ), table.getCell( 2, 1 ) );
+        CountDownLatch latch2 = new CountDownLatch( 1 );
+        table.cacheColumn( 1, latch2::countDown );
+        assertEquals( 0, latch2.getCount() );
+
+        /* Failed reads are not remembered. */
+        broken.set( true );
+        CountDownLatch latch3 = new CountDownLatch( 1 );
+        table.cacheColumn( 3, latch3::countDown );
+        assertTrue( latch3.await( 10, TimeUnit.SECONDS ) );
+        assertFalse( table.isColumnCached( 3 ) );
+        try {
+            table.getCell( 0, 3 );
+            fail();
+        }
+        catch ( IOException e ) {
+            assertEquals( "broken", e.getMessage() );
+        }
+        broken.set( false );
+        assertEquals( "baz", table.getCell( 2, 3 ) );
+        assertTrue( table.isColumnCached( 3 ) );
+        table.close();
+    }
+
     private void readCompressedFile( File file ) throws IOException {
         IOSupplier<ParquetFileReader> pfrSupplier = getPfrSupplier( file );
         ParquetStarTable.Config config = new ParquetStarTable.Config() {
@@ -51,6 +106,8 @@ public class ExampleTest extends TestCase {
         };
         checkExample( new SequentialParquetStarTable( pfrSupplier, config ) );
         checkExample( new CachedParquetStarTable( pfrSupplier, config, 2 ) );
+        checkExample( new CachedParquetStarTable( pfrSupplier, config, 2,
+                                                  true ) );
     }
  
     private void checkExample( ParquetStarTable pex ) throws IOException {
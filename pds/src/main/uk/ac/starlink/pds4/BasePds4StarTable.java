@@ -1,19 +1,16 @@
 package uk.ac.starlink.pds4;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowAccess;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.URLUtils;
 
@@ -21,6 +18,10 @@ import uk.ac.starlink.util.URLUtils;
  * Concrete Pds4StarTable subclass for fixed-length-record
  * (binary and character) PDS tables.
  *
+ * <p>Where the data is in a local file, the records are accessed
+ * by mapping the file, so that random access, concurrent access
+ * and splitting for parallel processing are all efficient.
+ *
  * @author   Mark Taylor
  * @since    24 Nov 2021
  */
@@ -29,9 +30,8 @@ public class BasePds4StarTable extends Pds4StarTable {
     private final int ncol_;
     private final int recordLength_;
     private final ColumnReader[] colRdrs_;
-    private final ByteBuffer dataBuf_;
-    private final byte[] randomRecord_;
-    private int randomIndex_;
+    private final RecordMap recordMap_;
+    private final ThreadLocal<RecordMap.Reader> randomReader_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.pds4" );
 
@@ -48,9 +48,12 @@ public class BasePds4StarTable extends Pds4StarTable {
         recordLength_ = Tables.checkedLongToInt( table.getRecordLength() );
         colRdrs_ = createColumnReaders( table.getContents() );
         ncol_ = colRdrs_.length;
-        dataBuf_ = getDataBuffer();
-        randomIndex_ = -1;
-        randomRecord_ = new byte[ recordLength_ ];
+        recordMap_ = RecordMap
+                    .mapFile( URLUtils.urlToFile( getDataUrl().toString() ),
+                              getDataOffset(), recordLength_, getRowCount() );
+        randomReader_ = recordMap_ == null
+                      ? null
+                      : ThreadLocal.withInitial( recordMap_::createReader );
     }
 
     public int getColumnCount() {
@@ -62,6 +65,9 @@ public class BasePds4StarTable extends Pds4StarTable {
     }
 
     public RowSequence getRowSequence() throws IOException {
+        if ( recordMap_ != null ) {
+            return new MappedRowSplittable( 0, getRowCount() );
+        }
         InputStream in = getDataStream();
         final long nrow = getRowCount();
         return new RowSequence() {
@@ -116,92 +122,58 @@ public class BasePds4StarTable extends Pds4StarTable {
 
     @Override
     public boolean isRandom() {
-        return dataBuf_ != null;
+        return recordMap_ != null;
     }
 
     @Override
-    public synchronized Object[] getRow( long lrow ) throws IOException {
-        readRecord( lrow );
-        Object[] row = new Object[ ncol_ ];
-        for ( int icol = 0; icol < ncol_; icol++ ) {
-            row[ icol ] = colRdrs_[ icol ].readField( randomRecord_ );
-        }
-        return row;
+    public Object[] getRow( long lrow ) throws IOException {
+        return readRow( randomReader_.get().readRecord( lrow ) );
     }
 
     @Override
-    public synchronized Object getCell( long lrow, int icol )
-            throws IOException {
-        readRecord( lrow );
-        return colRdrs_[ icol ].readField( randomRecord_ );
+    public Object getCell( long lrow, int icol ) throws IOException {
+        return colRdrs_[ icol ]
+              .readField( randomReader_.get().readRecord( lrow ) );
     }
 
     @Override
     public RowAccess getRowAccess() throws IOException {
-        ByteBuffer dbuf = dataBuf_.duplicate();
-        byte[] record = new byte[ recordLength_ ];
+        RecordMap.Reader rdr = recordMap_.createReader();
         return new RowAccess() {
+            byte[] record_;
             public void setRowIndex( long lrow ) {
-                dbuf.position( recordLength_ * Tables.checkedLongToInt( lrow ));
-                dbuf.get( record );
+                record_ = rdr.readRecord( lrow );
             }
             public Object[] getRow() {
-                Object[] row = new Object[ ncol_ ];
-                for ( int icol = 0; icol < ncol_; icol++ ) {
-                    row[ icol ] = colRdrs_[ icol ].readField( record );
-                }
-                return row;
+                return readRow( record_ );
             }
             public Object getCell( int icol ) {
-                return colRdrs_[ icol ].readField( record );
+                return colRdrs_[ icol ].readField( record_ );
             }
             public void close() {
             }
         };
     }
 
-    /**
-     * Ensures that the randomRecord_ member contains the byte data
-     * for a given row index.  It will only be read if the row index
-     * is different from last time.
-     *
-     * @param  lrow  row index
-     */
-    private synchronized void readRecord( long lrow ) {
-        int irow = Tables.checkedLongToInt( lrow );
-        if ( irow != randomIndex_ ) {
-            dataBuf_.position( recordLength_ * irow );
-            dataBuf_.get( randomRecord_ );
-            randomIndex_ = irow;
-        }
+    @Override
+    public RowSplittable getRowSplittable() throws IOException {
+        return recordMap_ == null
+             ? super.getRowSplittable()
+             : new MappedRowSplittable( 0, getRowCount() );
     }
 
     /**
-     * Attempts to return a mapped byte buffer corresponding to the region
-     * of the data file containing the data for this table.
+     * Decodes all the columns from a record buffer.
      *
-     * @return  data buffer, or null if buffer is unavailable or cannot
-     *          be mapped for some reason
+     * @param  record  byte array giving a whole record
+     * @return  row data
      */
-    private ByteBuffer getDataBuffer() throws IOException {
-        File file = URLUtils.urlToFile( getDataUrl().toString() );
-        if ( file == null || ! file.canRead() ) {
-            return null;
-        }
-        long size = getRowCount() * recordLength_;
-        if ( size > Integer.MAX_VALUE ) {
-            return null;
-        }
-        int isize = (int) size;
-        try {
-            FileChannel channel = new FileInputStream( file ).getChannel();
-            return channel.map( FileChannel.MapMode.READ_ONLY,
-                                getDataOffset(), isize );
-        }
-        catch ( IOException e ) {
-            logger_.log( Level.INFO, "Failed to map file: " + file, e );
-            return null;
+    private Object[] readRow( byte[] record ) {
+        Object[] row = new Object[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            row[ icol ] = colRdrs_[ icol ].readField( record );
         }
+        return row;
     }
 
     /**
@@ -254,6 +226,86 @@ public class BasePds4StarTable extends Pds4StarTable {
         return new VectorColumnReader<S,A>( field, group, fieldReader );
     }
 
+    /**
+     * RowSplittable implementation that reads records directly
+     * from the mapped data for a contiguous range of rows.
+     * Splitting divides the range, and since each instance has its
+     * own reader, the parts can be iterated over concurrently.
+     */
+    private class MappedRowSplittable implements RowSplittable {
+
+        private final RecordMap.Reader rdr_;
+        private long irow_;
+        private long nrow_;
+        private byte[] record_;
+
+        /**
+         * Constructor.
+         *
+         * @param  irow0  index of first row in iteration range
+         * @param  nrow   row index immediately after end of iteration range
+         */
+        MappedRowSplittable( long irow0, long nrow ) {
+            rdr_ = recordMap_.createReader();
+            irow_ = irow0 - 1;
+            nrow_ = nrow;
+        }
+
+        public long splittableSize() {
+            return nrow_ - irow_ - 1;
+        }
+
+        public MappedRowSplittable split() {
+            if ( record_ == null && nrow_ - irow_ > 2 ) {
+                long mid = ( irow_ + 1 + nrow_ ) / 2;
+                MappedRowSplittable split =
+                    new MappedRowSplittable( irow_ + 1, mid );
+                irow_ = mid - 1;
+                return split;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public LongSupplier rowIndex() {
+            return () -> irow_;
+        }
+
+        public boolean next() {
+            if ( irow_ < nrow_ - 1 ) {
+                irow_++;
+                record_ = rdr_.readRecord( irow_ );
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+
+        public Object getCell( int icol ) {
+            checkRow();
+            return colRdrs_[ icol ].readField( record_ );
+        }
+
+        public Object[] getRow() {
+            checkRow();
+            return readRow( record_ );
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Throws a suitable exception if there is no current row.
+         */
+        private void checkRow() {
+            if ( record_ == null ) {
+                throw new IllegalStateException( "No current row" );
+            }
+        }
+    }
+
     /**
      * Defines how typed data is read from a record buffer.
      */
@@ -0,0 +1,160 @@
+package uk.ac.starlink.pds4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provides random access to the fixed-length records of a PDS4 table
+ * by mapping the relevant region of the data file.
+ * The region is mapped as one or more blocks, each containing
+ * a whole number of records, so that tables larger than
+ * the 2Gbyte limit of a single mapped buffer can be accommodated.
+ *
+ * <p>Instances of this class are immutable and may be shared between
+ * threads; reading is done using {@link Reader} objects,
+ * which are cheap to create and are not thread-safe,
+ * but which do not contend with each other.
+ */
+class RecordMap {
+
+    private final int recordLength_;
+    private final long nrow_;
+    private final int blockRows_;
+    private final ByteBuffer[] blocks_;
+    private static final int MAX_BLOCK_BYTES = 1 << 30;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.pds4" );
+
+    /**
+     * Constructor.
+     *
+     * @param  blocks  mapped buffers, each except the last containing
+     *                 exactly <code>blockRows</code> records
+     * @param  recordLength  number of bytes per record
+     * @param  blockRows   number of records per full block
+     * @param  nrow   total number of records
+     */
+    private RecordMap( ByteBuffer[] blocks, int recordLength, int blockRows,
+                       long nrow ) {
+        blocks_ = blocks;
+        recordLength_ = recordLength;
+        blockRows_ = blockRows;
+        nrow_ = nrow;
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return  record count
+     */
+    public long getRecordCount() {
+        return nrow_;
+    }
+
+    /**
+     * Returns the number of bytes in each record.
+     *
+     * @return  record length
+     */
+    public int getRecordLength() {
+        return recordLength_;
+    }
+
+    /**
+     * Returns a new reader for this map.
+     *
+     * @return  new reader
+     */
+    public Reader createReader() {
+        return new Reader();
+    }
+
+    /**
+     * Attempts to map the records of a table in a given file.
+     * If the mapping fails for some reason, null is returned.
+     *
+     * @param  file   data file
+     * @param  offset  byte offset into file at which the first record starts
+     * @param  recordLength  number of bytes per record
+     * @param  nrow   number of records
+     * @return   record map, or null
+     */
+    public static RecordMap mapFile( File file, long offset, int recordLength,
+                                     long nrow ) {
+        if ( file == null || ! file.canRead() || recordLength <= 0 ) {
+            return null;
+        }
+        int blockRows =
+            (int) Math.max( 1, Math.min( MAX_BLOCK_BYTES / recordLength,
+                                         nrow ) );
+        int nblock = (int) ( ( nrow + blockRows - 1 ) / blockRows );
+        ByteBuffer[] blocks = new ByteBuffer[ nblock ];
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "r" ) ) {
+            FileChannel channel = raf.getChannel();
+            if ( offset + nrow * recordLength > channel.size() ) {
+                logger_.warning( "Data file " + file + " too short for "
+                               + nrow + " records" );
+                return null;
+            }
+            for ( int ib = 0; ib < nblock; ib++ ) {
+                long irow0 = (long) ib * blockRows;
+                long nr = Math.min( blockRows, nrow - irow0 );
+                blocks[ ib ] =
+                    channel.map( FileChannel.MapMode.READ_ONLY,
+                                 offset + irow0 * recordLength,
+                                 nr * recordLength );
+            }
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.INFO, "Failed to map file: " + file, e );
+            return null;
+        }
+        return new RecordMap( blocks, recordLength, blockRows, nrow );
+    }
+
+    /**
+     * Reads records from this map into a buffer.
+     * Each reader has its own view of the mapped data,
+     * so that different readers may be used concurrently
+     * without synchronization.
+     */
+    public class Reader {
+
+        private final ByteBuffer[] bufs_;
+        private final byte[] record_;
+
+        /**
+         * Constructor.
+         */
+        Reader() {
+            bufs_ = new ByteBuffer[ blocks_.length ];
+            record_ = new byte[ recordLength_ ];
+        }
+
+        /**
+         * Reads the bytes of a given record.
+         * The returned array belongs to this reader and will be
+         * overwritten by the next call.
+         *
+         * @param  irow  record index
+         * @return  buffer containing record data
+         */
+        public byte[] readRecord( long irow ) {
+            int ib = (int) ( irow / blockRows_ );
+            ByteBuffer buf = bufs_[ ib ];
+            if ( buf == null ) {
+                buf = blocks_[ ib ].duplicate();
+                bufs_[ ib ] = buf;
+            }
+            buf.position( (int) ( irow - (long) ib * blockRows_ )
+                          * recordLength_ );
+            buf.get( record_ );
+            return record_;
+        }
+    }
+}
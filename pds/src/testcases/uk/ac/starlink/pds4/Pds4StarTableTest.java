@@ -1,8 +1,12 @@
 package uk.ac.starlink.pds4;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import uk.ac.starlink.table.DomainMapper;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableFormatException;
@@ -40,6 +44,7 @@ public class Pds4StarTableTest extends TestCase {
         assertEquals( 0, ((Number) table.getCell( 88, 19 )).intValue() );
         assertEquals( 0.0536, ((Number) table.getCell( 0, 8 )).doubleValue(),
                       0.00001 );
+        checkSplit( table );
     }
 
     public void testCharacter() throws IOException {
@@ -54,6 +59,7 @@ public class Pds4StarTableTest extends TestCase {
         assertEquals( "DV+", table.getColumnInfo( 4 ).getName() );
         assertEquals( 1.71, ((Number) table.getCell( 7, 4 )).doubleValue() );
         assertEquals( "SS1520900R6M1.IMG", table.getCell( 21, 9 ) );
+        checkSplit( table );
     }
 
     public void testDelimited() throws IOException {
@@ -142,6 +148,37 @@ public class Pds4StarTableTest extends TestCase {
         assertEquals( 1565053200L, tmapper.toUnixSeconds( time0 ) );
     }
 
+    private void checkSplit( StarTable table ) throws IOException {
+        int nrow = (int) table.getRowCount();
+        List<RowSplittable> splits = new ArrayList<>();
+        splits.add( table.getRowSplittable() );
+        for ( int i = 0; i < splits.size(); i++ ) {
+            for ( RowSplittable split;
+                  ( split = splits.get( i ).split() ) != null; ) {
+                splits.add( split );
+            }
+        }
+        assertTrue( splits.size() > 4 );
+        long ntot = 0;
+        for ( RowSplittable split : splits ) {
+            ntot += split.splittableSize();
+        }
+        assertEquals( nrow, ntot );
+        Object[][] rows = new Object[ nrow ][];
+        for ( RowSplittable split : splits ) {
+            LongSupplier rowIndex = split.rowIndex();
+            while ( split.next() ) {
+                int irow = (int) rowIndex.getAsLong();
+                assertNull( rows[ irow ] );
+                rows[ irow ] = split.getRow();
+            }
+            split.close();
+        }
+        for ( int irow = 0; irow < nrow; irow++ ) {
+            assertArrayEquals( table.getRow( irow ), rows[ irow ] );
+        }
+    }
+
     private static DataSource getDataSource( String tname ) {
         return new URLDataSource( Pds4StarTableTest.class.getResource( tname ));
     }
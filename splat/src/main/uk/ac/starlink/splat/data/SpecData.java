@@ -207,6 +207,7 @@ public class SpecData
         this.yErrOri = null;
         this.xPosG = null;
         this.yPosG = null;
+        this.envelope = null;
         this.astJ = null;
         super.finalize();
     }
@@ -388,6 +389,13 @@ public class SpecData
      * Available after first drawSpec() call.
      */
     protected double[] yPosG = null;
+
+    /**
+     * Min/max envelope of the data used to decimate very long spectra
+     * when drawing. Created when first needed and discarded when the
+     * data ranges are reset.
+     */
+    protected transient SpecEnvelope envelope = null;
     
     /**
      * Symbolic name of the spectrum.
@@ -2205,6 +2213,9 @@ public class SpecData
      */
     private void setRangePrivate()
     {
+        //  Data may have changed, so any envelope is out of date.
+        envelope = null;
+
         double xMin = Double.MAX_VALUE;
         double xMinY = 0.0;
 
@@ -2353,7 +2364,18 @@ public class SpecData
         if ( applyYOffset ) {
             yoffset = this.yoffset;
         }
-        if ( plotStyle == POLYLINE || plotStyle == POINT ) {
+        int[] indices = null;
+        if ( plotStyle == POLYLINE ) {
+            indices = getDecimatedIndices( plot, yoffset );
+        }
+        if ( indices != null ) {
+            xypos = new double[indices.length * 2];
+            for ( int i = 0, j = 0; j < indices.length; j++, i += 2 ) {
+                xypos[i] = xPos[indices[j]];
+                xypos[i + 1] = yPos[indices[j]] + yoffset;
+            }
+        }
+        else if ( plotStyle == POLYLINE || plotStyle == POINT ) {
             xypos = new double[xPos.length * 2];
             for ( int i = 0, j = 0; j < xPos.length; j++, i += 2 ) {
                 xypos[i] = xPos[j];
@@ -2473,6 +2495,42 @@ public class SpecData
     }
 
 
+    /**
+     * Get the indices of the positions needed to draw this spectrum as a
+     * polyline without visible change, when it has many more positions
+     * than the pixel columns it spans. The indices are selected from a
+     * min/max envelope of the data, which is created when first needed.
+     *
+     * @param plot reference to Plot defining transformation from physical
+     *             coordinates into graphics coordinates.
+     * @param yoffset offset applied to the data values when drawing.
+     * @return indices of the positions to draw, or null if all positions
+     *         should be drawn (i.e. when zoomed in).
+     */
+    protected int[] getDecimatedIndices( Plot plot, double yoffset )
+    {
+        if ( xPos.length < SpecEnvelope.MIN_POSITIONS ) {
+            return null;
+        }
+        if ( envelope == null || ! envelope.isFor( xPos, yPos ) ) {
+            envelope = new SpecEnvelope( xPos, yPos );
+        }
+        if ( ! envelope.isUsable() ) {
+            return null;
+        }
+
+        //  Number of pixel columns spanned by the whole spectrum, the
+        //  zoomed plot is drawn at full size and clipped to the view.
+        double ymid = 0.5 * ( range[2] + range[3] ) + yoffset;
+        double[][] gends =
+            plot.tran2( 2, new double[] { xPos[0], xPos[xPos.length - 1] },
+                        new double[] { ymid, ymid }, false );
+        if ( gends[0][0] == BAD || gends[0][1] == BAD ) {
+            return null;
+        }
+        return envelope.getIndices( Math.abs( gends[0][1] - gends[0][0] ) );
+    }
+
     /**
      * Draw the spectrum using the current spectrum plotting style.
      *
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2026 Science and Technology Facilities Council
+ */
+package uk.ac.starlink.splat.data;
+
+/**
+ * A multi-resolution min/max envelope of the data values of a spectrum,
+ * used to reduce the number of positions that need to be transformed
+ * and drawn when a spectrum has many more points than there are pixel
+ * columns available to display it.
+ * <p>
+ * The envelope is a pyramid of levels, each level dividing the data
+ * into bins of a power of two positions. For each bin the indices of
+ * the minimum and maximum data values, and of the first BAD value, are
+ * recorded. When drawing, a level with at least two bins per pixel column
+ * is selected and only the first, last, minimum and maximum positions of
+ * each bin are drawn (so called M4 decimation). This draws the same
+ * pixels as the full data, while the number of positions drawn is only
+ * proportional to the width of the plot. All BAD values, and the good
+ * values either side of them, are retained so that every gap in the
+ * spectrum is still shown.
+ * <p>
+ * The envelope can only be used when the X coordinates are monotonic,
+ * which is normally the case for spectra. The data arrays are referenced,
+ * not copied, so an envelope should be discarded whenever the data change.
+ *
+ * @version $Id$
+ * @see SpecData
+ */
+public class SpecEnvelope
+{
+    /**
+     * The smallest number of positions that a spectrum must have before
+     * an envelope is worth creating.
+     */
+    public static final int MIN_POSITIONS = 4096;
+
+    /**
+     * Number of bins required per pixel column before a level will be used.
+     * Values larger than 1 protect against non-linear X axes, where pixel
+     * columns do not contain equal numbers of positions.
+     */
+    public static final int BINS_PER_PIXEL = 2;
+
+    /** log2 of the number of positions in a bin of the first level. */
+    private static final int BASE_SHIFT = 2;
+
+    /** The X coordinates. */
+    private final double[] xData;
+
+    /** The Y data values. */
+    private final double[] yData;
+
+    /** Indices of the minimum value in each bin, per level. */
+    private final int[][] minIndex;
+
+    /** Indices of the maximum value in each bin, per level. */
+    private final int[][] maxIndex;
+
+    /** Indices of the first BAD value in each bin, per level, -1 if none. */
+    private final int[][] badIndex;
+
+    /**
+     * Create an envelope for the given data. The pyramid is built
+     * immediately.
+     *
+     * @param xData the X coordinates, these should be monotonic
+     * @param yData the Y data values, may contain {@link SpecData#BAD}
+     */
+    public SpecEnvelope( double[] xData, double[] yData )
+    {
+        this.xData = xData;
+        this.yData = yData;
+
+        int n = yData.length;
+        int nlevel = 0;
+        if ( n >= MIN_POSITIONS && isMonotonic( xData ) ) {
+            for ( int bs = 1 << BASE_SHIFT; bs < n; bs <<= 1 ) {
+                nlevel++;
+            }
+        }
+        minIndex = new int[nlevel][];
+        maxIndex = new int[nlevel][];
+        badIndex = new int[nlevel][];
+        if ( nlevel > 0 ) {
+            buildBase();
+            for ( int l = 1; l < nlevel; l++ ) {
+                buildLevel( l );
+            }
+        }
+    }
+
+    /**
+     * Get whether this envelope can be used to decimate the data.
+     *
+     * @return true if the data have monotonic X coordinates and there
+     *         are enough positions to decimate
+     */
+    public boolean isUsable()
+    {
+        return minIndex.length > 0;
+    }
+
+    /**
+     * Get whether this envelope was created for the given arrays.
+     *
+     * @param xData the X coordinates
+     * @param yData the Y data values
+     * @return true if the arrays are those the envelope references
+     */
+    public boolean isFor( double[] xData, double[] yData )
+    {
+        return this.xData == xData && this.yData == yData;
+    }
+
+    /**
+     * Get the indices of the positions that should be drawn to represent
+     * the spectrum when spread across the given number of pixels. The
+     * indices are in increasing order.
+     *
+     * @param npixel number of pixel columns spanned by the whole spectrum
+     * @return indices of the positions to draw, or null if all the
+     *         positions should be drawn
+     */
+    public int[] getIndices( double npixel )
+    {
+        if ( ! isUsable() || ! ( npixel > 0.0 ) ) {
+            return null;
+        }
+
+        //  Largest bin size that still gives BINS_PER_PIXEL bins per pixel.
+        double target = yData.length / ( npixel * BINS_PER_PIXEL );
+        int level = -1;
+        for ( int l = 0; l < minIndex.length; l++ ) {
+            if ( ( 1L << ( l + BASE_SHIFT ) ) <= target ) {
+                level = l;
+            }
+        }
+        if ( level < 0 ) {
+            return null;
+        }
+
+        int[] mins = minIndex[level];
+        int[] maxs = maxIndex[level];
+        int[] bads = badIndex[level];
+        int bs = 1 << ( level + BASE_SHIFT );
+        int n = yData.length;
+        int[] result = new int[mins.length * 4 + 16];
+        int[] cand = new int[4];
+        int count = 0;
+        for ( int b = 0; b < mins.length; b++ ) {
+            int first = b * bs;
+            int last = Math.min( first + bs, n ) - 1;
+            int nc = 0;
+            cand[nc++] = first;
+            cand[nc++] = last;
+            if ( mins[b] >= 0 ) {
+                cand[nc++] = mins[b];
+                cand[nc++] = maxs[b];
+            }
+
+            //  Insertion sort of the few candidates.
+            for ( int i = 1; i < nc; i++ ) {
+                int v = cand[i];
+                int j = i - 1;
+                while ( j >= 0 && cand[j] > v ) {
+                    cand[j + 1] = cand[j];
+                    j--;
+                }
+                cand[j + 1] = v;
+            }
+
+            //  Merge in the BAD values of the bin and their good
+            //  neighbours, which are found by scanning from the first BAD
+            //  value. Bins without BAD values are not scanned.
+            int ic = 0;
+            int from = bads[b] >= 0 ? Math.max( first, bads[b] - 1 ) : n;
+            for ( int i = from; i <= last; i++ ) {
+                if ( isBadOrNextToBad( i ) ) {
+                    while ( ic < nc && cand[ic] < i ) {
+                        result = add( result, count++, cand[ic++] );
+                    }
+                    result = add( result, count++, i );
+                }
+            }
+            while ( ic < nc ) {
+                result = add( result, count++, cand[ic++] );
+            }
+
+            //  Drop duplicates just added.
+            int start = count - 1;
+            while ( start > 0 && result[start - 1] >= first ) {
+                start--;
+            }
+            int k = start;
+            for ( int i = start; i < count; i++ ) {
+                if ( i == start || result[i] != result[k - 1] ) {
+                    result[k++] = result[i];
+                }
+            }
+            count = k;
+        }
+        int[] indices = new int[count];
+        System.arraycopy( result, 0, indices, 0, count );
+        return indices;
+    }
+
+    /**
+     * Test if a data value is BAD, or is adjacent to a BAD value.
+     */
+    private boolean isBadOrNextToBad( int i )
+    {
+        return yData[i] == SpecData.BAD
+            || ( i > 0 && yData[i - 1] == SpecData.BAD )
+            || ( i < yData.length - 1 && yData[i + 1] == SpecData.BAD );
+    }
+
+    /**
+     * Store a value in an array, enlarging it if necessary.
+     *
+     * @return the array, or a larger copy of it
+     */
+    private static int[] add( int[] array, int index, int value )
+    {
+        if ( index >= array.length ) {
+            int[] copy = new int[array.length * 2];
+            System.arraycopy( array, 0, copy, 0, array.length );
+            array = copy;
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Build the first level directly from the data values.
+     */
+    private void buildBase()
+    {
+        int n = yData.length;
+        int bs = 1 << BASE_SHIFT;
+        int nbin = ( n + bs - 1 ) / bs;
+        int[] mins = new int[nbin];
+        int[] maxs = new int[nbin];
+        int[] bads = new int[nbin];
+        for ( int b = 0; b < nbin; b++ ) {
+            int first = b * bs;
+            int last = Math.min( first + bs, n );
+            int imin = -1;
+            int imax = -1;
+            int ibad = -1;
+            for ( int i = first; i < last; i++ ) {
+                double y = yData[i];
+                if ( y == SpecData.BAD ) {
+                    if ( ibad < 0 ) {
+                        ibad = i;
+                    }
+                }
+                else {
+                    if ( imin < 0 || y < yData[imin] ) {
+                        imin = i;
+                    }
+                    if ( imax < 0 || y > yData[imax] ) {
+                        imax = i;
+                    }
+                }
+            }
+            mins[b] = imin;
+            maxs[b] = imax;
+            bads[b] = ibad;
+        }
+        minIndex[0] = mins;
+        maxIndex[0] = maxs;
+        badIndex[0] = bads;
+    }
+
+    /**
+     * Build a level by combining pairs of bins from the previous level.
+     *
+     * @param level the level to build, must be greater than 0
+     */
+    private void buildLevel( int level )
+    {
+        int[] pmins = minIndex[level - 1];
+        int[] pmaxs = maxIndex[level - 1];
+        int[] pbads = badIndex[level - 1];
+        int nbin = ( pmins.length + 1 ) / 2;
+        int[] mins = new int[nbin];
+        int[] maxs = new int[nbin];
+        int[] bads = new int[nbin];
+        for ( int b = 0; b < nbin; b++ ) {
+            int i1 = 2 * b;
+            int i2 = i1 + 1;
+            if ( i2 < pmins.length ) {
+                mins[b] = pick( pmins[i1], pmins[i2], false );
+                maxs[b] = pick( pmaxs[i1], pmaxs[i2], true );
+                bads[b] = pbads[i1] >= 0 ? pbads[i1] : pbads[i2];
+            }
+            else {
+                mins[b] = pmins[i1];
+                maxs[b] = pmaxs[i1];
+                bads[b] = pbads[i1];
+            }
+        }
+        minIndex[level] = mins;
+        maxIndex[level] = maxs;
+        badIndex[level] = bads;
+    }
+
+    /**
+     * Choose the index of the smaller or larger of two data values,
+     * either of which may be missing (index -1).
+     */
+    private int pick( int i1, int i2, boolean max )
+    {
+        if ( i1 < 0 ) {
+            return i2;
+        }
+        if ( i2 < 0 ) {
+            return i1;
+        }
+        if ( max ) {
+            return yData[i2] > yData[i1] ? i2 : i1;
+        }
+        return yData[i2] < yData[i1] ? i2 : i1;
+    }
+
+    /**
+     * Test if an array of coordinates is monotonic, either increasing
+     * or decreasing.
+     */
+    private static boolean isMonotonic( double[] x )
+    {
+        if ( x == null || x.length < 2 ) {
+            return false;
+        }
+        boolean increasing = x[x.length - 1] >= x[0];
+        for ( int i = 1; i < x.length; i++ ) {
+            double d = x[i] - x[i - 1];
+            if ( increasing ? ! ( d >= 0.0 ) : ! ( d <= 0.0 ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
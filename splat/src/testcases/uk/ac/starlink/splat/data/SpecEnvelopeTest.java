@@ -0,0 +1,97 @@
+package uk.ac.starlink.splat.data;
+
+import java.util.Random;
+
+import uk.ac.starlink.util.TestCase;
+
+public class SpecEnvelopeTest
+    extends TestCase
+{
+    public SpecEnvelopeTest( String name )
+    {
+        super( name );
+    }
+
+    public void testEnvelope()
+    {
+        int n = 16384;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Random rnd = new Random( 23 );
+        for ( int i = 0; i < n; i++ ) {
+            x[i] = i;
+            y[i] = rnd.nextGaussian();
+        }
+
+        //  Several BAD values in the same bin, a run of BAD values
+        //  and BAD values at bin edges.
+        int[] badPos = new int[] { 0, 17, 19, 21, 100, 101, 102, 103, 104,
+                                   207, 208, 5000, n - 1 };
+        for ( int i = 0; i < badPos.length; i++ ) {
+            y[badPos[i]] = SpecData.BAD;
+        }
+
+        SpecEnvelope env = new SpecEnvelope( x, y );
+        assertTrue( env.isUsable() );
+        assertTrue( env.isFor( x, y ) );
+        assertNull( env.getIndices( n ) );
+
+        //  8 positions per bin.
+        int bs = 8;
+        int[] indices = env.getIndices( n / ( 2 * bs ) );
+        assertNotNull( indices );
+        assertTrue( indices.length < n / 2 );
+        boolean[] kept = new boolean[n];
+        for ( int k = 0; k < indices.length; k++ ) {
+            if ( k > 0 ) {
+                assertTrue( indices[k] > indices[k - 1] );
+            }
+            kept[indices[k]] = true;
+        }
+
+        for ( int first = 0; first < n; first += bs ) {
+            int last = Math.min( first + bs, n ) - 1;
+            assertTrue( kept[first] );
+            assertTrue( kept[last] );
+            int imin = -1;
+            int imax = -1;
+            for ( int i = first; i <= last; i++ ) {
+                if ( y[i] == SpecData.BAD ) {
+                    assertTrue( kept[i] );
+                    if ( i > 0 ) {
+                        assertTrue( kept[i - 1] );
+                    }
+                    if ( i < n - 1 ) {
+                        assertTrue( kept[i + 1] );
+                    }
+                }
+                else {
+                    if ( imin < 0 || y[i] < y[imin] ) {
+                        imin = i;
+                    }
+                    if ( imax < 0 || y[i] > y[imax] ) {
+                        imax = i;
+                    }
+                }
+            }
+            if ( imin >= 0 ) {
+                assertTrue( kept[imin] );
+                assertTrue( kept[imax] );
+            }
+        }
+    }
+
+    public void testNonMonotonic()
+    {
+        int n = 8192;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for ( int i = 0; i < n; i++ ) {
+            x[i] = i % 100;
+            y[i] = i;
+        }
+        SpecEnvelope env = new SpecEnvelope( x, y );
+        assertFalse( env.isUsable() );
+        assertNull( env.getIndices( 10 ) );
+    }
+}
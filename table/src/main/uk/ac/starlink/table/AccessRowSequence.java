@@ -54,10 +54,45 @@ public class AccessRowSequence implements RowSequence {
         }
     }
 
+    @Override
+    public double getDouble( int icol ) throws IOException {
+        checkRow();
+        return racc_.getDouble( icol );
+    }
+
+    @Override
+    public long getLong( int icol ) throws IOException {
+        checkRow();
+        return racc_.getLong( icol );
+    }
+
+    @Override
+    public int getInt( int icol ) throws IOException {
+        checkRow();
+        return racc_.getInt( icol );
+    }
+
+    @Override
+    public boolean isNull( int icol ) throws IOException {
+        checkRow();
+        return racc_.isNull( icol );
+    }
+
     public void close() throws IOException {
         racc_.close();
     }
 
+    /**
+     * Throws an exception if there is no current row.
+     *
+     * @throws  IllegalStateException  if next has not been called
+     */
+    private void checkRow() {
+        if ( irow_ < 0 ) {
+            throw new IllegalStateException();
+        }
+    }
+
     /**
      * Constructs an AccessRowSequence based on a given table.
      *
@@ -26,6 +26,7 @@ public class ConcatStarTable extends WrapperStarTable {
     private Iterator<StarTable> tableIt_;
     private Boolean isRandom_;
     private long nrow_ = -1L;
+    private long[] istarts_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table" );
 
@@ -79,15 +80,9 @@ public class ConcatStarTable extends WrapperStarTable {
 
     public Object getCell( long irow, int icol ) throws IOException {
         if ( isRandom() ) {
-            for ( StarTable table : tableList_ ) {
-                long nr = table.getRowCount();
-                assert nr >= 0;
-                if ( irow < nr ) {
-                    return table.getCell( irow, icol );
-                }
-                irow -= nr;
-            }
-            throw new ArrayIndexOutOfBoundsException();
+            int itab = getTableIndex( irow );
+            return tableList_.get( itab ).getCell( irow - istarts_[ itab ],
+                                                   icol );
         }
         else {
             throw new UnsupportedOperationException( "No random access" );
@@ -96,15 +91,8 @@ public class ConcatStarTable extends WrapperStarTable {
 
     public Object[] getRow( long irow ) throws IOException {
         if ( isRandom() ) {
-            for ( StarTable table : tableList_ ) {
-                long nr = table.getRowCount();
-                assert nr >= 0;
-                if ( irow < nr ) {
-                    return table.getRow( irow );
-                }
-                irow -= nr;
-            }
-            throw new ArrayIndexOutOfBoundsException();
+            int itab = getTableIndex( irow );
+            return tableList_.get( itab ).getRow( irow - istarts_[ itab ] );
         }
         else {
             throw new UnsupportedOperationException( "No random access" );
@@ -137,11 +125,7 @@ public class ConcatStarTable extends WrapperStarTable {
             throw new UnsupportedOperationException( "No random access" );
         }
         final int ntable = tableList_.size();
-        final long[] istarts = new long[ ntable + 1 ];
-        for ( int it = 0; it < ntable; it++ ) {
-            istarts[ it + 1 ] =
-                istarts[ it ] + tableList_.get( it ).getRowCount();
-        }
+        final long[] istarts = istarts_;
         return new RowAccess() {
             private final RowAccess[] subAccs_ = new RowAccess[ ntable ];
             private long irow_ = -1;
@@ -149,28 +133,14 @@ public class ConcatStarTable extends WrapperStarTable {
             public void setRowIndex( long irow ) throws IOException {
                 if ( irow != irow_ ) {
                     irow_ = irow;
-                    int ipos = Arrays.binarySearch( istarts, irow );
-                    final int iTable;
-                    final long iSubrow;
-                    if ( ipos >= 0 ) {
-                        while ( ipos < ntable &&
-                                istarts[ ipos + 1 ] == istarts[ ipos ] ) {
-                            ipos++;
-                        }
-                        iTable = ipos;
-                        iSubrow = 0;
-                    }
-                    else {
-                        iTable = -2 - ipos;
-                        iSubrow = irow - istarts[ iTable ];
-                    }
+                    int iTable = getTableIndex( irow );
+                    long iSubrow = irow - istarts[ iTable ];
                     if ( subAccs_[ iTable ] == null ) {
                         subAccs_[ iTable ] =
                             tableList_.get( iTable ).getRowAccess();
                     }
                     subAcc_ = subAccs_[ iTable ];
-                    boolean hasRow = istarts[ iTable + 1 ] > istarts[ iTable ];
-                    subAcc_.setRowIndex( hasRow ? iSubrow : -1 );
+                    subAcc_.setRowIndex( iSubrow );
                 }
             }
             public Object getCell( int icol ) throws IOException {
@@ -179,6 +149,18 @@ public class ConcatStarTable extends WrapperStarTable {
             public Object[] getRow() throws IOException {
                 return subAcc_.getRow();
             }
+            public double getDouble( int icol ) throws IOException {
+                return subAcc_.getDouble( icol );
+            }
+            public long getLong( int icol ) throws IOException {
+                return subAcc_.getLong( icol );
+            }
+            public int getInt( int icol ) throws IOException {
+                return subAcc_.getInt( icol );
+            }
+            public boolean isNull( int icol ) throws IOException {
+                return subAcc_.isNull( icol );
+            }
             public void close() {
                 for ( int i = 0; i < ntable; i++ ) {
                     RowAccess subAcc = subAccs_[ i ];
@@ -243,10 +225,47 @@ public class ConcatStarTable extends WrapperStarTable {
                                : -1L;
             }
         }
+        isRand = isRand && nrow >= 0;
+        if ( isRand ) {
+            int ntable = tableList_.size();
+            long[] istarts = new long[ ntable + 1 ];
+            for ( int it = 0; it < ntable; it++ ) {
+                istarts[ it + 1 ] =
+                    istarts[ it ] + tableList_.get( it ).getRowCount();
+            }
+            istarts_ = istarts;
+        }
         isRandom_ = Boolean.valueOf( isRand );
         nrow_ = nrow;
     }
 
+    /**
+     * Returns the index of the constituent table containing a given row.
+     * May only be called if this table is random access.
+     *
+     * @param  irow  row index in this table
+     * @return  index into table list
+     */
+    private int getTableIndex( long irow ) {
+        long[] istarts = istarts_;
+        int ntable = istarts.length - 1;
+        if ( irow < 0 || irow >= istarts[ ntable ] ) {
+            throw new ArrayIndexOutOfBoundsException( "No row " + irow );
+        }
+        int ipos = Arrays.binarySearch( istarts, irow );
+        if ( ipos >= 0 ) {
+
+            /* Skip past any empty tables starting at the same row. */
+            while ( istarts[ ipos + 1 ] == istarts[ ipos ] ) {
+                ipos++;
+            }
+            return ipos;
+        }
+        else {
+            return -2 - ipos;
+        }
+    }
+
     /**
      * Returns an iterator over all the constituent tables of this
      * concatenation.
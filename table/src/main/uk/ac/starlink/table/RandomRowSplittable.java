@@ -95,6 +95,26 @@ public class RandomRowSplittable implements RowSplittable {
         return access_.getRow();
     }
 
+    @Override
+    public double getDouble( int icol ) throws IOException {
+        return access_.getDouble( icol );
+    }
+
+    @Override
+    public long getLong( int icol ) throws IOException {
+        return access_.getLong( icol );
+    }
+
+    @Override
+    public int getInt( int icol ) throws IOException {
+        return access_.getInt( icol );
+    }
+
+    @Override
+    public boolean isNull( int icol ) throws IOException {
+        return access_.isNull( icol );
+    }
+
     public void close() throws IOException {
         access_.close();
     }
@@ -5,6 +5,15 @@ import java.io.IOException;
 /**
  * Allows access to the values in a single row of a table.
  *
+ * <p>As well as the object-valued {@link #getCell} and {@link #getRow}
+ * methods, this interface provides the primitive accessors
+ * {@link #getDouble}, {@link #getLong}, {@link #getInt} and {@link #isNull}.
+ * The default implementations of these simply unpack the result of
+ * <code>getCell</code>, but implementations that store or decode
+ * numeric data in primitive form are encouraged to override them,
+ * so that callers reading numeric columns cell-by-cell
+ * can avoid allocating a wrapper object for each value.
+ *
  * @author   Mark Taylor
  * @since    24 Jul 2020
  */
@@ -32,4 +41,74 @@ public interface RowData {
      *           containing cell data; may be reused by subsequent invocations
      */
     Object[] getRow() throws IOException;
+
+    /**
+     * Returns the contents of one cell in this row as a double precision
+     * value.  If the cell is null or non-numeric, NaN is returned.
+     *
+     * <p>The default implementation invokes {@link #getCell};
+     * implementations may override it to avoid object creation.
+     *
+     * @param   icol  column index
+     * @return   numeric cell contents, or NaN
+     * @throws   IOException  if there's a problem reading the value
+     */
+    default double getDouble( int icol ) throws IOException {
+        Object value = getCell( icol );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Returns the contents of one cell in this row as a long integer value.
+     * If the cell is null or non-numeric, zero is returned;
+     * {@link #isNull} can be used to distinguish that case.
+     * Floating point values are truncated as by a Java cast.
+     *
+     * <p>The default implementation invokes {@link #getCell};
+     * implementations may override it to avoid object creation.
+     *
+     * @param   icol  column index
+     * @return   integer cell contents, or zero
+     * @throws   IOException  if there's a problem reading the value
+     */
+    default long getLong( int icol ) throws IOException {
+        Object value = getCell( icol );
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Returns the contents of one cell in this row as an integer value.
+     * If the cell is null or non-numeric, zero is returned;
+     * {@link #isNull} can be used to distinguish that case.
+     * Out of range or floating point values are converted
+     * as by a Java cast.
+     *
+     * <p>The default implementation invokes {@link #getCell};
+     * implementations may override it to avoid object creation.
+     *
+     * @param   icol  column index
+     * @return   integer cell contents, or zero
+     * @throws   IOException  if there's a problem reading the value
+     */
+    default int getInt( int icol ) throws IOException {
+        Object value = getCell( icol );
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /**
+     * Indicates whether one cell in this row is null,
+     * that is whether {@link #getCell} would return <code>null</code>.
+     * Note that this does not test for NaN floating point values.
+     *
+     * <p>The default implementation invokes {@link #getCell};
+     * implementations may override it to avoid object creation.
+     *
+     * @param   icol  column index
+     * @return   true iff the cell value is null
+     * @throws   IOException  if there's a problem reading the value
+     */
+    default boolean isNull( int icol ) throws IOException {
+        return getCell( icol ) == null;
+    }
 }
@@ -110,6 +110,25 @@ public class RowPermutedStarTable extends WrapperStarTable {
                 return baseIrow_ >= 0 ? baseAcc.getRow()
                                       : emptyRow();
             }
+            @Override
+            public double getDouble( int icol ) throws IOException {
+                return baseIrow_ >= 0 ? baseAcc.getDouble( icol )
+                                      : Double.NaN;
+            }
+            @Override
+            public long getLong( int icol ) throws IOException {
+                return baseIrow_ >= 0 ? baseAcc.getLong( icol )
+                                      : 0L;
+            }
+            @Override
+            public int getInt( int icol ) throws IOException {
+                return baseIrow_ >= 0 ? baseAcc.getInt( icol )
+                                      : 0;
+            }
+            @Override
+            public boolean isNull( int icol ) throws IOException {
+                return baseIrow_ < 0 || baseAcc.isNull( icol );
+            }
             public void close() throws IOException {
                 baseAcc.close();
             }
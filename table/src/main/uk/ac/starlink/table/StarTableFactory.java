@@ -71,6 +71,17 @@ import uk.ac.starlink.util.URLDataSource;
  * default handler list in turn, and if any of them can make a table out
  * of it, it is returned.
  *
+ * <p>The standard default handlers are not instantiated when the
+ * factory is constructed.  Each of them is declared along with a
+ * signature test on the first few bytes of the input
+ * (see {@link uk.ac.starlink.util.DataSource#getIntro}),
+ * so that in automatic format detection the intro bytes are read once,
+ * and only those handlers whose signature matches are loaded and tried.
+ * This avoids the cost of loading handler classes (and the libraries
+ * they depend on) for formats that are not in use.
+ * The full handler lists are instantiated if they are requested
+ * using {@link #getDefaultBuilders} or {@link #getKnownBuilders}.
+ *
  * <p>In either case, failure to make a table will usually result in a
  * <code>TableFormatException</code>, though if an error in actual I/O is
  * encountered an <code>IOException</code> may be thrown instead.
@@ -165,12 +176,15 @@ import uk.ac.starlink.util.URLDataSource;
  */
 public class StarTableFactory {
 
+    private final BuilderSlot[] slots_;
+    private final List<TableBuilder> extraBuilders_;
     private List<TableBuilder> defaultBuilders_;
     private List<TableBuilder> knownBuilders_;
     private Map<String,TableScheme> schemes_;
     private JDBCHandler jdbcHandler_;
     private boolean requireRandom_;
     private StoragePolicy storagePolicy_;
+    private RowRunner rowRunner_;
     private TablePreparation tablePrep_;
     private Predicate<DataSource> inputRestriction_;
 
@@ -197,19 +211,36 @@ public class StarTableFactory {
         Logger.getLogger( "uk.ac.starlink.table" );
     private static final Pattern SCHEME_REGEX =
         Pattern.compile( ":([a-zA-Z0-9_-]+):(.*)" );
-    private static String[] defaultBuilderClasses = {
-        "uk.ac.starlink.votable.FitsPlusTableBuilder",
-        "uk.ac.starlink.votable.ColFitsPlusTableBuilder",
-        "uk.ac.starlink.fits.ColFitsTableBuilder",
-        "uk.ac.starlink.fits.FitsTableBuilder",
-        "uk.ac.starlink.votable.VOTableBuilder",
-        "uk.ac.starlink.cdf.CdfTableBuilder",
-        "uk.ac.starlink.ecsv.EcsvTableBuilder",
-        "uk.ac.starlink.pds4.Pds4TableBuilder",
-        "uk.ac.starlink.table.formats.MrtTableBuilder",
-        "uk.ac.starlink.parquet.ParquetTableBuilder",
-        "uk.ac.starlink.feather.FeatherTableBuilder",
-        "uk.ac.starlink.gbin.GbinTableBuilder",
+    private static final Predicate<byte[]> FITS_MAGIC =
+        intro -> startsWith( intro, "SIMPLE  =" );
+    private static final BuilderDecl[] DEFAULT_BUILDER_DECLS = {
+        new BuilderDecl( "uk.ac.starlink.votable.FitsPlusTableBuilder",
+                         "FITS-plus", FITS_MAGIC ),
+        new BuilderDecl( "uk.ac.starlink.votable.ColFitsPlusTableBuilder",
+                         "colfits-plus", FITS_MAGIC ),
+        new BuilderDecl( "uk.ac.starlink.fits.ColFitsTableBuilder",
+                         "colfits-basic", FITS_MAGIC ),
+        new BuilderDecl( "uk.ac.starlink.fits.FitsTableBuilder",
+                         "FITS", FITS_MAGIC ),
+        new BuilderDecl( "uk.ac.starlink.votable.VOTableBuilder",
+                         "VOTable", null ),
+        new BuilderDecl( "uk.ac.starlink.cdf.CdfTableBuilder",
+                         "CDF", StarTableFactory::isCdfMagic ),
+        new BuilderDecl( "uk.ac.starlink.ecsv.EcsvTableBuilder",
+                         "ECSV", intro -> startsWith( intro, "#" ) ),
+        new BuilderDecl( "uk.ac.starlink.pds4.Pds4TableBuilder",
+                         "PDS4", intro -> intro.length >= 32
+                                       && contains( intro, (byte) '<' ) ),
+        new BuilderDecl( MrtTableBuilder.class.getName(),
+                         "MRT", intro -> startsWith( intro,
+                                                     MrtTableBuilder
+                                                    .MAGIC_TXT ) ),
+        new BuilderDecl( "uk.ac.starlink.parquet.ParquetTableBuilder",
+                         "parquet", intro -> startsWith( intro, "PAR1" ) ),
+        new BuilderDecl( "uk.ac.starlink.feather.FeatherTableBuilder",
+                         "feather", intro -> startsWith( intro, "FEA1" ) ),
+        new BuilderDecl( "uk.ac.starlink.gbin.GbinTableBuilder",
+                         "GBIN", StarTableFactory::isGbinMagic ),
     };
     private static String[] knownBuilderClasses = {
         AsciiTableBuilder.class.getName(),
@@ -245,17 +276,18 @@ public class StarTableFactory {
     public StarTableFactory( boolean requireRandom ) {
         requireRandom_ = requireRandom;
 
-        /* List of default builders. */
-        defaultBuilders_ =
-            listFromClassNames( defaultBuilderClasses, TableBuilder.class );
+        /* Default builders; these are only instantiated when required. */
+        slots_ = new BuilderSlot[ DEFAULT_BUILDER_DECLS.length ];
+        for ( int i = 0; i < slots_.length; i++ ) {
+            slots_[ i ] = new BuilderSlot( DEFAULT_BUILDER_DECLS[ i ] );
+        }
 
-        /* List of all known builders - this includes the default list,
-         * some others, and any listed in a system property. */
-        knownBuilders_ = new ArrayList<TableBuilder>();
-        knownBuilders_.addAll( defaultBuilders_ );
-        knownBuilders_.addAll( listFromClassNames( knownBuilderClasses,
+        /* Other known builders, including any listed in a system property.
+         * The list of all known builders is these plus the defaults. */
+        extraBuilders_ = new ArrayList<TableBuilder>();
+        extraBuilders_.addAll( listFromClassNames( knownBuilderClasses,
                                                    TableBuilder.class ) );
-        knownBuilders_.addAll( Loader
+        extraBuilders_.addAll( Loader
                               .getClassInstances( KNOWN_BUILDERS_PROPERTY,
                                                   TableBuilder.class ) );
 
@@ -281,10 +313,24 @@ public class StarTableFactory {
      */
     public StarTableFactory( StarTableFactory fact ) {
         this( fact.requireRandom() );
-        defaultBuilders_ = new ArrayList<TableBuilder>( fact.defaultBuilders_ );
-        knownBuilders_ = new ArrayList<TableBuilder>( fact.knownBuilders_ );
+        for ( int i = 0; i < slots_.length; i++ ) {
+            slots_[ i ].copyFrom( fact.slots_[ i ] );
+        }
+        extraBuilders_.clear();
+        extraBuilders_.addAll( fact.extraBuilders_ );
+        synchronized ( fact ) {
+            defaultBuilders_ = fact.defaultBuilders_ == null
+                             ? null
+                             : new ArrayList<TableBuilder>( fact
+                                                           .defaultBuilders_ );
+            knownBuilders_ = fact.knownBuilders_ == null
+                           ? null
+                           : new ArrayList<TableBuilder>( fact
+                                                         .knownBuilders_ );
+        }
         schemes_ = new LinkedHashMap<String,TableScheme>( fact.schemes_ );
         storagePolicy_ = fact.storagePolicy_;
+        rowRunner_ = fact.rowRunner_;
         tablePrep_ = fact.tablePrep_;
     }
 
@@ -297,7 +343,10 @@ public class StarTableFactory {
      * @return  a mutable list of {@link TableBuilder} objects used to
      *          construct <code>StarTable</code>s
      */
-    public List<TableBuilder> getDefaultBuilders() {
+    public synchronized List<TableBuilder> getDefaultBuilders() {
+        if ( defaultBuilders_ == null ) {
+            defaultBuilders_ = instantiateSlots();
+        }
         return defaultBuilders_;
     }
 
@@ -309,7 +358,7 @@ public class StarTableFactory {
      * @param  builders  an array of TableBuilder objects used to
      *         construct <code>StarTable</code>s
      */
-    public void setDefaultBuilders( TableBuilder[] builders ) {
+    public synchronized void setDefaultBuilders( TableBuilder[] builders ) {
         defaultBuilders_ =
             new ArrayList<TableBuilder>( Arrays.asList( builders ) );
     }
@@ -324,7 +373,12 @@ public class StarTableFactory {
      * @return  a mutable list of {@link TableBuilder} objects which may be
      *          specified for table building
      */
-    public List<TableBuilder> getKnownBuilders() {
+    public synchronized List<TableBuilder> getKnownBuilders() {
+        if ( knownBuilders_ == null ) {
+            List<TableBuilder> list = instantiateSlots();
+            list.addAll( extraBuilders_ );
+            knownBuilders_ = list;
+        }
         return knownBuilders_;
     }
 
@@ -337,7 +391,7 @@ public class StarTableFactory {
      * @param  builders  an array of TableBuilder objects used to
      *         construct <code>StarTable</code>s
      */
-    public void setKnownBuilders( TableBuilder[] builders ) {
+    public synchronized void setKnownBuilders( TableBuilder[] builders ) {
         knownBuilders_ =
             new ArrayList<TableBuilder>( Arrays.asList( builders ) );
     }
@@ -436,6 +490,28 @@ public class StarTableFactory {
         return storagePolicy_;
     }
 
+    /**
+     * Sets the row runner used when tables need to be copied into
+     * random-access storage.  If non-null, input tables whose rows can
+     * be split will be read into storage in parallel.
+     * The default is null, which means that copies are made sequentially.
+     *
+     * @param  runner  row runner, or null for sequential copying
+     */
+    public void setRowRunner( RowRunner runner ) {
+        rowRunner_ = runner;
+    }
+
+    /**
+     * Returns the row runner used when tables need to be copied into
+     * random-access storage.
+     *
+     * @return  row runner, or null for sequential copying
+     */
+    public RowRunner getRowRunner() {
+        return rowRunner_;
+    }
+
     /**
      * Sets a table preparation object that is invoked on each table
      * created by this factory.  Any previous value is overwritten.
@@ -490,14 +566,14 @@ public class StarTableFactory {
      * is built using its data.
      *
      * <p>This convenience method is equivalent to
-     * <code>getStoragePolicy().randomTable(table)</code>.
+     * <code>getStoragePolicy().randomTable(table,getRowRunner())</code>.
      *
      * @param  table  original table
      * @return  a table with the same data as <code>table</code> and with
      *          <code>isRandom()==true</code>
      */
     public StarTable randomTable( StarTable table ) throws IOException {
-        return getStoragePolicy().randomTable( table );
+        return getStoragePolicy().randomTable( table, rowRunner_ );
     }
 
     /**
@@ -1008,7 +1084,7 @@ public class StarTableFactory {
              * take it. */
             if ( InputStream.class.isAssignableFrom( clazz ) &&
                  ! flavor.isFlavorSerializedObjectType() ) {
-                for ( TableBuilder builder : defaultBuilders_ ) {
+                for ( TableBuilder builder : getDefaultBuilders() ) {
                     if ( builder.canImport( flavor ) ) {
                         Object data;
                         try {
@@ -1056,7 +1132,7 @@ public class StarTableFactory {
                 return true;
             }
             else {
-                for ( TableBuilder builder : defaultBuilders_ ) {
+                for ( TableBuilder builder : getDefaultBuilders() ) {
                     if ( builder.canImport( flavor ) ) {
                         return true;
                     }
@@ -1107,10 +1183,9 @@ public class StarTableFactory {
         }
 
         /* Try all the known handlers, matching against format name. */
-        for ( TableBuilder builder : knownBuilders_ ) {
-            if ( builder.getFormatName().equalsIgnoreCase( name ) ) {
-                return builder;
-            }
+        TableBuilder knownBuilder = getKnownBuilder( name );
+        if ( knownBuilder != null ) {
+            return knownBuilder;
         }
 
         /* See if it's a dynamically created builder; the basic name
@@ -1153,10 +1228,9 @@ public class StarTableFactory {
      */
     private Class<? extends TableBuilder> getBuilderClass( String name )
             throws TableFormatException {
-        for ( TableBuilder builder : knownBuilders_ ) {
-            if ( builder.getFormatName().equalsIgnoreCase( name ) ) {
-                return builder.getClass();
-            }
+        TableBuilder knownBuilder = getKnownBuilder( name );
+        if ( knownBuilder != null ) {
+            return knownBuilder.getClass();
         }
         Class<?> clazz;
         try {
@@ -1181,7 +1255,8 @@ public class StarTableFactory {
      * @param  datsrc   data source
      * @return  list of candidate table builders
      */
-    private List<TableBuilder> getTableBuilders( DataSource datsrc ) {
+    private List<TableBuilder> getTableBuilders( DataSource datsrc )
+            throws IOException {
 
         /* Include first of all the default builder list; these can
          * identify tables by magic number, so will succeed if the
@@ -1191,19 +1266,47 @@ public class StarTableFactory {
          * original order of that list means that e.g. a colfits is
          * interpreted as a colfits even though it's also a FITS.
          * Hence the looksLikeFile method is never used for builders
-         * in the default list. */ 
-        List<TableBuilder> list =
-            new ArrayList<TableBuilder>( defaultBuilders_ );
+         * in the default list.
+         * If the default list has not been instantiated, use the
+         * declared signatures to load and try only those builders
+         * that might recognise the intro bytes. */
+        List<TableBuilder> dfltBuilders;
+        List<TableBuilder> knownBuilders;
+        synchronized ( this ) {
+            dfltBuilders = defaultBuilders_;
+            knownBuilders = knownBuilders_;
+        }
+        final List<TableBuilder> list;
+        if ( dfltBuilders != null ) {
+            list = new ArrayList<TableBuilder>( dfltBuilders );
+        }
+        else {
+            byte[] intro = datsrc.getIntro();
+            list = new ArrayList<TableBuilder>();
+            for ( BuilderSlot slot : slots_ ) {
+                if ( slot.decl_.acceptsIntro( intro ) ) {
+                    TableBuilder builder = slot.getBuilder();
+                    if ( builder != null ) {
+                        list.add( builder );
+                    }
+                }
+            }
+        }
 
         /* Then look at the filename/location indicated by the datasource;
-         * if one of the known handlers recognises the name, try that one too.*/
+         * if one of the known handlers recognises the name, try that one too.
+         * Handlers already in the list are not considered,
+         * since they have already been tried. */
+        List<TableBuilder> locBuilders = knownBuilders != null
+                                       ? knownBuilders
+                                       : extraBuilders_;
         TableBuilder locBuilder =
-            getBuilderByLocation( knownBuilders_, datsrc.getName() );
+            getBuilderByLocation( locBuilders, list, datsrc.getName() );
         if ( locBuilder == null ) {
             URL url = datsrc.getURL();
             if ( url != null ) {
-                locBuilder =
-                    getBuilderByLocation( knownBuilders_, url.toString() );
+                locBuilder = getBuilderByLocation( locBuilders, list,
+                                                   url.toString() );
             }
         }
         if ( locBuilder != null ) {
@@ -1217,17 +1320,20 @@ public class StarTableFactory {
      * Compression suffixes are stripped from the given location string.
      *
      * @param   builders   list of candidate TableBuilders
+     * @param   excludes   list of TableBuilders which will not be returned
      * @param   loc      table location/filename; compression suffixes etc
      *                   may be included, but will be ignored
      * @return   a TableBuilder that declares itself (probably) suitable
      *           for use with the given location, or null if none do
      */
     private static TableBuilder
-            getBuilderByLocation( List<TableBuilder> builders, String loc ) {
+            getBuilderByLocation( List<TableBuilder> builders,
+                                  List<TableBuilder> excludes, String loc ) {
         if ( loc != null ) {
             loc = loc.replaceFirst( "[.](gz|Z|bz2|bzip2|gzip)$", "" );
             for ( TableBuilder builder : builders ) {
-                if ( builder.looksLikeFile( loc ) ) {
+                if ( ! excludes.contains( builder ) &&
+                     builder.looksLikeFile( loc ) ) {
                     return builder;
                 }
             }
@@ -1235,6 +1341,55 @@ public class StarTableFactory {
         return null;
     }
 
+    /**
+     * Returns the known builder with a given format name.
+     * If the known builder list has not been instantiated,
+     * only the matching builder is loaded.
+     *
+     * @param  name  format name, matched case-insensitively
+     * @return  known builder, or null if there is none with that name
+     */
+    private TableBuilder getKnownBuilder( String name ) {
+        List<TableBuilder> knownBuilders;
+        synchronized ( this ) {
+            knownBuilders = knownBuilders_;
+        }
+        if ( knownBuilders == null ) {
+            for ( BuilderSlot slot : slots_ ) {
+                if ( slot.decl_.formatName_.equalsIgnoreCase( name ) ) {
+                    TableBuilder builder = slot.getBuilder();
+                    if ( builder != null &&
+                         builder.getFormatName().equalsIgnoreCase( name ) ) {
+                        return builder;
+                    }
+                }
+            }
+            knownBuilders = extraBuilders_;
+        }
+        for ( TableBuilder builder : knownBuilders ) {
+            if ( builder.getFormatName().equalsIgnoreCase( name ) ) {
+                return builder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a list of all the default builders that can be instantiated.
+     *
+     * @return  new mutable list of default builders
+     */
+    private List<TableBuilder> instantiateSlots() {
+        List<TableBuilder> list = new ArrayList<TableBuilder>();
+        for ( BuilderSlot slot : slots_ ) {
+            TableBuilder builder = slot.getBuilder();
+            if ( builder != null ) {
+                list.add( builder );
+            }
+        }
+        return list;
+    }
+
     /**
      * Prepares a table for return from one of the makeStarTable methods.
      * Currently what this does is to randomise it if it needs randomising.
@@ -1413,22 +1568,212 @@ public class StarTableFactory {
                                                    Class<T> type ) {
         List<T> list = new ArrayList<>();
         for ( String cname : classNames ) {
-            try {
-                @SuppressWarnings("unchecked")
-                Class<? extends T> clazz =
-                    (Class<? extends T>) Class.forName( cname );
-                T instance = clazz.getDeclaredConstructor().newInstance();
+            T instance = instantiate( cname, type );
+            if ( instance != null ) {
                 list.add( instance );
-                logger.config( cname + " registered" );
             }
-            catch ( ClassNotFoundException e ) {
-                logger.info( cname + " not found - can't register" );
+        }
+        return list;
+    }
+
+    /**
+     * Instantiates a named class using its no-arg constructor.
+     * Behaviour is logged.
+     *
+     * @param  cname  name of class to instantiate
+     * @param  type    required type of instance
+     * @return  new instance, or null if it could not be created
+     */
+    private static <T> T instantiate( String cname, Class<T> type ) {
+        try {
+            @SuppressWarnings("unchecked")
+            Class<? extends T> clazz =
+                (Class<? extends T>) Class.forName( cname );
+            T instance = clazz.getDeclaredConstructor().newInstance();
+            logger.config( cname + " registered" );
+            return instance;
+        }
+        catch ( ClassNotFoundException e ) {
+            logger.info( cname + " not found - can't register" );
+        }
+        catch ( Throwable e ) {
+            logger.log( Level.WARNING,
+                        "Failed to register " + cname + " - " + e, e );
+        }
+        return null;
+    }
+
+    /**
+     * Indicates whether a byte array starts with the bytes of a
+     * given ASCII string.
+     *
+     * @param  intro  byte buffer
+     * @param  magic  ASCII magic string
+     * @return  true iff intro starts with magic
+     */
+    private static boolean startsWith( byte[] intro, String magic ) {
+        int leng = magic.length();
+        if ( intro.length < leng ) {
+            return false;
+        }
+        for ( int i = 0; i < leng; i++ ) {
+            if ( intro[ i ] != (byte) magic.charAt( i ) ) {
+                return false;
             }
-            catch ( Throwable e ) {
-                logger.log( Level.WARNING,
-                            "Failed to register " + cname + " - " + e, e );
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether a byte array contains a given byte value.
+     *
+     * @param  intro  byte buffer
+     * @param  b   byte value
+     * @return  true iff b appears in intro
+     */
+    private static boolean contains( byte[] intro, byte b ) {
+        for ( byte b1 : intro ) {
+            if ( b1 == b ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Signature test for CDF files.
+     * This accepts any of the leading magic numbers used by
+     * the CDF format versions.
+     *
+     * @param  intro  intro bytes
+     * @return  true iff intro might be the start of a CDF file
+     */
+    private static boolean isCdfMagic( byte[] intro ) {
+        if ( intro.length < 8 ) {
+            return false;
+        }
+        int magic = ( ( intro[ 0 ] & 0xff ) << 24 )
+                  | ( ( intro[ 1 ] & 0xff ) << 16 )
+                  | ( ( intro[ 2 ] & 0xff ) <<  8 )
+                  | ( ( intro[ 3 ] & 0xff ) <<  0 );
+        return magic == 0xcdf30001
+            || magic == 0xcdf26002
+            || magic == 0x0000ffff;
+    }
+
+    /**
+     * Signature test for GBIN files.
+     * This accepts both the V3+ GBIN magic number and the
+     * java serialization stream magic number used by earlier versions.
+     *
+     * @param  intro  intro bytes
+     * @return  true iff intro might be the start of a GBIN file
+     */
+    private static boolean isGbinMagic( byte[] intro ) {
+        if ( intro.length < 13 ) {
+            return false;
+        }
+        if ( intro[ 0 ] == (byte) 0xac && intro[ 1 ] == (byte) 0xed ) {
+            return true;
+        }
+        byte[] v3magic = { (byte) 0x89, 'G', 'B', 'I', 'N', 0x0d, 0x0a, 0x1a };
+        for ( int i = 0; i < v3magic.length; i++ ) {
+            if ( intro[ i ] != v3magic[ i ] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Declares a default table builder without instantiating it.
+     */
+    private static class BuilderDecl {
+        final String className_;
+        final String formatName_;
+        final Predicate<byte[]> magic_;
+
+        /**
+         * Constructor.
+         *
+         * @param  className  name of TableBuilder implementation class
+         * @param  formatName  format name reported by the builder
+         * @param  magic   test on intro bytes which must be passed
+         *                 for the builder to be able to read a table,
+         *                 or null if any input may be suitable
+         */
+        BuilderDecl( String className, String formatName,
+                     Predicate<byte[]> magic ) {
+            className_ = className;
+            formatName_ = formatName;
+            magic_ = magic;
+        }
+
+        /**
+         * Indicates whether the declared builder might be able to
+         * read input starting with the given bytes.
+         *
+         * @param  intro  intro bytes
+         * @return  false if the declared builder is certain to reject
+         *          the input
+         */
+        boolean acceptsIntro( byte[] intro ) {
+            return magic_ == null || magic_.test( intro );
+        }
+    }
+
+    /**
+     * Holds a lazily instantiated default table builder.
+     */
+    private static class BuilderSlot {
+        final BuilderDecl decl_;
+        private TableBuilder builder_;
+        private boolean tried_;
+
+        /**
+         * Constructor.
+         *
+         * @param  decl  builder declaration
+         */
+        BuilderSlot( BuilderDecl decl ) {
+            decl_ = decl;
+        }
+
+        /**
+         * Returns the builder instance, instantiating it if required.
+         *
+         * @return  builder, or null if it cannot be instantiated
+         */
+        synchronized TableBuilder getBuilder() {
+            if ( ! tried_ ) {
+                tried_ = true;
+                builder_ = instantiate( decl_.className_, TableBuilder.class );
+                assert builder_ == null
+                    || builder_.getFormatName()
+                               .equalsIgnoreCase( decl_.formatName_ )
+                     : "Declared format name " + decl_.formatName_
+                     + " != " + builder_.getFormatName();
+            }
+            return builder_;
+        }
+
+        /**
+         * Shares the instantiation state of another slot for the
+         * same declaration.
+         *
+         * @param  other  slot to copy from
+         */
+        void copyFrom( BuilderSlot other ) {
+            TableBuilder builder;
+            boolean tried;
+            synchronized ( other ) {
+                builder = other.builder_;
+                tried = other.tried_;
+            }
+            synchronized ( this ) {
+                builder_ = builder;
+                tried_ = tried;
             }
         }
-        return list;
     }
 }
@@ -2,10 +2,16 @@ package uk.ac.starlink.table;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.jdbc.JDBCStarTable;
 import uk.ac.starlink.table.storage.AdaptiveByteStore;
 import uk.ac.starlink.table.storage.ByteStoreStoragePolicy;
+import uk.ac.starlink.table.storage.CompressedRowStore;
 import uk.ac.starlink.table.storage.ListRowStore;
 import uk.ac.starlink.table.storage.DiscardByteStore;
 import uk.ac.starlink.table.storage.DiscardRowStore;
@@ -34,7 +40,8 @@ import uk.ac.starlink.util.Loader;
  *
  * <p>Code which wants to store data in a particular way may use one of
  * the predefined policies {@link #ADAPTIVE}, {@link #PREFER_MEMORY},
- * {@link #PREFER_DISK} {@link #SIDEWAYS} or {@link #DISCARD},
+ * {@link #PREFER_DISK} {@link #SIDEWAYS}, {@link #COMPRESSED}
+ * or {@link #DISCARD},
  * or may implement their own policy by extending this class.
  * If you want more control, you can always create instances of the 
  * public {@link RowStore} implementations directly.
@@ -59,7 +66,7 @@ public abstract class StoragePolicy {
      * Name of the system property which can be set to indicate the
      * initial setting of the default storage policy ({@value}).
      * Currently recognised values are "adaptive", "memory", "disk",
-     * "sideways", and "discard".
+     * "sideways", "compressed" and "discard".
      * Alternatively, the classname of a StoragePolicy implementation
      * with a no-arg constructor may be supplied.
      */
@@ -86,6 +93,9 @@ public abstract class StoragePolicy {
                 else if ( "sideways".equals( pref ) ) {
                     defaultInstance_ = SIDEWAYS;
                 }
+                else if ( "compressed".equals( pref ) ) {
+                    defaultInstance_ = COMPRESSED;
+                }
                 else if ( "discard".equals( pref ) ) {
                     defaultInstance_ = DISCARD;
                 }
@@ -195,6 +205,156 @@ public abstract class StoragePolicy {
         return out;
     }
 
+    /**
+     * Returns a table based on a given table and guaranteed to have
+     * random access, reading the input rows in parallel if required.
+     * This behaves like {@link #randomTable(StarTable)},
+     * but if a copy needs to be made it is done using
+     * {@link #copyTable(StarTable,RowRunner)}.
+     *
+     * @param  table  original table
+     * @param  runner  controls parallel reading, or null for sequential
+     * @return  a table with the same data as <code>table</code> and with
+     *          <code>isRandom()==true</code>
+     */
+    public StarTable randomTable( StarTable table, RowRunner runner )
+            throws IOException {
+        return table.isRandom() ? table
+                                : copyTable( table, runner );
+    }
+
+    /**
+     * Returns a random-access deep copy of the given table,
+     * reading the input rows in parallel if required.
+     * This is equivalent to <code>copyTable(table,table,runner)</code>.
+     *
+     * @param   table  input table
+     * @param  runner  controls parallel reading, or null for sequential
+     * @return  deep copy of <code>table</code>
+     */
+    public StarTable copyTable( StarTable table, RowRunner runner )
+            throws IOException {
+        return copyTable( table, table, runner );
+    }
+
+    /**
+     * Returns a random-access deep copy of a given table's data,
+     * reading the input rows in parallel if required.
+     *
+     * <p>The row splits supplied by the runner are each streamed
+     * concurrently into a separate row store configured by the policy
+     * returned from {@link #createSegmentPolicy},
+     * so this works for disk-based as well as memory-based policies.
+     * The resulting segments are then stitched together in the original
+     * row order to form the output table.
+     * If the runner turns out not to split the input, or if the
+     * row order of the splits cannot be determined, the result is
+     * the same as for sequential operation.
+     *
+     * <p>The output table takes its metadata from the supplied
+     * <code>meta</code> table, which may or may not be the same object
+     * as the <code>table</code> supplying the row data.
+     * The result retains no reference to the data table,
+     * except by way of the metadata table if they are the same.
+     *
+     * @param  meta  table supplying metadata for the output;
+     *               its data is not read
+     * @param  table  table supplying row data for the output;
+     *                its columns must be compatible with those of
+     *                <code>meta</code>
+     * @param  runner  controls parallel reading, or null for sequential
+     * @return  random-access table with the metadata of <code>meta</code>
+     *          and the data of <code>table</code>
+     */
+    public StarTable copyTable( StarTable meta, StarTable table,
+                                RowRunner runner )
+            throws IOException {
+        if ( runner == null ) {
+            return copySequential( meta, table );
+        }
+        List<Segment> segments =
+            runner.collect( new SegmentCollector( createSegmentPolicy(), meta ),
+                            table );
+        int nseg = segments.size();
+        if ( nseg == 0 ) {
+            return copySequential( meta, table );
+        }
+        else if ( nseg == 1 ) {
+            return segments.get( 0 ).table_;
+        }
+
+        /* Order the segments by starting row index, and check that
+         * they form a contiguous, complete sequence. */
+        boolean isOrdered = true;
+        for ( Segment seg : segments ) {
+            isOrdered = isOrdered && seg.irow0_ >= 0;
+        }
+        if ( isOrdered ) {
+            segments.sort( Comparator.comparingLong( seg -> seg.irow0_ ) );
+            long irow = 0;
+            for ( Segment seg : segments ) {
+                isOrdered = isOrdered && seg.irow0_ == irow;
+                irow += seg.table_.getRowCount();
+            }
+        }
+        if ( ! isOrdered ) {
+            logger_.warning( "Can't determine order of parallel row splits"
+                           + " - copy sequentially" );
+            return copySequential( meta, table );
+        }
+        StarTable[] segTables = new StarTable[ nseg ];
+        for ( int is = 0; is < nseg; is++ ) {
+            segTables[ is ] = segments.get( is ).table_;
+        }
+        StarTable out = new ConcatStarTable( meta, segTables );
+        assert out.isRandom();
+        return out;
+    }
+
+    /**
+     * Returns a policy to supply the row stores used for the segments
+     * of a single parallel copy by
+     * {@link #copyTable(StarTable,StarTable,RowRunner)}.
+     * Policies which limit the resources used by each row store
+     * should override this method so that the segments,
+     * which may be numerous, together stay within the limit that
+     * a single store would have.
+     *
+     * <p>The default implementation returns this policy.
+     *
+     * @return  policy for the segments of one parallel copy
+     */
+    protected StoragePolicy createSegmentPolicy() {
+        return this;
+    }
+
+    /**
+     * Makes a random-access copy of a table by reading its rows
+     * sequentially into a single row store.
+     * This is used by {@link #copyTable(StarTable,StarTable,RowRunner)}
+     * when no runner is supplied, or when a parallel copy has to be
+     * abandoned, in which case some or all of the rows may already
+     * have been written to other row stores obtained from this policy.
+     *
+     * @param  meta  table supplying metadata for the output
+     * @param  table  table supplying row data for the output
+     * @return  random-access copy
+     */
+    protected StarTable copySequential( StarTable meta, StarTable table )
+            throws IOException {
+        if ( meta == table ) {
+            return copyTable( table );
+        }
+        RowStore store = makeConfiguredRowStore( meta );
+        try ( RowSequence rseq = table.getRowSequence() ) {
+            while ( rseq.next() ) {
+                store.acceptRow( rseq.getRow() );
+            }
+        }
+        store.endRows();
+        return store.getStarTable();
+    }
+
     /**
      * Storage policy which will always store table data in memory.
      * Table cells are stored as objects, which will be fast to write,
@@ -265,6 +425,33 @@ public abstract class StoragePolicy {
             }
         };
 
+    /**
+     * Storage policy which will store table data in memory in a
+     * compressed column-oriented form.
+     * Each column is encoded in blocks using a scheme suited to its
+     * data type (bit packing for integers, XOR coding for floating point
+     * values, dictionaries for strings with few distinct values),
+     * which typically allows considerably more table data to fit
+     * into a given amount of memory than {@link #PREFER_MEMORY},
+     * at the cost of some decoding work when the data is read.
+     */
+    public static final StoragePolicy COMPRESSED = new StoragePolicy() {
+        public ByteStore makeByteStore() {
+            return new MemoryByteStore();
+        }
+        public RowStore makeRowStore() {
+            return new CompressedRowStore();
+        }
+        public RowStore makeConfiguredRowStore( StarTable meta ) {
+            CompressedRowStore store = new CompressedRowStore();
+            store.acceptMetadata( meta );
+            return store;
+        }
+        public String toString() {
+            return "StoragePolicy.COMPRESSED";
+        }
+    };
+
     /**
      * Storage policy which just throws away the rows it is given.
      * Tables obtained from its row stores will have no rows.
@@ -302,6 +489,22 @@ public abstract class StoragePolicy {
         protected ByteStore attemptMakeByteStore() throws IOException {
             return new AdaptiveByteStore();
         } 
+
+        /* Segment stores share the memory allowance of a single store. */
+        @Override
+        protected StoragePolicy createSegmentPolicy() {
+            final int limit = AdaptiveByteStore.getDefaultLimit();
+            final AtomicLong budget = new AtomicLong( limit );
+            return new ByteStoreStoragePolicy() {
+                protected ByteStore attemptMakeByteStore()
+                        throws IOException {
+                    return new AdaptiveByteStore( limit, budget );
+                }
+                public String toString() {
+                    return "StoragePolicy.ADAPTIVE(segment)";
+                }
+            };
+        }
         public String toString() {
             return "StoragePolicy.ADAPTIVE";
         }
@@ -398,4 +601,72 @@ public abstract class StoragePolicy {
             return "StoragePolicy." + name_;
         }
     }
+
+    /**
+     * Contiguous run of rows stored from a single row split.
+     */
+    private static class Segment {
+        final long irow0_;
+        final StarTable table_;
+
+        /**
+         * Constructor.
+         *
+         * @param  irow0  index in the input table of the first stored row,
+         *                or -1 if not known
+         * @param  table  random-access table containing stored rows
+         */
+        Segment( long irow0, StarTable table ) {
+            irow0_ = irow0;
+            table_ = table;
+        }
+    }
+
+    /**
+     * Collector that streams each row split into its own row store.
+     * Each accumulation creates a new segment, so that it doesn't matter
+     * whether accumulators are reused between splits.
+     */
+    private static class SegmentCollector
+            extends RowCollector<List<Segment>> {
+
+        private final StoragePolicy policy_;
+        private final StarTable meta_;
+
+        /**
+         * Constructor.
+         *
+         * @param  policy  supplies row stores
+         * @param  meta  metadata for row stores
+         */
+        SegmentCollector( StoragePolicy policy, StarTable meta ) {
+            policy_ = policy;
+            meta_ = meta;
+        }
+
+        public List<Segment> createAccumulator() {
+            return new ArrayList<Segment>();
+        }
+
+        public void accumulateRows( RowSplittable rseq, List<Segment> acc )
+                throws IOException {
+            if ( rseq.next() ) {
+                LongSupplier rowIndex = rseq.rowIndex();
+                long irow0 = rowIndex == null ? -1L
+                                              : rowIndex.getAsLong();
+                RowStore store = policy_.makeConfiguredRowStore( meta_ );
+                do {
+                    store.acceptRow( rseq.getRow() );
+                } while ( rseq.next() );
+                store.endRows();
+                acc.add( new Segment( irow0, store.getStarTable() ) );
+            }
+        }
+
+        public List<Segment> combine( List<Segment> acc1,
+                                      List<Segment> acc2 ) {
+            acc1.addAll( acc2 );
+            return acc1;
+        }
+    }
 }
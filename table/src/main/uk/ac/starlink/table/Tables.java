@@ -314,6 +314,13 @@ public class Tables {
                     racc.setRowIndex( lrow );
                     val4 = racc.getCell( icol );
                 }
+
+                /* Check that primitive accessors match the object values. */
+                checkPrimitiveAccess( cell, rseq, icol );
+                checkPrimitiveAccess( cell, rsplit, icol );
+                if ( isRandom ) {
+                    checkPrimitiveAccess( cell, racc, icol );
+                }
                 boolean isNull = cell == null;
                 if ( isNull ) {
                     assertTrue( colinfos[ icol ].isNullable() );
@@ -969,6 +976,33 @@ public class Tables {
         throw new NumberFormatException( msg );
     }
 
+    /**
+     * Checks that the primitive accessor methods of a RowData object
+     * give results consistent with a given cell value.
+     *
+     * @param  cell  cell value
+     * @param  rdata  row data positioned at the row containing cell
+     * @param  icol  column index of cell
+     * @throws  AssertionError  if there is an inconsistency
+     */
+    private static void checkPrimitiveAccess( Object cell, RowData rdata,
+                                              int icol )
+            throws IOException {
+        assertTrue( rdata.isNull( icol ) == ( cell == null ) );
+        if ( cell instanceof Number ) {
+            Number num = (Number) cell;
+            assertTrue( Double.compare( num.doubleValue(),
+                                        rdata.getDouble( icol ) ) == 0 );
+            assertTrue( num.longValue() == rdata.getLong( icol ) );
+            assertTrue( num.intValue() == rdata.getInt( icol ) );
+        }
+        else {
+            assertTrue( Double.isNaN( rdata.getDouble( icol ) ) );
+            assertTrue( rdata.getLong( icol ) == 0L );
+            assertTrue( rdata.getInt( icol ) == 0 );
+        }
+    }
+
     /**
      * Implements assertion semantics.
      * This differs from the <code>assert</code>
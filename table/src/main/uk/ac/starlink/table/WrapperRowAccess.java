@@ -19,6 +19,7 @@ public class WrapperRowAccess implements RowAccess {
 
     private final RowAccess baseAcc_;
     private final RowData data_;
+    private final boolean isPrimitiveForwarded_;
 
     /**
      * Constructs a new RowAccess based on a given one.
@@ -40,6 +41,12 @@ public class WrapperRowAccess implements RowAccess {
     public WrapperRowAccess( RowAccess baseAcc, RowData data ) {
         baseAcc_ = baseAcc;
         data_ = data;
+
+        /* The primitive accessors may only be forwarded to the data object
+         * if a subclass has not redefined the cell values. */
+        isPrimitiveForwarded_ =
+            WrapperRowSequence
+           .isGetCellInherited( getClass(), WrapperRowAccess.class );
     }
 
     public void setRowIndex( long irow ) throws IOException {
@@ -54,6 +61,50 @@ public class WrapperRowAccess implements RowAccess {
         return data_.getRow();
     }
 
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public double getDouble( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getDouble( icol )
+                                     : RowAccess.super.getDouble( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public long getLong( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getLong( icol )
+                                     : RowAccess.super.getLong( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public int getInt( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getInt( icol )
+                                     : RowAccess.super.getInt( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public boolean isNull( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.isNull( icol )
+                                     : RowAccess.super.isNull( icol );
+    }
+
     public void close() throws IOException {
         baseAcc_.close();
     }
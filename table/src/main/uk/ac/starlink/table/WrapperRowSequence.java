@@ -18,6 +18,7 @@ public class WrapperRowSequence implements RowSequence {
 
     protected final RowSequence baseSeq;
     private final RowData data_;
+    private final boolean isPrimitiveForwarded_;
 
     /**
      * Constructs a new RowSequence based on a given one.
@@ -39,6 +40,11 @@ public class WrapperRowSequence implements RowSequence {
     public WrapperRowSequence( RowSequence baseSeq, RowData data ) {
         this.baseSeq = baseSeq;
         data_ = data;
+
+        /* The primitive accessors may only be forwarded to the data object
+         * if a subclass has not redefined the cell values. */
+        isPrimitiveForwarded_ =
+            isGetCellInherited( getClass(), WrapperRowSequence.class );
     }
 
     public boolean next() throws IOException {
@@ -53,6 +59,50 @@ public class WrapperRowSequence implements RowSequence {
         return data_.getRow();
     }
 
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public double getDouble( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getDouble( icol )
+                                     : RowSequence.super.getDouble( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public long getLong( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getLong( icol )
+                                     : RowSequence.super.getLong( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public int getInt( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.getInt( icol )
+                                     : RowSequence.super.getInt( icol );
+    }
+
+    /**
+     * Forwards to the data object if this class's <code>getCell</code>
+     * method has not been overridden, otherwise uses the default
+     * implementation based on <code>getCell</code>.
+     */
+    @Override
+    public boolean isNull( int icol ) throws IOException {
+        return isPrimitiveForwarded_ ? data_.isNull( icol )
+                                     : RowSequence.super.isNull( icol );
+    }
+
     public void close() throws IOException {
         baseSeq.close();
     }
@@ -72,4 +122,25 @@ public class WrapperRowSequence implements RowSequence {
         }
         return sbuf.toString();
     }
+
+    /**
+     * Indicates whether the <code>getCell(int)</code> method of a given
+     * class is the one it inherits from a given wrapper base class.
+     * If not, a subclass has modified the cell values, and the
+     * primitive accessor methods cannot safely be forwarded to the
+     * wrapped object.
+     *
+     * @param  clazz  runtime class of wrapper object
+     * @param  baseClazz  wrapper base class
+     * @return  true iff getCell has not been overridden
+     */
+    static boolean isGetCellInherited( Class<?> clazz, Class<?> baseClazz ) {
+        try {
+            return clazz.getMethod( "getCell", int.class )
+                        .getDeclaringClass() == baseClazz;
+        }
+        catch ( NoSuchMethodException | SecurityException e ) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Defines a database-specific way of inserting blocks of rows into
+ * an existing table.
+ * This provides a hook for {@link JDBCFormatter} to use dialect-specific
+ * bulk-loading syntax in place of the standard JDBC batched
+ * parameterised INSERT statements.
+ *
+ * <p>Implementations must be safe for concurrent use on different
+ * connections.
+ */
+public interface BulkLoader {
+
+    /**
+     * Inserts a block of rows into an existing database table.
+     * Transaction management is the responsibility of the caller.
+     *
+     * @param  conn  database connection
+     * @param  tableName  name of the table to insert into,
+     *                    suitable for use in SQL
+     * @param  cols   per-input-column array of SQL column descriptions;
+     *                input columns with null entries are not written
+     * @param  rows   array of rows, each an array of input column values
+     * @param  nrow   number of rows from the start of <code>rows</code>
+     *                to write
+     */
+    void insertRows( Connection conn, String tableName,
+                     JDBCFormatter.SqlColumn[] cols,
+                     Object[][] rows, int nrow )
+            throws SQLException;
+}
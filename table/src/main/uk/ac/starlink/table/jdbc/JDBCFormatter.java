@@ -19,7 +19,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableFactory;
 import uk.ac.starlink.table.Tables;
@@ -28,6 +31,14 @@ import uk.ac.starlink.util.Loader;
 /**
  * Handles conversion of a StarTable into a new table in an RDBMS.
  *
+ * <p>Rows are inserted in blocks, either using JDBC batched
+ * parameterised INSERT statements or, if one is in effect,
+ * a database-specific {@link BulkLoader}.
+ * The block size and the number of rows between transaction commits
+ * can be configured.  Rows may also be written in parallel over
+ * several database connections, if a {@link Connector} and
+ * a {@link uk.ac.starlink.table.RowRunner} are supplied.
+ *
  * @author   Mark Taylor
  */
 public class JDBCFormatter {
@@ -41,10 +52,26 @@ public class JDBCFormatter {
     private final Map<Integer,String> typeNameMap_;
     private final SqlSyntax sqlSyntax_;
     private final boolean upperCasePreferred_;
+    private int batchSize_;
+    private int commitInterval_;
+    private BulkLoader bulkLoader_;
 
     private static Logger logger = 
         Logger.getLogger( "uk.ac.starlink.table.jdbc" );
 
+    /** Default number of rows inserted in each block ({@value}). */
+    public static final int DFLT_BATCH_SIZE = 1000;
+
+    /**
+     * Name of system property which may be used to configure the
+     * default bulk loader ({@value}).
+     * The value may be the classname of a {@link BulkLoader} implementation
+     * with a no-arg constructor, or "<code>none</code>" to indicate that
+     * standard JDBC batching should always be used.
+     * If not set, a loader is chosen based on the database product.
+     */
+    public static final String BULKLOADER_PROPERTY = "jdbc.bulkloader";
+
     /**
      * Constructor.
      *
@@ -62,6 +89,8 @@ public class JDBCFormatter {
         maxTableLeng_ = meta.getMaxTableNameLength();
         upperCasePreferred_ = meta.storesUpperCaseIdentifiers();
         sqlSyntax_ = getSqlSyntax( meta );
+        batchSize_ = DFLT_BATCH_SIZE;
+        bulkLoader_ = getDefaultBulkLoader( meta );
 
         /* Work out column types and see if we need to work out maximum string
          * lengths. */
@@ -198,6 +227,79 @@ public class JDBCFormatter {
         return sql.toString();
     }
 
+    /**
+     * Sets the number of rows inserted together in each block.
+     * Larger values reduce the number of round trips to the database
+     * at the expense of memory.
+     * The default is {@link #DFLT_BATCH_SIZE}.
+     *
+     * @param  batchSize  rows per insert block, at least 1
+     */
+    public void setBatchSize( int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "Bad batch size "
+                                              + batchSize );
+        }
+        batchSize_ = batchSize;
+    }
+
+    /**
+     * Returns the number of rows inserted together in each block.
+     *
+     * @return  rows per insert block
+     */
+    public int getBatchSize() {
+        return batchSize_;
+    }
+
+    /**
+     * Sets the approximate number of rows written between
+     * transaction commits.
+     * If positive, auto-commit is turned off on the connection(s) used
+     * for writing, and a commit is made following the first block
+     * that takes the number of uncommitted rows to this value or more,
+     * as well as at the end of the write.
+     * If zero (the default), the connection's auto-commit setting is
+     * left alone.
+     *
+     * @param  commitInterval  rows per transaction, or 0
+     */
+    public void setCommitInterval( int commitInterval ) {
+        commitInterval_ = commitInterval;
+    }
+
+    /**
+     * Returns the approximate number of rows written between
+     * transaction commits.
+     *
+     * @return  rows per transaction, or 0 for no transaction management
+     */
+    public int getCommitInterval() {
+        return commitInterval_;
+    }
+
+    /**
+     * Sets the database-specific bulk loader used to insert blocks of rows.
+     * If null, standard JDBC batching of parameterised INSERT statements
+     * is used.  The default value is determined by the
+     * database product and the {@link #BULKLOADER_PROPERTY} system property.
+     *
+     * @param  bulkLoader   bulk loader, or null
+     */
+    public void setBulkLoader( BulkLoader bulkLoader ) {
+        bulkLoader_ = bulkLoader;
+    }
+
+    /**
+     * Returns the database-specific bulk loader used to insert blocks
+     * of rows.
+     *
+     * @return  bulk loader, or null for standard JDBC batching
+     */
+    public BulkLoader getBulkLoader() {
+        return bulkLoader_;
+    }
+
     /**
      * Writes data from this formatter's input table into the database.
      * This method is somewhat misnamed - depending on the write mode, 
@@ -208,6 +310,29 @@ public class JDBCFormatter {
      */
     public void createJDBCTable( String tableName, WriteMode mode )
             throws IOException, SQLException {
+        createJDBCTable( tableName, mode, null, null );
+    }
+
+    /**
+     * Writes data from this formatter's input table into the database,
+     * optionally using multiple connections in parallel.
+     * Table creation is performed using this formatter's own connection,
+     * but if both <code>connector</code> and <code>runner</code>
+     * are non-null, the rows are split up by the runner
+     * and each split is written using a new connection obtained from
+     * the connector.  Rows written in this way may not appear in
+     * the database table in the same order as in the input table,
+     * and if the write fails some rows may have been committed.
+     *
+     * @param   tableName  name of the new table to write to in the database
+     * @param   mode   mode for writing records
+     * @param   connector  source of additional connections to the
+     *                     same database, or null
+     * @param   runner   controls parallel writing, or null for sequential
+     */
+    public void createJDBCTable( String tableName, WriteMode mode,
+                                 final Connector connector, RowRunner runner )
+            throws IOException, SQLException {
         Statement stmt = conn_.createStatement();
  
         /* Table deletion. */
@@ -232,37 +357,180 @@ public class JDBCFormatter {
             logger.info( create );
             stmt.executeUpdate( create );
         }
+        stmt.close();
+        final String tname = tableName;
+        logger.info( bulkLoader_ == null ? getInsertStatement( tableName )
+                                         : "Insert using " + bulkLoader_ );
+
+        /* Add the data sequentially. */
+        if ( connector == null || runner == null ) {
+            try ( RowSequence rseq = table_.getRowSequence() ) {
+                writeRows( conn_, tname, rseq );
+            }
+        }
 
-        /* Prepare a statement for adding the data. */
-        String insert = getInsertStatement( tableName );
-        logger.info( insert );
-        PreparedStatement pstmt = conn_.prepareStatement( insert );
+        /* Add the data in parallel.  Make sure the new table is visible
+         * to the other connections first. */
+        else {
+            if ( ! conn_.getAutoCommit() ) {
+                conn_.commit();
+            }
+            long nrow = runner.collect( new RowCollector<long[]>() {
+                public long[] createAccumulator() {
+                    return new long[ 1 ];
+                }
+                public void accumulateRows( RowSplittable rseq, long[] acc )
+                        throws IOException {
+                    try ( Connection conn = connector.getConnection() ) {
+                        acc[ 0 ] += writeRows( conn, tname, rseq );
+                    }
+                    catch ( SQLException e ) {
+                        throw new IOException( "SQL error: " + e.getMessage(),
+                                               e );
+                    }
+                }
+                public long[] combine( long[] acc1, long[] acc2 ) {
+                    acc1[ 0 ] += acc2[ 0 ];
+                    return acc1;
+                }
+            }, table_ )[ 0 ];
+            logger.info( "Wrote " + nrow + " rows in parallel" );
+        }
+    }
 
-        /* Add the data. */
+    /**
+     * Writes all the rows from a row sequence into an existing table
+     * using a given connection.
+     *
+     * @param  conn  database connection
+     * @param  tableName  name of table for insertion
+     * @param  rseq   row sequence supplying rows, not closed by this method
+     * @return   number of rows written
+     */
+    private long writeRows( Connection conn, String tableName,
+                            RowSequence rseq )
+            throws IOException, SQLException {
+        String insertTable = defensiveQuoteTable( tableName );
+        boolean manageTx = commitInterval_ > 0;
+        boolean autoCommit = conn.getAutoCommit();
+        if ( manageTx && autoCommit ) {
+            conn.setAutoCommit( false );
+        }
+        PreparedStatement pstmt =
+              bulkLoader_ == null
+            ? conn.prepareStatement( getInsertStatement( tableName ) )
+            : null;
         int ncol = sqlCols_.length;
-        RowSequence rseq = table_.getRowSequence();
+        Object[][] rows = new Object[ batchSize_ ][];
+        long nrow = 0;
+        long nUncommitted = 0;
         try {
-            while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
-                int pix = 0;
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    if ( sqlCols_[ icol ] != null ) {
-                        pix++;
-                        Object val = row[ icol ];
-                        if ( Tables.isBlank( val ) ) {
-                            pstmt.setNull( pix, sqlTypes_[ icol ] );
-                        }
-                        else {
-                            pstmt.setObject( pix, row[ icol ],
-                                             sqlTypes_[ icol ] );
-                        }
+            boolean more = true;
+            while ( more ) {
+                int nr = 0;
+                while ( nr < batchSize_ && ( more = rseq.next() ) ) {
+                    Object[] row = rows[ nr ];
+                    if ( row == null ) {
+                        row = new Object[ ncol ];
+                        rows[ nr ] = row;
+                    }
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        row[ icol ] = sqlCols_[ icol ] == null
+                                    ? null
+                                    : rseq.getCell( icol );
                     }
+                    nr++;
                 }
-                pstmt.executeUpdate();
+                if ( nr > 0 ) {
+                    if ( bulkLoader_ == null ) {
+                        insertBatch( pstmt, rows, nr );
+                    }
+                    else {
+                        bulkLoader_.insertRows( conn, insertTable, sqlCols_,
+                                                rows, nr );
+                    }
+                    nrow += nr;
+                    nUncommitted += nr;
+                    if ( manageTx && nUncommitted >= commitInterval_ ) {
+                        conn.commit();
+                        nUncommitted = 0;
+                    }
+                }
+            }
+            if ( manageTx && nUncommitted > 0 ) {
+                conn.commit();
             }
         }
+
+        /* On failure, discard the uncommitted rows before restoring
+         * autocommit mode, since that would commit them. */
+        catch ( Throwable e ) {
+            if ( manageTx ) {
+                try {
+                    conn.rollback();
+                }
+                catch ( SQLException e2 ) {
+                    e.addSuppressed( e2 );
+                }
+            }
+            throw e;
+        }
         finally {
-            rseq.close();
+            if ( pstmt != null ) {
+                pstmt.close();
+            }
+            if ( manageTx && autoCommit ) {
+                conn.setAutoCommit( true );
+            }
+        }
+        return nrow;
+    }
+
+    /**
+     * Inserts a block of rows using JDBC batching.
+     *
+     * @param  pstmt  insert statement as returned by
+     *                {@link #getInsertStatement}
+     * @param  rows   array of rows
+     * @param  nrow   number of rows from the start of <code>rows</code>
+     *                to write
+     */
+    private void insertBatch( PreparedStatement pstmt, Object[][] rows,
+                              int nrow )
+            throws SQLException {
+        int ncol = sqlCols_.length;
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            Object[] row = rows[ ir ];
+            int pix = 0;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                SqlColumn sqlCol = sqlCols_[ icol ];
+                if ( sqlCol != null ) {
+                    setParameter( pstmt, ++pix, sqlCol, row[ icol ] );
+                }
+            }
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    /**
+     * Sets the value of a parameter in a prepared statement
+     * for writing a table cell.
+     *
+     * @param  pstmt  prepared statement
+     * @param  ipar   1-based parameter index
+     * @param  sqlCol   SQL column description
+     * @param  value   cell value
+     */
+    public static void setParameter( PreparedStatement pstmt, int ipar,
+                                     SqlColumn sqlCol, Object value )
+            throws SQLException {
+        int sqlType = sqlCol.getSqlType();
+        if ( Tables.isBlank( value ) ) {
+            pstmt.setNull( ipar, sqlType );
+        }
+        else {
+            pstmt.setObject( ipar, value, sqlType );
         }
     }
 
@@ -390,6 +658,52 @@ public class JDBCFormatter {
         }
     }
 
+    /**
+     * Returns the bulk loader to use by default for a given database.
+     *
+     * @param  meta  database metadata
+     * @return  bulk loader, or null for standard JDBC batching
+     */
+    private static BulkLoader getDefaultBulkLoader( DatabaseMetaData meta ) {
+        String prop;
+        try {
+            prop = System.getProperty( BULKLOADER_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            prop = null;
+        }
+        if ( prop != null && prop.trim().length() > 0 ) {
+            return "none".equalsIgnoreCase( prop.trim() )
+                 ? null
+                 : Loader.getClassInstance( prop.trim(), BulkLoader.class );
+        }
+        String product;
+        try {
+            product = meta.getDatabaseProductName();
+        }
+        catch ( SQLException e ) {
+            product = null;
+        }
+        if ( product != null ) {
+            String lproduct = product.toLowerCase();
+            if ( lproduct.startsWith( "sqlite" ) ) {
+                return new MultiRowInsertLoader( MultiRowInsertLoader
+                                                .SQLITE_MAX_PARAMS );
+            }
+            for ( String prefix : new String[] {
+                      "mysql", "mariadb", "postgresql", "h2", "hsql",
+                  } ) {
+                if ( lproduct.startsWith( prefix ) ) {
+                    return new MultiRowInsertLoader();
+                }
+            }
+        }
+
+        /* Others, including Derby which fails on long VALUES lists,
+         * use JDBC batching. */
+        return null;
+    }
+
     /**
      * Massages a column or table name to make it acceptable for SQL.
      *
@@ -10,6 +10,7 @@ import java.util.Enumeration;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 
 public class JDBCHandler {
@@ -129,6 +130,29 @@ public class JDBCHandler {
     public void createJDBCTable( StarTable startab, String spec,
                                  WriteMode mode ) 
             throws IOException, SQLException {
+        createJDBCTable( startab, spec, mode, JDBCFormatter.DFLT_BATCH_SIZE,
+                         0, null );
+    }
+
+    /**
+     * Writes a table to a database table with control over
+     * bulk loading options.
+     * See {@link JDBCFormatter} for details of the options.
+     *
+     * @param  startab  table to write
+     * @param  spec   destination of the form <code>jdbc:...#table-name</code>
+     * @param  mode   write mode
+     * @param  batchSize   number of rows inserted in each block
+     * @param  commitInterval   approximate number of rows per transaction,
+     *                          or 0 to leave auto-commit alone
+     * @param  runner   if non-null, rows are written in parallel over
+     *                  multiple connections under the control of this
+     *                  runner; if null, writing is sequential
+     */
+    public void createJDBCTable( StarTable startab, String spec,
+                                 WriteMode mode, int batchSize,
+                                 int commitInterval, RowRunner runner )
+            throws IOException, SQLException {
 
         /* Reject if it doesn't look like a JDBC URL. */
         if ( ! spec.startsWith( "jdbc:" ) ) { 
@@ -142,14 +166,31 @@ public class JDBCHandler {
                 "Bad JDBC specification, should be \"jdbc:...#table-name\"" );
         }
         String frag = spec.substring( hashPos + 1 );
-        String url = spec.substring( 0, hashPos );
+        final String url = spec.substring( 0, hashPos );
 
         /* Try to get a connection using the URL. */
         Connection conn = getConnection( url );
+
+        /* Prepare to supply more connections for parallel writing. */
+        Connector connector = new Connector() {
+            public Connection getConnection() throws SQLException {
+                try {
+                    return JDBCHandler.this.getConnection( url );
+                }
+                catch ( IOException e ) {
+                    throw (SQLException)
+                          new SQLException( "Authentication failed" )
+                         .initCause( e );
+                }
+            }
+        };
  
         /* And write the data to the table. */
         try {
-            new JDBCFormatter( conn, startab ).createJDBCTable( frag, mode );
+            JDBCFormatter formatter = new JDBCFormatter( conn, startab );
+            formatter.setBatchSize( batchSize );
+            formatter.setCommitInterval( commitInterval );
+            formatter.createJDBCTable( frag, mode, connector, runner );
         }
         finally {
             conn.close();
@@ -0,0 +1,151 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * BulkLoader implementation that writes many rows with each statement
+ * using the multi-row form of the VALUES clause,
+ * <code>INSERT INTO t VALUES (?,?), (?,?), ...</code>.
+ * This syntax is not part of SQL92, but it is understood by
+ * many RDBMSs including MySQL/MariaDB, PostgreSQL, SQLite, H2 and HSQLDB,
+ * and for some drivers it is considerably faster than JDBC batching,
+ * since each statement transfers many rows in a single round trip.
+ *
+ * <p>RDBMSs limit the number of parameter placeholders in a statement,
+ * so a suitable limit must be supplied at construction time.
+ * Some (for instance Derby) also fail on very long VALUES lists,
+ * and should not use this loader.
+ */
+public class MultiRowInsertLoader implements BulkLoader {
+
+    private final int maxParams_;
+
+    /**
+     * Default maximum number of parameters per statement ({@value}).
+     * This is within the limits of MySQL/MariaDB (65535) and
+     * PostgreSQL (32767), but not of all RDBMSs;
+     * SQLite before version 3.32 for instance only permits 999.
+     */
+    public static final int DFLT_MAX_PARAMS = 30000;
+
+    /**
+     * Maximum number of parameters per statement
+     * for SQLite before version 3.32 ({@value}).
+     */
+    public static final int SQLITE_MAX_PARAMS = 999;
+
+    /**
+     * Constructs a loader with a default parameter limit.
+     */
+    public MultiRowInsertLoader() {
+        this( DFLT_MAX_PARAMS );
+    }
+
+    /**
+     * Constructs a loader with a given parameter limit.
+     *
+     * @param  maxParams  maximum number of parameter placeholders
+     *                    in a single statement
+     */
+    public MultiRowInsertLoader( int maxParams ) {
+        maxParams_ = maxParams;
+    }
+
+    /**
+     * Returns the maximum number of parameter placeholders that this
+     * loader will use in a single statement.
+     *
+     * @return  parameter limit
+     */
+    public int getMaxParams() {
+        return maxParams_;
+    }
+
+    public void insertRows( Connection conn, String tableName,
+                            JDBCFormatter.SqlColumn[] cols,
+                            Object[][] rows, int nrow )
+            throws SQLException {
+        int nw = 0;
+        for ( JDBCFormatter.SqlColumn col : cols ) {
+            if ( col != null ) {
+                nw++;
+            }
+        }
+        if ( nw == 0 || nrow == 0 ) {
+            return;
+        }
+        int rowsPerStmt = Math.max( 1, Math.min( nrow, maxParams_ / nw ) );
+        PreparedStatement pstmt = null;
+        int nStmtRows = -1;
+        try {
+            for ( int ir0 = 0; ir0 < nrow; ir0 += rowsPerStmt ) {
+                int nr = Math.min( rowsPerStmt, nrow - ir0 );
+                if ( nr != nStmtRows ) {
+                    if ( pstmt != null ) {
+                        pstmt.close();
+                    }
+                    pstmt = conn.prepareStatement(
+                                getInsertStatement( tableName, nw, nr ) );
+                    nStmtRows = nr;
+                }
+                int ipar = 0;
+                for ( int ir = 0; ir < nr; ir++ ) {
+                    Object[] row = rows[ ir0 + ir ];
+                    for ( int icol = 0; icol < cols.length; icol++ ) {
+                        JDBCFormatter.SqlColumn col = cols[ icol ];
+                        if ( col != null ) {
+                            JDBCFormatter.setParameter( pstmt, ++ipar, col,
+                                                        row[ icol ] );
+                        }
+                    }
+                }
+                pstmt.executeUpdate();
+            }
+        }
+        finally {
+            if ( pstmt != null ) {
+                pstmt.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MultiRowInsert";
+    }
+
+    /**
+     * Returns the text of a parameterised multi-row INSERT statement.
+     *
+     * @param  tableName  table name
+     * @param  ncol   number of columns per row
+     * @param  nrow   number of rows
+     * @return   SQL text
+     */
+    static String getInsertStatement( String tableName, int ncol, int nrow ) {
+        StringBuilder rowBuf = new StringBuilder( 2 * ncol + 2 );
+        rowBuf.append( '(' );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            if ( ic > 0 ) {
+                rowBuf.append( ',' );
+            }
+            rowBuf.append( '?' );
+        }
+        rowBuf.append( ')' );
+        String rowTxt = rowBuf.toString();
+        StringBuilder sbuf =
+            new StringBuilder( 32 + nrow * ( rowTxt.length() + 1 ) );
+        sbuf.append( "INSERT INTO " )
+            .append( tableName )
+            .append( " VALUES " );
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            if ( ir > 0 ) {
+                sbuf.append( ',' );
+            }
+            sbuf.append( rowTxt );
+        }
+        return sbuf.toString();
+    }
+}
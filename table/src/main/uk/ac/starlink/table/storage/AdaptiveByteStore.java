@@ -6,6 +6,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ByteStore;
 
@@ -27,6 +28,12 @@ import uk.ac.starlink.table.ByteStore;
  * Note very large arrays are still stored on disk, not directly
  * allocated.
  *
+ * <p>Several stores may optionally share a memory budget,
+ * in which case each one switches to disk storage if either its own
+ * limit or the shared budget would be exceeded.
+ * This can be used to bound the total memory used by a group of stores
+ * which are filled concurrently.
+ *
  * @author   Mark Taylor
  * @since    5 Nov 2009
  */
@@ -45,6 +52,7 @@ public class AdaptiveByteStore implements ByteStore {
      */
 
     private final int memLimit_;
+    private final AtomicLong budget_;
     private AdaptiveOutputStream out_;
     private OutputStream baseOut_;
     private int count_;
@@ -67,6 +75,24 @@ public class AdaptiveByteStore implements ByteStore {
      * @param   memLimit  maximum size of in-memory buffer
      */
     public AdaptiveByteStore( int memLimit ) throws IOException {
+        this( memLimit, null );
+    }
+
+    /**
+     * Constructs a new store with a given maximum memory limit
+     * and a memory budget that may be shared with other stores.
+     * The budget is decremented by the number of bytes held in memory
+     * by this store, and restored when they are moved to disk or
+     * the store is closed.
+     *
+     * @param   memLimit  maximum size of in-memory buffer
+     * @param   budget   number of bytes of memory still available
+     *                   to this store and any others sharing it,
+     *                   or null for no shared budget
+     */
+    public AdaptiveByteStore( int memLimit, AtomicLong budget )
+            throws IOException {
+        budget_ = budget;
         try {
             baseOut_ = new BytesOutputStream();
         }
@@ -135,7 +161,11 @@ public class AdaptiveByteStore implements ByteStore {
         catch ( IOException e ) {
             logger_.warning( "close error: " + e );
         }
-        if ( file_ != null ) {
+        if ( file_ == null ) {
+            releaseBudget( count_ );
+            count_ = 0;
+        }
+        else {
             if ( file_.delete() ) {
                 logger_.info( "Deleting temporary file: " + file_ );
             }
@@ -162,13 +192,18 @@ public class AdaptiveByteStore implements ByteStore {
          * from memory to a file, and continue. */
         if ( file_ == null ) {
             assert count_ <= memLimit_;
-            if ( c1 > memLimit_ ) {
+            boolean overBudget = budget_ != null
+                              && budget_.addAndGet( -c ) < 0;
+            if ( c1 > memLimit_ || overBudget ) {
+                releaseBudget( c1 );
                 baseOut_.close();
                 file_ = createFile();
                 BytesOutputStream byteOut = (BytesOutputStream) baseOut_;
                 logger_.info( "AdaptiveByteStore: switching from memory buffer"
-                            + " to temp file " + file_ + " at " + memLimit_
-                            + " bytes" );
+                            + " to temp file " + file_ + " at " + count_
+                            + " bytes"
+                            + ( overBudget ? " (shared budget exhausted)"
+                                           : "" ) );
                 baseOut_ = new FileOutputStream( file_ );
                 byteOut.writeTo( baseOut_ ); 
             }
@@ -176,6 +211,17 @@ public class AdaptiveByteStore implements ByteStore {
         count_ = c1;
     }
 
+    /**
+     * Returns memory to the shared budget, if there is one.
+     *
+     * @param  nbyte  number of bytes no longer held in memory
+     */
+    private void releaseBudget( long nbyte ) {
+        if ( budget_ != null ) {
+            budget_.addAndGet( nbyte );
+        }
+    }
+
     /**
      * Returns a temporary file, which will be deleted on exit.
      */
@@ -78,4 +78,17 @@ public interface ColumnReader {
      * @return   best-efforts boolean value
      */
     boolean getBooleanValue( long ix ) throws IOException;
+
+    /**
+     * Indicates whether the value at a given index is null.
+     * The default implementation tests the result of
+     * {@link #getObjectValue}, but implementations that can
+     * determine this without object creation should override it.
+     *
+     * @param   ix  value index
+     * @return   true iff the value is null
+     */
+    default boolean isNullValue( long ix ) throws IOException {
+        return getObjectValue( ix ) == null;
+    }
 }
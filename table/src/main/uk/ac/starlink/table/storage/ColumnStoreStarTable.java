@@ -20,6 +20,7 @@ public class ColumnStoreStarTable extends WrapperStarTable {
     private final long nrow_;
     private final int ncol_;
     private final ColumnStore[] colStores_;
+    private final boolean[] isNumeric_;
     private final ThreadLocal<ColumnReader>[] colReaders_;
 
     /**
@@ -37,6 +38,14 @@ public class ColumnStoreStarTable extends WrapperStarTable {
         ncol_ = template.getColumnCount();
         colStores_ = colStores;
 
+        /* Note which columns can use the readers' typed access methods
+         * to implement the RowData primitive accessors. */
+        isNumeric_ = new boolean[ ncol_ ];
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            isNumeric_[ ic ] = Number.class.isAssignableFrom(
+                template.getColumnInfo( ic ).getContentClass() );
+        }
+
         /* Prepare ThreadLocals to service the thread-safe table
          * random access methods. */
         @SuppressWarnings({"unchecked","rawtypes"})
@@ -104,6 +113,18 @@ public class ColumnStoreStarTable extends WrapperStarTable {
                     throw new IllegalStateException();
                 }
             }
+            public double getDouble( int icol ) throws IOException {
+                return getDoubleValue( readers[ icol ], icol, irow );
+            }
+            public long getLong( int icol ) throws IOException {
+                return getLongValue( readers[ icol ], icol, irow );
+            }
+            public int getInt( int icol ) throws IOException {
+                return getIntValue( readers[ icol ], icol, irow );
+            }
+            public boolean isNull( int icol ) throws IOException {
+                return readers[ icol ].isNullValue( irow );
+            }
             public void close() {
             }
         };
@@ -133,8 +154,81 @@ public class ColumnStoreStarTable extends WrapperStarTable {
                 }
                 return row;
             }
+            public double getDouble( int icol ) throws IOException {
+                return getDoubleValue( readers[ icol ], icol, irow_ );
+            }
+            public long getLong( int icol ) throws IOException {
+                return getLongValue( readers[ icol ], icol, irow_ );
+            }
+            public int getInt( int icol ) throws IOException {
+                return getIntValue( readers[ icol ], icol, irow_ );
+            }
+            public boolean isNull( int icol ) throws IOException {
+                return readers[ icol ].isNullValue( irow_ );
+            }
             public void close() {
             }
         };
     }
+
+    /**
+     * Reads a double value from a column reader with the semantics of
+     * {@link uk.ac.starlink.table.RowData#getDouble}.
+     *
+     * @param  rdr  column reader
+     * @param  icol  column index
+     * @param  irow  row index
+     * @return  numeric value or NaN
+     */
+    private double getDoubleValue( ColumnReader rdr, int icol, long irow )
+            throws IOException {
+        if ( isNumeric_[ icol ] ) {
+            return rdr.getDoubleValue( irow );
+        }
+        else {
+            Object value = rdr.getObjectValue( irow );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+    }
+
+    /**
+     * Reads a long value from a column reader with the semantics of
+     * {@link uk.ac.starlink.table.RowData#getLong}.
+     *
+     * @param  rdr  column reader
+     * @param  icol  column index
+     * @param  irow  row index
+     * @return  numeric value or zero
+     */
+    private long getLongValue( ColumnReader rdr, int icol, long irow )
+            throws IOException {
+        if ( isNumeric_[ icol ] ) {
+            return rdr.getLongValue( irow );
+        }
+        else {
+            Object value = rdr.getObjectValue( irow );
+            return value instanceof Number ? ((Number) value).longValue() : 0L;
+        }
+    }
+
+    /**
+     * Reads an int value from a column reader with the semantics of
+     * {@link uk.ac.starlink.table.RowData#getInt}.
+     *
+     * @param  rdr  column reader
+     * @param  icol  column index
+     * @param  irow  row index
+     * @return  numeric value or zero
+     */
+    private int getIntValue( ColumnReader rdr, int icol, long irow )
+            throws IOException {
+        if ( isNumeric_[ icol ] ) {
+            return rdr.getIntValue( irow );
+        }
+        else {
+            Object value = rdr.getObjectValue( irow );
+            return value instanceof Number ? ((Number) value).intValue() : 0;
+        }
+    }
 }
@@ -0,0 +1,461 @@
+package uk.ac.starlink.table.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import uk.ac.starlink.table.ValueInfo;
+
+/**
+ * ColumnStore implementations which keep cell data in memory
+ * in compressed form.
+ * Obtain instances using the {@link #createColumnStore} factory method,
+ * which picks an encoding suitable for the column's content class:
+ * <ul>
+ * <li>integers: frame-of-reference or delta bit packing
+ *     ({@link PackedLongList})</li>
+ * <li>floating point: XOR coding ({@link XorDoubleList})</li>
+ * <li>booleans: bit packing</li>
+ * <li>strings: dictionary coding while the number of distinct values
+ *     is small, otherwise object references</li>
+ * <li>anything else: object references</li>
+ * </ul>
+ * Null values are preserved in all cases.
+ */
+abstract class CompressedColumnStore implements ColumnStore {
+
+    /** Maximum number of distinct strings in a dictionary-coded column. */
+    public static final int MAX_DICT_SIZE = 1 << 16;
+
+    /**
+     * Returns an approximate count of the bytes used to store
+     * the column data.
+     *
+     * @return  storage size in bytes
+     */
+    public abstract long getByteCount();
+
+    /**
+     * Returns a ColumnStore suitable for storing values described by
+     * given metadata.
+     *
+     * @param  info  value metadata
+     * @return  new column store
+     */
+    public static CompressedColumnStore createColumnStore( ValueInfo info ) {
+        Class<?> clazz = info.getContentClass();
+        if ( clazz == Byte.class || clazz == Short.class ||
+             clazz == Integer.class || clazz == Long.class ) {
+            return new IntegerStore( clazz );
+        }
+        else if ( clazz == Double.class || clazz == Float.class ) {
+            return new FloatingStore( clazz == Float.class );
+        }
+        else if ( clazz == Boolean.class ) {
+            return new BooleanStore();
+        }
+        else if ( clazz == String.class ) {
+            return new StringStore();
+        }
+        else {
+            return new ObjectStore();
+        }
+    }
+
+    /**
+     * Partial ColumnReader implementation in which the typed access
+     * methods are all based on {@link ColumnReader#getObjectValue}.
+     */
+    private static abstract class ObjectReader implements ColumnReader {
+        private final long nrow_;
+        ObjectReader( long nrow ) {
+            nrow_ = nrow;
+        }
+        public long getRowCount() {
+            return nrow_;
+        }
+        public double getDoubleValue( long ix ) {
+            Object value = getObjectValue( ix );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+        public int getIntValue( long ix ) {
+            Object value = getObjectValue( ix );
+            return value instanceof Number ? ((Number) value).intValue() : 0;
+        }
+        public long getLongValue( long ix ) {
+            Object value = getObjectValue( ix );
+            return value instanceof Number ? ((Number) value).longValue() : 0L;
+        }
+        public boolean getBooleanValue( long ix ) {
+            return Boolean.TRUE.equals( getObjectValue( ix ) );
+        }
+        public abstract Object getObjectValue( long ix );
+    }
+
+    /**
+     * Store for integer-valued columns.
+     */
+    private static class IntegerStore extends CompressedColumnStore {
+        private final Class<?> clazz_;
+        private final PackedLongList list_;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazz  Byte, Short, Integer or Long class
+         */
+        IntegerStore( Class<?> clazz ) {
+            clazz_ = clazz;
+            list_ = new PackedLongList();
+        }
+        public void acceptCell( Object value ) {
+            if ( value instanceof Number ) {
+                list_.add( ((Number) value).longValue() );
+            }
+            else {
+                list_.addNull();
+            }
+        }
+        public void endCells() {
+            list_.endValues();
+        }
+        public long getByteCount() {
+            return list_.getByteCount();
+        }
+        public ColumnReader createReader() {
+            final PackedLongList.Reader rdr = list_.createReader();
+            return new ColumnReader() {
+                public long getRowCount() {
+                    return list_.size();
+                }
+                public Object getObjectValue( long ix ) {
+                    if ( rdr.isNull( ix ) ) {
+                        return null;
+                    }
+                    long lval = rdr.getValue( ix );
+                    if ( clazz_ == Integer.class ) {
+                        return Integer.valueOf( (int) lval );
+                    }
+                    else if ( clazz_ == Long.class ) {
+                        return Long.valueOf( lval );
+                    }
+                    else if ( clazz_ == Short.class ) {
+                        return Short.valueOf( (short) lval );
+                    }
+                    else {
+                        return Byte.valueOf( (byte) lval );
+                    }
+                }
+                public double getDoubleValue( long ix ) {
+                    return rdr.isNull( ix ) ? Double.NaN
+                                            : (double) rdr.getValue( ix );
+                }
+                public int getIntValue( long ix ) {
+                    return rdr.isNull( ix ) ? 0 : (int) rdr.getValue( ix );
+                }
+                public long getLongValue( long ix ) {
+                    return rdr.isNull( ix ) ? 0L : rdr.getValue( ix );
+                }
+                public boolean getBooleanValue( long ix ) {
+                    return rdr.getValue( ix ) != 0;
+                }
+                @Override
+                public boolean isNullValue( long ix ) {
+                    return rdr.isNull( ix );
+                }
+            };
+        }
+    }
+
+    /**
+     * Store for floating-point-valued columns.
+     */
+    private static class FloatingStore extends CompressedColumnStore {
+        private final boolean isFloat_;
+        private final XorDoubleList list_;
+
+        /**
+         * Constructor.
+         *
+         * @param  isFloat  true for Float values, false for Double
+         */
+        FloatingStore( boolean isFloat ) {
+            isFloat_ = isFloat;
+            list_ = new XorDoubleList( isFloat );
+        }
+        public void acceptCell( Object value ) {
+            if ( value instanceof Number ) {
+                list_.add( ((Number) value).doubleValue() );
+            }
+            else {
+                list_.addNull();
+            }
+        }
+        public void endCells() {
+            list_.endValues();
+        }
+        public long getByteCount() {
+            return list_.getByteCount();
+        }
+        public ColumnReader createReader() {
+            final XorDoubleList.Reader rdr = list_.createReader();
+            return new ColumnReader() {
+                public long getRowCount() {
+                    return list_.size();
+                }
+                public Object getObjectValue( long ix ) {
+                    if ( rdr.isNull( ix ) ) {
+                        return null;
+                    }
+                    double dval = rdr.getValue( ix );
+                    return isFloat_ ? (Object) Float.valueOf( (float) dval )
+                                    : (Object) Double.valueOf( dval );
+                }
+                public double getDoubleValue( long ix ) {
+                    return rdr.isNull( ix ) ? Double.NaN : rdr.getValue( ix );
+                }
+                public int getIntValue( long ix ) {
+                    return rdr.isNull( ix ) ? 0 : (int) rdr.getValue( ix );
+                }
+                public long getLongValue( long ix ) {
+                    return rdr.isNull( ix ) ? 0L : (long) rdr.getValue( ix );
+                }
+                public boolean getBooleanValue( long ix ) {
+                    return rdr.getValue( ix ) != 0;
+                }
+                @Override
+                public boolean isNullValue( long ix ) {
+                    return rdr.isNull( ix );
+                }
+            };
+        }
+    }
+
+    /**
+     * Store for boolean-valued columns.
+     */
+    private static class BooleanStore extends CompressedColumnStore {
+        private final PackedLongList list_;
+        BooleanStore() {
+            list_ = new PackedLongList();
+        }
+        public void acceptCell( Object value ) {
+            if ( value instanceof Boolean ) {
+                list_.add( ((Boolean) value).booleanValue() ? 1L : 0L );
+            }
+            else {
+                list_.addNull();
+            }
+        }
+        public void endCells() {
+            list_.endValues();
+        }
+        public long getByteCount() {
+            return list_.getByteCount();
+        }
+        public ColumnReader createReader() {
+            final PackedLongList.Reader rdr = list_.createReader();
+            return new ObjectReader( list_.size() ) {
+                public Object getObjectValue( long ix ) {
+                    return rdr.isNull( ix )
+                         ? null
+                         : Boolean.valueOf( rdr.getValue( ix ) != 0 );
+                }
+                @Override
+                public boolean getBooleanValue( long ix ) {
+                    return rdr.getValue( ix ) != 0;
+                }
+                @Override
+                public boolean isNullValue( long ix ) {
+                    return rdr.isNull( ix );
+                }
+            };
+        }
+    }
+
+    /**
+     * Store for string-valued columns.
+     * Dictionary coding is used until the number of distinct values
+     * gets too large, at which point the data is transferred to
+     * object storage.
+     */
+    private static class StringStore extends CompressedColumnStore {
+        private PackedLongList codes_;
+        private List<String> dict_;
+        private Map<String,Integer> dictIndex_;
+        private ObjectList objs_;
+
+        StringStore() {
+            codes_ = new PackedLongList();
+            dict_ = new ArrayList<String>();
+            dictIndex_ = new HashMap<String,Integer>();
+        }
+        public void acceptCell( Object value ) {
+            if ( objs_ != null ) {
+                objs_.add( value );
+            }
+            else if ( value == null ) {
+                codes_.addNull();
+            }
+            else {
+                String sval = value.toString();
+                Integer code = dictIndex_.get( sval );
+                if ( code == null ) {
+                    if ( dict_.size() >= MAX_DICT_SIZE ) {
+                        abandonDictionary();
+                        objs_.add( value );
+                        return;
+                    }
+                    code = Integer.valueOf( dict_.size() );
+                    dict_.add( sval );
+                    dictIndex_.put( sval, code );
+                }
+                codes_.add( code.longValue() );
+            }
+        }
+        public void endCells() {
+            if ( objs_ != null ) {
+                objs_.endValues();
+            }
+            else {
+                codes_.endValues();
+                dictIndex_ = null;
+            }
+        }
+        public long getByteCount() {
+            if ( objs_ != null ) {
+                return objs_.getByteCount();
+            }
+            else {
+                long nb = codes_.getByteCount();
+                for ( String s : dict_ ) {
+                    nb += 40 + 2 * s.length();
+                }
+                return nb;
+            }
+        }
+        public ColumnReader createReader() {
+            if ( objs_ != null ) {
+                return objs_.createReader();
+            }
+            else {
+                final PackedLongList.Reader rdr = codes_.createReader();
+                final String[] dict = dict_.toArray( new String[ 0 ] );
+                return new ObjectReader( codes_.size() ) {
+                    public Object getObjectValue( long ix ) {
+                        return rdr.isNull( ix )
+                             ? null
+                             : dict[ (int) rdr.getValue( ix ) ];
+                    }
+                };
+            }
+        }
+
+        /**
+         * Transfers the data accumulated so far to object storage,
+         * and stops using dictionary coding.
+         */
+        private void abandonDictionary() {
+            codes_.endValues();
+            PackedLongList.Reader rdr = codes_.createReader();
+            objs_ = new ObjectList();
+            long n = codes_.size();
+            for ( long ix = 0; ix < n; ix++ ) {
+                objs_.add( rdr.isNull( ix )
+                         ? null
+                         : dict_.get( (int) rdr.getValue( ix ) ) );
+            }
+            codes_ = null;
+            dict_ = null;
+            dictIndex_ = null;
+        }
+    }
+
+    /**
+     * Store for arbitrary objects.
+     */
+    private static class ObjectStore extends CompressedColumnStore {
+        private final ObjectList list_;
+        ObjectStore() {
+            list_ = new ObjectList();
+        }
+        public void acceptCell( Object value ) {
+            list_.add( value );
+        }
+        public void endCells() {
+            list_.endValues();
+        }
+        public long getByteCount() {
+            return list_.getByteCount();
+        }
+        public ColumnReader createReader() {
+            return list_.createReader();
+        }
+    }
+
+    /**
+     * Append-only list of object references stored in fixed-size chunks,
+     * which avoids the copying and slack of a growing single array.
+     */
+    private static class ObjectList {
+        private static final int CHUNK_SHIFT = 12;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private final List<Object[]> chunkList_;
+        private Object[] chunk_;
+        private int nchunk_;
+        private long count_;
+        private Object[][] chunks_;
+
+        ObjectList() {
+            chunkList_ = new ArrayList<Object[]>();
+        }
+
+        /**
+         * Appends a value.
+         *
+         * @param  value  value
+         */
+        void add( Object value ) {
+            if ( chunk_ == null || nchunk_ == CHUNK_SIZE ) {
+                chunk_ = new Object[ CHUNK_SIZE ];
+                chunkList_.add( chunk_ );
+                nchunk_ = 0;
+            }
+            chunk_[ nchunk_++ ] = value;
+            count_++;
+        }
+
+        /**
+         * Signals that no more values will be added.
+         */
+        void endValues() {
+            chunks_ = chunkList_.toArray( new Object[ 0 ][] );
+        }
+
+        /**
+         * Returns the approximate storage size, not including the
+         * referenced objects themselves.
+         *
+         * @return  byte count
+         */
+        long getByteCount() {
+            return chunkList_.size() * ( 16L + 8L * CHUNK_SIZE );
+        }
+
+        /**
+         * Returns a reader for this list.
+         *
+         * @return  reader
+         */
+        ColumnReader createReader() {
+            final Object[][] chunks = chunks_;
+            return new ObjectReader( count_ ) {
+                public Object getObjectValue( long ix ) {
+                    return chunks[ (int) ( ix >>> CHUNK_SHIFT ) ]
+                                 [ (int) ix & ( CHUNK_SIZE - 1 ) ];
+                }
+            };
+        }
+    }
+}
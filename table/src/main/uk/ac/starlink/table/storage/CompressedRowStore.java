@@ -0,0 +1,94 @@
+package uk.ac.starlink.table.storage;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * RowStore implementation which stores cell data in memory in a
+ * column-oriented and compressed form.
+ * Each column is held in a {@link CompressedColumnStore} which uses
+ * a lightweight block encoding appropriate to its data type,
+ * so that numeric and low-cardinality string data typically takes up
+ * considerably less memory than either the object-based storage of
+ * {@link ListRowStore} or the fixed-width binary storage of
+ * {@link ByteStoreRowStore}.
+ * The data can be read back sequentially or at random,
+ * and from multiple threads concurrently.
+ *
+ * <p>Like <code>ListRowStore</code>, this implementation can store
+ * any table, but for large tables {@link #acceptRow} may throw
+ * an <code>OutOfMemoryError</code>.
+ */
+public class CompressedRowStore implements RowStore {
+
+    private StarTable template_;
+    private int ncol_;
+    private long nrow_;
+    private CompressedColumnStore[] colStores_;
+    private StarTable storedTable_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.storage" );
+
+    public void acceptMetadata( StarTable meta ) {
+        if ( template_ != null ) {
+            throw new IllegalStateException( "Metadata already submitted" );
+        }
+        template_ = meta;
+        ncol_ = meta.getColumnCount();
+        colStores_ = new CompressedColumnStore[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ] =
+                CompressedColumnStore
+               .createColumnStore( meta.getColumnInfo( icol ) );
+        }
+    }
+
+    /**
+     * Accepts a row.
+     *
+     * @throws   OutOfMemoryError  if it's run out of memory
+     */
+    public void acceptRow( Object[] row ) throws IOException {
+        if ( template_ == null ) {
+            throw new IllegalStateException( "acceptMetadata not called" );
+        }
+        if ( storedTable_ != null ) {
+            throw new IllegalStateException( "endRows already called" );
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ].acceptCell( row[ icol ] );
+        }
+        nrow_++;
+    }
+
+    public void endRows() throws IOException {
+        if ( template_ == null ) {
+            throw new IllegalStateException( "acceptMetadata not called" );
+        }
+        if ( storedTable_ != null ) {
+            throw new IllegalStateException( "endRows already called" );
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ].endCells();
+        }
+        if ( logger_.isLoggable( Level.CONFIG ) ) {
+            long nbyte = 0;
+            for ( CompressedColumnStore colStore : colStores_ ) {
+                nbyte += colStore.getByteCount();
+            }
+            logger_.config( "Compressed " + nrow_ + " x " + ncol_
+                          + " table into " + nbyte + " bytes" );
+        }
+        storedTable_ = new ColumnStoreStarTable( template_, nrow_, colStores_ );
+    }
+
+    public StarTable getStarTable() {
+        if ( storedTable_ == null ) {
+            throw new IllegalStateException( "endRows not called" );
+        }
+        return storedTable_;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
@@ -87,6 +88,68 @@ public class MonitorStoragePolicy extends StoragePolicy {
         return base_.makeByteStore();
     }
 
+    /**
+     * The parallel copy is monitored as a single table;
+     * the sink receives the metadata and end-of-rows events once,
+     * and the row events from all the concurrently filled segments.
+     * If the parallel copy has to fall back to a sequential one,
+     * the sink is sent end-of-rows and metadata events before the
+     * rows are read again, so that rows are not counted twice.
+     */
+    @Override
+    public StarTable copyTable( StarTable meta, StarTable table,
+                                RowRunner runner )
+            throws IOException {
+        if ( runner == null ) {
+            return super.copyTable( meta, table, runner );
+        }
+        try {
+            sink_.acceptMetadata( meta );
+        }
+        catch ( TableFormatException e ) {
+            logger_.warning( "Table monitor failed: " + e );
+        }
+        final TableSink rowSink = new TableSink() {
+            public void acceptMetadata( StarTable meta ) {
+            }
+            public void acceptRow( Object[] row ) throws IOException {
+                synchronized ( sink_ ) {
+                    sink_.acceptRow( row );
+                }
+            }
+            public void endRows() {
+            }
+        };
+        StoragePolicy segPolicy = new StoragePolicy() {
+            public RowStore makeRowStore() {
+                return new TeeRowStore( base_.makeRowStore(), rowSink );
+            }
+            public RowStore makeConfiguredRowStore( StarTable meta ) {
+                return new TeeRowStore( base_.makeConfiguredRowStore( meta ),
+                                        rowSink );
+            }
+            public ByteStore makeByteStore() {
+                return base_.makeByteStore();
+            }
+            @Override
+            protected StarTable copySequential( StarTable meta,
+                                                StarTable table )
+                    throws IOException {
+                sink_.endRows();
+                try {
+                    sink_.acceptMetadata( meta );
+                }
+                catch ( TableFormatException e ) {
+                    logger_.warning( "Table monitor failed: " + e );
+                }
+                return super.copySequential( meta, table );
+            }
+        };
+        StarTable out = segPolicy.copyTable( meta, table, runner );
+        sink_.endRows();
+        return out;
+    }
+
     /**
      * RowStore implementation which wraps an existing row store but
      * additionally messages a second sink with row storage events.
@@ -0,0 +1,424 @@
+package uk.ac.starlink.table.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only list of nullable long integer values stored in compressed
+ * form in memory.
+ *
+ * <p>Values are accumulated in blocks of {@link #BLOCK_SIZE} entries.
+ * When a block is full it is encoded using frame-of-reference
+ * bit packing, in which each value is stored as an unsigned offset
+ * from the block minimum using only as many bits as are required
+ * for the block range.  If the differences between successive values
+ * can be stored more compactly than the values themselves
+ * (as for sorted identifiers or monotonic timestamps) the differences
+ * are packed instead.  Frame-of-reference blocks can be read at
+ * random in constant time; delta blocks are decoded in their
+ * entirety by the reader the first time they are accessed.
+ * Null entries are recorded in a per-block bitmap,
+ * which is only allocated for blocks that contain nulls.
+ *
+ * <p>Usage is to call {@link #add}/{@link #addNull} as required,
+ * then {@link #endValues}, after which {@link #createReader} may be called.
+ * Readers are not thread-safe, but any number of them may be used
+ * concurrently.
+ */
+class PackedLongList {
+
+    private final List<Block> blockList_;
+    private final long[] buf_;
+    private long[] nullBuf_;
+    private int nbuf_;
+    private long count_;
+    private long lastValue_;
+    private Block[] blocks_;
+
+    /** Number of bits defining block size. */
+    public static final int BLOCK_SHIFT = 10;
+
+    /** Number of entries in each block. */
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Constructor.
+     */
+    public PackedLongList() {
+        blockList_ = new ArrayList<Block>();
+        buf_ = new long[ BLOCK_SIZE ];
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param  value  value
+     */
+    public void add( long value ) {
+        buf_[ nbuf_++ ] = value;
+        lastValue_ = value;
+        count_++;
+        if ( nbuf_ == BLOCK_SIZE ) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends a null entry.
+     */
+    public void addNull() {
+        if ( nullBuf_ == null ) {
+            nullBuf_ = new long[ BLOCK_SIZE >> 6 ];
+        }
+        nullBuf_[ nbuf_ >> 6 ] |= 1L << ( nbuf_ & 63 );
+
+        /* Repeat the last value, which keeps both the range and the
+         * successive differences small. */
+        add( lastValue_ );
+    }
+
+    /**
+     * Signals that no more values will be added.
+     */
+    public void endValues() {
+        if ( nbuf_ > 0 ) {
+            flush();
+        }
+        blocks_ = blockList_.toArray( new Block[ 0 ] );
+    }
+
+    /**
+     * Returns the number of entries in this list.
+     *
+     * @return  entry count
+     */
+    public long size() {
+        return count_;
+    }
+
+    /**
+     * Returns an approximate count of the bytes used to store
+     * the encoded data.
+     *
+     * @return  storage size in bytes
+     */
+    public long getByteCount() {
+        long nb = 0;
+        for ( Block block : blockList_ ) {
+            nb += block.getByteCount();
+        }
+        return nb;
+    }
+
+    /**
+     * Returns a new reader for the values in this list.
+     * May only be called after {@link #endValues}.
+     *
+     * @return  new reader
+     */
+    public Reader createReader() {
+        if ( blocks_ == null ) {
+            throw new IllegalStateException( "endValues not called" );
+        }
+        return new Reader( blocks_ );
+    }
+
+    /**
+     * Encodes the currently buffered values as a block.
+     */
+    private void flush() {
+        int n = nbuf_;
+        long[] vals = buf_;
+        long min = vals[ 0 ];
+        long max = vals[ 0 ];
+        for ( int i = 1; i < n; i++ ) {
+            long v = vals[ i ];
+            if ( v < min ) {
+                min = v;
+            }
+            if ( v > max ) {
+                max = v;
+            }
+        }
+        int forBits = bitsFor( max, min );
+        Block block = null;
+        if ( forBits > 2 && n > 1 ) {
+            boolean overflow = false;
+            long dmin = Long.MAX_VALUE;
+            long dmax = Long.MIN_VALUE;
+            for ( int i = 1; i < n && ! overflow; i++ ) {
+                long d = vals[ i ] - vals[ i - 1 ];
+                overflow = ( vals[ i ] < vals[ i - 1 ] ) != ( d < 0 );
+                if ( d < dmin ) {
+                    dmin = d;
+                }
+                if ( d > dmax ) {
+                    dmax = d;
+                }
+            }
+            if ( ! overflow ) {
+                int deltaBits = bitsFor( dmax, dmin );
+
+                /* Only use delta coding if it saves a useful amount,
+                 * since it's more expensive to read. */
+                if ( deltaBits + 2 <= forBits ) {
+                    long[] deltas = new long[ n - 1 ];
+                    for ( int i = 1; i < n; i++ ) {
+                        deltas[ i - 1 ] = vals[ i ] - vals[ i - 1 ] - dmin;
+                    }
+                    block = new DeltaBlock( n, vals[ 0 ], dmin, deltaBits,
+                                            pack( deltas, n - 1, deltaBits ) );
+                }
+            }
+        }
+        if ( block == null ) {
+            long[] offsets = new long[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                offsets[ i ] = vals[ i ] - min;
+            }
+            block = new ForBlock( n, min, forBits,
+                                  pack( offsets, n, forBits ) );
+        }
+        block.nullMask_ = nullBuf_;
+        blockList_.add( block );
+        nullBuf_ = null;
+        nbuf_ = 0;
+    }
+
+    /**
+     * Returns the number of bits required to store the unsigned
+     * difference between two values.
+     *
+     * @param  max  larger value
+     * @param  min  smaller value
+     * @return  bit count in range 0..64
+     */
+    private static int bitsFor( long max, long min ) {
+        long range = max - min;
+        return range < 0 ? 64 : 64 - Long.numberOfLeadingZeros( range );
+    }
+
+    /**
+     * Packs unsigned values into a long array using a fixed number
+     * of bits for each.
+     *
+     * @param  vals  values, each fitting into <code>nbit</code> bits
+     * @param  n   number of values to pack
+     * @param  nbit  number of bits per value
+     * @return   packed array
+     */
+    private static long[] pack( long[] vals, int n, int nbit ) {
+        long[] packed = new long[ (int) ( ( (long) n * nbit + 63 ) >> 6 ) ];
+        if ( nbit > 0 ) {
+            for ( int i = 0; i < n; i++ ) {
+                long pos = (long) i * nbit;
+                int iw = (int) ( pos >> 6 );
+                int off = (int) ( pos & 63 );
+                long v = vals[ i ];
+                packed[ iw ] |= v << off;
+                if ( off + nbit > 64 ) {
+                    packed[ iw + 1 ] |= v >>> ( 64 - off );
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Extracts a value from a packed array.
+     *
+     * @param  packed  packed array
+     * @param  i   index of value
+     * @param  nbit  number of bits per value
+     * @return  unpacked value
+     */
+    private static long unpack( long[] packed, int i, int nbit ) {
+        if ( nbit == 0 ) {
+            return 0;
+        }
+        long pos = (long) i * nbit;
+        int iw = (int) ( pos >> 6 );
+        int off = (int) ( pos & 63 );
+        long v = packed[ iw ] >>> off;
+        if ( off + nbit > 64 ) {
+            v |= packed[ iw + 1 ] << ( 64 - off );
+        }
+        return nbit == 64 ? v : v & ( ( 1L << nbit ) - 1 );
+    }
+
+    /**
+     * Reads values from a PackedLongList.
+     */
+    public static class Reader {
+
+        private final Block[] blocks_;
+        private final long[] cache_;
+        private int icache_;
+
+        /**
+         * Constructor.
+         *
+         * @param  blocks  encoded blocks
+         */
+        Reader( Block[] blocks ) {
+            blocks_ = blocks;
+            cache_ = new long[ BLOCK_SIZE ];
+            icache_ = -1;
+        }
+
+        /**
+         * Returns the value at a given index.
+         * The result is undefined for null entries.
+         *
+         * @param  ix  index
+         * @return  value
+         */
+        public long getValue( long ix ) {
+            int ib = (int) ( ix >>> BLOCK_SHIFT );
+            int i = (int) ix & BLOCK_MASK;
+            Block block = blocks_[ ib ];
+            if ( block.isDirect() ) {
+                return block.getValue( i );
+            }
+            else {
+                if ( ib != icache_ ) {
+                    block.decode( cache_ );
+                    icache_ = ib;
+                }
+                return cache_[ i ];
+            }
+        }
+
+        /**
+         * Indicates whether the entry at a given index is null.
+         *
+         * @param  ix  index
+         * @return  true iff null
+         */
+        public boolean isNull( long ix ) {
+            long[] mask = blocks_[ (int) ( ix >>> BLOCK_SHIFT ) ].nullMask_;
+            if ( mask == null ) {
+                return false;
+            }
+            else {
+                int i = (int) ix & BLOCK_MASK;
+                return ( mask[ i >> 6 ] & ( 1L << ( i & 63 ) ) ) != 0;
+            }
+        }
+    }
+
+    /**
+     * Encoded block of values.
+     */
+    private static abstract class Block {
+
+        final int n_;
+        long[] nullMask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  n  number of values in block
+         */
+        Block( int n ) {
+            n_ = n;
+        }
+
+        /**
+         * Indicates whether individual values can be read cheaply.
+         *
+         * @return  true if {@link #getValue} can be used,
+         *          false if {@link #decode} must be used
+         */
+        abstract boolean isDirect();
+
+        /**
+         * Returns a single value.  Only works if isDirect is true.
+         *
+         * @param  i  index within block
+         * @return  value
+         */
+        abstract long getValue( int i );
+
+        /**
+         * Decodes all the values in this block.
+         *
+         * @param  out  array into which values are written
+         */
+        abstract void decode( long[] out );
+
+        /**
+         * Returns approximate storage size of this block.
+         *
+         * @return  byte count
+         */
+        abstract long getByteCount();
+    }
+
+    /**
+     * Block using frame-of-reference encoding.
+     */
+    private static class ForBlock extends Block {
+        final long base_;
+        final int nbit_;
+        final long[] packed_;
+        ForBlock( int n, long base, int nbit, long[] packed ) {
+            super( n );
+            base_ = base;
+            nbit_ = nbit;
+            packed_ = packed;
+        }
+        boolean isDirect() {
+            return true;
+        }
+        long getValue( int i ) {
+            return base_ + unpack( packed_, i, nbit_ );
+        }
+        void decode( long[] out ) {
+            for ( int i = 0; i < n_; i++ ) {
+                out[ i ] = getValue( i );
+            }
+        }
+        long getByteCount() {
+            return 32 + 8 * packed_.length
+                 + ( nullMask_ == null ? 0 : 8 * nullMask_.length );
+        }
+    }
+
+    /**
+     * Block using frame-of-reference encoding of successive differences.
+     */
+    private static class DeltaBlock extends Block {
+        final long first_;
+        final long dmin_;
+        final int nbit_;
+        final long[] packed_;
+        DeltaBlock( int n, long first, long dmin, int nbit, long[] packed ) {
+            super( n );
+            first_ = first;
+            dmin_ = dmin;
+            nbit_ = nbit;
+            packed_ = packed;
+        }
+        boolean isDirect() {
+            return false;
+        }
+        long getValue( int i ) {
+            throw new UnsupportedOperationException();
+        }
+        void decode( long[] out ) {
+            long v = first_;
+            out[ 0 ] = v;
+            for ( int i = 1; i < n_; i++ ) {
+                v += dmin_ + unpack( packed_, i - 1, nbit_ );
+                out[ i ] = v;
+            }
+        }
+        long getByteCount() {
+            return 40 + 8 * packed_.length
+                 + ( nullMask_ == null ? 0 : 8 * nullMask_.length );
+        }
+    }
+}
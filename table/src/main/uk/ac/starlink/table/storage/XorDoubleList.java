@@ -0,0 +1,391 @@
+package uk.ac.starlink.table.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only list of nullable double precision values stored in
+ * compressed form in memory.
+ *
+ * <p>Values are accumulated in blocks of {@link #BLOCK_SIZE} entries,
+ * and each full block is encoded using the XOR scheme of
+ * Pelkonen et al. (2015, "Gorilla: a fast, scalable, in-memory
+ * time series database").  The first value in each block is stored
+ * verbatim; each subsequent value is XORed with its predecessor,
+ * and only the window of non-zero bits is written.
+ * For smoothly varying, repeated or low-precision data
+ * (including float values widened to double) this typically uses
+ * a fraction of the 64 bits per value needed for the raw form.
+ * The coding is lossless, including for NaN and infinite values.
+ * If the list is declared to hold single precision values,
+ * the 32-bit float representation is encoded instead,
+ * and if the encoding of a block turns out larger than the raw
+ * form (as for random noise) the raw bit patterns are stored.
+ * A block must be decoded sequentially, so readers decode a whole
+ * block at a time and cache it; the block size is kept fairly small
+ * so that random access is still reasonably cheap.
+ * Null entries are recorded in a per-block bitmap,
+ * which is only allocated for blocks that contain nulls.
+ *
+ * <p>Usage is to call {@link #add}/{@link #addNull} as required,
+ * then {@link #endValues}, after which {@link #createReader} may be called.
+ * Readers are not thread-safe, but any number of them may be used
+ * concurrently.
+ */
+class XorDoubleList {
+
+    private final boolean isFloat_;
+    private final int rawBits_;
+    private final List<Block> blockList_;
+    private final double[] buf_;
+    private long[] nullBuf_;
+    private int nbuf_;
+    private long count_;
+    private double lastValue_;
+    private long[] wordBuf_;
+    private Block[] blocks_;
+
+    /** Number of bits defining block size. */
+    public static final int BLOCK_SHIFT = 8;
+
+    /** Number of entries in each block. */
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Constructor.
+     *
+     * @param  isFloat  if true, values are assumed to be representable
+     *                  exactly as single precision floating point numbers
+     */
+    public XorDoubleList( boolean isFloat ) {
+        isFloat_ = isFloat;
+        rawBits_ = isFloat ? 32 : 64;
+        blockList_ = new ArrayList<Block>();
+        buf_ = new double[ BLOCK_SIZE ];
+
+        /* Worst case is 2+6+6+64 bits for each value after the first. */
+        wordBuf_ = new long[ ( 78 * BLOCK_SIZE ) / 64 + 2 ];
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param  value  value
+     */
+    public void add( double value ) {
+        buf_[ nbuf_++ ] = value;
+        lastValue_ = value;
+        count_++;
+        if ( nbuf_ == BLOCK_SIZE ) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends a null entry.
+     */
+    public void addNull() {
+        if ( nullBuf_ == null ) {
+            nullBuf_ = new long[ BLOCK_SIZE >> 6 ];
+        }
+        nullBuf_[ nbuf_ >> 6 ] |= 1L << ( nbuf_ & 63 );
+
+        /* Repeat the last value, which costs only a single bit. */
+        add( lastValue_ );
+    }
+
+    /**
+     * Signals that no more values will be added.
+     */
+    public void endValues() {
+        if ( nbuf_ > 0 ) {
+            flush();
+        }
+        blocks_ = blockList_.toArray( new Block[ 0 ] );
+        wordBuf_ = null;
+    }
+
+    /**
+     * Returns the number of entries in this list.
+     *
+     * @return  entry count
+     */
+    public long size() {
+        return count_;
+    }
+
+    /**
+     * Returns an approximate count of the bytes used to store
+     * the encoded data.
+     *
+     * @return  storage size in bytes
+     */
+    public long getByteCount() {
+        long nb = 0;
+        for ( Block block : blockList_ ) {
+            nb += 24 + 8 * block.words_.length
+                + ( block.nullMask_ == null ? 0 : 8 * block.nullMask_.length );
+        }
+        return nb;
+    }
+
+    /**
+     * Returns a new reader for the values in this list.
+     * May only be called after {@link #endValues}.
+     *
+     * @return  new reader
+     */
+    public Reader createReader() {
+        if ( blocks_ == null ) {
+            throw new IllegalStateException( "endValues not called" );
+        }
+        return new Reader( blocks_, isFloat_ );
+    }
+
+    /**
+     * Encodes the currently buffered values as a block.
+     */
+    private void flush() {
+        int n = nbuf_;
+        long[] words = wordBuf_;
+        long pos = 0;
+        long prev = toBits( buf_[ 0 ] );
+        pos = write( words, pos, prev, rawBits_ );
+        int prevLead = -1;
+        int prevTrail = -1;
+        for ( int i = 1; i < n; i++ ) {
+            long bits = toBits( buf_[ i ] );
+            long xor = bits ^ prev;
+            prev = bits;
+            if ( xor == 0 ) {
+                pos = write( words, pos, 0, 1 );
+            }
+            else {
+                int lead = Long.numberOfLeadingZeros( xor );
+                int trail = Long.numberOfTrailingZeros( xor );
+                if ( prevLead >= 0 && lead >= prevLead &&
+                     trail >= prevTrail ) {
+
+                    /* Control bits '10': reuse previous window. */
+                    pos = write( words, pos, 1, 2 );
+                    int nsig = 64 - prevLead - prevTrail;
+                    pos = write( words, pos, xor >>> prevTrail, nsig );
+                }
+                else {
+
+                    /* Control bits '11': new window. */
+                    int nsig = 64 - lead - trail;
+                    pos = write( words, pos, 3, 2 );
+                    pos = write( words, pos, lead, 6 );
+                    pos = write( words, pos, nsig - 1, 6 );
+                    pos = write( words, pos, xor >>> trail, nsig );
+                    prevLead = lead;
+                    prevTrail = trail;
+                }
+            }
+        }
+        boolean isRaw = pos > (long) n * rawBits_;
+        if ( isRaw ) {
+            Arrays.fill( words, 0L );
+            pos = 0;
+            for ( int i = 0; i < n; i++ ) {
+                pos = write( words, pos, toBits( buf_[ i ] ), rawBits_ );
+            }
+        }
+        long[] packed = new long[ (int) ( ( pos + 63 ) >> 6 ) ];
+        System.arraycopy( words, 0, packed, 0, packed.length );
+        Arrays.fill( words, 0, packed.length, 0L );
+        blockList_.add( new Block( n, packed, isRaw, nullBuf_ ) );
+        nullBuf_ = null;
+        nbuf_ = 0;
+    }
+
+    /**
+     * Returns the bit pattern to encode for a given value.
+     *
+     * @param  value  value
+     * @return  bit pattern, with only the low 32 bits set for floats
+     */
+    private long toBits( double value ) {
+        return isFloat_
+             ? Float.floatToRawIntBits( (float) value ) & 0xffffffffL
+             : Double.doubleToRawLongBits( value );
+    }
+
+    /**
+     * Writes bits to a bit stream.
+     *
+     * @param  words  destination buffer, assumed zero where unwritten
+     * @param  pos   bit position at which to write
+     * @param  value  value whose low <code>nbit</code> bits are to be written
+     * @param  nbit   number of bits to write, in range 1..64
+     * @return   bit position after writing
+     */
+    private static long write( long[] words, long pos, long value, int nbit ) {
+        if ( nbit < 64 ) {
+            value &= ( 1L << nbit ) - 1;
+        }
+        int iw = (int) ( pos >> 6 );
+        int off = (int) ( pos & 63 );
+        words[ iw ] |= value << off;
+        if ( off + nbit > 64 ) {
+            words[ iw + 1 ] |= value >>> ( 64 - off );
+        }
+        return pos + nbit;
+    }
+
+    /**
+     * Reads bits from a bit stream.
+     *
+     * @param  words  source buffer
+     * @param  pos   bit position at which to read
+     * @param  nbit   number of bits to read, in range 1..64
+     * @return  value
+     */
+    private static long read( long[] words, long pos, int nbit ) {
+        int iw = (int) ( pos >> 6 );
+        int off = (int) ( pos & 63 );
+        long v = words[ iw ] >>> off;
+        if ( off + nbit > 64 ) {
+            v |= words[ iw + 1 ] << ( 64 - off );
+        }
+        return nbit == 64 ? v : v & ( ( 1L << nbit ) - 1 );
+    }
+
+    /**
+     * Reads values from an XorDoubleList.
+     */
+    public static class Reader {
+
+        private final Block[] blocks_;
+        private final boolean isFloat_;
+        private final double[] cache_;
+        private int icache_;
+
+        /**
+         * Constructor.
+         *
+         * @param  blocks  encoded blocks
+         * @param  isFloat  true iff values are encoded as floats
+         */
+        Reader( Block[] blocks, boolean isFloat ) {
+            blocks_ = blocks;
+            isFloat_ = isFloat;
+            cache_ = new double[ BLOCK_SIZE ];
+            icache_ = -1;
+        }
+
+        /**
+         * Returns the value at a given index.
+         * The result is undefined for null entries.
+         *
+         * @param  ix  index
+         * @return  value
+         */
+        public double getValue( long ix ) {
+            int ib = (int) ( ix >>> BLOCK_SHIFT );
+            if ( ib != icache_ ) {
+                blocks_[ ib ].decode( cache_, isFloat_ );
+                icache_ = ib;
+            }
+            return cache_[ (int) ix & BLOCK_MASK ];
+        }
+
+        /**
+         * Indicates whether the entry at a given index is null.
+         *
+         * @param  ix  index
+         * @return  true iff null
+         */
+        public boolean isNull( long ix ) {
+            long[] mask = blocks_[ (int) ( ix >>> BLOCK_SHIFT ) ].nullMask_;
+            if ( mask == null ) {
+                return false;
+            }
+            else {
+                int i = (int) ix & BLOCK_MASK;
+                return ( mask[ i >> 6 ] & ( 1L << ( i & 63 ) ) ) != 0;
+            }
+        }
+    }
+
+    /**
+     * Encoded block of values.
+     */
+    private static class Block {
+
+        final int n_;
+        final long[] words_;
+        final boolean isRaw_;
+        final long[] nullMask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  n  number of values
+         * @param  words  encoded bit stream
+         * @param  isRaw  true if the values are stored unencoded
+         * @param  nullMask  null bitmap, or null if no nulls
+         */
+        Block( int n, long[] words, boolean isRaw, long[] nullMask ) {
+            n_ = n;
+            words_ = words;
+            isRaw_ = isRaw;
+            nullMask_ = nullMask;
+        }
+
+        /**
+         * Decodes all the values in this block.
+         *
+         * @param  out  array into which values are written
+         * @param  isFloat  true iff values are encoded as floats
+         */
+        void decode( double[] out, boolean isFloat ) {
+            long[] words = words_;
+            int rawBits = isFloat ? 32 : 64;
+            if ( isRaw_ ) {
+                for ( int i = 0; i < n_; i++ ) {
+                    out[ i ] = fromBits( read( words, (long) i * rawBits,
+                                               rawBits ), isFloat );
+                }
+                return;
+            }
+            long pos = 0;
+            long prev = read( words, pos, rawBits );
+            pos += rawBits;
+            out[ 0 ] = fromBits( prev, isFloat );
+            int lead = 0;
+            int trail = 0;
+            for ( int i = 1; i < n_; i++ ) {
+                if ( read( words, pos++, 1 ) != 0 ) {
+                    if ( read( words, pos++, 1 ) != 0 ) {
+                        lead = (int) read( words, pos, 6 );
+                        pos += 6;
+                        int nsig = (int) read( words, pos, 6 ) + 1;
+                        pos += 6;
+                        trail = 64 - lead - nsig;
+                    }
+                    int nsig = 64 - lead - trail;
+                    prev ^= read( words, pos, nsig ) << trail;
+                    pos += nsig;
+                }
+                out[ i ] = fromBits( prev, isFloat );
+            }
+        }
+
+        /**
+         * Converts an encoded bit pattern to a value.
+         *
+         * @param  bits  bit pattern
+         * @param  isFloat  true iff values are encoded as floats
+         * @return  value
+         */
+        private static double fromBits( long bits, boolean isFloat ) {
+            return isFloat ? Float.intBitsToFloat( (int) bits )
+                           : Double.longBitsToDouble( bits );
+        }
+    }
+}
@@ -38,6 +38,7 @@ import uk.ac.starlink.parquet.ParquetTableBuilder;
 import uk.ac.starlink.parquet.ParquetTableWriter;
 import uk.ac.starlink.table.storage.AdaptiveByteStore;
 import uk.ac.starlink.table.storage.ByteStoreRowStore;
+import uk.ac.starlink.table.storage.CompressedRowStore;
 import uk.ac.starlink.table.storage.FileByteStore;
 import uk.ac.starlink.table.storage.DiskRowStore;
 import uk.ac.starlink.table.storage.ListRowStore;
@@ -245,6 +246,7 @@ public class FormatsTest extends TableCase {
         exerciseRowStore( new ListRowStore() );
         exerciseRowStore( new DiskRowStore() );
         exerciseRowStore( new SidewaysRowStore() );
+        exerciseRowStore( new CompressedRowStore() );
         exerciseRowStore( new ByteStoreRowStore( new MemoryByteStore() ) );
         exerciseRowStore( new ByteStoreRowStore( new FileByteStore() ) );
         exerciseRowStore( new ByteStoreRowStore(
@@ -321,6 +323,46 @@ public class FormatsTest extends TableCase {
         assertEquals( Arrays.asList( defaultFormats ), factDefaultBuilders );
     }
 
+    public void testAutoDetect() throws IOException {
+        String[][] fmts = {
+            { "fits", "t.fits" },
+            { "fits-basic", "t" },
+            { "colfits", "t" },
+            { "votable", "t" },
+            { "ecsv", "t" },
+            { "csv", "t.csv" },
+            { "ipac", "t.tbl" },
+        };
+        for ( String[] fmt : fmts ) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            tout_.getHandler( fmt[ 0 ] ).writeStarTable( table, bout );
+            DataSource datsrc =
+                new ByteArrayDataSource( fmt[ 1 ], bout.toByteArray() );
+
+            /* Use a new factory each time, since builders are loaded
+             * lazily according to the input signature. */
+            StarTable t2 = new StarTableFactory( true ).makeStarTable( datsrc );
+            assertEquals( fmt[ 0 ], table.getRowCount(), t2.getRowCount() );
+            assertEquals( fmt[ 0 ], table.getColumnCount(),
+                          t2.getColumnCount() );
+            assertEquals( fmt[ 0 ], table.getColumnInfo( 0 ).getName(),
+                          t2.getColumnInfo( 0 ).getName() );
+        }
+        try {
+            new StarTableFactory()
+               .makeStarTable( new ByteArrayDataSource( "t", new byte[ 99 ] ) );
+            fail();
+        }
+        catch ( TableFormatException e ) {
+            // ok
+        }
+        StarTableFactory factory = new StarTableFactory();
+        assertEquals( "FITS", factory.getTableBuilder( "fits" )
+                                     .getFormatName() );
+        assertSame( factory.getTableBuilder( "votable" ),
+                    factory.getDefaultBuilders().get( 4 ) );
+    }
+
     public void testOutput() throws IOException {
         int i = 0;
         StarTableFactory sfact = new StarTableFactory();
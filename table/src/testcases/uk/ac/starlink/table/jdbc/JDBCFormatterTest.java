@@ -0,0 +1,343 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.WrapperRowSequence;
+import uk.ac.starlink.table.WrapperStarTable;
+
+public class JDBCFormatterTest extends TestCase {
+
+    private static final int NROW = 2500;
+
+    public void testBatch() throws Exception {
+        StarTable table = createTable();
+        FakeDb db = new FakeDb( "FakeDB" );
+        JDBCFormatter fmt = new JDBCFormatter( db.connect(), table );
+        assertNull( fmt.getBulkLoader() );
+        assertEquals( JDBCFormatter.DFLT_BATCH_SIZE, fmt.getBatchSize() );
+        fmt.createJDBCTable( "t1", WriteMode.CREATE );
+        assertEquals( 3, db.nBatch_ );
+        assertEquals( 0, db.nUpdate_ );
+        assertEquals( 0, db.nCommit_ );
+        checkRows( table, db.rows_ );
+
+        db = new FakeDb( "FakeDB" );
+        Connection conn = db.connect();
+        fmt = new JDBCFormatter( conn, table );
+        fmt.setBatchSize( 700 );
+        fmt.setCommitInterval( 1200 );
+        fmt.createJDBCTable( "t1", WriteMode.CREATE );
+        assertEquals( 4, db.nBatch_ );
+        assertEquals( 2, db.nCommit_ );
+        assertTrue( conn.getAutoCommit() );
+        checkRows( table, db.rows_ );
+    }
+
+    public void testBulkLoader() throws Exception {
+        StarTable table = createTable();
+        assertTrue( new JDBCFormatter( new FakeDb( "PostgreSQL" ).connect(),
+                                       table )
+                   .getBulkLoader() instanceof MultiRowInsertLoader );
+        assertTrue( new JDBCFormatter( new FakeDb( "MySQL" ).connect(),
+                                       table )
+                   .getBulkLoader() instanceof MultiRowInsertLoader );
+        assertNull( new JDBCFormatter( new FakeDb( "Apache Derby" ).connect(),
+                                       table )
+                   .getBulkLoader() );
+
+        /* SQLite gets a low parameter limit: 333 rows per statement. */
+        FakeDb sqliteDb = new FakeDb( "SQLite" );
+        JDBCFormatter sqliteFmt =
+            new JDBCFormatter( sqliteDb.connect(), table );
+        assertEquals( MultiRowInsertLoader.SQLITE_MAX_PARAMS,
+                      ((MultiRowInsertLoader) sqliteFmt.getBulkLoader())
+                     .getMaxParams() );
+        sqliteFmt.createJDBCTable( "t1", WriteMode.CREATE );
+        assertEquals( 2 * 4 + 2, sqliteDb.nUpdate_ );
+        checkRows( table, sqliteDb.rows_ );
+
+        FakeDb db = new FakeDb( "FakeDB" );
+        JDBCFormatter fmt = new JDBCFormatter( db.connect(), table );
+        fmt.setBulkLoader( new MultiRowInsertLoader( 21 ) );
+        fmt.createJDBCTable( "t1", WriteMode.CREATE );
+        assertEquals( 0, db.nBatch_ );
+
+        /* 7 rows per statement, in blocks of 1000 rows. */
+        assertEquals( 2 * ( 1000 / 7 + 1 ) + ( 500 / 7 + 1 ), db.nUpdate_ );
+        checkRows( table, db.rows_ );
+
+        assertEquals( "INSERT INTO t VALUES (?,?),(?,?),(?,?)",
+                      MultiRowInsertLoader.getInsertStatement( "t", 2, 3 ) );
+    }
+
+    public void testParallel() throws Exception {
+        StarTable table = createTable();
+        FakeDb db = new FakeDb( "FakeDB" );
+        JDBCFormatter fmt = new JDBCFormatter( db.connect(), table );
+        fmt.setBatchSize( 100 );
+        fmt.setCommitInterval( 250 );
+        fmt.createJDBCTable( "t1", WriteMode.CREATE, db::connect,
+                             RowRunner.PARTEST );
+        assertTrue( db.nConnect_ > 2 );
+        assertEquals( NROW, db.rows_.size() );
+        List<Object[]> rows = new ArrayList<>( db.rows_ );
+        rows.sort( Comparator.comparingInt( r -> ((Integer) r[ 0 ])
+                                                .intValue() ) );
+        checkRows( table, rows );
+    }
+
+    public void testRollback() throws Exception {
+        final boolean[] isBroken = new boolean[ 1 ];
+        StarTable table = new WrapperStarTable( createTable() ) {
+            @Override
+            public RowSequence getRowSequence() throws IOException {
+                return new WrapperRowSequence( super.getRowSequence() ) {
+                    long irow_;
+                    @Override
+                    public boolean next() throws IOException {
+                        if ( irow_++ == 1500 && isBroken[ 0 ] ) {
+                            throw new IOException( "broken" );
+                        }
+                        return super.next();
+                    }
+                };
+            }
+        };
+        FakeDb db = new FakeDb( "FakeDB" );
+        Connection conn = db.connect();
+        JDBCFormatter fmt = new JDBCFormatter( conn, table );
+        fmt.setBatchSize( 700 );
+        fmt.setCommitInterval( 1200 );
+        isBroken[ 0 ] = true;
+        try {
+            fmt.createJDBCTable( "t1", WriteMode.CREATE );
+            fail();
+        }
+        catch ( IOException e ) {
+            assertEquals( "broken", e.getMessage() );
+        }
+
+        /* The uncommitted rows are rolled back before autocommit
+         * is restored. */
+        assertEquals( Arrays.asList( "autocommit=false", "commit",
+                                     "rollback", "autocommit=true" ),
+                      db.txEvents_ );
+        assertTrue( conn.getAutoCommit() );
+    }
+
+    private static StarTable createTable() {
+        Integer[] ixs = new Integer[ NROW ];
+        Double[] dvals = new Double[ NROW ];
+        String[] svals = new String[ NROW ];
+        for ( int i = 0; i < NROW; i++ ) {
+            ixs[ i ] = Integer.valueOf( i );
+            dvals[ i ] = i % 3 == 0 ? null : Double.valueOf( 0.5 * i );
+            svals[ i ] = i % 5 == 0 ? null : "s" + i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( NROW );
+        table.addColumn( ArrayColumn.makeColumn( "ix", ixs ) );
+        table.addColumn( ArrayColumn.makeColumn( "dval", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "sval", svals ) );
+        return table;
+    }
+
+    private static void checkRows( StarTable table, List<Object[]> rows )
+            throws Exception {
+        assertEquals( table.getRowCount(), rows.size() );
+        for ( int ir = 0; ir < rows.size(); ir++ ) {
+            assertEquals( Arrays.asList( table.getRow( ir ) ),
+                          Arrays.asList( rows.get( ir ) ) );
+        }
+    }
+
+    /**
+     * Minimal in-memory imitation of a JDBC database, which records
+     * rows inserted into a single table.
+     */
+    private static class FakeDb {
+        final String product_;
+        final List<Object[]> rows_;
+        final List<String> txEvents_;
+        int nConnect_;
+        int nBatch_;
+        int nUpdate_;
+        int nCommit_;
+
+        FakeDb( String product ) {
+            product_ = product;
+            rows_ = new ArrayList<Object[]>();
+            txEvents_ = new ArrayList<String>();
+        }
+
+        synchronized Connection connect() {
+            nConnect_++;
+            final boolean[] autoCommit = new boolean[] { true };
+            return proxy( Connection.class, ( method, args ) -> {
+                switch ( method.getName() ) {
+                    case "getMetaData":
+                        return createMetaData();
+                    case "createStatement":
+                        return proxy( Statement.class, ( m, a ) -> null );
+                    case "prepareStatement":
+                        return createStatement( (String) args[ 0 ] );
+                    case "getAutoCommit":
+                        return Boolean.valueOf( autoCommit[ 0 ] );
+                    case "setAutoCommit":
+                        autoCommit[ 0 ] = ((Boolean) args[ 0 ]).booleanValue();
+                        synchronized ( FakeDb.this ) {
+                            txEvents_.add( "autocommit=" + autoCommit[ 0 ] );
+                        }
+                        return null;
+                    case "commit":
+                        synchronized ( FakeDb.this ) {
+                            nCommit_++;
+                            txEvents_.add( "commit" );
+                        }
+                        return null;
+                    case "rollback":
+                        synchronized ( FakeDb.this ) {
+                            txEvents_.add( "rollback" );
+                        }
+                        return null;
+                    default:
+                        return null;
+                }
+            } );
+        }
+
+        DatabaseMetaData createMetaData() {
+            return proxy( DatabaseMetaData.class, ( method, args ) -> {
+                switch ( method.getName() ) {
+                    case "getTypeInfo":
+                        return createTypeInfo();
+                    case "getIdentifierQuoteString":
+                        return "\"";
+                    case "getSQLKeywords":
+                        return "";
+                    case "getDatabaseProductName":
+                        return product_;
+                    default:
+                        return null;
+                }
+            } );
+        }
+
+        ResultSet createTypeInfo() {
+            final Object[][] types = {
+                { "INTEGER", Types.INTEGER },
+                { "BIGINT", Types.BIGINT },
+                { "DOUBLE", Types.DOUBLE },
+                { "VARCHAR", Types.VARCHAR },
+                { "BIT", Types.BIT },
+                { "BLOB", Types.BLOB },
+            };
+            final int[] irow = new int[] { -1 };
+            return proxy( ResultSet.class, ( method, args ) -> {
+                switch ( method.getName() ) {
+                    case "next":
+                        return Boolean.valueOf( ++irow[ 0 ] < types.length );
+                    case "getString":
+                        return types[ irow[ 0 ] ][ 0 ];
+                    case "getShort":
+                        return Short.valueOf( ((Integer) types[ irow[ 0 ] ][ 1 ])
+                                             .shortValue() );
+                    default:
+                        return null;
+                }
+            } );
+        }
+
+        PreparedStatement createStatement( String sql ) {
+            final int nrowPerStmt = sql.split( "\\(", -1 ).length - 1;
+            final int npar = sql.split( "\\?", -1 ).length - 1;
+            final Object[] params = new Object[ npar ];
+            final List<Object[]> batch = new ArrayList<>();
+            return proxy( PreparedStatement.class, ( method, args ) -> {
+                switch ( method.getName() ) {
+                    case "setNull":
+                        params[ (Integer) args[ 0 ] - 1 ] = null;
+                        return null;
+                    case "setObject":
+                        params[ (Integer) args[ 0 ] - 1 ] = args[ 1 ];
+                        return null;
+                    case "addBatch":
+                        batch.add( params.clone() );
+                        return null;
+                    case "executeBatch":
+                        synchronized ( FakeDb.this ) {
+                            nBatch_++;
+                            for ( Object[] pars : batch ) {
+                                addRows( pars, nrowPerStmt );
+                            }
+                        }
+                        int[] counts = new int[ batch.size() ];
+                        batch.clear();
+                        return counts;
+                    case "executeUpdate":
+                        synchronized ( FakeDb.this ) {
+                            nUpdate_++;
+                            addRows( params, nrowPerStmt );
+                        }
+                        return Integer.valueOf( nrowPerStmt );
+                    default:
+                        return null;
+                }
+            } );
+        }
+
+        private void addRows( Object[] params, int nrow ) {
+            int ncol = params.length / nrow;
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                rows_.add( Arrays.copyOfRange( params, ir * ncol,
+                                               ( ir + 1 ) * ncol ) );
+            }
+        }
+    }
+
+    private interface Behaviour {
+        Object invoke( Method method, Object[] args ) throws Exception;
+    }
+
+    private static <T> T proxy( Class<T> clazz, Behaviour behaviour ) {
+        InvocationHandler handler = ( proxy, method, args ) -> {
+            Object result = behaviour.invoke( method, args );
+            if ( result == null ) {
+                Class<?> rclazz = method.getReturnType();
+                if ( rclazz == boolean.class ) {
+                    return Boolean.FALSE;
+                }
+                else if ( rclazz == int.class ) {
+                    return Integer.valueOf( 0 );
+                }
+                else if ( rclazz == long.class ) {
+                    return Long.valueOf( 0 );
+                }
+                else if ( rclazz == short.class ) {
+                    return Short.valueOf( (short) 0 );
+                }
+            }
+            return result;
+        };
+        return clazz.cast( Proxy.newProxyInstance( clazz.getClassLoader(),
+                                                   new Class<?>[] { clazz },
+                                                   handler ) );
+    }
+}
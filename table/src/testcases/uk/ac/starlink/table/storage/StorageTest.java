@@ -4,18 +4,28 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import junit.framework.AssertionFailedError;
 import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ByteStore;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.ConcatStarTable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.FormatsTest;
+import uk.ac.starlink.table.RandomRowSplittable;
+import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.util.TestCase;
 
 /*
@@ -38,6 +48,7 @@ public class StorageTest extends TestCase {
         assertEquals( StoragePolicy.PREFER_MEMORY, getPolicy( "memory" ) );
         assertEquals( StoragePolicy.PREFER_DISK, getPolicy( "disk" ) );
         assertEquals( StoragePolicy.SIDEWAYS, getPolicy( "sideways" ) );
+        assertEquals( StoragePolicy.COMPRESSED, getPolicy( "compressed" ) );
         assertEquals( StoragePolicy.DISCARD, getPolicy( "discard" ) );
         assertEquals( StoragePolicy.ADAPTIVE, getPolicy( "adaptive" ) );
 
@@ -47,6 +58,8 @@ public class StorageTest extends TestCase {
                        StoragePolicy.PREFER_DISK.toString() );
         assertEquals( "StoragePolicy.SIDEWAYS",
                        StoragePolicy.SIDEWAYS.toString() );
+        assertEquals( "StoragePolicy.COMPRESSED",
+                       StoragePolicy.COMPRESSED.toString() );
         assertEquals( "StoragePolicy.DISCARD",
                        StoragePolicy.DISCARD.toString() );
         assertEquals( "StoragePolicy.ADAPTIVE",
@@ -58,6 +71,8 @@ public class StorageTest extends TestCase {
                     instanceof DiskRowStore );
         assertTrue( StoragePolicy.SIDEWAYS.makeRowStore()
                     instanceof SidewaysRowStore );
+        assertTrue( StoragePolicy.COMPRESSED.makeRowStore()
+                    instanceof CompressedRowStore );
         assertTrue( StoragePolicy.DISCARD.makeRowStore()
                     instanceof DiscardRowStore );
         assertTrue( StoragePolicy.ADAPTIVE.makeRowStore()
@@ -131,6 +146,12 @@ public class StorageTest extends TestCase {
                                 fillStore( new SidewaysRowStore(), t2 );
         SidewaysRowStore sst3 = (SidewaysRowStore)
                                 fillStore( new SidewaysRowStore(), t3 );
+        StarTable ct1 = fillStore( new CompressedRowStore(), t1 )
+                       .getStarTable();
+        StarTable ct2 = fillStore( new CompressedRowStore(), t2 )
+                       .getStarTable();
+        StarTable ct3 = fillStore( new CompressedRowStore(), t3 )
+                       .getStarTable();
 
         assertTrue( fixedRows( dst1 ) );
         assertTrue( fixedRows( dst2 ) );
@@ -148,6 +169,7 @@ public class StorageTest extends TestCase {
         checkTables( t1, dt1, mt1, st1 );
         checkTables( t2, dt2, mt2, st2 );
         checkTables( t3, dt3, mt3, st3 );
+        checkTables( ct1, ct2, ct3, ct3 );
 
         fTest_.assertTableEquals( t1, dt1 );
         fTest_.assertTableEquals( t1, mt1 );
@@ -155,6 +177,9 @@ public class StorageTest extends TestCase {
         fTest_.assertTableEquals( t3, dt3 );
         fTest_.assertTableEquals( t3, mt3 );
         fTest_.assertTableEquals( t3, st3 );
+        fTest_.assertTableEquals( t1, ct1 );
+        fTest_.assertTableEquals( t2, ct2 );
+        fTest_.assertTableEquals( t3, ct3 );
 
         String err;
         try {
@@ -168,6 +193,187 @@ public class StorageTest extends TestCase {
         assertTrue( err.indexOf( "sky-blue" ) > 0 );
     }
 
+    public void testCompressedStorage() throws IOException {
+
+        /* Use enough rows to fill several blocks of each column type,
+         * and data designed to exercise the different encodings. */
+        int nrow = 80000;
+        Random rnd = new Random( 230977L );
+        long[] seqs = new long[ nrow ];
+        int[] ints = new int[ nrow ];
+        Long[] bigs = new Long[ nrow ];
+        double[] smooths = new double[ nrow ];
+        Double[] dnulls = new Double[ nrow ];
+        float[] floats = new float[ nrow ];
+        Boolean[] flags = new Boolean[ nrow ];
+        String[] fewStrs = new String[ nrow ];
+        String[] manyStrs = new String[ nrow ];
+        int[][] arrays = new int[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            seqs[ i ] = 1000000000000L + 3 * i + rnd.nextInt( 2 );
+            ints[ i ] = rnd.nextInt( 200 ) - 100;
+            bigs[ i ] = i % 17 == 0
+                      ? null
+                      : Long.valueOf( i % 2 == 0 ? Long.MIN_VALUE
+                                                 : Long.MAX_VALUE - i );
+            smooths[ i ] = Math.sin( i * 0.001 );
+            dnulls[ i ] = i % 5 == 0
+                        ? null
+                        : Double.valueOf( i % 7 == 0 ? Double.NaN
+                                                     : rnd.nextGaussian() );
+            floats[ i ] = (float) rnd.nextGaussian();
+            flags[ i ] = i % 11 == 0 ? null : Boolean.valueOf( i % 3 == 0 );
+            fewStrs[ i ] = i % 13 == 0 ? null : "s" + rnd.nextInt( 20 );
+            manyStrs[ i ] = i % 13 == 0 ? null : "m" + i;
+            arrays[ i ] = new int[] { i, -i };
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "seqs", seqs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "ints", ints ) );
+        t0.addColumn( ArrayColumn.makeColumn( "bigs", bigs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "smooths", smooths ) );
+        t0.addColumn( ArrayColumn.makeColumn( "dnulls", dnulls ) );
+        t0.addColumn( ArrayColumn.makeColumn( "floats", floats ) );
+        t0.addColumn( ArrayColumn.makeColumn( "flags", flags ) );
+        t0.addColumn( ArrayColumn.makeColumn( "fewStrs", fewStrs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "manyStrs", manyStrs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "arrays", arrays ) );
+        int ncol = t0.getColumnCount();
+
+        StarTable t1 = StoragePolicy.COMPRESSED.copyTable( t0 );
+        assertTrue( t1.isRandom() );
+        assertEquals( nrow, t1.getRowCount() );
+        fTest_.assertTableEquals( t0, t1 );
+
+        /* Random access. */
+        for ( int i = 0; i < 5000; i++ ) {
+            long irow = rnd.nextInt( nrow );
+            int icol = rnd.nextInt( ncol );
+            Object c0 = t0.getCell( irow, icol );
+            Object c1 = t1.getCell( irow, icol );
+            if ( c0 instanceof int[] ) {
+                assertArrayEquals( c0, c1 );
+            }
+            else {
+                assertEquals( c0, c1 );
+            }
+        }
+
+        /* Encodings are actually smaller than the raw data. */
+        long[] maxBytes = new long[] {
+            nrow, nrow * 2, -1, nrow * 7, -1, -1, nrow / 2, nrow, -1, -1,
+        };
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            CompressedColumnStore colStore =
+                CompressedColumnStore
+               .createColumnStore( t0.getColumnInfo( ic ) );
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                colStore.acceptCell( t0.getCell( ir, ic ) );
+            }
+            colStore.endCells();
+            if ( maxBytes[ ic ] > 0 ) {
+                assertTrue( t0.getColumnInfo( ic ).getName(),
+                            colStore.getByteCount() < maxBytes[ ic ] );
+            }
+        }
+    }
+
+    public void testParallelCopy() throws IOException {
+        int nrow = 5000;
+        Random rnd = new Random( 19102026L );
+        int[] ixs = new int[ nrow ];
+        Double[] dvals = new Double[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ixs[ i ] = i;
+            dvals[ i ] = i % 9 == 0 ? null : Double.valueOf( rnd.nextDouble() );
+            svals[ i ] = i % 7 == 0 ? null : "r" + i;
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "ix", ixs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "dval", dvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "sval", svals ) );
+        StarTable seqTable = new WrapperStarTable( t0 ) {
+            public boolean isRandom() {
+                return false;
+            }
+        };
+
+        StoragePolicy[] policies = {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.PREFER_DISK,
+            StoragePolicy.SIDEWAYS,
+            StoragePolicy.COMPRESSED,
+            StoragePolicy.ADAPTIVE,
+        };
+        for ( StoragePolicy policy : policies ) {
+            StarTable t1 = policy.copyTable( t0, RowRunner.PARTEST );
+            assertTrue( t1 instanceof ConcatStarTable );
+            assertTrue( t1.isRandom() );
+            assertEquals( nrow, t1.getRowCount() );
+            fTest_.checkStarTable( t1 );
+            fTest_.assertTableEquals( t0, t1 );
+            try ( RowAccess racc = t1.getRowAccess() ) {
+                for ( int i = 0; i < 500; i++ ) {
+                    int irow = rnd.nextInt( nrow );
+                    racc.setRowIndex( irow );
+                    assertEquals( irow, racc.getInt( 0 ) );
+                    assertEquals( irow, ((Number) t1.getCell( irow, 0 ))
+                                       .intValue() );
+                    assertEquals( svals[ irow ], t1.getCell( irow, 2 ) );
+                }
+            }
+            fTest_.assertTableEquals( t0, policy.copyTable( t0, null ) );
+            StarTable t2 = policy.randomTable( seqTable, RowRunner.PARTEST );
+            assertTrue( t2.isRandom() );
+            fTest_.assertTableEquals( t0, t2 );
+        }
+
+        final int[] counts = new int[ 3 ];
+        TableSink sink = new TableSink() {
+            public void acceptMetadata( StarTable meta ) {
+                counts[ 0 ]++;
+            }
+            public void acceptRow( Object[] row ) {
+                counts[ 1 ]++;
+            }
+            public void endRows() {
+                counts[ 2 ]++;
+            }
+        };
+        StoragePolicy monPolicy =
+            new MonitorStoragePolicy( StoragePolicy.PREFER_MEMORY, sink );
+        fTest_.assertTableEquals( t0,
+                                  monPolicy.copyTable( t0, RowRunner.PARTEST ));
+        assertArrayEquals( new int[] { 1, nrow, 1 }, counts );
+
+        /* If split positions are unknown the copy is redone sequentially;
+         * the monitor is restarted so that rows are not counted twice. */
+        StarTable unindexedTable = new WrapperStarTable( t0 ) {
+            public RowSplittable getRowSplittable() throws IOException {
+                return new UnindexedSplittable( new RandomRowSplittable( t0 ) );
+            }
+        };
+        final int[] nrows = new int[ 1 ];
+        TableSink countSink = new TableSink() {
+            public void acceptMetadata( StarTable meta ) {
+                nrows[ 0 ] = 0;
+            }
+            public void acceptRow( Object[] row ) {
+                nrows[ 0 ]++;
+            }
+            public void endRows() {
+            }
+        };
+        StoragePolicy countPolicy =
+            new MonitorStoragePolicy( StoragePolicy.PREFER_MEMORY, countSink );
+        StarTable t3 = countPolicy.copyTable( unindexedTable, unindexedTable,
+                                              RowRunner.PARTEST );
+        assertFalse( t3 instanceof ConcatStarTable );
+        fTest_.assertTableEquals( t0, t3 );
+        assertEquals( nrow, nrows[ 0 ] );
+    }
+
     public void testByteStorage() throws IOException {
         testByteStore( StoragePolicy.PREFER_MEMORY.makeByteStore() );
         testByteStore( StoragePolicy.PREFER_DISK.makeByteStore() );
@@ -180,6 +386,34 @@ public class StorageTest extends TestCase {
         for ( int il = 0; il < limits.length; il++ ) {
             testByteStore( new AdaptiveByteStore( limits[ il ] ) );
         }
+        for ( int il = 0; il < limits.length; il++ ) {
+            AtomicLong budget = new AtomicLong( limits[ il ] );
+            testByteStore( new AdaptiveByteStore( Integer.MAX_VALUE,
+                                                  budget ) );
+            assertEquals( limits[ il ], budget.get() );
+        }
+    }
+
+    public void testSharedBudget() throws IOException {
+        AtomicLong budget = new AtomicLong( 1000 );
+        AdaptiveByteStore bs1 = new AdaptiveByteStore( 800, budget );
+        AdaptiveByteStore bs2 = new AdaptiveByteStore( 800, budget );
+        bs1.getOutputStream().write( new byte[ 600 ] );
+        assertEquals( 400, budget.get() );
+
+        /* Within its own limit, but not the shared one. */
+        OutputStream out2 = bs2.getOutputStream();
+        out2.write( new byte[ 300 ] );
+        assertEquals( 100, budget.get() );
+        out2.write( new byte[ 300 ] );
+        assertEquals( 400, budget.get() );
+        assertEquals( 600, bs2.getLength() );
+
+        /* Memory is returned when the store is closed. */
+        bs1.close();
+        assertEquals( 1000, budget.get() );
+        bs2.close();
+        assertEquals( 1000, budget.get() );
     }
 
     public void testLimitByteStore() throws IOException {
@@ -303,4 +537,36 @@ public class StorageTest extends TestCase {
     private boolean fixedRows( DiskRowStore dstore ) {
         return dstore.getOffsets().isFixed();
     }
+
+    /**
+     * RowSplittable wrapper that does not know its row index.
+     */
+    private static class UnindexedSplittable implements RowSplittable {
+        private final RowSplittable base_;
+        UnindexedSplittable( RowSplittable base ) {
+            base_ = base;
+        }
+        public RowSplittable split() {
+            RowSplittable split = base_.split();
+            return split == null ? null : new UnindexedSplittable( split );
+        }
+        public long splittableSize() {
+            return base_.splittableSize();
+        }
+        public LongSupplier rowIndex() {
+            return null;
+        }
+        public boolean next() throws IOException {
+            return base_.next();
+        }
+        public Object getCell( int icol ) throws IOException {
+            return base_.getCell( icol );
+        }
+        public Object[] getRow() throws IOException {
+            return base_.getRow();
+        }
+        public void close() throws IOException {
+            base_.close();
+        }
+    }
 }
@@ -968,6 +968,8 @@ public class ControlWindow extends AuxWindow
      * basic StarTableFactory, the LoadingToken's display will monitor
      * the number of rows loaded, which is useful visual feedback for
      * the user, especially for large/slow tables.
+     * Rows are read into storage using this window's row runner,
+     * so that splittable input tables may be loaded in parallel.
      *
      * @param   token  token to update
      * @return   table factory; note this should only be used for work
@@ -1005,6 +1007,7 @@ public class ControlWindow extends AuxWindow
         StoragePolicy policy =
             new MonitorStoragePolicy( tfact.getStoragePolicy(), monitorSink );
         tfact.setStoragePolicy( policy );
+        tfact.setRowRunner( runner_ );
         return tfact;
     }
 
@@ -2195,7 +2198,9 @@ public class ControlWindow extends AuxWindow
             SwingUtilities.invokeLater( new Runnable() {
                 public void run() {
                     try {
-                        StarTable table1 = tabfact_.randomTable( table0 );
+                        StarTable table1 =
+                            tabfact_.getStoragePolicy()
+                                    .randomTable( table0, runner_ );
                         String loc = table1.getName();
                         loc = loc == null ? "dropped" : loc;
                         addTable( table1, loc, true );
@@ -18,6 +18,7 @@ import org.astrogrid.samp.client.DefaultClientProfile;
 import org.astrogrid.samp.client.SampException;
 import org.astrogrid.samp.httpd.UtilServer;
 import uk.ac.starlink.auth.AuthManager;
+import uk.ac.starlink.parquet.ParquetTableBuilder;
 import uk.ac.starlink.plastic.PlasticHub;
 import uk.ac.starlink.plastic.PlasticUtils;
 import uk.ac.starlink.table.DefaultValueInfo;
@@ -42,6 +43,7 @@ import uk.ac.starlink.util.Loader;
 import uk.ac.starlink.util.LogUtils;
 import uk.ac.starlink.util.URLDataSource;
 import uk.ac.starlink.util.URLUtils;
+import uk.ac.starlink.vo.TapMetaCache;
 import uk.ac.starlink.votable.VOElementFactory;
 
 /**
@@ -303,6 +305,25 @@ public class Driver {
         Loader.setDefaultProperty( "java.awt.Window.locationByPlatform",
                                    "true" );
 
+        /* Only read parquet column data when it's actually used;
+         * for wide tables most columns may never be looked at.
+         * The table viewer does not wait for columns that are still
+         * being read, it displays them when they arrive. */
+        Loader.setDefaultProperty( ParquetTableBuilder.LAZYCOLS_PROP, "true" );
+
+        /* Keep TAP service metadata between sessions, so that the TAP
+         * window can show services that have been used before
+         * without waiting for (possibly large) metadata queries. */
+        try {
+            File tapmetaDir = new File( System.getProperty( "user.home" ),
+                                        ".topcat/tapmeta" );
+            Loader.setDefaultProperty( TapMetaCache.CACHEDIR_PROP,
+                                       tapmetaDir.toString() );
+        }
+        catch ( SecurityException e ) {
+            // Never mind.
+        }
+
         /* Set User-Agent field for HTTP communications. */
         Loader.setHttpAgent( TopcatUtils.getHttpUserAgent() );
 
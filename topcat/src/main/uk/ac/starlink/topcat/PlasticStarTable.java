@@ -3,6 +3,7 @@ package uk.ac.starlink.topcat;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import uk.ac.starlink.parquet.CachedParquetStarTable;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnStarTable;
@@ -73,13 +74,7 @@ public class PlasticStarTable extends ColumnStarTable {
         for ( int icol = 0; icol < baseTable.getColumnCount(); icol++ ) {
             ColumnInfo colinfo =
                 new ColumnInfo( baseTable.getColumnInfo( icol ) );
-            final int ficol = icol;
-            ColumnData coldat = new ColumnData( colinfo ) {
-                public Object readValue( long lrow ) throws IOException {
-                    return baseTable.getCell( lrow, ficol );
-                }
-            };
-            addColumn( coldat );
+            addColumn( new BaseColumnData( colinfo, icol ) );
         }
     }
 
@@ -105,6 +100,37 @@ public class PlasticStarTable extends ColumnStarTable {
         super.setColumn( icol, coldata );
     }
 
+    /**
+     * Indicates whether the cells of a given column can be read
+     * without waiting for deferred data to become available.
+     * This is currently only the case for columns taken from a
+     * {@link uk.ac.starlink.parquet.CachedParquetStarTable}
+     * which reads its columns lazily.
+     * If the column is not ready, a background read is started,
+     * and the supplied callback will be invoked when it completes.
+     *
+     * @param  icol  column index
+     * @param  onReady  callback invoked, possibly from another thread,
+     *                  when a background read started by this call
+     *                  has completed
+     * @return  true if the column's cells can be read straight away;
+     *          false if a background read has been started
+     */
+    public boolean requestColumnData( int icol, Runnable onReady ) {
+        ColumnData coldat = getColumnData( icol );
+        if ( coldat instanceof BaseColumnData &&
+             baseTable instanceof CachedParquetStarTable ) {
+            CachedParquetStarTable pqTable =
+                (CachedParquetStarTable) baseTable;
+            int ibase = ((BaseColumnData) coldat).ibase_;
+            if ( ! pqTable.isColumnCached( ibase ) ) {
+                pqTable.cacheColumn( ibase, onReady );
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns the StarTable table on which this PlasticStarTable is based.
      *
@@ -113,5 +139,28 @@ public class PlasticStarTable extends ColumnStarTable {
     public StarTable getBaseTable() {
         return baseTable;
     }
-}
 
+    /**
+     * ColumnData implementation that reads its values from a column
+     * of the base table.
+     */
+    private class BaseColumnData extends ColumnData {
+
+        final int ibase_;
+
+        /**
+         * Constructor.
+         *
+         * @param  colinfo  column metadata
+         * @param  ibase   index of column in base table
+         */
+        BaseColumnData( ColumnInfo colinfo, int ibase ) {
+            super( colinfo );
+            ibase_ = ibase;
+        }
+
+        public Object readValue( long lrow ) throws IOException {
+            return baseTable.getCell( lrow, ibase_ );
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package uk.ac.starlink.topcat;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnData;
@@ -25,6 +29,8 @@ public class ViewerTableModel extends AbstractTableModel {
     private RowSubset rset_ = RowSubset.ALL;
     private int[] order_;
     private int[] rowMap_;
+    private final Set<ColumnData> pendingCols_;
+    private final Set<ColumnData> settledCols_;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.topcat" );
@@ -40,6 +46,8 @@ public class ViewerTableModel extends AbstractTableModel {
      */
     public ViewerTableModel( PlasticStarTable startable ) {
         startable_ = startable;
+        pendingCols_ = new HashSet<ColumnData>();
+        settledCols_ = new HashSet<ColumnData>();
 
         /* Ensure that we have a random access table to use, and that it
          * is not unfeasibly large. */
@@ -256,6 +264,9 @@ public class ViewerTableModel extends AbstractTableModel {
 
     public Object getValueAt( int irow, int icol ) {
         if ( icol >= 0 ) {
+            if ( ! isColumnReady( icol ) ) {
+                return null;
+            }
             try {
                 return startable_.getCell( getBaseRow( irow ), icol );
             }
@@ -280,6 +291,50 @@ public class ViewerTableModel extends AbstractTableModel {
         }
     }
 
+    /**
+     * Indicates whether the cells of a given column can be read without
+     * waiting for deferred data.  If not, the data is requested in the
+     * background, and the column is repainted when it arrives;
+     * in the mean time, the column's cells are displayed as blank.
+     * This method is called from the event dispatch thread,
+     * which must not be blocked by slow reads.
+     *
+     * <p>Each column is only requested once; if a background read fails,
+     * subsequent reads of the column are done synchronously,
+     * so that the failure is reported in the usual way.
+     *
+     * @param  icol  column index
+     * @return  true if cells of the column can be read straight away
+     */
+    private boolean isColumnReady( final int icol ) {
+        final ColumnData coldat = startable_.getColumnData( icol );
+        if ( pendingCols_.contains( coldat ) ) {
+            return false;
+        }
+        else if ( settledCols_.contains( coldat ) ) {
+            return true;
+        }
+        else {
+            Runnable onReady = () -> SwingUtilities.invokeLater( () -> {
+                pendingCols_.remove( coldat );
+                settledCols_.add( coldat );
+                int nrow = getRowCount();
+                if ( nrow > 0 && icol < getColumnCount() &&
+                     startable_.getColumnData( icol ) == coldat ) {
+                    fireTableChanged( new TableModelEvent( this, 0, nrow - 1,
+                                                           icol ) );
+                }
+            } );
+            if ( startable_.requestColumnData( icol, onReady ) ) {
+                return true;
+            }
+            else {
+                pendingCols_.add( coldat );
+                return false;
+            }
+        }
+    }
+
     public boolean isCellEditable( int irow, int icol ) {
         // return startable_.getColumnData( icol ).isWritable();
         return true;
@@ -2577,19 +2577,30 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
                 PlotPlacement placer = zone.placer_;
                 PlotLayer[] layers = zone.layers_;
                 Map<AuxScale,Span> auxSpans = zone.auxClipSpanMap_;
-                LayerOpt[] opts = PaperTypeSelector.getOpts( layers );
-                PaperType paperType =
-                      forceBitmap_
-                    ? ptSel_.getPixelPaperType( opts, compositor_ )
-                    : ptSel_.getVectorPaperType( opts );
                 if ( clip != null &&
                      ! clip.intersects( placer.getSurface()
                                               .getPlotBounds() ) ) {
                     layers = new PlotLayer[ 0 ];
                 }
-                PlotUtil.createPlotIcon( placer, layers, auxSpans,
-                                         dataStore, paperType, cached, plans )
-                        .paintIcon( c, g, 0, 0 );
+                final Icon zicon;
+                if ( forceBitmap_ ) {
+                    LayerOpt[] opts = PaperTypeSelector.getOpts( layers );
+                    PaperType paperType =
+                        ptSel_.getPixelPaperType( opts, compositor_ );
+                    zicon = PlotUtil
+                           .createPlotIcon( placer, layers, auxSpans,
+                                            dataStore, paperType, cached,
+                                            plans );
+                }
+                else {
+                    zicon = PlotUtil
+                           .createHybridPlotIcon( placer, layers, auxSpans,
+                                                  dataStore, ptSel_,
+                                                  compositor_,
+                                                  PlotUtil.AUTO_VECTOR_LIMIT,
+                                                  plans );
+                }
+                zicon.paintIcon( c, g, 0, 0 );
             }
             for ( Decoration dec : workings_.globalDecs_ ) {
                 dec.paintDecoration( g );
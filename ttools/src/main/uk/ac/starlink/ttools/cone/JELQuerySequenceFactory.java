@@ -4,6 +4,8 @@ import gnu.jel.CompilationException;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Library;
 import java.io.IOException;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.SequentialRowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.ttools.jel.JELUtils;
 import uk.ac.starlink.ttools.jel.SequentialJELRowReader;
@@ -41,7 +43,25 @@ public class JELQuerySequenceFactory implements QuerySequenceFactory {
 
     public ConeQueryRowSequence createQuerySequence( StarTable table )
             throws IOException {
-        return new JELQuerySequence( table, raString_, decString_, srString_ );
+        return createQuerySequence( table,
+                                    new SequentialRowSplittable( table ) );
+    }
+
+    /**
+     * Returns a query sequence that reads its rows from a supplied
+     * RowSplittable rather than from a new row sequence on the table.
+     * This can be used to evaluate cone queries in parallel
+     * within a {@link uk.ac.starlink.table.RowCollector}.
+     *
+     * @param  table  table providing the context for JEL expressions
+     * @param  rsplit  row splittable, must apply to the supplied table
+     * @return  query sequence reading from <code>rsplit</code>
+     */
+    public ConeQueryRowSequence createQuerySequence( StarTable table,
+                                                     RowSplittable rsplit )
+            throws IOException {
+        return new JELQuerySequence( table, rsplit,
+                                     raString_, decString_, srString_ );
     }
 
     /**
@@ -59,13 +79,15 @@ public class JELQuerySequenceFactory implements QuerySequenceFactory {
          * Constructor.
          *
          * @param   table providing the context for JEL expression evaluation
+         * @param   rsplit   row data source, must apply to the table
          * @param   raString   supplied string for RA expression, may be null
          * @param   decString  supplied string for Dec expression, may be null
          * @param   srString   supplied string for radius expression
          */
-        JELQuerySequence( StarTable table, String raString, String decString,
-                          String srString ) throws IOException {
-            super( table );
+        JELQuerySequence( StarTable table, RowSplittable rsplit,
+                          String raString, String decString, String srString )
+                throws IOException {
+            super( table, rsplit );
             lib_ = JELUtils.getLibrary( this );
             if ( raString == null || raString.trim().length() == 0 ) {
                 raString =
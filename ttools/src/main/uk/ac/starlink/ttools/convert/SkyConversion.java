@@ -0,0 +1,281 @@
+package uk.ac.starlink.ttools.convert;
+
+import uk.ac.starlink.ttools.plot.Matrices;
+
+/**
+ * Converts sky positions from one sky system to another at a fixed epoch.
+ *
+ * <p>Where both systems supply rotation matrices for conversion
+ * to/from FK5, the combined rotation matrix is calculated once
+ * at construction time, and conversions are done without any
+ * per-position object allocation.
+ * Otherwise (currently only for FK4, whose conversion includes the
+ * E-terms of aberration) positions are converted individually
+ * by way of the {@link SkySystem#toFK5} and {@link SkySystem#fromFK5}
+ * methods.
+ *
+ * <p>Instances of this class are immutable and may be used from
+ * multiple threads concurrently.
+ */
+public abstract class SkyConversion {
+
+    private final SkySystem inSys_;
+    private final SkySystem outSys_;
+    private final double epoch_;
+
+    /** PI / 2. */
+    private static final double PI2 = Math.PI / 2;
+
+    /** 2 * PI. */
+    private static final double TWOPI = 2 * Math.PI;
+
+    /**
+     * Constructor.
+     *
+     * @param  inSys  input sky system
+     * @param  outSys  output sky system
+     * @param  epoch  epoch of conversion
+     */
+    protected SkyConversion( SkySystem inSys, SkySystem outSys,
+                             double epoch ) {
+        inSys_ = inSys;
+        outSys_ = outSys;
+        epoch_ = epoch;
+    }
+
+    /**
+     * Converts a single position.
+     * Coordinates are in radians.
+     * The output longitude is in the range 0..2*PI.
+     * If the input latitude is out of range, NaNs are written.
+     *
+     * @param  c1  input longitude
+     * @param  c2  input latitude
+     * @param  out  2-element buffer into which (longitude, latitude)
+     *              in the output system will be written
+     */
+    public abstract void convert( double c1, double c2, double[] out );
+
+    /**
+     * Converts a block of positions held in caller-supplied arrays.
+     * Coordinates are in radians.
+     * The output arrays may be the same as the input arrays.
+     *
+     * @param  c1s  input longitude array
+     * @param  c2s  input latitude array
+     * @param  out1s  output longitude array
+     * @param  out2s  output latitude array
+     * @param  off   index of first element to convert in all arrays
+     * @param  n    number of positions to convert
+     */
+    public abstract void convertBlock( double[] c1s, double[] c2s,
+                                       double[] out1s, double[] out2s,
+                                       int off, int n );
+
+    /**
+     * Returns the rotation matrix used by this conversion, if it is
+     * a pure rotation.
+     *
+     * @return  9-element row-major rotation matrix from input
+     *          to output system, or null
+     */
+    public abstract double[] getMatrix();
+
+    /**
+     * Returns the input sky system.
+     *
+     * @return  input system
+     */
+    public SkySystem getInputSystem() {
+        return inSys_;
+    }
+
+    /**
+     * Returns the output sky system.
+     *
+     * @return  output system
+     */
+    public SkySystem getOutputSystem() {
+        return outSys_;
+    }
+
+    /**
+     * Returns the epoch at which this conversion operates.
+     *
+     * @return  epoch
+     */
+    public double getEpoch() {
+        return epoch_;
+    }
+
+    @Override
+    public String toString() {
+        return inSys_ + "->" + outSys_ + "(" + epoch_ + ")";
+    }
+
+    /**
+     * Returns a conversion between two given sky systems.
+     *
+     * @param  inSys  input sky system
+     * @param  outSys  output sky system
+     * @param  epoch  epoch of conversion, used by some systems
+     * @return  new conversion
+     */
+    public static SkyConversion createConversion( SkySystem inSys,
+                                                  SkySystem outSys,
+                                                  double epoch ) {
+        double[] toFk5 = inSys.getToFK5Matrix( epoch );
+        double[] fromFk5 = outSys.getFromFK5Matrix( epoch );
+        return toFk5 != null && fromFk5 != null
+             ? new MatrixConversion( inSys, outSys, epoch,
+                                     Matrices.mmMult( fromFk5, toFk5 ) )
+             : new GenericConversion( inSys, outSys, epoch );
+    }
+
+    /**
+     * Returns true only if the given angle is a valid latitude
+     * (in range -PI/2..+PI/2).
+     *
+     * @param   theta  angle in radians
+     * @return  true iff theta is in range for a latitude
+     */
+    private static boolean isLatitude( double theta ) {
+        return theta >= - PI2 && theta <= + PI2;
+    }
+
+    /**
+     * Conversion implementation using a fixed rotation matrix.
+     */
+    private static class MatrixConversion extends SkyConversion {
+
+        private final double[] matrix_;
+        private final double m0_;
+        private final double m1_;
+        private final double m2_;
+        private final double m3_;
+        private final double m4_;
+        private final double m5_;
+        private final double m6_;
+        private final double m7_;
+        private final double m8_;
+
+        /**
+         * Constructor.
+         *
+         * @param  inSys  input sky system
+         * @param  outSys  output sky system
+         * @param  epoch  epoch of conversion
+         * @param  matrix  9-element rotation matrix
+         */
+        MatrixConversion( SkySystem inSys, SkySystem outSys, double epoch,
+                          double[] matrix ) {
+            super( inSys, outSys, epoch );
+            matrix_ = matrix;
+            m0_ = matrix[ 0 ];
+            m1_ = matrix[ 1 ];
+            m2_ = matrix[ 2 ];
+            m3_ = matrix[ 3 ];
+            m4_ = matrix[ 4 ];
+            m5_ = matrix[ 5 ];
+            m6_ = matrix[ 6 ];
+            m7_ = matrix[ 7 ];
+            m8_ = matrix[ 8 ];
+        }
+
+        public void convert( double c1, double c2, double[] out ) {
+            if ( isLatitude( c2 ) ) {
+                double cosb = Math.cos( c2 );
+                double x = Math.cos( c1 ) * cosb;
+                double y = Math.sin( c1 ) * cosb;
+                double z = Math.sin( c2 );
+                double x1 = m0_ * x + m1_ * y + m2_ * z;
+                double y1 = m3_ * x + m4_ * y + m5_ * z;
+                double z1 = m6_ * x + m7_ * y + m8_ * z;
+                double r = Math.sqrt( x1 * x1 + y1 * y1 );
+                double a = r != 0.0 ? Math.atan2( y1, x1 ) : 0.0;
+                double b = z1 != 0.0 ? Math.atan2( z1, r ) : 0.0;
+                out[ 0 ] = a >= 0.0 ? a : a + TWOPI;
+                out[ 1 ] = b;
+            }
+            else {
+                out[ 0 ] = Double.NaN;
+                out[ 1 ] = Double.NaN;
+            }
+        }
+
+        public void convertBlock( double[] c1s, double[] c2s,
+                                  double[] out1s, double[] out2s,
+                                  int off, int n ) {
+            int end = off + n;
+            for ( int i = off; i < end; i++ ) {
+                double c1 = c1s[ i ];
+                double c2 = c2s[ i ];
+                if ( isLatitude( c2 ) ) {
+                    double cosb = Math.cos( c2 );
+                    double x = Math.cos( c1 ) * cosb;
+                    double y = Math.sin( c1 ) * cosb;
+                    double z = Math.sin( c2 );
+                    double x1 = m0_ * x + m1_ * y + m2_ * z;
+                    double y1 = m3_ * x + m4_ * y + m5_ * z;
+                    double z1 = m6_ * x + m7_ * y + m8_ * z;
+                    double r = Math.sqrt( x1 * x1 + y1 * y1 );
+                    double a = r != 0.0 ? Math.atan2( y1, x1 ) : 0.0;
+                    double b = z1 != 0.0 ? Math.atan2( z1, r ) : 0.0;
+                    out1s[ i ] = a >= 0.0 ? a : a + TWOPI;
+                    out2s[ i ] = b;
+                }
+                else {
+                    out1s[ i ] = Double.NaN;
+                    out2s[ i ] = Double.NaN;
+                }
+            }
+        }
+
+        public double[] getMatrix() {
+            return matrix_.clone();
+        }
+    }
+
+    /**
+     * Conversion implementation that delegates to the SkySystem
+     * per-position conversion methods.
+     */
+    private static class GenericConversion extends SkyConversion {
+
+        /**
+         * Constructor.
+         *
+         * @param  inSys  input sky system
+         * @param  outSys  output sky system
+         * @param  epoch  epoch of conversion
+         */
+        GenericConversion( SkySystem inSys, SkySystem outSys, double epoch ) {
+            super( inSys, outSys, epoch );
+        }
+
+        public void convert( double c1, double c2, double[] out ) {
+            double epoch = getEpoch();
+            double[] fk5 = getInputSystem().toFK5( c1, c2, epoch );
+            double[] res = getOutputSystem().fromFK5( fk5[ 0 ], fk5[ 1 ],
+                                                      epoch );
+            out[ 0 ] = res[ 0 ];
+            out[ 1 ] = res[ 1 ];
+        }
+
+        public void convertBlock( double[] c1s, double[] c2s,
+                                  double[] out1s, double[] out2s,
+                                  int off, int n ) {
+            double[] buf = new double[ 2 ];
+            int end = off + n;
+            for ( int i = off; i < end; i++ ) {
+                convert( c1s[ i ], c2s[ i ], buf );
+                out1s[ i ] = buf[ 0 ];
+                out2s[ i ] = buf[ 1 ];
+            }
+        }
+
+        public double[] getMatrix() {
+            return null;
+        }
+    }
+}
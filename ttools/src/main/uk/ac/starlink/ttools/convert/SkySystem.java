@@ -5,6 +5,7 @@ import uk.ac.starlink.pal.Cartesian;
 import uk.ac.starlink.pal.Galactic;
 import uk.ac.starlink.pal.Pal;
 import uk.ac.starlink.pal.Spherical;
+import uk.ac.starlink.ttools.plot.Matrices;
 import uk.ac.starlink.ttools.func.Times;
 
 /**
@@ -17,6 +18,10 @@ import uk.ac.starlink.ttools.func.Times;
  * and I think there may be subtleties which I'm not addressing
  * accurately here.
  *
+ * <p>Where the conversion to or from FK5 is a pure rotation,
+ * the rotation matrix is also available,
+ * which allows efficient bulk conversion using {@link SkyConversion}.
+ *
  * @author   Mark Taylor
  * @since    30 Aug 2005
  */
@@ -57,6 +62,20 @@ public abstract class SkySystem {
     /** PI / 2. */
     private static final double PI2 = Math.PI / 2;
 
+    /* Equatorial to galactic rotation matrix, as used by Pal.Eqgal. */
+    private static final double[] EQ2GAL = new double[] {
+        -0.054875539726, -0.873437108010, -0.483834985808,
+         0.494109453312, -0.444829589425,  0.746982251810,
+        -0.867666135858, -0.198076386122,  0.455983795705
+    };
+
+    /* Galactic to supergalactic rotation matrix, as used by Pal.Galsup. */
+    private static final double[] GAL2SUP = new double[] {
+        -0.735742574804,  0.677261296414,  0.0,
+        -0.074553778365, -0.080991471307,  0.993922590400,
+         0.673145302109,  0.731271165817,  0.110081262225
+    };
+
     private static final String EQ_UCD1 = "pos.eq.ra";
     private static final String EQ_UCD2 = "pos.eq.dec";
 
@@ -115,6 +134,38 @@ public abstract class SkySystem {
      */
     public abstract double[] toFK5( double c1, double c2, double epoch );
 
+    /**
+     * Returns the matrix that rotates Cartesian position vectors
+     * from FK5 J2000.0 into this system at a given epoch,
+     * if the conversion can be represented in that way.
+     * If the conversion is not a pure rotation, null is returned.
+     *
+     * <p>The default implementation returns null.
+     *
+     * @param  epoch  epoch
+     * @return  9-element row-major rotation matrix, or null
+     */
+    public double[] getFromFK5Matrix( double epoch ) {
+        return null;
+    }
+
+    /**
+     * Returns the matrix that rotates Cartesian position vectors
+     * from this system at a given epoch into FK5 J2000.0,
+     * if the conversion can be represented in that way.
+     * If the conversion is not a pure rotation, null is returned.
+     *
+     * <p>The default implementation returns the transpose (inverse)
+     * of the {@link #getFromFK5Matrix} result.
+     *
+     * @param  epoch  epoch
+     * @return  9-element row-major rotation matrix, or null
+     */
+    public double[] getToFK5Matrix( double epoch ) {
+        double[] fromMatrix = getFromFK5Matrix( epoch );
+        return fromMatrix == null ? null : Matrices.transpose( fromMatrix );
+    }
+
     /**
      * Returns the name of this system.
      *
@@ -285,6 +336,14 @@ public abstract class SkySystem {
                 return new double[] { Double.NaN, Double.NaN };
             }
         }
+        @Override
+        public double[] getFromFK5Matrix( double epoch ) {
+            return Matrices.fromPal( PAL.Prec( epoch, FK5_EPOCH ) );
+        }
+        @Override
+        public double[] getToFK5Matrix( double epoch ) {
+            return Matrices.fromPal( PAL.Prec( FK5_EPOCH, epoch ) );
+        }
     }
 
     /**
@@ -315,6 +374,10 @@ public abstract class SkySystem {
                 return new double[] { Double.NaN, Double.NaN };
             }
         }
+        @Override
+        public double[] getFromFK5Matrix( double epoch ) {
+            return fk5hzMatrix( epoch );
+        }
     }
 
     /**
@@ -377,6 +440,10 @@ public abstract class SkySystem {
                 return new double[] { Double.NaN, Double.NaN };
             }
         }
+        @Override
+        public double[] getFromFK5Matrix( double epoch ) {
+            return EQ2GAL.clone();
+        }
     }
 
     /**
@@ -408,6 +475,10 @@ public abstract class SkySystem {
                 return new double[] { Double.NaN, Double.NaN };
             }
         }
+        @Override
+        public double[] getFromFK5Matrix( double epoch ) {
+            return Matrices.mmMult( GAL2SUP, EQ2GAL );
+        }
     }
 
     /**
@@ -441,6 +512,13 @@ public abstract class SkySystem {
                 return new double[] { Double.NaN, Double.NaN };
             }
         }
+        @Override
+        public double[] getFromFK5Matrix( double epoch ) {
+            double mjd = Times.julianToMjd( epoch );
+            return Matrices.mmMult( Matrices.fromPal( PAL.Ecmat( mjd ) ),
+                                    Matrices.fromPal( PAL.Prec( 2000.0,
+                                                      PAL.Epj( mjd ) ) ) );
+        }
     }
 
     /**
@@ -486,6 +564,29 @@ public abstract class SkySystem {
         return hipp;
     }
 
+    /**
+     * Returns the rotation matrix corresponding to the conversion
+     * from FK5 to ICRS coordinates performed by {@link #fk5hz}.
+     *
+     * @param  bepoch  epoch
+     * @return  9-element FK5 to ICRS rotation matrix
+     */
+    private static double[] fk5hzMatrix( double bepoch ) {
+        final double AS2R = 0.484813681109535994e-5;
+        final double EPX = -19.9e-3 * AS2R;
+        final double EPY =  -9.1e-3 * AS2R;
+        final double EPZ = +22.9e-3 * AS2R;
+        final double OMX = -0.30e-3 * AS2R;
+        final double OMY = +0.60e-3 * AS2R;
+        final double OMZ = +0.70e-3 * AS2R;
+        final double[] ORTN = new double[] { EPX, EPY, EPZ };
+        double[] r5h = Matrices.fromPal( PAL.Dav2m( ORTN ) );
+        double t = 2000.0 - bepoch;
+        double[] vst = new double[] { OMX * t, OMY * t, OMZ * t };
+        double[] rst = Matrices.fromPal( PAL.Dav2m( vst ) );
+        return Matrices.mmMult( r5h, Matrices.transpose( rst ) );
+    }
+
     /**
      * Convert from ICRS to FK5 coordinates.
      * This routine is missing from PAL.
@@ -6,6 +6,7 @@ import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.task.UsageException;
+import uk.ac.starlink.ttools.convert.SkyConversion;
 import uk.ac.starlink.ttools.convert.SkyUnits;
 import uk.ac.starlink.ttools.convert.SkySystem;
 import uk.ac.starlink.ttools.jel.ColumnIdentifier;
@@ -152,6 +153,8 @@ public class AddSkyCoordsFilter extends BasicFilter {
         catch ( IllegalArgumentException e ) {
             throw new ArgException( e.getMessage(), e );
         }
+        final SkyConversion conversion =
+            SkyConversion.createConversion( inSys, outSys, epoch );
 
         return new ProcessingStep() {
             public StarTable wrap( StarTable base ) throws IOException {
@@ -186,15 +189,10 @@ public class AddSkyCoordsFilter extends BasicFilter {
                         new CalculatorColumnSupplement( inCoordsSup,
                                                         outColInfos ) {
                     protected Object[] calculate( Object[] inputs ) {
-                        double[] inRads =
+                        double[] rads =
                             inUnits.decode( inputs[ 0 ], inputs[ 1 ] );
-                        double[] fk5 =
-                            inSys.toFK5( inRads[ 0 ], inRads[ 1 ], epoch );
-                        double[] outRads =
-                            outSys.fromFK5( fk5[ 0 ], fk5[ 1 ], epoch );
-                        Object[] outVals =
-                            outUnits.encode( outRads[ 0 ], outRads[ 1 ] );
-                        return outVals;
+                        conversion.convert( rads[ 0 ], rads[ 1 ], rads );
+                        return outUnits.encode( rads[ 0 ], rads[ 1 ] );
                     }
                 };
                 StarTable out = new AddColumnsTable( base, outCoordsSup );
@@ -7,9 +7,8 @@ import java.util.List;
 import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DescribedValue;
-import uk.ac.starlink.table.MetaCopyStarTable;
 import uk.ac.starlink.table.RowSequence;
-import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 
@@ -22,10 +21,10 @@ import uk.ac.starlink.table.StoragePolicy;
  * @author   Mark Taylor (Starlink)
  * @since    8 Mar 2005
  */
-public class CacheFilter extends BasicFilter implements ProcessingStep {
+public class CacheFilter extends BasicFilter {
 
     public CacheFilter() {
-        super( "cache", null );
+        super( "cache", "[-[no]parallel]" );
     }
 
     protected String[] getDescriptionLines() {
@@ -46,6 +45,11 @@ public class CacheFilter extends BasicFilter implements ProcessingStep {
             "</p>",
             "<p>The result of this filter is guaranteed to be random-access.",
             "</p>",
+            "<p>The <code>-[no]parallel</code> flag",
+            "controls whether the rows are read into storage",
+            "using multithreading, if the input table permits it.",
+            "By default they are.",
+            "</p>",
             "<p>See also the <ref id='random'><code>random</code></ref>",
             "filter, which caches only when the input table is not",
             "random-access.",
@@ -53,20 +57,31 @@ public class CacheFilter extends BasicFilter implements ProcessingStep {
         };
     }
 
-    public ProcessingStep createStep( Iterator<String> argIt ) {
-        return this;
-    }
-
-    public StarTable wrap( StarTable baseTable ) throws IOException {
-        RowStore store = StoragePolicy.getDefaultPolicy().makeRowStore();
-        store.acceptMetadata( new MetaOnlyTable( baseTable ) );
-        try ( RowSequence rseq = baseTable.getRowSequence() ) {
-            while ( rseq.next() ) {
-                store.acceptRow( rseq.getRow() );
+    public ProcessingStep createStep( Iterator<String> argIt )
+            throws ArgException {
+        boolean isParallel = true;
+        while ( argIt.hasNext() ) {
+            String arg = argIt.next();
+            if ( "-parallel".equalsIgnoreCase( arg ) ) {
+                argIt.remove();
+                isParallel = true;
+            }
+            else if ( "-noparallel".equalsIgnoreCase( arg ) ) {
+                argIt.remove();
+                isParallel = false;
+            }
+            else {
+                break;
             }
-            store.endRows();
-            return store.getStarTable();
         }
+        final RowRunner runner = isParallel ? RowRunner.DEFAULT : null;
+        return new ProcessingStep() {
+            public StarTable wrap( StarTable baseTable ) throws IOException {
+                return StoragePolicy.getDefaultPolicy()
+                      .copyTable( new MetaOnlyTable( baseTable ), baseTable,
+                                  runner );
+            }
+        };
     }
 
     /**
@@ -184,6 +184,12 @@ public class JELColumnSupplement implements ColumnSupplement {
             return rdata_.getCell( icol );
         }
 
+        // StarTableJELRowReader method
+        @Override
+        protected RowData getRowData() {
+            return rdata_;
+        }
+
         // SupplementData method
         public Object getCell( long irow, int icol ) throws IOException {
             lrow_ = irow;
@@ -0,0 +1,660 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.Arrays;
+
+/**
+ * Reusable workspace holding a single light curve as primitive arrays,
+ * and calculating summary statistics from it.
+ *
+ * <p>An instance is loaded with data for one light curve at a time
+ * using the {@link #setData setData} method, after which the various
+ * <code>get*</code> methods may be called to obtain features.
+ * Intermediate results (moments, sorted values etc) are calculated
+ * lazily and cached until the next call of <code>setData</code>,
+ * so that asking for several features does not repeat work.
+ * The internal arrays are only reallocated when a longer light curve
+ * than any seen before is loaded, so that processing many rows
+ * with the same instance does not generate much garbage.
+ *
+ * <p>Samples for which the time or value (or error, if present)
+ * is blank, or for which the error is not positive, are ignored.
+ * Samples are sorted into time order if they are not already.
+ *
+ * <p>Instances of this class are not thread-safe.
+ */
+class LightCurve {
+
+    private double[] t_;
+    private double[] y_;
+    private double[] w_;
+    private double[] work_;
+    private double[] lsWork_;
+    private boolean hasErrors_;
+    private int n_;
+
+    private boolean hasMoments_;
+    private double mean_;
+    private double m2_;
+    private double m3_;
+    private double m4_;
+    private boolean hasWmean_;
+    private double wmean_;
+    private boolean hasMedian_;
+    private double median_;
+    private double[] ls_;
+
+    /** Oversampling factor for Lomb-Scargle frequency grid. */
+    public static final int LS_OVERSAMPLE = 5;
+
+    /**
+     * Constructor.
+     */
+    public LightCurve() {
+        t_ = new double[ 0 ];
+        y_ = new double[ 0 ];
+        w_ = new double[ 0 ];
+        work_ = new double[ 0 ];
+        lsWork_ = new double[ 0 ];
+    }
+
+    /**
+     * Loads this object with a new light curve.
+     * The supplied arrays may be of any primitive numeric array type.
+     * If the time and value arrays (and error array, if supplied)
+     * are not all numeric arrays of the same length,
+     * the light curve is considered empty.
+     *
+     * @param  tArray  array of sample times
+     * @param  yArray  array of sample values
+     * @param  eArray  array of sample errors, or null for no errors
+     */
+    public void setData( Object tArray, Object yArray, Object eArray ) {
+        hasMoments_ = false;
+        hasWmean_ = false;
+        hasMedian_ = false;
+        ls_ = null;
+        hasErrors_ = eArray != null;
+        n_ = 0;
+        int nt = getLength( tArray );
+        if ( nt <= 0 || getLength( yArray ) != nt ||
+             ( hasErrors_ && getLength( eArray ) != nt ) ) {
+            return;
+        }
+        if ( t_.length < nt ) {
+            int size = Math.max( nt, t_.length * 2 );
+            t_ = new double[ size ];
+            y_ = new double[ size ];
+            w_ = new double[ size ];
+            work_ = new double[ size ];
+        }
+        toDoubles( tArray, t_, nt );
+        toDoubles( yArray, y_, nt );
+        if ( hasErrors_ ) {
+            toDoubles( eArray, w_, nt );
+        }
+
+        /* Compact the arrays by discarding unusable samples, and replace
+         * errors by weights. */
+        int n = 0;
+        boolean isSorted = true;
+        double tLast = Double.NEGATIVE_INFINITY;
+        for ( int i = 0; i < nt; i++ ) {
+            double t = t_[ i ];
+            double y = y_[ i ];
+            double e = hasErrors_ ? w_[ i ] : 1.0;
+            if ( isFinite( t ) && isFinite( y ) && e > 0 && isFinite( e ) ) {
+                t_[ n ] = t;
+                y_[ n ] = y;
+                w_[ n ] = hasErrors_ ? 1.0 / ( e * e ) : 1.0;
+                isSorted = isSorted && t >= tLast;
+                tLast = t;
+                n++;
+            }
+        }
+        n_ = n;
+        if ( ! isSorted ) {
+            sortByTime( t_, y_, w_, n );
+        }
+    }
+
+    /**
+     * Indicates whether the current light curve has per-sample errors.
+     *
+     * @return  true iff errors were supplied
+     */
+    public boolean hasErrors() {
+        return hasErrors_;
+    }
+
+    /**
+     * Returns the number of usable samples in the current light curve.
+     *
+     * @return  sample count
+     */
+    public int getCount() {
+        return n_;
+    }
+
+    /**
+     * Returns the time interval between the first and last samples.
+     *
+     * @return  time span
+     */
+    public double getSpan() {
+        return n_ > 0 ? t_[ n_ - 1 ] - t_[ 0 ] : Double.NaN;
+    }
+
+    /**
+     * Returns the unweighted mean of the values.
+     *
+     * @return  mean
+     */
+    public double getMean() {
+        ensureMoments();
+        return mean_;
+    }
+
+    /**
+     * Returns the sample standard deviation of the values.
+     *
+     * @return  standard deviation
+     */
+    public double getStdev() {
+        ensureMoments();
+        return n_ > 1 ? Math.sqrt( m2_ / ( n_ - 1 ) ) : Double.NaN;
+    }
+
+    /**
+     * Returns the skewness (third standardised moment) of the values.
+     *
+     * @return  skewness
+     */
+    public double getSkew() {
+        ensureMoments();
+        return n_ > 2 && m2_ > 0
+             ? ( m3_ / n_ ) / Math.pow( m2_ / n_, 1.5 )
+             : Double.NaN;
+    }
+
+    /**
+     * Returns the excess kurtosis of the values.
+     *
+     * @return  kurtosis - 3
+     */
+    public double getKurtosis() {
+        ensureMoments();
+        if ( n_ > 3 && m2_ > 0 ) {
+            double v = m2_ / n_;
+            return ( m4_ / n_ ) / ( v * v ) - 3.0;
+        }
+        else {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the inverse-variance weighted mean of the values.
+     * If no errors are present, this is the same as the unweighted mean.
+     *
+     * @return  weighted mean
+     */
+    public double getWeightedMean() {
+        if ( ! hasWmean_ ) {
+            double sw = 0;
+            double swy = 0;
+            for ( int i = 0; i < n_; i++ ) {
+                sw += w_[ i ];
+                swy += w_[ i ] * y_[ i ];
+            }
+            wmean_ = n_ > 0 ? swy / sw : Double.NaN;
+            hasWmean_ = true;
+        }
+        return wmean_;
+    }
+
+    /**
+     * Returns the median of the values.
+     *
+     * @return  median
+     */
+    public double getMedian() {
+        if ( ! hasMedian_ ) {
+            System.arraycopy( y_, 0, work_, 0, n_ );
+            median_ = sortedMedian( work_, n_ );
+            hasMedian_ = true;
+        }
+        return median_;
+    }
+
+    /**
+     * Returns the median absolute deviation of the values from their median.
+     * No scaling factor is applied.
+     *
+     * @return  median absolute deviation
+     */
+    public double getMad() {
+        double median = getMedian();
+        for ( int i = 0; i < n_; i++ ) {
+            work_[ i ] = Math.abs( y_[ i ] - median );
+        }
+        return sortedMedian( work_, n_ );
+    }
+
+    /**
+     * Returns half the difference between the largest and smallest values.
+     *
+     * @return  amplitude
+     */
+    public double getAmplitude() {
+        if ( n_ == 0 ) {
+            return Double.NaN;
+        }
+        double min = y_[ 0 ];
+        double max = y_[ 0 ];
+        for ( int i = 1; i < n_; i++ ) {
+            double y = y_[ i ];
+            if ( y < min ) {
+                min = y;
+            }
+            if ( y > max ) {
+                max = y;
+            }
+        }
+        return 0.5 * ( max - min );
+    }
+
+    /**
+     * Returns the fraction of values which lie more than one standard
+     * deviation from the mean.
+     *
+     * @return  fraction in the range 0..1
+     */
+    public double getBeyond1Std() {
+        double mean = getMean();
+        double sd = getStdev();
+        if ( ! ( sd >= 0 ) ) {
+            return Double.NaN;
+        }
+        int nb = 0;
+        for ( int i = 0; i < n_; i++ ) {
+            if ( Math.abs( y_[ i ] - mean ) > sd ) {
+                nb++;
+            }
+        }
+        return nb / (double) n_;
+    }
+
+    /**
+     * Returns the reduced chi-squared of the values with respect to
+     * a constant equal to their weighted mean.
+     * Only meaningful if errors are present.
+     *
+     * @return  reduced chi-squared
+     */
+    public double getReducedChi2() {
+        if ( ! hasErrors_ || n_ < 2 ) {
+            return Double.NaN;
+        }
+        double wmean = getWeightedMean();
+        double chi2 = 0;
+        for ( int i = 0; i < n_; i++ ) {
+            double d = y_[ i ] - wmean;
+            chi2 += w_[ i ] * d * d;
+        }
+        return chi2 / ( n_ - 1 );
+    }
+
+    /**
+     * Returns the Stetson K variability index (Stetson 1996, PASP 108, 851).
+     * Only meaningful if errors are present.
+     *
+     * @return  Stetson K
+     */
+    public double getStetsonK() {
+        if ( ! hasErrors_ || n_ < 2 ) {
+            return Double.NaN;
+        }
+        double wmean = getWeightedMean();
+        double fact = Math.sqrt( n_ / ( n_ - 1.0 ) );
+        double sAbs = 0;
+        double sSq = 0;
+        for ( int i = 0; i < n_; i++ ) {
+            double delta = fact * ( y_[ i ] - wmean ) * Math.sqrt( w_[ i ] );
+            sAbs += Math.abs( delta );
+            sSq += delta * delta;
+        }
+        return sSq > 0 ? ( sAbs / n_ ) / Math.sqrt( sSq / n_ ) : Double.NaN;
+    }
+
+    /**
+     * Returns the von Neumann ratio, which is the mean square successive
+     * difference of the time-ordered values divided by their variance.
+     * Small values indicate a smoothly varying light curve.
+     *
+     * @return  von Neumann ratio
+     */
+    public double getEta() {
+        ensureMoments();
+        if ( n_ < 2 || ! ( m2_ > 0 ) ) {
+            return Double.NaN;
+        }
+        double sd2 = 0;
+        for ( int i = 1; i < n_; i++ ) {
+            double d = y_[ i ] - y_[ i - 1 ];
+            sd2 += d * d;
+        }
+        return sd2 / m2_;
+    }
+
+    /**
+     * Returns the period of the highest peak in the generalised
+     * Lomb-Scargle periodogram.
+     *
+     * @return  best period in time units
+     * @see   #getLombScargle
+     */
+    public double getLsPeriod() {
+        return getLombScargle()[ 0 ];
+    }
+
+    /**
+     * Returns the normalised power of the highest peak in the generalised
+     * Lomb-Scargle periodogram.
+     *
+     * @return  best power in the range 0..1
+     * @see   #getLombScargle
+     */
+    public double getLsPower() {
+        return getLombScargle()[ 1 ];
+    }
+
+    /**
+     * Returns the position and height of the highest peak in the
+     * generalised (floating-mean, error-weighted) Lomb-Scargle periodogram
+     * of Zechmeister &amp; K&uuml;rster (2009, A&amp;A 496, 577).
+     *
+     * <p>The frequency grid runs from one cycle over the time span
+     * up to the pseudo-Nyquist frequency <code>N/(2*span)</code>,
+     * oversampled by a factor of {@link #LS_OVERSAMPLE}.
+     * The sines and cosines are advanced from one frequency to the next
+     * by a trigonometric recurrence rather than being recalculated,
+     * so the cost is dominated by a few multiply-adds per sample
+     * per trial frequency.
+     *
+     * @return  2-element array (period, power);
+     *          elements are NaN if the periodogram cannot be calculated
+     */
+    public double[] getLombScargle() {
+        if ( ls_ == null ) {
+            ls_ = calculateLombScargle();
+        }
+        return ls_;
+    }
+
+    /**
+     * Does the work for the Lomb-Scargle calculation.
+     *
+     * @return  2-element array (period, power)
+     */
+    private double[] calculateLombScargle() {
+        double[] result = new double[] { Double.NaN, Double.NaN };
+        int n = n_;
+        double span = getSpan();
+        if ( n < 3 || ! ( span > 0 ) ) {
+            return result;
+        }
+        double fmin = 1.0 / span;
+        double df = 1.0 / ( LS_OVERSAMPLE * span );
+        double fmax = 0.5 * n / span;
+        int nf = (int) Math.floor( ( fmax - fmin ) / df ) + 1;
+
+        /* Normalised weights and centred values. */
+        double sw = 0;
+        for ( int i = 0; i < n; i++ ) {
+            sw += w_[ i ];
+        }
+        double wmean = getWeightedMean();
+        if ( lsWork_.length < 6 * n ) {
+            lsWork_ = new double[ 6 * Math.max( n, t_.length ) ];
+        }
+        double[] ws = lsWork_;
+        int iw = 0;
+        int iy = n;
+        int ic = 2 * n;
+        int is = 3 * n;
+        int idc = 4 * n;
+        int ids = 5 * n;
+        double yy = 0;
+        double t0 = t_[ 0 ];
+        for ( int i = 0; i < n; i++ ) {
+            double w = w_[ i ] / sw;
+            double y = y_[ i ] - wmean;
+            double t = t_[ i ] - t0;
+            ws[ iw + i ] = w;
+            ws[ iy + i ] = y;
+            yy += w * y * y;
+            double a0 = 2 * Math.PI * fmin * t;
+            double da = 2 * Math.PI * df * t;
+            ws[ ic + i ] = Math.cos( a0 );
+            ws[ is + i ] = Math.sin( a0 );
+            ws[ idc + i ] = Math.cos( da );
+            ws[ ids + i ] = Math.sin( da );
+        }
+        if ( ! ( yy > 0 ) ) {
+            return result;
+        }
+
+        /* Step through the frequency grid. */
+        double bestPower = -1;
+        int bestIf = -1;
+        for ( int jf = 0; jf < nf; jf++ ) {
+            double c = 0;
+            double s = 0;
+            double cc = 0;
+            double cs = 0;
+            double yc = 0;
+            double ys = 0;
+            for ( int i = 0; i < n; i++ ) {
+                double w = ws[ iw + i ];
+                double y = ws[ iy + i ];
+                double cos = ws[ ic + i ];
+                double sin = ws[ is + i ];
+                double wc = w * cos;
+                double ws1 = w * sin;
+                c += wc;
+                s += ws1;
+                cc += wc * cos;
+                cs += wc * sin;
+                yc += y * wc;
+                ys += y * ws1;
+
+                /* Advance to next frequency. */
+                double dc = ws[ idc + i ];
+                double ds = ws[ ids + i ];
+                ws[ ic + i ] = cos * dc - sin * ds;
+                ws[ is + i ] = sin * dc + cos * ds;
+            }
+            double ccHat = cc - c * c;
+            double ssHat = ( 1.0 - cc ) - s * s;
+            double csHat = cs - c * s;
+            double d = ccHat * ssHat - csHat * csHat;
+            if ( d > 0 ) {
+                double power = ( ssHat * yc * yc + ccHat * ys * ys
+                               - 2 * csHat * yc * ys ) / ( yy * d );
+                if ( power > bestPower ) {
+                    bestPower = power;
+                    bestIf = jf;
+                }
+            }
+        }
+        if ( bestIf >= 0 ) {
+            result[ 0 ] = 1.0 / ( fmin + bestIf * df );
+            result[ 1 ] = bestPower;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates and caches the unweighted central moments if required.
+     */
+    private void ensureMoments() {
+        if ( ! hasMoments_ ) {
+            int n = n_;
+            double sum = 0;
+            for ( int i = 0; i < n; i++ ) {
+                sum += y_[ i ];
+            }
+            double mean = n > 0 ? sum / n : Double.NaN;
+            double m2 = 0;
+            double m3 = 0;
+            double m4 = 0;
+            for ( int i = 0; i < n; i++ ) {
+                double d = y_[ i ] - mean;
+                double d2 = d * d;
+                m2 += d2;
+                m3 += d2 * d;
+                m4 += d2 * d2;
+            }
+            mean_ = mean;
+            m2_ = m2;
+            m3_ = m3;
+            m4_ = m4;
+            hasMoments_ = true;
+        }
+    }
+
+    /**
+     * Sorts the first part of an array in place and returns its median.
+     *
+     * @param  data  array
+     * @param  n   number of elements of interest
+     * @return  median of the first <code>n</code> elements
+     */
+    private static double sortedMedian( double[] data, int n ) {
+        if ( n == 0 ) {
+            return Double.NaN;
+        }
+        Arrays.sort( data, 0, n );
+        int m = n / 2;
+        return n % 2 == 1 ? data[ m ] : 0.5 * ( data[ m - 1 ] + data[ m ] );
+    }
+
+    /**
+     * Sorts three parallel arrays in place by the values of the first.
+     * A Shell sort is used, which needs no extra storage and
+     * is quick for arrays that are nearly in order already,
+     * as light curves often are.
+     *
+     * @param  t  sort key array
+     * @param  y  second array
+     * @param  w  third array
+     * @param  n  number of elements to sort
+     */
+    private static void sortByTime( double[] t, double[] y, double[] w,
+                                    int n ) {
+        int gap = 1;
+        while ( gap < n / 3 ) {
+            gap = 3 * gap + 1;
+        }
+        for ( ; gap > 0; gap /= 3 ) {
+            for ( int i = gap; i < n; i++ ) {
+                double ti = t[ i ];
+                double yi = y[ i ];
+                double wi = w[ i ];
+                int j = i;
+                for ( ; j >= gap && t[ j - gap ] > ti; j -= gap ) {
+                    t[ j ] = t[ j - gap ];
+                    y[ j ] = y[ j - gap ];
+                    w[ j ] = w[ j - gap ];
+                }
+                t[ j ] = ti;
+                y[ j ] = yi;
+                w[ j ] = wi;
+            }
+        }
+    }
+
+    /**
+     * Returns the length of a numeric primitive array.
+     *
+     * @param  array  array object
+     * @return  array length, or -1 if it's not a numeric array
+     */
+    private static int getLength( Object array ) {
+        if ( array instanceof double[] ) {
+            return ((double[]) array).length;
+        }
+        else if ( array instanceof float[] ) {
+            return ((float[]) array).length;
+        }
+        else if ( array instanceof long[] ) {
+            return ((long[]) array).length;
+        }
+        else if ( array instanceof int[] ) {
+            return ((int[]) array).length;
+        }
+        else if ( array instanceof short[] ) {
+            return ((short[]) array).length;
+        }
+        else if ( array instanceof byte[] ) {
+            return ((byte[]) array).length;
+        }
+        else {
+            return -1;
+        }
+    }
+
+    /**
+     * Copies the elements of a numeric primitive array into a double array.
+     *
+     * @param  array  source array, one of the types recognised by
+     *                {@link #getLength}
+     * @param  buf   destination array
+     * @param  n   number of elements to copy
+     */
+    private static void toDoubles( Object array, double[] buf, int n ) {
+        if ( array instanceof double[] ) {
+            System.arraycopy( (double[]) array, 0, buf, 0, n );
+        }
+        else if ( array instanceof float[] ) {
+            float[] a = (float[]) array;
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = a[ i ];
+            }
+        }
+        else if ( array instanceof long[] ) {
+            long[] a = (long[]) array;
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = a[ i ];
+            }
+        }
+        else if ( array instanceof int[] ) {
+            int[] a = (int[]) array;
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = a[ i ];
+            }
+        }
+        else if ( array instanceof short[] ) {
+            short[] a = (short[]) array;
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = a[ i ];
+            }
+        }
+        else if ( array instanceof byte[] ) {
+            byte[] a = (byte[]) array;
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = a[ i ];
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a value is finite.
+     *
+     * @param  x  value
+     * @return  true iff x is not NaN or infinite
+     */
+    private static boolean isFinite( double x ) {
+        return ! Double.isNaN( x ) && ! Double.isInfinite( x );
+    }
+}
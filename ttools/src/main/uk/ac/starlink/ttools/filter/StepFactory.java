@@ -35,6 +35,8 @@ public class StepFactory {
         filterFactory_.register( "addpixsample", pkg + "PixSampleFilter" );
         filterFactory_.register( "addresolve", pkg + "ResolverFilter" );
         filterFactory_.register( "addskycoords", pkg + "AddSkyCoordsFilter" );
+        filterFactory_.register( "addtsfeatures",
+                                 pkg + "TimeSeriesFeatureFilter" );
         filterFactory_.register( "assert", pkg + "AssertFilter" );
         filterFactory_.register( "badval", pkg + "BadValueFilter" );
         filterFactory_.register( "cache", pkg + "CacheFilter" );
@@ -0,0 +1,265 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.function.ToDoubleFunction;
+import uk.ac.starlink.table.ColumnInfo;
+
+/**
+ * Defines a scalar feature that can be calculated from a light curve.
+ */
+public class TimeSeriesFeature {
+
+    private final String name_;
+    private final Class<?> clazz_;
+    private final Dim dim_;
+    private final boolean needsErrors_;
+    private final boolean isDefault_;
+    private final String description_;
+    private final ToDoubleFunction<LightCurve> func_;
+
+    /** Number of usable samples. */
+    public static final TimeSeriesFeature NPOINT =
+        new TimeSeriesFeature( "npoint", Integer.class, Dim.NONE, false, true,
+                               "Number of usable samples",
+                               lc -> lc.getCount() );
+
+    /** Time span. */
+    public static final TimeSeriesFeature SPAN =
+        new TimeSeriesFeature( "span", Double.class, Dim.TIME, false, true,
+                               "Time between first and last samples",
+                               LightCurve::getSpan );
+
+    /** Mean. */
+    public static final TimeSeriesFeature MEAN =
+        new TimeSeriesFeature( "mean", Double.class, Dim.VALUE, false, true,
+                               "Mean value",
+                               LightCurve::getMean );
+
+    /** Weighted mean. */
+    public static final TimeSeriesFeature WMEAN =
+        new TimeSeriesFeature( "wmean", Double.class, Dim.VALUE, true, true,
+                               "Inverse-variance weighted mean value",
+                               LightCurve::getWeightedMean );
+
+    /** Standard deviation. */
+    public static final TimeSeriesFeature STDEV =
+        new TimeSeriesFeature( "stdev", Double.class, Dim.VALUE, false, true,
+                               "Sample standard deviation of values",
+                               LightCurve::getStdev );
+
+    /** Median. */
+    public static final TimeSeriesFeature MEDIAN =
+        new TimeSeriesFeature( "median", Double.class, Dim.VALUE, false, true,
+                               "Median value",
+                               LightCurve::getMedian );
+
+    /** Median absolute deviation. */
+    public static final TimeSeriesFeature MAD =
+        new TimeSeriesFeature( "mad", Double.class, Dim.VALUE, false, true,
+                               "Median absolute deviation from the median "
+                             + "(unscaled)",
+                               LightCurve::getMad );
+
+    /** Skewness. */
+    public static final TimeSeriesFeature SKEW =
+        new TimeSeriesFeature( "skew", Double.class, Dim.NONE, false, true,
+                               "Skewness of values",
+                               LightCurve::getSkew );
+
+    /** Kurtosis. */
+    public static final TimeSeriesFeature KURTOSIS =
+        new TimeSeriesFeature( "kurtosis", Double.class, Dim.NONE, false, true,
+                               "Excess kurtosis of values",
+                               LightCurve::getKurtosis );
+
+    /** Amplitude. */
+    public static final TimeSeriesFeature AMPLITUDE =
+        new TimeSeriesFeature( "amplitude", Double.class, Dim.VALUE,
+                               false, true,
+                               "Half the difference between largest "
+                             + "and smallest values",
+                               LightCurve::getAmplitude );
+
+    /** Fraction of values beyond one standard deviation. */
+    public static final TimeSeriesFeature BEYOND1STD =
+        new TimeSeriesFeature( "beyond1std", Double.class, Dim.NONE,
+                               false, true,
+                               "Fraction of values more than one standard "
+                             + "deviation from the mean",
+                               LightCurve::getBeyond1Std );
+
+    /** Von Neumann ratio. */
+    public static final TimeSeriesFeature ETA =
+        new TimeSeriesFeature( "eta", Double.class, Dim.NONE, false, true,
+                               "Von Neumann ratio: mean square successive "
+                             + "difference divided by variance",
+                               LightCurve::getEta );
+
+    /** Reduced chi-squared. */
+    public static final TimeSeriesFeature CHI2R =
+        new TimeSeriesFeature( "chi2r", Double.class, Dim.NONE, true, true,
+                               "Reduced chi-squared with respect to "
+                             + "the weighted mean",
+                               LightCurve::getReducedChi2 );
+
+    /** Stetson K. */
+    public static final TimeSeriesFeature STETSONK =
+        new TimeSeriesFeature( "stetsonk", Double.class, Dim.NONE, true, true,
+                               "Stetson K variability index",
+                               LightCurve::getStetsonK );
+
+    /** Lomb-Scargle best period. */
+    public static final TimeSeriesFeature LSPERIOD =
+        new TimeSeriesFeature( "lsperiod", Double.class, Dim.TIME,
+                               false, false,
+                               "Period of highest peak in generalised "
+                             + "Lomb-Scargle periodogram",
+                               LightCurve::getLsPeriod );
+
+    /** Lomb-Scargle best power. */
+    public static final TimeSeriesFeature LSPOWER =
+        new TimeSeriesFeature( "lspower", Double.class, Dim.NONE, false, false,
+                               "Normalised power of highest peak in "
+                             + "generalised Lomb-Scargle periodogram",
+                               LightCurve::getLsPower );
+
+    private static final TimeSeriesFeature[] FEATURES = {
+        NPOINT, SPAN, MEAN, WMEAN, STDEV, MEDIAN, MAD, SKEW, KURTOSIS,
+        AMPLITUDE, BEYOND1STD, ETA, CHI2R, STETSONK, LSPERIOD, LSPOWER,
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param  name   feature name
+     * @param  clazz  output value class, Integer or Double
+     * @param  dim    dimensions of output value
+     * @param  needsErrors  true iff the feature only makes sense
+     *                      if sample errors are available
+     * @param  isDefault  true iff the feature is calculated if no
+     *                    explicit list is given
+     * @param  description  short description
+     * @param  func   calculates the feature value from a light curve
+     */
+    private TimeSeriesFeature( String name, Class<?> clazz, Dim dim,
+                               boolean needsErrors, boolean isDefault,
+                               String description,
+                               ToDoubleFunction<LightCurve> func ) {
+        name_ = name;
+        clazz_ = clazz;
+        dim_ = dim;
+        needsErrors_ = needsErrors;
+        isDefault_ = isDefault;
+        description_ = description;
+        func_ = func;
+    }
+
+    /**
+     * Returns this feature's name.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Returns a short description of this feature.
+     *
+     * @return  description
+     */
+    public String getDescription() {
+        return description_;
+    }
+
+    /**
+     * Indicates whether this feature requires sample errors.
+     *
+     * @return  true iff errors are required
+     */
+    public boolean needsErrors() {
+        return needsErrors_;
+    }
+
+    /**
+     * Indicates whether this feature is calculated by default.
+     * Features which are expensive to calculate are not.
+     *
+     * @return  true  iff this is a default feature
+     */
+    public boolean isDefault() {
+        return isDefault_;
+    }
+
+    /**
+     * Returns metadata for a column containing this feature.
+     *
+     * @param  colName  column name
+     * @param  timeUnit  unit string for time values, may be null
+     * @param  valueUnit  unit string for sample values, may be null
+     * @return  column metadata
+     */
+    public ColumnInfo createColumnInfo( String colName, String timeUnit,
+                                       String valueUnit ) {
+        ColumnInfo info = new ColumnInfo( colName, clazz_, description_ );
+        if ( dim_ == Dim.TIME ) {
+            info.setUnitString( timeUnit );
+        }
+        else if ( dim_ == Dim.VALUE ) {
+            info.setUnitString( valueUnit );
+        }
+        return info;
+    }
+
+    /**
+     * Calculates the value of this feature for a light curve.
+     *
+     * @param  lc  light curve
+     * @return  feature value, of the class given by this feature's
+     *          column metadata
+     */
+    Object calculate( LightCurve lc ) {
+        if ( clazz_ == Integer.class ) {
+            return Integer.valueOf( (int) func_.applyAsDouble( lc ) );
+        }
+        else {
+            return Double.valueOf( func_.applyAsDouble( lc ) );
+        }
+    }
+
+    /**
+     * Returns all the known features.
+     *
+     * @return  feature list
+     */
+    public static TimeSeriesFeature[] getFeatures() {
+        return FEATURES.clone();
+    }
+
+    /**
+     * Returns the feature with a given name.
+     *
+     * @param  name  feature name, case-insensitive
+     * @return  feature, or null if none is known
+     */
+    public static TimeSeriesFeature getFeature( String name ) {
+        for ( TimeSeriesFeature feature : FEATURES ) {
+            if ( feature.name_.equalsIgnoreCase( name ) ) {
+                return feature;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name_;
+    }
+
+    /**
+     * Enumerates the kinds of quantity a feature may represent,
+     * which determines its units.
+     */
+    private enum Dim {
+        NONE, TIME, VALUE;
+    }
+}
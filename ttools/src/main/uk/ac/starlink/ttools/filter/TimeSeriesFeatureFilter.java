@@ -0,0 +1,319 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowData;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.ttools.jel.ColumnIdentifier;
+
+/**
+ * Filter which adds columns containing summary features calculated
+ * from array-valued light curve columns.
+ *
+ * <p>The calculations for each row work on primitive double arrays
+ * held in a per-thread workspace, and the output table supports
+ * parallel row splitting whenever the input table does,
+ * so that multi-threaded consumers of the output can calculate
+ * features for many light curves concurrently.
+ */
+public class TimeSeriesFeatureFilter extends BasicFilter {
+
+    private static final String DFLT_PREFIX = "ts_";
+
+    public TimeSeriesFeatureFilter() {
+        super( "addtsfeatures",
+               "[-err <col-id>] [-features <list>] "
+             + "[-prefix <prefix>]\n"
+             + "<time-col-id> <value-col-id>" );
+    }
+
+    public String[] getDescriptionLines() {
+        List<String> lines = new ArrayList<>();
+        String[] lines1 = new String[] {
+            "<p>Adds columns giving statistical features of a light curve",
+            "(time series) stored in array-valued columns of each row.",
+            "The <code>&lt;time-col-id&gt;</code> and",
+            "<code>&lt;value-col-id&gt;</code> arguments identify",
+            "numeric array columns giving the sample times and values",
+            "respectively, and the optional <code>-err</code> flag",
+            "identifies a numeric array column giving per-sample errors.",
+            "The arrays in each row must all have the same length.",
+            "Samples with blank times, values or errors,",
+            "or with non-positive errors, are ignored,",
+            "and samples are considered in time order.",
+            "</p>",
+            "<p>The <code>-features</code> flag gives a comma-separated",
+            "list of the features to calculate.",
+            "The options are:",
+            "<ul>",
+        };
+        for ( String line : lines1 ) {
+            lines.add( line );
+        }
+        for ( TimeSeriesFeature feature : TimeSeriesFeature.getFeatures() ) {
+            StringBuffer sbuf = new StringBuffer()
+                .append( "<li><code>" )
+                .append( feature.getName() )
+                .append( "</code>: " )
+                .append( feature.getDescription() );
+            if ( feature.needsErrors() ) {
+                sbuf.append( " (requires <code>-err</code>)" );
+            }
+            if ( ! feature.isDefault() ) {
+                sbuf.append( " (not calculated by default)" );
+            }
+            sbuf.append( "</li>" );
+            lines.add( sbuf.toString() );
+        }
+        String[] lines2 = new String[] {
+            "</ul>",
+            "If no list is given, all the features that can be calculated",
+            "are used, except the Lomb-Scargle ones which are",
+            "relatively expensive.",
+            "The Lomb-Scargle periodogram is the generalised",
+            "(floating-mean) form of Zechmeister &amp; K&#x00fc;rster",
+            "(2009), weighted by the errors if present,",
+            "evaluated on a frequency grid from 1/span to the",
+            "pseudo-Nyquist frequency npoint/(2*span), oversampled by a",
+            "factor of " + LightCurve.LS_OVERSAMPLE + ".",
+            "</p>",
+            "<p>Each new column is named by its feature name preceded by",
+            "the string given by the <code>-prefix</code> flag,",
+            "which defaults to \"<code>" + DFLT_PREFIX + "</code>\".",
+            "</p>",
+            "<p>The calculations are done independently for each row,",
+            "so for large tables the work can be shared between",
+            "multiple threads by output modes or tasks",
+            "that process rows in parallel.",
+            "</p>",
+            explainSyntax( new String[] { "time-col-id", "value-col-id", } ),
+        };
+        for ( String line : lines2 ) {
+            lines.add( line );
+        }
+        return lines.toArray( new String[ 0 ] );
+    }
+
+    public ProcessingStep createStep( Iterator<String> argIt )
+            throws ArgException {
+        String errCol = null;
+        String featList = null;
+        String prefix = DFLT_PREFIX;
+        String timeCol = null;
+        String valueCol = null;
+        while ( argIt.hasNext() && ( timeCol == null || valueCol == null ) ) {
+            String arg = argIt.next();
+            if ( arg.startsWith( "-" ) && arg.length() > 1 ) {
+                if ( arg.equals( "-err" ) && argIt.hasNext() ) {
+                    argIt.remove();
+                    errCol = argIt.next();
+                    argIt.remove();
+                }
+                else if ( arg.equals( "-features" ) && argIt.hasNext() ) {
+                    argIt.remove();
+                    featList = argIt.next();
+                    argIt.remove();
+                }
+                else if ( arg.equals( "-prefix" ) && argIt.hasNext() ) {
+                    argIt.remove();
+                    prefix = argIt.next();
+                    argIt.remove();
+                }
+                else {
+                    throw new ArgException( "Unknown flag " + arg );
+                }
+            }
+            else if ( timeCol == null ) {
+                argIt.remove();
+                timeCol = arg;
+            }
+            else if ( valueCol == null ) {
+                argIt.remove();
+                valueCol = arg;
+            }
+        }
+        if ( timeCol == null || valueCol == null ) {
+            throw new ArgException( "Not enough arguments supplied" );
+        }
+
+        /* Work out which features are required. */
+        boolean hasErrors = errCol != null;
+        List<TimeSeriesFeature> featureList = new ArrayList<>();
+        if ( featList == null ) {
+            for ( TimeSeriesFeature feature :
+                  TimeSeriesFeature.getFeatures() ) {
+                if ( feature.isDefault() &&
+                     ( hasErrors || ! feature.needsErrors() ) ) {
+                    featureList.add( feature );
+                }
+            }
+        }
+        else {
+            for ( String fname : featList.split( "," ) ) {
+                fname = fname.trim();
+                if ( fname.length() > 0 ) {
+                    TimeSeriesFeature feature =
+                        TimeSeriesFeature.getFeature( fname );
+                    if ( feature == null ) {
+                        throw new ArgException( "Unknown feature \"" + fname
+                                              + "\"" );
+                    }
+                    if ( feature.needsErrors() && ! hasErrors ) {
+                        throw new ArgException( "Feature " + feature
+                                              + " requires -err" );
+                    }
+                    featureList.add( feature );
+                }
+            }
+            if ( featureList.isEmpty() ) {
+                throw new ArgException( "No features specified" );
+            }
+        }
+        final TimeSeriesFeature[] features =
+            featureList.toArray( new TimeSeriesFeature[ 0 ] );
+        final String[] inCols = hasErrors
+                              ? new String[] { timeCol, valueCol, errCol }
+                              : new String[] { timeCol, valueCol };
+        final String colPrefix = prefix;
+
+        return new ProcessingStep() {
+            public StarTable wrap( StarTable base ) throws IOException {
+                ColumnIdentifier identifier = new ColumnIdentifier( base );
+                int nin = inCols.length;
+                int[] inColIndices = new int[ nin ];
+                for ( int i = 0; i < nin; i++ ) {
+                    int icol = identifier.getColumnIndex( inCols[ i ] );
+                    ColumnInfo info = base.getColumnInfo( icol );
+                    Class<?> clazz = info.getContentClass();
+                    if ( ! clazz.isArray() ||
+                         ! clazz.getComponentType().isPrimitive() ||
+                         clazz.equals( boolean[].class ) ||
+                         clazz.equals( char[].class ) ) {
+                        throw new IOException( "Column " + info
+                                             + " is not a numeric array" );
+                    }
+                    inColIndices[ i ] = icol;
+                }
+                String timeUnit =
+                    base.getColumnInfo( inColIndices[ 0 ] ).getUnitString();
+                String valueUnit =
+                    base.getColumnInfo( inColIndices[ 1 ] ).getUnitString();
+                int nout = features.length;
+                ColumnInfo[] outInfos = new ColumnInfo[ nout ];
+                for ( int i = 0; i < nout; i++ ) {
+                    outInfos[ i ] = features[ i ]
+                                   .createColumnInfo( colPrefix
+                                                    + features[ i ].getName(),
+                                                      timeUnit, valueUnit );
+                }
+                ColumnSupplement inSup =
+                    new PermutedColumnSupplement( base, inColIndices );
+                ColumnSupplement featSup =
+                    new FeatureColumnSupplement( inSup, outInfos, features );
+                StarTable out = new AddColumnsTable( base, featSup );
+                int ncol = out.getColumnCount();
+                for ( int i = 0; i < nout; i++ ) {
+                    AddColumnFilter.checkDuplicatedName( out, ncol - nout + i );
+                }
+                return out;
+            }
+        };
+    }
+
+    /**
+     * ColumnSupplement that calculates features from light curves.
+     * Each SupplementData has its own LightCurve workspace,
+     * so that separately split row sequences can be processed
+     * concurrently without synchronization.
+     */
+    private static class FeatureColumnSupplement implements ColumnSupplement {
+
+        private final ColumnSupplement inSup_;
+        private final ColumnInfo[] outInfos_;
+        private final TimeSeriesFeature[] features_;
+        private final LightCurve lc_;
+        private long iCurrentRow_;
+        private Object[] currentRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  inSup  supplement with 2 or 3 columns giving
+         *                time, value and optionally error arrays
+         * @param  outInfos  metadata for output columns
+         * @param  features  features corresponding to output columns
+         */
+        FeatureColumnSupplement( ColumnSupplement inSup,
+                                 ColumnInfo[] outInfos,
+                                 TimeSeriesFeature[] features ) {
+            inSup_ = inSup;
+            outInfos_ = outInfos;
+            features_ = features;
+            lc_ = new LightCurve();
+            iCurrentRow_ = -1;
+        }
+
+        public int getColumnCount() {
+            return outInfos_.length;
+        }
+
+        public ColumnInfo getColumnInfo( int icol ) {
+            return outInfos_[ icol ];
+        }
+
+        public synchronized Object[] getRow( long irow ) throws IOException {
+            return calculate( inSup_.getRow( irow ), lc_ );
+        }
+
+        public synchronized Object getCell( long irow, int icol )
+                throws IOException {
+            if ( irow != iCurrentRow_ ) {
+                currentRow_ = getRow( irow );
+                iCurrentRow_ = irow;
+            }
+            return currentRow_[ icol ];
+        }
+
+        public SupplementData createSupplementData( RowData rdata )
+                throws IOException {
+            final SupplementData inData = inSup_.createSupplementData( rdata );
+            final LightCurve lc = new LightCurve();
+            return new SupplementData() {
+                private long iSeq_ = -1;
+                private Object[] row_;
+                public Object[] getRow( long irow ) throws IOException {
+                    if ( irow != iSeq_ ) {
+                        row_ = calculate( inData.getRow( irow ), lc );
+                        iSeq_ = irow;
+                    }
+                    return row_;
+                }
+                public Object getCell( long irow, int icol )
+                        throws IOException {
+                    return getRow( irow )[ icol ];
+                }
+            };
+        }
+
+        /**
+         * Calculates the output row for a given input row.
+         *
+         * @param  inRow  time, value and optional error arrays
+         * @param  lc   workspace
+         * @return  new array of feature values
+         */
+        private Object[] calculate( Object[] inRow, LightCurve lc ) {
+            lc.setData( inRow[ 0 ], inRow[ 1 ],
+                        inRow.length > 2 ? inRow[ 2 ] : null );
+            int nf = features_.length;
+            Object[] outRow = new Object[ nf ];
+            for ( int i = 0; i < nf; i++ ) {
+                outRow[ i ] = features_[ i ].calculate( lc );
+            }
+            return outRow;
+        }
+    }
+}
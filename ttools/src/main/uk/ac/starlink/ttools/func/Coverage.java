@@ -359,5 +359,8 @@ public class Coverage {
         catch ( IOException e ) {
             return null;
         }
+        finally {
+            mb.close();
+        }
     }
 }
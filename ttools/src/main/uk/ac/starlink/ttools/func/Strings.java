@@ -11,6 +11,7 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.ttools.convert.SkyConversion;
 import uk.ac.starlink.ttools.convert.SkySystem;
 
 /**
@@ -40,6 +41,11 @@ public class Strings {
         "0123456789" +
         "-_.~";
 
+    /** Converts galactic to ICRS positions. */
+    private static final SkyConversion GAL_TO_ICRS =
+        SkyConversion.createConversion( SkySystem.GALACTIC, SkySystem.ICRS,
+                                        2000.0 );
+
     /**
      * Private constructor prevents instantiation.
      */
@@ -551,14 +557,12 @@ public class Strings {
                     assert false : "Regex should preclude this";
                     return null;
                 }
-                double[] fk5rad =
-                    SkySystem.GALACTIC.toFK5( Math.toRadians( l ),
-                                              Math.toRadians( b ),
-                                              2000.0 );
-                double[] icrsRad =
-                    SkySystem.ICRS.fromFK5( fk5rad[ 0 ], fk5rad[ 1 ], 2000.0 );
-                return new double[] { Math.toDegrees( icrsRad[ 0 ] ),
-                                      Math.toDegrees( icrsRad[ 1 ] ) };
+                double[] icrs = new double[ 2 ];
+                GAL_TO_ICRS.convert( Math.toRadians( l ), Math.toRadians( b ),
+                                     icrs );
+                icrs[ 0 ] = Math.toDegrees( icrs[ 0 ] );
+                icrs[ 1 ] = Math.toDegrees( icrs[ 1 ] );
+                return icrs;
             }
             else if ( "B".equals( flag ) || "J".equals( flag ) ||
                       flag.length() == 0 ) {
@@ -0,0 +1,327 @@
+package uk.ac.starlink.ttools.jel;
+
+import gnu.jel.CompilationException;
+import gnu.jel.CompiledExpression;
+import gnu.jel.DVMap;
+import gnu.jel.Evaluator;
+import gnu.jel.ImageLoader;
+import gnu.jel.Library;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.ttools.util.LruCache;
+
+/**
+ * Memory-limited cache of compiled JEL expressions.
+ *
+ * <p>JEL compilation generates and loads a new class for each expression,
+ * which is relatively expensive.  In a long-running context such as
+ * the STILTS server the same expressions are often compiled repeatedly
+ * against tables with the same columns; this cache allows the generated
+ * class to be reused in that case.
+ *
+ * <p>Entries are keyed by the library's exported classes, the required
+ * result type, the column names and types of the context table,
+ * and the expression text.
+ * Since the generated code also depends on how the row reader
+ * resolves names (for instance column indices and constant identifiers),
+ * the name resolution calls made during the original compilation are
+ * recorded, and a cached class is only reused if replaying those calls
+ * against the new row reader gives identical results.
+ * Replaying also ensures that the new reader records the same
+ * referenced columns and constants as a fresh compilation would.
+ *
+ * <p>Only libraries created by {@link JELUtils#createLibrary} while
+ * this cache is installed, and whose resolver is a {@link JELRowReader},
+ * take part in caching; other compilations are done directly.
+ *
+ * <p>This class is thread-safe.
+ */
+public class JELCompilationCache {
+
+    private final LruCache<String,Entry> lru_;
+    private final Map<Library,String> libSigs_;
+    private final AtomicLong nReject_;
+
+    /**
+     * Constructor.
+     *
+     * @param  maxBytes  approximate maximum memory in bytes
+     *                   to be occupied by cached compiled expressions
+     */
+    public JELCompilationCache( long maxBytes ) {
+        lru_ = new LruCache<String,Entry>( maxBytes, e -> e.nbyte_ );
+        libSigs_ = Collections
+                  .synchronizedMap( new WeakHashMap<Library,String>() );
+        nReject_ = new AtomicLong();
+    }
+
+    /**
+     * Registers a library as eligible for caching.
+     * This is called by {@link JELUtils#createLibrary}.
+     *
+     * @param  lib  library
+     * @param  staticLib  classes whose static methods are exported by lib
+     * @param  dynamicLib  classes whose instance methods are exported by lib
+     */
+    void registerLibrary( Library lib, Class<?>[] staticLib,
+                          Class<?>[] dynamicLib ) {
+        StringBuilder sbuf = new StringBuilder();
+        for ( Class<?> clazz : staticLib ) {
+            sbuf.append( clazz.getName() ).append( ' ' );
+        }
+        sbuf.append( '|' );
+        for ( Class<?> clazz : dynamicLib ) {
+            sbuf.append( ' ' ).append( clazz.getName() );
+        }
+        libSigs_.put( lib, sbuf.toString() );
+    }
+
+    /**
+     * Compiles an expression, using a cached class if possible.
+     *
+     * @param  lib   JEL library
+     * @param  table  context table, or null
+     * @param  expr  expression string, already tweaked for the table
+     * @param  clazz  required result type, or null
+     * @return  compiled expression
+     */
+    public CompiledExpression compile( Library lib, StarTable table,
+                                       String expr, Class<?> clazz )
+            throws CompilationException {
+        String libSig = libSigs_.get( lib );
+        DVMap resolver = lib.resolver;
+        if ( libSig == null || ! ( resolver instanceof JELRowReader ) ) {
+            return compileDirect( lib, expr, clazz );
+        }
+        String key = createKey( libSig, table, expr, clazz );
+        Entry entry = lru_.get( key );
+        if ( entry != null ) {
+            if ( entry.replay( resolver ) ) {
+                return entry.instantiate();
+            }
+            else {
+                nReject_.incrementAndGet();
+            }
+        }
+        RecordingResolver recorder = new RecordingResolver( resolver );
+        byte[] image;
+        synchronized ( lib ) {
+            lib.resolver = recorder;
+            try {
+                image = clazz == null
+                      ? Evaluator.compileBits( expr, lib )
+                      : Evaluator.compileBits( expr, lib, clazz );
+            }
+            finally {
+                lib.resolver = resolver;
+            }
+        }
+        Class<?> exprClazz = ImageLoader.load( image );
+        entry = new Entry( exprClazz, recorder.lookups_,
+                           image.length + 2 * key.length() );
+        lru_.put( key, entry );
+        return entry.instantiate();
+    }
+
+    /**
+     * Returns the number of compilations satisfied from this cache.
+     *
+     * @return  hit count
+     */
+    public long getHitCount() {
+        return lru_.getHitCount() - nReject_.get();
+    }
+
+    /**
+     * Returns the number of cacheable compilations not satisfied from
+     * this cache.  This includes cases in which an entry was present,
+     * but name resolution in the new context did not match.
+     *
+     * @return  miss count
+     */
+    public long getMissCount() {
+        return lru_.getMissCount() + nReject_.get();
+    }
+
+    /**
+     * Returns the underlying LRU cache, which can be queried for
+     * size and per-entry statistics.
+     *
+     * @return  LRU cache
+     */
+    public LruCache<String,?> getLruCache() {
+        return lru_;
+    }
+
+    @Override
+    public String toString() {
+        return lru_.size() + " entries, "
+             + lru_.getByteCount() + "/" + lru_.getMaxBytes() + " bytes, "
+             + getHitCount() + " hits, " + getMissCount() + " misses";
+    }
+
+    /**
+     * Compiles an expression without reference to the cache.
+     *
+     * @param  lib   JEL library
+     * @param  expr  expression string
+     * @param  clazz  required result type, or null
+     * @return  compiled expression
+     */
+    static CompiledExpression compileDirect( Library lib, String expr,
+                                             Class<?> clazz )
+            throws CompilationException {
+        return clazz == null ? Evaluator.compile( expr, lib )
+                             : Evaluator.compile( expr, lib, clazz );
+    }
+
+    /**
+     * Returns the cache key for a compilation.
+     *
+     * @param  libSig  library signature
+     * @param  table  context table, or null
+     * @param  expr  expression string
+     * @param  clazz  required result type, or null
+     * @return  key
+     */
+    private static String createKey( String libSig, StarTable table,
+                                     String expr, Class<?> clazz ) {
+        StringBuilder sbuf = new StringBuilder()
+            .append( libSig )
+            .append( '\n' )
+            .append( clazz == null ? "" : clazz.getName() )
+            .append( '\n' );
+        if ( table != null ) {
+            int ncol = table.getColumnCount();
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                ColumnInfo info = table.getColumnInfo( ic );
+                sbuf.append( info.getName() )
+                    .append( ':' )
+                    .append( info.getContentClass().getName() )
+                    .append( '\t' );
+            }
+        }
+        return sbuf.append( '\n' )
+                   .append( expr )
+                   .toString();
+    }
+
+    /**
+     * Records a single name resolution call.
+     */
+    private static class Lookup {
+        final boolean isTranslate_;
+        final String name_;
+        final Object result_;
+
+        /**
+         * Constructor.
+         *
+         * @param  isTranslate  true for translate, false for getTypeName
+         * @param  name   name to be resolved
+         * @param  result  result of resolution
+         */
+        Lookup( boolean isTranslate, String name, Object result ) {
+            isTranslate_ = isTranslate;
+            name_ = name;
+            result_ = result;
+        }
+    }
+
+    /**
+     * DVMap that delegates to a base resolver, recording the calls made.
+     */
+    private static class RecordingResolver extends DVMap {
+        final DVMap base_;
+        final List<Lookup> lookups_;
+
+        /**
+         * Constructor.
+         *
+         * @param  base  base resolver
+         */
+        RecordingResolver( DVMap base ) {
+            base_ = base;
+            lookups_ = new ArrayList<Lookup>();
+        }
+
+        public String getTypeName( String name ) {
+            String result = base_.getTypeName( name );
+            lookups_.add( new Lookup( false, name, result ) );
+            return result;
+        }
+
+        @Override
+        public Object translate( String name ) {
+            Object result = base_.translate( name );
+            lookups_.add( new Lookup( true, name, result ) );
+            return result;
+        }
+    }
+
+    /**
+     * Cache entry.
+     */
+    private static class Entry {
+        final Class<?> exprClazz_;
+        final Lookup[] lookups_;
+        final long nbyte_;
+
+        /**
+         * Constructor.
+         *
+         * @param  exprClazz  class generated by JEL for the expression
+         * @param  lookups   name resolution calls made during compilation
+         * @param  imageSize  size of class image in bytes
+         */
+        Entry( Class<?> exprClazz, List<Lookup> lookups, long imageSize ) {
+            exprClazz_ = exprClazz;
+            lookups_ = lookups.toArray( new Lookup[ 0 ] );
+            nbyte_ = 1024 + imageSize + 64 * lookups_.length;
+        }
+
+        /**
+         * Replays the recorded name resolution calls against a resolver,
+         * and reports whether the results are all the same.
+         *
+         * @param  resolver  resolver for new compilation context
+         * @return   true iff this entry's class is valid for the resolver
+         */
+        boolean replay( DVMap resolver ) {
+            for ( Lookup lookup : lookups_ ) {
+                String name = lookup.name_;
+                Object result = lookup.isTranslate_
+                              ? resolver.translate( name )
+                              : resolver.getTypeName( name );
+                if ( ! Objects.equals( result, lookup.result_ ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns a new compiled expression instance.
+         *
+         * @return  compiled expression
+         */
+        CompiledExpression instantiate() {
+            try {
+                return (CompiledExpression)
+                       exprClazz_.getDeclaredConstructor().newInstance();
+            }
+            catch ( ReflectiveOperationException e ) {
+                throw new IllegalStateException( "Can't instantiate "
+                                               + exprClazz_, e );
+            }
+        }
+    }
+}
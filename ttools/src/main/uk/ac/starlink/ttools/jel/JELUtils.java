@@ -58,6 +58,7 @@ import uk.ac.starlink.util.Loader;
 public class JELUtils {
 
     private static List<Class<?>> staticClasses_;
+    private static volatile JELCompilationCache compilationCache_;
     private static Logger logger_ = Logger.getLogger( "uk.ac.starlink.ttools" );
     private static final HashMap<String,Class<?>> CAST_MAP = createCastMap();
 
@@ -104,6 +105,10 @@ public class JELUtils {
         Library lib = new Library( staticLib, dynamicLib, dotClasses, resolver,
                                    CAST_MAP );
         markStateDependentFunctions( lib, staticLib );
+        JELCompilationCache cache = compilationCache_;
+        if ( cache != null ) {
+            cache.registerLibrary( lib, staticLib, dynamicLib );
+        }
         return lib;
     }
 
@@ -271,8 +276,8 @@ public class JELUtils {
                                               String expr, Class<?> clazz )
             throws CompilationException {
         try {
-            return Evaluator.compile( tweakExpression( table, expr ),
-                                                       lib, clazz );
+            return compileExpression( lib, table,
+                                      tweakExpression( table, expr ), clazz );
         }
         catch ( CompilationException e ) {
             try {
@@ -302,7 +307,51 @@ public class JELUtils {
     public static CompiledExpression compile( Library lib, StarTable table,
                                               String expr )
             throws CompilationException {
-        return Evaluator.compile( tweakExpression( table, expr ), lib );
+        return compileExpression( lib, table, tweakExpression( table, expr ),
+                                  null );
+    }
+
+    /**
+     * Installs a cache to be used for compiled expressions.
+     * Subsequent calls to the <code>compile</code> methods of this class
+     * may reuse classes generated by earlier compilations.
+     * This is intended for long-running contexts such as server mode,
+     * where the same expressions are compiled repeatedly.
+     *
+     * @param  cache  compilation cache, or null for no caching
+     */
+    public static void setCompilationCache( JELCompilationCache cache ) {
+        compilationCache_ = cache;
+    }
+
+    /**
+     * Returns the currently installed compilation cache.
+     *
+     * @return  compilation cache, or null
+     */
+    public static JELCompilationCache getCompilationCache() {
+        return compilationCache_;
+    }
+
+    /**
+     * Compiles an already tweaked expression,
+     * using the compilation cache if one is installed.
+     *
+     * @param  lib   JEL library
+     * @param  table   context table
+     * @param  expr  tweaked expression string
+     * @param  clazz  required class of resulting expression, or null
+     * @return  compiled expression
+     */
+    private static CompiledExpression compileExpression( Library lib,
+                                                         StarTable table,
+                                                         String expr,
+                                                         Class<?> clazz )
+            throws CompilationException {
+        JELCompilationCache cache = compilationCache_;
+        return cache == null
+             ? JELCompilationCache.compileDirect( lib, expr, clazz )
+             : cache.compile( lib, table, expr, clazz );
     }
 
     /**
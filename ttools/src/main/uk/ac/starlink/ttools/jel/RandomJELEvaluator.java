@@ -10,6 +10,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowData;
 import uk.ac.starlink.table.StarTable;
 
 /**
@@ -242,6 +243,11 @@ public abstract class RandomJELEvaluator implements Closeable {
             return rowAccess_.getCell( icol );
         }
 
+        @Override
+        protected RowData getRowData() {
+            return rowAccess_;
+        }
+
         public void close() throws IOException {
             rowAccess_.close();
         }
@@ -3,6 +3,7 @@ package uk.ac.starlink.ttools.jel;
 import gnu.jel.CompiledExpression;
 import java.io.IOException;
 import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowData;
 import uk.ac.starlink.table.StarTable;
 
 /**
@@ -84,6 +85,10 @@ public abstract class RandomJELRowReader extends StarTableJELRowReader {
             public Object getCell( int icol ) throws IOException {
                 return racc.getCell( icol );
             }
+            @Override
+            protected RowData getRowData() {
+                return racc;
+            }
             public Object evaluateAtRow( CompiledExpression compEx, long lrow )
                     throws Throwable {
                 if ( lrow != lrow_ ) {
@@ -2,6 +2,7 @@ package uk.ac.starlink.ttools.jel;
 
 import java.io.IOException;
 import java.util.function.LongSupplier;
+import uk.ac.starlink.table.RowData;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
@@ -67,6 +68,31 @@ public class SequentialJELRowReader extends StarTableJELRowReader
         return rseq_.getRow();
     } 
 
+    @Override
+    public double getDouble( int icol ) throws IOException {
+        return rseq_.getDouble( icol );
+    }
+
+    @Override
+    public long getLong( int icol ) throws IOException {
+        return rseq_.getLong( icol );
+    }
+
+    @Override
+    public int getInt( int icol ) throws IOException {
+        return rseq_.getInt( icol );
+    }
+
+    @Override
+    public boolean isNull( int icol ) throws IOException {
+        return rseq_.isNull( icol );
+    }
+
+    @Override
+    protected RowData getRowData() {
+        return rseq_;
+    }
+
     public boolean next() throws IOException {
         lrow_++;
         return rseq_.next();
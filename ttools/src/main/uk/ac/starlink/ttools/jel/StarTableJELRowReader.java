@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowData;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 
@@ -139,6 +140,26 @@ public abstract class StarTableJELRowReader extends JELRowReader {
      */
     protected abstract Object getCell( int icol ) throws IOException;
 
+    /**
+     * Returns an object that supplies cell values for the current row,
+     * if available.
+     * If present, this is used to read numeric columns by way of the
+     * primitive accessor methods of {@link uk.ac.starlink.table.RowData},
+     * which for many tables avoids creating a wrapper object
+     * for each cell value read.
+     * If null, numeric values are read using {@link #getCell}.
+     *
+     * <p>The default implementation returns null.
+     * Subclasses that read data from a RowData (for instance
+     * a RowSequence or RowAccess) should override it to return that
+     * object instead.
+     *
+     * @return   row data for current row, or null
+     */
+    protected RowData getRowData() {
+        return null;
+    }
+
     /**
      * Returns the index of the row on which evaluations are currently
      * taking place.
@@ -553,24 +574,107 @@ public abstract class StarTableJELRowReader extends JELRowReader {
         return getCharValue( (Character) getCellValue( icol ) );
     }
     protected short getShortColumnValue( int icol ) {
-        return getShortValue( (Short) getCellValue( icol ) );
+        return (short) getIntCellValue( icol );
     }
     protected int getIntColumnValue( int icol ) {
-        return getIntValue( (Integer) getCellValue( icol ) );
+        return getIntCellValue( icol );
     }
     protected long getLongColumnValue( int icol ) {
-        return getLongValue( (Long) getCellValue( icol ) );
+        RowData rdata = getRowData();
+        if ( rdata == null ) {
+            Object value = getCellValue( icol );
+            if ( value instanceof Number ) {
+                return ((Number) value).longValue();
+            }
+            else {
+                foundNull();
+                return 0L;
+            }
+        }
+        try {
+
+            /* Only test for null if the value is zero,
+             * since that is what the accessor returns for null cells,
+             * and the test may cost another cell read. */
+            long value = rdata.getLong( icol );
+            if ( value == 0L && rdata.isNull( icol ) ) {
+                foundNull();
+            }
+            return value;
+        }
+        catch ( IOException e ) {
+            logger_.warning( "Expression evaluation error: " + e );
+            foundNull();
+            return 0L;
+        }
     }
     protected float getFloatColumnValue( int icol ) {
-        return getFloatValue( (Float) getCellValue( icol ) );
+        return (float) getDoubleCellValue( icol );
     }
     protected double getDoubleColumnValue( int icol ) {
-        return getDoubleValue( (Double) getCellValue( icol ) );
+        return getDoubleCellValue( icol );
     }
     protected Object getObjectColumnValue( int icol ) {
         return getCellValue( icol );
     }
 
+    /**
+     * Returns the value of a cell in the current row as an integer
+     * without object creation or throwing checked errors.
+     * {@link #foundNull} is called as required.
+     *
+     * @param   icol  column index
+     * @return  cell value
+     */
+    private int getIntCellValue( int icol ) {
+        RowData rdata = getRowData();
+        if ( rdata == null ) {
+            Object value = getCellValue( icol );
+            if ( value instanceof Number ) {
+                return ((Number) value).intValue();
+            }
+            else {
+                foundNull();
+                return 0;
+            }
+        }
+        try {
+            int value = rdata.getInt( icol );
+            if ( value == 0 && rdata.isNull( icol ) ) {
+                foundNull();
+            }
+            return value;
+        }
+        catch ( IOException e ) {
+            logger_.warning( "Expression evaluation error: " + e );
+            foundNull();
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the value of a cell in the current row as a double
+     * without object creation or throwing checked errors.
+     *
+     * @param   icol  column index
+     * @return  cell value, NaN for null
+     */
+    private double getDoubleCellValue( int icol ) {
+        RowData rdata = getRowData();
+        if ( rdata == null ) {
+            Object value = getCellValue( icol );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+        try {
+            return rdata.getDouble( icol );
+        }
+        catch ( IOException e ) {
+            logger_.warning( "Expression evaluation error: " + e );
+            return Double.NaN;
+        }
+    }
+
     /**
      * Returns the value of a cell in the current row without throwing checked
      * errors.
@@ -5,7 +5,7 @@ import java.util.Collection;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
-import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.join.LinkSet;
 import uk.ac.starlink.table.join.Match1Type;
@@ -77,7 +77,8 @@ public class Match1Mapping implements SingleTableMapping {
 
         /* Now randomise the table, currently required for the rest of the
          * matching, and create the tuple-columned table for real. */
-        inTable = Tables.randomTable( inTable );
+        inTable = StoragePolicy.getDefaultPolicy()
+                                .randomTable( inTable, runner_ );
         StarTable subTable =
             JELTable.createJELTable( inTable, tupleInfos, tupleExprs_ );
 
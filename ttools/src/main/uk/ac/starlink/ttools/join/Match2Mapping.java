@@ -6,6 +6,7 @@ import java.util.Collection;
 import uk.ac.starlink.table.JoinFixAction;
 import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.join.JoinType;
@@ -109,8 +110,9 @@ public class Match2Mapping implements TableMapping {
 
         /* Now randomise the tables (currently required for the rest
          * of the matching) and create the subtables for real. */
-        inTable1 = Tables.randomTable( inTable1 );
-        inTable2 = Tables.randomTable( inTable2 );
+        StoragePolicy policy = StoragePolicy.getDefaultPolicy();
+        inTable1 = policy.randomTable( inTable1, runner_ );
+        inTable2 = policy.randomTable( inTable2, runner_ );
         StarTable subTable1 = makeSubTable( inTable1, exprTuple1_ );
         StarTable subTable2 = makeSubTable( inTable2, exprTuple2_ );
 
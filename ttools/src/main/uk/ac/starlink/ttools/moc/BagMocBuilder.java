@@ -100,6 +100,67 @@ public class BagMocBuilder implements MocBuilder {
         };
     }
 
+    /**
+     * If the other builder is a BagMocBuilder with the same maximum order,
+     * the bags at each order are combined by a sorted union of their
+     * contents, which avoids normalising the other builder first.
+     * Otherwise the default tile-by-tile behaviour is used.
+     */
+    @Override
+    public void addMoc( MocBuilder other ) {
+        if ( other instanceof BagMocBuilder &&
+             ((BagMocBuilder) other).maxOrder_ == maxOrder_ ) {
+            IndexBag[] obags = ((BagMocBuilder) other).bags_;
+            for ( int io = 0; io <= maxOrder_; io++ ) {
+                IndexBag bag0 = bags_[ io ];
+                IndexBag obag = obags[ io ];
+                if ( obag != null && obag.getCount() > 0 ) {
+                    if ( bag0 == null || bag0.getCount() == 0 ) {
+                        if ( bag0 != null ) {
+                            bag0.close();
+                        }
+                        bags_[ io ] = obag;
+                    }
+                    else {
+                        IndexBag bag1 = createOrderBag( io );
+                        for ( PrimitiveIterator.OfLong it =
+                                  new UnionLongIterator(
+                                      new PrimitiveIterator.OfLong[] {
+                                          bag0.sortedLongIterator(),
+                                          obag.sortedLongIterator(),
+                                      } );
+                              it.hasNext(); ) {
+                            bag1.addIndex( it.nextLong() );
+                        }
+                        bag0.close();
+                        obag.close();
+                        bags_[ io ] = bag1;
+                    }
+                }
+                else if ( obag != null ) {
+                    obag.close();
+                }
+                obags[ io ] = null;
+            }
+        }
+        else {
+            MocBuilder.super.addMoc( other );
+        }
+    }
+
+    /**
+     * Closes all the per-order bags.
+     */
+    @Override
+    public void close() {
+        for ( int io = 0; io <= maxOrder_; io++ ) {
+            if ( bags_[ io ] != null ) {
+                bags_[ io ].close();
+                bags_[ io ] = null;
+            }
+        }
+    }
+
     public long[] getOrderCounts() {
         LongList countList = new LongList();
         for ( int io = maxOrder_; io >= 0; io-- ) {
@@ -135,6 +196,18 @@ public class BagMocBuilder implements MocBuilder {
             IndexBag bag0 = bags_[ io ];
             if ( bag0 != null ) {
                 IndexBag bag1 = createOrderBag( io );
+
+                /* Pixels promoted to the next order down are collected
+                 * separately and merged in after the pass, so that
+                 * additions to that order are not interleaved with
+                 * coverage queries on it.  That would be expensive
+                 * for bag implementations that need to re-sort on
+                 * query following an out-of-order addition.
+                 * Promoted pixels are distinct from each other, so
+                 * they would never affect those queries anyway.
+                 * They arrive in ascending order, which a SortedRunBag
+                 * can accumulate cheaply and in bounded memory. */
+                IndexBag promoted = io > 0 ? new SortedRunBag() : null;
                 long iquad = -1;
                 int quadCount = 0;
 
@@ -156,7 +229,7 @@ public class BagMocBuilder implements MocBuilder {
                             /* Otherwise, if all 4 members are present,
                              * add the pixel to the next order down. */
                             if ( quadCount == 4 && io > 0 ) {
-                                getBag( io - 1 ).addIndex( iquad );
+                                promoted.addIndex( iquad );
                             }
 
                             /* If fewer than 4 members are present, retain
@@ -177,7 +250,7 @@ public class BagMocBuilder implements MocBuilder {
                  * encountered. */
                 if ( quadCount > 0 && ! isCovered( io - 1, iquad ) ) {
                     if ( quadCount == 4 && io > 0 ) {
-                        getBag( io - 1 ).addIndex( iquad );
+                        promoted.addIndex( iquad );
                     }
                     else {
                         for ( int i = 0; i < quadCount; i++ ) {
@@ -185,7 +258,23 @@ public class BagMocBuilder implements MocBuilder {
                         }
                     }
                 }
-                bags1[ io ] = bag1.getCount() == 0 ? null : bag1;
+                bag0.close();
+                if ( promoted != null ) {
+                    if ( promoted.getCount() > 0 ) {
+                        IndexBag bagBelow = getBag( io - 1 );
+                        for ( PrimitiveIterator.OfLong pIt =
+                                  promoted.sortedLongIterator();
+                              pIt.hasNext(); ) {
+                            bagBelow.addIndex( pIt.nextLong() );
+                        }
+                    }
+                    promoted.close();
+                }
+                if ( bag1.getCount() == 0 ) {
+                    bag1.close();
+                    bag1 = null;
+                }
+                bags1[ io ] = bag1;
             }
         }
         System.arraycopy( bags1, 0, bags_, 0, maxOrder_ + 1 );
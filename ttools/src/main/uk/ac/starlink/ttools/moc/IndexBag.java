@@ -48,4 +48,13 @@ public interface IndexBag {
      * @return  count of added integers
      */
     long getCount();
+
+    /**
+     * Releases any resources, such as temporary files, held by this bag.
+     * The bag should not be used following this call.
+     *
+     * <p>The default implementation does nothing.
+     */
+    default void close() {
+    }
 }
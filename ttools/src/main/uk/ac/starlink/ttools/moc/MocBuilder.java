@@ -1,6 +1,7 @@
 package uk.ac.starlink.ttools.moc;
 
 import java.util.PrimitiveIterator;
+import uk.ac.starlink.ttools.func.Coverage;
 
 /**
  * Defines an object capable of storing HEALPix tiles and producing
@@ -54,4 +55,36 @@ public interface MocBuilder {
      * <p>Should only be called after {@link #endTiles} has been called.
      */
     PrimitiveIterator.OfLong createOrderedUniqIterator();
+
+    /**
+     * Adds all the tiles from another MOC builder to this one.
+     * This can be used to combine builders that have been filled
+     * in parallel.  The other builder should not be used following
+     * this call, and any resources it holds are released.
+     *
+     * <p>The default implementation adds the other builder's
+     * normalised tiles one at a time and then closes it;
+     * implementations may be able to do something more efficient.
+     *
+     * @param  other  builder whose content is to be added to this one
+     */
+    default void addMoc( MocBuilder other ) {
+        other.endTiles();
+        for ( PrimitiveIterator.OfLong it = other.createOrderedUniqIterator();
+              it.hasNext(); ) {
+            long uniq = it.nextLong();
+            addTile( Coverage.uniqToOrder( uniq ),
+                     Coverage.uniqToIndex( uniq ) );
+        }
+        other.close();
+    }
+
+    /**
+     * Releases any resources, such as temporary files, held by this
+     * builder.  The builder should not be used following this call.
+     *
+     * <p>The default implementation does nothing.
+     */
+    default void close() {
+    }
 }
@@ -68,6 +68,18 @@ public abstract class MocImpl {
         }
     };
 
+    /** Instance based on IndexBags, BitSets and disk-backed sorted runs. */
+    public static final MocImpl DISK =
+            new MocImpl( "disk", "Uses BitSets and sorted runs on disk",
+                         false ) {
+        public MocBuilder createMocBuilder( int mocOrder ) {
+            return new BagMocBuilder( mocOrder,
+                                      s -> s <= BITSET_MAXSIZE
+                                                ? new BitSetBag( (int) s )
+                                                : new SortedRunBag() );
+        }
+    };
+
     /** Instance that picks an implementation based on order. */
     public static final MocImpl AUTO =
             new MocImpl( "auto", "Chooses a suitable implementation", true ) {
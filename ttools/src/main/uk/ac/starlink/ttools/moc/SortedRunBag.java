@@ -0,0 +1,435 @@
+package uk.ac.starlink.ttools.moc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.logging.Logger;
+
+/**
+ * IndexBag implementation that accumulates values in a bounded
+ * in-memory buffer and spills them to sorted runs in temporary
+ * disk files when the buffer fills up.
+ * It can hold any long value, and its memory footprint is bounded
+ * regardless of how many values are stored,
+ * so it is suitable for very high MOC orders where the number of
+ * tiles may be too large to keep in memory.
+ *
+ * <p>Adding values in ascending order, as happens during MOC
+ * consolidation and merging, is cheap; the buffer does not need
+ * to be re-sorted in that case.
+ * The iterator returned by {@link #sortedLongIterator} should be
+ * used up before the bag is further modified;
+ * if it is abandoned, any file it holds open is closed by {@link #close}.
+ *
+ * <p>Runs are merged in tiers: when a given number of runs of
+ * similar size have accumulated, they are merged into a single larger
+ * run, so that each value is rewritten only a logarithmic number
+ * of times.
+ *
+ * <p>Temporary files are deleted when they are no longer needed,
+ * when {@link #close} is called, or on JVM exit.
+ */
+public class SortedRunBag implements IndexBag {
+
+    private final int bufsize_;
+    private final int maxRuns_;
+    private final List<Run> runs_;
+    private long[] buf_;
+    private int nbuf_;
+    private boolean isSorted_;
+
+    /** Default maximum buffer size in values (32 Mb). */
+    public static final int DFLT_BUFSIZE = 4 * 1024 * 1024;
+
+    /** Default maximum number of runs merged at once. */
+    public static final int DFLT_MAXRUNS = 32;
+
+    private static final int INIT_BUFSIZE = 1024;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.moc" );
+
+    /**
+     * Constructs a bag with default buffer size and run count.
+     */
+    public SortedRunBag() {
+        this( DFLT_BUFSIZE, DFLT_MAXRUNS );
+    }
+
+    /**
+     * Constructs a bag with supplied buffer size and run count.
+     *
+     * @param  bufsize  maximum number of values held in memory
+     * @param  maxRuns  maximum number of disk runs merged at once;
+     *                  runs in the same tier are merged when this
+     *                  many have accumulated
+     */
+    public SortedRunBag( int bufsize, int maxRuns ) {
+        bufsize_ = Math.max( 2, bufsize );
+        maxRuns_ = Math.max( 2, maxRuns );
+        runs_ = new ArrayList<Run>();
+        buf_ = new long[ Math.min( INIT_BUFSIZE, bufsize_ ) ];
+        isSorted_ = true;
+    }
+
+    public void addIndex( long index ) {
+        if ( isSorted_ && nbuf_ > 0 && buf_[ nbuf_ - 1 ] == index ) {
+            return;
+        }
+        if ( nbuf_ == buf_.length ) {
+            sortBuffer();
+            if ( nbuf_ > buf_.length / 2 ) {
+                if ( buf_.length < bufsize_ ) {
+                    buf_ = Arrays.copyOf( buf_, (int)
+                                          Math.min( bufsize_,
+                                                    2L * buf_.length ) );
+                }
+                else {
+                    spill();
+                }
+            }
+        }
+        buf_[ nbuf_++ ] = index;
+        if ( isSorted_ && nbuf_ > 1 && buf_[ nbuf_ - 2 ] > index ) {
+            isSorted_ = false;
+        }
+    }
+
+    public boolean hasIndex( long index ) {
+        sortBuffer();
+        if ( Arrays.binarySearch( buf_, 0, nbuf_, index ) >= 0 ) {
+            return true;
+        }
+        try {
+            for ( Run run : runs_ ) {
+                if ( run.contains( index ) ) {
+                    return true;
+                }
+            }
+        }
+        catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        return false;
+    }
+
+    public long getCount() {
+        if ( runs_.isEmpty() ) {
+            sortBuffer();
+            return nbuf_;
+        }
+        else {
+            return getSingleRun().count_;
+        }
+    }
+
+    public PrimitiveIterator.OfLong sortedLongIterator() {
+        if ( runs_.isEmpty() ) {
+            sortBuffer();
+            return Arrays.stream( buf_, 0, nbuf_ ).iterator();
+        }
+        else {
+            try {
+                return getSingleRun().createIterator();
+            }
+            catch ( IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of disk runs currently in use.
+     *
+     * @return  run count
+     */
+    public int getRunCount() {
+        return runs_.size();
+    }
+
+    /**
+     * Discards all content and deletes any temporary files.
+     */
+    public void close() {
+        for ( Run run : runs_ ) {
+            try {
+                run.discard();
+            }
+            catch ( IOException e ) {
+                logger_.warning( "Failed to discard run: " + e );
+            }
+        }
+        runs_.clear();
+        nbuf_ = 0;
+        buf_ = new long[ Math.min( INIT_BUFSIZE, bufsize_ ) ];
+        isSorted_ = true;
+    }
+
+    /**
+     * Ensures that the in-memory buffer is sorted and contains
+     * no duplicates.
+     */
+    private void sortBuffer() {
+        if ( ! isSorted_ ) {
+            Arrays.sort( buf_, 0, nbuf_ );
+            int n = 0;
+            for ( int i = 0; i < nbuf_; i++ ) {
+                if ( n == 0 || buf_[ i ] != buf_[ n - 1 ] ) {
+                    buf_[ n++ ] = buf_[ i ];
+                }
+            }
+            nbuf_ = n;
+            isSorted_ = true;
+        }
+    }
+
+    /**
+     * Writes the content of the in-memory buffer to a new disk run,
+     * and empties the buffer.
+     */
+    private void spill() {
+        sortBuffer();
+        if ( nbuf_ > 0 ) {
+            try {
+                runs_.add( Run.write( Arrays.stream( buf_, 0, nbuf_ )
+                                            .iterator(), 0 ) );
+            }
+            catch ( IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+            nbuf_ = 0;
+            compactRuns();
+        }
+    }
+
+    /**
+     * Merges runs tier by tier.  Newly spilled runs are in tier 0,
+     * and whenever a tier contains the maximum number of runs,
+     * they are merged into a single run in the next tier up.
+     */
+    private void compactRuns() {
+        for ( int tier = 0; ; tier++ ) {
+            List<Run> tierRuns = new ArrayList<Run>();
+            for ( Run run : runs_ ) {
+                if ( run.tier_ == tier ) {
+                    tierRuns.add( run );
+                }
+            }
+            if ( tierRuns.size() < maxRuns_ ) {
+                return;
+            }
+            mergeRuns( tierRuns, tier + 1 );
+        }
+    }
+
+    /**
+     * Merges some of the current disk runs into a single run,
+     * which replaces them.
+     *
+     * @param  mergeRuns  runs to merge, all currently in use
+     * @param  tier   tier of the merged run
+     */
+    private void mergeRuns( List<Run> mergeRuns, int tier ) {
+        int nrun = mergeRuns.size();
+        logger_.config( "Merging " + nrun + " sorted runs" );
+        try {
+            PrimitiveIterator.OfLong[] runIts =
+                new PrimitiveIterator.OfLong[ nrun ];
+            for ( int ir = 0; ir < nrun; ir++ ) {
+                runIts[ ir ] = mergeRuns.get( ir ).createIterator();
+            }
+            Run merged = Run.write( new UnionLongIterator( runIts ), tier );
+            for ( Run run : mergeRuns ) {
+                run.discard();
+            }
+            runs_.removeAll( mergeRuns );
+            runs_.add( merged );
+        }
+        catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Moves all content to a single disk run and returns it.
+     * Only call this if at least one run exists.
+     * Runs are merged in groups of at most the maximum fan-in,
+     * smallest first.
+     *
+     * @return  run containing all values in this bag
+     */
+    private Run getSingleRun() {
+        spill();
+        while ( runs_.size() > 1 ) {
+            List<Run> sorted = new ArrayList<Run>( runs_ );
+            sorted.sort( ( r1, r2 ) -> Long.compare( r1.count_, r2.count_ ) );
+            List<Run> group =
+                sorted.subList( 0, Math.min( maxRuns_, sorted.size() ) );
+            int tier = 0;
+            for ( Run run : group ) {
+                tier = Math.max( tier, run.tier_ + 1 );
+            }
+            mergeRuns( new ArrayList<Run>( group ), tier );
+        }
+        assert runs_.size() == 1 && nbuf_ == 0;
+        return runs_.get( 0 );
+    }
+
+    /**
+     * Represents a strictly ascending sequence of long values
+     * stored in a temporary file.
+     */
+    private static class Run {
+
+        final File file_;
+        final long count_;
+        final long first_;
+        final long last_;
+        final int tier_;
+        private final List<DataInputStream> openStreams_;
+        private RandomAccessFile raf_;
+
+        /**
+         * Constructor.
+         *
+         * @param  file  file containing count 8-byte values
+         * @param  count  number of values
+         * @param  first  first (smallest) value
+         * @param  last   last (largest) value
+         * @param  tier   merge tier, 0 for unmerged runs
+         */
+        Run( File file, long count, long first, long last, int tier ) {
+            file_ = file;
+            count_ = count;
+            first_ = first;
+            last_ = last;
+            tier_ = tier;
+            openStreams_ = new ArrayList<DataInputStream>();
+        }
+
+        /**
+         * Indicates whether a given value is present in this run.
+         *
+         * @param  value  value to test
+         * @return  true iff value is present
+         */
+        boolean contains( long value ) throws IOException {
+            if ( value < first_ || value > last_ ) {
+                return false;
+            }
+            if ( raf_ == null ) {
+                raf_ = new RandomAccessFile( file_, "r" );
+            }
+            long lo = 0;
+            long hi = count_ - 1;
+            while ( lo <= hi ) {
+                long mid = ( lo + hi ) >>> 1;
+                raf_.seek( mid * 8 );
+                long v = raf_.readLong();
+                if ( v < value ) {
+                    lo = mid + 1;
+                }
+                else if ( v > value ) {
+                    hi = mid - 1;
+                }
+                else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns an iterator over the values in this run.
+         * The underlying file is closed when the iteration is complete,
+         * or when this run is discarded if that happens first.
+         *
+         * @return  sorted iterator
+         */
+        PrimitiveIterator.OfLong createIterator() throws IOException {
+            final DataInputStream in =
+                new DataInputStream(
+                    new BufferedInputStream(
+                        new FileInputStream( file_ ) ) );
+            openStreams_.add( in );
+            return new PrimitiveIterator.OfLong() {
+                long iv_;
+                public boolean hasNext() {
+                    return iv_ < count_;
+                }
+                public long nextLong() {
+                    if ( iv_ >= count_ ) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        long value = in.readLong();
+                        if ( ++iv_ == count_ ) {
+                            openStreams_.remove( in );
+                            in.close();
+                        }
+                        return value;
+                    }
+                    catch ( IOException e ) {
+                        throw new UncheckedIOException( e );
+                    }
+                }
+            };
+        }
+
+        /**
+         * Releases resources and deletes the file associated with this run.
+         */
+        void discard() throws IOException {
+            for ( DataInputStream in : openStreams_ ) {
+                in.close();
+            }
+            openStreams_.clear();
+            if ( raf_ != null ) {
+                raf_.close();
+                raf_ = null;
+            }
+            file_.delete();
+        }
+
+        /**
+         * Writes a sequence of values to a new temporary file.
+         *
+         * @param  it  iterator over strictly ascending values
+         * @param  tier   merge tier, 0 for unmerged runs
+         * @return  new run
+         */
+        static Run write( PrimitiveIterator.OfLong it, int tier )
+                throws IOException {
+            File file = File.createTempFile( "SortedRunBag", ".bin" );
+            file.deleteOnExit();
+            long count = 0;
+            long first = 0;
+            long last = 0;
+            try ( DataOutputStream out =
+                      new DataOutputStream(
+                          new BufferedOutputStream(
+                              new FileOutputStream( file ) ) ) ) {
+                while ( it.hasNext() ) {
+                    long value = it.nextLong();
+                    if ( count++ == 0 ) {
+                        first = value;
+                    }
+                    last = value;
+                    out.writeLong( value );
+                }
+            }
+            return new Run( file, count, first, last, tier );
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package uk.ac.starlink.ttools.moc;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Iterator over the sorted union of several sorted input iterators.
+ * Each input iterator must supply its values in strictly ascending order;
+ * the output is likewise strictly ascending, with duplicates
+ * between inputs removed.
+ *
+ * <p>The implementation does a linear scan over the input heads
+ * for each output value, so it is intended for use with a
+ * modest number of inputs.
+ */
+class UnionLongIterator implements PrimitiveIterator.OfLong {
+
+    private final PrimitiveIterator.OfLong[] inIts_;
+    private final long[] heads_;
+    private final boolean[] hasHeads_;
+
+    /**
+     * Constructor.
+     *
+     * @param  inIts  input iterators, each sorted in strictly ascending order
+     */
+    UnionLongIterator( PrimitiveIterator.OfLong[] inIts ) {
+        int nin = inIts.length;
+        inIts_ = inIts;
+        heads_ = new long[ nin ];
+        hasHeads_ = new boolean[ nin ];
+        for ( int i = 0; i < nin; i++ ) {
+            advance( i );
+        }
+    }
+
+    public boolean hasNext() {
+        for ( boolean hasHead : hasHeads_ ) {
+            if ( hasHead ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long nextLong() {
+        int nin = inIts_.length;
+        boolean found = false;
+        long min = Long.MAX_VALUE;
+        for ( int i = 0; i < nin; i++ ) {
+            if ( hasHeads_[ i ] && ( ! found || heads_[ i ] < min ) ) {
+                min = heads_[ i ];
+                found = true;
+            }
+        }
+        if ( ! found ) {
+            throw new NoSuchElementException();
+        }
+        for ( int i = 0; i < nin; i++ ) {
+            if ( hasHeads_[ i ] && heads_[ i ] == min ) {
+                advance( i );
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Reads the next value from one of the input iterators into
+     * the head array.
+     *
+     * @param  i  input index
+     */
+    private void advance( int i ) {
+        PrimitiveIterator.OfLong it = inIts_[ i ];
+        if ( it.hasNext() ) {
+            heads_[ i ] = it.nextLong();
+            hasHeads_[ i ] = true;
+        }
+        else {
+            hasHeads_[ i ] = false;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.task.ChoiceParameter;
 import uk.ac.starlink.task.Environment;
@@ -16,6 +17,7 @@ import uk.ac.starlink.task.UsageException;
 import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.TableConsumer;
 import uk.ac.starlink.ttools.task.CombinerParameter;
+import uk.ac.starlink.ttools.task.RowRunnerParameter;
 import uk.ac.starlink.ttools.task.WordParser;
 import uk.ac.starlink.ttools.task.WordsParameter;
 import uk.ac.starlink.ttools.plot2.layer.Combiner;
@@ -37,6 +39,7 @@ public class CubeMode implements ProcessingMode {
     private final CombinerParameter combinerParam_;
     private final ChoiceParameter<Class<?>> typeParam_;
     private final StringParameter scaleParam_;
+    private final RowRunnerParameter runnerParam_;
     private WordsParameter<String> colsParam_;
 
     /** Output data types for FITS output. */
@@ -72,6 +75,8 @@ public class CubeMode implements ProcessingMode {
            "in this way, two passes through the data will be required,",
            "the first to determine bounds and the second",
            "to populate the cube.",
+           "If all the bounds are given explicitly, only a single pass",
+           "is made.",
            "</p>",
         } );
 
@@ -152,6 +157,8 @@ public class CubeMode implements ProcessingMode {
             "If no expression is given, the value 1 is assumed.",
             "</p>",
         } );
+
+        runnerParam_ = RowRunnerParameter.createScanRunnerParameter( "runner" );
     }
 
     public String getDescription() {
@@ -173,6 +180,7 @@ public class CubeMode implements ProcessingMode {
             outParam_,
             typeParam_,
             scaleParam_,
+            runnerParam_,
         };
     }
 
@@ -249,9 +257,12 @@ public class CubeMode implements ProcessingMode {
         /* Get the output datatype size. */
         Class<?> outType = typeParam_.objectValue( env );
 
+        /* Get the threading implementation. */
+        RowRunner runner = runnerParam_.objectValue( env );
+
         /* Construct and return the consumer itself. */
         return new CubeWriter( loBounds, hiBounds, nbins, binsizes, colExprs,
-                               scaleExpr, combiner, dest, outType );
+                               scaleExpr, combiner, dest, outType, runner );
     }
 
     /**
@@ -8,13 +8,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
 import uk.ac.starlink.fits.CardFactory;
 import uk.ac.starlink.fits.CardImage;
 import uk.ac.starlink.fits.FitsUtil;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.DefaultValueInfo;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -27,6 +31,8 @@ import uk.ac.starlink.ttools.plot2.layer.BinListCollector;
 import uk.ac.starlink.ttools.plot2.layer.Combiner;
 import uk.ac.starlink.util.DataBufferedOutputStream;
 import uk.ac.starlink.util.Destination;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
 
 /**
  * TableConsumer implementation which constructs and outputs a histogram
@@ -44,9 +50,16 @@ public class CubeWriter implements TableConsumer {
     private final Combiner combiner_;
     private final Class<?> outType_;
     private final Destination dest_;
+    private final RowRunner runner_;
     private int[] nbins_;
     private double[] binSizes_;
 
+    /** Approximate storage per pixel for a dense bin list. */
+    private static final int DENSE_BYTES_PER_BIN = 8;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.mode" );
+
     /**
      * Constructor.
      * One, but not both, of <code>nbins</code> and <code>binSizes</code>
@@ -65,10 +78,12 @@ public class CubeWriter implements TableConsumer {
      * @param   dest       data output locator
      * @param   outType    primitive numeric data type for output data;
      *                     if null worked out automatically
+     * @param   runner     controls sequential/parallel processing
      */
     public CubeWriter( double[] loBounds, double[] hiBounds, int[] nbins,
                        double[] binSizes, String[] colExprs, String scaleExpr,
-                       Combiner combiner, Destination dest, Class<?> outType ) {
+                       Combiner combiner, Destination dest, Class<?> outType,
+                       RowRunner runner ) {
         loBounds_ = loBounds;
         hiBounds_ = hiBounds;
         nbins_ = nbins;
@@ -78,6 +93,7 @@ public class CubeWriter implements TableConsumer {
         combiner_ = combiner;
         dest_ = dest;
         outType_ = outType;
+        runner_ = runner;
     }
 
     public void consume( final StarTable inTable ) throws IOException {
@@ -99,7 +115,7 @@ public class CubeWriter implements TableConsumer {
         StarTable aTable = new ColumnPermutedStarTable( asTable, icData );
  
         /* Read data to acquire bounds from the data if necessary. */
-        fixBounds( aTable, loBounds_, hiBounds_ );
+        fixBounds( asTable, ndim, loBounds_, hiBounds_, runner_ );
 
         /* Calculate bin sizes from bin counts or vice versa. */
         if ( binSizes_ == null ) {
@@ -120,16 +136,17 @@ public class CubeWriter implements TableConsumer {
             }
         }
 
-        /* Populate the cube by reading the table data. */
-        double[] cube =
-            calculateCube( asTable, combiner_, loBounds_, nbins_, binSizes_ );
+        /* Populate the bins by reading the table data. */
+        BinList.Result result =
+            calculateBins( asTable, combiner_, loBounds_, nbins_, binSizes_,
+                           runner_ );
 
         /* Write the cube to the output stream as FITS. */
         DataBufferedOutputStream out =
             new DataBufferedOutputStream( dest_.createStream() );
         try {
             writeFits( Tables.getColumnInfos( aTable ),
-                       asTable.getColumnInfo( ndim ), cube, outType_, out );
+                       asTable.getColumnInfo( ndim ), result, outType_, out );
             out.flush();
         }
         finally {
@@ -146,16 +163,19 @@ public class CubeWriter implements TableConsumer {
      * elements of <code>loBounds</code> and <code>hiBounds</code>
      * will be non-NaN.
      *
-     * @param   table  table containing only numeric columns
+     * @param   table  table whose first <code>ndim</code> columns
+     *                 are numeric
+     * @param   ndim   number of dimensions
      * @param   loBounds   lower bounds array
      * @param   hiBounds   upper bounds array
+     * @param   runner   controls sequential/parallel processing
      */
-    private static void fixBounds( StarTable table, double[] loBounds,
-                                   double[] hiBounds )
+    private static void fixBounds( StarTable table, int ndim,
+                                   double[] loBounds, double[] hiBounds,
+                                   RowRunner runner )
             throws IOException {
 
         /* See if we need to perform any automatic bounds assessment. */
-        int ndim = table.getColumnCount();
         boolean autobound = false;
         for ( int idim = 0; idim < ndim; idim++ ) {
             autobound = autobound || Double.isNaN( loBounds[ idim ] )
@@ -165,7 +185,8 @@ public class CubeWriter implements TableConsumer {
         /* If so, read all the data accumulating extrema and update the
          * bounds arrays accordingly. */
         if ( autobound ) {
-            double[][] dataBounds = getDataBounds( table );
+            double[][] dataBounds =
+                runner.collect( new BoundsCollector( ndim ), table );
             for ( int idim = 0 ; idim < ndim; idim++ ) {
                 if ( Double.isNaN( loBounds[ idim ] ) ) {
                     loBounds[ idim ] = dataBounds[ idim ][ 0 ];
@@ -183,184 +204,130 @@ public class CubeWriter implements TableConsumer {
         }
     }
 
-    /**
-     * Reads the data from a table and determines extrema.
-     *
-     * @param   table  input table containing only numeric columns
-     * @return  array of 2-element values giving lower,higher bounds for
-     *          the data in each column of <code>table</code>
-     */
-    private static double[][] getDataBounds( StarTable table )
-            throws IOException {
-        int ndim = table.getColumnCount();
-        double[][] bounds = new double[ ndim ][ 2 ];
-        for ( int idim = 0; idim < ndim; idim++ ) {
-            bounds[ idim ] = new double[] { Double.NaN, Double.NaN };
-        }
-        RowSequence rseq = table.getRowSequence();
-        try {
-            while ( rseq.next() ) {
-                 Object[] row = rseq.getRow();
-                 for ( int idim = 0; idim < ndim; idim++ ) {
-                     Object cell = row[ idim ];
-                     if ( cell instanceof Number ) {
-                         double dval = ((Number) cell).doubleValue();
-                         if ( ! Double.isInfinite( dval ) &&
-                              ! Double.isNaN( dval ) ) {
-                             if ( ! ( dval >= bounds[ idim ][ 0 ] ) ) {
-                                 bounds[ idim ][ 0 ] = dval;
-                             }
-                             if ( ! ( dval <= bounds[ idim ][ 1 ] ) ) {
-                                 bounds[ idim ][ 1 ] = dval;
-                             }
-                         }
-                     }
-                 }
-            }
-        }
-        finally {
-            rseq.close();
-        }
-        return bounds;
-    }
-
     /**
      * Accumulates the contents of an N-dimensional histogram representing
      * data from an N+1-columned table.  The final column is a scaling
      * value.
      *
+     * <p>The rows are binned in parallel as determined by the supplied
+     * runner, each split accumulating into its own BinList.
+     * BinLists use sparse storage when occupancy is low, so the
+     * memory required is not necessarily proportional to the
+     * number of pixels in the cube.
+     * However each split's BinList may become dense, so for large cubes
+     * the number of concurrent accumulators is limited
+     * to keep the total size of a dense copy per accumulator within
+     * a fraction of the available heap; see {@link #getMaxAccumulators}.
+     *
      * @param   table  table with N+1 columns
      * @param   combiner  combination mode
      * @param   loBounds  N-element array of lower bounds by dimension
      * @param   nbins     N-element array of number of bins by dimension
      * @param   binSizes  N-element array of bin extents by dimension
+     * @param   runner    controls sequential/parallel processing
+     * @return   bin values indexed by column-major pixel index;
+     *           values are not yet scaled by the combiner bin factor
      */
-    public static double[]
-            calculateCube( StarTable table, Combiner combiner,
-                           double[] loBounds, int[] nbins, double[] binSizes )
+    public static BinList.Result
+            calculateBins( StarTable table, Combiner combiner,
+                           double[] loBounds, int[] nbins, double[] binSizes,
+                           RowRunner runner )
             throws IOException {
-        int ndim = table.getColumnCount() - 1;
-        double[] hiBounds = new double[ ndim ];
-        double binExtent = 1;
-        for ( int idim = 0; idim < ndim; idim++ ) {
-            hiBounds[ idim ] = loBounds[ idim ]
-                             + nbins[ idim ] * binSizes[ idim ];
-            binExtent *= binSizes[ idim ];
-        }
-        Combiner.Type ctype = combiner.getType();
-        double binFactor = ctype.getBinFactor( binExtent );
-
-        /* Construct a cube to hold the counts. */
-        long np = 1;
-        for ( int idim = 0; idim < ndim; idim++ ) {
-            np *= nbins[ idim ];
+        CubeCollector collector =
+            new CubeCollector( combiner, loBounds, nbins, binSizes );
+        int maxAcc = getMaxAccumulators( collector.npix_ );
+        if ( runner == RowRunner.SEQUENTIAL ||
+             maxAcc >= SplitPolicy.DFLT_MAX_TASKS_PER_CORE
+                       * Runtime.getRuntime().availableProcessors() ) {
+            return runner.collect( collector, table ).getResult();
+        }
+        else if ( maxAcc <= 1 ) {
+            logger_.info( "Large cube (" + collector.npix_ + " pixels)"
+                        + " - binning sequentially" );
+            return RowRunner.SEQUENTIAL.collect( collector, table )
+                  .getResult();
         }
-        int npix = Tables.checkedLongToInt( np );
-        BinList binList = BinListCollector.createDefaultBinList( combiner, np );
-
-        /* Populate it. */
-        RowSequence rseq = table.getRowSequence();
-        try {
-            int[] coords = new int[ ndim ];
-            while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
-
-                /* Get the scaling value. */
-                Object scaleObj = row[ ndim ];
-                double scale = scaleObj instanceof Number 
-                             ? ((Number) scaleObj).doubleValue()
-                             : Double.NaN;
-                boolean okRow = scale != 0.0 && ! Double.isNaN( scale );
-
-                for ( int idim = 0; okRow && idim < ndim; idim++ ) {
-                    boolean okCell = false;
-                    Object cell = row[ idim ];
-                    if ( cell instanceof Number ) {
-                        double dval = ((Number) cell).doubleValue();
+        else {
 
-                        /* This criterion is questionable - it should really
-                         * be exclusive at the upper bound (dval < hiBounds).
-                         * However, if the bounds have been calculated
-                         * automatically you'd expect every point to be 
-                         * included.  For integer columns the answer would
-                         * possibly be to shift everything by half a pixel.
-                         * Hmm. */
-                        if ( dval >= loBounds[ idim ] &&  
-                             dval <= hiBounds[ idim ] ) {
-                            int ibin = (int) ( ( dval - loBounds[ idim ] )
-                                               / binSizes[ idim ] );
-                            if ( ibin == nbins[ idim ] ) {
-                                ibin--;
-                            }
-                            assert ibin >= 0 && ibin <= nbins[ idim ];
-                            coords[ idim ] = ibin;
-                            okCell = true;
-                        }
-                    }
-                    okRow = okRow && okCell;
-                }
-                if ( okRow ) {
-                    int ipix = 0;
-                    for ( int idim = 0, step = 1; idim < ndim; idim++ ) {
-                        ipix += step * coords[ idim ];
-                        step *= nbins[ idim ];
-                    }
-                    binList.submitToBin( ipix, scale );
-                }
+            /* Use a pooling processor with limited parallelism,
+             * so that no more than the given number of accumulators
+             * are in use at once. */
+            logger_.info( "Large cube (" + collector.npix_ + " pixels)"
+                        + " - binning with " + maxAcc + " threads" );
+            ForkJoinPool fjPool = new ForkJoinPool( maxAcc );
+            try {
+                SplitPolicy policy =
+                    new SplitPolicy( () -> fjPool, 0, (short) -1 );
+                RowRunner poolRunner =
+                    new RowRunner( SplitProcessor
+                                  .createPoolParallelProcessor( policy ) );
+                return poolRunner.collect( collector, table ).getResult();
+            }
+            finally {
+                fjPool.shutdown();
             }
         }
-        finally { 
-            rseq.close();
-        }
+    }
 
-        /* Assemble bins into a cube array. */
-        BinList.Result result = binList.getResult();
-        double[] cube = new double[ npix ];
-        if ( ! ctype.isExtensive() ) {
-            Arrays.fill( cube, Double.NaN );
-        }
-        for ( Iterator<Long> it = result.indexIterator(); it.hasNext(); ) {
-            int index = it.next().intValue();
-            cube[ index ] = result.getBinValue( index ) * binFactor;
-        }
-        return cube;
+    /**
+     * Returns the largest number of binning accumulators that can
+     * safely be in use at once for a cube of a given size.
+     * This assumes the worst case, that every accumulator becomes dense,
+     * and permits them between them to use up to a quarter of the
+     * maximum heap size.
+     *
+     * @param  npix  number of pixels in cube
+     * @return   maximum number of concurrent accumulators, at least 1
+     */
+    static int getMaxAccumulators( long npix ) {
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        long denseSize = Math.max( 1, npix ) * DENSE_BYTES_PER_BIN;
+        return (int) Math.max( 1, Math.min( Integer.MAX_VALUE,
+                                            budget / denseSize ) );
     }
 
     /**
-     * Writes a column-major array out as a single-HDU FITS file.
+     * Writes accumulated bin values out as a single-HDU FITS file.
+     * The pixel values are streamed directly from the bin result
+     * in column-major order, without assembling a dense array.
      *
      * @param   axInfos  metadata objects describing each axis
      * @param   binInfo  metadata object describing the bin values
-     * @param   cube     data array, in column major order
+     * @param   result   accumulated bin values, indexed by
+     *                   column-major pixel index
      * @param   outType   primitive numeric type to write
      * @param   out    output stream
      */
     private void writeFits( ValueInfo[] axInfos, ValueInfo binInfo,
-                            double[] cube, Class<?> outType,
+                            BinList.Result result, Class<?> outType,
                             DataBufferedOutputStream out )
             throws IOException {
-        int npix = cube.length;
         int ndim = nbins_.length;
+        long npix = 1;
+        double binExtent = 1;
+        for ( int id = 0; id < ndim; id++ ) {
+            npix *= nbins_[ id ];
+            binExtent *= binSizes_[ id ];
+        }
+        Combiner.Type ctype = combiner_.getType();
+        double binFactor = ctype.getBinFactor( binExtent );
+        double emptyValue = ctype.isExtensive() ? 0 : Double.NaN;
 
-        /* Get minimum and maximum values. */
-        double min = Double.NaN;
-        double max = Double.NaN;
-        boolean isInt = true;
-        boolean hasBlank = false;
-        if ( npix > 0 ) {
-            for ( int i = 0; i < npix; i++ ) {
-                double datum = cube[ i ];
-                if ( ! ( datum >= min ) ) {
-                    min = datum;
-                }
-                if ( ! ( datum <= max ) ) {
-                    max = datum;
-                }
-                boolean isNaN = Double.isNaN( datum );
-                hasBlank = hasBlank || isNaN;
-                isInt = isInt && ( isNaN || (int) datum == datum );
-            }
+        /* Get minimum and maximum values.  Only populated bins need
+         * to be examined, along with the empty value if there are
+         * any unpopulated ones. */
+        ValueStats stats = new ValueStats();
+        if ( result.getBinCount() < npix ) {
+            stats.submit( emptyValue );
         }
+        for ( Iterator<Long> it = result.indexIterator(); it.hasNext(); ) {
+            stats.submit( result.getBinValue( it.next().longValue() )
+                          * binFactor );
+        }
+        double min = stats.min_;
+        double max = stats.max_;
+        boolean isInt = stats.isInt_;
+        boolean hasBlank = stats.hasBlank_;
         if ( Double.isNaN( min ) ) {
             assert max == Double.NaN;
         }
@@ -444,12 +411,14 @@ public class CubeWriter implements TableConsumer {
         FitsUtil.writeHeader( cards.toArray( new CardImage[ 0 ] ), out );
 
         /* Write the data. */
-        for ( int ip = 0; ip < npix; ip++ ) {
-            writer.writeNumber( cube[ ip ] );
+        for ( long ip = 0; ip < npix; ip++ ) {
+            double value = result.getBinValue( ip );
+            writer.writeNumber( Double.isNaN( value ) ? emptyValue
+                                                      : value * binFactor );
         }
 
         /* Pad to the end of a FITS block. */
-        long nbyte = ( Math.abs( writer.getBitpix() ) / 8 ) * (long) npix;
+        long nbyte = ( Math.abs( writer.getBitpix() ) / 8 ) * npix;
         int over = (int) ( nbyte % FitsUtil.BLOCK_LENG );
         if ( over > 0 ) {
             out.write( new byte[ FitsUtil.BLOCK_LENG - over ] );
@@ -555,6 +524,195 @@ public class CubeWriter implements TableConsumer {
         }
     }
 
+    /**
+     * Accumulates statistics about the values to be written.
+     */
+    private static class ValueStats {
+        double min_ = Double.NaN;
+        double max_ = Double.NaN;
+        boolean isInt_ = true;
+        boolean hasBlank_;
+
+        /**
+         * Submits a value for accumulation.
+         *
+         * @param  datum  value
+         */
+        void submit( double datum ) {
+            if ( ! ( datum >= min_ ) ) {
+                min_ = datum;
+            }
+            if ( ! ( datum <= max_ ) ) {
+                max_ = datum;
+            }
+            boolean isNaN = Double.isNaN( datum );
+            hasBlank_ = hasBlank_ || isNaN;
+            isInt_ = isInt_ && ( isNaN || (int) datum == datum );
+        }
+    }
+
+    /**
+     * Collector that determines the data extrema in each dimension.
+     * The accumulator is an ndim-element array of 2-element
+     * (lower,upper) bounds arrays.
+     */
+    private static class BoundsCollector extends RowCollector<double[][]> {
+
+        private final int ndim_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ndim  number of leading numeric columns to assess
+         */
+        BoundsCollector( int ndim ) {
+            ndim_ = ndim;
+        }
+
+        public double[][] createAccumulator() {
+            double[][] bounds = new double[ ndim_ ][];
+            for ( int idim = 0; idim < ndim_; idim++ ) {
+                bounds[ idim ] = new double[] { Double.NaN, Double.NaN };
+            }
+            return bounds;
+        }
+
+        public void accumulateRows( RowSplittable rseq, double[][] bounds )
+                throws IOException {
+            while ( rseq.next() ) {
+                for ( int idim = 0; idim < ndim_; idim++ ) {
+                    Object cell = rseq.getCell( idim );
+                    if ( cell instanceof Number ) {
+                        double dval = ((Number) cell).doubleValue();
+                        if ( ! Double.isInfinite( dval ) &&
+                             ! Double.isNaN( dval ) ) {
+                            if ( ! ( dval >= bounds[ idim ][ 0 ] ) ) {
+                                bounds[ idim ][ 0 ] = dval;
+                            }
+                            if ( ! ( dval <= bounds[ idim ][ 1 ] ) ) {
+                                bounds[ idim ][ 1 ] = dval;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        public double[][] combine( double[][] bounds1, double[][] bounds2 ) {
+            for ( int idim = 0; idim < ndim_; idim++ ) {
+                double lo2 = bounds2[ idim ][ 0 ];
+                double hi2 = bounds2[ idim ][ 1 ];
+                if ( ! ( lo2 >= bounds1[ idim ][ 0 ] ) ) {
+                    bounds1[ idim ][ 0 ] = lo2;
+                }
+                if ( ! ( hi2 <= bounds1[ idim ][ 1 ] ) ) {
+                    bounds1[ idim ][ 1 ] = hi2;
+                }
+            }
+            return bounds1;
+        }
+    }
+
+    /**
+     * Collector that accumulates table rows into the bins of an
+     * N-dimensional histogram.
+     * The input table has N+1 columns, the final one being a scaling value.
+     */
+    private static class CubeCollector extends RowCollector<BinList> {
+
+        private final Combiner combiner_;
+        private final double[] loBounds_;
+        private final double[] hiBounds_;
+        private final int[] nbins_;
+        private final double[] binSizes_;
+        private final int ndim_;
+        private final long npix_;
+
+        /**
+         * Constructor.
+         *
+         * @param   combiner  combination mode
+         * @param   loBounds  N-element array of lower bounds by dimension
+         * @param   nbins     N-element array of number of bins by dimension
+         * @param   binSizes  N-element array of bin extents by dimension
+         */
+        CubeCollector( Combiner combiner, double[] loBounds, int[] nbins,
+                       double[] binSizes ) {
+            combiner_ = combiner;
+            loBounds_ = loBounds;
+            nbins_ = nbins;
+            binSizes_ = binSizes;
+            ndim_ = nbins.length;
+            hiBounds_ = new double[ ndim_ ];
+            long np = 1;
+            for ( int idim = 0; idim < ndim_; idim++ ) {
+                hiBounds_[ idim ] = loBounds[ idim ]
+                                  + nbins[ idim ] * binSizes[ idim ];
+                np *= nbins[ idim ];
+            }
+            npix_ = np;
+        }
+
+        public BinList createAccumulator() {
+            return BinListCollector.createDefaultBinList( combiner_, npix_ );
+        }
+
+        public void accumulateRows( RowSplittable rseq, BinList binList )
+                throws IOException {
+            int[] coords = new int[ ndim_ ];
+            while ( rseq.next() ) {
+
+                /* Get the scaling value. */
+                Object scaleObj = rseq.getCell( ndim_ );
+                double scale = scaleObj instanceof Number 
+                             ? ((Number) scaleObj).doubleValue()
+                             : Double.NaN;
+                boolean okRow = scale != 0.0 && ! Double.isNaN( scale );
+
+                for ( int idim = 0; okRow && idim < ndim_; idim++ ) {
+                    boolean okCell = false;
+                    Object cell = rseq.getCell( idim );
+                    if ( cell instanceof Number ) {
+                        double dval = ((Number) cell).doubleValue();
+
+                        /* This criterion is questionable - it should really
+                         * be exclusive at the upper bound (dval < hiBounds).
+                         * However, if the bounds have been calculated
+                         * automatically you'd expect every point to be 
+                         * included.  For integer columns the answer would
+                         * possibly be to shift everything by half a pixel.
+                         * Hmm. */
+                        if ( dval >= loBounds_[ idim ] &&  
+                             dval <= hiBounds_[ idim ] ) {
+                            int ibin = (int) ( ( dval - loBounds_[ idim ] )
+                                               / binSizes_[ idim ] );
+                            if ( ibin == nbins_[ idim ] ) {
+                                ibin--;
+                            }
+                            assert ibin >= 0 && ibin <= nbins_[ idim ];
+                            coords[ idim ] = ibin;
+                            okCell = true;
+                        }
+                    }
+                    okRow = okRow && okCell;
+                }
+                if ( okRow ) {
+                    long ipix = 0;
+                    long step = 1;
+                    for ( int idim = 0; idim < ndim_; idim++ ) {
+                        ipix += step * coords[ idim ];
+                        step *= nbins_[ idim ];
+                    }
+                    binList.submitToBin( ipix, scale );
+                }
+            }
+        }
+
+        public BinList combine( BinList binList1, BinList binList2 ) {
+            return BinListCollector.mergeBinLists( binList1, binList2 );
+        }
+    }
+
     /**
      * ColumnData implementation that returns 1.
      */
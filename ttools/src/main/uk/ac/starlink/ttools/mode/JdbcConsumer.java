@@ -2,7 +2,9 @@ package uk.ac.starlink.ttools.mode;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.jdbc.JDBCFormatter;
 import uk.ac.starlink.table.jdbc.JDBCHandler;
 import uk.ac.starlink.table.jdbc.WriteMode;
 import uk.ac.starlink.task.Environment;
@@ -21,6 +23,9 @@ public class JdbcConsumer implements TableConsumer {
     private final String url_;
     private final JDBCHandler handler_;
     private final WriteMode mode_;
+    private final int batchSize_;
+    private final int commitInterval_;
+    private final RowRunner runner_;
 
     /**
      * Constructs a new consumer from a location and a JDBC handler.
@@ -30,9 +35,30 @@ public class JdbcConsumer implements TableConsumer {
      * @param   mode   write mode
      */
     public JdbcConsumer( String url, JDBCHandler handler, WriteMode mode ) {
+        this( url, handler, mode, JDBCFormatter.DFLT_BATCH_SIZE, 0, null );
+    }
+
+    /**
+     * Constructs a new consumer with control over bulk loading options.
+     *
+     * @param   url  destination (jdbc:) URL for table
+     * @param   handler  JDBC handler
+     * @param   mode   write mode
+     * @param   batchSize   number of rows inserted in each block
+     * @param   commitInterval  approximate number of rows per transaction,
+     *                          or 0 to leave auto-commit alone
+     * @param   runner   controls writing in parallel over multiple
+     *                   connections, or null for sequential
+     */
+    public JdbcConsumer( String url, JDBCHandler handler, WriteMode mode,
+                         int batchSize, int commitInterval,
+                         RowRunner runner ) {
         url_ = url;
         handler_ = handler;
         mode_ = mode;
+        batchSize_ = batchSize;
+        commitInterval_ = commitInterval;
+        runner_ = runner;
     }
 
     /**
@@ -51,7 +77,8 @@ public class JdbcConsumer implements TableConsumer {
 
     public void consume( StarTable table ) throws IOException {
         try {
-            handler_.createJDBCTable( table, url_, mode_ );
+            handler_.createJDBCTable( table, url_, mode_, batchSize_,
+                                      commitInterval_, runner_ );
         }
         catch ( SQLException e ) {
             String msg = e.getMessage();
@@ -1,17 +1,21 @@
 package uk.ac.starlink.ttools.mode;
 
 import java.util.logging.Logger;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.jdbc.JDBCAuthenticator;
+import uk.ac.starlink.table.jdbc.JDBCFormatter;
 import uk.ac.starlink.table.jdbc.JDBCHandler;
 import uk.ac.starlink.table.jdbc.WriteMode;
 import uk.ac.starlink.task.ChoiceParameter;
 import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.IntegerParameter;
 import uk.ac.starlink.task.Parameter;
 import uk.ac.starlink.task.StringParameter;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.TableConsumer;
+import uk.ac.starlink.ttools.task.RowRunnerParameter;
 
 /**
  * Mode for writing a table as a new table in a JDBC-connected database.
@@ -28,6 +32,9 @@ public class JdbcMode implements ProcessingMode {
     private final ChoiceParameter<WriteMode> writeParam_;
     private final StringParameter userParam_;
     private final StringParameter passwdParam_;
+    private final IntegerParameter batchParam_;
+    private final IntegerParameter commitParam_;
+    private final RowRunnerParameter runnerParam_;
 
     private final static Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table.jdbc" );
@@ -128,6 +135,51 @@ public class JdbcMode implements ProcessingMode {
             "<p>Password for the SQL connection to the database.",
             "</p>",
         } );
+
+        batchParam_ = new IntegerParameter( "batchsize" );
+        batchParam_.setPrompt( "Number of rows inserted in each batch" );
+        batchParam_.setMinimum( 1 );
+        batchParam_.setIntDefault( JDBCFormatter.DFLT_BATCH_SIZE );
+        batchParam_.setDescription( new String[] {
+            "<p>The number of rows sent to the database together",
+            "in each insert operation.",
+            "Larger values reduce the number of round trips to the",
+            "database server, which usually dominates the time",
+            "taken to write large tables,",
+            "at the cost of some extra memory.",
+            "</p>",
+        } );
+
+        commitParam_ = new IntegerParameter( "commitrows" );
+        commitParam_.setPrompt( "Number of rows in each transaction" );
+        commitParam_.setMinimum( 0 );
+        commitParam_.setIntDefault( 0 );
+        commitParam_.setDescription( new String[] {
+            "<p>The approximate number of rows written between",
+            "transaction commits.",
+            "If set to a positive value, auto-commit is turned off",
+            "while the rows are written,",
+            "and the data is committed each time about this many rows",
+            "have been inserted.",
+            "If zero, the connection's default transaction behaviour,",
+            "which is usually to commit every insert operation,",
+            "is used.",
+            "</p>",
+        } );
+
+        runnerParam_ = RowRunnerParameter.createScanRunnerParameter( "runner" );
+        runnerParam_.setStringDefault( "sequential" );
+        runnerParam_.setDescription( new String[] {
+            runnerParam_.getDescription(),
+            "<p>For this output mode, parallel operation means that",
+            "rows are written concurrently over several",
+            "connections to the database.",
+            "In that case the order of rows in the database table",
+            "may differ from that of the input table,",
+            "and if an error occurs part of the data may already",
+            "have been committed.",
+            "</p>",
+        } );
     }
 
     public Parameter<?>[] getAssociatedParameters() {
@@ -139,6 +191,9 @@ public class JdbcMode implements ProcessingMode {
             writeParam_,
             userParam_,
             passwdParam_,
+            batchParam_,
+            commitParam_,
+            runnerParam_,
         };
     }
 
@@ -166,11 +221,17 @@ public class JdbcMode implements ProcessingMode {
         final String user = userParam_.stringValue( env );
         final String passwd = passwdParam_.stringValue( env );
         final WriteMode mode = writeParam_.objectValue( env );
+        int batchSize = batchParam_.intValue( env );
+        int commitInterval = commitParam_.intValue( env );
+        RowRunner runner = runnerParam_.objectValue( env );
         JDBCAuthenticator auth = new JDBCAuthenticator() {
             public String[] authenticate() {
                 return new String[] { user, passwd };
             }
         };
-        return new JdbcConsumer( url, new JDBCHandler( auth ), mode );
+        return new JdbcConsumer( url, new JDBCHandler( auth ), mode,
+                                 batchSize, commitInterval,
+                                 runner == RowRunner.SEQUENTIAL ? null
+                                                                : runner );
     }
 }
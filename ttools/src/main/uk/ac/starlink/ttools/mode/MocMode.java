@@ -8,9 +8,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.task.ChoiceParameter;
-import uk.ac.starlink.task.DoubleParameter;
 import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.IntegerParameter;
 import uk.ac.starlink.task.Parameter;
@@ -21,8 +23,10 @@ import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.TableConsumer;
 import uk.ac.starlink.ttools.cone.ConeQueryRowSequence;
 import uk.ac.starlink.ttools.cone.JELQuerySequenceFactory;
-import uk.ac.starlink.ttools.cone.MocFormat;
-import uk.ac.starlink.ttools.cone.QuerySequenceFactory;
+import uk.ac.starlink.ttools.moc.MocBuilder;
+import uk.ac.starlink.ttools.moc.MocImpl;
+import uk.ac.starlink.ttools.moc.MocStreamFormat;
+import uk.ac.starlink.ttools.task.RowRunnerParameter;
 import uk.ac.starlink.ttools.task.SkyCoordParameter;
 import uk.ac.starlink.util.Destination;
 
@@ -38,43 +42,13 @@ public class MocMode implements ProcessingMode {
     private final StringParameter raParam_;
     private final StringParameter decParam_;
     private final StringParameter radiusParam_;
-    private final ChoiceParameter<MocFormat> mocfmtParam_;
+    private final ChoiceParameter<MocStreamFormat> mocfmtParam_;
+    private final RowRunnerParameter runnerParam_;
+    private final ChoiceParameter<MocImpl> mocimplParam_;
     private final OutputStreamParameter outParam_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.ttools.mode" );
 
-    /** MocFormat implementation that writes MOC 1.0-compliant FITS files. */
-    public static final MocFormat FITS_FORMAT;
-
-    /** MocFormat implementation that writes JSON files. */
-    public static final MocFormat JSON_FORMAT;
-
-    /** MocFormat implementation that writes MOC 2.0 ASCII output. */
-    public static MocFormat ASCII_FORMAT;
-
-    /** Available output formats. */
-    private static MocFormat[] FORMATS = new MocFormat[] {
-        FITS_FORMAT = new CdsMocFormat( "fits" ) {
-            protected void doWrite( SMoc moc, OutputStream out )
-                    throws Exception {
-                moc.writeFITS( out );
-            }
-        },
-        JSON_FORMAT = new CdsMocFormat( "json" ) {
-            protected void doWrite( SMoc moc, OutputStream out )
-                    throws Exception {
-                moc.writeJSON( out );
-            }
-        },
-        ASCII_FORMAT = new CdsMocFormat( "ascii" ) {
-            protected void doWrite( SMoc moc, OutputStream out )
-                    throws Exception {
-                moc.writeASCII( out );
-                out.write( '\n' );
-            }
-        },
-    };
-
     /**
      * Constructor.
      */
@@ -121,15 +95,41 @@ public class MocMode implements ProcessingMode {
         } );
         radiusParam_.setStringDefault( "0" );
 
-        mocfmtParam_ = new ChoiceParameter<MocFormat>( "mocfmt",
-                                                       MocFormat.class,
-                                                       FORMATS );
+        mocfmtParam_ =
+            new ChoiceParameter<MocStreamFormat>( "mocfmt",
+                                                  MocStreamFormat.FORMATS );
         mocfmtParam_.setPrompt( "Output format for MOC file" );
         mocfmtParam_.setDescription( new String[] {
             "<p>Determines the output format for the MOC file.",
             "</p>",
         } );
-        mocfmtParam_.setDefaultOption( FITS_FORMAT );
+        mocfmtParam_.setDefaultOption( MocStreamFormat.FITS );
+
+        runnerParam_ = RowRunnerParameter.createScanRunnerParameter( "runner" );
+
+        MocImpl[] mocImpls = {
+            MocImpl.AUTO,
+            MocImpl.CDS,
+            MocImpl.CDS_BATCH,
+            MocImpl.BITSET,
+            MocImpl.LIST,
+            MocImpl.DISK,
+        };
+        mocimplParam_ = new ChoiceParameter<MocImpl>( "mocimpl", mocImpls );
+        mocimplParam_.setPrompt( "MOC builder implementation" );
+        mocimplParam_.setDescription( new String[] {
+            "<p>Controls how the MOC is built.",
+            "You can generally leave this alone, but if you find performance",
+            "is slow, or you are running out of memory, it may be worth",
+            "experimenting with the options.",
+            "The <code>" + MocImpl.DISK.getName() + "</code> option",
+            "keeps memory usage bounded at high orders",
+            "by spilling tiles to temporary files.",
+            DocUtils.describedList( mocImpls, MocImpl::getName,
+                                    MocImpl::getDescription, true ),
+            "</p>",
+        } );
+        mocimplParam_.setDefaultOption( MocImpl.AUTO );
 
         outParam_ = new OutputStreamParameter( "out" );
         outParam_.setPreferExplicit( true );
@@ -143,6 +143,8 @@ public class MocMode implements ProcessingMode {
             decParam_,
             radiusParam_,
             mocfmtParam_,
+            runnerParam_,
+            mocimplParam_,
             outParam_,
         };
     }
@@ -160,124 +162,110 @@ public class MocMode implements ProcessingMode {
         String raString = raParam_.stringValue( env );
         String decString = decParam_.stringValue( env );
         String radiusString = radiusParam_.stringValue( env );
-        final QuerySequenceFactory qsFact =
+        final JELQuerySequenceFactory qsFact =
             new JELQuerySequenceFactory( raString, decString, radiusString );
         final int order = orderParam_.intValue( env );
-        final MocFormat mocfmt = mocfmtParam_.objectValue( env );
+        final MocStreamFormat mocfmt = mocfmtParam_.objectValue( env );
+        final RowRunner runner = runnerParam_.objectValue( env );
+        final MocImpl mocimpl = mocimplParam_.objectValue( env );
         final Destination dest = outParam_.objectValue( env );
         return new TableConsumer() {
             public void consume( StarTable table ) throws IOException {
-                ConeQueryRowSequence qseq = qsFact.createQuerySequence( table );
-                SMoc moc;
+                logger_.info( "New MOC order=" + order + ", resolution="
+                            + (float) ( 3520. / 60. * Math.pow( 2, -order ) )
+                            + "deg" );
+                ConeMocCollector collector =
+                    new ConeMocCollector( order, mocimpl, table, qsFact );
+                MocBuilder mocBuilder = runner.collect( collector, table );
                 try {
-                    moc = createMoc( order, qseq );
-                }
-                finally {
-                    qseq.close();
-                }
-                if ( logger_.isLoggable( Level.INFO ) ) {
-                    logger_.info( "MOC: size=" + moc.getNbCoding() 
-                                + ", coverage=" + moc.getCoverage() );
-                }
-                OutputStream out = dest.createStream();
-                try {
-                    mocfmt.writeMoc( moc, out );
+                    mocBuilder.endTiles();
+                    long[] orderCounts = mocBuilder.getOrderCounts();
+                    long ntile = 0;
+                    double cov = 0;
+                    for ( int io = 0; io < orderCounts.length; io++ ) {
+                        ntile += orderCounts[ io ];
+                        cov += orderCounts[ io ] * 1. / ( 12L << 2 * io );
+                    }
+                    if ( logger_.isLoggable( Level.INFO ) ) {
+                        logger_.info( "MOC: size=" + ntile
+                                    + ", coverage=" + cov );
+                    }
+                    int maxOrder = orderCounts.length - 1;
+                    try ( OutputStream out = dest.createStream() ) {
+                        mocfmt.writeMoc( mocBuilder.createOrderedUniqIterator(),
+                                         ntile, maxOrder, out );
+                    }
                 }
                 finally {
-                    out.close();
+                    mocBuilder.close();
                 }
             }
         };
     }
 
     /**
-     * Builds and returns a MOC from a given sequence of cones.
-     *
-     * @param  order  MOC max order
-     * @param  qseq  cone sequence
+     * Collector that accumulates the HEALPix tiles overlapping
+     * cones defined by table rows.
+     * Each split fills its own MocBuilder, and the builders are
+     * then merged.
+     * Note that {@link MocBuilder#endTiles} must be called on the
+     * collected result before use.
      */
-    private static SMoc createMoc( int order, ConeQueryRowSequence qseq )
-            throws IOException {
-        SMoc moc;
-        try {
-            moc = new SMoc( order );
-        }
-        catch ( Exception e ) {
-            throw (IOException) new IOException( "Error creating MOC"
-                                               + " (bad order " + order + "?)" )
-                               .initCause( e );
-        }
-        logger_.info( "New MOC order=" + order
-                    + ", resolution=" + (float) moc.getAngularRes() + "deg" );
-        HealpixNested hpx = Healpix.getNested( order );
-        moc.bufferOn();
-        while ( qseq.next() ) {
-            double raRad = Math.toRadians( qseq.getRa() );
-            double decRad = Math.toRadians( qseq.getDec() );
-            double radiusRad = Math.toRadians( qseq.getRadius() );
-            if ( ! Double.isNaN( raRad ) &&
-                 decRad >= -0.5 * Math.PI && decRad <= 0.5 * Math.PI &&
-                 radiusRad >= 0 ) {
-                HealpixNestedBMOC bmoc =
-                    hpx.newConeComputerApprox( radiusRad )
-                       .overlappingCells( raRad, decRad );
-                for ( HealpixNestedBMOC.CurrentValueAccessor vac : bmoc ) {
-                    try {
-                        moc.add( vac.getDepth(), vac.getHash() );
-                    }
-                    catch ( Exception e ) {
-                        throw (IOException)
-                              new IOException( "HEALPix/MOC error" )
-                             .initCause( e );
-                    }
-                }
-            }
-        }
-        moc.bufferOff();
-        return moc;
-    }
+    private static class ConeMocCollector extends RowCollector<MocBuilder> {
 
-    /**
-     * Partial MocFormat implementation.
-     */
-    private static abstract class CdsMocFormat implements MocFormat {
-
-        private final String name_;
+        private final int order_;
+        private final MocImpl mocimpl_;
+        private final StarTable table_;
+        private final JELQuerySequenceFactory qsFact_;
 
         /**
          * Constructor.
          *
-         * @param   format name
+         * @param   order  MOC max order
+         * @param   mocimpl  MOC implementation
+         * @param   table   table for which rows will be supplied
+         * @param   qsFact  turns table rows into cone queries
          */
-        CdsMocFormat( String name ) {
-            name_ = name;
+        ConeMocCollector( int order, MocImpl mocimpl, StarTable table,
+                          JELQuerySequenceFactory qsFact ) {
+            order_ = order;
+            mocimpl_ = mocimpl;
+            table_ = table;
+            qsFact_ = qsFact;
         }
 
-        /**
-         * Does the write.
-         * This method throws Exception, which is what the corresponding
-         * CDS MOC library write methods do.
-         *
-         * @param  moc  MOC
-         * @param  out  destination stream
-         */
-        protected abstract void doWrite( SMoc moc, OutputStream out )
-                throws Exception;
+        public MocBuilder createAccumulator() {
+            return mocimpl_.createMocBuilder( order_ );
+        }
 
-        public void writeMoc( SMoc moc, OutputStream out )
+        public void accumulateRows( RowSplittable rseq, MocBuilder mocBuilder )
                 throws IOException {
-            try {
-                doWrite( moc, out );
-            }
-            catch ( Exception e ) {
-                throw (IOException) new IOException( "MOC write error" )
-                                   .initCause( e );
+            HealpixNested hpx = Healpix.getNested( order_ );
+            try ( ConeQueryRowSequence qseq =
+                      qsFact_.createQuerySequence( table_, rseq ) ) {
+                while ( qseq.next() ) {
+                    double raRad = Math.toRadians( qseq.getRa() );
+                    double decRad = Math.toRadians( qseq.getDec() );
+                    double radiusRad = Math.toRadians( qseq.getRadius() );
+                    if ( ! Double.isNaN( raRad ) &&
+                         decRad >= -0.5 * Math.PI && decRad <= 0.5 * Math.PI &&
+                         radiusRad >= 0 ) {
+                        HealpixNestedBMOC bmoc =
+                            hpx.newConeComputerApprox( radiusRad )
+                               .overlappingCells( raRad, decRad );
+                        for ( HealpixNestedBMOC.CurrentValueAccessor vac :
+                              bmoc ) {
+                            mocBuilder.addTile( vac.getDepth(),
+                                                vac.getHash() );
+                        }
+                    }
+                }
             }
         }
 
-        @Override
-        public String toString() {
-            return name_;
+        public MocBuilder combine( MocBuilder b1, MocBuilder b2 ) {
+            b1.addMoc( b2 );
+            return b1;
         }
     }
 }
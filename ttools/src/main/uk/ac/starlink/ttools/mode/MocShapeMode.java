@@ -11,7 +11,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.PrimitiveIterator;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -324,6 +323,7 @@ public class MocShapeMode implements ProcessingMode {
             MocImpl.CDS_BATCH,
             MocImpl.BITSET,
             MocImpl.LIST,
+            MocImpl.DISK,
         };
         mocimplParam_ = new ChoiceParameter<MocImpl>( "mocimpl", mocImpls );
         mocimplParam_.setPrompt( "MOC builder implementation" );
@@ -430,22 +430,27 @@ public class MocShapeMode implements ProcessingMode {
                 SMocCollector collector =
                     new SMocCollector( order, mocimpl, table, areaParser );
                 MocBuilder mocBuilder = runner.collect( collector, table );
-                collector.finishMoc( mocBuilder );
-                long[] orderCounts = mocBuilder.getOrderCounts();
-                long ntile = 0;
-                double cov = 0;
-                for ( int io = 0; io < orderCounts.length; io++ ) {
-                    ntile += orderCounts[ io ];
-                    cov += orderCounts[ io ] * 1. / ( 12L << 2 * io );
-                }
-                if ( logger_.isLoggable( Level.INFO ) ) {
-                    logger_.info( "MOC: size=" + ntile
-                                + ", coverage=" + cov );
+                try {
+                    collector.finishMoc( mocBuilder );
+                    long[] orderCounts = mocBuilder.getOrderCounts();
+                    long ntile = 0;
+                    double cov = 0;
+                    for ( int io = 0; io < orderCounts.length; io++ ) {
+                        ntile += orderCounts[ io ];
+                        cov += orderCounts[ io ] * 1. / ( 12L << 2 * io );
+                    }
+                    if ( logger_.isLoggable( Level.INFO ) ) {
+                        logger_.info( "MOC: size=" + ntile
+                                    + ", coverage=" + cov );
+                    }
+                    int maxOrder = orderCounts.length - 1;
+                    try ( OutputStream out = dest.createStream() ) {
+                        mocfmt.writeMoc( mocBuilder.createOrderedUniqIterator(),
+                                         ntile, maxOrder, out );
+                    }
                 }
-                int maxOrder = orderCounts.length - 1;
-                try ( OutputStream out = dest.createStream() ) {
-                    mocfmt.writeMoc( mocBuilder.createOrderedUniqIterator(),
-                                     ntile, maxOrder, out );
+                finally {
+                    mocBuilder.close();
                 }
             }
 
@@ -743,13 +748,7 @@ public class MocShapeMode implements ProcessingMode {
         }
 
         public MocBuilder combine( MocBuilder b1, MocBuilder b2 ) {
-            b2.endTiles();
-            for ( PrimitiveIterator.OfLong it = b2.createOrderedUniqIterator();
-                  it.hasNext(); ) {
-                long uniq = it.next();
-                b1.addTile( Coverage.uniqToOrder( uniq ),
-                            Coverage.uniqToIndex( uniq ) );
-            }
+            b1.addMoc( b2 );
             return b1;
         }
 
@@ -4,6 +4,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -471,6 +472,120 @@ public class PlotScene<P,A> {
         return surfs;
     }
 
+    /**
+     * Returns a new surface for one of the zones of this scene,
+     * with a given aspect and plot bounds.
+     * The state of this scene is not affected.
+     *
+     * @param  iz   zone index
+     * @param  plotBounds   data bounds of the required surface
+     * @param  aspect    aspect of the required surface
+     * @return  new surface
+     */
+    public Surface createZoneSurface( int iz, Rectangle plotBounds,
+                                      A aspect ) {
+        return surfFact_.createSurface( plotBounds, zones_[ iz ].profile_,
+                                        aspect );
+    }
+
+    /**
+     * Returns a snapshot of the aux data ranges currently in use
+     * for one of the zones of this scene.
+     * This will be null if the scene has not yet been prepared.
+     *
+     * @param  iz  zone index
+     * @return  copy of aux span map, or null
+     */
+    public Map<AuxScale,Span> getAuxSpans( int iz ) {
+        Map<AuxScale,Span> auxSpans = zones_[ iz ].auxSpans_;
+        return auxSpans == null ? null
+                                : new HashMap<AuxScale,Span>( auxSpans );
+    }
+
+    /**
+     * Calculates the aux data ranges that would apply to the zones
+     * of this scene if they were plotted on given surfaces.
+     * The calculation is done in the same way as when the scene
+     * is prepared for painting, but the state of this scene
+     * is not affected.
+     *
+     * @param  surfaces  per-zone surfaces, typically got from
+     *                   {@link #createZoneSurface createZoneSurface}
+     * @param  dataStore  data storage object
+     * @return  per-zone array of aux span maps
+     */
+    @Slow
+    public Map<AuxScale,Span>[] calculateAuxSpans( Surface[] surfaces,
+                                                   DataStore dataStore ) {
+        @SuppressWarnings("unchecked")
+        Map<AuxScale,Span>[] spans =
+            (Map<AuxScale,Span>[]) new Map<?,?>[ nz_ ];
+        for ( int iz = 0; iz < nz_; iz++ ) {
+            Zone<P,A> zone = zones_[ iz ];
+            spans[ iz ] = calculateNonShadeSpans( zone.layers_, surfaces[ iz ],
+                                                  null, dataStore );
+            if ( zone.shadeKit_ != null ) {
+                Span shadeSpan =
+                    calculateShadeSpan( AuxScale
+                                       .pairSurfaceLayers( surfaces[ iz ],
+                                                           zone.layers_ ),
+                                        zone.shadeKit_, null, dataStore );
+                if ( shadeSpan != null ) {
+                    spans[ iz ].put( AuxScale.COLOR, shadeSpan );
+                }
+            }
+        }
+        if ( globalShadeKit_ != null ) {
+            List<Bi<Surface,PlotLayer>> surfLayers =
+                new ArrayList<Bi<Surface,PlotLayer>>();
+            for ( int iz = 0; iz < nz_; iz++ ) {
+                surfLayers.addAll( AuxScale
+                                  .pairSurfaceLayers( surfaces[ iz ],
+                                                      zones_[ iz ].layers_ ) );
+            }
+            Span shadeSpan =
+                calculateShadeSpan( surfLayers, globalShadeKit_, null,
+                                    dataStore );
+            if ( shadeSpan != null ) {
+                for ( Map<AuxScale,Span> zoneSpans : spans ) {
+                    zoneSpans.put( AuxScale.COLOR, shadeSpan );
+                }
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Returns an icon which paints the data layers of one of the zones
+     * of this scene onto a given surface, without any grid lines,
+     * axis annotation or other decorations.
+     * The icon paints at the position of the surface's plot bounds.
+     *
+     * <p>This is intended for rendering partial views of the plot,
+     * for instance tiles, which may be done concurrently from
+     * multiple threads.  The state of this scene is not affected,
+     * and plans are neither shared with nor stored for the scene's
+     * own painting.
+     *
+     * @param  iz   zone index
+     * @param  surface   surface, typically got from
+     *                   {@link #createZoneSurface createZoneSurface}
+     * @param  auxSpans  aux data ranges, typically got from
+     *                   {@link #getAuxSpans getAuxSpans}
+     * @param  dataStore  data storage object
+     * @return  data icon
+     */
+    @Slow
+    public Icon createDataIcon( int iz, Surface surface,
+                                Map<AuxScale,Span> auxSpans,
+                                DataStore dataStore ) {
+        PlotLayer[] layers = zones_[ iz ].layers_;
+        LayerOpt[] opts = PaperTypeSelector.getOpts( layers );
+        PaperType paperType = ptSel_.getPixelPaperType( opts, compositor_ );
+        return PlotUtil.createDataIcon( surface, layers, auxSpans, dataStore,
+                                        paperType, false, null );
+    }
+
     /**
      * Returns the index of the zone in whose data bounds a given point lies.
      *
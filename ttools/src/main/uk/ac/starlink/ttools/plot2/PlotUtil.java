@@ -2,6 +2,7 @@ package uk.ac.starlink.ttools.plot2;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
@@ -28,6 +29,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.Icon;
 import org.jibble.epsgraphics.EpsGraphics2D;
+import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.ttools.plot.PdfGraphicExporter;
 import uk.ac.starlink.ttools.plot.Picture;
@@ -38,7 +40,11 @@ import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
 import uk.ac.starlink.ttools.plot2.data.TupleRunner;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
+import uk.ac.starlink.ttools.plot2.paper.Compositor;
+import uk.ac.starlink.ttools.plot2.paper.PaintPaperType;
 import uk.ac.starlink.ttools.plot2.paper.PaperType;
+import uk.ac.starlink.ttools.plot2.paper.PaperTypeSelector;
+import uk.ac.starlink.ttools.plot2.paper.SortedPaperType3D;
 import uk.ac.starlink.util.SplitCollector;
 
 /**
@@ -113,6 +119,19 @@ public class PlotUtil {
     /** Minimum number of input differences that fill up a colour ramp. */
     public static final int MIN_RAMP_UNIT = 12;
 
+    /**
+     * Default maximum number of rows in a layer for vector rendering
+     * in hybrid plot output.
+     */
+    public static final long DFLT_VECTOR_LIMIT = 1_000_000;
+
+    /**
+     * Vector limit value indicating default hybrid rendering behaviour;
+     * {@link #DFLT_VECTOR_LIMIT} is used, except for depth-sorted
+     * plots, for which hybrid rendering is not done.
+     */
+    public static final long AUTO_VECTOR_LIMIT = -1;
+
     /** Amount of padding added to data ranges for axis scaling. */
     private static final double PAD_FRACTION = 0.02;
 
@@ -719,7 +738,181 @@ public class PlotUtil {
                                        DataStore dataStore, PaperType paperType,
                                        boolean cached,
                                        Collection<Object> storedPlans ) {
+        Icon dataIcon =
+            createDataIcon( placer.getSurface(), layers, auxSpans, dataStore,
+                            paperType, cached, storedPlans );
+        return placer.createPlotIcon( dataIcon ); 
+    }
+
+    /**
+     * Creates an icon which will paint a surface and the layers on it,
+     * using bitmap rendering for dense layers and vector rendering
+     * for the others.
+     *
+     * <p>Layers that plot more than <code>vectorLimit</code>
+     * points are considered dense.  The surface background,
+     * all the dense layers, and any other layers underneath the
+     * topmost dense layer, are painted to an intermediate bitmap
+     * using a pixel paper type; any layers above that are painted
+     * over the bitmap using the vector paper type.
+     * This preserves the layer stacking order exactly,
+     * and means that vector graphics output (PDF, SVG, PostScript)
+     * of plots with very many points can be produced quickly and
+     * compactly, while keeping axes, annotations and sparse overlay
+     * layers as vector graphics.
+     * For 3D plots, the vector layers are painted in front of the
+     * bitmapped ones regardless of depth; since this can give
+     * visibly wrong results, when the vector paper type is depth-sorted
+     * hybrid rendering is only done if a non-negative
+     * <code>vectorLimit</code> is given explicitly.
+     *
+     * <p>If no layers are dense, or if the vector paper type
+     * does not support overlay painting, this behaves like
+     * {@link #createPlotIcon(PlotPlacement,PlotLayer[],Map,DataStore,
+     *                        PaperType,boolean,Collection) createPlotIcon}
+     * with the vector paper type.
+     *
+     * @param  placer  plot placement
+     * @param  layers   layers constituting plot content
+     * @param  auxSpans   requested range information calculated from data
+     * @param  dataStore  data storage object
+     * @param  ptSel   paper type selector
+     * @param  compositor  compositor for pixel composition
+     * @param  vectorLimit  maximum point count for a layer to be
+     *                      vector-rendered,
+     *                      or {@link #AUTO_VECTOR_LIMIT} for default
+     * @param  storedPlans  writable collection of plan objects, or null
+     * @return   icon containing complete plot
+     */
+    @Slow
+    public static Icon createHybridPlotIcon( PlotPlacement placer,
+                                             PlotLayer[] layers,
+                                             Map<AuxScale,Span> auxSpans,
+                                             DataStore dataStore,
+                                             PaperTypeSelector ptSel,
+                                             Compositor compositor,
+                                             long vectorLimit,
+                                             Collection<Object> storedPlans ) {
+        int nl = layers.length;
+        PaperType vectorType =
+            ptSel.getVectorPaperType( PaperTypeSelector.getOpts( layers ) );
+
+        /* Use the default limit if requested, but don't do hybrid
+         * rendering by default for depth-sorted plots, since it breaks
+         * the depth ordering. */
+        if ( vectorLimit < 0 ) {
+            if ( vectorType instanceof SortedPaperType3D ) {
+                return createPlotIcon( placer, layers, auxSpans, dataStore,
+                                       vectorType, false, storedPlans );
+            }
+            vectorLimit = DFLT_VECTOR_LIMIT;
+        }
+
+        /* Work out how many layers, counting from the bottom,
+         * need to be rendered to a bitmap. */
+        int nRaster = 0;
+        for ( int il = 0; il < nl; il++ ) {
+            if ( isDenseLayer( layers[ il ], dataStore, vectorLimit ) ) {
+                nRaster = il + 1;
+            }
+        }
+        if ( nRaster == 0 || ! ( vectorType instanceof PaintPaperType ) ) {
+            return createPlotIcon( placer, layers, auxSpans, dataStore,
+                                   vectorType, false, storedPlans );
+        }
+        PlotLayer[] rasterLayers = Arrays.copyOfRange( layers, 0, nRaster );
+        PaperType rasterType =
+            ptSel.getPixelPaperType( PaperTypeSelector.getOpts( rasterLayers ),
+                                     compositor );
+        if ( nRaster == nl ) {
+            return createPlotIcon( placer, layers, auxSpans, dataStore,
+                                   rasterType, false, storedPlans );
+        }
+        logger_.info( "Hybrid rendering: " + nRaster + " bitmap layers, "
+                    + ( nl - nRaster ) + " vector layers" );
+        PlotLayer[] vectorLayers = Arrays.copyOfRange( layers, nRaster, nl );
         Surface surface = placer.getSurface();
+        Collection<Object> rasterPlans =
+            storedPlans == null ? null : new ArrayList<Object>( storedPlans );
+        Collection<Object> vectorPlans =
+            storedPlans == null ? null : new ArrayList<Object>( storedPlans );
+        final Icon rasterIcon =
+            createDataIcon( surface, rasterLayers, auxSpans, dataStore,
+                            rasterType, false, rasterPlans, false );
+        final Icon vectorIcon =
+            createDataIcon( surface, vectorLayers, auxSpans, dataStore,
+                            vectorType, false, vectorPlans, true );
+        if ( storedPlans != null ) {
+            Set<Object> plans = new HashSet<Object>( rasterPlans );
+            plans.addAll( vectorPlans );
+            storedPlans.clear();
+            storedPlans.addAll( plans );
+        }
+        Icon dataIcon = new Icon() {
+            public int getIconWidth() {
+                return rasterIcon.getIconWidth();
+            }
+            public int getIconHeight() {
+                return rasterIcon.getIconHeight();
+            }
+            public void paintIcon( Component c, Graphics g, int x, int y ) {
+                rasterIcon.paintIcon( c, g, x, y );
+                vectorIcon.paintIcon( c, g, x, y );
+            }
+        };
+        return placer.createPlotIcon( dataIcon );
+    }
+
+    /**
+     * Creates an icon which will paint the surface background and
+     * the layers on it, but no surface foreground or other decorations.
+     * The icon is positioned at the surface plot bounds.
+     * If the <code>storedPlans</code> object is supplied, it may contain
+     * plans from previous plots.  On exit, it will contain the plans
+     * used for this plot.
+     *
+     * @param  surface  plot surface
+     * @param  layers   layers constituting plot content
+     * @param  auxSpans   requested range information calculated from data
+     * @param  dataStore  data storage object
+     * @param  paperType  rendering type
+     * @param  cached  whether to cache pixels for future use
+     * @param  storedPlans  writable collection of plan objects, or null
+     * @return   icon containing plotted data
+     */
+    @Slow
+    public static Icon createDataIcon( Surface surface, PlotLayer[] layers,
+                                       Map<AuxScale,Span> auxSpans,
+                                       DataStore dataStore, PaperType paperType,
+                                       boolean cached,
+                                       Collection<Object> storedPlans ) {
+        return createDataIcon( surface, layers, auxSpans, dataStore, paperType,
+                               cached, storedPlans, false );
+    }
+
+    /**
+     * Creates an icon which will paint the layers on a surface,
+     * optionally omitting the surface background.
+     *
+     * @param  surface  plot surface
+     * @param  layers   layers constituting plot content
+     * @param  auxSpans   requested range information calculated from data
+     * @param  dataStore  data storage object
+     * @param  paperType  rendering type; must be a {@link PaintPaperType}
+     *                    if <code>overlay</code> is true
+     * @param  cached  whether to cache pixels for future use
+     *                 (ignored if <code>overlay</code> is true)
+     * @param  storedPlans  writable collection of plan objects, or null
+     * @param  overlay  if true, the background is not painted
+     * @return   icon containing plotted data
+     */
+    @Slow
+    private static Icon createDataIcon( Surface surface, PlotLayer[] layers,
+                                        Map<AuxScale,Span> auxSpans,
+                                        DataStore dataStore,
+                                        PaperType paperType, boolean cached,
+                                        Collection<Object> storedPlans,
+                                        boolean overlay ) {
         int nl = layers.length;
         logger_.info( "Layers: " + nl + ", Paper: " + paperType );
         Drawing[] drawings = new Drawing[ nl ];
@@ -740,8 +933,11 @@ public class PlotUtil {
             storedPlans.addAll( new HashSet<Object>( Arrays.asList( plans ) ) );
         }
         Icon dataIcon =
-            paperType.createDataIcon( surface, drawings, plans, dataStore,
-                                      cached );
+              overlay
+            ? ((PaintPaperType) paperType)
+             .createOverlayIcon( surface, drawings, plans, dataStore )
+            : paperType.createDataIcon( surface, drawings, plans, dataStore,
+                                        cached );
         if ( logger_.isLoggable( REPORT_LEVEL ) ) {
             for ( int il = 0; il < nl; il++ ) {
                 ReportMap report = drawings[ il ].getReport( plans[ il ] );
@@ -759,7 +955,38 @@ public class PlotUtil {
                 }
             }
         }
-        return placer.createPlotIcon( dataIcon ); 
+        return dataIcon;
+    }
+
+    /**
+     * Indicates whether a layer plots more than a given number of points.
+     * Tuples are counted from the data store, so that row subsets
+     * are taken into account, stopping as soon as the limit is exceeded.
+     * If the source table row count is known not to exceed the limit,
+     * no counting is required.
+     *
+     * @param  layer  plot layer
+     * @param  dataStore  data storage object
+     * @param  limit   maximum point count for a non-dense layer
+     * @return   true iff layer plots more than limit points
+     */
+    private static boolean isDenseLayer( PlotLayer layer, DataStore dataStore,
+                                         long limit ) {
+        DataSpec dataSpec = layer.getDataSpec();
+        StarTable table = dataSpec == null ? null : dataSpec.getSourceTable();
+        if ( table == null ) {
+            return false;
+        }
+        long nrow = table.getRowCount();
+        if ( nrow >= 0 && nrow <= limit ) {
+            return false;
+        }
+        TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
+        long count = 0;
+        while ( count <= limit && tseq.next() ) {
+            count++;
+        }
+        return count > limit;
     }
 
     /**
@@ -25,6 +25,7 @@ import uk.ac.starlink.ttools.plot2.LayerOpt;
 import uk.ac.starlink.ttools.plot2.PlotLayer;
 import uk.ac.starlink.ttools.plot2.PlotUtil;
 import uk.ac.starlink.ttools.plot2.Ranger;
+import uk.ac.starlink.ttools.plot2.ReportMap;
 import uk.ac.starlink.ttools.plot2.Scaler;
 import uk.ac.starlink.ttools.plot2.Scaling;
 import uk.ac.starlink.ttools.plot2.Span;
@@ -91,8 +92,13 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
                 "in the sequence in which they appear in the table.",
                 "If the points already appear in the table sorted",
                 "according to the corresponding coordinate,",
-                "this option has no visible effect,",
-                "though it may slow things down.",
+                "this option has no visible effect.",
+                "Large lines are drawn efficiently if this option is set,",
+                "or if it is not set and the table is already in",
+                "ascending order of the X coordinate,",
+                "since only the visible part needs to be drawn,",
+                "and it can be simplified where there are many",
+                "points per pixel.",
                 "</p>",
             } ), AxisOpt.class, new AxisOpt[] { null, AxisOpt.X, AxisOpt.Y },
                  (AxisOpt) null, true ) {
@@ -127,8 +133,12 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
                 "that's fine if the rows are already sorted in time order,",
                 "but may result in a scribble if they are not.",
                 "If the points already appear in the table in time order,",
-                "this option has no visible effect,",
-                "but selecting it may slow things down.",
+                "this option has no visible effect.",
+                "Large time-ordered lines are drawn efficiently",
+                "whether or not this option is selected,",
+                "since only the visible part needs to be drawn,",
+                "and it can be simplified where there are many",
+                "points per pixel.",
                 "</p>",
             } ), AxisOpt.class, new AxisOpt[] { AxisOpt.TIME, null, },
                  (AxisOpt) null, true ) {
@@ -249,12 +259,32 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
                 else {
                     ckitFact = () -> new FixedColorKit( baseColor );
                 }
-                return new UnplannedDrawing() {
-                    protected void paintData( Paper paper,
-                                              final DataStore dataStore ) {
+                final boolean usePlan = ! hasAux;
+                return new Drawing() {
+                    public Object calculatePlan( Object[] knownPlans,
+                                                 DataStore dataStore ) {
+                        if ( usePlan ) {
+                            for ( Object plan : knownPlans ) {
+                                if ( plan instanceof LineSortPlan &&
+                                     ((LineSortPlan) plan)
+                                    .matches( geom, dataSpec, sortaxis ) ) {
+                                    return plan;
+                                }
+                            }
+                            return LineSortPlan
+                                  .calculatePlan( geom, dataSpec, icPos,
+                                                  sortaxis, dataStore );
+                        }
+                        else {
+                            return null;
+                        }
+                    }
+                    public void paintData( final Object plan, Paper paper,
+                                           final DataStore dataStore ) {
                         paperType.placeDecal( paper, new Decal() {
                             public void paintDecal( Graphics g ) {
-                                paintLines( surface, dataStore, ckitFact,
+                                paintLines( surface, dataStore,
+                                            (LineSortPlan) plan, ckitFact,
                                             g, paperType );
                             }
                             public boolean isOpaque() {
@@ -262,6 +292,9 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
                             }
                         } );
                     }
+                    public ReportMap getReport( Object plan ) {
+                        return null;
+                    }
                 };
             }
 
@@ -298,11 +331,13 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
              *
              * @param  surface  plot surface
              * @param  dataStore  data store
+             * @param  plan   sorted point plan, or null
              * @param  ckitFact  colouring policy
              * @param  g   graphics context
              * @param  paperType  paper type
              */
             private void paintLines( Surface surface, DataStore dataStore,
+                                     LineSortPlan plan,
                                      Supplier<ColorKit> ckitFact, Graphics g,
                                      PaperType paperType ) {
                 LineTracer tracer =
@@ -310,7 +345,16 @@ public class LinePlotter extends AbstractPlotter<LinePlotter.LinesStyle> {
                                     style.getStroke(), style.getAntialias(),
                                     10240, paperType.isBitmap() );
                 AxisOpt sortaxis = style.sortaxis_;
-                if ( sortaxis == null ) {
+                if ( plan != null && plan.isOrdered() ) {
+                    boolean isPixelExact =
+                        LineSortPlan
+                       .isPixelExact( g, style.getStroke(),
+                                      style.getAntialias(),
+                                      paperType.isBitmap() );
+                    plan.traceLine( surface, style.getColor(), tracer,
+                                    isPixelExact );
+                }
+                else if ( sortaxis == null ) {
                     TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
                     ColorKit colorKit = ckitFact.get();
                     double[] dpos = new double[ surface.getDataDimCount() ];
@@ -0,0 +1,1009 @@
+package uk.ac.starlink.ttools.plot2.layer;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import uk.ac.starlink.ttools.plot2.DataGeom;
+import uk.ac.starlink.ttools.plot2.PlotUtil;
+import uk.ac.starlink.ttools.plot2.Surface;
+import uk.ac.starlink.ttools.plot2.data.DataSpec;
+import uk.ac.starlink.ttools.plot2.data.DataStore;
+import uk.ac.starlink.ttools.plot2.data.TupleSequence;
+import uk.ac.starlink.util.DoubleList;
+import uk.ac.starlink.util.SplitCollector;
+
+/**
+ * Drawing plan for a line plot in which the points are joined in order
+ * of one of the data coordinates.
+ * It stores the data positions of all the points sorted along the
+ * sort axis, so it depends only on the data and not on the plot surface,
+ * and may be reused when the plot is panned or zoomed.
+ *
+ * <p>At paint time only the points within the visible range of the
+ * sort axis, plus one either side, are considered.
+ * In addition, for 1-pixel solid non-antialiased lines on bitmapped
+ * paper, if the number of visible points is much larger than the
+ * number of pixels along the sort axis,
+ * the points are aggregated by pixel column along the sort axis:
+ * for each column only the first and last points, the points in the
+ * highest and lowest rows, and the neighbours of those, are passed to
+ * the line tracer (a variant of M4 aggregation).
+ * All points are drawn at their true positions,
+ * and the result is identical pixel for pixel to drawing the line
+ * through every point, but the drawing cost scales roughly with the
+ * plot width rather than the number of points.
+ *
+ * <p>The plan works with 2-dimensional data positions for which the
+ * sort axis value is one of the data coordinates,
+ * as for Plane and Time plots.
+ * A plan may also be made with no sort axis, for points joined in
+ * table order.  In that case it can only be used if the points
+ * already appear in ascending order of the horizontal coordinate,
+ * which is common for time series; this is reported by the
+ * {@link #isOrdered} method.
+ */
+public class LineSortPlan {
+
+    private final DataGeom geom_;
+    private final DataSpec dataSpec_;
+    private final AxisOpt sortaxis_;
+    private final int kdim_;
+    private final double[] keys_;
+    private final double[] others_;
+
+    /**
+     * Minimum number of visible points per pixel along the sort axis
+     * for which aggregation is used.
+     */
+    private static final int AGGREGATE_FACTOR = 4;
+
+    /**
+     * Constructor.
+     *
+     * @param  geom  data geom
+     * @param  dataSpec  data specification
+     * @param  sortaxis   sort axis, or null for table order
+     * @param  kdim   index of the data coordinate along the sort axis
+     * @param  keys   sort axis data coordinates in ascending order,
+     *                or null if the points are not ordered
+     * @param  others  other data coordinates, in the same order as keys,
+     *                 or null if the points are not ordered
+     */
+    LineSortPlan( DataGeom geom, DataSpec dataSpec, AxisOpt sortaxis,
+                  int kdim, double[] keys, double[] others ) {
+        geom_ = geom;
+        dataSpec_ = dataSpec;
+        sortaxis_ = sortaxis;
+        kdim_ = kdim;
+        keys_ = keys;
+        others_ = others;
+    }
+
+    /**
+     * Indicates whether this plan can be used for a given drawing.
+     *
+     * @param  geom  data geom
+     * @param  dataSpec  data specification
+     * @param  sortaxis   sort axis, or null for table order
+     * @return   true iff this plan matches the arguments
+     */
+    public boolean matches( DataGeom geom, DataSpec dataSpec,
+                            AxisOpt sortaxis ) {
+        return geom_.equals( geom )
+            && dataSpec_.equals( dataSpec )
+            && sortaxis_ == sortaxis;
+    }
+
+    /**
+     * Returns the axis along which this plan's points are sorted.
+     *
+     * @return  sort axis, or null for table order
+     */
+    public AxisOpt getSortAxis() {
+        return sortaxis_;
+    }
+
+    /**
+     * Indicates whether this plan can be used to draw its line.
+     * This is always true if there is a sort axis;
+     * if there is not, it is true only if the points appear in the
+     * table in ascending order of the horizontal coordinate.
+     * If false, the plan stores no points,
+     * and the line must be drawn some other way.
+     *
+     * @return  true iff points are stored in ascending order
+     */
+    public boolean isOrdered() {
+        return keys_ != null;
+    }
+
+    /**
+     * Returns the number of points stored in this plan.
+     *
+     * @return  point count
+     */
+    public int getPointCount() {
+        return keys_ == null ? 0 : keys_.length;
+    }
+
+    /**
+     * Feeds the points required to draw this plan's line
+     * to a given line tracer.
+     * The caller is responsible for flushing the tracer afterwards.
+     * This may only be called if {@link #isOrdered} returns true.
+     *
+     * @param  surface  plot surface
+     * @param  color   line colour
+     * @param  tracer   line tracer
+     * @param  isPixelExact  true if the graphics context into which
+     *                       the tracer paints is pixel-exact
+     *                       as determined by {@link #isPixelExact
+     *                       isPixelExact}; in that case, if the visible
+     *                       points are dense enough, they are
+     *                       aggregated by pixel column
+     */
+    public void traceLine( Surface surface, Color color, LineTracer tracer,
+                           boolean isPixelExact ) {
+        double[] krange = getSortRange( surface );
+        int[] irange = getIndexRange( surface, krange );
+        Rectangle bounds = surface.getPlotBounds();
+        long npix = kdim_ == 0 ? bounds.width : bounds.height;
+        boolean isDense =
+            irange[ 1 ] - irange[ 0 ] > AGGREGATE_FACTOR * npix;
+        traceRange( surface, color, tracer, krange, irange,
+                    isPixelExact && isDense );
+    }
+
+    /**
+     * Feeds the points required to draw this plan's line
+     * to a given line tracer, with explicit control of aggregation.
+     *
+     * @param  surface  plot surface
+     * @param  color   line colour
+     * @param  tracer   line tracer
+     * @param  aggregate  if true, points are aggregated by pixel column
+     */
+    void traceVisible( Surface surface, Color color, LineTracer tracer,
+                       boolean aggregate ) {
+        double[] krange = getSortRange( surface );
+        int[] irange = getIndexRange( surface, krange );
+        traceRange( surface, color, tracer, krange, irange, aggregate );
+    }
+
+    /**
+     * Returns the sort axis data coordinates at either end of the
+     * visible range of the sort axis.
+     * The range is padded by a couple of pixels
+     * so there is no doubt that points outside it are outside the clip.
+     * The first element is greater than the second if the axis
+     * is inverted.
+     *
+     * @param  surface  plot surface
+     * @return  2-element array giving sort axis coordinates at the
+     *          start and end of the graphics range, either may be NaN
+     */
+    private double[] getSortRange( Surface surface ) {
+        boolean isX = kdim_ == 0;
+        Rectangle bounds = surface.getPlotBounds();
+        double g0 = ( isX ? bounds.x : bounds.y ) - 2;
+        double g1 = ( isX ? bounds.x + bounds.width
+                          : bounds.y + bounds.height ) + 2;
+        double gmid = isX ? bounds.getCenterY() : bounds.getCenterX();
+        Point2D.Double gp0 = isX ? new Point2D.Double( g0, gmid )
+                                 : new Point2D.Double( gmid, g0 );
+        Point2D.Double gp1 = isX ? new Point2D.Double( g1, gmid )
+                                 : new Point2D.Double( gmid, g1 );
+        return new double[] {
+            surface.graphicsToData( gp0, null )[ kdim_ ],
+            surface.graphicsToData( gp1, null )[ kdim_ ],
+        };
+    }
+
+    /**
+     * Returns the index range of points that need to be traced
+     * to draw the visible part of the line.
+     * This is the points within the visible range of the sort axis,
+     * plus the nearest plottable point either side.
+     *
+     * @param  surface  plot surface
+     * @param  krange   visible sort axis range from {@link #getSortRange}
+     * @return  2-element array giving (lower inclusive, upper exclusive)
+     *          point index bounds
+     */
+    private int[] getIndexRange( Surface surface, double[] krange ) {
+        int np = keys_.length;
+        double k0 = krange[ 0 ];
+        double k1 = krange[ 1 ];
+        int ilo;
+        int ihi;
+        if ( Double.isNaN( k0 ) || Double.isNaN( k1 ) ) {
+            ilo = 0;
+            ihi = np;
+        }
+        else {
+            ilo = lowerBound( keys_, Math.min( k0, k1 ) );
+            ihi = upperBound( keys_, Math.max( k0, k1 ) );
+        }
+
+        /* Extend the range to include the nearest plottable point
+         * either side, since the line segments joining them to the
+         * visible points may be visible. */
+        double[] dpos = new double[ 2 ];
+        Point2D.Double gp = new Point2D.Double();
+        if ( ilo > 0 ) {
+            ilo--;
+            while ( ilo > 0 && ! toGraphics( surface, ilo, dpos, gp ) ) {
+                ilo--;
+            }
+        }
+        if ( ihi < np ) {
+            while ( ihi < np - 1 && ! toGraphics( surface, ihi, dpos, gp ) ) {
+                ihi++;
+            }
+            ihi++;
+        }
+
+        /* The tracer ignores a point in the same pixel as the point
+         * before it, so extend the range further if necessary to make
+         * sure that the first point traced is one that would not be
+         * ignored if the whole line was traced, otherwise the line
+         * would start from a different place.
+         * If the traversal is reversed, points are traced in descending
+         * order of key, but runs of equal keys in ascending order,
+         * so in that case keep whole runs in the range. */
+        if ( isReversed( krange ) ) {
+            while ( ilo > 0 && keys_[ ilo - 1 ] == keys_[ ilo ] ) {
+                ilo--;
+            }
+            while ( ihi < np && keys_[ ihi ] == keys_[ ihi - 1 ] ) {
+                ihi++;
+            }
+            int ifirst = firstTraced( surface, ilo, ihi, true );
+            while ( ifirst >= 0 && ihi < np ) {
+                int jhi = ihi + 1;
+                while ( jhi < np && keys_[ jhi ] == keys_[ ihi ] ) {
+                    jhi++;
+                }
+                int ipred = lastTraced( surface, ihi, jhi );
+                if ( ipred < 0 || isSamePixel( surface, ipred, ifirst ) ) {
+                    ihi = jhi;
+                    if ( ipred >= 0 ) {
+                        ifirst = firstTraced( surface, ilo, ihi, true );
+                    }
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        else {
+            int ifirst = firstTraced( surface, ilo, ihi, false );
+            while ( ifirst >= 0 && ilo > 0 ) {
+                int ipred = ilo - 1;
+                boolean isPlottable = toGraphics( surface, ipred, dpos, gp );
+                if ( ! isPlottable || isSamePixel( surface, ipred, ifirst ) ) {
+                    ilo = ipred;
+                    if ( isPlottable ) {
+                        ifirst = ipred;
+                    }
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        return new int[] { ilo, ihi };
+    }
+
+    /**
+     * Indicates whether points are traced in descending order of key.
+     * That is the case if the sort axis is inverted, so that the line
+     * is traced in ascending graphics order, as for a sorted list of
+     * graphics positions.
+     * Without a sort axis, the table order is always retained.
+     *
+     * @param  krange   visible sort axis range from {@link #getSortRange}
+     * @return  true iff traversal is in reverse order
+     */
+    private boolean isReversed( double[] krange ) {
+        return sortaxis_ != null && krange[ 0 ] > krange[ 1 ];
+    }
+
+    /**
+     * Returns the index of the first plottable point that will be traced
+     * from a given index range.
+     *
+     * @param  surface  plot surface
+     * @param  ilo  lower index bound (inclusive)
+     * @param  ihi  upper index bound (exclusive)
+     * @param  isInverted  true if points are traced in descending order
+     *                     of key, with runs of equal keys ascending;
+     *                     in that case the range must contain whole runs
+     * @return   index of first traced point, or -1 if there is none
+     */
+    private int firstTraced( Surface surface, int ilo, int ihi,
+                             boolean isInverted ) {
+        double[] dpos = new double[ 2 ];
+        Point2D.Double gp = new Point2D.Double();
+        if ( isInverted ) {
+            int jhi = ihi;
+            while ( jhi > ilo ) {
+                int jlo = jhi - 1;
+                while ( jlo > ilo && keys_[ jlo - 1 ] == keys_[ jhi - 1 ] ) {
+                    jlo--;
+                }
+                for ( int ip = jlo; ip < jhi; ip++ ) {
+                    if ( toGraphics( surface, ip, dpos, gp ) ) {
+                        return ip;
+                    }
+                }
+                jhi = jlo;
+            }
+        }
+        else {
+            for ( int ip = ilo; ip < ihi; ip++ ) {
+                if ( toGraphics( surface, ip, dpos, gp ) ) {
+                    return ip;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last plottable point in a given
+     * index range, traced in ascending order.
+     *
+     * @param  surface  plot surface
+     * @param  ilo  lower index bound (inclusive)
+     * @param  ihi  upper index bound (exclusive)
+     * @return   index of last traced point, or -1 if there is none
+     */
+    private int lastTraced( Surface surface, int ilo, int ihi ) {
+        double[] dpos = new double[ 2 ];
+        Point2D.Double gp = new Point2D.Double();
+        for ( int ip = ihi - 1; ip >= ilo; ip-- ) {
+            if ( toGraphics( surface, ip, dpos, gp ) ) {
+                return ip;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether two of this plan's points fall in the same pixel,
+     * in the sense used by the line tracer to discard repeated points.
+     *
+     * @param  surface  plot surface
+     * @param  ip1  index of first point, which must be plottable
+     * @param  ip2  index of second point, which must be plottable
+     * @return   true iff both points are in the same pixel
+     */
+    private boolean isSamePixel( Surface surface, int ip1, int ip2 ) {
+        double[] dpos = new double[ 2 ];
+        Point2D.Double gp1 = new Point2D.Double();
+        Point2D.Double gp2 = new Point2D.Double();
+        toGraphics( surface, ip1, dpos, gp1 );
+        toGraphics( surface, ip2, dpos, gp2 );
+        return PlotUtil.ifloor( gp1.x ) == PlotUtil.ifloor( gp2.x )
+            && PlotUtil.ifloor( gp1.y ) == PlotUtil.ifloor( gp2.y );
+    }
+
+    /**
+     * Feeds a given range of points to a line tracer.
+     *
+     * @param  surface  plot surface
+     * @param  color   line colour
+     * @param  tracer   line tracer
+     * @param  krange   visible sort axis range from {@link #getSortRange}
+     * @param  irange   point index range from {@link #getIndexRange}
+     * @param  aggregate  if true, points are aggregated by pixel column
+     */
+    private void traceRange( Surface surface, Color color,
+                             final LineTracer tracer, double[] krange,
+                             int[] irange, boolean aggregate ) {
+        boolean isX = kdim_ == 0;
+        Rectangle bounds = surface.getPlotBounds();
+        int ilo = irange[ 0 ];
+        int ihi = irange[ 1 ];
+        double[] dpos = new double[ 2 ];
+        Point2D.Double gp = new Point2D.Double();
+
+        /* Pass the points to the tracer, either directly or via
+         * an aggregator, in ascending order of graphics coordinate.
+         * That is descending data order if the axis is inverted;
+         * in that case runs of equal data values are still traversed
+         * in ascending order, to match a stable sort of graphics positions.
+         * Without a sort axis they are passed in table order. */
+        final ColumnAggregator agg;
+        final VertexSink sink;
+        if ( aggregate ) {
+            agg = new ColumnAggregator( tracer, color, isX, bounds );
+            sink = agg::addVertex;
+        }
+        else {
+            agg = null;
+            sink = ( gx, gy ) -> tracer.addVertex( gx, gy, color );
+        }
+        if ( isReversed( krange ) ) {
+            int ip = ihi;
+            while ( ip > ilo ) {
+                int jhi = ip;
+                int jlo = ip - 1;
+                while ( jlo > ilo && keys_[ jlo - 1 ] == keys_[ jhi - 1 ] ) {
+                    jlo--;
+                }
+                for ( int jp = jlo; jp < jhi; jp++ ) {
+                    if ( toGraphics( surface, jp, dpos, gp ) ) {
+                        sink.addVertex( gp.x, gp.y );
+                    }
+                }
+                ip = jlo;
+            }
+        }
+        else {
+            for ( int ip = ilo; ip < ihi; ip++ ) {
+                if ( toGraphics( surface, ip, dpos, gp ) ) {
+                    sink.addVertex( gp.x, gp.y );
+                }
+            }
+        }
+        if ( agg != null ) {
+            agg.flush();
+        }
+    }
+
+    /**
+     * Determines the graphics position of one of this plan's points.
+     *
+     * @param  surface  plot surface
+     * @param  ip   point index
+     * @param  dpos  2-element workspace array
+     * @param  gp   point to receive graphics position
+     * @return   true iff the point is plottable
+     */
+    private boolean toGraphics( Surface surface, int ip, double[] dpos,
+                                Point2D.Double gp ) {
+        dpos[ kdim_ ] = keys_[ ip ];
+        dpos[ 1 - kdim_ ] = others_[ ip ];
+        return surface.dataToGraphics( dpos, false, gp )
+            && PlotUtil.isPointReal( gp );
+    }
+
+    /**
+     * Calculates a plan.
+     * Null is returned if the positions cannot be represented by
+     * this class.
+     * If no sort axis is given and the points are not in ascending
+     * order of the horizontal coordinate, the returned plan is not
+     * {@link #isOrdered ordered}.
+     *
+     * @param  geom  data geom
+     * @param  dataSpec  data specification
+     * @param  icPos   index of position coordinate in dataSpec
+     * @param  sortaxis   sort axis, or null for table order
+     * @param  dataStore   data storage
+     * @return   new plan, or null
+     */
+    public static LineSortPlan calculatePlan( final DataGeom geom,
+                                              DataSpec dataSpec,
+                                              final int icPos,
+                                              AxisOpt sortaxis,
+                                              DataStore dataStore ) {
+        if ( geom.getDataDimCount() != 2 ) {
+            return null;
+        }
+        final int kdim = sortaxis == AxisOpt.Y ? 1 : 0;
+        SplitCollector<TupleSequence,DoubleList[]> collector =
+                new SplitCollector<TupleSequence,DoubleList[]>() {
+            public DoubleList[] createAccumulator() {
+                return new DoubleList[] { new DoubleList(), new DoubleList() };
+            }
+            public void accumulate( TupleSequence tseq, DoubleList[] lists ) {
+                double[] dpos = new double[ 2 ];
+                while ( tseq.next() ) {
+                    if ( geom.readDataPos( tseq, icPos, dpos ) &&
+                         ! Double.isNaN( dpos[ kdim ] ) ) {
+                        lists[ 0 ].add( dpos[ kdim ] );
+                        lists[ 1 ].add( dpos[ 1 - kdim ] );
+                    }
+                }
+            }
+            public DoubleList[] combine( DoubleList[] lists1,
+                                         DoubleList[] lists2 ) {
+                lists1[ 0 ].addAll( lists2[ 0 ] );
+                lists1[ 1 ].addAll( lists2[ 1 ] );
+                return lists1;
+            }
+        };
+        DoubleList[] lists =
+            PlotUtil.tupleCollect( collector, dataSpec, dataStore );
+        double[] keys = lists[ 0 ].toDoubleArray();
+        double[] others = lists[ 1 ].toDoubleArray();
+        if ( sortaxis == null ) {
+            return isAscending( keys )
+                 ? new LineSortPlan( geom, dataSpec, null, kdim, keys, others )
+                 : new LineSortPlan( geom, dataSpec, null, kdim, null, null );
+        }
+        int[] index = sortIndex( keys );
+        if ( index != null ) {
+            keys = permute( keys, index );
+            others = permute( others, index );
+        }
+        return new LineSortPlan( geom, dataSpec, sortaxis, kdim,
+                                 keys, others );
+    }
+
+    /**
+     * Indicates whether line drawing with a given graphics context and
+     * line style is pixel-exact in the sense required for
+     * aggregated line tracing.
+     * That requires bitmapped output, no antialiasing,
+     * a solid line of width no more than one pixel,
+     * stroke normalisation,
+     * and graphics coordinates differing from device coordinates
+     * by at most an integer translation.
+     *
+     * @param  g  graphics context
+     * @param  stroke   line stroke
+     * @param  antialias   whether lines will be antialiased
+     * @param  isBitmap   whether the paper is bitmapped
+     * @return   true iff aggregated tracing will give the same result
+     *           as full tracing
+     */
+    public static boolean isPixelExact( Graphics g, Stroke stroke,
+                                        boolean antialias, boolean isBitmap ) {
+        if ( ! isBitmap || antialias || ! ( stroke instanceof BasicStroke ) ||
+             ! ( g instanceof Graphics2D ) ) {
+            return false;
+        }
+        BasicStroke bstroke = (BasicStroke) stroke;
+        if ( bstroke.getLineWidth() > 1 || bstroke.getDashArray() != null ) {
+            return false;
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        if ( RenderingHints.VALUE_STROKE_PURE
+            .equals( g2.getRenderingHint( RenderingHints
+                                         .KEY_STROKE_CONTROL ) ) ) {
+            return false;
+        }
+        AffineTransform trans = g2.getTransform();
+        return ( trans.getType() & ~AffineTransform.TYPE_TRANSLATION ) == 0
+            && trans.getTranslateX() == Math.rint( trans.getTranslateX() )
+            && trans.getTranslateY() == Math.rint( trans.getTranslateY() );
+    }
+
+    /**
+     * Returns the index of the first element of a sorted array
+     * which is not less than a given value.
+     *
+     * @param  array  sorted array
+     * @param  value  test value
+     * @return   lower bound index
+     */
+    private static int lowerBound( double[] array, double value ) {
+        int lo = 0;
+        int hi = array.length;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( array[ mid ] < value ) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first element of a sorted array
+     * which is greater than a given value.
+     *
+     * @param  array  sorted array
+     * @param  value  test value
+     * @return   upper bound index
+     */
+    private static int upperBound( double[] array, double value ) {
+        int lo = 0;
+        int hi = array.length;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( array[ mid ] <= value ) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns a permutation that stably sorts a given array.
+     * If the array is already sorted, which is common for time series,
+     * null is returned.
+     *
+     * @param  keys  array of non-NaN values
+     * @return   index array giving sorted order, or null for identity
+     */
+    static int[] sortIndex( double[] keys ) {
+        if ( isAscending( keys ) ) {
+            return null;
+        }
+        int n = keys.length;
+
+        /* Bottom-up merge sort on the index array. */
+        int[] src = new int[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            src[ i ] = i;
+        }
+        int[] dst = new int[ n ];
+        for ( int width = 1; width < n; width *= 2 ) {
+            for ( int lo = 0; lo < n; lo += 2 * width ) {
+                int mid = Math.min( lo + width, n );
+                int hi = Math.min( lo + 2 * width, n );
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while ( i < mid && j < hi ) {
+                    dst[ k++ ] = keys[ src[ j ] ] < keys[ src[ i ] ]
+                               ? src[ j++ ]
+                               : src[ i++ ];
+                }
+                while ( i < mid ) {
+                    dst[ k++ ] = src[ i++ ];
+                }
+                while ( j < hi ) {
+                    dst[ k++ ] = src[ j++ ];
+                }
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        return src;
+    }
+
+    /**
+     * Indicates whether an array is in non-descending order.
+     *
+     * @param  keys  array of non-NaN values
+     * @return   true iff the array is sorted
+     */
+    private static boolean isAscending( double[] keys ) {
+        for ( int i = 1; i < keys.length; i++ ) {
+            if ( keys[ i - 1 ] > keys[ i ] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a permuted copy of an array.
+     *
+     * @param  array  input array
+     * @param  index  permutation
+     * @return  array with element i equal to array[index[i]]
+     */
+    private static double[] permute( double[] array, int[] index ) {
+        int n = index.length;
+        double[] out = new double[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            out[ i ] = array[ index[ i ] ];
+        }
+        return out;
+    }
+
+    /**
+     * Receives graphics positions.
+     */
+    @FunctionalInterface
+    private interface VertexSink {
+
+        /**
+         * Accepts a point.
+         *
+         * @param  gx  graphics X coordinate
+         * @param  gy  graphics Y coordinate
+         */
+        void addVertex( double gx, double gy );
+    }
+
+    /**
+     * Accepts a sequence of graphics positions ordered along one
+     * graphics axis, and passes a subset of them to a LineTracer
+     * so that the painted pixels are the same as if all had been passed.
+     *
+     * <p>Points are passed on at their true positions.
+     * Points that the tracer would ignore, because they fall in the
+     * same pixel as the previous point it accepted, are discarded
+     * here instead, so the remaining sequence is just the one that
+     * the tracer would draw.
+     * Those points are grouped into the pixel columns along the sort axis
+     * in which the line rasterizer paints them.
+     * Within a column, the line passes through every pixel between
+     * the extreme rows, so only the pixels in the extreme rows
+     * depend on the details of the segments.
+     * Those pixels can only be painted by segments ending at points
+     * in those rows, so for each column the first and last points
+     * are emitted, along with all the points in the first and last rows
+     * and their immediate neighbours in the sequence.
+     * Every segment that can paint a pixel in the extreme rows,
+     * or join the column to its neighbours, is therefore the same
+     * as in the full line, and the other segments lie between
+     * the extreme rows.
+     * Points so far from the plot bounds that the tracer might relocate
+     * them, and points in the columns at the edges of the plot bounds,
+     * are passed straight through, breaking the column.
+     */
+    private static class ColumnAggregator {
+
+        private final LineTracer tracer_;
+        private final Color color_;
+        private final boolean isX_;
+        private final double xmid_;
+        private final double ymid_;
+        private final double farDist_;
+        private final double ulo_;
+        private final double uhi_;
+        private final RowBand minBand_;
+        private final RowBand maxBand_;
+        private boolean hasPrev_;
+        private double prevX_;
+        private double prevY_;
+        private int prevIx_;
+        private int prevIy_;
+        private long iseq_;
+        private boolean hasCol_;
+        private double ucol_;
+        private long firstSeq_;
+        private double firstX_;
+        private double firstY_;
+        private long lastSeq_;
+        private double lastX_;
+        private double lastY_;
+        private long emitSeq_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tracer  destination line tracer
+         * @param  color   line colour
+         * @param  isX    true for columns along X axis,
+         *                false for rows along Y axis
+         * @param  bounds  plot bounds
+         */
+        ColumnAggregator( LineTracer tracer, Color color, boolean isX,
+                          Rectangle bounds ) {
+            tracer_ = tracer;
+            color_ = color;
+            isX_ = isX;
+            xmid_ = bounds.getCenterX();
+            ymid_ = bounds.getCenterY();
+            farDist_ = 10 * Math.max( 1, Math.max( bounds.width,
+                                                   bounds.height ) );
+            ulo_ = isX ? bounds.x : bounds.y;
+            uhi_ = ulo_ + ( isX ? bounds.width : bounds.height );
+            minBand_ = new RowBand();
+            maxBand_ = new RowBand();
+        }
+
+        /**
+         * Adds a point.
+         *
+         * @param  gx  graphics X coordinate
+         * @param  gy  graphics Y coordinate
+         */
+        void addVertex( double gx, double gy ) {
+
+            /* Discard points that the tracer would ignore. */
+            int ix = PlotUtil.ifloor( gx );
+            int iy = PlotUtil.ifloor( gy );
+            if ( hasPrev_ && ix == prevIx_ && iy == prevIy_ ) {
+                return;
+            }
+            long iseq = ++iseq_;
+            if ( hasCol_ ) {
+                minBand_.setSuccessor( iseq, gx, gy );
+                maxBand_.setSuccessor( iseq, gx, gy );
+            }
+
+            /* Work out the pixel column and row in which the
+             * (stroke-normalised) rasterizer paints the point. */
+            double u = Math.floor( ( isX_ ? gx : gy ) + 0.5 );
+            double r = Math.floor( ( isX_ ? gy : gx ) + 0.5 );
+
+            /* Points a long way off are passed straight through,
+             * as are points in the columns on the edge of the plot bounds,
+             * since the tracer omits segments between points
+             * outside the bounds, but those columns contain points
+             * both inside and outside them. */
+            if ( ! ( Math.abs( gx - xmid_ ) < farDist_ &&
+                     Math.abs( gy - ymid_ ) < farDist_ ) ||
+                 u == ulo_ || u == uhi_ ) {
+                flush();
+                emit( iseq, gx, gy );
+            }
+
+            /* Otherwise accumulate it into the current column,
+             * or start a new one. */
+            else {
+                if ( ! hasCol_ || u != ucol_ ) {
+                    flush();
+                    hasCol_ = true;
+                    ucol_ = u;
+                    firstSeq_ = iseq;
+                    firstX_ = gx;
+                    firstY_ = gy;
+                    minBand_.clear( r );
+                    maxBand_.clear( r );
+                }
+                lastSeq_ = iseq;
+                lastX_ = gx;
+                lastY_ = gy;
+                if ( r < minBand_.row_ ) {
+                    minBand_.clear( r );
+                }
+                if ( r == minBand_.row_ ) {
+                    minBand_.add( iseq, gx, gy, prevX_, prevY_ );
+                }
+                if ( r > maxBand_.row_ ) {
+                    maxBand_.clear( r );
+                }
+                if ( r == maxBand_.row_ ) {
+                    maxBand_.add( iseq, gx, gy, prevX_, prevY_ );
+                }
+            }
+            hasPrev_ = true;
+            prevX_ = gx;
+            prevY_ = gy;
+            prevIx_ = ix;
+            prevIy_ = iy;
+        }
+
+        /**
+         * Emits any pending points to the tracer.
+         */
+        void flush() {
+            if ( ! hasCol_ ) {
+                return;
+            }
+            hasCol_ = false;
+
+            /* Emit the first point, then the band points and their
+             * neighbours merged in sequence order, then the last point.
+             * The predecessor of the first point has already been
+             * emitted, and the successor of the last point, if any,
+             * will be emitted next.  Emission ignores duplicates. */
+            emit( firstSeq_, firstX_, firstY_ );
+            int n1 = minBand_.n_;
+            int n2 = maxBand_.n_;
+            int i1 = 0;
+            int i2 = 0;
+            while ( i1 < n1 || i2 < n2 ) {
+                RowBand band;
+                int ib;
+                if ( i2 >= n2 ||
+                     ( i1 < n1 &&
+                       minBand_.seqs_[ i1 ] <= maxBand_.seqs_[ i2 ] ) ) {
+                    band = minBand_;
+                    ib = i1++;
+                }
+                else {
+                    band = maxBand_;
+                    ib = i2++;
+                }
+                long seq = band.seqs_[ ib ];
+                double[] coords = band.coords_;
+                int ic = ib * 6;
+                if ( seq > firstSeq_ ) {
+                    emit( seq - 1, coords[ ic + 2 ], coords[ ic + 3 ] );
+                }
+                emit( seq, coords[ ic + 0 ], coords[ ic + 1 ] );
+                if ( seq < lastSeq_ ) {
+                    emit( seq + 1, coords[ ic + 4 ], coords[ ic + 5 ] );
+                }
+            }
+            emit( lastSeq_, lastX_, lastY_ );
+            minBand_.clear( Double.NaN );
+            maxBand_.clear( Double.NaN );
+        }
+
+        /**
+         * Passes a point to the tracer, unless it has been passed already.
+         * Points must be presented in non-decreasing sequence order.
+         *
+         * @param  iseq  sequence number
+         * @param  gx   graphics X coordinate
+         * @param  gy   graphics Y coordinate
+         */
+        private void emit( long iseq, double gx, double gy ) {
+            if ( iseq > emitSeq_ ) {
+                emitSeq_ = iseq;
+                tracer_.addExactVertex( gx, gy, color_ );
+            }
+        }
+    }
+
+    /**
+     * Records the points of a column that fall in a given pixel row,
+     * along with their neighbours in the line sequence.
+     */
+    private static class RowBand {
+
+        double row_;
+        int n_;
+        long[] seqs_;
+        double[] coords_;
+
+        /**
+         * Constructor.
+         */
+        RowBand() {
+            row_ = Double.NaN;
+            seqs_ = new long[ 4 ];
+            coords_ = new double[ 4 * 6 ];
+        }
+
+        /**
+         * Discards all points and resets the row.
+         *
+         * @param  row  new row value
+         */
+        void clear( double row ) {
+            row_ = row;
+            n_ = 0;
+        }
+
+        /**
+         * Adds a point.  Points must be added in sequence order.
+         *
+         * @param  iseq  sequence number
+         * @param  gx   graphics X coordinate
+         * @param  gy   graphics Y coordinate
+         * @param  predX  graphics X coordinate of preceding point
+         * @param  predY  graphics Y coordinate of preceding point
+         */
+        void add( long iseq, double gx, double gy,
+                  double predX, double predY ) {
+            if ( n_ == seqs_.length ) {
+                seqs_ = Arrays.copyOf( seqs_, n_ * 2 );
+                coords_ = Arrays.copyOf( coords_, n_ * 2 * 6 );
+            }
+            seqs_[ n_ ] = iseq;
+            int ic = n_ * 6;
+            coords_[ ic + 0 ] = gx;
+            coords_[ ic + 1 ] = gy;
+            coords_[ ic + 2 ] = predX;
+            coords_[ ic + 3 ] = predY;
+            coords_[ ic + 4 ] = Double.NaN;
+            coords_[ ic + 5 ] = Double.NaN;
+            n_++;
+        }
+
+        /**
+         * Records the successor of the most recently added point,
+         * if the given point is it.
+         *
+         * @param  iseq  sequence number
+         * @param  gx   graphics X coordinate
+         * @param  gy   graphics Y coordinate
+         */
+        void setSuccessor( long iseq, double gx, double gy ) {
+            if ( n_ > 0 && seqs_[ n_ - 1 ] + 1 == iseq ) {
+                int ic = ( n_ - 1 ) * 6;
+                coords_[ ic + 4 ] = gx;
+                coords_[ ic + 5 ] = gy;
+            }
+        }
+    }
+}
@@ -111,6 +111,36 @@ public class LineTracer {
      * @param  color  line colour at point
      */
     public void addVertex( double dx, double dy, Color color ) {
+        addVertex( dx, dy, color, lastVertex_.equalsVertex( dx, dy ) );
+    }
+
+    /**
+     * Adds a point to the sequence to be plotted, without checking
+     * whether it is so close to the previous one that it can be ignored.
+     * This is for callers that have already filtered their points
+     * in the same way, and which submit a subset of them that
+     * must be painted as given.
+     * The caller must not submit the same point twice in succession.
+     *
+     * @param  dx  graphics X coordinate
+     * @param  dy  graphics Y coordinate
+     * @param  color  line colour at point
+     */
+    void addExactVertex( double dx, double dy, Color color ) {
+        addVertex( dx, dy, color, false );
+    }
+
+    /**
+     * Does the work for adding a point to the sequence to be plotted.
+     *
+     * @param  dx  graphics X coordinate
+     * @param  dy  graphics Y coordinate
+     * @param  color  line colour at point
+     * @param  isRepeat  true if the point is to be treated as
+     *                   coincident with the previous one and ignored
+     */
+    private void addVertex( double dx, double dy, Color color,
+                            boolean isRepeat ) {
 
         /* As well as handling the colour manipulations required for
          * aux-shaded lines, this method does various calculations to
@@ -126,7 +156,7 @@ public class LineTracer {
         /* Only proceed if the current point is not right on top of
          * the previous one, since in that case the line would be
          * zero length and hence invisible. */
-        else if ( ! lastVertex_.equalsVertex( dx, dy ) ) {
+        else if ( ! isRepeat ) {
             int regionX = getRegion( dx, xlo_, xhi_ );
             int regionY = getRegion( dy, ylo_, yhi_ );
 
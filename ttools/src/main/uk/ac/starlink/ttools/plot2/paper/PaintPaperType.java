@@ -71,7 +71,7 @@ public abstract class PaintPaperType implements PaperType {
                                 Object[] plans, DataStore dataStore,
                                 boolean cached ) {
         PaintIcon icon =
-            new PaintIcon( surface, drawings, plans, dataStore, this );
+            new PaintIcon( surface, drawings, plans, dataStore, this, true );
         if ( cached ) {
 
             /* This is supposed to work fast by painting to a volatile image.
@@ -88,6 +88,26 @@ public abstract class PaintPaperType implements PaperType {
         }
     }
 
+    /**
+     * Returns an icon that paints the content of a list of drawing objects
+     * without first painting the surface background.
+     * This is like {@link #createDataIcon createDataIcon}, but the
+     * returned icon is not opaque, so it can be painted over
+     * the output of another icon.
+     *
+     * @param  surface  plot surface
+     * @param  drawings  array of drawing objects to be painted in sequence
+     * @param  plans   array of plan objects corresponding to the
+     *                 <code>drawings</code> array argument
+     * @param  dataStore  data storage object
+     * @return  plotBounds-sized icon
+     */
+    public Icon createOverlayIcon( Surface surface, Drawing[] drawings,
+                                   Object[] plans, DataStore dataStore ) {
+        return new PaintIcon( surface, drawings, plans, dataStore, this,
+                              false );
+    }
+
     /**
      * Creates a paper instance for use with this PaperType.
      *
@@ -118,6 +138,7 @@ public abstract class PaintPaperType implements PaperType {
         private final Object[] plans_;
         private final DataStore dataStore_;
         private final PaintPaperType paperType_;
+        private final boolean withBackground_;
         private final Rectangle plotBounds_;
 
         /**
@@ -128,14 +149,17 @@ public abstract class PaintPaperType implements PaperType {
          * @param  plans   array of plans, one for each drawing
          * @param  dataStore  data storage object
          * @param  paperType  paper type which created this paper
+         * @param  withBackground  whether to paint the surface background
          */
         PaintIcon( Surface surface, Drawing[] drawings, Object[] plans,
-                   DataStore dataStore, PaintPaperType paperType ) {
+                   DataStore dataStore, PaintPaperType paperType,
+                   boolean withBackground ) {
             surface_ = surface;
             drawings_ = drawings;
             plans_ = plans;
             dataStore_ = dataStore;
             paperType_ = paperType;
+            withBackground_ = withBackground;
             plotBounds_ = surface.getPlotBounds();
         }
 
@@ -155,7 +179,9 @@ public abstract class PaintPaperType implements PaperType {
             g2.translate( x - plotBounds_.x, y - plotBounds_.y );
             g2.clipRect( plotBounds_.x, plotBounds_.y,
                          plotBounds_.width, plotBounds_.height );
-            surface_.paintBackground( g2 );
+            if ( withBackground_ ) {
+                surface_.paintBackground( g2 );
+            }
             Paper paper = paperType_.createPaper( g2, plotBounds_ );
             int nlayer = drawings_.length;
             for ( int il = 0; il < nlayer; il++ ) {
@@ -43,6 +43,7 @@ import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.Executable;
 import uk.ac.starlink.task.ExecutionException;
 import uk.ac.starlink.task.IntegerParameter;
+import uk.ac.starlink.task.LongParameter;
 import uk.ac.starlink.task.OutputStreamParameter;
 import uk.ac.starlink.task.Parameter;
 import uk.ac.starlink.task.ParameterValueException;
@@ -149,6 +150,7 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
     private final BooleanParameter legopaqueParam_;
     private final StringMultiParameter legseqParam_;
     private final BooleanParameter bitmapParam_;
+    private final LongParameter vectorLimitParam_;
     private final Parameter<Compositor> compositorParam_;
     private final InputTableParameter animateParam_;
     private final FilterParameter animateFilterParam_;
@@ -398,6 +400,44 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
         bitmapParam_.setBooleanDefault( false );
         plist.add( bitmapParam_ );
 
+        vectorLimitParam_ = new LongParameter( "vectorlimit" );
+        vectorLimitParam_.setPrompt( "Maximum row count for vector layers" );
+        vectorLimitParam_.setUsage( "<nrow>" );
+        vectorLimitParam_.setMinimum( 0 );
+        vectorLimitParam_.setNullPermitted( true );
+        vectorLimitParam_.setDescription( new String[] {
+            "<p>Sets the largest number of points a plot layer",
+            "can plot for its data to be painted using graphics primitives.",
+            "Layers with more points than this are considered dense,",
+            "and are rendered to an intermediate bitmap,",
+            "as if the <code>" + bitmapParam_.getName() + "</code>",
+            "parameter was set, but only for the bottom part",
+            "of the layer stack:",
+            "the dense layers, and any other layers underneath them,",
+            "are bitmapped,",
+            "while layers plotted on top of them, as well as axes, labels",
+            "and legends, are still drawn using graphics primitives.",
+            "</p>",
+            "<p>This matters mostly for vector graphics output formats",
+            "(PDF, SVG, PostScript),",
+            "where drawing millions of individual markers",
+            "can be very slow and produce huge output files.",
+            "For 3-d plots, any layers drawn using graphics primitives",
+            "appear in front of the bitmapped ones.",
+            "</p>",
+            "<p>If no value is given, a limit of "
+                + PlotUtil.DFLT_VECTOR_LIMIT + " is used,",
+            "except for 3-d plots with transparent or other",
+            "depth-sorted layers, for which the depth ordering would be",
+            "compromised, and all layers are drawn using",
+            "graphics primitives unless",
+            "<code>" + bitmapParam_.getName() + "</code> is set.",
+            "To disable hybrid rendering entirely,",
+            "set a value larger than any layer's row count.",
+            "</p>",
+        } );
+        plist.add( vectorLimitParam_ );
+
         compositorParam_ = new CompositorParameter( "compositor" );
         plist.add( compositorParam_ );
 
@@ -744,6 +784,16 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
         return bitmapParam_;
     }
 
+    /**
+     * Returns the parameter used to set the maximum row count for
+     * vector rendering of a layer.
+     *
+     * @return  vector limit parameter
+     */
+    public LongParameter getVectorLimitParameter() {
+        return vectorLimitParam_;
+    }
+
     /**
      * Returns the parameter for configuring the compositor.
      *
@@ -1271,6 +1321,10 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
         final int xpix = xpixParam_.intValue( env );
         final int ypix = ypixParam_.intValue( env );
         final boolean forceBitmap = bitmapParam_.booleanValue( env );
+        Long vectorLimitObj = vectorLimitParam_.objectValue( env );
+        final long vectorLimit = vectorLimitObj == null
+                               ? PlotUtil.AUTO_VECTOR_LIMIT
+                               : vectorLimitObj.longValue();
         final DataStoreFactory storeFact = dstoreParam_.objectValue( env );
         final Compositor compositor = compositorParam_.objectValue( env );
 
@@ -1469,7 +1523,8 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
                       .createPlotIcon( ganger, surfFact, contents,
                                        trimmings, shadeKits,
                                        ptSel, compositor, dataStore,
-                                       xpix, ypix, forceBitmap );
+                                       xpix, ypix, forceBitmap,
+                                       vectorLimit );
             }
         };
     }
@@ -2807,6 +2862,53 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
      *                       false to use default behaviour
      * @return  icon  icon for plotting
      */
+    public static <P,A> Icon
+            createPlotIcon( Ganger<P,A> ganger,
+                            SurfaceFactory<P,A> surfFact,
+                            ZoneContent<P,A>[] contents,
+                            Trimming[] trimmings,
+                            ShadeAxisKit[] shadeKits,
+                            PaperTypeSelector ptSel,
+                            Compositor compositor,
+                            DataStore dataStore,
+                            int xpix, int ypix, boolean forceBitmap ) {
+        return createPlotIcon( ganger, surfFact, contents, trimmings,
+                               shadeKits, ptSel, compositor, dataStore,
+                               xpix, ypix, forceBitmap, Long.MAX_VALUE );
+    }
+
+    /**
+     * Creates an icon which will paint the content of a plot.
+     * This icon is expected to be painted once and then discarded,
+     * so it's not cached.
+     *
+     * <p>The contents array must have a number of entries that
+     * matches the zone count of the ganger.
+     * The trimmings and shadeKits are supplied as arrays, and in each case
+     * may be either a 1- or nzone-element array depending on the Ganger's
+     * {@link Ganger#isTrimmingGlobal}/{@link Ganger#isShadingGlobal} flags.
+     *
+     * @param  ganger  defines plot surface grouping
+     * @param  surfFact   surface factory
+     * @param  contents   zone contents (nz-element array)
+     * @param  trimmings   zone trimmings
+     *                     (nz- or 1-element array, elements may be null)
+     * @param  shadeKits   shader axis kits by zone
+     *                     (nz- or 1-element array, elements may be null)
+     * @param  ptSel    paper type selector
+     * @param  compositor  compositor for pixel composition
+     * @param  dataStore   data storage object
+     * @param  xpix    horizontal size of icon in pixels
+     * @param  ypix    vertical size of icon in pixels
+     * @param  forceBitmap   true to force bitmap output of vector graphics,
+     *                       false to use default behaviour
+     * @param  vectorLimit   maximum point count for a layer to be
+     *                       rendered using vector graphics if
+     *                       <code>forceBitmap</code> is false,
+     *                       or {@link PlotUtil#AUTO_VECTOR_LIMIT};
+     *                       see {@link PlotUtil#createHybridPlotIcon}
+     * @return  icon  icon for plotting
+     */
     public static <P,A> Icon
             createPlotIcon( Ganger<P,A> ganger,
                             final SurfaceFactory<P,A> surfFact,
@@ -2817,7 +2919,8 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
                             final Compositor compositor,
                             final DataStore dataStore,
                             final int xpix, final int ypix,
-                            final boolean forceBitmap ) {
+                            final boolean forceBitmap,
+                            final long vectorLimit ) {
         final Rectangle extBox = new Rectangle( 0, 0, xpix, ypix );
         final boolean cached = false;
         final Object[] planArray = null;
@@ -2954,20 +3057,29 @@ public abstract class AbstractPlot2Task implements Task, DynamicTask {
                        .createPlotDecorations( frame, trimming, shadeAxis );
                     PlotPlacement placer =
                         new PlotPlacement( extBox, surface, decs );
-                    LayerOpt[] opts = PaperTypeSelector.getOpts( layers );
-                    PaperType paperType =
-                          forceBitmap
-                        ? ptSel.getPixelPaperType( opts, compositor )
-                        : ptSel.getVectorPaperType( opts );
                     if ( clip != null &&
                          ! clip.intersects( surface.getPlotBounds() ) ) {
                         layers = new PlotLayer[ 0 ];
                     }
                     long planStart = System.currentTimeMillis();
-                    Icon zicon =
-                        PlotUtil
-                       .createPlotIcon( placer, layers, auxSpanList.get( iz ),
-                                        dataStore, paperType, cached, planSet );
+                    Map<AuxScale,Span> auxSpans = auxSpanList.get( iz );
+                    final Icon zicon;
+                    if ( forceBitmap ) {
+                        LayerOpt[] opts = PaperTypeSelector.getOpts( layers );
+                        PaperType paperType =
+                            ptSel.getPixelPaperType( opts, compositor );
+                        zicon = PlotUtil
+                               .createPlotIcon( placer, layers, auxSpans,
+                                                dataStore, paperType, cached,
+                                                planSet );
+                    }
+                    else {
+                        zicon = PlotUtil
+                               .createHybridPlotIcon( placer, layers, auxSpans,
+                                                      dataStore, ptSel,
+                                                      compositor, vectorLimit,
+                                                      planSet );
+                    }
                     planMillis += System.currentTimeMillis() - planStart;
                     long paintStart = System.currentTimeMillis();
                     zicon.paintIcon( c, g, 0, 0 );
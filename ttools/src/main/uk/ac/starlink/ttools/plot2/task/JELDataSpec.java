@@ -477,6 +477,11 @@ public class JELDataSpec extends AbstractDataSpec {
             return rdata_.getCell( icol );
         }
 
+        @Override
+        protected RowData getRowData() {
+            return rdata_;
+        }
+
         /**
          * Evaluates a compiled expression using a given RowData.
          *
@@ -222,6 +222,10 @@ public class MatrixPlot2Task extends
         final int xpix = getXpixParameter().intValue( env );
         final int ypix = getYpixParameter().intValue( env );
         final boolean forceBitmap = getBitmapParameter().booleanValue( env );
+        Long vectorLimitObj = getVectorLimitParameter().objectValue( env );
+        final long vectorLimit = vectorLimitObj == null
+                               ? PlotUtil.AUTO_VECTOR_LIMIT
+                               : vectorLimitObj.longValue();
         final DataStoreFactory storeFact =
             getDataStoreParameter().objectValue( env );
         final Compositor compositor =
@@ -378,7 +382,8 @@ public class MatrixPlot2Task extends
                       .createPlotIcon( ganger, surfFact,
                                        contents, trimmings, shadeKits,
                                        ptSel, compositor, dataStore,
-                                       xpix, ypix, forceBitmap );
+                                       xpix, ypix, forceBitmap,
+                                       vectorLimit );
             }
         };
     }
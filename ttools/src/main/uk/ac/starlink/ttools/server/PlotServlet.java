@@ -45,6 +45,7 @@ import uk.ac.starlink.ttools.plot2.data.DataStoreFactory;
 import uk.ac.starlink.ttools.plot2.data.DiskCache;
 import uk.ac.starlink.ttools.plot2.task.PlotConfiguration;
 import uk.ac.starlink.ttools.plot2.task.TypedPlot2Task;
+import uk.ac.starlink.ttools.util.LruCache;
 import uk.ac.starlink.util.IOUtils;
 import uk.ac.starlink.util.LoadException;
 import uk.ac.starlink.util.ObjectFactory;
@@ -70,7 +71,9 @@ public class PlotServlet extends HttpServlet {
     private DiskCache imgCache_;
     private StarTableOutput tableOutput_;
     private JDBCAuthenticator jdbcAuth_;
-    private SoftCache<String,PlotSession<?,?>> sessionCache_;
+    private LruCache<String,PlotSession<?,?>> sessionCache_;
+    private LruCache<String,PlotSession<?,?>> largeSessionCache_;
+    private LruCache<String,byte[]> tileCache_;
     private String servletId_;
     private String acao_;
     private Logger logger_;
@@ -105,7 +108,18 @@ public class PlotServlet extends HttpServlet {
         dataStoreFactory_ = sContext.getDataStoreFactory();
         imgCache_ = sContext.getImageCache();
         tableOutput_ = new StarTableOutput();
-        sessionCache_ = new SoftCache<String,PlotSession<?,?>>();
+        long sessionMem = sContext.getPlotSessionMemory();
+        long tileMem = sContext.getPlotTileMemory();
+        sessionCache_ =
+            new LruCache<String,PlotSession<?,?>>( sessionMem,
+                                                   s -> s.getMemoryEstimate() );
+
+        /* Sessions too large for the main cache are not discarded
+         * straight away, since then they would have to be rebuilt for
+         * every request; the most recent one is retained here. */
+        largeSessionCache_ =
+            new LruCache<String,PlotSession<?,?>>( 1, s -> 1 );
+        tileCache_ = new LruCache<String,byte[]>( tileMem, b -> b.length );
         servletId_ = createId( this );
         String acao = sContext.getAllowOrigins();
         acao_ = acao == null ? DFLT_ALLOWORIGINS : acao;
@@ -115,6 +129,8 @@ public class PlotServlet extends HttpServlet {
     @Override
     public void destroy() {
         sessionCache_.clear();
+        largeSessionCache_.clear();
+        tileCache_.clear();
         super.destroy();
     }
 
@@ -275,6 +291,9 @@ public class PlotServlet extends HttpServlet {
          * will return to its initial default) but it is likely to be
          * better than failing to service the request at all. */
         PlotSession<?,?> session = sessionCache_.get( sessionId );
+        if ( session == null ) {
+            session = largeSessionCache_.get( sessionId );
+        }
         if ( session == null ) {
             try {
                 session = createSession( plotTxt, response );
@@ -287,8 +306,13 @@ public class PlotServlet extends HttpServlet {
                 response.sendError( 400, "Bad plot request" );
                 return;
             }
-            sessionCache_.put( sessionId, session );
-            sessionCache_.purge();
+            if ( ! sessionCache_.put( sessionId, session ) ) {
+                logger_.warning( "Plot session size "
+                               + session.getMemoryEstimate()
+                               + " exceeds session cache limit"
+                               + " - retaining only while most recent" );
+                largeSessionCache_.put( sessionId, session );
+            }
         }
 
         /* Service the session-specific request. */
@@ -358,7 +382,8 @@ public class PlotServlet extends HttpServlet {
         Navigator<A> navigator = plotConfig.createNavigator();
         Dimension size = plotConfig.getPlotSize();
         return new PlotSession<P,A>( plotTxt, scene, navigator,
-                                     exporter, dataStore, size, imgCache_ );
+                                     exporter, dataStore, size, imgCache_,
+                                     tileCache_ );
     }
 
     /**
@@ -19,8 +19,11 @@ import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -33,6 +36,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import javax.servlet.ServletOutputStream;
+import javax.swing.Icon;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.jfree.graphics2d.svg.SVGGraphics2D;
@@ -45,6 +49,7 @@ import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.plot.GraphicExporter;
 import uk.ac.starlink.ttools.plot.Picture;
+import uk.ac.starlink.ttools.plot2.AuxScale;
 import uk.ac.starlink.ttools.plot2.Axis;
 import uk.ac.starlink.ttools.plot2.CoordSequence;
 import uk.ac.starlink.ttools.plot2.DataGeom;
@@ -57,6 +62,7 @@ import uk.ac.starlink.ttools.plot2.PlotScene;
 import uk.ac.starlink.ttools.plot2.PlotUtil;
 import uk.ac.starlink.ttools.plot2.PointCloud;
 import uk.ac.starlink.ttools.plot2.Scale;
+import uk.ac.starlink.ttools.plot2.Span;
 import uk.ac.starlink.ttools.plot2.SubCloud;
 import uk.ac.starlink.ttools.plot2.Surface;
 import uk.ac.starlink.ttools.plot2.data.DataSpec;
@@ -65,9 +71,12 @@ import uk.ac.starlink.ttools.plot2.data.DiskCache;
 import uk.ac.starlink.ttools.plot2.data.TupleRunner;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.geom.CubeSurface;
+import uk.ac.starlink.ttools.plot2.geom.PlaneAspect;
 import uk.ac.starlink.ttools.plot2.geom.PlanarSurface;
 import uk.ac.starlink.ttools.plot2.geom.PlaneSurface;
+import uk.ac.starlink.ttools.plot2.geom.SkySurface;
 import uk.ac.starlink.ttools.plot2.task.HighlightIcon;
+import uk.ac.starlink.ttools.util.LruCache;
 import uk.ac.starlink.util.IOUtils;
 import uk.ac.starlink.util.SplitCollector;
 
@@ -90,6 +99,10 @@ public class PlotSession<P,A> {
     private final DiskCache imgCache_;
     private final A[] initialAspects_;
     private final Dimension initialSize_;
+    private final LruCache<String,byte[]> tileCache_;
+    private final String tileKeyBase_;
+    private final Map<String,CompletableFuture<byte[]>> tilesPending_;
+    private Map<AuxScale,Span>[] tileAuxSpans_;
     private List<HighlightPosition> highlights_;
     private DragContext dragged_;
     private Dimension size_;
@@ -112,6 +125,7 @@ public class PlotSession<P,A> {
     public static final PlotService POSITION_SERVICE;
     public static final PlotService COUNT_SERVICE;
     public static final PlotService ROW_SERVICE;
+    public static final PlotService TILE_SERVICE;
 
     /** Available PlotService instances. */
     public static final PlotService[] SERVICES = new PlotService[] {
@@ -121,10 +135,15 @@ public class PlotSession<P,A> {
         POSITION_SERVICE = createPlotPositionService( "position" ),
         COUNT_SERVICE = createCountService( "count" ),
         ROW_SERVICE = createRowService( "row" ),
+        TILE_SERVICE = createTileService( "tile" ),
     };
 
     private static String JS_TEXT;
     private static final boolean IS_COUNT_PARALLEL = false;
+    private static final int DFLT_TILE_SIZE = 256;
+    private static final int MIN_TILE_SIZE = 16;
+    private static final int MAX_TILE_SIZE = 2048;
+    private static final int MAX_TILE_PIXELS = 1 << 30;
     private static final GraphicExporter[] EXPORTERS =
         GraphicExporter.getKnownExporters( PlotUtil.LATEX_PDF_EXPORTER );
     private static final Logger logger_ =
@@ -143,11 +162,15 @@ public class PlotSession<P,A> {
      * @param   size   initial dimension of IMG element
      * @param   imgCache  disk cache for storing default image files;
      *                    may be null for no caching
+     * @param   tileCache  memory cache for rendered tiles,
+     *                     which may be shared between sessions;
+     *                     may be null for no caching
      */
     public PlotSession( String plotTxt, PlotScene<P,A> scene,
                         Navigator<A> navigator, GraphicExporter exporter,
                         DataStore dataStore, Dimension size,
-                        DiskCache imgCache ) {
+                        DiskCache imgCache,
+                        LruCache<String,byte[]> tileCache ) {
         plotTxt_ = plotTxt;
         scene_ = scene;
         navigator_ = navigator;
@@ -160,6 +183,43 @@ public class PlotSession<P,A> {
         initialSize_ = new Dimension( size );
         initialAspects_ = scene_.getAspects().clone();
         highlights_ = new ArrayList<HighlightPosition>();
+        tileCache_ = tileCache;
+        tileKeyBase_ = DiskCache.hashText( plotTxt_ );
+        tilesPending_ = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns an estimate of the amount of memory occupied by this session.
+     * This counts the cached plot image and the coordinate data
+     * that the data store may hold for the plot layers.
+     * It is only approximate.
+     *
+     * @return  estimated size in bytes
+     */
+    public long getMemoryEstimate() {
+        long nbyte = 4L * size_.width * size_.height;
+        Set<String> coordKeys = new HashSet<>();
+        int nz = scene_.getAspects().length;
+        for ( int iz = 0; iz < nz; iz++ ) {
+            for ( PlotLayer layer : scene_.getLayers( iz ) ) {
+                DataSpec dataSpec = layer.getDataSpec();
+                if ( dataSpec != null ) {
+                    StarTable table = dataSpec.getSourceTable();
+                    long nrow = Math.max( 0, table.getRowCount() );
+                    String tkey = System.identityHashCode( table ) + ":";
+                    if ( coordKeys.add( tkey + dataSpec.getMaskId() ) ) {
+                        nbyte += nrow / 8;
+                    }
+                    for ( int ic = 0; ic < dataSpec.getCoordCount(); ic++ ) {
+                        if ( coordKeys.add( tkey
+                                          + dataSpec.getCoordId( ic ) ) ) {
+                            nbyte += nrow * 8;
+                        }
+                    }
+                }
+            }
+        }
+        return nbyte;
     }
 
     /**
@@ -448,6 +508,194 @@ public class PlotSession<P,A> {
         return file.exists() && file.canRead() ? file : null;
     }
 
+    /**
+     * Returns the encoded image data for a tile of the plot.
+     * The tile pyramid covers the initial view of a zone of the plot,
+     * which fills the single tile at level zero;
+     * at level <code>z</code> it is divided into
+     * 2<sup>z</sup>x2<sup>z</sup> tiles.
+     *
+     * <p>This method does not affect the state of the session,
+     * and the rendering is done without holding any locks,
+     * so that multiple tiles may be rendered in parallel.
+     * If the same tile is requested concurrently by multiple threads,
+     * it is only rendered once.
+     *
+     * @param  iz   zone index
+     * @param  level   zoom level, zero or greater
+     * @param  tx   horizontal tile index, in range 0..2<sup>z</sup>-1
+     * @param  ty   vertical tile index (downwards),
+     *              in range 0..2<sup>z</sup>-1
+     * @param  tileSize  width and height of tile in pixels
+     * @param  exporter  image output format
+     * @return  image file content, or null if tiling is not supported
+     *          for this plot
+     */
+    private byte[] getTileData( int iz, int level, int tx, int ty,
+                                int tileSize, GraphicExporter exporter )
+            throws IOException {
+        String key = new StringBuffer()
+            .append( tileKeyBase_ )
+            .append( '/' ).append( iz )
+            .append( '/' ).append( tileSize )
+            .append( '/' ).append( exporter.getName() )
+            .append( '/' ).append( level )
+            .append( '/' ).append( tx )
+            .append( '/' ).append( ty )
+            .toString();
+        byte[] data = tileCache_ == null ? null : tileCache_.get( key );
+        if ( data != null ) {
+            return data;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending =
+            tilesPending_.putIfAbsent( key, future );
+        if ( pending != null ) {
+            try {
+                return pending.join();
+            }
+            catch ( RuntimeException e ) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException
+                    ? (IOException) cause
+                    : new IOException( "Tile rendering failed: " + cause,
+                                       cause );
+            }
+        }
+        try {
+            data = renderTile( iz, level, tx, ty, tileSize, exporter );
+            if ( data != null && tileCache_ != null ) {
+                tileCache_.put( key, data );
+            }
+            future.complete( data );
+            return data;
+        }
+        catch ( IOException | RuntimeException | Error e ) {
+            future.completeExceptionally( e );
+            throw e;
+        }
+        finally {
+            tilesPending_.remove( key );
+        }
+    }
+
+    /**
+     * Renders a tile of the plot.
+     *
+     * @param  iz   zone index
+     * @param  level   zoom level
+     * @param  tx   horizontal tile index
+     * @param  ty   vertical tile index
+     * @param  tileSize  width and height of tile in pixels
+     * @param  exporter  image output format
+     * @return  image file content, or null if tiling is not supported
+     *          for this plot
+     */
+    private byte[] renderTile( int iz, int level, int tx, int ty,
+                               int tileSize, GraphicExporter exporter )
+            throws IOException {
+        A aspect = createTileAspect( iz, level, tx, ty, tileSize );
+        if ( aspect == null ) {
+            return null;
+        }
+        Map<AuxScale,Span> auxSpans = getTileAuxSpans( iz );
+        Rectangle tileBox = new Rectangle( 0, 0, tileSize, tileSize );
+        Surface surface = scene_.createZoneSurface( iz, tileBox, aspect );
+        final Icon icon =
+            scene_.createDataIcon( iz, surface, auxSpans, dataStore_ );
+        Picture picture = new Picture() {
+            public int getPictureWidth() {
+                return tileSize;
+            }
+            public int getPictureHeight() {
+                return tileSize;
+            }
+            public void paintPicture( Graphics2D g2 ) {
+                icon.paintIcon( null, g2, 0, 0 );
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.exportGraphic( picture, out );
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the aux data ranges to use for tiles of a given zone.
+     * These are calculated for the level 0 tiles, which cover the
+     * initial view of the plot, so that colour scaling is consistent
+     * between all tiles and depends only on the plot text,
+     * not on any navigation that has taken place in this session.
+     *
+     * @param  iz  zone index
+     * @return   aux span map
+     */
+    private synchronized Map<AuxScale,Span> getTileAuxSpans( int iz ) {
+        if ( tileAuxSpans_ == null ) {
+            int nz = initialAspects_.length;
+            Rectangle tileBox =
+                new Rectangle( 0, 0, DFLT_TILE_SIZE, DFLT_TILE_SIZE );
+            Surface[] surfs = new Surface[ nz ];
+            for ( int jz = 0; jz < nz; jz++ ) {
+                surfs[ jz ] = scene_.createZoneSurface( jz, tileBox,
+                                                        initialAspects_[ jz ] );
+            }
+            tileAuxSpans_ = scene_.calculateAuxSpans( surfs, dataStore_ );
+        }
+        return tileAuxSpans_[ iz ];
+    }
+
+    /**
+     * Returns the aspect corresponding to a given tile of the plot.
+     * Only planar and sky surfaces are supported.
+     *
+     * @param  iz   zone index
+     * @param  level   zoom level
+     * @param  tx   horizontal tile index
+     * @param  ty   vertical tile index
+     * @param  tileSize  width and height of tile in pixels
+     * @return  tile aspect, or null if tiling is not supported
+     *          for this plot
+     */
+    @SuppressWarnings("unchecked")
+    private A createTileAspect( int iz, int level, int tx, int ty,
+                                int tileSize ) {
+        Rectangle tileBox = new Rectangle( 0, 0, tileSize, tileSize );
+        Surface surf0 =
+            scene_.createZoneSurface( iz, tileBox, initialAspects_[ iz ] );
+        double factor = (double) ( 1L << level );
+
+        /* For a plane plot, work out the data limits of the tile
+         * by subdividing the graphics coordinates of the level 0 tile,
+         * which takes care of axis scaling and flipping. */
+        if ( surf0 instanceof PlaneSurface ) {
+            Axis[] axes = ((PlaneSurface) surf0).getAxes();
+            return (A) new PlaneAspect(
+                tileLimits( axes[ 0 ], tx / factor * tileSize,
+                            ( tx + 1 ) / factor * tileSize ),
+                tileLimits( axes[ 1 ], ty / factor * tileSize,
+                            ( ty + 1 ) / factor * tileSize ) );
+        }
+
+        /* For a sky plot, magnify the level 0 tile about its origin
+         * and then shift the required tile to the origin. */
+        else if ( surf0 instanceof SkySurface ) {
+            A zoomAspect =
+                (A) ((SkySurface) surf0)
+                   .flatZoom( new Point2D.Double( 0, 0 ), factor );
+            SkySurface surf1 =
+                (SkySurface) scene_.createZoneSurface( iz, tileBox,
+                                                       zoomAspect );
+            return (A) surf1.flatPan( new Point2D.Double( (double) tx
+                                                          * tileSize,
+                                                          (double) ty
+                                                          * tileSize ),
+                                      new Point2D.Double( 0, 0 ) );
+        }
+        else {
+            return null;
+        }
+    }
+
     /**
      * Returns the external bounds of this plot as a rectangle.
      *
@@ -605,6 +853,21 @@ public class PlotSession<P,A> {
         }
     }
 
+    /**
+     * Returns the data range along an axis corresponding to a range
+     * of graphics coordinates.
+     *
+     * @param  axis  axis
+     * @param  g0   one graphics coordinate bound
+     * @param  g1   other graphics coordinate bound
+     * @return   2-element (lower,upper) data range
+     */
+    private static double[] tileLimits( Axis axis, double g0, double g1 ) {
+        double d0 = axis.graphicsToData( g0 );
+        double d1 = axis.graphicsToData( g1 );
+        return new double[] { Math.min( d0, d1 ), Math.max( d0, d1 ) };
+    }
+
     /**
      * Converts an image output format name to a GraphicExporter.
      *
@@ -1314,6 +1577,107 @@ public class PlotSession<P,A> {
         };
     }
 
+    /**
+     * Creates a service that provides tiles of the plot suitable for
+     * use with slippy-map type clients.
+     *
+     * @param  name  service name
+     * @return  service
+     */
+    private static PlotService createTileService( String name ) {
+        return new AbstractPlotService( name ) {
+            public String getXmlDescription() {
+                return String.join( "\n",
+                    "<p>Returns a fixed-size image tile from a",
+                    "tile pyramid covering the plot,",
+                    "suitable for use with slippy-map style clients.",
+                    "This is only available for plane and sky plots.",
+                    "Zoom level 0 consists of a single tile covering",
+                    "the initial (unnavigated) view of the plot;",
+                    "at zoom level <code>z</code> the same region is",
+                    "divided into 2<sup>z</sup>x2<sup>z</sup> tiles,",
+                    "with tile indices increasing rightwards and downwards",
+                    "from zero.",
+                    "The tiles contain only the plotted data,",
+                    "without axis annotations or other decorations.",
+                    "</p>",
+                    "<p>The parameters are:",
+                    "<ul>",
+                    "<li><code>z=level</code>: zoom level (required)</li>",
+                    "<li><code>x=ix</code>: horizontal tile index"
+                        + " (required)</li>",
+                    "<li><code>y=iy</code>: vertical tile index"
+                        + " (required)</li>",
+                    "<li><code>tileSize=npix</code>: tile width and height",
+                    "    in pixels (default " + DFLT_TILE_SIZE + ")</li>",
+                    "<li><code>zone=iz</code>: index of the plot zone",
+                    "    for multi-zone plots (default 0)</li>",
+                    "<li><code>" + FORMAT_KEY + "=fmt</code>:",
+                    "    image format (default <code>"
+                        + GraphicExporter.PNG.getName() + "</code>)</li>",
+                    "</ul>",
+                    "</p>",
+                    "<p>Tile requests do not affect the session state,",
+                    "and tiles may be requested concurrently;",
+                    "different tiles are rendered in parallel.",
+                    "Rendered tiles are cached in memory by the server.",
+                    "</p>",
+                "" );
+            }
+            public void sessionRespond( PlotSession<?,?> session,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response )
+                    throws IOException {
+                Map<String,String> paramMap = getSingleParameterMap( request );
+                int level = parseInteger( paramMap.get( "z" ), -1 );
+                int tx = parseInteger( paramMap.get( "x" ), -1 );
+                int ty = parseInteger( paramMap.get( "y" ), -1 );
+                int tileSize = parseInteger( paramMap.get( "tileSize" ),
+                                             DFLT_TILE_SIZE );
+                int iz = parseInteger( paramMap.get( "zone" ), 0 );
+                String fmtName = paramMap.get( FORMAT_KEY );
+                GraphicExporter exporter = fmtName == null
+                                         ? GraphicExporter.PNG
+                                         : parseFormatName( fmtName );
+                int nz = session.scene_.getAspects().length;
+                if ( tileSize < MIN_TILE_SIZE || tileSize > MAX_TILE_SIZE ) {
+                    response.sendError( 400, "Bad tileSize" );
+                    return;
+                }
+                if ( level < 0 ||
+                     level > 30 ||
+                     ( (long) tileSize << level ) > MAX_TILE_PIXELS ) {
+                    response.sendError( 400, "Bad zoom level" );
+                    return;
+                }
+                long ntile = 1L << level;
+                if ( tx < 0 || tx >= ntile || ty < 0 || ty >= ntile ) {
+                    response.sendError( 400, "Bad tile index" );
+                    return;
+                }
+                if ( iz < 0 || iz >= nz ) {
+                    response.sendError( 400, "Bad zone index" );
+                    return;
+                }
+                if ( exporter == null ) {
+                    response.sendError( 400, "Unknown format " + fmtName );
+                    return;
+                }
+                byte[] data =
+                    session.getTileData( iz, level, tx, ty, tileSize,
+                                         exporter );
+                if ( data == null ) {
+                    response.sendError( 400, "Tiles not available"
+                                           + " for this plot type" );
+                    return;
+                }
+                session.prepareImageResponse( response, exporter );
+                response.setContentLength( data.length );
+                response.getOutputStream().write( data );
+            }
+        };
+    }
+
     /**
      * Writes an image to an output stream.
      */
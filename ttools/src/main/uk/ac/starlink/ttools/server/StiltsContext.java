@@ -12,6 +12,7 @@ import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableFactory;
 import uk.ac.starlink.task.UsageException;
 import uk.ac.starlink.ttools.Stilts;
+import uk.ac.starlink.ttools.jel.JELCompilationCache;
 import uk.ac.starlink.ttools.plot2.SplitRunner;
 import uk.ac.starlink.ttools.plot2.data.DataStoreFactory;
 import uk.ac.starlink.ttools.plot2.data.DiskCache;
@@ -91,6 +92,22 @@ public class StiltsContext {
      */
     public static final String PLOTPARALLELISM_PARAM = "plotParallelism";
 
+    /**
+     * Name of a servlet initialisation parameter giving the maximum
+     * amount of memory in bytes to be occupied by live plot sessions.
+     * When this is exceeded, the least recently used sessions are
+     * discarded; they will be recreated if required.
+     * If not supplied, a quarter of the maximum heap size is used.
+     */
+    public static final String PLOTSESSIONMEM_PARAM = "plotSessionMemory";
+
+    /**
+     * Name of a servlet initialisation parameter giving the maximum
+     * amount of memory in bytes to be occupied by cached plot tiles.
+     * If not supplied, a default of 64Mbyte is used.
+     */
+    public static final String PLOTTILEMEM_PARAM = "plotTileMemory";
+
     /**
      * Name of a servlet initialisation parameter giving allowed origins
      * for permissible Cross-Origin requests.  This will provide the
@@ -102,6 +119,33 @@ public class StiltsContext {
      */
     public static final String ALLOWORIGINS_PARAM = "allowOrigins";
 
+    /**
+     * Name of a servlet initialisation parameter giving the maximum
+     * amount of memory in bytes to be occupied by tables loaded from
+     * local files and retained for use by later requests.
+     * Cached tables are reloaded if the file is modified.
+     * If not supplied, an eighth of the maximum heap size is used.
+     * A value of zero disables the cache.
+     */
+    public static final String TABLECACHEMEM_PARAM = "tableCacheMemory";
+
+    /**
+     * Name of a servlet initialisation parameter giving the maximum
+     * amount of memory in bytes to be occupied by compiled
+     * algebraic expressions retained for use by later requests.
+     * If not supplied, a default of 16Mbyte is used.
+     * A value of zero disables the cache.
+     */
+    public static final String JELCACHEMEM_PARAM = "jelCacheMemory";
+
+    /** ServletContext attribute name for the shared table cache. */
+    private static final String TABLECACHE_ATT =
+        TableCache.class.getName();
+
+    /** ServletContext attribute name for the shared expression cache. */
+    private static final String JELCACHE_ATT =
+        JELCompilationCache.class.getName();
+
     /** 
      * Constructor.
      *
@@ -124,9 +168,11 @@ public class StiltsContext {
             final StarTableFactory tfact = new StarTableFactory();
             Stilts.addStandardSchemes( tfact );
             final boolean allowAbsolute = true;
+            final TableCache tcache = getTableCache();
             return TableFactoryParameter.createTableFactory( new TableLocator(){
                 public StarTable getTable( String loc ) throws IOException {
-                    return getServletTable( tfact, loc, allowAbsolute );
+                    return getServletTable( tfact, loc, allowAbsolute,
+                                            tcache );
                 }
             } );
         }
@@ -183,6 +229,103 @@ public class StiltsContext {
         return context_.getInitParameter( ALLOWORIGINS_PARAM );
     }
 
+    /**
+     * Returns the maximum number of bytes to be occupied by plot sessions.
+     *
+     * @return  session memory limit in bytes
+     */
+    public long getPlotSessionMemory() throws ServletException {
+        return getByteCountParameter( PLOTSESSIONMEM_PARAM,
+                                      Runtime.getRuntime().maxMemory() / 4 );
+    }
+
+    /**
+     * Returns the maximum number of bytes to be occupied by
+     * cached plot tiles.
+     *
+     * @return  tile memory limit in bytes
+     */
+    public long getPlotTileMemory() throws ServletException {
+        return getByteCountParameter( PLOTTILEMEM_PARAM, 64L * 1024 * 1024 );
+    }
+
+    /**
+     * Returns the cache of tables loaded from local files,
+     * shared between all servlets in this context.
+     *
+     * @return  table cache, or null if table caching is disabled
+     */
+    public TableCache getTableCache() throws ServletException {
+        long mem = getByteCountParameter( TABLECACHEMEM_PARAM,
+                                          Runtime.getRuntime().maxMemory()
+                                          / 8 );
+        if ( mem == 0 ) {
+            return null;
+        }
+        synchronized ( context_ ) {
+            Object att = context_.getAttribute( TABLECACHE_ATT );
+            if ( att instanceof TableCache ) {
+                return (TableCache) att;
+            }
+            TableCache cache = new TableCache( mem );
+            context_.setAttribute( TABLECACHE_ATT, cache );
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the cache of compiled algebraic expressions,
+     * shared between all servlets in this context.
+     *
+     * @return  expression compilation cache, or null if disabled
+     */
+    public JELCompilationCache getCompilationCache() throws ServletException {
+        long mem = getByteCountParameter( JELCACHEMEM_PARAM,
+                                          16L * 1024 * 1024 );
+        if ( mem == 0 ) {
+            return null;
+        }
+        synchronized ( context_ ) {
+            Object att = context_.getAttribute( JELCACHE_ATT );
+            if ( att instanceof JELCompilationCache ) {
+                return (JELCompilationCache) att;
+            }
+            JELCompilationCache cache = new JELCompilationCache( mem );
+            context_.setAttribute( JELCACHE_ATT, cache );
+            return cache;
+        }
+    }
+
+    /**
+     * Reads a non-negative integer initialisation parameter
+     * giving a number of bytes.
+     *
+     * @param  paramName  initialisation parameter name
+     * @param  dflt   value to use if the parameter is not set
+     * @return  byte count
+     */
+    private long getByteCountParameter( String paramName, long dflt )
+            throws ServletException {
+        String txt = context_.getInitParameter( paramName );
+        if ( txt == null || txt.trim().length() == 0 ) {
+            return dflt;
+        }
+        else {
+            long value;
+            try {
+                value = Long.parseLong( txt.trim() );
+            }
+            catch ( RuntimeException e ) {
+                value = -1;
+            }
+            if ( value < 0 ) {
+                throw new ServletException( "Unsuitable value \"" + txt
+                                          + "\" for " + paramName );
+            }
+            return value;
+        }
+    }
+
     /**
      * Returns a TupleRunner for use with server tasks.
      *
@@ -261,9 +404,11 @@ public class StiltsContext {
      * @param  loc   location relative to servlet root
      * @param  allowAbsolute  if true, leading "/" means root of filesystem;
      *                        if false, it means servlet base directory
+     * @param  tcache  cache for tables loaded from files, or null
      */
     private StarTable getServletTable( StarTableFactory tfact, String loc,
-                                       boolean allowAbsolute )
+                                       boolean allowAbsolute,
+                                       TableCache tcache )
             throws IOException {
         if ( StarTableFactory.parseSchemeLocation( loc ) != null ) {
             return tfact.makeStarTable( loc );
@@ -274,7 +419,9 @@ public class StiltsContext {
                       : context_.getRealPath( "/" + loc );
         File file = new File( fsPath );
         if ( file.exists() ) {
-            return tfact.makeStarTable( new FileDataSource( file ) );
+            return tcache != null && file.isFile()
+                 ? tcache.getTable( tfact, file )
+                 : tfact.makeStarTable( new FileDataSource( file ) );
         }
         URL resource;
         try {
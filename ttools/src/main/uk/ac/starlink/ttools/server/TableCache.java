@@ -0,0 +1,404 @@
+package uk.ac.starlink.ttools.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableFactory;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.ttools.util.LruCache;
+import uk.ac.starlink.util.FileDataSource;
+
+/**
+ * Server-wide cache of random-access tables loaded from local files.
+ *
+ * <p>Tables are keyed by canonical file path, modification time and
+ * file length, so that a file which is rewritten will be reloaded
+ * on next use.  The entries are held in a memory-limited
+ * {@link LruCache}; the size of each entry is estimated from the
+ * file length and the table dimensions.
+ *
+ * <p>If several threads request the same table at once,
+ * it is only loaded once.
+ *
+ * <p>Tables returned from this cache are lightweight wrappers around
+ * the shared cached table, with their own copies of the metadata,
+ * so that processing done for one request cannot affect the table
+ * as seen by another.  Closing a returned table does not close the
+ * shared table directly; that is only closed once it has been
+ * discarded from the cache and all the tables returned for it
+ * have been closed.
+ *
+ * <p>This class is thread-safe.
+ */
+public class TableCache {
+
+    private final LruCache<String,CachedTable> lru_;
+    private final Map<String,String> pathKeys_;
+    private final Map<String,FutureTask<CachedTable>> loading_;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.server" );
+
+    /**
+     * Constructor.
+     *
+     * @param  maxBytes  approximate maximum memory in bytes
+     *                   to be occupied by cached tables
+     */
+    public TableCache( long maxBytes ) {
+        lru_ = new LruCache<String,CachedTable>( maxBytes, t -> t.nbyte_,
+                                                 CachedTable::discard );
+        pathKeys_ = new HashMap<String,String>();
+        loading_ = new HashMap<String,FutureTask<CachedTable>>();
+    }
+
+    /**
+     * Returns a random-access table read from a given file,
+     * using a cached copy if one is available for the current
+     * state of the file.
+     *
+     * @param  tfact  table factory used to load the table on a cache miss
+     * @param  file   existing file containing a table
+     * @return   random-access table private to the caller
+     */
+    public StarTable getTable( StarTableFactory tfact, File file )
+            throws IOException {
+        File cfile = file.getCanonicalFile();
+        String path = cfile.getPath();
+        String key = path + "\t" + cfile.lastModified()
+                   + "\t" + cfile.length();
+        while ( true ) {
+            CachedTable entry = lru_.get( key );
+            if ( entry == null ) {
+
+                /* Make sure that only one thread loads a given table. */
+                FutureTask<CachedTable> loader;
+                boolean isLoader = false;
+                synchronized ( loading_ ) {
+                    loader = loading_.get( key );
+                    if ( loader == null ) {
+                        loader = new FutureTask<CachedTable>( () ->
+                            loadEntry( tfact, cfile, key ) );
+                        loading_.put( key, loader );
+                        isLoader = true;
+                    }
+                }
+                if ( isLoader ) {
+                    try {
+                        loader.run();
+                    }
+                    finally {
+                        synchronized ( loading_ ) {
+                            loading_.remove( key );
+                        }
+                    }
+                }
+                entry = awaitEntry( loader );
+
+                /* The loading thread's entry has already been acquired. */
+                if ( isLoader ) {
+                    return new IsolatedTable( entry );
+                }
+            }
+
+            /* Acquisition may fail if the entry has been evicted and
+             * closed since it was retrieved; in that case try again. */
+            if ( entry.acquire() ) {
+                return new IsolatedTable( entry );
+            }
+        }
+    }
+
+    /**
+     * Returns the underlying LRU cache, which can be queried for
+     * size and hit/miss statistics.
+     *
+     * @return   LRU cache
+     */
+    public LruCache<String,?> getLruCache() {
+        return lru_;
+    }
+
+    /**
+     * Returns a snapshot of the number of hits for each table
+     * currently held in this cache, keyed by file path.
+     *
+     * @return  path-&gt;hit count map
+     */
+    public Map<String,Long> getEntryHits() {
+        Map<String,Long> hits = new LinkedHashMap<String,Long>();
+        for ( Map.Entry<String,Long> entry :
+              lru_.getEntryHits().entrySet() ) {
+            String key = entry.getKey();
+            hits.put( key.substring( 0, key.indexOf( '\t' ) ),
+                      entry.getValue() );
+        }
+        return hits;
+    }
+
+    @Override
+    public String toString() {
+        return lru_.toString();
+    }
+
+    /**
+     * Loads a table from a file and adds it to the cache.
+     * The returned entry has been acquired on behalf of the caller.
+     *
+     * @param  tfact  table factory
+     * @param  cfile  canonical file
+     * @param  key   cache key
+     * @return   new acquired entry
+     */
+    private CachedTable loadEntry( StarTableFactory tfact, File cfile,
+                                   String key )
+            throws IOException {
+        String path = cfile.getPath();
+        StarTable table =
+            Tables.randomTable( tfact
+                               .makeStarTable( new FileDataSource( cfile ) ) );
+        CachedTable entry =
+            new CachedTable( table, estimateSize( table, cfile ) );
+        entry.acquire();
+        String oldKey;
+        synchronized ( pathKeys_ ) {
+            oldKey = pathKeys_.put( path, key );
+        }
+        if ( oldKey != null && ! oldKey.equals( key ) ) {
+            CachedTable oldEntry = lru_.remove( oldKey );
+            if ( oldEntry != null ) {
+                oldEntry.discard();
+            }
+            logger_.info( "Table file modified, reloaded: " + path );
+        }
+        lru_.put( key, entry );
+        return entry;
+    }
+
+    /**
+     * Waits for a table load to complete.
+     *
+     * @param  loader  task loading the table
+     * @return   loaded entry
+     */
+    private static CachedTable awaitEntry( FutureTask<CachedTable> loader )
+            throws IOException {
+        try {
+            return loader.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw (IOException)
+                  new InterruptedIOException( "Interrupted" ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw new IOException( "Table load failed: " + cause, cause );
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory occupied by a loaded table.
+     *
+     * @param  table  random-access table
+     * @param  file   file from which it was loaded
+     * @return   approximate size in bytes
+     */
+    private static long estimateSize( StarTable table, File file ) {
+        long nrow = Math.max( 0, table.getRowCount() );
+        long ncol = table.getColumnCount();
+        return Math.max( file.length(), nrow * ncol * 8 ) + 1024;
+    }
+
+    /**
+     * Cache entry.
+     * This keeps track of the number of tables currently in use
+     * that are based on the shared table, so that it can be closed
+     * when it is no longer required.
+     */
+    private static class CachedTable {
+        final StarTable table_;
+        final long nbyte_;
+        private int nuser_;
+        private boolean discarded_;
+        private boolean closed_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  shared table
+         * @param  nbyte  size estimate in bytes
+         */
+        CachedTable( StarTable table, long nbyte ) {
+            table_ = table;
+            nbyte_ = nbyte;
+        }
+
+        /**
+         * Registers a new user of the shared table.
+         *
+         * @return  true if the table is available,
+         *          false if it has already been closed
+         */
+        synchronized boolean acquire() {
+            if ( closed_ ) {
+                return false;
+            }
+            else {
+                nuser_++;
+                return true;
+            }
+        }
+
+        /**
+         * Deregisters a user of the shared table.
+         */
+        synchronized void release() {
+            nuser_--;
+            closeIfUnused();
+        }
+
+        /**
+         * Indicates that this entry is no longer held by the cache.
+         */
+        synchronized void discard() {
+            discarded_ = true;
+            closeIfUnused();
+        }
+
+        /**
+         * Closes the shared table if it is neither cached nor in use.
+         */
+        private void closeIfUnused() {
+            if ( discarded_ && nuser_ <= 0 && ! closed_ ) {
+                closed_ = true;
+                try {
+                    table_.close();
+                }
+                catch ( IOException e ) {
+                    logger_.log( Level.WARNING,
+                                 "Failed to close cached table", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Wrapper table which shares data with the cached table,
+     * but has private copies of its metadata.
+     */
+    private static class IsolatedTable extends WrapperStarTable {
+
+        private final CachedTable entry_;
+        private final ColumnInfo[] colInfos_;
+        private final List<DescribedValue> params_;
+        private String name_;
+        private URL url_;
+        private boolean isClosed_;
+
+        /**
+         * Constructor.
+         *
+         * @param  entry  acquired cache entry containing shared base table
+         */
+        IsolatedTable( CachedTable entry ) {
+            super( entry.table_ );
+            entry_ = entry;
+            StarTable base = entry.table_;
+            int ncol = base.getColumnCount();
+            colInfos_ = new ColumnInfo[ ncol ];
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                colInfos_[ ic ] = new ColumnInfo( base.getColumnInfo( ic ) );
+            }
+            params_ = new ArrayList<DescribedValue>( base.getParameters() );
+            name_ = base.getName();
+            url_ = base.getURL();
+        }
+
+        @Override
+        public ColumnInfo getColumnInfo( int icol ) {
+            return colInfos_[ icol ];
+        }
+
+        @Override
+        public List<DescribedValue> getParameters() {
+            return params_;
+        }
+
+        @Override
+        public DescribedValue getParameterByName( String name ) {
+            for ( DescribedValue dval : params_ ) {
+                if ( name.equals( dval.getInfo().getName() ) ) {
+                    return dval;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void setParameter( DescribedValue dval ) {
+            DescribedValue old = getParameterByName( dval.getInfo()
+                                                         .getName() );
+            if ( old != null ) {
+                params_.remove( old );
+            }
+            params_.add( dval );
+        }
+
+        @Override
+        public String getName() {
+            return name_;
+        }
+
+        @Override
+        public void setName( String name ) {
+            name_ = name;
+        }
+
+        @Override
+        public URL getURL() {
+            return url_;
+        }
+
+        @Override
+        public void setURL( URL url ) {
+            url_ = url;
+        }
+
+        @Override
+        public void close() {
+            synchronized ( this ) {
+                if ( isClosed_ ) {
+                    return;
+                }
+                isClosed_ = true;
+            }
+            entry_.release();
+        }
+    }
+}
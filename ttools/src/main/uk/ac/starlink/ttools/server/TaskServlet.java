@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -25,6 +26,8 @@ import uk.ac.starlink.task.Parameter;
 import uk.ac.starlink.task.Task;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.Stilts;
+import uk.ac.starlink.ttools.jel.JELCompilationCache;
+import uk.ac.starlink.ttools.jel.JELUtils;
 import uk.ac.starlink.util.IOUtils;
 import uk.ac.starlink.util.LoadException;
 import uk.ac.starlink.util.ObjectFactory;
@@ -44,6 +47,8 @@ public class TaskServlet extends HttpServlet {
     private StarTableOutput tableOutput_;
     private JDBCAuthenticator jdbcAuth_;
     private Collection<String> taskNameSet_;
+    private TableCache tableCache_;
+    private JELCompilationCache jelCache_;
 
     public void init( ServletConfig config ) throws ServletException {
         super.init( config );
@@ -60,6 +65,13 @@ public class TaskServlet extends HttpServlet {
 
         /* Set up table factory. */
         tableFactory_ = sContext.getTableFactory();
+
+        /* Set up caches shared between requests. */
+        tableCache_ = sContext.getTableCache();
+        jelCache_ = sContext.getCompilationCache();
+        if ( jelCache_ != null ) {
+            JELUtils.setCompilationCache( jelCache_ );
+        }
     }
 
 
@@ -198,6 +210,7 @@ public class TaskServlet extends HttpServlet {
                            + "<a href='http://www.starlink.ac.uk/stilts/'>"
                            + "http://www.starlink.ac.uk/stilts/</a>" );
                 out.println( "</p>" );
+                writeCacheInfo( out );
                 writeStiltsHelp( request.getServletPath(), out );
                 out.println( "</body>" );
                 out.println( "</html>" );
@@ -265,6 +278,34 @@ public class TaskServlet extends HttpServlet {
         out.println( "</ul>" );
     }
 
+    /**
+     * Writes HTML information about the server-wide caches
+     * to an output stream.
+     *
+     * @param  out  response output stream
+     */
+    private void writeCacheInfo( ServletOutputStream out )
+            throws IOException {
+        out.println( "<p><b>Table cache:</b> "
+                   + ( tableCache_ == null ? "disabled" : tableCache_ )
+                   + "<br />" );
+        out.println( "<b>Expression cache:</b> "
+                   + ( jelCache_ == null ? "disabled" : jelCache_ ) );
+        out.println( "</p>" );
+        if ( tableCache_ != null ) {
+            Map<String,Long> hits = tableCache_.getEntryHits();
+            if ( hits.size() > 0 ) {
+                out.println( "<p>Cached tables (hits):</p>" );
+                out.println( "<ul>" );
+                for ( Map.Entry<String,Long> entry : hits.entrySet() ) {
+                    out.println( "<li>" + escape( entry.getKey() )
+                               + " (" + entry.getValue() + ")</li>" );
+                }
+                out.println( "</ul>" );
+            }
+        }
+    }
+
     /**
      * Writes HTML information about a given task to an output stream.
      *
@@ -0,0 +1,343 @@
+package uk.ac.starlink.ttools.taplint;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import uk.ac.starlink.vo.TapService;
+
+/**
+ * Runs a sequence of validation stages, concurrently where possible.
+ *
+ * <p>Each stage is added with a list of the stages it depends on,
+ * that is whose results it uses.
+ * If the concurrency is 1, stages are simply run one after another
+ * in the order they were added, reporting directly to the output reporter.
+ * Otherwise, up to the given number of stages are run at once,
+ * each starting only when all the stages it depends on have completed.
+ * Since each stage makes its HTTP requests one at a time,
+ * this also limits the number of concurrent requests to the service.
+ * Messages from concurrently running stages are buffered,
+ * and written to the output reporter in the order in which the stages
+ * were added, so the output is the same as for sequential execution,
+ * though it may not appear until some stages have completed.
+ *
+ * <p>Objects shared between stages which report messages when they are
+ * lazily initialised should use a {@link SharedReporter}
+ * obtained from this scheduler.
+ * Messages from such an object will appear in the output of the first
+ * stage (in order of addition) which uses it, as they would for
+ * sequential execution.
+ */
+public class StageScheduler {
+
+    private final int concurrency_;
+    private final Map<String,Stage> stages_;
+    private final Map<String,String[]> deps_;
+    private final ThreadLocal<StageOutput> output_;
+
+    /**
+     * Constructor.
+     *
+     * @param  concurrency  maximum number of stages to run concurrently
+     */
+    public StageScheduler( int concurrency ) {
+        concurrency_ = Math.max( 1, concurrency );
+        stages_ = new LinkedHashMap<String,Stage>();
+        deps_ = new LinkedHashMap<String,String[]>();
+        output_ = new InheritableThreadLocal<StageOutput>();
+    }
+
+    /**
+     * Returns the maximum number of stages this scheduler will run at once.
+     *
+     * @return  concurrency
+     */
+    public int getConcurrency() {
+        return concurrency_;
+    }
+
+    /**
+     * Adds a stage to the sequence to be run.
+     * Dependencies on stages which have not previously been added
+     * to this scheduler are ignored.
+     *
+     * @param  code   stage code
+     * @param  stage  stage
+     * @param  depCodes  codes of stages whose results this stage uses
+     */
+    public void addStage( String code, Stage stage, String[] depCodes ) {
+        List<String> depList = new ArrayList<String>();
+        for ( String depCode : depCodes ) {
+            if ( stages_.containsKey( depCode ) ) {
+                depList.add( depCode );
+            }
+        }
+        stages_.put( code, stage );
+        deps_.put( code, depList.toArray( new String[ 0 ] ) );
+    }
+
+    /**
+     * Returns a reporter suitable for use by lazily-initialised objects
+     * shared between the stages run by this scheduler.
+     *
+     * @param  baseReporter  destination for messages not reported during
+     *                       concurrent stage execution
+     * @return  new shared reporter
+     */
+    public SharedReporter createSharedReporter( Reporter baseReporter ) {
+        return new SharedReporter( baseReporter );
+    }
+
+    /**
+     * Runs all the stages that have been added, writing a section to
+     * the output reporter for each one.
+     * The reporter's <code>start</code> and <code>end</code> methods
+     * are not called.
+     *
+     * @param  reporter  output reporter
+     * @param  tapService  TAP service description
+     */
+    public void run( OutputReporter reporter, TapService tapService ) {
+        if ( concurrency_ == 1 ) {
+            for ( Map.Entry<String,Stage> entry : stages_.entrySet() ) {
+                String code = entry.getKey();
+                Stage stage = entry.getValue();
+                reporter.startSection( code, stage.getDescription() );
+                stage.run( reporter, tapService );
+                reporter.summariseUnreportedMessages( code );
+                reporter.endSection();
+            }
+        }
+        else {
+            runConcurrently( reporter, tapService );
+        }
+    }
+
+    /**
+     * Runs stages concurrently, writing output in sequence.
+     *
+     * @param  reporter  output reporter
+     * @param  tapService  TAP service description
+     */
+    private void runConcurrently( OutputReporter reporter,
+                                  TapService tapService ) {
+        final AtomicInteger ithread = new AtomicInteger();
+        ExecutorService executor =
+                Executors.newFixedThreadPool( concurrency_, r -> {
+            Thread th = new Thread( r, "taplint stage-"
+                                     + ithread.incrementAndGet() );
+            th.setDaemon( true );
+            return th;
+        } );
+        try {
+
+            /* Queue all stages, each to start when its dependencies
+             * have completed. */
+            Map<String,CompletableFuture<StageOutput>> futures =
+                new LinkedHashMap<String,CompletableFuture<StageOutput>>();
+            for ( Map.Entry<String,Stage> entry : stages_.entrySet() ) {
+                String code = entry.getKey();
+                Stage stage = entry.getValue();
+                String[] depCodes = deps_.get( code );
+                CompletableFuture<?>[] depFutures =
+                    new CompletableFuture<?>[ depCodes.length ];
+                for ( int id = 0; id < depCodes.length; id++ ) {
+                    depFutures[ id ] = futures.get( depCodes[ id ] );
+                }
+                futures.put( code,
+                             CompletableFuture.allOf( depFutures )
+                            .thenApplyAsync( v -> runBuffered( stage,
+                                                               tapService ),
+                                             executor ) );
+            }
+
+            /* Write the output of each stage in sequence as it becomes
+             * available. */
+            for ( Map.Entry<String,Stage> entry : stages_.entrySet() ) {
+                String code = entry.getKey();
+                StageOutput output;
+                try {
+                    output = futures.get( code ).get();
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch ( ExecutionException e ) {
+                    throw new RuntimeException( "Stage " + code + " failed",
+                                                e.getCause() );
+                }
+                reporter.startSection( code, entry.getValue()
+                                                  .getDescription() );
+                output.replay( reporter );
+                if ( output.error_ instanceof RuntimeException ) {
+                    throw (RuntimeException) output.error_;
+                }
+                else if ( output.error_ instanceof Error ) {
+                    throw (Error) output.error_;
+                }
+                reporter.summariseUnreportedMessages( code );
+                reporter.endSection();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a stage in the current thread, buffering its output.
+     *
+     * @param  stage  stage
+     * @param  tapService  TAP service description
+     * @return  buffered output
+     */
+    private StageOutput runBuffered( Stage stage, TapService tapService ) {
+        StageOutput output = new StageOutput();
+        output_.set( output );
+        try {
+            stage.run( output, tapService );
+        }
+        catch ( RuntimeException | Error e ) {
+            output.error_ = e;
+        }
+        finally {
+            output_.remove();
+        }
+        return output;
+    }
+
+    /**
+     * Reporter for use by lazily-initialised objects shared between stages.
+     * The {@link #touch} method should be called every time the
+     * object is used by a stage.
+     */
+    public class SharedReporter implements Reporter {
+
+        private final Reporter baseReporter_;
+        private final HoldReporter held_;
+
+        /**
+         * Constructor.
+         *
+         * @param  baseReporter  destination for messages not reported
+         *                       during concurrent stage execution
+         */
+        private SharedReporter( Reporter baseReporter ) {
+            baseReporter_ = baseReporter;
+            held_ = new HoldReporter();
+        }
+
+        /**
+         * Notes that the shared object is being used by the stage
+         * running in the current thread, if any.
+         * Messages from this reporter will be written at the point
+         * of the first such use, in stage order.
+         */
+        public void touch() {
+            StageOutput output = output_.get();
+            if ( output != null ) {
+                output.mark( this );
+            }
+        }
+
+        public void report( ReportCode code, String msg ) {
+            report( code, msg, null );
+        }
+
+        public void report( ReportCode code, String msg, Throwable err ) {
+            if ( output_.get() == null ) {
+                baseReporter_.report( code, msg, err );
+            }
+            else {
+                synchronized ( held_ ) {
+                    held_.report( code, msg, err );
+                }
+            }
+        }
+
+        /**
+         * Passes on any held messages to a given reporter.
+         *
+         * @param  reporter  destination reporter
+         */
+        void flush( Reporter reporter ) {
+            synchronized ( held_ ) {
+                held_.dumpReports( reporter );
+            }
+        }
+    }
+
+    /**
+     * Reporter which buffers the output of a stage.
+     */
+    private static class StageOutput implements Reporter {
+
+        private final List<Object> items_;
+        private final Set<SharedReporter> marked_;
+        Throwable error_;
+
+        /**
+         * Constructor.
+         */
+        StageOutput() {
+            items_ = new ArrayList<Object>();
+            marked_ = new HashSet<SharedReporter>();
+        }
+
+        public void report( ReportCode code, String msg ) {
+            report( code, msg, null );
+        }
+
+        public synchronized void report( ReportCode code, String msg,
+                                         Throwable err ) {
+            Object last = items_.isEmpty() ? null
+                                           : items_.get( items_.size() - 1 );
+            HoldReporter holder;
+            if ( last instanceof HoldReporter ) {
+                holder = (HoldReporter) last;
+            }
+            else {
+                holder = new HoldReporter();
+                items_.add( holder );
+            }
+            holder.report( code, msg, err );
+        }
+
+        /**
+         * Records the first use of a shared object by this stage.
+         *
+         * @param  shared  shared object's reporter
+         */
+        synchronized void mark( SharedReporter shared ) {
+            if ( marked_.add( shared ) ) {
+                items_.add( shared );
+            }
+        }
+
+        /**
+         * Writes the buffered output to a reporter.
+         *
+         * @param  reporter  destination reporter
+         */
+        synchronized void replay( Reporter reporter ) {
+            for ( Object item : items_ ) {
+                if ( item instanceof HoldReporter ) {
+                    ((HoldReporter) item).dumpReports( reporter );
+                }
+                else {
+                    ((SharedReporter) item).flush( reporter );
+                }
+            }
+            items_.clear();
+        }
+    }
+}
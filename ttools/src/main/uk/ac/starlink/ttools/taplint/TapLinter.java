@@ -147,26 +147,29 @@ public class TapLinter {
                                   tapSchemaStage_, tmetaStage_,
                               } ) );
 
-        /* Record them in order. */
+        /* Record them in order, noting which stages use the table
+         * metadata acquired by earlier ones. */
+        String[] noDeps = new String[ 0 ];
+        String[] metaDeps = new String[] { "TME", "TMS" };
         stageSet_ = new StageSet();
-        stageSet_.add( "TMV", tmetaXsdStage_, true );
-        stageSet_.add( "TME", tmetaStage_, true );
-        stageSet_.add( "TMS", tapSchemaStage_, true );
-        stageSet_.add( "TMC", cfTmetaStage_, true );
-        stageSet_.add( "UUC", unitUcdStage_, true );
-        stageSet_.add( "CPV", tcapXsdStage_, true );
-        stageSet_.add( "CAP", tcapStage_, true );
-        stageSet_.add( "AVV", availXsdStage_, true );
-        stageSet_.add( "QGE", getQueryStage_, true );
-        stageSet_.add( "QPO", postQueryStage_, true );
-        stageSet_.add( "QAS", asyncQueryStage_, true );
-        stageSet_.add( "UWS", jobStage_, true );
-        stageSet_.add( MDQ_NAME, colMetaStage_, true );
-        stageSet_.add( "OBS", obstapStage_, true );
-        stageSet_.add( "LOC", obslocStage_, true );
-        stageSet_.add( "EPN", epntapStage_, false );
-        stageSet_.add( "UPL", uploadStage_, true );
-        stageSet_.add( "EXA", exampleStage_, true );
+        stageSet_.add( "TMV", tmetaXsdStage_, true, noDeps );
+        stageSet_.add( "TME", tmetaStage_, true, noDeps );
+        stageSet_.add( "TMS", tapSchemaStage_, true, noDeps );
+        stageSet_.add( "TMC", cfTmetaStage_, true, metaDeps );
+        stageSet_.add( "UUC", unitUcdStage_, true, metaDeps );
+        stageSet_.add( "CPV", tcapXsdStage_, true, noDeps );
+        stageSet_.add( "CAP", tcapStage_, true, noDeps );
+        stageSet_.add( "AVV", availXsdStage_, true, noDeps );
+        stageSet_.add( "QGE", getQueryStage_, true, metaDeps );
+        stageSet_.add( "QPO", postQueryStage_, true, metaDeps );
+        stageSet_.add( "QAS", asyncQueryStage_, true, metaDeps );
+        stageSet_.add( "UWS", jobStage_, true, metaDeps );
+        stageSet_.add( MDQ_NAME, colMetaStage_, true, metaDeps );
+        stageSet_.add( "OBS", obstapStage_, true, metaDeps );
+        stageSet_.add( "LOC", obslocStage_, true, metaDeps );
+        stageSet_.add( "EPN", epntapStage_, false, metaDeps );
+        stageSet_.add( "UPL", uploadStage_, true, noDeps );
+        stageSet_.add( "EXA", exampleStage_, true, metaDeps );
     }
 
     /**
@@ -191,7 +194,8 @@ public class TapLinter {
     }
 
     /**
-     * Creates and returns an executable for TAP validation.
+     * Creates and returns an executable for TAP validation
+     * which runs stages one at a time.
      *
      * @param  reporter  validation message destination
      * @param  tapServiceSupplier  supplier of TAP service description
@@ -209,6 +213,34 @@ public class TapLinter {
                               Set<String> stageCodeSet, int maxTestTables,
                               Predicate<TableMeta> tableFilter )
             throws TaskException {
+        return createExecutable( reporter, tapServiceSupplier, stageCodeSet,
+                                 maxTestTables, tableFilter, 1 );
+    }
+
+    /**
+     * Creates and returns an executable for TAP validation
+     * which may run independent stages concurrently.
+     * The output is the same regardless of concurrency.
+     *
+     * @param  reporter  validation message destination
+     * @param  tapServiceSupplier  supplier of TAP service description
+     * @param  stageCodeSet  unordered collection of code strings indicating
+     *         which stages should be run
+     * @param  maxTestTables  limit on the number of tables to test,
+     *                        or &lt;=0 for no limit
+     * @param  tableFilter  filter for tables to receive testing,
+     *                      or null for no restriction
+     * @param  concurrency  maximum number of stages to run at once
+     * @return   tap validator executable
+     * @see   StageScheduler
+     */
+    public Executable
+            createExecutable( OutputReporter reporter,
+                              IOSupplier<TapService> tapServiceSupplier,
+                              Set<String> stageCodeSet, int maxTestTables,
+                              Predicate<TableMeta> tableFilter,
+                              int concurrency )
+            throws TaskException {
 
         /* Prepare a checked and ordered sequence of codes determining
          * which stages will be executed.  Note the order is that defined
@@ -233,8 +265,15 @@ public class TapLinter {
         final String[] codes = selectedCodeList.toArray( new String[ 0 ] );
 
         /* Other initialisation. */
-        tapSchemaMetadata_.setReporter( reporter );
         colMetaStage_.setMaxTestTables( maxTestTables );
+        if ( tableFilter != null ) {
+            for ( String code : codes ) {
+                Stage stage = stageSet_.getStage( code );
+                if ( stage instanceof TableMetadataStage ) {
+                    ((TableMetadataStage) stage).setTableFilter( tableFilter );
+                }
+            }
+        }
 
         /* Create and return an executable which will run the
          * requested stages. */
@@ -254,22 +293,18 @@ public class TapLinter {
                     reporter.end();
                     return;
                 }
-                capabilitiesReader_.init( reporter, tapService );
-                reporter.start( announcements );
-                for ( int ic = 0; ic < codes.length; ic++ ) {
-                    String code = codes[ ic ];
-                    Stage stage = stageSet_.getStage( code );
-                    assert stage != null;
-                    if ( stage instanceof TableMetadataStage &&
-                         tableFilter != null ) {
-                        ((TableMetadataStage) stage)
-                                             .setTableFilter( tableFilter );
-                    }
-                    reporter.startSection( code, stage.getDescription() );
-                    stage.run( reporter, tapService );
-                    reporter.summariseUnreportedMessages( code );
-                    reporter.endSection();
+                StageScheduler scheduler = new StageScheduler( concurrency );
+                for ( String code : codes ) {
+                    scheduler.addStage( code, stageSet_.getStage( code ),
+                                        stageSet_.deps_.get( code ) );
                 }
+                capabilitiesReader_
+                   .init( scheduler.createSharedReporter( reporter ),
+                          tapService );
+                tapSchemaMetadata_
+                   .setReporter( scheduler.createSharedReporter( reporter ) );
+                reporter.start( announcements );
+                scheduler.run( reporter, tapService );
                 reporter.end();
             }
         };
@@ -384,6 +419,7 @@ public class TapLinter {
      */
     private static class StageSet {
         Map<String,Stage> stageMap_;
+        Map<String,String[]> deps_;
         Set<String> dflts_;
 
         /**
@@ -391,6 +427,7 @@ public class TapLinter {
          */
         StageSet() {
             stageMap_ = new LinkedHashMap<String,Stage>();
+            deps_ = new HashMap<String,String[]>();
             dflts_ = new HashSet<String>();
         }
 
@@ -400,9 +437,12 @@ public class TapLinter {
          * @param  code  code string
          * @param  stage  stage
          * @param  dflt  true iff stage is run by default
+         * @param  deps  codes of earlier stages whose results
+         *               this stage uses
          */
-        void add( String code, Stage stage, boolean dflt ) {
+        void add( String code, Stage stage, boolean dflt, String[] deps ) {
             stageMap_.put( code, stage );
+            deps_.put( code, deps );
             if ( dflt ) {
                 dflts_.add( code );
             }
@@ -425,7 +465,7 @@ public class TapLinter {
      * The init method must be called before it is used.
      */
     private static class CapabilitiesReader implements CapabilityHolder {
-        private Reporter reporter_;
+        private StageScheduler.SharedReporter reporter_;
         private TapService tapService_;
         private CapabilityHolder holder_;
 
@@ -435,7 +475,8 @@ public class TapLinter {
          * @param  reporter  reporter
          * @param  tapService   target service
          */
-        public void init( Reporter reporter, TapService tapService ) {
+        public synchronized void init( StageScheduler.SharedReporter reporter,
+                                       TapService tapService ) {
             reporter_ = reporter;
             tapService_ = tapService;
         }
@@ -462,7 +503,8 @@ public class TapLinter {
          *
          * @return  capabilities document, not null
          */
-        private CapabilityHolder getCapabilityHolder() {
+        private synchronized CapabilityHolder getCapabilityHolder() {
+            reporter_.touch();
             if ( holder_ == null ) {
                 holder_ = readCapabilityHolder();
             }
@@ -35,7 +35,10 @@ public class TapSchemaMetadataHolder implements MetadataHolder {
         reporter_ = reporter;
     }
 
-    public SchemaMeta[] getTableMetadata() {
+    public synchronized SchemaMeta[] getTableMetadata() {
+        if ( reporter_ instanceof StageScheduler.SharedReporter ) {
+            ((StageScheduler.SharedReporter) reporter_).touch();
+        }
         if ( metadata_ == null ) {
             metadata_ = readSchemaMetadata();
         }
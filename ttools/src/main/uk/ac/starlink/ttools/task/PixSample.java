@@ -1,8 +1,15 @@
 package uk.ac.starlink.ttools.task;
 
 import java.io.IOException;
+import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.SequentialRowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.task.BooleanParameter;
 import uk.ac.starlink.task.ChoiceParameter;
 import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.ExecutionException;
@@ -10,11 +17,13 @@ import uk.ac.starlink.task.Parameter;
 import uk.ac.starlink.task.ParameterValueException;
 import uk.ac.starlink.task.StringParameter;
 import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.convert.SkyConversion;
 import uk.ac.starlink.ttools.convert.SkySystem;
 import uk.ac.starlink.ttools.filter.AddColumnsTable;
 import uk.ac.starlink.ttools.filter.CalculatorColumnSupplement;
 import uk.ac.starlink.ttools.filter.ColumnSupplement;
 import uk.ac.starlink.ttools.filter.JELColumnSupplement;
+import uk.ac.starlink.ttools.filter.SupplementData;
 
 /**
  * Samples data from a HEALPix pixel file.
@@ -26,6 +35,9 @@ public class PixSample extends MapperTask {
 
     private static final String pixdataName_ = "pixdata";
 
+    /** Number of input rows sampled together in bulk mode. */
+    public static final int BULK_BLOCKSIZE = 256 * 1024;
+
     /**
      * Constructor.
      */
@@ -46,6 +58,8 @@ public class PixSample extends MapperTask {
         private final ChoiceParameter<SkySystem> outsysParam_;
         private final StringParameter radiusParam_;
         private final ChoiceParameter<HealpixScheme> schemeParam_;
+        private final BooleanParameter bulkParam_;
+        private final RowRunnerParameter runnerParam_;
 
         /**
          * Constructor.
@@ -216,6 +230,33 @@ public class PixSample extends MapperTask {
                 "</p>",
             } );
             outsysParam_.setNullPermitted( true );
+
+            runnerParam_ =
+                RowRunnerParameter.createScanRunnerParameter( "runner" );
+
+            bulkParam_ = new BooleanParameter( "bulk" );
+            bulkParam_.setPrompt( "Sample pixels in blocks?" );
+            bulkParam_.setBooleanDefault( false );
+            bulkParam_.setDescription( new String[] {
+                "<p>Determines how pixel values are read from the",
+                "pixel data table.",
+                "If false, each output row samples the pixel data",
+                "independently when it is read,",
+                "which for a large pixel data file means random access",
+                "reads for every input row.",
+                "If true, input rows are read in blocks of " + BULK_BLOCKSIZE,
+                "and the pixel indices for each block are calculated",
+                "(in parallel according to the",
+                "<code>" + runnerParam_.getName() + "</code> parameter)",
+                "and sorted,",
+                "so that the pixel data table is read in a single",
+                "ascending pass per block.",
+                "This can be much faster for large input tables and",
+                "large pixel data files,",
+                "but the output table is then only available for",
+                "sequential access.",
+                "</p>",
+            } );
         }
 
         public Parameter<?>[] getParameters() {
@@ -227,6 +268,8 @@ public class PixSample extends MapperTask {
                 insysParam_,
                 outsysParam_,
                 radiusParam_,
+                bulkParam_,
+                runnerParam_,
             };
         }
 
@@ -244,6 +287,9 @@ public class PixSample extends MapperTask {
                                     ? "0"
                                     : radiusParam_.stringValue( env );
             final HealpixScheme scheme = schemeParam_.objectValue( env );
+            final boolean bulk = bulkParam_.booleanValue( env );
+            final RowRunner runner = bulk ? runnerParam_.objectValue( env )
+                                          : null;
             return new TableMapping() {
                 public StarTable mapTables( InputTableSpec[] ins )
                         throws TaskException, IOException {
@@ -279,7 +325,14 @@ public class PixSample extends MapperTask {
                         createSampleSupplement( baseTable, pixSampler, statMode,
                                                 coordReader, lonExpr, latExpr,
                                                 radiusExpr );
-                    return new AddColumnsTable( baseTable, sampleSup );
+                    StarTable outTable =
+                        new AddColumnsTable( baseTable, sampleSup );
+                    return bulk
+                         ? new BulkSampleTable( outTable, baseTable,
+                                                pixSampler, statMode,
+                                                coordReader, lonExpr, latExpr,
+                                                radiusExpr, runner )
+                         : outTable;
                 }
             };
         }
@@ -432,6 +485,162 @@ public class PixSample extends MapperTask {
         };
     }
 
+    /**
+     * Table which supplies the same data as a sampled table created
+     * using {@link #createSampleSupplement},
+     * but which performs the sampling in blocks of rows for sequential
+     * access, using the bulk sampling method of {@link PixSampler}.
+     * Only sequential access is provided.
+     */
+    private static class BulkSampleTable extends WrapperStarTable {
+
+        private final StarTable baseTable_;
+        private final PixSampler pixSampler_;
+        private final PixSampler.StatMode statMode_;
+        private final CoordReader coordReader_;
+        private final ColumnSupplement inputSup_;
+        private final RowRunner runner_;
+        private final int nbase_;
+
+        /**
+         * Constructor.
+         *
+         * @param   sampledTable  table with base and sampled columns,
+         *                        used for metadata
+         * @param   baseTable   base table
+         * @param   pixSampler   characterises pixel sampling
+         * @param   statMode   mode for sampling statistics
+         * @param   coordReader  turns input coordinate pairs into
+         *                       lon/lat coords in the HEALPix coordinate system
+         * @param   lonExpr  JEL expression for first input coordinate
+         * @param   latExpr  JEL expression for second input coordinate
+         * @param   radExpr  JEL expression for averaging radius
+         * @param   runner   controls parallel pixel index calculation
+         */
+        BulkSampleTable( StarTable sampledTable, StarTable baseTable,
+                         PixSampler pixSampler,
+                         PixSampler.StatMode statMode,
+                         CoordReader coordReader, String lonExpr,
+                         String latExpr, String radExpr, RowRunner runner )
+                throws IOException {
+            super( sampledTable );
+            baseTable_ = baseTable;
+            pixSampler_ = pixSampler;
+            statMode_ = statMode;
+            coordReader_ = coordReader;
+            runner_ = runner;
+            nbase_ = baseTable.getColumnCount();
+            inputSup_ =
+                new JELColumnSupplement( baseTable,
+                                         new String[] { lonExpr, latExpr,
+                                                        radExpr },
+                                         null );
+        }
+
+        @Override
+        public boolean isRandom() {
+            return false;
+        }
+
+        @Override
+        public Object getCell( long irow, int icol ) {
+            throw new UnsupportedOperationException( "No random access" );
+        }
+
+        @Override
+        public Object[] getRow( long irow ) {
+            throw new UnsupportedOperationException( "No random access" );
+        }
+
+        @Override
+        public RowAccess getRowAccess() {
+            throw new UnsupportedOperationException( "No random access" );
+        }
+
+        @Override
+        public RowSplittable getRowSplittable() throws IOException {
+            return new SequentialRowSplittable( this );
+        }
+
+        @Override
+        public RowSequence getRowSequence() throws IOException {
+            final RowSequence baseSeq = baseTable_.getRowSequence();
+            final SupplementData inData =
+                inputSup_.createSupplementData( baseSeq );
+            final int bs = BULK_BLOCKSIZE;
+            final Object[][] baseRows = new Object[ bs ][];
+            final double[] lons = new double[ bs ];
+            final double[] lats = new double[ bs ];
+            final double[] radii = new double[ bs ];
+            return new RowSequence() {
+                long irow_ = -1;
+                int nblock_;
+                int iblock_;
+                Object[][] sampleRows_;
+                public boolean next() throws IOException {
+                    if ( ++iblock_ >= nblock_ ) {
+                        if ( ! readBlock() ) {
+                            return false;
+                        }
+                        iblock_ = 0;
+                    }
+                    return true;
+                }
+                public Object getCell( int icol ) {
+                    return icol < nbase_
+                         ? baseRows[ iblock_ ][ icol ]
+                         : sampleRows_[ iblock_ ][ icol - nbase_ ];
+                }
+                public Object[] getRow() {
+                    Object[] baseRow = baseRows[ iblock_ ];
+                    Object[] sampleRow = sampleRows_[ iblock_ ];
+                    Object[] row = new Object[ nbase_ + sampleRow.length ];
+                    System.arraycopy( baseRow, 0, row, 0, nbase_ );
+                    System.arraycopy( sampleRow, 0, row, nbase_,
+                                      sampleRow.length );
+                    return row;
+                }
+                public void close() throws IOException {
+                    baseSeq.close();
+                }
+
+                /**
+                 * Reads and samples the next block of input rows.
+                 *
+                 * @return  false iff there are no more rows
+                 */
+                private boolean readBlock() throws IOException {
+                    int n = 0;
+                    while ( n < bs && baseSeq.next() ) {
+                        irow_++;
+                        baseRows[ n ] = baseSeq.getRow().clone();
+                        Object[] inRow = inData.getRow( irow_ );
+                        double[] coords =
+                            coordReader_.getCoords(
+                                CalculatorColumnSupplement
+                               .getDouble( inRow[ 0 ] ),
+                                CalculatorColumnSupplement
+                               .getDouble( inRow[ 1 ] ) );
+                        lons[ n ] = coords[ 0 ];
+                        lats[ n ] = coords[ 1 ];
+                        radii[ n ] = CalculatorColumnSupplement
+                                    .getDouble( inRow[ 2 ] );
+                        n++;
+                    }
+                    nblock_ = n;
+                    if ( n == 0 ) {
+                        sampleRows_ = null;
+                        return false;
+                    }
+                    sampleRows_ =
+                        pixSampler_.sampleValues( lons, lats, radii, n,
+                                                  statMode_, runner_ );
+                    return true;
+                }
+            };
+        }
+    }
+
     /**
      * Returns a coordinate reader which converts between coordinate
      * systems specified by two given parameters.
@@ -482,19 +691,18 @@ public class PixSample extends MapperTask {
             };
         }
         else if ( inSys != null && outSys != null ) {
-           final double epoch = 2000.0;
+            final double epoch = 2000.0;
+            final SkyConversion conversion =
+                SkyConversion.createConversion( inSys, outSys, epoch );
             return new CoordReader() {
                 public double[] getCoords( double lonDegIn, double latDegIn ) {
-                    double lonRadIn= lonDegIn / 180. * Math.PI;
+                    double lonRadIn = lonDegIn / 180. * Math.PI;
                     double latRadIn = latDegIn / 180. * Math.PI;
-                    double[] fk5Rad = inSys.toFK5( lonRadIn, latRadIn, epoch );
-                    double[] radOut = outSys.fromFK5( fk5Rad[ 0 ], fk5Rad[ 1 ],
-                                                      epoch );
-                    double lonRadOut = radOut[ 0 ];
-                    double latRadOut = radOut[ 1 ];
-                    double lonDegOut = lonRadOut * 180. / Math.PI;
-                    double latDegOut = latRadOut * 180. / Math.PI;
-                    return new double[] { lonDegOut, latDegOut };
+                    double[] coords = new double[ 2 ];
+                    conversion.convert( lonRadIn, latRadIn, coords );
+                    coords[ 0 ] = coords[ 0 ] * 180. / Math.PI;
+                    coords[ 1 ] = coords[ 1 ] * 180. / Math.PI;
+                    return coords;
                 }
             };
         }
@@ -7,12 +7,19 @@ import cds.healpix.HealpixNested;
 import cds.healpix.HealpixNestedBMOC;
 import cds.healpix.VerticesAndPathComputer;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.HealpixTableInfo;
+import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.ttools.func.CoordsRadians;
@@ -105,7 +112,7 @@ public class PixSampler {
                 int nr = irows.length;
                 samples = new Object[ nr ];
                 for ( int ir = 0; ir < nr; ir++ ) {
-                    samples[ ir ] = pixTable_.getCell( ir, icol );
+                    samples[ ir ] = pixTable_.getCell( irows[ ir ], icol );
                 }
             }
 
@@ -171,6 +178,113 @@ public class PixSampler {
         }
     }
 
+    /**
+     * Samples values from all columns in the pixel table at each of
+     * a block of sky positions.
+     * The result is the same as calling
+     * {@link #sampleValues(double,double,double,StatMode)}
+     * for each position in turn, but the work is organised for efficiency
+     * when the pixel table is large.
+     * Pixel indices are first calculated for all the positions,
+     * in parallel as determined by the supplied runner.
+     * They are then sorted, so that the required pixel table rows
+     * are read in a single ascending pass, and the samples are
+     * finally scattered back to the positions that require them.
+     *
+     * @param   alphaDegs  array of longitude positions in degrees
+     * @param   deltaDegs  array of latitude positions in degrees
+     * @param   radiusDegs  array of radii of discs over which statistics
+     *                      will be gathered (ignored for point-like statMode)
+     * @param   n   number of positions, starting at the start of
+     *              the coordinate arrays
+     * @param   statMode   mode for sampling statistics
+     * @param   runner   controls parallelism of pixel index calculation
+     * @return  n-element array of sampled column value arrays,
+     *          in the same order as the input positions
+     */
+    public Object[][] sampleValues( double[] alphaDegs, double[] deltaDegs,
+                                    double[] radiusDegs, int n,
+                                    StatMode statMode, RowRunner runner )
+            throws IOException {
+        Object[][] outRows = new Object[ n ][];
+
+        /* Work out how to pack (pixel index, position index) pairs into
+         * a single long value.  If they won't fit, which will only happen
+         * for unfeasibly large pixel tables, sample one by one. */
+        int ibits = Math.max( 1, 32 - Integer.numberOfLeadingZeros( n ) );
+        int pbits = 2 * order_ + 4;
+        if ( ibits + pbits > 63 ) {
+            for ( int i = 0; i < n; i++ ) {
+                outRows[ i ] = sampleValues( alphaDegs[ i ], deltaDegs[ i ],
+                                             radiusDegs[ i ], statMode );
+            }
+            return outRows;
+        }
+
+        /* Calculate the pixel indices for each position in parallel.
+         * The table supplied to the runner just provides row indices. */
+        PixIndexCollector collector =
+            new PixIndexCollector( alphaDegs, deltaDegs, radiusDegs, ibits,
+                                   statMode.isPoint() );
+        long[] keys =
+            runner.collect( collector,
+                            ColumnStarTable.makeTableWithRows( n ) )
+                  .toLongArray();
+        Arrays.sort( keys );
+
+        /* Prepare per-position sample arrays. */
+        long imask = ( 1L << ibits ) - 1;
+        int[] counts = new int[ n ];
+        for ( long key : keys ) {
+            counts[ (int) ( key & imask ) ]++;
+        }
+        Object[][][] samples = new Object[ n ][][];
+        for ( int i = 0; i < n; i++ ) {
+            if ( isOnSky( alphaDegs[ i ], deltaDegs[ i ] ) ) {
+                samples[ i ] = new Object[ ncol_ ][ counts[ i ] ];
+            }
+        }
+
+        /* Read each required pixel table row once, in ascending order,
+         * and distribute its values to the positions that need it. */
+        int[] fills = new int[ n ];
+        RowAccess racc = pixTable_.getRowAccess();
+        try {
+            long lastPix = -1;
+            Object[] pixRow = null;
+            for ( long key : keys ) {
+                long pix = key >>> ibits;
+                int i = (int) ( key & imask );
+                if ( pix != lastPix ) {
+                    racc.setRowIndex( pix );
+                    pixRow = racc.getRow();
+                    lastPix = pix;
+                }
+                Object[][] psamples = samples[ i ];
+                int k = fills[ i ]++;
+                for ( int ic = 0; ic < ncol_; ic++ ) {
+                    psamples[ ic ][ k ] = pixRow[ ic ];
+                }
+            }
+        }
+        finally {
+            racc.close();
+        }
+
+        /* Combine the samples for each position to get the results. */
+        for ( int i = 0; i < n; i++ ) {
+            Object[][] psamples = samples[ i ];
+            Object[] outRow = new Object[ ncol_ ];
+            if ( psamples != null ) {
+                for ( int ic = 0; ic < ncol_; ic++ ) {
+                    outRow[ ic ] = statMode.getResult( psamples[ ic ] );
+                }
+            }
+            outRows[ i ] = outRow;
+        }
+        return outRows;
+    }
+
     /**
      * Returns the metadata for the columns output by the sampler.
      *
@@ -196,8 +310,22 @@ public class PixSampler {
      * @return   table row index
      */
     private long getPixIndex( double alphaDeg, double deltaDeg ) {
-        long inest = hasher_.hash( Math.toRadians( alphaDeg ),
-                                   Math.toRadians( deltaDeg ) );
+        return getPixIndex( hasher_, alphaDeg, deltaDeg );
+    }
+
+    /**
+     * Returns the index of row in the pixel table corresponding to the
+     * given sky position, using a supplied hash computer.
+     *
+     * @param   hasher  hash computer for this sampler's order
+     * @param   alphaDeg   longitude in degrees
+     * @param   deltaDeg   latitude in degrees
+     * @return   table row index
+     */
+    private long getPixIndex( HashComputer hasher,
+                              double alphaDeg, double deltaDeg ) {
+        long inest = hasher.hash( Math.toRadians( alphaDeg ),
+                                  Math.toRadians( deltaDeg ) );
         return nested_ ? inest
                        : hnested_.toRing( inest );
     }
@@ -249,6 +377,18 @@ public class PixSampler {
         return pixes;
     }
 
+    /**
+     * Indicates whether a given position is acceptable for sampling.
+     *
+     * @param   alphaDeg  longitude in degrees
+     * @param   deltaDeg  latitude in degrees
+     * @return  true iff the position is on the sky
+     */
+    private static boolean isOnSky( double alphaDeg, double deltaDeg ) {
+        return alphaDeg >= -360 && alphaDeg <= +360
+            && deltaDeg >= -90 && deltaDeg <= +90;
+    }
+
     /**
      * Constructs a PixSampler from a given table.
      * The current implementation works with any table having a row count
@@ -350,6 +490,79 @@ public class PixSampler {
         return level;
     }
 
+    /**
+     * Collector that calculates the pixel table row indices required
+     * for a block of sky positions.
+     * The rows of the table it processes are used only to supply
+     * position indices.
+     * Each (pixel index, position index) pair is packed into a single
+     * long value, with the position index in the lowest bits.
+     */
+    private class PixIndexCollector extends RowCollector<LongList> {
+
+        private final double[] alphaDegs_;
+        private final double[] deltaDegs_;
+        private final double[] radiusDegs_;
+        private final int ibits_;
+        private final boolean isPoint_;
+
+        /**
+         * Constructor.
+         *
+         * @param   alphaDegs  array of longitude positions in degrees
+         * @param   deltaDegs  array of latitude positions in degrees
+         * @param   radiusDegs  array of disc radii in degrees
+         * @param   ibits   number of bits used for position index
+         * @param   isPoint  true for point sampling, false for discs
+         */
+        PixIndexCollector( double[] alphaDegs, double[] deltaDegs,
+                           double[] radiusDegs, int ibits, boolean isPoint ) {
+            alphaDegs_ = alphaDegs;
+            deltaDegs_ = deltaDegs;
+            radiusDegs_ = radiusDegs;
+            ibits_ = ibits;
+            isPoint_ = isPoint;
+        }
+
+        public LongList createAccumulator() {
+            return new LongList();
+        }
+
+        public void accumulateRows( RowSplittable rseq, LongList keys )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            HashComputer hasher = hnested_.newHashComputer();
+            while ( rseq.next() ) {
+                int i = (int) rowIndex.getAsLong();
+                double alphaDeg = alphaDegs_[ i ];
+                double deltaDeg = deltaDegs_[ i ];
+                if ( isOnSky( alphaDeg, deltaDeg ) ) {
+                    if ( isPoint_ ) {
+                        long pix = getPixIndex( hasher, alphaDeg, deltaDeg );
+                        keys.add( ( pix << ibits_ ) | i );
+                    }
+                    else {
+                        for ( long pix :
+                              getPixIndices( alphaDeg, deltaDeg,
+                                             radiusDegs_[ i ] ) ) {
+                            keys.add( ( pix << ibits_ ) | i );
+                        }
+                    }
+                }
+            }
+        }
+
+        public LongList combine( LongList keys1, LongList keys2 ) {
+            if ( keys1.size() < keys2.size() ) {
+                LongList tmp = keys1;
+                keys1 = keys2;
+                keys2 = tmp;
+            }
+            keys1.addAll( keys2 );
+            return keys1;
+        }
+    }
+
     /**
      * Defines how statistics are to be acquired from a pixel or set of pixels.
      */
@@ -43,6 +43,7 @@ public class TapLint implements OperationalTask {
     private final StringMultiParameter stagesParam_;
     private final IntegerParameter maxtableParam_;
     private final StringParameter tablesParam_;
+    private final IntegerParameter parallelParam_;
     private final Parameter<?>[] params_;
 
     /**
@@ -151,6 +152,30 @@ public class TapLint implements OperationalTask {
         tablesParam_.setNullPermitted( true );
         paramList.add( tablesParam_ );
 
+        parallelParam_ = new IntegerParameter( "parallel" );
+        parallelParam_.setPrompt( "Maximum number of concurrent stages" );
+        parallelParam_.setUsage( "<n>" );
+        parallelParam_.setMinimum( 1 );
+        parallelParam_.setIntDefault( 1 );
+        parallelParam_.setDescription( new String[] {
+            "<p>Sets the maximum number of validation stages",
+            "that may run at the same time.",
+            "Stages which use the table metadata acquired by the",
+            "metadata stages wait until those have completed,",
+            "but others may run concurrently,",
+            "which can considerably reduce the total time taken",
+            "to validate a slow service.",
+            "Since each stage makes one request to the service at a time,",
+            "this also limits the number of concurrent HTTP requests.",
+            "</p>",
+            "<p>The content and order of the output is the same",
+            "whatever the value of this parameter,",
+            "but when it is greater than 1 the output for each stage",
+            "is only written once that stage has completed.",
+            "</p>",
+        } );
+        paramList.add( parallelParam_ );
+
         reporterParam_ = new OutputReporterParameter( "format" );
 
         paramList.add( reporterParam_ );
@@ -181,6 +206,7 @@ public class TapLint implements OperationalTask {
         Set<String> stageSet = getStageSet( stagesParam_.stringsValue( env ) );
         Predicate<TableMeta> tableFilter =
             createTableNameFilter( tablesParam_.objectValue( env ) );
+        int parallel = parallelParam_.intValue( env );
 
         /* Acquire the service, which may (depending on chosen interface type)
          * involve reading the capabilities document. */
@@ -211,7 +237,8 @@ public class TapLint implements OperationalTask {
 
         /* If we have a service, set up validation in the usual way. */
         return tapLinter_.createExecutable( reporter, serviceSupplier, stageSet,
-                                            maxTestTables, tableFilter );
+                                            maxTestTables, tableFilter,
+                                            parallel );
     }
 
     /**
@@ -49,6 +49,7 @@ public class TapMapper implements TableMapper {
     private final ContentCodingParameter codingParam_;
     private final Parameter<VOTableWriter> vowriterParam_;
     private final TapResultReader resultReader_;
+    private final TapPartitioner partitioner_;
     private final Parameter<?>[] params_;
 
     public TapMapper() {
@@ -222,6 +223,9 @@ public class TapMapper implements TableMapper {
         resultReader_ = new TapResultReader();
         paramList.addAll( Arrays.asList( resultReader_.getParameters() ) );
 
+        partitioner_ = new TapPartitioner( resultReader_ );
+        paramList.addAll( Arrays.asList( partitioner_.getParameters() ) );
+
         params_ = paramList.toArray( new Parameter<?>[ 0 ] );
     }
 
@@ -266,7 +270,29 @@ public class TapMapper implements TableMapper {
             LineTableEnvironment.getTableFactory( env );
         final VOTableWriter vowriter = vowriterParam_.objectValue( env );
         final long uploadLimit = -1;
-        if ( sync ) {
+        final TapPartitioner.PartitionExecutor partExec =
+            partitioner_.createExecutor( env, adql, sync, coding,
+                                         durationParam_.objectValue( env ),
+                                         destructionParam_
+                                        .stringValue( env ) );
+        if ( partExec != null ) {
+            return new TableMapping() {
+                public StarTable mapTables( InputTableSpec[] inSpecs )
+                        throws TaskException, IOException {
+                    TapService tapService = tapServiceSupplier.get();
+                    Map<String,StarTable> uploadMap =
+                        new LinkedHashMap<String,StarTable>();
+                    for ( int iu = 0; iu < nup; iu++ ) {
+                        uploadMap.put( upNames[ iu ],
+                                       inSpecs[ iu ].getWrappedTable() );
+                    }
+                    return partExec.execute( partAdql ->
+                        new TapQuery( tapService, partAdql, extraParams,
+                                      uploadMap, uploadLimit, vowriter ) );
+                }
+            };
+        }
+        else if ( sync ) {
             return new TableMapping() {
                 public StarTable mapTables( InputTableSpec[] inSpecs )
                         throws TaskException, IOException {
@@ -384,6 +410,16 @@ public class TapMapper implements TableMapper {
         return resultReader_;
     }
 
+    /**
+     * Returns the object which manages partitioned query execution
+     * for this mapper.
+     *
+     * @return  partitioner
+     */
+    public TapPartitioner getPartitioner() {
+        return partitioner_;
+    }
+
     /**
      * Returns a new TapQuery object from values available at execution time.
      *
@@ -0,0 +1,1070 @@
+package uk.ac.starlink.ttools.task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowAccess;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.task.Environment;
+import uk.ac.starlink.task.IntegerParameter;
+import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.ParameterValueException;
+import uk.ac.starlink.task.StringParameter;
+import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.cone.ParallelResultRowSequence;
+import uk.ac.starlink.util.ContentCoding;
+import uk.ac.starlink.util.IOFunction;
+import uk.ac.starlink.util.URLUtils;
+import uk.ac.starlink.vo.TapQuery;
+import uk.ac.starlink.vo.UwsJob;
+import uk.ac.starlink.vo.UwsJobInfo;
+import uk.ac.starlink.vo.UwsStage;
+
+/**
+ * Aggregates parameters and behaviour for executing a TAP query
+ * as a number of disjoint partitions which are run concurrently.
+ *
+ * <p>The query is split into partitions by adding a range constraint
+ * on a user-chosen column to its top-level WHERE clause.
+ * The partition queries are submitted with bounded concurrency,
+ * failed partitions are resubmitted a given number of times,
+ * and the partition results are presented as a single table
+ * in partition order, available as soon as the first partition
+ * has completed.
+ * UWS job URLs can optionally be recorded in a file, so that a
+ * partitioned query which is interrupted can be resumed without
+ * resubmitting the partitions which are still available on the server.
+ */
+public class TapPartitioner {
+
+    private final TapResultReader resultReader_;
+    private final IntegerParameter npartParam_;
+    private final StringParameter partcolParam_;
+    private final StringParameter partrangeParam_;
+    private final IntegerParameter parallelParam_;
+    private final IntegerParameter retryParam_;
+    private final StringParameter partjobsParam_;
+    private final Parameter<?>[] parameters_;
+
+    private static final String JOBFILE_HEADER = "#tap-partitions";
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.task" );
+
+    /**
+     * Constructor.
+     *
+     * @param  resultReader  supplies parameters controlling polling,
+     *                       progress reporting and job deletion
+     */
+    public TapPartitioner( TapResultReader resultReader ) {
+        resultReader_ = resultReader;
+        List<Parameter<?>> paramList = new ArrayList<Parameter<?>>();
+
+        npartParam_ = new IntegerParameter( "npart" );
+        npartParam_.setPrompt( "Number of query partitions" );
+        npartParam_.setUsage( "<n>" );
+        npartParam_.setMinimum( 1 );
+        npartParam_.setIntDefault( 1 );
+        paramList.add( npartParam_ );
+
+        partcolParam_ = new StringParameter( "partcol" );
+        partcolParam_.setPrompt( "Column on which to partition query" );
+        partcolParam_.setUsage( "<adql-expr>" );
+        partcolParam_.setNullPermitted( true );
+        paramList.add( partcolParam_ );
+
+        partrangeParam_ = new StringParameter( "partrange" );
+        partrangeParam_.setPrompt( "Range of partition column values" );
+        partrangeParam_.setUsage( "<lo>,<hi>" );
+        partrangeParam_.setNullPermitted( true );
+        paramList.add( partrangeParam_ );
+
+        int maxParallel = ParallelResultRowSequence.getMaxParallelism();
+        parallelParam_ = new IntegerParameter( "parallel" );
+        parallelParam_.setPrompt( "Maximum number of concurrent "
+                                + "partition jobs" );
+        parallelParam_.setUsage( "<n>" );
+        parallelParam_.setMinimum( 1 );
+        parallelParam_.setMaximum( maxParallel );
+        parallelParam_.setIntDefault( Math.min( 3, maxParallel ) );
+        paramList.add( parallelParam_ );
+
+        retryParam_ = new IntegerParameter( "partretry" );
+        retryParam_.setPrompt( "Number of resubmissions "
+                             + "for a failed partition" );
+        retryParam_.setUsage( "<n>" );
+        retryParam_.setMinimum( 0 );
+        retryParam_.setIntDefault( 2 );
+        paramList.add( retryParam_ );
+
+        partjobsParam_ = new StringParameter( "partjobs" );
+        partjobsParam_.setPrompt( "File recording partition job URLs" );
+        partjobsParam_.setUsage( "<filename>" );
+        partjobsParam_.setNullPermitted( true );
+        paramList.add( partjobsParam_ );
+
+        String nameNpart = npartParam_.getName();
+        String nameCol = partcolParam_.getName();
+        String nameRange = partrangeParam_.getName();
+        npartParam_.setDescription( new String[] {
+            "<p>Number of partitions into which the query is split.",
+            "If the value is greater than 1, the query is executed as",
+            "that many separate TAP jobs, each selecting a disjoint",
+            "range of values of the column given by the",
+            "<code>" + nameCol + "</code> parameter,",
+            "and the results are concatenated in partition order",
+            "to give the output table.",
+            "Up to <code>" + parallelParam_.getName() + "</code>",
+            "of the partition jobs run at any one time.",
+            "</p>",
+            "<p>This can be used to retrieve very large result sets",
+            "in parallel, and to stay within per-job row limits",
+            "imposed by the service.",
+            "The partitioning constraint is added to the top-level",
+            "WHERE clause of the query, so the query should be a",
+            "straightforward row selection from one or more tables;",
+            "set operations like UNION are not permitted,",
+            "and any TOP, ORDER BY, GROUP BY or aggregate functions",
+            "will apply separately to each partition.",
+            "Rows with a NULL value of the partition column",
+            "are not selected by any partition.",
+            "</p>",
+        } );
+        partcolParam_.setDescription( new String[] {
+            "<p>ADQL expression, usually a column name, giving a numeric",
+            "value on which to partition the query",
+            "if <code>" + nameNpart + "</code>&gt;1.",
+            "Ideally this should be an indexed column in the table",
+            "being queried.",
+            "A good choice for Gaia tables is <code>source_id</code>,",
+            "since ranges of that value correspond to HEALPix tiles",
+            "and hence to regions on the sky.",
+            "</p>",
+        } );
+        partrangeParam_.setDescription( new String[] {
+            "<p>Gives the range of values of the partition column",
+            "over which partitions will be divided,",
+            "as two comma-separated numbers",
+            "if <code>" + nameNpart + "</code>&gt;1.",
+            "The range is divided into equal-sized intervals,",
+            "one for each partition.",
+            "Values outside the range are still selected;",
+            "the first and last partitions are unbounded",
+            "below and above respectively.",
+            "If both values are integers, partition boundaries are integers.",
+            "For Gaia <code>source_id</code> the full range is",
+            "<code>0,6917528997577384320</code>.",
+            "</p>",
+        } );
+        parallelParam_.setDescription( new String[] {
+            "<p>Maximum number of partition jobs that will be",
+            "executing on the service at any one time",
+            "if <code>" + nameNpart + "</code>&gt;1.",
+            "Setting this too high may overload the service,",
+            "and many services limit the number of concurrent jobs",
+            "per user anyway.",
+            "The maximum value permitted for this parameter by default is",
+            ParallelResultRowSequence.DEFAULT_MAXPAR + ";",
+            "this limit may be raised using the",
+            ParallelResultRowSequence.MAXPAR_PROP + " system property,",
+            "but you should only do that with the permission",
+            "of the service operators.",
+            "</p>",
+        } );
+        retryParam_.setDescription( new String[] {
+            "<p>Number of times a partition job which fails",
+            "will be resubmitted before the whole query is considered",
+            "to have failed,",
+            "if <code>" + nameNpart + "</code>&gt;1.",
+            "</p>",
+        } );
+        partjobsParam_.setDescription( new String[] {
+            "<p>Name of a file in which to record the UWS job URLs",
+            "of the partition jobs",
+            "if <code>" + nameNpart + "</code>&gt;1.",
+            "If this file exists when the command is run with",
+            "the same query and partitioning,",
+            "partition jobs listed in it which are still available",
+            "on the server are resumed rather than resubmitted,",
+            "so a long-running partitioned query which is interrupted",
+            "can be continued by re-running the same command.",
+            "When this parameter is set, completed jobs are only deleted",
+            "(according to the <code>"
+                + resultReader.getDeleteParameter().getName() + "</code>",
+            "parameter) once all partitions have completed,",
+            "and the file is deleted at that point.",
+            "This parameter is ignored in synchronous mode.",
+            "</p>",
+        } );
+
+        parameters_ = paramList.toArray( new Parameter<?>[ 0 ] );
+    }
+
+    /**
+     * Returns the parameters associated with this object.
+     *
+     * @return  parameters
+     */
+    public Parameter<?>[] getParameters() {
+        return parameters_;
+    }
+
+    /**
+     * Returns the parameter giving the number of partitions.
+     *
+     * @return  partition count parameter
+     */
+    public IntegerParameter getPartitionCountParameter() {
+        return npartParam_;
+    }
+
+    /**
+     * Returns an object which can execute a given query in partitions,
+     * or null if the environment does not call for partitioning.
+     *
+     * @param  env  execution environment
+     * @param  adql  ADQL query text
+     * @param  sync  true for synchronous queries, false for asynchronous
+     * @param  coding  configures HTTP compression
+     * @param  duration  UWS execution duration to post in seconds, or null
+     * @param  destruction  UWS destruction time to post, or null
+     * @return   partition executor, or null
+     */
+    public PartitionExecutor createExecutor( Environment env, String adql,
+                                             boolean sync,
+                                             ContentCoding coding,
+                                             Long duration,
+                                             String destruction )
+            throws TaskException {
+        int npart = npartParam_.intValue( env );
+        if ( npart <= 1 ) {
+            return null;
+        }
+        partcolParam_.setNullPermitted( false );
+        partrangeParam_.setNullPermitted( false );
+        String partcol = partcolParam_.stringValue( env );
+        String range = partrangeParam_.stringValue( env );
+        String[] conds;
+        try {
+            conds = createRangeConditions( partcol, range, npart );
+        }
+        catch ( IllegalArgumentException e ) {
+            throw new ParameterValueException( partrangeParam_,
+                                               e.getMessage(), e );
+        }
+        String[] partAdqls = new String[ conds.length ];
+        for ( int ip = 0; ip < conds.length; ip++ ) {
+            try {
+                partAdqls[ ip ] = addConstraint( adql, conds[ ip ] );
+            }
+            catch ( IllegalArgumentException e ) {
+                throw new TaskException( "Can't partition query: "
+                                       + e.getMessage(), e );
+            }
+        }
+        TapResultReader.DeleteMode delete =
+            resultReader_.getDeleteParameter().objectValue( env );
+        if ( ! delete.canWait() ) {
+            throw new ParameterValueException(
+                resultReader_.getDeleteParameter(),
+                "Not permitted for partitioned queries" );
+        }
+        Config config = new Config();
+        config.partAdqls_ = partAdqls;
+        config.sync_ = sync;
+        config.coding_ = coding;
+        config.duration_ = duration;
+        config.destruction_ = destruction;
+        config.storage_ =
+            LineTableEnvironment.getTableFactory( env ).getStoragePolicy();
+        config.pollMillis_ =
+            resultReader_.getPollParameter().intValue( env );
+        config.progress_ =
+            resultReader_.getProgressParameter().booleanValue( env );
+        config.errStream_ = env.getErrorStream();
+        config.delete_ = delete;
+        config.parallel_ = parallelParam_.intValue( env );
+        config.nretry_ = retryParam_.intValue( env );
+        String jobsFile = partjobsParam_.stringValue( env );
+        config.jobsFile_ = sync || jobsFile == null ? null
+                                                    : new File( jobsFile );
+        return queryFact -> new Execution( config, queryFact ).start();
+    }
+
+    /**
+     * Returns ADQL conditions that partition the values of a column
+     * into a given number of disjoint intervals covering all non-null
+     * values.  Fewer conditions than requested may be returned if
+     * the integer range is too small.
+     *
+     * @param  col  ADQL expression for partitioning value
+     * @param  range  comma-separated lower and upper bounds
+     * @param  npart  number of partitions
+     * @return  array of ADQL boolean expressions
+     * @throws  IllegalArgumentException  if the range is not understood
+     */
+    static String[] createRangeConditions( String col, String range,
+                                           int npart ) {
+        String[] limits = range.split( ",", -1 );
+        if ( limits.length != 2 ) {
+            throw new IllegalArgumentException( "Range \"" + range + "\""
+                                              + " not of form lo,hi" );
+        }
+        String slo = limits[ 0 ].trim();
+        String shi = limits[ 1 ].trim();
+        String[] bounds = new String[ npart + 1 ];
+        try {
+            BigInteger lo = new BigInteger( slo );
+            BigInteger hi = new BigInteger( shi );
+            BigInteger span = hi.subtract( lo ).add( BigInteger.ONE );
+            if ( span.signum() <= 0 ) {
+                throw new IllegalArgumentException( "Empty range " + range );
+            }
+            BigInteger bn = BigInteger.valueOf( npart );
+            for ( int ip = 0; ip <= npart; ip++ ) {
+                BigInteger off = span.multiply( BigInteger.valueOf( ip ) )
+                                     .divide( bn );
+                bounds[ ip ] = lo.add( off ).toString();
+            }
+        }
+        catch ( NumberFormatException e ) {
+            BigDecimal lo;
+            BigDecimal hi;
+            try {
+                lo = new BigDecimal( slo );
+                hi = new BigDecimal( shi );
+            }
+            catch ( NumberFormatException e2 ) {
+                throw new IllegalArgumentException( "Range \"" + range + "\""
+                                                  + " not numeric", e2 );
+            }
+            if ( hi.compareTo( lo ) <= 0 ) {
+                throw new IllegalArgumentException( "Empty range " + range );
+            }
+            double dlo = lo.doubleValue();
+            double dhi = hi.doubleValue();
+            for ( int ip = 0; ip <= npart; ip++ ) {
+                bounds[ ip ] =
+                    Double.toString( dlo + ( dhi - dlo ) * ip / npart );
+            }
+        }
+        List<String> condList = new ArrayList<String>();
+        String lastBound = null;
+        for ( int ip = 1; ip < npart; ip++ ) {
+            String bound = bounds[ ip ];
+            if ( ! bound.equals( lastBound ) ) {
+                condList.add( lastBound == null
+                            ? "(" + col + " < " + bound + ")"
+                            : "(" + col + " >= " + lastBound
+                                  + " AND " + col + " < " + bound + ")" );
+                lastBound = bound;
+            }
+        }
+        condList.add( lastBound == null
+                    ? "(" + col + " IS NOT NULL)"
+                    : "(" + col + " >= " + lastBound + ")" );
+        return condList.toArray( new String[ 0 ] );
+    }
+
+    /**
+     * Adds a constraint to the top-level WHERE clause of an ADQL query.
+     * If the query has no WHERE clause, one is added.
+     * This is done by lexical inspection of the query, not full parsing,
+     * so it does not guarantee that the result is valid ADQL.
+     *
+     * @param  adql  ADQL query
+     * @param  condition  ADQL boolean expression, which should be
+     *                    enclosed in parentheses
+     * @return  ADQL query with condition added
+     * @throws  IllegalArgumentException  if the query can't be constrained
+     */
+    static String addConstraint( String adql, String condition ) {
+        String query = adql.trim();
+        while ( query.endsWith( ";" ) ) {
+            query = query.substring( 0, query.length() - 1 ).trim();
+        }
+        int nc = query.length();
+        int depth = 0;
+        boolean hasFrom = false;
+        int iWhere = -1;
+        int iWhereEnd = -1;
+        int iClause = -1;
+        int ic = 0;
+        while ( ic < nc ) {
+            char c = query.charAt( ic );
+            if ( c == '\'' || c == '"' ) {
+                ic = skipQuoted( query, ic, c );
+            }
+            else if ( c == '-' && ic + 1 < nc &&
+                      query.charAt( ic + 1 ) == '-' ) {
+                while ( ic < nc && query.charAt( ic ) != '\n' ) {
+                    ic++;
+                }
+            }
+            else if ( c == '(' ) {
+                depth++;
+                ic++;
+            }
+            else if ( c == ')' ) {
+                depth--;
+                ic++;
+            }
+            else if ( Character.isLetterOrDigit( c ) || c == '_' ) {
+                int iStart = ic;
+                while ( ic < nc &&
+                        ( Character.isLetterOrDigit( query.charAt( ic ) ) ||
+                          query.charAt( ic ) == '_' ) ) {
+                    ic++;
+                }
+                if ( depth == 0 ) {
+                    String word = query.substring( iStart, ic ).toUpperCase();
+                    if ( "FROM".equals( word ) ) {
+                        hasFrom = true;
+                    }
+                    else if ( "WHERE".equals( word ) &&
+                              hasFrom && iWhere < 0 && iClause < 0 ) {
+                        iWhere = iStart;
+                        iWhereEnd = ic;
+                    }
+                    else if ( ( "GROUP".equals( word ) ||
+                                "HAVING".equals( word ) ||
+                                "ORDER".equals( word ) ||
+                                "OFFSET".equals( word ) ) &&
+                              hasFrom && iClause < 0 ) {
+                        iClause = iStart;
+                    }
+                    else if ( "UNION".equals( word ) ||
+                              "INTERSECT".equals( word ) ||
+                              "EXCEPT".equals( word ) ) {
+                        throw new IllegalArgumentException( word
+                                                          + " not supported" );
+                    }
+                }
+            }
+            else {
+                ic++;
+            }
+        }
+        if ( ! hasFrom ) {
+            throw new IllegalArgumentException( "No FROM clause" );
+        }
+        int iEnd = iClause >= 0 ? iClause : nc;
+        String tail = iEnd < nc ? " " + query.substring( iEnd ) : "";
+        if ( iWhere >= 0 ) {
+            return new StringBuffer()
+                  .append( query.substring( 0, iWhereEnd ) )
+                  .append( ' ' )
+                  .append( condition )
+                  .append( " AND (" )
+                  .append( query.substring( iWhereEnd, iEnd ).trim() )
+                  .append( ')' )
+                  .append( tail )
+                  .toString();
+        }
+        else {
+            return new StringBuffer()
+                  .append( query.substring( 0, iEnd ).trim() )
+                  .append( " WHERE " )
+                  .append( condition )
+                  .append( tail )
+                  .toString();
+        }
+    }
+
+    /**
+     * Returns the index following a quoted string or identifier.
+     *
+     * @param  txt  text
+     * @param  ic   index of opening quote character
+     * @param  quote  quote character
+     * @return  index following the closing quote, or the text length
+     */
+    private static int skipQuoted( String txt, int ic, char quote ) {
+        int nc = txt.length();
+        ic++;
+        while ( ic < nc ) {
+            if ( txt.charAt( ic++ ) == quote ) {
+                if ( ic < nc && txt.charAt( ic ) == quote ) {
+                    ic++;
+                }
+                else {
+                    return ic;
+                }
+            }
+        }
+        return nc;
+    }
+
+    /**
+     * Executes a query in partitions.
+     */
+    @FunctionalInterface
+    public interface PartitionExecutor {
+
+        /**
+         * Starts execution of the partition queries, and returns a table
+         * which concatenates their results.
+         * The returned table is available once the first partition
+         * has completed, and its rows are available as the subsequent
+         * partitions complete.
+         *
+         * @param  queryFact  creates a TAP query object from ADQL text
+         * @return  non-random output table
+         */
+        StarTable execute( IOFunction<String,TapQuery> queryFact )
+                throws IOException;
+    }
+
+    /**
+     * Aggregates the configuration for a partitioned query.
+     */
+    private static class Config {
+        String[] partAdqls_;
+        boolean sync_;
+        ContentCoding coding_;
+        Long duration_;
+        String destruction_;
+        StoragePolicy storage_;
+        long pollMillis_;
+        boolean progress_;
+        PrintStream errStream_;
+        TapResultReader.DeleteMode delete_;
+        int parallel_;
+        int nretry_;
+        File jobsFile_;
+    }
+
+    /**
+     * Manages a single execution of a partitioned query.
+     */
+    private static class Execution {
+
+        final Config config_;
+        final IOFunction<String,TapQuery> queryFact_;
+        final int npart_;
+        final Map<Integer,URL> resumeUrls_;
+        final List<UwsJob> completedJobs_;
+        final ExecutorService executor_;
+        PrintWriter jobsOut_;
+        boolean finished_;
+
+        /**
+         * Constructor.
+         *
+         * @param  config  configuration
+         * @param  queryFact  creates a TAP query object from ADQL text
+         */
+        Execution( Config config, IOFunction<String,TapQuery> queryFact ) {
+            config_ = config;
+            queryFact_ = queryFact;
+            npart_ = config.partAdqls_.length;
+            resumeUrls_ = new HashMap<Integer,URL>();
+            completedJobs_ = new ArrayList<UwsJob>();
+            executor_ = Executors.newFixedThreadPool( config.parallel_, r -> {
+                Thread thread = new Thread( r, "TAP partition" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+        }
+
+        /**
+         * Submits the partition jobs and returns the result table.
+         *
+         * @return  output table
+         */
+        StarTable start() throws IOException {
+            if ( config_.jobsFile_ != null ) {
+                openJobsFile();
+            }
+            List<Future<StarTable>> futures = new ArrayList<>();
+            for ( int ip = 0; ip < npart_; ip++ ) {
+                final int ip0 = ip;
+                futures.add( executor_.submit( () -> runPartition( ip0 ) ) );
+            }
+            executor_.shutdown();
+            StarTable meta = awaitPartition( futures, 0 );
+            return new PartitionedStarTable( meta, futures );
+        }
+
+        /**
+         * Waits for a partition result.
+         *
+         * @param  futures  partition futures
+         * @param  ip  partition index
+         * @return  partition result table
+         */
+        StarTable awaitPartition( List<Future<StarTable>> futures, int ip )
+                throws IOException {
+            try {
+                return futures.get( ip ).get();
+            }
+            catch ( InterruptedException e ) {
+                executor_.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted" )
+                     .initCause( e );
+            }
+            catch ( ExecutionException e ) {
+                executor_.shutdownNow();
+                Throwable cause = e.getCause();
+                if ( cause instanceof IOException ) {
+                    throw (IOException) cause;
+                }
+                else {
+                    throw new IOException( "Partition " + ( ip + 1 )
+                                         + " failed: " + cause, cause );
+                }
+            }
+        }
+
+        /**
+         * Called when the partitions have been read, or when reading
+         * has been abandoned without error.
+         * Jobs are deleted as required by the deletion mode,
+         * and the jobs file is removed.
+         * Calling this method more than once has no further effect.
+         */
+        void finish() {
+            List<UwsJob> jobs;
+            synchronized ( this ) {
+                finished_ = true;
+                jobs = new ArrayList<UwsJob>( completedJobs_ );
+                completedJobs_.clear();
+                if ( jobsOut_ != null ) {
+                    jobsOut_.close();
+                    jobsOut_ = null;
+                    config_.jobsFile_.delete();
+                }
+            }
+            for ( UwsJob job : jobs ) {
+                considerDeletion( job );
+            }
+        }
+
+        /**
+         * Indicates whether {@link #finish} has been called.
+         *
+         * @return  true iff this execution has been finished
+         */
+        synchronized boolean isFinished() {
+            return finished_;
+        }
+
+        /**
+         * Stops any partition queries that are still queued or running.
+         * Jobs belonging to them are deleted if {@link #finish} has
+         * been called, otherwise left in place for resumption.
+         *
+         * @param  futures  partition futures
+         */
+        void cancel( List<Future<StarTable>> futures ) {
+            for ( Future<StarTable> future : futures ) {
+                future.cancel( true );
+            }
+            executor_.shutdownNow();
+        }
+
+        /**
+         * Runs a single partition query, with retries, and returns
+         * its result.
+         *
+         * @param  ip  partition index
+         * @return  partition result table
+         */
+        StarTable runPartition( int ip ) throws IOException {
+            String label = "Partition " + ( ip + 1 ) + "/" + npart_;
+            for ( int iTry = 0; ; iTry++ ) {
+                if ( isFinished() ) {
+                    throw new InterruptedIOException( label + " abandoned" );
+                }
+                try {
+                    StarTable table = config_.sync_
+                                    ? runSyncPartition( ip )
+                                    : runAsyncPartition( ip, label );
+                    progress( label + ": " + table.getRowCount() + " rows" );
+                    return table;
+                }
+                catch ( InterruptedIOException e ) {
+                    throw e;
+                }
+                catch ( IOException e ) {
+                    if ( iTry >= config_.nretry_ ) {
+                        throw new IOException( label + " failed: "
+                                             + e.getMessage(), e );
+                    }
+                    progress( label + " failed (" + e.getMessage() + ")"
+                            + " - retrying" );
+                    try {
+                        Thread.sleep( Math.min( 1000L << iTry, 30000L ) );
+                    }
+                    catch ( InterruptedException e2 ) {
+                        Thread.currentThread().interrupt();
+                        throw (IOException)
+                              new InterruptedIOException( "Interrupted" )
+                             .initCause( e2 );
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs a single partition query synchronously.
+         *
+         * @param  ip  partition index
+         * @return  partition result table
+         */
+        StarTable runSyncPartition( int ip ) throws IOException {
+            return queryFact_.apply( config_.partAdqls_[ ip ] )
+                  .executeSync( config_.storage_, config_.coding_ );
+        }
+
+        /**
+         * Runs a single partition query as a UWS job,
+         * resuming a recorded job if possible.
+         *
+         * @param  ip  partition index
+         * @param  label  partition label for user messages
+         * @return  partition result table
+         */
+        StarTable runAsyncPartition( int ip, String label )
+                throws IOException {
+            UwsJob job = resumeJob( ip, label );
+            if ( job == null ) {
+                job = queryFact_.apply( config_.partAdqls_[ ip ] )
+                     .submitAsync();
+                if ( isFinished() ) {
+                    abandonJob( job );
+                    throw new InterruptedIOException( label + " abandoned" );
+                }
+                progress( label + ": SUBMITTED " + job.getJobUrl() );
+                recordJob( ip, job );
+                if ( config_.delete_ == TapResultReader.DeleteMode.always ) {
+                    job.setDeleteOnExit( true );
+                }
+                if ( config_.duration_ != null ) {
+                    job.postExecutionDuration( config_.duration_.longValue() );
+                }
+                if ( config_.destruction_ != null ) {
+                    job.postDestruction( config_.destruction_ );
+                }
+                job.start();
+            }
+            StarTable table;
+            try {
+                table = TapQuery.waitForResult( job, config_.coding_,
+                                                config_.storage_,
+                                                config_.pollMillis_ );
+            }
+            catch ( InterruptedException e ) {
+                if ( isFinished() ) {
+                    abandonJob( job );
+                }
+                Thread.currentThread().interrupt();
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted" )
+                     .initCause( e );
+            }
+            catch ( IOException e ) {
+                if ( isFinished() ) {
+                    abandonJob( job );
+                }
+                else {
+                    considerDeletion( job );
+                }
+                throw e;
+            }
+            boolean keep = config_.jobsFile_ != null || ! table.isRandom();
+            if ( keep ) {
+                synchronized ( this ) {
+                    keep = ! finished_;
+                    if ( keep ) {
+                        completedJobs_.add( job );
+                    }
+                }
+            }
+            if ( ! keep ) {
+                considerDeletion( job );
+            }
+            return table;
+        }
+
+        /**
+         * Returns a job recorded for a given partition by a previous
+         * execution, if one is available for resumption.
+         *
+         * @param  ip  partition index
+         * @param  label  partition label for user messages
+         * @return  started or finished UWS job, or null
+         */
+        UwsJob resumeJob( int ip, String label ) {
+            URL url;
+            synchronized ( this ) {
+                url = resumeUrls_.remove( Integer.valueOf( ip ) );
+            }
+            if ( url == null ) {
+                return null;
+            }
+            UwsJob job = new UwsJob( url );
+            try {
+                UwsJobInfo info = job.readInfo();
+                String phase = info.getPhase();
+                UwsStage stage = UwsStage.forPhase( phase );
+                if ( stage == UwsStage.UNSTARTED ) {
+                    job.start();
+                }
+                else if ( stage == UwsStage.FINISHED &&
+                          ! "COMPLETED".equals( phase ) ) {
+                    progress( label + ": previous job " + phase );
+                    return null;
+                }
+                progress( label + ": RESUMED " + url );
+                return job;
+            }
+            catch ( IOException e ) {
+                progress( label + ": previous job unavailable" );
+                return null;
+            }
+        }
+
+        /**
+         * Deletes a job if the deletion mode calls for it.
+         *
+         * @param  job  job
+         */
+        void considerDeletion( UwsJob job ) {
+            UwsJobInfo info = job.getLastInfo();
+            UwsStage stage = info == null ? UwsStage.UNKNOWN
+                                          : UwsStage.forPhase( info
+                                                              .getPhase() );
+            if ( config_.delete_.shouldDelete( stage ) ) {
+                job.attemptDelete();
+            }
+        }
+
+        /**
+         * Deletes a job whose result is no longer wanted because
+         * the output has been closed early,
+         * unless the deletion mode prohibits deletion.
+         * Such jobs may not have finished, and there will be no
+         * opportunity to resume them.
+         *
+         * @param  job  job
+         */
+        void abandonJob( UwsJob job ) {
+            if ( config_.delete_.isDeletionPossible() ) {
+                job.attemptDelete();
+            }
+        }
+
+        /**
+         * Reads any previously recorded job URLs from the jobs file,
+         * and prepares it for recording new ones.
+         */
+        void openJobsFile() throws IOException {
+            File file = config_.jobsFile_;
+            String header = JOBFILE_HEADER + " " + getSignature();
+            if ( file.exists() ) {
+                try ( BufferedReader in =
+                          new BufferedReader( new FileReader( file ) ) ) {
+                    if ( header.equals( in.readLine() ) ) {
+                        String line;
+                        while ( ( line = in.readLine() ) != null ) {
+                            String[] words = line.trim().split( "\\s+" );
+                            if ( words.length == 2 ) {
+                                try {
+                                    resumeUrls_.put(
+                                        Integer.valueOf( words[ 0 ] ),
+                                        URLUtils.newURL( words[ 1 ] ) );
+                                }
+                                catch ( RuntimeException e ) {
+                                    logger_.warning( "Bad line in " + file
+                                                   + ": " + line );
+                                }
+                            }
+                        }
+                    }
+                    else {
+                        logger_.warning( "Ignoring jobs file " + file
+                                       + " for different query" );
+                    }
+                }
+            }
+            jobsOut_ = new PrintWriter( new FileWriter( file ) );
+            jobsOut_.println( header );
+            for ( Map.Entry<Integer,URL> entry : resumeUrls_.entrySet() ) {
+                jobsOut_.println( entry.getKey() + " " + entry.getValue() );
+            }
+            jobsOut_.flush();
+        }
+
+        /**
+         * Records a submitted job in the jobs file, if there is one.
+         *
+         * @param  ip  partition index
+         * @param  job  submitted job
+         */
+        synchronized void recordJob( int ip, UwsJob job ) {
+            if ( jobsOut_ != null ) {
+                jobsOut_.println( ip + " " + job.getJobUrl() );
+                jobsOut_.flush();
+            }
+        }
+
+        /**
+         * Returns a string characterising the partition queries,
+         * used to check that a jobs file refers to the same query.
+         *
+         * @return  signature string
+         */
+        String getSignature() {
+            int hash = 0;
+            for ( String adql : config_.partAdqls_ ) {
+                hash = 31 * hash + adql.hashCode();
+            }
+            return npart_ + " " + Integer.toHexString( hash );
+        }
+
+        /**
+         * Writes a progress message if progress reporting is in effect.
+         *
+         * @param  msg  message
+         */
+        void progress( String msg ) {
+            if ( config_.progress_ ) {
+                PrintStream err = config_.errStream_;
+                synchronized ( err ) {
+                    err.println( msg );
+                    err.flush();
+                }
+            }
+        }
+
+        /**
+         * Non-random table that concatenates partition results in order.
+         */
+        private class PartitionedStarTable extends WrapperStarTable {
+
+            private final List<Future<StarTable>> futures_;
+
+            /**
+             * Constructor.
+             *
+             * @param  meta  result of first partition, supplying metadata
+             * @param  futures  partition results
+             */
+            PartitionedStarTable( StarTable meta,
+                                  List<Future<StarTable>> futures ) {
+                super( meta );
+                futures_ = futures;
+            }
+
+            @Override
+            public long getRowCount() {
+                return -1;
+            }
+
+            @Override
+            public boolean isRandom() {
+                return false;
+            }
+
+            @Override
+            public Object getCell( long irow, int icol ) {
+                throw new UnsupportedOperationException( "Not random" );
+            }
+
+            @Override
+            public Object[] getRow( long irow ) {
+                throw new UnsupportedOperationException( "Not random" );
+            }
+
+            @Override
+            public RowAccess getRowAccess() {
+                throw new UnsupportedOperationException( "Not random" );
+            }
+
+            @Override
+            public RowSplittable getRowSplittable() throws IOException {
+                return Tables.getDefaultRowSplittable( this );
+            }
+
+            @Override
+            public RowSequence getRowSequence() throws IOException {
+                final int ncol = getColumnCount();
+                return new RowSequence() {
+                    int ip_ = -1;
+                    RowSequence rseq_;
+                    boolean failed_;
+                    public boolean next() throws IOException {
+                        failed_ = true;
+                        while ( rseq_ == null || ! rseq_.next() ) {
+                            if ( rseq_ != null ) {
+                                rseq_.close();
+                                rseq_ = null;
+                            }
+                            if ( ++ip_ >= futures_.size() ) {
+                                finish();
+                                failed_ = false;
+                                return false;
+                            }
+                            StarTable table = awaitPartition( futures_, ip_ );
+                            if ( table.getColumnCount() != ncol ) {
+                                throw new IOException( "Partition "
+                                                     + ( ip_ + 1 )
+                                                     + " has wrong number"
+                                                     + " of columns" );
+                            }
+                            rseq_ = table.getRowSequence();
+                        }
+                        failed_ = false;
+                        return true;
+                    }
+                    public Object getCell( int icol ) throws IOException {
+                        return rseq_.getCell( icol );
+                    }
+                    public Object[] getRow() throws IOException {
+                        return rseq_.getRow();
+                    }
+                    public void close() throws IOException {
+                        if ( rseq_ != null ) {
+                            rseq_.close();
+                            rseq_ = null;
+                        }
+
+                        /* If the sequence is closed early, tidy up anyway
+                         * and stop any partitions still in progress.
+                         * Following a failure, jobs and jobs file are
+                         * left in place so that a later run can resume. */
+                        if ( ! failed_ ) {
+                            finish();
+                        }
+                        cancel( futures_ );
+                    }
+                };
+            }
+        }
+    }
+}
@@ -109,6 +109,16 @@ public class TapResultReader {
         return parameters_;
     }
 
+    /**
+     * Returns the parameter giving the polling interval in milliseconds
+     * for async queries.
+     *
+     * @return  poll parameter
+     */
+    public IntegerParameter getPollParameter() {
+        return pollParam_;
+    }
+
     /**
      * Returns the parameter which indicates whether progress should be
      * logged to the user.
@@ -26,6 +26,7 @@ import uk.ac.starlink.ttools.votlint.VersionDetector;
 import uk.ac.starlink.ttools.votlint.VotLintCode;
 import uk.ac.starlink.ttools.votlint.VotLintContext;
 import uk.ac.starlink.ttools.votlint.VotLinter;
+import uk.ac.starlink.util.CountInputStream;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.votable.VOTableVersion;
 
@@ -42,6 +43,7 @@ public class VotLint implements Task {
     private final BooleanParameter ucdParam_;
     private final BooleanParameter unitParam_;
     private final IntegerParameter maxrepeatParam_;
+    private final BooleanParameter streamingParam_;
     private final ChoiceParameter<VOTableVersion> versionParam_;
     private final OutputStreamParameter outParam_;
 
@@ -129,6 +131,32 @@ public class VotLint implements Task {
             "</p>",
         } );
 
+        streamingParam_ = new BooleanParameter( "streaming" );
+        streamingParam_.setBooleanDefault( false );
+        streamingParam_.setPrompt( "Use bounded memory and report "
+                                 + "throughput?" );
+        streamingParam_.setDescription( new String[] {
+            "<p>Configures validation for very large documents.",
+            "If true, the memory used to keep track of XML IDs and",
+            "references to them is bounded:",
+            "beyond " + VotLintContext.DFLT_MAXMEMORYIDS + " of each,",
+            "they are written to temporary files",
+            "and checked at the end of the document.",
+            "In that case a few checks, such as whether references",
+            "point to elements of the right type,",
+            "are not made for the excess IDs.",
+            "Throughput statistics are also reported,",
+            "giving the number of rows and bytes of table data",
+            "validated and the rate at which that was done.",
+            "</p>",
+            "<p>Row data is processed in a streaming fashion",
+            "whatever the value of this parameter, so it is only",
+            "required for documents with very many IDs,",
+            "for instance on <code>TR</code> elements,",
+            "or if throughput information is of interest.",
+            "</p>",
+        } );
+
         versionParam_ =
             new ChoiceParameter<VOTableVersion>( "version",
                                 VOTableVersion.getKnownVersions().values()
@@ -170,6 +198,7 @@ public class VotLint implements Task {
             unitParam_,
             maxrepeatParam_,
             validParam_,
+            streamingParam_,
             versionParam_,
             outParam_,
         };
@@ -181,6 +210,7 @@ public class VotLint implements Task {
         boolean ucd = ucdParam_.booleanValue( env );
         Boolean unitPref = unitParam_.objectValue( env );
         int maxRepeat = maxrepeatParam_.intValue( env );
+        boolean streaming = streamingParam_.booleanValue( env );
         boolean debug = env instanceof TableEnvironment
                      && ((TableEnvironment) env).isDebug();
         String sysid = inParam_.stringValue( env );
@@ -197,7 +227,7 @@ public class VotLint implements Task {
         }
         SaxMessager messager = new PrintSaxMessager( out, debug, maxRepeat );
         return new VotLintExecutable( in, version, ucd, unitPref, validate,
-                                      sysid, messager );
+                                      streaming, sysid, messager );
     }
 
     /**
@@ -210,6 +240,7 @@ public class VotLint implements Task {
         final boolean ucd_;
         final Boolean unitPref_;
         final boolean validate_;
+        final boolean streaming_;
         final String sysid_;
         final SaxMessager messager_;
 
@@ -229,19 +260,49 @@ public class VotLint implements Task {
         VotLintExecutable( InputStream in, VOTableVersion forceVersion,
                            boolean ucd, Boolean unitPref, boolean validate,
                            String sysid, SaxMessager messager ) {
+            this( in, forceVersion, ucd, unitPref, validate, false,
+                  sysid, messager );
+        }
+
+        /**
+         * Constructor with streaming option.
+         *
+         * @param  in  votable input stream
+         * @param  forceVersion  VOTable version to use,
+         *                       or null to infer it from the input
+         * @param  ucd   whether to perform UCD checking
+         * @param  unitPref  True/False to perform/omit VOUnit checking,
+         *                   or null to infer from the version
+         * @param  validate  whether to perform schema/DTD validation
+         * @param  streaming  whether to bound ID tracking memory
+         *                    and report throughput
+         * @param  sysid   system ID for XML input
+         * @param  messager   destination for SAX error reports
+         */
+        VotLintExecutable( InputStream in, VOTableVersion forceVersion,
+                           boolean ucd, Boolean unitPref, boolean validate,
+                           boolean streaming, String sysid,
+                           SaxMessager messager ) {
             baseIn_ = in;
             forceVersion_ = forceVersion;
             ucd_ = ucd;
             unitPref_ = unitPref;
             validate_ = validate;
+            streaming_ = streaming;
             sysid_ = sysid;
             messager_ = messager;
         }
 
         public void execute() throws IOException, ExecutionException {
 
-            /* Buffer the stream for efficiency and mark/reset capability. */
-            BufferedInputStream bufIn = new BufferedInputStream( baseIn_ );
+            /* Buffer the stream for efficiency and mark/reset capability.
+             * If reporting throughput, count the bytes as well. */
+            CountInputStream countIn = streaming_
+                                     ? new CountInputStream( baseIn_ )
+                                     : null;
+            BufferedInputStream bufIn =
+                new BufferedInputStream( streaming_ ? countIn : baseIn_ );
+            long start = System.currentTimeMillis();
 
             /* Determine the VOTable version against which to check. */
             final VOTableVersion version;
@@ -292,6 +353,10 @@ public class VotLint implements Task {
             context.setCheckUnit( unitPref_ == null
                                       ? version.isVOUnitSyntax()
                                       : unitPref_.booleanValue() );
+            if ( streaming_ ) {
+                context.setMaxMemoryIds( VotLintContext.DFLT_MAXMEMORYIDS );
+                context.setReportThroughput( true );
+            }
 
             /* Interpolate the VOTable DOCTYPE declaration if required. */
             final InputStream in;
@@ -319,6 +384,19 @@ public class VotLint implements Task {
             catch ( SAXException e ) {
                 throw new ExecutionException( e.getMessage(), e );
             }
+
+            /* Report overall throughput if required. */
+            if ( streaming_ ) {
+                long millis =
+                    Math.max( 1, System.currentTimeMillis() - start );
+                long nbyte = countIn.getReadCount();
+                messager_.reportMessage( SaxMessager.Level.INFO,
+                                         new VotLintCode( "THD" ),
+                                         "Document: " + nbyte + " bytes in "
+                                       + millis + "ms ("
+                                       + ( nbyte / 1000 / millis )
+                                       + " MB/s)", (Locator) null );
+            }
         }
     }
 }
@@ -0,0 +1,265 @@
+package uk.ac.starlink.ttools.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Memory-limited least-recently-used cache.
+ * Each value is assigned a size in bytes when it is added,
+ * and the least recently used entries are discarded whenever the
+ * total size exceeds a fixed limit.
+ * Unlike a cache based on soft references, the behaviour of this cache
+ * does not depend on the garbage collector, so the amount of memory it
+ * occupies is under the control of the application.
+ *
+ * <p>An optional evictor callback can be supplied, which is informed
+ * of values that the cache discards, for instance so that resources
+ * associated with them can be released.
+ *
+ * <p>Hit and miss counts are maintained both for the cache as a whole
+ * and for each entry, to help with tuning.
+ *
+ * <p>This class is thread-safe.
+ */
+public class LruCache<K,V> {
+
+    private final long maxBytes_;
+    private final ToLongFunction<? super V> sizer_;
+    private final Consumer<? super V> evictor_;
+    private final LinkedHashMap<K,Sized<V>> map_;
+    private long nbyte_;
+    private long nhit_;
+    private long nmiss_;
+
+    /**
+     * Constructor.
+     *
+     * @param  maxBytes  maximum total size of values in bytes
+     * @param  sizer    provides the size in bytes of each value;
+     *                  it is invoked once per value, when it is added
+     */
+    public LruCache( long maxBytes, ToLongFunction<? super V> sizer ) {
+        this( maxBytes, sizer, null );
+    }
+
+    /**
+     * Constructor with evictor.
+     * The evictor is called, without holding this cache's lock,
+     * for each value that is discarded because of the size limit,
+     * replaced by a later <code>put</code> with the same key,
+     * or removed by {@link #clear}.
+     * It is not called for values removed by {@link #remove},
+     * since those are returned to the caller.
+     *
+     * @param  maxBytes  maximum total size of values in bytes
+     * @param  sizer    provides the size in bytes of each value;
+     *                  it is invoked once per value, when it is added
+     * @param  evictor  callback for discarded values, or null
+     */
+    public LruCache( long maxBytes, ToLongFunction<? super V> sizer,
+                     Consumer<? super V> evictor ) {
+        maxBytes_ = maxBytes;
+        sizer_ = sizer;
+        evictor_ = evictor;
+        map_ = new LinkedHashMap<K,Sized<V>>( 16, 0.75f, true );
+    }
+
+    /**
+     * Returns the value for a given key, marking it as recently used.
+     *
+     * @param  key  key
+     * @return  value, or null if not present
+     */
+    public synchronized V get( K key ) {
+        Sized<V> entry = map_.get( key );
+        if ( entry == null ) {
+            nmiss_++;
+            return null;
+        }
+        else {
+            nhit_++;
+            entry.nhit_++;
+            return entry.value_;
+        }
+    }
+
+    /**
+     * Adds an entry to this cache, discarding least recently used
+     * entries if required to stay within the size limit.
+     * If the value on its own exceeds the size limit, it is not stored,
+     * and is passed straight to the evictor if there is one.
+     *
+     * @param  key  key
+     * @param  value  value, not null
+     * @return  true if the value was stored,
+     *          false if it was too large
+     */
+    public boolean put( K key, V value ) {
+        long size = Math.max( 0, sizer_.applyAsLong( value ) );
+        List<V> discards = new ArrayList<V>();
+        synchronized ( this ) {
+            Sized<V> old = map_.remove( key );
+            if ( old != null ) {
+                nbyte_ -= old.size_;
+                if ( old.value_ != value ) {
+                    discards.add( old.value_ );
+                }
+            }
+            if ( size <= maxBytes_ ) {
+                map_.put( key, new Sized<V>( value, size ) );
+                nbyte_ += size;
+                for ( Iterator<Sized<V>> it = map_.values().iterator();
+                      nbyte_ > maxBytes_ && it.hasNext(); ) {
+                    Sized<V> entry = it.next();
+                    nbyte_ -= entry.size_;
+                    it.remove();
+                    discards.add( entry.value_ );
+                }
+            }
+            else {
+                discards.add( value );
+            }
+        }
+        evict( discards );
+        return size <= maxBytes_;
+    }
+
+    /**
+     * Removes an entry from this cache.
+     *
+     * @param  key  key
+     * @return  removed value, or null if not present
+     */
+    public synchronized V remove( K key ) {
+        Sized<V> old = map_.remove( key );
+        if ( old != null ) {
+            nbyte_ -= old.size_;
+            return old.value_;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        List<V> discards = new ArrayList<V>();
+        synchronized ( this ) {
+            for ( Sized<V> entry : map_.values() ) {
+                discards.add( entry.value_ );
+            }
+            map_.clear();
+            nbyte_ = 0;
+        }
+        evict( discards );
+    }
+
+    /**
+     * Returns the number of entries currently in this cache.
+     *
+     * @return  entry count
+     */
+    public synchronized int size() {
+        return map_.size();
+    }
+
+    /**
+     * Returns the total size of the values currently in this cache.
+     *
+     * @return  size in bytes
+     */
+    public synchronized long getByteCount() {
+        return nbyte_;
+    }
+
+    /**
+     * Returns the number of calls to {@link #get} that have found
+     * an entry.
+     *
+     * @return  hit count
+     */
+    public synchronized long getHitCount() {
+        return nhit_;
+    }
+
+    /**
+     * Returns the number of calls to {@link #get} that have not found
+     * an entry.
+     *
+     * @return  miss count
+     */
+    public synchronized long getMissCount() {
+        return nmiss_;
+    }
+
+    /**
+     * Returns a snapshot of the number of hits for each entry
+     * currently in the cache since it was added.
+     * Iteration order is from least to most recently used.
+     *
+     * @return  key-&gt;hit count map
+     */
+    public synchronized Map<K,Long> getEntryHits() {
+        Map<K,Long> hitMap = new LinkedHashMap<K,Long>();
+        for ( Map.Entry<K,Sized<V>> entry : map_.entrySet() ) {
+            hitMap.put( entry.getKey(),
+                        Long.valueOf( entry.getValue().nhit_ ) );
+        }
+        return hitMap;
+    }
+
+    /**
+     * Returns the maximum total size of values in this cache.
+     *
+     * @return  size limit in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes_;
+    }
+
+    /**
+     * Passes discarded values to the evictor, if there is one.
+     *
+     * @param  values  discarded values
+     */
+    private void evict( List<V> values ) {
+        if ( evictor_ != null ) {
+            for ( V value : values ) {
+                evictor_.accept( value );
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return map_.size() + " entries, " + nbyte_ + "/" + maxBytes_
+             + " bytes, " + nhit_ + " hits, " + nmiss_ + " misses";
+    }
+
+    /**
+     * Aggregates a value with its size.
+     */
+    private static class Sized<V> {
+        final V value_;
+        final long size_;
+        long nhit_;
+
+        /**
+         * Constructor.
+         *
+         * @param  value  value
+         * @param  size   size in bytes
+         */
+        Sized( V value, long size ) {
+            value_ = value;
+            size_ = size;
+        }
+    }
+}
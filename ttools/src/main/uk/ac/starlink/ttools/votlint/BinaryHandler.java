@@ -1,8 +1,10 @@
 package uk.ac.starlink.ttools.votlint;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import uk.ac.starlink.util.CountInputStream;
 
 /**
  * Element handler for BINARY elements.
@@ -14,6 +16,9 @@ public class BinaryHandler extends StreamingHandler {
 
     private final boolean isBinary2_;
 
+    /** Buffer size for reading decoded stream data. */
+    private static final int BUFSIZ = 64 * 1024;
+
     public BinaryHandler( boolean isBinary2 ) {
         isBinary2_ = isBinary2;
     }
@@ -46,31 +51,75 @@ public class BinaryHandler extends StreamingHandler {
          * flag null values. */
         int nflag = isBinary2_ ? ( ncol + 7 ) / 8 : 0;
 
+        /* Work out how to read each row.  Most parsers (for instance
+         * those of numeric columns) don't examine the stream bytes,
+         * so runs of adjacent values like that, along with any null
+         * flags, can be discarded in bulk rather than value by value.
+         * Only the remaining parsers need to be invoked. */
+        int nchk = 0;
+        int[] skipBefore = new int[ ncol ];
+        ValueParser[] chkParsers = new ValueParser[ ncol ];
+        int nskip = nflag;
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            int nslurp = parsers[ icol ].getSlurpLength();
+            if ( nslurp >= 0 ) {
+                nskip += nslurp;
+            }
+            else {
+                skipBefore[ nchk ] = nskip;
+                chkParsers[ nchk ] = parsers[ icol ];
+                nchk++;
+                nskip = 0;
+            }
+        }
+        int skipAfter = nskip;
+
         /* Read the stream. */
-        PushbackInputStream pushIn = new PushbackInputStream( in );
+        boolean isReport = context.isReportThroughput();
+        CountInputStream countIn = isReport ? new CountInputStream( in )
+                                            : null;
+        PushbackInputStream pushIn =
+            new PushbackInputStream(
+                new BufferedInputStream( isReport ? countIn : in,
+                                         BUFSIZ ) );
+        long start = System.currentTimeMillis();
         long irow = 0;
         while ( true ) {
 
             /* Check for end of stream. */
             int b = pushIn.read();
             if ( b < 0 ) {
-                return;
+                break;
             }
             else {
                 pushIn.unread( b );
             }
 
             /* Read a row. */
-            if ( nflag > 0 ) {
-                ValueParser.slurpStream( pushIn, nflag, context );
+            for ( int ic = 0; ic < nchk; ic++ ) {
+                if ( skipBefore[ ic ] > 0 ) {
+                    ValueParser.slurpStream( pushIn, skipBefore[ ic ],
+                                             context );
+                }
+                chkParsers[ ic ].checkStream( pushIn, irow );
             }
-            for ( int icol = 0; icol < ncol; icol++ ) {
-                parsers[ icol ].checkStream( pushIn, irow );
+            if ( skipAfter > 0 ) {
+                ValueParser.slurpStream( pushIn, skipAfter, context );
             }
 
             /* Notify the table. */
             foundRow();
             irow++;
         }
+
+        /* Report throughput if required. */
+        if ( isReport ) {
+            long millis = Math.max( 1, System.currentTimeMillis() - start );
+            long nbyte = countIn.getReadCount();
+            info( new VotLintCode( "THB" ),
+                  getName() + " stream: " + irow + " rows, "
+                + nbyte + " bytes in " + millis + "ms"
+                + " (" + ( nbyte / 1000 / millis ) + " MB/s)" );
+        }
     }
 }
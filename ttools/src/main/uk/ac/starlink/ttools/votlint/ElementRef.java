@@ -17,7 +17,7 @@ public class ElementRef {
     private final int line_;
     private final int col_;
     private final ElementHandler handler_;
-    private final String rep_;
+    private String rep_;
 
     /**
      * Constructor.  This is called by ElementHandler itself - in general
@@ -32,17 +32,6 @@ public class ElementRef {
         name_ = handler.getName();
         line_ = locator == null ? -1 : locator.getLineNumber();
         col_ = locator == null ? -1 : locator.getColumnNumber();
-        StringBuffer refbuf = new StringBuffer( handler.toString() );
-        if ( line_ > 0 ) {
-            refbuf.append( " (l." )
-                  .append( line_ );
-            if ( col_ > 0 ) {
-                refbuf.append( ", c." )
-                      .append( col_ );
-            }
-            refbuf.append( ")" );
-        }
-        rep_ = refbuf.toString();
     }
 
     /**
@@ -87,6 +76,22 @@ public class ElementRef {
     }
 
     public String toString() {
+
+        /* The representation is assembled lazily, since most refs
+         * (for instance those of TD elements) are never reported. */
+        if ( rep_ == null ) {
+            StringBuffer refbuf = new StringBuffer( name_ );
+            if ( line_ > 0 ) {
+                refbuf.append( " (l." )
+                      .append( line_ );
+                if ( col_ > 0 ) {
+                    refbuf.append( ", c." )
+                          .append( col_ );
+                }
+                refbuf.append( ")" );
+            }
+            rep_ = refbuf.toString();
+        }
         return rep_;
     }
 }
@@ -0,0 +1,175 @@
+package uk.ac.starlink.ttools.votlint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk-based store for (key, description) string pairs,
+ * used to keep track of XML IDs and references when there are too
+ * many to hold in memory.
+ *
+ * <p>Entries are partitioned by key hash into a fixed number of
+ * buckets, each backed by a temporary file.
+ * Once all entries have been added, the buckets can be read back
+ * one at a time, so that all the entries with a given key can be
+ * examined together while only holding a fraction of the whole
+ * store in memory.
+ *
+ * <p>The {@link #close} method should be called when the store is
+ * no longer required, to delete the temporary files.
+ */
+public class SpillStore {
+
+    private final String label_;
+    private final File[] files_;
+    private final DataOutputStream[] outs_;
+    private long count_;
+
+    /** Default number of buckets. */
+    public static final int DFLT_NBUCKET = 64;
+
+    /**
+     * Constructs a store with a default number of buckets.
+     *
+     * @param  label  short label used in temporary file names
+     */
+    public SpillStore( String label ) {
+        this( label, DFLT_NBUCKET );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param  label  short label used in temporary file names
+     * @param  nbucket  number of buckets
+     */
+    public SpillStore( String label, int nbucket ) {
+        label_ = label;
+        files_ = new File[ nbucket ];
+        outs_ = new DataOutputStream[ nbucket ];
+    }
+
+    /**
+     * Returns the number of buckets into which entries are partitioned.
+     *
+     * @return  bucket count
+     */
+    public int getBucketCount() {
+        return files_.length;
+    }
+
+    /**
+     * Returns the index of the bucket into which entries with a
+     * given key are placed.
+     *
+     * @param  key  key
+     * @return  bucket index
+     */
+    public int getBucketIndex( String key ) {
+        return Math.floorMod( key.hashCode(), files_.length );
+    }
+
+    /**
+     * Returns the number of entries added so far.
+     *
+     * @return  entry count
+     */
+    public long size() {
+        return count_;
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param  key  key
+     * @param  desc   description associated with key
+     */
+    public void add( String key, String desc ) throws IOException {
+        int ib = getBucketIndex( key );
+        if ( outs_[ ib ] == null ) {
+            files_[ ib ] = File.createTempFile( "votlint-" + label_ + "-",
+                                                ".tmp" );
+            files_[ ib ].deleteOnExit();
+            outs_[ ib ] = new DataOutputStream(
+                              new BufferedOutputStream(
+                                  new FileOutputStream( files_[ ib ] ),
+                                  8192 ) );
+        }
+        outs_[ ib ].writeUTF( truncate( key ) );
+        outs_[ ib ].writeUTF( truncate( desc ) );
+        count_++;
+    }
+
+    /**
+     * Returns all the entries in a given bucket.
+     * Each element of the returned list is a two-element
+     * (key, description) array.
+     *
+     * @param  ib  bucket index
+     * @return  entries in bucket <code>ib</code>, in order of addition
+     */
+    public List<String[]> readBucket( int ib ) throws IOException {
+        List<String[]> list = new ArrayList<String[]>();
+        if ( outs_[ ib ] != null ) {
+            outs_[ ib ].flush();
+            try ( DataInputStream in =
+                      new DataInputStream(
+                          new BufferedInputStream(
+                              new FileInputStream( files_[ ib ] ) ) ) ) {
+                while ( true ) {
+                    String key;
+                    try {
+                        key = in.readUTF();
+                    }
+                    catch ( EOFException e ) {
+                        break;
+                    }
+                    list.add( new String[] { key, in.readUTF() } );
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Discards all entries and deletes the temporary files.
+     */
+    public void close() {
+        for ( int ib = 0; ib < files_.length; ib++ ) {
+            if ( outs_[ ib ] != null ) {
+                try {
+                    outs_[ ib ].close();
+                }
+                catch ( IOException e ) {
+                    // never mind
+                }
+                outs_[ ib ] = null;
+            }
+            if ( files_[ ib ] != null ) {
+                files_[ ib ].delete();
+                files_[ ib ] = null;
+            }
+        }
+        count_ = 0;
+    }
+
+    /**
+     * Ensures that a string is short enough to be written using
+     * <code>DataOutput.writeUTF</code>.
+     *
+     * @param  txt  string
+     * @return  txt, or an initial substring of it
+     */
+    private static String truncate( String txt ) {
+        return txt.length() > 16384 ? txt.substring( 0, 16384 ) : txt;
+    }
+}
@@ -25,6 +25,7 @@ public class StreamHandler extends ElementHandler {
 
     private PipeReaderThread pipeReader_;
     private OutputStream dataSink_;
+    private byte[] byteBuf_;
 
     public void startElement() {
 
@@ -114,9 +115,16 @@ public class StreamHandler extends ElementHandler {
          * to the consumer stream we've set up. */
         if ( dataSink_ != null ) {
             try {
+
+                /* Write the characters as bytes in blocks; writing them
+                 * one at a time is slow for large inline streams. */
+                if ( byteBuf_ == null || byteBuf_.length < leng ) {
+                    byteBuf_ = new byte[ Math.max( leng, 1024 ) ];
+                }
                 for ( int i = 0; i < leng; i++ ) {
-                    dataSink_.write( ch[ start++ ] );
+                    byteBuf_[ i ] = (byte) ch[ start++ ];
                 }
+                dataSink_.write( byteBuf_, 0, leng );
             }
             catch ( IOException e ) {
                 // Ignore - it will be picked up by finishReading if it's
@@ -14,6 +14,7 @@ public class TableHandler extends ElementHandler {
     private long nrowsSpecified_ = -1L;
     private long nrowsSeen_ = 0L;
     private boolean dataSeen_;
+    private long dataStart_;
     private List<FieldHandler> fields_ = new ArrayList<FieldHandler>();
 
     public void endElement() {
@@ -30,6 +31,15 @@ public class TableHandler extends ElementHandler {
                        "nrows attribute (" + nrowsSpecified_ +")" );
             }
         }
+
+        /* Report throughput if required. */
+        if ( dataSeen_ && getContext().isReportThroughput() ) {
+            long millis =
+                Math.max( 1, System.currentTimeMillis() - dataStart_ );
+            info( new VotLintCode( "THT" ),
+                  "Table data: " + nrowsSeen_ + " rows in " + millis + "ms"
+                + " (" + ( nrowsSeen_ * 1000 / millis ) + " rows/s)" );
+        }
     }
 
     /**
@@ -45,6 +55,7 @@ public class TableHandler extends ElementHandler {
      */
     public void foundData() {
         dataSeen_ = true;
+        dataStart_ = System.currentTimeMillis();
     }
 
     /**
@@ -8,7 +8,7 @@ package uk.ac.starlink.ttools.votlint;
 public class TdHandler extends ElementHandler {
 
     private final boolean emptyMeansNull_;
-    private final StringBuffer content_ = new StringBuffer();
+    private final StringBuilder content_ = new StringBuilder();
 
     /**
      * Constructor.
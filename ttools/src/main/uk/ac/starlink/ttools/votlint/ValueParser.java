@@ -36,6 +36,10 @@ public abstract class ValueParser {
     private final ReportElement el_;
     private VotLintContext context_;
 
+    /** Per-thread scratch buffer for discarding stream bytes. */
+    private static final ThreadLocal<byte[]> SLURP_BUF =
+        ThreadLocal.withInitial( () -> new byte[ 8192 ] );
+
     private static final Pattern DOUBLE_REGEX =
         Pattern.compile( "([+-])?"
                        + "[0-9]*([0-9]|[0-9]\\.|\\.[0-9])[0-9]*"
@@ -98,6 +102,21 @@ public abstract class ValueParser {
      */
     public abstract int getElementCount();
 
+    /**
+     * Returns the number of bytes read by {@link #checkStream}
+     * if it always reads a fixed number of bytes without examining them.
+     * In that case callers may skip over the bytes in bulk instead of
+     * invoking <code>checkStream</code>.
+     * The default implementation returns -1.
+     *
+     * @return  fixed number of unchecked bytes per stream value,
+     *          or -1 if the stream content is checked or is of
+     *          variable length
+     */
+    int getSlurpLength() {
+        return -1;
+    }
+
     /**
      * Sets this parser's context.
      * This method should be called shortly after construction.
@@ -1028,6 +1047,10 @@ public abstract class ValueParser {
         public int getElementCount() {
             return count_;
         }
+        @Override
+        int getSlurpLength() {
+            return nbyte_;
+        }
         public void checkStream( InputStream in, long irow )
                 throws IOException {
             slurpStream( in, nbyte_ );
@@ -1079,6 +1102,11 @@ public abstract class ValueParser {
                 base_.checkStream( in, irow );
             }
         }
+        @Override
+        int getSlurpLength() {
+            int nb = base_.getSlurpLength();
+            return nb >= 0 ? count_ * nb : -1;
+        }
     }
 
     /**
@@ -1784,13 +1812,19 @@ public abstract class ValueParser {
     public static void slurpStream( InputStream in, int nbyte,
                                     VotLintContext context )
             throws IOException {
-        for ( int i = 0; i < nbyte; i++ ) {
-            if ( in.read() < 0 ) {
+
+        /* Read in blocks rather than byte by byte.  Don't use skip,
+         * since some streams can skip beyond their end without notice. */
+        byte[] buf = SLURP_BUF.get();
+        for ( int ip = 0; ip < nbyte; ) {
+            int nr = in.read( buf, 0, Math.min( buf.length, nbyte - ip ) );
+            if ( nr < 0 ) {
                 context.error( new VotLintCode( "EOF" ),
                                "Stream ended during data read; done "
-                             + i + "/" + nbyte );
+                             + ip + "/" + nbyte );
                 throw new EOFException();
             }
+            ip += nr;
         }
     }
 
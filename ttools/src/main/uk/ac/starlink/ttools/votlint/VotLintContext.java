@@ -1,9 +1,12 @@
 package uk.ac.starlink.ttools.votlint;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.xml.sax.Locator;
 import uk.ac.starlink.votable.VOTableVersion;
@@ -26,9 +29,16 @@ public class VotLintContext {
     private final Map<String,Collection<ElementRef>> linksMap_;
     private boolean checkUcd_;
     private boolean checkUnit_;
+    private boolean reportThroughput_;
+    private int maxMemoryIds_;
+    private SpillStore idSpill_;
+    private SpillStore refSpill_;
     private Locator locator_;
     private int errCount_;
 
+    /** Suggested maximum number of IDs to hold in memory for large inputs. */
+    public static final int DFLT_MAXMEMORYIDS = 100000;
+
     /**
      * Constructor.
      *
@@ -48,6 +58,7 @@ public class VotLintContext {
         linksMap_ = new LinkedHashMap<String,Collection<ElementRef>>();
         checkUcd_ = true;
         checkUnit_ = true;
+        maxMemoryIds_ = Integer.MAX_VALUE;
     }
 
     /**
@@ -108,6 +119,53 @@ public class VotLintContext {
         checkUnit_ = checkUnit;
     }
 
+    /**
+     * Indicates whether throughput statistics will be reported
+     * for table data.
+     *
+     * @return  whether to report throughput
+     */
+    public boolean isReportThroughput() {
+        return reportThroughput_;
+    }
+
+    /**
+     * Sets whether throughput statistics will be reported for table data.
+     *
+     * @param  reportThroughput  whether to report throughput
+     */
+    public void setReportThroughput( boolean reportThroughput ) {
+        reportThroughput_ = reportThroughput;
+    }
+
+    /**
+     * Returns the maximum number of IDs, and of unresolved references,
+     * that will be held in memory.
+     *
+     * @return  maximum in-memory ID count
+     */
+    public int getMaxMemoryIds() {
+        return maxMemoryIds_;
+    }
+
+    /**
+     * Sets the maximum number of IDs, and of unresolved references,
+     * that will be held in memory.
+     * Beyond this limit, further IDs and references are written to
+     * temporary files, and checked for duplicates and resolution
+     * at the end of the parse.
+     * In that case some checks are not performed:
+     * references to spilled IDs are not checked for pointing to
+     * the right kind of element, and spilled IDs are not checked
+     * for being unreferenced.
+     * The default is unlimited.
+     *
+     * @param  maxMemoryIds  maximum in-memory ID count
+     */
+    public void setMaxMemoryIds( int maxMemoryIds ) {
+        maxMemoryIds_ = maxMemoryIds;
+    }
+
     /**
      * Sets the SAX document locator for this parse.
      *
@@ -150,7 +208,18 @@ public class VotLintContext {
                    "ID " + id + " already defined " + ref );
         }
 
-        /* If not, keep a record of it. */
+        /* If not, keep a record of it, on disk if there are already
+         * too many in memory.  Duplicates among spilled IDs are
+         * checked at the end of the parse. */
+        else if ( idMap_.size() >= maxMemoryIds_ ) {
+            if ( idSpill_ == null ) {
+                info( new VotLintCode( "IDS" ),
+                      "More than " + maxMemoryIds_ + " IDs; "
+                    + "spilling ID checks to temporary files" );
+                idSpill_ = new SpillStore( "id" );
+            }
+            spill( idSpill_, id, handler.getRef() );
+        }
         else {
             idMap_.put( id, handler.getRef() );
             linksMap_.put( id, new HashSet<ElementRef>() );
@@ -158,7 +227,7 @@ public class VotLintContext {
 
         /* If we've seen a reference to this one already, process the
          * link now and remove it from the pending list. */
-        if ( refMap_.containsKey( id ) ) {
+        if ( refMap_.containsKey( id ) && idMap_.containsKey( id ) ) {
             UncheckedReference unref = refMap_.remove( id );
             ElementRef to = idMap_.get( id );
             unref.recordLink( to );
@@ -186,7 +255,14 @@ public class VotLintContext {
         }
 
         /* Otherwise, remember the check needs to be done for processing
-         * later. */
+         * later, on disk if there are already too many in memory. */
+        else if ( refMap_.size() >= maxMemoryIds_ &&
+                  ! refMap_.containsKey( id ) ) {
+            if ( refSpill_ == null ) {
+                refSpill_ = new SpillStore( "ref" );
+            }
+            spill( refSpill_, id, from );
+        }
         else {
             refMap_.put( id, unref );
         }
@@ -197,6 +273,26 @@ public class VotLintContext {
      * This is done at the end of the parse.
      */
     public void reportUncheckedRefs() {
+        if ( idSpill_ != null || refSpill_ != null ) {
+            try {
+                checkSpilledIds();
+            }
+            catch ( IOException e ) {
+                warning( new VotLintCode( "IOE" ),
+                         "Error reading spilled IDs - checks incomplete: "
+                       + e );
+            }
+            finally {
+                if ( idSpill_ != null ) {
+                    idSpill_.close();
+                    idSpill_ = null;
+                }
+                if ( refSpill_ != null ) {
+                    refSpill_.close();
+                    refSpill_ = null;
+                }
+            }
+        }
         for ( Map.Entry<String,UncheckedReference> entry :
               refMap_.entrySet() )  {
             String id = entry.getKey();
@@ -207,6 +303,81 @@ public class VotLintContext {
         }
     }
 
+    /**
+     * Performs the deferred checks on IDs and references which
+     * have been spilled to disk.
+     * Duplicate spilled IDs and spilled references which cannot be
+     * resolved are reported, and in-memory unresolved references
+     * which match a spilled ID are removed from the pending list.
+     */
+    private void checkSpilledIds() throws IOException {
+        SpillStore ids = idSpill_ == null ? new SpillStore( "id" ) : idSpill_;
+        SpillStore refs = refSpill_ == null ? new SpillStore( "ref" )
+                                            : refSpill_;
+        int nbucket = ids.getBucketCount();
+        for ( int ib = 0; ib < nbucket; ib++ ) {
+
+            /* Read the IDs in this bucket, checking for duplicates. */
+            Map<String,String> bucketIds = new HashMap<String,String>();
+            for ( String[] entry : ids.readBucket( ib ) ) {
+                String id = entry[ 0 ];
+                String first = bucketIds.get( id );
+                if ( first != null ) {
+                    error( new VotLintCode( "DID" ),
+                           "ID " + id + " at " + entry[ 1 ]
+                         + " already defined " + first );
+                }
+                else {
+                    bucketIds.put( id, entry[ 1 ] );
+                }
+            }
+
+            /* Resolve references against both in-memory and spilled IDs. */
+            for ( String[] entry : refs.readBucket( ib ) ) {
+                String id = entry[ 0 ];
+                if ( ! bucketIds.containsKey( id ) ) {
+
+                    /* The referencing element is not available, so just
+                     * note that the ID is not unreferenced. */
+                    if ( idMap_.containsKey( id ) ) {
+                        linksMap_.remove( id );
+                    }
+                    else {
+                        error( new VotLintCode( "NFI" ),
+                               "ID " + id + " referenced from " + entry[ 1 ]
+                             + " never found" );
+                    }
+                }
+            }
+            for ( Iterator<String> it = refMap_.keySet().iterator();
+                  it.hasNext(); ) {
+                String id = it.next();
+                if ( ids.getBucketIndex( id ) == ib &&
+                     bucketIds.containsKey( id ) ) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an entry to a spill store, disabling spilling if that fails.
+     *
+     * @param  store  spill store
+     * @param  id   ID value
+     * @param  ref  element associated with the ID
+     */
+    private void spill( SpillStore store, String id, ElementRef ref ) {
+        try {
+            store.add( id, ref.toString() );
+        }
+        catch ( IOException e ) {
+            warning( new VotLintCode( "IOE" ),
+                     "Error spilling IDs to disk - checks incomplete: " + e );
+            maxMemoryIds_ = Integer.MAX_VALUE;
+        }
+    }
+
     /**
      * Goes through all declared IDs that were never referenced.
      * Such unreferenced IDs are not an error, but in some cases
@@ -113,12 +113,17 @@ public class VotLinter {
         }
 
         /* Construct a single content handler that will multiplex the
-         * incoming SAX events to all the target handlers. */
+         * incoming SAX events to all the target handlers.
+         * If there is only one, use it directly, since the reflective
+         * dispatch is a significant cost per SAX event for large
+         * TABLEDATA elements. */
         ContentHandler[] cHandlers =
             contentHandlers.toArray( new ContentHandler[ 0 ] );
         ContentHandler contentHandler =
-            new MultiplexInvocationHandler<ContentHandler>( cHandlers )
-           .createMultiplexer( ContentHandler.class );
+              cHandlers.length == 1
+            ? cHandlers[ 0 ]
+            : new MultiplexInvocationHandler<ContentHandler>( cHandlers )
+             .createMultiplexer( ContentHandler.class );
 
         /* Install the custom content handler and error handler. */
         parser.setContentHandler( contentHandler );
@@ -0,0 +1,657 @@
+package uk.ac.starlink.ttools.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableFactory;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.join.CdsHealpixSkyPixellator;
+import uk.ac.starlink.table.join.EqualsMatchEngine;
+import uk.ac.starlink.table.join.ErrorSkyMatchEngine;
+import uk.ac.starlink.table.join.FixedSkyMatchEngine;
+import uk.ac.starlink.table.join.HtmSkyPixellator;
+import uk.ac.starlink.table.join.IsotropicCartesianMatchEngine;
+import uk.ac.starlink.table.join.LinkSet;
+import uk.ac.starlink.table.join.MatchEngine;
+import uk.ac.starlink.table.join.PairMode;
+import uk.ac.starlink.table.join.RowMatcher;
+import uk.ac.starlink.ttools.Stilts;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+
+/**
+ * Runs a suite of performance benchmarks covering table I/O,
+ * parallel row processing, sorting and crossmatching,
+ * and writes the results as a table.
+ *
+ * <p>This is not a unit test, it is a standalone application,
+ * intended to be run before and after changes or between releases
+ * so that performance regressions can be spotted.
+ * Results are written in a machine-readable table format
+ * (ECSV by default) so that runs can be compared using STILTS itself.
+ * Use the <code>-help</code> flag for usage.
+ * The <code>benchmark</code> target of the ttools build file
+ * will run it.
+ *
+ * <p>The timing is done in the straightforward way:
+ * each benchmark is run a number of times untimed to warm up the JVM,
+ * and then a number of times timed, and the mean, standard deviation
+ * and minimum elapsed times are reported.
+ */
+public class BenchSuite {
+
+    private final int nrow_;
+    private final int ncol_;
+    private final int nmatch_;
+    private final int[] threadCounts_;
+    private final int nwarm_;
+    private final int niter_;
+    private final File tmpDir_;
+    private final StarTableFactory tfact_;
+    private final StarTableOutput tout_;
+
+    /** Output/input handler name pairs for formats tested by default. */
+    private static final String[][] FORMATS = {
+        { "fits", "fits" },
+        { "colfits-plus", "colfits-plus" },
+        { "votable-tabledata", "votable" },
+        { "votable-binary2-inline", "votable" },
+        { "ecsv", "ecsv" },
+        { "feather", "feather" },
+        { "parquet", "parquet" },
+        { "csv", "csv" },
+    };
+    private static final String[] GROUPS = { "io", "runner", "sort", "match" };
+    private static final long SEED = 230029;
+    private static final double ARCSEC = Math.toRadians( 1. / 3600 );
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.bench" );
+
+    /**
+     * Constructor.
+     *
+     * @param  nrow   row count for I/O, runner and sort benchmark tables
+     * @param  ncol   column count for I/O, runner and sort benchmark tables
+     * @param  nmatch  row count for the larger crossmatch input table
+     * @param  threadCounts  parallelism values for runner benchmarks
+     * @param  nwarm  number of untimed warmup runs per benchmark
+     * @param  niter  number of timed runs per benchmark
+     * @param  tmpDir  directory for temporary files
+     */
+    public BenchSuite( int nrow, int ncol, int nmatch, int[] threadCounts,
+                       int nwarm, int niter, File tmpDir ) {
+        nrow_ = nrow;
+        ncol_ = ncol;
+        nmatch_ = nmatch;
+        threadCounts_ = threadCounts;
+        nwarm_ = nwarm;
+        niter_ = niter;
+        tmpDir_ = tmpDir;
+        tfact_ = new StarTableFactory( false );
+        tfact_.setStoragePolicy( StoragePolicy.PREFER_MEMORY );
+        tout_ = new StarTableOutput();
+    }
+
+    /**
+     * Returns benchmarks that write and read the synthetic table
+     * in each of a given list of formats.
+     *
+     * @param  formats  output format names
+     * @return  benchmark list
+     */
+    public List<Benchmark> createIoBenchmarks( String[] formats ) {
+        StarTable table = BenchTables.createWideTable( nrow_, ncol_, SEED );
+        List<Benchmark> list = new ArrayList<>();
+        for ( String ofmt : formats ) {
+            String ifmt = getInputFormat( ofmt );
+            File file = new File( tmpDir_, "bench-" + ofmt + ".dat" );
+            list.add( new Benchmark( "io", ofmt, "write", "row" ) {
+                public long run() throws IOException {
+                    tout_.writeStarTable( table, file.toString(), ofmt );
+                    return nrow_;
+                }
+                @Override
+                public void tearDown() {
+                    file.delete();
+                }
+            } );
+            list.add( new Benchmark( "io", ofmt, "read", "row" ) {
+                @Override
+                public void setUp() throws IOException {
+                    tout_.writeStarTable( table, file.toString(), ofmt );
+                }
+                public long run() throws IOException {
+                    return readAll( tfact_.makeStarTable( file.toString(),
+                                                          ifmt ) );
+                }
+                @Override
+                public void tearDown() {
+                    file.delete();
+                }
+            } );
+        }
+        return list;
+    }
+
+    /**
+     * Returns benchmarks that run a RowRunner collection over
+     * the synthetic table at different levels of parallelism,
+     * both from memory and from a FITS file.
+     *
+     * @return  benchmark list
+     */
+    public List<Benchmark> createRunnerBenchmarks() {
+        StarTable memTable = BenchTables.createWideTable( nrow_, ncol_, SEED );
+        File file = new File( tmpDir_, "bench-runner.fits" );
+        List<Benchmark> list = new ArrayList<>();
+        for ( String src : new String[] { "memory", "fits" } ) {
+            for ( int nthread : threadCounts_ ) {
+                list.add( new Benchmark( "runner", src, "threads=" + nthread,
+                                         "row" ) {
+                    ForkJoinPool pool_;
+                    RowRunner runner_;
+                    StarTable table_;
+                    @Override
+                    public void setUp() throws IOException {
+                        if ( "fits".equals( src ) ) {
+                            tout_.writeStarTable( memTable, file.toString(),
+                                                  "fits" );
+                            table_ = tfact_.makeStarTable( file.toString(),
+                                                           "fits" );
+                        }
+                        else {
+                            table_ = memTable;
+                        }
+                        if ( nthread == 1 ) {
+                            runner_ = RowRunner.SEQUENTIAL;
+                        }
+                        else {
+                            pool_ = new ForkJoinPool( nthread );
+                            SplitPolicy policy =
+                                new SplitPolicy( () -> pool_, 0, (short) -1 );
+                            runner_ = new RowRunner( SplitProcessor
+                                     .createBasicParallelProcessor( policy ) );
+                        }
+                    }
+                    public long run() throws IOException {
+                        runner_.collect( new SumCollector(), table_ );
+                        return nrow_;
+                    }
+                    @Override
+                    public void tearDown() {
+                        if ( pool_ != null ) {
+                            pool_.shutdown();
+                        }
+                        file.delete();
+                    }
+                } );
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns benchmarks for table sorting.
+     *
+     * @return  benchmark list
+     */
+    public List<Benchmark> createSortBenchmarks() {
+        StarTable table = BenchTables.createWideTable( nrow_, ncol_, SEED );
+        List<Benchmark> list = new ArrayList<>();
+        list.add( new Benchmark( "sort", "sortTable", "double", "row" ) {
+            public long run() throws IOException {
+                return Tables.sortTable( table, new int[] { 0 }, true, true )
+                             .getRowCount();
+            }
+        } );
+        if ( ncol_ > 2 ) {
+            list.add( new Benchmark( "sort", "sortTable", "int+double",
+                                     "row" ) {
+                public long run() throws IOException {
+                    return Tables.sortTable( table, new int[] { 2, 1 },
+                                             true, true )
+                                 .getRowCount();
+                }
+            } );
+        }
+        return list;
+    }
+
+    /**
+     * Returns benchmarks for pair matching using various match engines,
+     * both sequentially and in parallel.
+     *
+     * @return  benchmark list
+     */
+    public List<Benchmark> createMatchBenchmarks() {
+        Map<String,MatchEngine> engines = new LinkedHashMap<>();
+        Map<String,StarTable[]> inputs = new LinkedHashMap<>();
+        StarTable[] skyPair =
+            BenchTables.createSkyPair( nmatch_, ARCSEC, false, SEED );
+        engines.put( "sky-healpix",
+                     new FixedSkyMatchEngine( new CdsHealpixSkyPixellator(),
+                                              ARCSEC ) );
+        inputs.put( "sky-healpix", skyPair );
+        engines.put( "sky-htm",
+                     new FixedSkyMatchEngine( new HtmSkyPixellator(),
+                                              ARCSEC ) );
+        inputs.put( "sky-htm", skyPair );
+        engines.put( "skyerr",
+                     new ErrorSkyMatchEngine( new CdsHealpixSkyPixellator(),
+                                              null, ARCSEC ) );
+        inputs.put( "skyerr",
+                    BenchTables.createSkyPair( nmatch_, ARCSEC, true, SEED ) );
+        engines.put( "3d",
+                     new IsotropicCartesianMatchEngine( 3, 0.1, false ) );
+        inputs.put( "3d",
+                    BenchTables.createCartesianPair( nmatch_, 0.1, SEED ) );
+        engines.put( "exact", new EqualsMatchEngine() );
+        inputs.put( "exact", BenchTables.createKeyPair( nmatch_, SEED ) );
+        List<Benchmark> list = new ArrayList<>();
+        for ( String name : engines.keySet() ) {
+            MatchEngine engine = engines.get( name );
+            StarTable[] tables = inputs.get( name );
+            long nin = tables[ 0 ].getRowCount() + tables[ 1 ].getRowCount();
+            for ( boolean isPar : new boolean[] { false, true } ) {
+                RowRunner runner = isPar ? RowRunner.DEFAULT : null;
+                list.add( new Benchmark( "match", name,
+                                         isPar ? "parallel" : "sequential",
+                                         "row" ) {
+                    public long run() throws IOException {
+                        try {
+                            LinkSet links =
+                                RowMatcher
+                               .createMatcher( engine, tables, runner )
+                               .findPairMatches( PairMode.BEST );
+                            if ( links.size() == 0 ) {
+                                throw new IOException( "No matches" );
+                            }
+                        }
+                        catch ( InterruptedException e ) {
+                            throw (IOException)
+                                  new IOException( "Interrupted" )
+                                 .initCause( e );
+                        }
+                        return nin;
+                    }
+                } );
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Runs a list of benchmarks and returns a table of results.
+     * A benchmark that fails is logged and omitted from the results.
+     *
+     * @param  benchmarks  benchmarks to run
+     * @return  result table
+     */
+    public StarTable runBenchmarks( List<Benchmark> benchmarks ) {
+        RowListStarTable results = new RowListStarTable( new ColumnInfo[] {
+            new ColumnInfo( "group", String.class, "Benchmark group" ),
+            new ColumnInfo( "name", String.class, "Component exercised" ),
+            new ColumnInfo( "variant", String.class, "Benchmark variant" ),
+            new ColumnInfo( "nrow", Long.class,
+                            "Number of items processed per run" ),
+            new ColumnInfo( "unit", String.class, "Item type" ),
+            new ColumnInfo( "niter", Integer.class, "Number of timed runs" ),
+            createUnitInfo( "mean_ms", "Mean elapsed time per run", "ms" ),
+            createUnitInfo( "sd_ms",
+                            "Standard deviation of elapsed time per run",
+                            "ms" ),
+            createUnitInfo( "min_ms", "Minimum elapsed time per run", "ms" ),
+            createUnitInfo( "rate", "Items per second, based on mean time",
+                            "s-1" ),
+        } );
+        results.getParameters().addAll( Arrays.asList( getRunParameters() ) );
+        for ( Benchmark bench : benchmarks ) {
+            try {
+                results.addRow( runBenchmark( bench ) );
+            }
+            catch ( IOException | RuntimeException e ) {
+                logger_.log( Level.WARNING,
+                             "Benchmark " + bench + " failed: " + e, e );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a single benchmark.
+     *
+     * @param  bench  benchmark
+     * @return  result row
+     */
+    private Object[] runBenchmark( Benchmark bench ) throws IOException {
+        logger_.info( "Running " + bench );
+        long[] nanos = new long[ niter_ ];
+        long count = 0;
+        bench.setUp();
+        try {
+            for ( int i = 0; i < nwarm_; i++ ) {
+                bench.run();
+            }
+            for ( int i = 0; i < niter_; i++ ) {
+                long t0 = System.nanoTime();
+                count = bench.run();
+                nanos[ i ] = System.nanoTime() - t0;
+            }
+        }
+        finally {
+            bench.tearDown();
+        }
+        double sum = 0;
+        double sum2 = 0;
+        long min = Long.MAX_VALUE;
+        for ( long t : nanos ) {
+            sum += t;
+            sum2 += (double) t * t;
+            min = Math.min( min, t );
+        }
+        double mean = sum / niter_;
+        double sd = Math.sqrt( Math.max( 0, sum2 / niter_ - mean * mean ) );
+        double ms = 1e-6;
+        Object[] row = new Object[] {
+            bench.getGroup(),
+            bench.getName(),
+            bench.getVariant(),
+            Long.valueOf( count ),
+            bench.getUnit(),
+            Integer.valueOf( niter_ ),
+            Double.valueOf( mean * ms ),
+            Double.valueOf( sd * ms ),
+            Double.valueOf( min * ms ),
+            Double.valueOf( count / ( mean * 1e-9 ) ),
+        };
+        logger_.info( bench + ": " + (float) ( mean * ms ) + " ms" );
+        return row;
+    }
+
+    /**
+     * Returns parameters describing the environment in which
+     * the benchmarks were run.
+     *
+     * @return  parameter list
+     */
+    private DescribedValue[] getRunParameters() {
+        SimpleDateFormat fmt = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss" );
+        fmt.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+        Runtime rt = Runtime.getRuntime();
+        return new DescribedValue[] {
+            param( "date", "Run date (UTC)", fmt.format( new Date() ) ),
+            param( "stiltsVersion", "STILTS version", Stilts.getVersion() ),
+            param( "starjavaRevision", "Starjava revision",
+                   Stilts.getStarjavaRevision() ),
+            param( "javaVersion", "Java version",
+                   System.getProperty( "java.version" ) ),
+            param( "javaVendor", "Java vendor",
+                   System.getProperty( "java.vendor" ) ),
+            param( "osArch", "OS architecture",
+                   System.getProperty( "os.arch" ) ),
+            param( "ncpu", "Available processors",
+                   Integer.valueOf( rt.availableProcessors() ) ),
+            param( "maxMemory", "Maximum heap size in bytes",
+                   Long.valueOf( rt.maxMemory() ) ),
+            param( "benchRows", "Rows in benchmark table",
+                   Integer.valueOf( nrow_ ) ),
+            param( "benchCols", "Columns in benchmark table",
+                   Integer.valueOf( ncol_ ) ),
+            param( "matchRows", "Rows in larger match input table",
+                   Integer.valueOf( nmatch_ ) ),
+        };
+    }
+
+    /**
+     * Reads every cell of a table sequentially.
+     *
+     * @param  table  table
+     * @return  number of rows read
+     */
+    private static long readAll( StarTable table ) throws IOException {
+        long nrow = 0;
+        int ncol = table.getColumnCount();
+        try ( RowSequence rseq = table.getRowSequence() ) {
+            while ( rseq.next() ) {
+                for ( int ic = 0; ic < ncol; ic++ ) {
+                    rseq.getCell( ic );
+                }
+                nrow++;
+            }
+        }
+        return nrow;
+    }
+
+    /**
+     * Returns the name of the input handler corresponding to
+     * a given output format.
+     *
+     * @param  ofmt  output format name
+     * @return  input format name
+     */
+    private static String getInputFormat( String ofmt ) {
+        for ( String[] pair : FORMATS ) {
+            if ( pair[ 0 ].equalsIgnoreCase( ofmt ) ) {
+                return pair[ 1 ];
+            }
+        }
+        return "(auto)";
+    }
+
+    /**
+     * Creates a ColumnInfo for a double value with given units.
+     *
+     * @param  name  name
+     * @param  descrip  description
+     * @param  unit  unit string
+     * @return  new info
+     */
+    private static ColumnInfo createUnitInfo( String name, String descrip,
+                                              String unit ) {
+        ColumnInfo info = new ColumnInfo( name, Double.class, descrip );
+        info.setUnitString( unit );
+        return info;
+    }
+
+    /**
+     * Creates a described value.
+     *
+     * @param  name  name
+     * @param  descrip  description
+     * @param  value  value
+     * @return  new parameter
+     */
+    private static DescribedValue param( String name, String descrip,
+                                         Object value ) {
+        return new DescribedValue(
+            new DefaultValueInfo( name, value == null ? String.class
+                                                      : value.getClass(),
+                                  descrip ),
+            value );
+    }
+
+    /**
+     * Parses a comma-separated list of integers.
+     *
+     * @param  txt  list text
+     * @return  values
+     */
+    private static int[] parseInts( String txt ) {
+        String[] words = txt.split( ",", -1 );
+        int[] ivals = new int[ words.length ];
+        for ( int i = 0; i < words.length; i++ ) {
+            ivals[ i ] = Integer.parseInt( words[ i ].trim() );
+        }
+        return ivals;
+    }
+
+    /**
+     * Returns the default list of thread counts for runner benchmarks,
+     * which is powers of two up to the number of available processors.
+     *
+     * @return  thread counts
+     */
+    private static int[] getDefaultThreadCounts() {
+        int ncpu = Runtime.getRuntime().availableProcessors();
+        List<Integer> list = new ArrayList<>();
+        for ( int n = 1; n < ncpu; n *= 2 ) {
+            list.add( Integer.valueOf( n ) );
+        }
+        list.add( Integer.valueOf( ncpu ) );
+        return list.stream().mapToInt( Integer::intValue ).toArray();
+    }
+
+    /**
+     * Collector that sums all the numeric cells in a table.
+     */
+    private static class SumCollector extends RowCollector<double[]> {
+        public double[] createAccumulator() {
+            return new double[ 1 ];
+        }
+        public double[] combine( double[] acc1, double[] acc2 ) {
+            acc1[ 0 ] += acc2[ 0 ];
+            return acc1;
+        }
+        public void accumulateRows( RowSplittable rseq, double[] acc )
+                throws IOException {
+            double sum = 0;
+            while ( rseq.next() ) {
+                for ( Object cell : rseq.getRow() ) {
+                    if ( cell instanceof Number ) {
+                        sum += Math.abs( ((Number) cell).doubleValue() );
+                    }
+                }
+            }
+            acc[ 0 ] += sum;
+        }
+    }
+
+    /**
+     * Main method.  Use <code>-help</code> for usage.
+     *
+     * @param  args  command-line arguments
+     */
+    public static void main( String[] args ) throws IOException {
+        String usage = new StringBuffer()
+            .append( "\n   Usage: " )
+            .append( BenchSuite.class.getName() )
+            .append( "\n         " )
+            .append( " [-groups " ).append( String.join( ",", GROUPS ) )
+            .append( "]" )
+            .append( " [-nrow <n>] [-ncol <n>] [-nmatch <n>]" )
+            .append( "\n         " )
+            .append( " [-formats <fmt>,...] [-threads <n>,...]" )
+            .append( " [-warmup <n>] [-iter <n>]" )
+            .append( "\n         " )
+            .append( " [-out <location>] [-ofmt <format>]" )
+            .append( " [-tmpdir <dir>]" )
+            .append( "\n" )
+            .toString();
+        List<String> argList = new ArrayList<>( Arrays.asList( args ) );
+        List<String> groups = Arrays.asList( GROUPS );
+        int nrow = 1_000_000;
+        int ncol = 20;
+        int nmatch = 200_000;
+        String[] formats = new String[ FORMATS.length ];
+        for ( int i = 0; i < FORMATS.length; i++ ) {
+            formats[ i ] = FORMATS[ i ][ 0 ];
+        }
+        int[] threadCounts = getDefaultThreadCounts();
+        int nwarm = 2;
+        int niter = 5;
+        String out = "-";
+        String ofmt = "ecsv";
+        File tmpDir = new File( System.getProperty( "java.io.tmpdir" ) );
+        try {
+            while ( argList.size() > 0 ) {
+                String arg = argList.remove( 0 );
+                if ( arg.startsWith( "-h" ) ) {
+                    System.out.println( usage );
+                    return;
+                }
+                else if ( argList.size() == 0 ) {
+                    throw new IllegalArgumentException();
+                }
+                String val = argList.remove( 0 );
+                if ( "-groups".equals( arg ) ) {
+                    groups = Arrays.asList( val.split( "," ) );
+                }
+                else if ( "-nrow".equals( arg ) ) {
+                    nrow = Integer.parseInt( val );
+                }
+                else if ( "-ncol".equals( arg ) ) {
+                    ncol = Math.max( 2, Integer.parseInt( val ) );
+                }
+                else if ( "-nmatch".equals( arg ) ) {
+                    nmatch = Integer.parseInt( val );
+                }
+                else if ( "-formats".equals( arg ) ) {
+                    formats = val.split( "," );
+                }
+                else if ( "-threads".equals( arg ) ) {
+                    threadCounts = parseInts( val );
+                }
+                else if ( "-warmup".equals( arg ) ) {
+                    nwarm = Integer.parseInt( val );
+                }
+                else if ( "-iter".equals( arg ) ) {
+                    niter = Math.max( 1, Integer.parseInt( val ) );
+                }
+                else if ( "-out".equals( arg ) ) {
+                    out = val;
+                }
+                else if ( "-ofmt".equals( arg ) ) {
+                    ofmt = val;
+                }
+                else if ( "-tmpdir".equals( arg ) ) {
+                    tmpDir = new File( val );
+                }
+                else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( usage );
+            System.exit( 1 );
+        }
+        BenchSuite suite = new BenchSuite( nrow, ncol, nmatch, threadCounts,
+                                           nwarm, niter, tmpDir );
+        List<Benchmark> benchmarks = new ArrayList<>();
+        if ( groups.contains( "io" ) ) {
+            benchmarks.addAll( suite.createIoBenchmarks( formats ) );
+        }
+        if ( groups.contains( "runner" ) ) {
+            benchmarks.addAll( suite.createRunnerBenchmarks() );
+        }
+        if ( groups.contains( "sort" ) ) {
+            benchmarks.addAll( suite.createSortBenchmarks() );
+        }
+        if ( groups.contains( "match" ) ) {
+            benchmarks.addAll( suite.createMatchBenchmarks() );
+        }
+        StarTable results = suite.runBenchmarks( benchmarks );
+        new StarTableOutput().writeStarTable( results, out, ofmt );
+    }
+}
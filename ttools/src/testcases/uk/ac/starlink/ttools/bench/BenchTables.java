@@ -0,0 +1,251 @@
+package uk.ac.starlink.ttools.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+import uk.ac.starlink.table.ColumnData;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.ObjectArrayColumn;
+import uk.ac.starlink.table.PrimitiveArrayColumn;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * Generates synthetic tables for use by benchmarks.
+ * All the tables are held in memory and are random-access,
+ * and are generated deterministically from a supplied seed.
+ */
+public class BenchTables {
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private BenchTables() {
+    }
+
+    /**
+     * Returns a table with a mixture of column types.
+     * The first two columns are sky positions (RA, Dec in degrees),
+     * and subsequent columns cycle through double, float, int, long
+     * and string types.
+     *
+     * @param  nrow  row count
+     * @param  ncol  column count, at least 2
+     * @param  seed  random seed
+     * @return   new table
+     */
+    public static StarTable createWideTable( int nrow, int ncol, long seed ) {
+        Random rnd = new Random( seed );
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        double[] ras = new double[ nrow ];
+        double[] decs = new double[ nrow ];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            ras[ ir ] = 360 * rnd.nextDouble();
+            decs[ ir ] = Math.toDegrees( Math.asin( 2 * rnd.nextDouble()
+                                                    - 1 ) );
+        }
+        table.addColumn( column( "ra", "deg", ras ) );
+        table.addColumn( column( "dec", "deg", decs ) );
+        for ( int ic = 2; ic < ncol; ic++ ) {
+            String name = "c" + ic;
+            switch ( ic % 5 ) {
+                case 0: {
+                    double[] data = new double[ nrow ];
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        data[ ir ] = rnd.nextGaussian();
+                    }
+                    table.addColumn( column( name, null, data ) );
+                    break;
+                }
+                case 1: {
+                    float[] data = new float[ nrow ];
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        data[ ir ] = (float) rnd.nextGaussian();
+                    }
+                    table.addColumn( column( name, null, data ) );
+                    break;
+                }
+                case 2: {
+                    int[] data = new int[ nrow ];
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        data[ ir ] = rnd.nextInt( 1000000 );
+                    }
+                    table.addColumn( column( name, null, data ) );
+                    break;
+                }
+                case 3: {
+                    long[] data = new long[ nrow ];
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        data[ ir ] = rnd.nextLong();
+                    }
+                    table.addColumn( column( name, null, data ) );
+                    break;
+                }
+                default: {
+                    String[] data = new String[ nrow ];
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        data[ ir ] = "s" + Integer
+                                          .toString( rnd.nextInt( 1 << 30 ),
+                                                     36 );
+                    }
+                    ColumnInfo info = new ColumnInfo( name, String.class,
+                                                      null );
+                    info.setElementSize( 8 );
+                    table.addColumn( new ObjectArrayColumn( info, data ) );
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns a pair of tables giving sky positions in radians,
+     * suitable for input to a sky match engine.
+     * The second table contains a perturbed copy of a random subset
+     * of the first table's rows, so that each of its rows has
+     * a counterpart in the first table.
+     * The positions are concentrated in a patch of sky so that
+     * the density is high enough to test the matching.
+     *
+     * @param  nrow  row count of first table
+     * @param  scatter  maximum perturbation of second table positions
+     *                  in radians
+     * @param  withErr  if true, a third column is included with
+     *                  per-row error values equal to <code>scatter</code>
+     * @param  seed  random seed
+     * @return  2-element array of tables
+     */
+    public static StarTable[] createSkyPair( int nrow, double scatter,
+                                             boolean withErr, long seed ) {
+        Random rnd = new Random( seed );
+        double side = Math.toRadians( 10 );
+        double[] ra1 = new double[ nrow ];
+        double[] dec1 = new double[ nrow ];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            ra1[ ir ] = side * rnd.nextDouble();
+            dec1[ ir ] = side * ( rnd.nextDouble() - 0.5 );
+        }
+        int nrow2 = nrow / 2;
+        double[] ra2 = new double[ nrow2 ];
+        double[] dec2 = new double[ nrow2 ];
+        for ( int ir = 0; ir < nrow2; ir++ ) {
+            int jr = rnd.nextInt( nrow );
+            ra2[ ir ] = ra1[ jr ] + scatter * ( rnd.nextDouble() - 0.5 )
+                                  / Math.cos( dec1[ jr ] );
+            dec2[ ir ] = dec1[ jr ] + scatter * ( rnd.nextDouble() - 0.5 );
+        }
+        ColumnStarTable t1 = ColumnStarTable.makeTableWithRows( nrow );
+        t1.addColumn( column( "ra", "rad", ra1 ) );
+        t1.addColumn( column( "dec", "rad", dec1 ) );
+        ColumnStarTable t2 = ColumnStarTable.makeTableWithRows( nrow2 );
+        t2.addColumn( column( "ra", "rad", ra2 ) );
+        t2.addColumn( column( "dec", "rad", dec2 ) );
+        if ( withErr ) {
+            t1.addColumn( constantColumn( "err", scatter, nrow ) );
+            t2.addColumn( constantColumn( "err", scatter, nrow2 ) );
+        }
+        return new StarTable[] { t1, t2 };
+    }
+
+    /**
+     * Returns a pair of tables giving positions in a 3-d Cartesian space,
+     * suitable for input to a Cartesian match engine.
+     * The second table contains perturbed copies of a random subset
+     * of the first table's rows.
+     *
+     * @param  nrow  row count of first table
+     * @param  scatter  maximum perturbation per coordinate
+     * @param  seed  random seed
+     * @return  2-element array of tables
+     */
+    public static StarTable[] createCartesianPair( int nrow, double scatter,
+                                                   long seed ) {
+        Random rnd = new Random( seed );
+        double side = Math.cbrt( nrow ) * 2;
+        String[] names = { "x", "y", "z" };
+        int nrow2 = nrow / 2;
+        double[][] c1 = new double[ 3 ][ nrow ];
+        double[][] c2 = new double[ 3 ][ nrow2 ];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            for ( int id = 0; id < 3; id++ ) {
+                c1[ id ][ ir ] = side * rnd.nextDouble();
+            }
+        }
+        for ( int ir = 0; ir < nrow2; ir++ ) {
+            int jr = rnd.nextInt( nrow );
+            for ( int id = 0; id < 3; id++ ) {
+                c2[ id ][ ir ] = c1[ id ][ jr ]
+                               + scatter * ( rnd.nextDouble() - 0.5 );
+            }
+        }
+        ColumnStarTable t1 = ColumnStarTable.makeTableWithRows( nrow );
+        ColumnStarTable t2 = ColumnStarTable.makeTableWithRows( nrow2 );
+        for ( int id = 0; id < 3; id++ ) {
+            t1.addColumn( column( names[ id ], null, c1[ id ] ) );
+            t2.addColumn( column( names[ id ], null, c2[ id ] ) );
+        }
+        return new StarTable[] { t1, t2 };
+    }
+
+    /**
+     * Returns a pair of tables each with a single integer key column,
+     * suitable for input to an exact-value match engine.
+     * The second table contains a random subset of the first table's keys.
+     *
+     * @param  nrow  row count of first table
+     * @param  seed  random seed
+     * @return  2-element array of tables
+     */
+    public static StarTable[] createKeyPair( int nrow, long seed ) {
+        Random rnd = new Random( seed );
+        int[] keys1 = new int[ nrow ];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            keys1[ ir ] = ir * 7 + 3;
+        }
+        int nrow2 = nrow / 2;
+        int[] keys2 = new int[ nrow2 ];
+        for ( int ir = 0; ir < nrow2; ir++ ) {
+            keys2[ ir ] = keys1[ rnd.nextInt( nrow ) ];
+        }
+        ColumnStarTable t1 = ColumnStarTable.makeTableWithRows( nrow );
+        t1.addColumn( column( "key", null, keys1 ) );
+        ColumnStarTable t2 = ColumnStarTable.makeTableWithRows( nrow2 );
+        t2.addColumn( column( "key", null, keys2 ) );
+        return new StarTable[] { t1, t2 };
+    }
+
+    /**
+     * Returns a column based on a primitive array.
+     *
+     * @param  name  column name
+     * @param  unit  column unit, may be null
+     * @param  data  primitive array
+     * @return  new column
+     */
+    private static ColumnData column( String name, String unit,
+                                      Object data ) {
+        Class<?> elClazz = data.getClass().getComponentType();
+        Class<?> clazz = elClazz == double.class ? Double.class
+                       : elClazz == float.class ? Float.class
+                       : elClazz == int.class ? Integer.class
+                       : elClazz == long.class ? Long.class
+                       : null;
+        ColumnInfo info = new ColumnInfo( name, clazz, null );
+        info.setUnitString( unit );
+        return PrimitiveArrayColumn.makePrimitiveColumn( info, data );
+    }
+
+    /**
+     * Returns a column with the same double value in every row.
+     *
+     * @param  name  column name
+     * @param  value  cell value
+     * @param  nrow  row count
+     * @return  new column
+     */
+    private static ColumnData constantColumn( String name, double value,
+                                              int nrow ) {
+        double[] data = new double[ nrow ];
+        Arrays.fill( data, value );
+        return column( name, "rad", data );
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.starlink.ttools.bench;
+
+import java.io.IOException;
+
+/**
+ * Defines a single timed operation for use with {@link BenchSuite}.
+ * The {@link #run} method is invoked repeatedly, bracketed by
+ * a single call each to {@link #setUp} and {@link #tearDown}.
+ */
+public abstract class Benchmark {
+
+    private final String group_;
+    private final String name_;
+    private final String variant_;
+    private final String unit_;
+
+    /**
+     * Constructor.
+     *
+     * @param  group   benchmark group, for instance "io" or "match"
+     * @param  name    name of the component being exercised
+     * @param  variant   variant label within the named component,
+     *                   for instance "read" or "write"
+     * @param  unit    name of the item counted by the return value of
+     *                 {@link #run}
+     */
+    protected Benchmark( String group, String name, String variant,
+                         String unit ) {
+        group_ = group;
+        name_ = name;
+        variant_ = variant;
+        unit_ = unit;
+    }
+
+    /**
+     * Returns the benchmark group.
+     *
+     * @return  group name
+     */
+    public String getGroup() {
+        return group_;
+    }
+
+    /**
+     * Returns the name of the component being exercised.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Returns the variant label.
+     *
+     * @return  variant
+     */
+    public String getVariant() {
+        return variant_;
+    }
+
+    /**
+     * Returns the name of the item counted by the {@link #run} method.
+     *
+     * @return  unit name
+     */
+    public String getUnit() {
+        return unit_;
+    }
+
+    /**
+     * Performs any preparation required before timing starts.
+     * The default implementation does nothing.
+     */
+    public void setUp() throws IOException {
+    }
+
+    /**
+     * Performs the timed operation once.
+     *
+     * @return  number of items processed
+     */
+    public abstract long run() throws IOException;
+
+    /**
+     * Releases any resources acquired by {@link #setUp}.
+     * The default implementation does nothing.
+     */
+    public void tearDown() throws IOException {
+    }
+
+    @Override
+    public String toString() {
+        return group_ + "/" + name_ + "/" + variant_;
+    }
+}
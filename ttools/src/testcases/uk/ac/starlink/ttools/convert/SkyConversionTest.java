@@ -0,0 +1,61 @@
+package uk.ac.starlink.ttools.convert;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class SkyConversionTest extends TestCase {
+
+    private static final double[] EPOCHS = { 2000.0, 1950.0, 2016.0, };
+
+    public void testConversions() {
+        Random rnd = new Random( 239177 );
+        int n = 200;
+        double[] c1s = new double[ n ];
+        double[] c2s = new double[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            c1s[ i ] = rnd.nextDouble() * 2 * Math.PI;
+            c2s[ i ] = Math.asin( rnd.nextDouble() * 2 - 1 );
+        }
+        c2s[ 0 ] = 4.0;
+        c2s[ 1 ] = Double.NaN;
+        SkySystem[] systems = SkySystem.getKnownSystems();
+        double[] buf = new double[ 2 ];
+        for ( SkySystem inSys : systems ) {
+            for ( SkySystem outSys : systems ) {
+                for ( double epoch : EPOCHS ) {
+                    SkyConversion conv =
+                        SkyConversion.createConversion( inSys, outSys, epoch );
+                    assertEquals( inSys != SkySystem.FK4 &&
+                                  outSys != SkySystem.FK4,
+                                  conv.getMatrix() != null );
+                    double[] out1s = new double[ n ];
+                    double[] out2s = new double[ n ];
+                    conv.convertBlock( c1s, c2s, out1s, out2s, 0, n );
+                    for ( int i = 0; i < n; i++ ) {
+                        double[] fk5 = inSys.toFK5( c1s[ i ], c2s[ i ],
+                                                    epoch );
+                        double[] exp = outSys.fromFK5( fk5[ 0 ], fk5[ 1 ],
+                                                       epoch );
+                        conv.convert( c1s[ i ], c2s[ i ], buf );
+                        assertEquals( out1s[ i ], buf[ 0 ] );
+                        assertEquals( out2s[ i ], buf[ 1 ] );
+                        if ( Double.isNaN( exp[ 1 ] ) ) {
+                            assertTrue( Double.isNaN( buf[ 0 ] ) );
+                            assertTrue( Double.isNaN( buf[ 1 ] ) );
+                        }
+                        else {
+                            String msg = conv + " " + i;
+                            assertEquals( msg, exp[ 1 ], buf[ 1 ], 1e-12 );
+                            assertTrue( msg, buf[ 0 ] >= 0 &&
+                                             buf[ 0 ] < 2 * Math.PI );
+                            double dlon = Math.abs( exp[ 0 ] - buf[ 0 ] );
+                            dlon = Math.min( dlon, 2 * Math.PI - dlon );
+                            assertEquals( msg, 0, dlon * Math.cos( exp[ 1 ] ),
+                                          1e-12 );
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
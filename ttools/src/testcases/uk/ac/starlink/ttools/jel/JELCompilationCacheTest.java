@@ -0,0 +1,69 @@
+package uk.ac.starlink.ttools.jel;
+
+import gnu.jel.CompiledExpression;
+import gnu.jel.Library;
+import uk.ac.starlink.table.ColumnData;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.ttools.QuickTable;
+import uk.ac.starlink.ttools.TableTestCase;
+
+public class JELCompilationCacheTest extends TableTestCase {
+
+    public JELCompilationCacheTest( String name ) {
+        super( name );
+    }
+
+    public void testCache() throws Throwable {
+        JELCompilationCache cache = new JELCompilationCache( 1_000_000 );
+        JELUtils.setCompilationCache( cache );
+        try {
+            StarTable t1 = new QuickTable( 2, new ColumnData[] {
+                col( "Level", new int[] { 6, 7 } ),
+                col( "Gold", new double[] { 17, 9.5 } ),
+            } );
+            StarTable t2 = new QuickTable( 2, new ColumnData[] {
+                col( "Level", new int[] { 1, 2 } ),
+                col( "Gold", new double[] { 0.5, 0.25 } ),
+            } );
+            StarTable t3 = new QuickTable( 2, new ColumnData[] {
+                col( "Gold", new double[] { 0.5, 0.25 } ),
+                col( "Level", new int[] { 3, 4 } ),
+            } );
+            String expr = "Level*100 + Gold + $index";
+
+            assertEquals( 617.0 + 1, eval( t1, expr, 0 ) );
+            assertEquals( 0, cache.getHitCount() );
+            assertEquals( 1, cache.getMissCount() );
+
+            assertEquals( 200.25 + 2, eval( t2, expr, 1 ) );
+            assertEquals( 1, cache.getHitCount() );
+
+            /* Different column layout gives a separate entry. */
+            assertEquals( 300.5 + 1, eval( t3, expr, 0 ) );
+            assertEquals( 1, cache.getHitCount() );
+            assertEquals( 2, cache.getMissCount() );
+            assertEquals( 400.25 + 2, eval( t3, expr, 1 ) );
+            assertEquals( 2, cache.getHitCount() );
+            assertEquals( 2, cache.getLruCache().size() );
+
+            /* Uncached behaviour is the same. */
+            JELUtils.setCompilationCache( null );
+            assertEquals( 400.25 + 2, eval( t3, expr, 1 ) );
+            assertEquals( 2, cache.getHitCount() );
+        }
+        finally {
+            JELUtils.setCompilationCache( null );
+        }
+    }
+
+    private static double eval( StarTable table, String expr, long irow )
+            throws Throwable {
+        RandomJELRowReader rdr =
+            RandomJELRowReader.createConcurrentReader( table );
+        Library lib = JELUtils.getLibrary( rdr );
+        CompiledExpression compEx =
+            JELUtils.compile( lib, table, expr, double.class );
+        assertEquals( 2, rdr.getTranslatedColumns().length );
+        return ((Number) rdr.evaluateAtRow( compEx, irow )).doubleValue();
+    }
+}
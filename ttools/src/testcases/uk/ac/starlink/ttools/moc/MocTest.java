@@ -1,10 +1,16 @@
 package uk.ac.starlink.ttools.moc;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
 import java.util.function.LongFunction;
 import java.util.logging.Level;
 import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableFactory;
@@ -15,6 +21,7 @@ import uk.ac.starlink.ttools.mode.MocShapeMode;
 import uk.ac.starlink.ttools.mode.TimeIntervalType;
 import uk.ac.starlink.ttools.task.MapEnvironment;
 import uk.ac.starlink.ttools.task.MocShape;
+import uk.ac.starlink.ttools.task.PixFootprint;
 import uk.ac.starlink.util.LogUtils;
 
 public class MocTest extends TestCase {
@@ -67,6 +74,91 @@ public class MocTest extends TestCase {
         }
     }
 
+    public void testPixfoot() throws Exception {
+        int nrow = 5000;
+        Random rnd = new Random( 2350023L );
+        double[] ras = new double[ nrow ];
+        double[] decs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ras[ i ] = 360 * rnd.nextDouble();
+            decs[ i ] = Math.toDegrees( Math.asin( 2 * rnd.nextDouble() - 1 ) );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "ra", ras ) );
+        table.addColumn( ArrayColumn.makeColumn( "dec", decs ) );
+        MapEnvironment env0 = new MapEnvironment()
+           .setValue( "in", table )
+           .setValue( "ra", "ra" )
+           .setValue( "dec", "dec" )
+           .setValue( "radius", "0.1+0.3*(ra%1)" )
+           .setValue( "mocfmt", MocStreamFormat.ASCII )
+           .setValue( "out", "-" );
+        for ( int order : new int[] { 3, 9 } ) {
+            MapEnvironment env1 = new MapEnvironment( env0 )
+               .setValue( "order", Integer.valueOf( order ) )
+               .setValue( "runner", RowRunner.SEQUENTIAL )
+               .setValue( "mocimpl", MocImpl.CDS );
+            new PixFootprint().createExecutable( env1 ).execute();
+            String txt1 = env1.getOutputText();
+            assertTrue( txt1.trim().length() > 0 );
+            for ( MocImpl impl : getMocImpls() ) {
+                MapEnvironment env2 = new MapEnvironment( env1 )
+                   .setValue( "runner", RowRunner.PARTEST )
+                   .setValue( "mocimpl", impl );
+                new PixFootprint().createExecutable( env2 ).execute();
+                assertEquals( impl.toString(), txt1, env2.getOutputText() );
+            }
+        }
+    }
+
+    public void testSortedRunBag() {
+        Random rnd = new Random( 99881L );
+        int nfile0 = countRunFiles();
+        SortedRunBag bag = new SortedRunBag( 40, 4 );
+        TreeSet<Long> set = new TreeSet<>();
+        for ( int i = 0; i < 2000; i++ ) {
+            long ix = rnd.nextInt( 3000 ) * 1000000007L;
+            bag.addIndex( ix );
+            set.add( Long.valueOf( ix ) );
+
+            /* 50 spills with fan-in 4 gives at most 3 tiers of
+             * at most 3 runs each. */
+            assertTrue( bag.getRunCount() <= 9 );
+            if ( i % 97 == 0 ) {
+                assertTrue( bag.hasIndex( ix ) );
+                assertEquals( set.contains( Long.valueOf( ix + 1 ) ),
+                              bag.hasIndex( ix + 1 ) );
+            }
+        }
+        assertTrue( bag.getRunCount() > 0 );
+        assertEquals( set.size(), bag.getCount() );
+        assertEquals( 1, bag.getRunCount() );
+        PrimitiveIterator.OfLong it = bag.sortedLongIterator();
+        for ( Long lval : set ) {
+            assertEquals( lval.longValue(), it.nextLong() );
+        }
+        assertFalse( it.hasNext() );
+        for ( Long lval : set ) {
+            assertTrue( bag.hasIndex( lval.longValue() ) );
+        }
+        assertTrue( countRunFiles() > nfile0 );
+
+        /* An abandoned iterator does not prevent tidying up. */
+        PrimitiveIterator.OfLong it2 = bag.sortedLongIterator();
+        assertEquals( set.first().longValue(), it2.nextLong() );
+        bag.close();
+        assertEquals( nfile0, countRunFiles() );
+        assertEquals( 0, bag.getRunCount() );
+        assertEquals( 0, bag.getCount() );
+    }
+
+    private static int countRunFiles() {
+        File[] files = new File( System.getProperty( "java.io.tmpdir" ) )
+                      .listFiles( ( dir, name ) ->
+                                  name.startsWith( "SortedRunBag" ) );
+        return files == null ? 0 : files.length;
+    }
+
     public void testStmoc() throws Exception {
         exerciseStmoc( RowRunner.SEQUENTIAL );
         exerciseStmoc( RowRunner.PARTEST );
@@ -163,6 +255,9 @@ public class MocTest extends TestCase {
                                              : new LongBag( 1000 ) ),
             createBagImpl( "longs",
                            s -> new LongBag( 1000 ) ),
+            createBagImpl( "runs",
+                           s -> new SortedRunBag( 64, 3 ) ),
+            MocImpl.DISK,
         };
     }
 
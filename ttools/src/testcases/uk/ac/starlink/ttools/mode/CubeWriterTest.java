@@ -0,0 +1,158 @@
+package uk.ac.starlink.ttools.mode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.ttools.plot2.layer.BinList;
+import uk.ac.starlink.ttools.plot2.layer.Combiner;
+
+public class CubeWriterTest extends TestCase {
+
+    public void testBins() throws IOException {
+        StarTable table = createTable( 20000, 5L );
+        double[] lo = new double[] { 0, -1 };
+        int[] nbins = new int[] { 23, 17 };
+        double[] sizes = new double[] { 10. / 23, 2. / 17 };
+        exerciseBins( table, lo, nbins, sizes );
+
+        /* Large and sparse, so that concurrency may be limited
+         * depending on heap size. */
+        for ( int nb : new int[] { 2048, 8192 } ) {
+            exerciseBins( table, lo, new int[] { 4096, nb },
+                          new double[] { 10. / 4096, 2. / nb } );
+        }
+    }
+
+    public void testMaxAccumulators() {
+        assertEquals( 1,
+                      CubeWriter.getMaxAccumulators( Long.MAX_VALUE / 8 ) );
+        assertTrue( CubeWriter.getMaxAccumulators( 100 ) > 1000 );
+        assertTrue( CubeWriter.getMaxAccumulators( 1000 ) >=
+                    CubeWriter.getMaxAccumulators( 1000000 ) );
+    }
+
+    public void testOutput() throws IOException {
+        StarTable table = createTable( 5000, 23L );
+        byte[] seqOut = writeCube( table, RowRunner.SEQUENTIAL );
+        byte[] parOut = writeCube( table, RowRunner.PARTEST );
+        assertEquals( seqOut.length, parOut.length );
+
+        /* Compare everything except the header DATE card. */
+        String seqHdr = new String( seqOut, 0, 2880, StandardCharsets.US_ASCII )
+                       .replaceAll( "DATE    = '[^']*'", "" );
+        String parHdr = new String( parOut, 0, 2880, StandardCharsets.US_ASCII )
+                       .replaceAll( "DATE    = '[^']*'", "" );
+        assertEquals( seqHdr, parHdr );
+        assertTrue( seqOut.length > 2880 );
+        assertTrue( Arrays.equals( Arrays.copyOfRange( seqOut, 2880,
+                                                       seqOut.length ),
+                                   Arrays.copyOfRange( parOut, 2880,
+                                                       parOut.length ) ) );
+    }
+
+    private void exerciseBins( StarTable table, double[] lo, int[] nbins,
+                               double[] sizes )
+            throws IOException {
+        Map<Long,double[]> ref =
+            calculateReference( table, lo, nbins, sizes );
+        for ( RowRunner runner :
+              new RowRunner[] { RowRunner.SEQUENTIAL, RowRunner.PARTEST } ) {
+            BinList.Result sumResult =
+                CubeWriter.calculateBins( table, Combiner.SUM, lo, nbins,
+                                          sizes, runner );
+            BinList.Result countResult =
+                CubeWriter.calculateBins( table, Combiner.COUNT, lo, nbins,
+                                          sizes, runner );
+            assertEquals( ref.size(), sumResult.getBinCount() );
+            assertEquals( ref.size(), countResult.getBinCount() );
+            for ( Map.Entry<Long,double[]> entry : ref.entrySet() ) {
+                long ipix = entry.getKey().longValue();
+                double[] sumCount = entry.getValue();
+                assertEquals( sumCount[ 0 ], sumResult.getBinValue( ipix ),
+                              1e-9 );
+                assertEquals( sumCount[ 1 ],
+                              countResult.getBinValue( ipix ) );
+            }
+        }
+    }
+
+    /**
+     * Bins table data sequentially into (sum,count) pairs
+     * in the same way as the original array-based implementation.
+     */
+    private static Map<Long,double[]>
+            calculateReference( StarTable table, double[] lo, int[] nbins,
+                                double[] sizes ) throws IOException {
+        int ndim = nbins.length;
+        Map<Long,double[]> map = new HashMap<Long,double[]>();
+        for ( long irow = 0; irow < table.getRowCount(); irow++ ) {
+            Object[] row = table.getRow( irow );
+            double scale = ((Number) row[ ndim ]).doubleValue();
+            long ipix = 0;
+            long step = 1;
+            boolean ok = scale != 0;
+            for ( int idim = 0; idim < ndim; idim++ ) {
+                double dval = ((Number) row[ idim ]).doubleValue();
+                double hi = lo[ idim ] + nbins[ idim ] * sizes[ idim ];
+                if ( dval >= lo[ idim ] && dval <= hi ) {
+                    int ibin =
+                        (int) ( ( dval - lo[ idim ] ) / sizes[ idim ] );
+                    if ( ibin == nbins[ idim ] ) {
+                        ibin--;
+                    }
+                    ipix += step * ibin;
+                    step *= nbins[ idim ];
+                }
+                else {
+                    ok = false;
+                }
+            }
+            if ( ok ) {
+                double[] sumCount =
+                    map.computeIfAbsent( Long.valueOf( ipix ),
+                                         k -> new double[ 2 ] );
+                sumCount[ 0 ] += scale;
+                sumCount[ 1 ] += 1;
+            }
+        }
+        return map;
+    }
+
+    private static byte[] writeCube( StarTable table, RowRunner runner )
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        new CubeWriter( new double[] { Double.NaN, Double.NaN },
+                        new double[] { Double.NaN, Double.NaN },
+                        new int[] { 11, 9 }, null,
+                        new String[] { "x", "y" }, "w", Combiner.SUM,
+                        () -> bout, null, runner )
+           .consume( table );
+        return bout.toByteArray();
+    }
+
+    private static StarTable createTable( int nrow, long seed ) {
+        Random rnd = new Random( seed );
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        double[] ws = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd.nextDouble() * 11 - 0.5;
+            ys[ i ] = rnd.nextGaussian() * 0.6;
+            ws[ i ] = rnd.nextInt( 4 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "y", ys ) );
+        table.addColumn( ArrayColumn.makeColumn( "w", ws ) );
+        return table;
+    }
+}
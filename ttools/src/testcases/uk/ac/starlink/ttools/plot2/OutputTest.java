@@ -9,6 +9,8 @@ import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.plot.GraphicExporter;
 import uk.ac.starlink.ttools.plot.PdfGraphicExporter;
 import uk.ac.starlink.ttools.plot.Picture;
+import uk.ac.starlink.ttools.plot2.task.AbstractPlot2Task;
+import uk.ac.starlink.ttools.plot2.task.CubePlot2Task;
 import uk.ac.starlink.ttools.plot2.task.PlanePlot2Task;
 import uk.ac.starlink.ttools.scheme.AttractorScheme;
 import uk.ac.starlink.ttools.task.MapEnvironment;
@@ -39,4 +41,59 @@ public class OutputTest extends TestCase {
             }
         }
     }
+
+    public void testHybrid()
+            throws IOException, TaskException, InterruptedException {
+        MapEnvironment env = new MapEnvironment();
+        env.setValue( "in",
+                      new AttractorScheme().createTable( "20000,clifford" ) );
+        env.setValue( "layer1", "Mark" );
+        env.setValue( "shading1", "flat" );
+        env.setValue( "x", "x" );
+        env.setValue( "y", "y" );
+        env.setValue( "layer2", "Function" );
+        env.setValue( "fexpr2", "sin(x)" );
+        int vectorSize = getPdfSize( env );
+        env.setValue( "vectorlimit", "1000" );
+        int hybridSize = getPdfSize( env );
+        env.setValue( "vectorlimit", "100000" );
+        assertEquals( vectorSize, getPdfSize( env ) );
+        assertTrue( hybridSize < vectorSize / 4 );
+    }
+
+    public void testHybrid3d()
+            throws IOException, TaskException, InterruptedException {
+        MapEnvironment env = new MapEnvironment();
+        env.setValue( "in",
+                      new AttractorScheme().createTable( "20000,rampe" ) );
+        env.setValue( "layer1", "Mark" );
+        env.setValue( "shading1", "transparent" );
+        env.setValue( "x", "x" );
+        env.setValue( "y", "y" );
+        env.setValue( "z", "z" );
+        env.setValue( "layer2", "Mark" );
+        env.setValue( "in2", new AttractorScheme().createTable( "20,rampe" ) );
+        env.setValue( "shading2", "flat" );
+
+        /* Depth-sorted 3d plots are only hybrid-rendered on request. */
+        int vectorSize = getPdfSize( new CubePlot2Task(), env );
+        env.setValue( "vectorlimit", "100000" );
+        assertEquals( vectorSize, getPdfSize( new CubePlot2Task(), env ) );
+        env.setValue( "vectorlimit", "1000" );
+        assertTrue( getPdfSize( new CubePlot2Task(), env ) < vectorSize / 4 );
+    }
+
+    private static int getPdfSize( MapEnvironment env )
+            throws IOException, TaskException, InterruptedException {
+        return getPdfSize( new PlanePlot2Task(), env );
+    }
+
+    private static int getPdfSize( AbstractPlot2Task task, MapEnvironment env )
+            throws IOException, TaskException, InterruptedException {
+        Picture picture = PlotUtil.toPicture( task.createPlotIcon( env ) );
+        try ( ByteArrayOutputStream out = new ByteArrayOutputStream() ) {
+            PdfGraphicExporter.BASIC.exportGraphic( picture, out );
+            return out.size();
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package uk.ac.starlink.ttools.plot2.layer;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.ttools.plot2.BasicCaptioner;
+import uk.ac.starlink.ttools.plot2.Scale;
+import uk.ac.starlink.ttools.plot2.Surface;
+import uk.ac.starlink.ttools.plot2.Tick;
+import uk.ac.starlink.ttools.plot2.geom.PlaneDataGeom;
+import uk.ac.starlink.ttools.plot2.geom.PlaneSurface;
+import uk.ac.starlink.ttools.plot2.geom.SideFlags;
+
+public class LineSortPlanTest extends TestCase {
+
+    public void testSortIndex() {
+        assertNull( LineSortPlan.sortIndex( new double[] { 1, 2, 2, 3 } ) );
+        double[] keys = { 3, 1, 2, 1, 0, 3 };
+        int[] index = LineSortPlan.sortIndex( keys );
+        assertEquals( Arrays.toString( new int[] { 4, 1, 3, 2, 0, 5 } ),
+                      Arrays.toString( index ) );
+    }
+
+    public void testAggregation() {
+        Random rnd = new Random( 2301 );
+        for ( int np : new int[] { 100, 5000, 200000 } ) {
+            double[] keys = new double[ np ];
+            double[] others = new double[ np ];
+            for ( int ip = 0; ip < np; ip++ ) {
+                keys[ ip ] = Math.floor( rnd.nextDouble() * 4000 ) / 40.;
+                others[ ip ] = Math.sin( keys[ ip ] / 8 )
+                             + rnd.nextGaussian();
+            }
+            int[] index = LineSortPlan.sortIndex( keys );
+            double[] skeys = new double[ np ];
+            double[] sothers = new double[ np ];
+            for ( int ip = 0; ip < np; ip++ ) {
+                skeys[ ip ] = keys[ index[ ip ] ];
+                sothers[ ip ] = others[ index[ ip ] ];
+            }
+            for ( boolean flip : new boolean[] { false, true } ) {
+                LineSortPlan xplan =
+                    new LineSortPlan( PlaneDataGeom.INSTANCE, null,
+                                      AxisOpt.X, 0, skeys, sothers );
+                LineSortPlan yplan =
+                    new LineSortPlan( PlaneDataGeom.INSTANCE, null,
+                                      AxisOpt.Y, 1, skeys, sothers );
+                checkAggregation( xplan,
+                                  createSurface( 0, 100, -4, 4, flip ),
+                                  keys, others );
+                checkAggregation( xplan,
+                                  createSurface( 31.3, 33.7, -3, 1, flip ),
+                                  keys, others );
+                checkAggregation( yplan,
+                                  createSurface( -4, 4, 10, 90, flip ),
+                                  others, keys );
+            }
+        }
+    }
+
+    public void testSparse() {
+        Random rnd = new Random( 9911 );
+        int np = 100;
+        double[] keys = new double[ np ];
+        double[] others = new double[ np ];
+        for ( int ip = 0; ip < np; ip++ ) {
+            keys[ ip ] = ip + rnd.nextDouble();
+            others[ ip ] = rnd.nextGaussian();
+        }
+        LineSortPlan plan =
+            new LineSortPlan( PlaneDataGeom.INSTANCE, null, AxisOpt.X, 0,
+                              keys, others );
+        for ( Surface surface :
+              new Surface[] { createSurface( 0, 100, -4, 4, false ),
+                              createSurface( 20.1, 60.7, -2, 3, false ) } ) {
+
+            /* With few points per pixel, planned rendering must look
+             * just like drawing a line through every point. */
+            BufferedImage planImg = paintPlanned( plan, surface );
+            BufferedImage directImg = paintDirect( keys, others, surface );
+            assertSameImage( directImg, planImg );
+        }
+    }
+
+    public void testTableOrder() {
+        Random rnd = new Random( 5512 );
+        int np = 50000;
+        double[] keys = new double[ np ];
+        double[] others = new double[ np ];
+        for ( int ip = 0; ip < np; ip++ ) {
+            keys[ ip ] = Math.floor( ip * 4000. / np ) / 40.;
+            others[ ip ] = Math.cos( keys[ ip ] / 5 ) + rnd.nextGaussian();
+        }
+
+        /* Points already in ascending order are drawn in table order
+         * even if the axis is inverted. */
+        LineSortPlan plan =
+            new LineSortPlan( PlaneDataGeom.INSTANCE, null, null, 0,
+                              keys, others );
+        assertTrue( plan.isOrdered() );
+        for ( boolean flip : new boolean[] { false, true } ) {
+            for ( Surface surface :
+                  new Surface[] { createSurface( 0, 100, -4, 4, flip ),
+                                  createSurface( 41.2, 47.9, -2, 3, flip ) } ) {
+                BufferedImage directImg = paintDirect( keys, others, surface );
+                assertSameImage( directImg, paint( plan, surface, false ) );
+                assertSameImage( directImg, paint( plan, surface, true ) );
+                assertSameImage( directImg, paintPlanned( plan, surface ) );
+            }
+        }
+    }
+
+    private void checkAggregation( LineSortPlan plan, Surface surface,
+                                   double[] xs, double[] ys ) {
+
+        /* Aggregated rendering must look just like drawing a line
+         * through every point sorted along the plan's axis. */
+        BufferedImage sortedImg =
+            paintSorted( xs, ys, surface, plan.getSortAxis() );
+        assertSameImage( sortedImg, paint( plan, surface, false ) );
+        assertSameImage( sortedImg, paint( plan, surface, true ) );
+    }
+
+    private void assertSameImage( BufferedImage img1, BufferedImage img2 ) {
+        int npix = 0;
+        for ( int ix = 0; ix < img1.getWidth(); ix++ ) {
+            for ( int iy = 0; iy < img1.getHeight(); iy++ ) {
+                int rgb = img1.getRGB( ix, iy );
+                assertEquals( rgb, img2.getRGB( ix, iy ) );
+                if ( rgb != 0 ) {
+                    npix++;
+                }
+            }
+        }
+        assertTrue( npix > 100 );
+    }
+
+    private BufferedImage paintPlanned( LineSortPlan plan, Surface surface ) {
+        BufferedImage img =
+            new BufferedImage( 320, 220, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        LineTracer tracer =
+            new LineTracer( g, surface.getPlotBounds(), new BasicStroke( 1 ),
+                            false, 10240, true );
+        plan.traceLine( surface, Color.RED, tracer,
+                        LineSortPlan.isPixelExact( g, new BasicStroke( 1 ),
+                                                   false, true ) );
+        tracer.flush();
+        g.dispose();
+        return img;
+    }
+
+    private BufferedImage paintDirect( double[] keys, double[] others,
+                                       Surface surface ) {
+        BufferedImage img =
+            new BufferedImage( 320, 220, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        LineTracer tracer =
+            new LineTracer( g, surface.getPlotBounds(), new BasicStroke( 1 ),
+                            false, 10240, true );
+        Point2D.Double gp = new Point2D.Double();
+        for ( int ip = 0; ip < keys.length; ip++ ) {
+            if ( surface.dataToGraphics( new double[] { keys[ ip ],
+                                                        others[ ip ] },
+                                         false, gp ) ) {
+                tracer.addVertex( gp.x, gp.y, Color.RED );
+            }
+        }
+        tracer.flush();
+        g.dispose();
+        return img;
+    }
+
+    private BufferedImage paintSorted( double[] xs, double[] ys,
+                                       Surface surface, AxisOpt sortaxis ) {
+        List<Point2D> points = new ArrayList<Point2D>();
+        for ( int ip = 0; ip < xs.length; ip++ ) {
+            Point2D.Double gp = new Point2D.Double();
+            if ( surface.dataToGraphics( new double[] { xs[ ip ], ys[ ip ] },
+                                         false, gp ) ) {
+                points.add( gp );
+            }
+        }
+        points.sort( sortaxis.pointComparator() );
+        BufferedImage img =
+            new BufferedImage( 320, 220, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        LineTracer tracer =
+            new LineTracer( g, surface.getPlotBounds(), new BasicStroke( 1 ),
+                            false, 10240, true );
+        for ( Point2D gp : points ) {
+            tracer.addVertex( gp.getX(), gp.getY(), Color.RED );
+        }
+        tracer.flush();
+        g.dispose();
+        return img;
+    }
+
+    private BufferedImage paint( LineSortPlan plan, Surface surface,
+                                 boolean aggregate ) {
+        BufferedImage img =
+            new BufferedImage( 320, 220, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        assertTrue( LineSortPlan.isPixelExact( g, new BasicStroke( 1 ),
+                                               false, true ) );
+        LineTracer tracer =
+            new LineTracer( g, surface.getPlotBounds(), new BasicStroke( 1 ),
+                            false, 10240, true );
+        plan.traceVisible( surface, Color.RED, tracer, aggregate );
+        tracer.flush();
+        g.dispose();
+        return img;
+    }
+
+    private static Surface createSurface( double dxlo, double dxhi,
+                                          double dylo, double dyhi,
+                                          boolean flip ) {
+        Tick[] noTicks = new Tick[ 0 ];
+        return new PlaneSurface( 10, 310, 10, 210, dxlo, dxhi, dylo, dyhi,
+                                 Scale.LINEAR, Scale.LINEAR, flip, flip,
+                                 noTicks, noTicks, null, null, "x", "y",
+                                 noTicks, noTicks, null, null, null, null,
+                                 new BasicCaptioner(), SideFlags.ALL, null,
+                                 Color.BLACK, false );
+    }
+}
@@ -0,0 +1,177 @@
+package uk.ac.starlink.ttools.server;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.logging.Level;
+import javax.imageio.ImageIO;
+import junit.framework.TestCase;
+import org.mortbay.http.HttpContext;
+import org.mortbay.http.HttpServer;
+import org.mortbay.jetty.servlet.ServletHandler;
+import org.mortbay.util.InetAddrPort;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.LogUtils;
+
+public class PlotTileTest extends TestCase {
+
+    private File dataFile_;
+    private File cacheDir_;
+    private HttpServer server_;
+    private String baseUrl_;
+
+    static {
+        LogUtils.getLogger( "org.mortbay" ).setLevel( Level.WARNING );
+        LogUtils.getLogger( "uk.ac.starlink.ttools" )
+                .setLevel( Level.SEVERE );
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        dataFile_ = File.createTempFile( "tiledata", ".csv" );
+        try ( Writer out = new FileWriter( dataFile_ ) ) {
+            out.write( "x,y,z\n" );
+            for ( int i = 0; i < 200; i++ ) {
+                out.write( ( i % 20 ) + "," + ( i / 10 ) + "," + i + "\n" );
+            }
+        }
+        cacheDir_ = File.createTempFile( "tilecache", "" );
+        cacheDir_.delete();
+        cacheDir_.mkdir();
+        int port;
+        try ( ServerSocket sock = new ServerSocket( 0 ) ) {
+            port = sock.getLocalPort();
+        }
+        server_ = new HttpServer();
+        server_.addListener( new InetAddrPort( port ) );
+        HttpContext context = server_.getContext( "/" );
+        ServletHandler handler = new ServletHandler();
+        context.addHandler( handler );
+        handler.addServlet( "plot", "/plot/*", PlotServlet.class.getName() );
+        context.setInitParameter( StiltsContext.CACHEDIR_PARAM,
+                                  cacheDir_.getAbsolutePath() );
+        server_.start();
+        baseUrl_ = "http://localhost:" + port + "/plot/tile/";
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server_.stop();
+        dataFile_.delete();
+        deleteTree( cacheDir_ );
+    }
+
+    public void testTiles() throws IOException {
+        String plotTxt = "plot2plane&layer1=mark&in1=" + dataFile_
+                       + "&ifmt1=csv&x1=x&y1=y&aux1=z&shading1=aux";
+
+        /* Level 0 tile. */
+        byte[] t0 = readTile( plotTxt, "s1", "z=0&x=0&y=0" );
+        BufferedImage img0 =
+            ImageIO.read( new ByteArrayInputStream( t0 ) );
+        assertEquals( 256, img0.getWidth() );
+        assertEquals( 256, img0.getHeight() );
+        assertTrue( countPainted( img0 ) > 0 );
+
+        /* Other tile sizes and levels. */
+        byte[] t1 = readTile( plotTxt, "s1", "z=1&x=1&y=0&tileSize=64" );
+        BufferedImage img1 =
+            ImageIO.read( new ByteArrayInputStream( t1 ) );
+        assertEquals( 64, img1.getWidth() );
+        assertFalse( Arrays.equals( t0, t1 ) );
+
+        /* Navigating a session does not affect its tiles, and
+         * different sessions for the same plot get the same tiles. */
+        String navUrl = baseUrl_.replace( "/tile/", "/imgsrc/" )
+                      + plotTxt + "?sessionId=s1"
+                      + "&navigate=wheel&pos=200,150&wheelrot=-3";
+        assertEquals( 200, getResponseCode( new URL( navUrl ) ) );
+        assertTrue( Arrays.equals( t0,
+                                   readTile( plotTxt, "s1", "z=0&x=0&y=0" ) ) );
+        assertTrue( Arrays.equals( t0,
+                                   readTile( plotTxt, "s2", "z=0&x=0&y=0" ) ) );
+        assertTrue( Arrays.equals( readTile( plotTxt, "s3", "z=3&x=2&y=5" ),
+                                   readTile( plotTxt, "s1",
+                                             "z=3&x=2&y=5" ) ) );
+
+        /* Bad requests. */
+        assertEquals( 400, getTileResponseCode( plotTxt, "s1",
+                                                "z=1&x=2&y=0" ) );
+        assertEquals( 400, getTileResponseCode( plotTxt, "s1",
+                                                "z=-1&x=0&y=0" ) );
+        assertEquals( 400, getTileResponseCode( plotTxt, "s1",
+                                                "z=0&x=0&y=0&zone=1" ) );
+        assertEquals( 400, getTileResponseCode( plotTxt, "s1",
+                                                "z=0&x=0&y=0&tileSize=2" ) );
+
+        /* Tiles are not available for all plot types. */
+        String cubeTxt = "plot2cube&layer1=mark&in1=" + dataFile_
+                       + "&ifmt1=csv&x1=x&y1=y&z1=z";
+        assertEquals( 400, getTileResponseCode( cubeTxt, "c1",
+                                                "z=0&x=0&y=0" ) );
+    }
+
+    private byte[] readTile( String plotTxt, String sessionId, String query )
+            throws IOException {
+        URL url = new URL( baseUrl_ + plotTxt + "?sessionId=" + sessionId
+                         + "&" + query );
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        assertEquals( 200, conn.getResponseCode() );
+        assertEquals( "image/png", conn.getContentType() );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( InputStream in = conn.getInputStream() ) {
+            IOUtils.copy( in, out );
+        }
+        return out.toByteArray();
+    }
+
+    private int getTileResponseCode( String plotTxt, String sessionId,
+                                     String query )
+            throws IOException {
+        return getResponseCode( new URL( baseUrl_ + plotTxt + "?sessionId="
+                                       + sessionId + "&" + query ) );
+    }
+
+    private static int getResponseCode( URL url ) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        int code = conn.getResponseCode();
+        try ( InputStream in = code == 200 ? conn.getInputStream()
+                                           : conn.getErrorStream() ) {
+            if ( in != null ) {
+                IOUtils.copy( in, new ByteArrayOutputStream() );
+            }
+        }
+        return code;
+    }
+
+    private static int countPainted( BufferedImage img ) {
+        int n = 0;
+        for ( int ix = 0; ix < img.getWidth(); ix++ ) {
+            for ( int iy = 0; iy < img.getHeight(); iy++ ) {
+                if ( ( img.getRGB( ix, iy ) >>> 24 ) != 0 ) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    private static void deleteTree( File file ) {
+        File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children ) {
+                deleteTree( child );
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.starlink.ttools.server;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableFactory;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.DataSource;
+
+public class TableCacheTest extends TestCase {
+
+    private final AtomicInteger nLoad_ = new AtomicInteger();
+    private final Set<String> closed_ = ConcurrentHashMap.newKeySet();
+    private File f1_;
+    private File f2_;
+
+    @Override
+    protected void setUp() throws IOException {
+        f1_ = writeCsv( 1 );
+        f2_ = writeCsv( 2 );
+    }
+
+    @Override
+    protected void tearDown() {
+        f1_.delete();
+        f2_.delete();
+    }
+
+    public void testConcurrentLoad() throws Exception {
+        TableCache cache = new TableCache( 1_000_000 );
+        StarTableFactory tfact = new CountingFactory();
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try {
+            List<Future<StarTable>> futures = new ArrayList<>();
+            for ( int i = 0; i < 8; i++ ) {
+                futures.add( executor
+                            .submit( () -> cache.getTable( tfact, f1_ ) ) );
+            }
+            for ( Future<StarTable> future : futures ) {
+                StarTable table = future.get();
+                assertEquals( 20, table.getRowCount() );
+                assertEquals( 1, ((Number) table.getCell( 0, 0 )).intValue() );
+                table.close();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals( 1, nLoad_.get() );
+        assertTrue( closed_.isEmpty() );
+    }
+
+    public void testCloseOnEviction() throws IOException {
+
+        /* Only one table fits in the cache at a time. */
+        TableCache cache = new TableCache( 2000 );
+        StarTableFactory tfact = new CountingFactory();
+        StarTable t1 = cache.getTable( tfact, f1_ );
+        StarTable t2 = cache.getTable( tfact, f2_ );
+        assertEquals( 2, nLoad_.get() );
+
+        /* Evicted but still in use. */
+        assertTrue( closed_.isEmpty() );
+        assertEquals( 1, ((Number) t1.getCell( 19, 0 )).intValue() );
+        t1.close();
+        t1.close();
+        assertTrue( closed_.contains( f1_.getName() ) );
+        assertEquals( 1, closed_.size() );
+
+        /* Cached, so not closed even when unused. */
+        t2.close();
+        assertEquals( 1, closed_.size() );
+        cache.getTable( tfact, f2_ ).close();
+        assertEquals( 2, nLoad_.get() );
+
+        /* Evicted and unused. */
+        StarTable t1a = cache.getTable( tfact, f1_ );
+        assertEquals( 3, nLoad_.get() );
+        assertTrue( closed_.contains( f2_.getName() ) );
+        t1a.close();
+    }
+
+    private static File writeCsv( int value ) throws IOException {
+        File file = File.createTempFile( "tcache", ".csv" );
+        try ( Writer out = new FileWriter( file ) ) {
+            out.write( "a,b\n" );
+            for ( int i = 0; i < 20; i++ ) {
+                out.write( value + "," + i + "\n" );
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Table factory that counts loads and records when tables are closed.
+     */
+    private class CountingFactory extends StarTableFactory {
+        CountingFactory() {
+            super( true );
+        }
+        @Override
+        public StarTable makeStarTable( DataSource datsrc )
+                throws IOException {
+            nLoad_.incrementAndGet();
+            try {
+                Thread.sleep( 100 );
+            }
+            catch ( InterruptedException e ) {
+                throw new IOException( e );
+            }
+            final String name = datsrc.getName();
+            StarTable base =
+                Tables.randomTable( makeStarTable( datsrc, "csv" ) );
+            return new WrapperStarTable( base ) {
+                @Override
+                public void close() throws IOException {
+                    closed_.add( new File( name ).getName() );
+                    super.close();
+                }
+            };
+        }
+    }
+}
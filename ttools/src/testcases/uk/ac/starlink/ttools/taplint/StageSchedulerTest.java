@@ -0,0 +1,299 @@
+package uk.ac.starlink.ttools.taplint;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import uk.ac.starlink.util.LogUtils;
+import uk.ac.starlink.util.TestCase;
+import uk.ac.starlink.vo.TapService;
+import uk.ac.starlink.vo.TapServices;
+import uk.ac.starlink.vo.TapVersion;
+
+public class StageSchedulerTest extends TestCase {
+
+    private static final String[] STAGES = {
+        "TMV", "TME", "TMS", "TMC", "UUC", "CPV", "CAP", "AVV", "QGE", "QPO",
+    };
+
+    private HttpServer server_;
+    private String baseUrl_;
+    private final AtomicInteger nActive_ = new AtomicInteger();
+    private final AtomicInteger maxActive_ = new AtomicInteger();
+
+    public StageSchedulerTest() {
+        LogUtils.getLogger( "uk.ac.starlink.vo" ).setLevel( Level.SEVERE );
+        LogUtils.getLogger( "uk.ac.starlink.ttools" ).setLevel( Level.SEVERE );
+        LogUtils.getLogger( "uk.ac.starlink.votable" )
+                .setLevel( Level.SEVERE );
+        LogUtils.getLogger( "uk.ac.starlink.table.storage" )
+                .setLevel( Level.SEVERE );
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        server_ = HttpServer.create( new InetSocketAddress( "localhost", 0 ),
+                                     0 );
+        server_.createContext( "/tap", this::handle );
+        server_.setExecutor( Executors.newCachedThreadPool() );
+        server_.start();
+        baseUrl_ = "http://localhost:" + server_.getAddress().getPort()
+                 + "/tap";
+    }
+
+    @Override
+    protected void tearDown() {
+        server_.stop( 0 );
+    }
+
+    public void testOrdering() throws Exception {
+        String out1 = runLint( 1 );
+        int max1 = maxActive_.getAndSet( 0 );
+        String out4 = runLint( 4 );
+        int max4 = maxActive_.get();
+        assertEquals( 1, max1 );
+        assertTrue( max4 <= 4 );
+        assertTrue( out1.indexOf( "Section TMV" ) > 0 );
+        assertTrue( out1.indexOf( "Section QPO" )
+                  > out1.indexOf( "Section QGE" ) );
+        assertTrue( out1.indexOf( "I-TME-CURL-" ) > 0 );
+        assertEquals( out1, out4 );
+    }
+
+    public void testDependencies() {
+        final StringBuffer sbuf = new StringBuffer();
+        StageScheduler scheduler = new StageScheduler( 3 );
+        scheduler.addStage( "AAA", new SleepStage( sbuf, "a", 200 ),
+                            new String[ 0 ] );
+        scheduler.addStage( "BBB", new SleepStage( sbuf, "b", 0 ),
+                            new String[] { "AAA" } );
+        scheduler.addStage( "CCC", new SleepStage( sbuf, "c", 0 ),
+                            new String[] { "XXX" } );
+        HoldOutputReporter reporter = new HoldOutputReporter();
+        scheduler.run( reporter, null );
+        assertEquals( "c a b ", sbuf.toString() );
+        assertEquals( "<AAA>a</AAA><BBB>b</BBB><CCC>c</CCC>",
+                      reporter.sbuf_.toString() );
+    }
+
+    private String runLint( int parallel ) throws Exception {
+        TapService service =
+            TapServices.createTapService( baseUrl_, TapVersion.V10 );
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        PrintStream pout = new PrintStream( bout, true, "UTF-8" );
+        OutputReporter reporter =
+            new TextOutputReporter( pout, ReportType.values(), 10, false,
+                                    1000 );
+        Set<String> stages = new HashSet<String>( Arrays.asList( STAGES ) );
+        new TapLinter()
+           .createExecutable( reporter, () -> service, stages, -1, null,
+                              parallel )
+           .execute();
+        pout.flush();
+        StringBuffer sbuf = new StringBuffer();
+        for ( String line : bout.toString( "UTF-8" ).split( "\n" ) ) {
+            if ( ! line.startsWith( "Timestamp" ) &&
+                 ! line.contains( "-QTIM-" ) ) {
+                sbuf.append( line ).append( '\n' );
+            }
+        }
+        return sbuf.toString();
+    }
+
+    private void handle( HttpExchange exch ) throws IOException {
+        int nActive = nActive_.incrementAndGet();
+        maxActive_.accumulateAndGet( nActive, Math::max );
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try ( InputStream in = exch.getRequestBody() ) {
+                for ( int b; ( b = in.read() ) >= 0; ) {
+                    bout.write( b );
+                }
+            }
+            String params = exch.getRequestURI().getRawQuery() + "&"
+                          + bout.toString( "UTF-8" );
+            try {
+                Thread.sleep( 20 );
+            }
+            catch ( InterruptedException e ) {
+            }
+            String path = exch.getRequestURI().getPath();
+            String[] resp = getResponse( path.substring( "/tap".length() ),
+                                         params.toUpperCase()
+                                               .contains( "TAP_SCHEMA" ) );
+            if ( resp == null ) {
+                exch.sendResponseHeaders( 404, -1 );
+            }
+            else {
+                byte[] buf = resp[ 1 ].getBytes( StandardCharsets.UTF_8 );
+                exch.getResponseHeaders().set( "Content-Type", resp[ 0 ] );
+                exch.sendResponseHeaders( 200, buf.length );
+                try ( OutputStream out = exch.getResponseBody() ) {
+                    out.write( buf );
+                }
+            }
+        }
+        finally {
+            nActive_.decrementAndGet();
+            exch.close();
+        }
+    }
+
+    private static String[] getResponse( String path, boolean isTapSchema ) {
+        if ( "/capabilities".equals( path ) ) {
+            return new String[] {
+                "text/xml",
+                String.join( "\n",
+                    "<?xml version='1.0'?>",
+                    "<vosi:capabilities",
+                    " xmlns:vosi='http://www.ivoa.net/xml/VOSICapabilities/v1.0'",
+                    " xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'",
+                    " xmlns:vs='http://www.ivoa.net/xml/VODataService/v1.1'",
+                    " xmlns:tr='http://www.ivoa.net/xml/TAPRegExt/v1.0'>",
+                    "<capability standardID='ivo://ivoa.net/std/TAP'",
+                    "            xsi:type='tr:TableAccess'>",
+                    "<interface xsi:type='vs:ParamHTTP' role='std'>",
+                    "<accessURL use='base'>http://localhost/tap</accessURL>",
+                    "</interface>",
+                    "<language><name>ADQL</name>",
+                    "<version ivo-id='ivo://ivoa.net/std/ADQL#v2.0'>2.0",
+                    "</version></language>",
+                    "<outputFormat><mime>application/x-votable+xml</mime>",
+                    "</outputFormat>",
+                    "</capability>",
+                    "</vosi:capabilities>" ),
+            };
+        }
+        else if ( "/tables".equals( path ) ) {
+            return new String[] {
+                "text/xml",
+                String.join( "\n",
+                    "<?xml version='1.0'?>",
+                    "<vosi:tableset",
+                    " xmlns:vosi='http://www.ivoa.net/xml/VOSITables/v1.0'",
+                    " xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'",
+                    " xmlns:vs='http://www.ivoa.net/xml/VODataService/v1.1'>",
+                    "<schema><name>s</name>",
+                    "<table><name>s.t</name>",
+                    "<column><name>a</name>",
+                    "<dataType xsi:type='vs:TAPType'>INTEGER</dataType>",
+                    "</column>",
+                    "<column><name>b</name>",
+                    "<dataType xsi:type='vs:TAPType'>DOUBLE</dataType>",
+                    "</column>",
+                    "</table></schema>",
+                    "</vosi:tableset>" ),
+            };
+        }
+        else if ( "/availability".equals( path ) ) {
+            return new String[] {
+                "text/xml",
+                String.join( "\n",
+                    "<?xml version='1.0'?>",
+                    "<vosi:availability",
+                    " xmlns:vosi='http://www.ivoa.net/xml/VOSIAvailability/v1.0'>",
+                    "<vosi:available>true</vosi:available>",
+                    "</vosi:availability>" ),
+            };
+        }
+        else if ( "/sync".equals( path ) && isTapSchema ) {
+            return new String[] {
+                "application/x-votable+xml",
+                String.join( "\n",
+                    "<?xml version='1.0'?>",
+                    "<VOTABLE version='1.3'",
+                    " xmlns='http://www.ivoa.net/xml/VOTable/v1.3'>",
+                    "<RESOURCE type='results'>",
+                    "<INFO name='QUERY_STATUS' value='ERROR'>No TAP_SCHEMA",
+                    "</INFO>",
+                    "</RESOURCE>",
+                    "</VOTABLE>" ),
+            };
+        }
+        else if ( "/sync".equals( path ) ) {
+            return new String[] {
+                "application/x-votable+xml",
+                String.join( "\n",
+                    "<?xml version='1.0'?>",
+                    "<VOTABLE version='1.3'",
+                    " xmlns='http://www.ivoa.net/xml/VOTable/v1.3'>",
+                    "<RESOURCE type='results'>",
+                    "<INFO name='QUERY_STATUS' value='OK'/>",
+                    "<TABLE>",
+                    "<FIELD name='a' datatype='int'/>",
+                    "<FIELD name='b' datatype='double'/>",
+                    "<DATA><TABLEDATA>",
+                    "<TR><TD>1</TD><TD>1.5</TD></TR>",
+                    "</TABLEDATA></DATA>",
+                    "</TABLE>",
+                    "</RESOURCE>",
+                    "</VOTABLE>" ),
+            };
+        }
+        else {
+            return null;
+        }
+    }
+
+    private static class SleepStage implements Stage {
+        final StringBuffer sbuf_;
+        final String txt_;
+        final long millis_;
+        SleepStage( StringBuffer sbuf, String txt, long millis ) {
+            sbuf_ = sbuf;
+            txt_ = txt;
+            millis_ = millis;
+        }
+        public String getDescription() {
+            return txt_;
+        }
+        public void run( Reporter reporter, TapService tapService ) {
+            try {
+                Thread.sleep( millis_ );
+            }
+            catch ( InterruptedException e ) {
+                throw new RuntimeException( e );
+            }
+            sbuf_.append( txt_ ).append( ' ' );
+            reporter.report( FixedCode.I_CURL, txt_ );
+        }
+    }
+
+    private static class HoldOutputReporter implements OutputReporter {
+        final StringBuffer sbuf_ = new StringBuffer();
+        String scode_;
+        public void start( String[] announcements ) {
+        }
+        public void end() {
+        }
+        public void startSection( String scode, String message ) {
+            scode_ = scode;
+            sbuf_.append( '<' ).append( scode ).append( '>' );
+        }
+        public String getSectionCode() {
+            return scode_;
+        }
+        public void summariseUnreportedMessages( String scode ) {
+        }
+        public void endSection() {
+            sbuf_.append( "</" ).append( scode_ ).append( '>' );
+        }
+        public void report( ReportCode code, String msg ) {
+            report( code, msg, null );
+        }
+        public void report( ReportCode code, String msg, Throwable err ) {
+            sbuf_.append( msg );
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package uk.ac.starlink.ttools.task;
+
+import cds.healpix.Healpix;
+import cds.healpix.HealpixNested;
+import java.util.Random;
+import java.util.logging.Level;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.LogUtils;
+import uk.ac.starlink.util.TestCase;
+
+public class PixSampleTest extends TestCase {
+
+    private static final int ORDER = 4;
+
+    public PixSampleTest() {
+        LogUtils.getLogger( "uk.ac.starlink.util" ).setLevel( Level.WARNING );
+        LogUtils.getLogger( "uk.ac.starlink.ttools.calc" )
+                .setLevel( Level.WARNING );
+    }
+
+    public void testSampler() throws Exception {
+        for ( boolean nested : new boolean[] { true, false } ) {
+            PixSampler sampler =
+                new PixSampler( createPixTable( nested ), nested, ORDER );
+            exerciseSampler( sampler );
+        }
+    }
+
+    public void testTask() throws Exception {
+        StarTable pixTable = createPixTable( true );
+        for ( String stat : new String[] { "point", "mean" } ) {
+            StarTable seqTable = runTask( pixTable, stat, false );
+            StarTable bulkTable = runTask( pixTable, stat, true );
+            Tables.checkTable( bulkTable );
+            assertEquals( seqTable.getColumnCount(),
+                          bulkTable.getColumnCount() );
+            assertSameData( seqTable, bulkTable );
+        }
+    }
+
+    private void exerciseSampler( PixSampler sampler ) throws Exception {
+        Random rnd = new Random( 2390112L );
+        int n = 500;
+        double[] alphas = new double[ n ];
+        double[] deltas = new double[ n ];
+        double[] radii = new double[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            alphas[ i ] = rnd.nextDouble() * 360;
+            deltas[ i ] = Math.toDegrees( Math.asin( rnd.nextDouble() * 2
+                                                     - 1 ) );
+            radii[ i ] = rnd.nextDouble() * 12;
+        }
+        deltas[ 7 ] = Double.NaN;
+        deltas[ 11 ] = 95;
+        for ( PixSampler.StatMode mode :
+              new PixSampler.StatMode[] { PixSampler.POINT_MODE,
+                                          PixSampler.MEAN_MODE } ) {
+            Object[][] seqRows =
+                sampler.sampleValues( alphas, deltas, radii, n, mode,
+                                      RowRunner.SEQUENTIAL );
+            Object[][] parRows =
+                sampler.sampleValues( alphas, deltas, radii, n, mode,
+                                      RowRunner.PARTEST );
+            for ( int i = 0; i < n; i++ ) {
+                Object[] row1 =
+                    sampler.sampleValues( alphas[ i ], deltas[ i ],
+                                          radii[ i ], mode );
+                assertSameRow( row1, seqRows[ i ] );
+                assertSameRow( row1, parRows[ i ] );
+                for ( int ic = 0; ic < 2; ic++ ) {
+                    assertSameValue( row1[ ic ],
+                                     sampler.sampleValue( ic, alphas[ i ],
+                                                          deltas[ i ],
+                                                          radii[ i ], mode ) );
+                }
+
+                /* Check that the sampled pixels are the ones near the
+                 * requested position, not just the first few in the map. */
+                if ( i != 7 && i != 11 ) {
+                    double lat = ((Number) row1[ 1 ]).doubleValue();
+                    if ( ! Double.isNaN( lat ) ) {
+                        double tol = mode.isPoint() ? 8 : radii[ i ];
+                        assertEquals( deltas[ i ], lat, tol );
+                    }
+                }
+                else {
+                    assertNull( row1[ 0 ] );
+                }
+            }
+        }
+    }
+
+    private StarTable runTask( StarTable pixTable, String stat, boolean bulk )
+            throws Exception {
+        MapEnvironment env = new MapEnvironment()
+           .setValue( "in", ":skysim:2000" )
+           .setValue( "pixdata", pixTable )
+           .setValue( "pixorder", "nested" )
+           .setValue( "lon", "ra" )
+           .setValue( "lat", "dec" )
+           .setValue( "stat", stat )
+           .setValue( "radius", "5" )
+           .setValue( "bulk", Boolean.valueOf( bulk ) )
+           .setValue( "runner", "partest" );
+        new PixSample().createExecutable( env ).execute();
+        return Tables.randomTable( env.getOutputTable( "omode" ) );
+    }
+
+    private void assertSameData( StarTable t1, StarTable t2 )
+            throws Exception {
+        assertEquals( t1.getRowCount(), t2.getRowCount() );
+        for ( long ir = 0; ir < t1.getRowCount(); ir++ ) {
+            assertSameRow( t1.getRow( ir ), t2.getRow( ir ) );
+        }
+    }
+
+    /**
+     * Compares sampled rows.  Floating point values may differ in the
+     * last few bits, since pixels may be averaged in a different order.
+     */
+    private void assertSameRow( Object[] row1, Object[] row2 ) {
+        assertEquals( row1.length, row2.length );
+        for ( int ic = 0; ic < row1.length; ic++ ) {
+            assertSameValue( row1[ ic ], row2[ ic ] );
+        }
+    }
+
+    private void assertSameValue( Object v1, Object v2 ) {
+        if ( v1 instanceof Double && v2 instanceof Double ) {
+            double d1 = ((Double) v1).doubleValue();
+            double d2 = ((Double) v2).doubleValue();
+            if ( ! ( Double.isNaN( d1 ) && Double.isNaN( d2 ) ) ) {
+                assertEquals( d1, d2, 1e-9 * Math.max( 1, Math.abs( d1 ) ) );
+            }
+        }
+        else {
+            assertEquals( v1, v2 );
+        }
+    }
+
+    /**
+     * Returns an all-sky map with a column giving the pixel index and
+     * one giving the latitude in degrees of the pixel centre.
+     */
+    private static StarTable createPixTable( boolean nested ) {
+        HealpixNested hnested = Healpix.getNested( ORDER );
+        int npix = 12 << ( 2 * ORDER );
+        long[] ipixs = new long[ npix ];
+        double[] lats = new double[ npix ];
+        for ( int ip = 0; ip < npix; ip++ ) {
+            long nestPix = nested ? ip : hnested.toNested( ip );
+            ipixs[ ip ] = ip;
+            lats[ ip ] = Math.toDegrees( hnested.center( nestPix )[ 1 ] );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( npix );
+        table.addColumn( ArrayColumn.makeColumn( "ipix", ipixs ) );
+        table.addColumn( ArrayColumn.makeColumn( "lat", lats ) );
+        return table;
+    }
+}
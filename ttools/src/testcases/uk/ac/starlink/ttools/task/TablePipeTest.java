@@ -218,6 +218,76 @@ public class TablePipeTest extends TableTestCase {
 
     }
 
+    public void testAddtsfeatures() throws Exception {
+        int np = 101;
+        double[] tp = new double[ np ];
+        float[] yp = new float[ np ];
+        double[] ep = new double[ np ];
+        for ( int i = 0; i < np; i++ ) {
+            tp[ i ] = i;
+            yp[ i ] = (float) Math.sin( 2 * Math.PI * i / 10.0 );
+            ep[ i ] = 0.1;
+        }
+        StarTable lcTable = new QuickTable( 3, new ColumnData[] {
+            col( "t", new double[][] {
+                { 3, 1, 2, 4 }, { 0, 1, 2, Double.NaN }, tp,
+            } ),
+            col( "y", new float[][] {
+                { 30, 10, 20, 40 }, { 5, 5, 5, 9 }, yp,
+            } ),
+            col( "e", new double[][] {
+                { 1, 1, 1, 1 }, { 1, 2, 1, 1 }, ep,
+            } ),
+        } );
+
+        StarTable t1 = process( lcTable, "addtsfeatures t y" );
+        assertArrayEquals(
+            new String[] { "t", "y", "e", "ts_npoint", "ts_span", "ts_mean",
+                           "ts_stdev", "ts_median", "ts_mad", "ts_skew",
+                           "ts_kurtosis", "ts_amplitude", "ts_beyond1std",
+                           "ts_eta", },
+            getColNames( t1 ) );
+        assertArrayEquals( new Object[] { Integer.valueOf( 4 ),
+                                          Integer.valueOf( 3 ),
+                                          Integer.valueOf( np ) },
+                           getColData( t1, 3 ) );
+        assertArrayEquals( new double[] { 3, 2, np - 1 },
+                           unbox( getColData( t1, 4 ) ), 1e-10 );
+        assertEquals( 25.0, (Double) t1.getCell( 0, 5 ), 1e-10 );
+        assertEquals( 5.0, (Double) t1.getCell( 1, 5 ), 1e-10 );
+        assertEquals( 25.0, (Double) t1.getCell( 0, 7 ), 1e-10 );
+        assertEquals( 10.0, (Double) t1.getCell( 0, 8 ), 1e-10 );
+        assertEquals( 15.0, (Double) t1.getCell( 0, 11 ), 1e-10 );
+        assertEquals( 0.6, (Double) t1.getCell( 0, 13 ), 1e-10 );
+        assertEquals( 0.0, (Double) t1.getCell( 1, 6 ), 0 );
+
+        StarTable t2 =
+            process( lcTable,
+                     "addtsfeatures -err e -prefix x_ "
+                   + "-features wmean,chi2r,lsperiod,lspower t y" );
+        assertArrayEquals(
+            new String[] { "t", "y", "e", "x_wmean", "x_chi2r",
+                           "x_lsperiod", "x_lspower", },
+            getColNames( t2 ) );
+        assertEquals( 5.0, (Double) t2.getCell( 1, 3 ), 1e-10 );
+        assertEquals( 0.0, (Double) t2.getCell( 1, 4 ), 1e-10 );
+        assertEquals( 10.0, (Double) t2.getCell( 2, 5 ), 1e-6 );
+        assertEquals( 1.0, (Double) t2.getCell( 2, 6 ), 1e-3 );
+
+        try {
+            process( lcTable, "addtsfeatures -features chi2r t y" );
+            fail();
+        }
+        catch ( TaskException e ) {
+        }
+        try {
+            process( lcTable, "addtsfeatures -features nonsense t y" );
+            fail();
+        }
+        catch ( TaskException e ) {
+        }
+    }
+
     public void testAssert() throws Exception {
         apply( "select index<4; assert '((int) a+b) % 11 == 0'" );
         try {
@@ -257,6 +327,7 @@ public class TablePipeTest extends TableTestCase {
 
     public void testCache() throws Exception {
         assertSameData( inTable_, apply( "cache" ) );
+        assertSameData( inTable_, apply( "cache -noparallel" ) );
     }
 
     public void testClearparams() throws Exception {
@@ -0,0 +1,350 @@
+package uk.ac.starlink.ttools.task;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.LogUtils;
+import uk.ac.starlink.util.TestCase;
+
+public class TapPartitionTest extends TestCase {
+
+    private static final int NROW = 100;
+    private static final Pattern LO_REGEX =
+        Pattern.compile( "x >= ([0-9]+)" );
+    private static final Pattern HI_REGEX =
+        Pattern.compile( "x < ([0-9]+)" );
+
+    private HttpServer server_;
+    private String baseUrl_;
+    private final AtomicInteger nCreate_ = new AtomicInteger();
+    private final Map<String,String> queries_ =
+        new ConcurrentHashMap<String,String>();
+    private final Map<String,String> phases_ =
+        new ConcurrentHashMap<String,String>();
+    private final Set<String> failOnce_ = new HashSet<String>();
+
+    public TapPartitionTest() {
+        LogUtils.getLogger( "uk.ac.starlink.vo" ).setLevel( Level.WARNING );
+        LogUtils.getLogger( "uk.ac.starlink.ttools.task" )
+                .setLevel( Level.SEVERE );
+        LogUtils.getLogger( "uk.ac.starlink.votable" )
+                .setLevel( Level.WARNING );
+        LogUtils.getLogger( "uk.ac.starlink.table.storage" )
+                .setLevel( Level.WARNING );
+    }
+
+    public void testConstraint() {
+        assertEquals( "SELECT * FROM t WHERE (x < 3)",
+                      TapPartitioner.addConstraint( "SELECT * FROM t",
+                                                    "(x < 3)" ) );
+        assertEquals( "SELECT a FROM t where (x < 3) AND (b > 2)"
+                    + " ORDER BY a",
+                      TapPartitioner.addConstraint(
+                          "SELECT a FROM t where b > 2 ORDER BY a;",
+                          "(x < 3)" ) );
+        assertEquals( "SELECT a FROM t WHERE (x < 3) GROUP BY a",
+                      TapPartitioner.addConstraint(
+                          "SELECT a FROM t GROUP BY a", "(x < 3)" ) );
+        assertEquals( "SELECT 'where' FROM (SELECT * FROM s WHERE c=1) AS t"
+                    + " WHERE (x < 3)",
+                      TapPartitioner.addConstraint(
+                          "SELECT 'where' FROM (SELECT * FROM s WHERE c=1)"
+                        + " AS t", "(x < 3)" ) );
+        try {
+            TapPartitioner.addConstraint( "SELECT a FROM t UNION "
+                                        + "SELECT a FROM s", "(x < 3)" );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+        try {
+            TapPartitioner.addConstraint( "SELECT 1", "(x < 3)" );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+    }
+
+    public void testRanges() {
+        assertArrayEquals( new String[] {
+            "(x < 25)",
+            "(x >= 25 AND x < 50)",
+            "(x >= 50 AND x < 75)",
+            "(x >= 75)",
+        }, TapPartitioner.createRangeConditions( "x", "0,99", 4 ) );
+        assertArrayEquals( new String[] {
+            "(x < 0)",
+            "(x >= 0 AND x < 1)",
+            "(x >= 1)",
+        }, TapPartitioner.createRangeConditions( "x", "0, 1", 5 ) );
+        assertArrayEquals( new String[] {
+            "(x < 0.5)",
+            "(x >= 0.5)",
+        }, TapPartitioner.createRangeConditions( "x", "0,1.0", 2 ) );
+        assertArrayEquals( new String[] {
+            "(x < 3458764498788692160)",
+            "(x >= 3458764498788692160)",
+        }, TapPartitioner.createRangeConditions( "x",
+                                                 "0,6917528997577384320",
+                                                 2 ) );
+        try {
+            TapPartitioner.createRangeConditions( "x", "3,1", 2 );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        server_ = HttpServer.create( new InetSocketAddress( "localhost", 0 ),
+                                     0 );
+        server_.createContext( "/tap/async", this::handle );
+        server_.start();
+        baseUrl_ = "http://localhost:" + server_.getAddress().getPort()
+                 + "/tap";
+    }
+
+    @Override
+    protected void tearDown() {
+        server_.stop( 0 );
+    }
+
+    public void testPartitionedQuery() throws Exception {
+        synchronized ( failOnce_ ) {
+            failOnce_.add( "25" );
+        }
+        StarTable out = runQuery( 4, 3, "1", null );
+        assertEquals( "x", out.getColumnInfo( 0 ).getName() );
+        assertEquals( -1, out.getRowCount() );
+        assertArrayEquals( range( 10, NROW ), readValues( out ) );
+        assertEquals( 5, nCreate_.get() );
+    }
+
+    public void testResume() throws Exception {
+        File jobsFile = File.createTempFile( "partjobs", ".txt" );
+        jobsFile.delete();
+        synchronized ( failOnce_ ) {
+            failOnce_.add( "50" );
+        }
+        try {
+            readValues( runQuery( 4, 4, "0", jobsFile ) );
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+        assertTrue( jobsFile.exists() );
+        int nc = nCreate_.get();
+        assertEquals( 4, nc );
+        StarTable out = runQuery( 4, 4, "0", jobsFile );
+        assertArrayEquals( range( 10, NROW ), readValues( out ) );
+        assertEquals( nc + 1, nCreate_.get() );
+        assertFalse( jobsFile.exists() );
+    }
+
+    public void testDeletion() throws Exception {
+        File jobsFile = File.createTempFile( "partjobs", ".txt" );
+        jobsFile.delete();
+        StarTable out = runQuery( 4, 2, "0", jobsFile, "never" );
+        assertArrayEquals( range( 10, NROW ), readValues( out ) );
+        assertFalse( jobsFile.exists() );
+        assertEquals( 4, phases_.size() );
+        phases_.clear();
+
+        /* Close after the first row; everything should get tidied up,
+         * including jobs still running or submitted after the close. */
+        out = runQuery( 4, 2, "0", jobsFile, "finished" );
+        try ( RowSequence rseq = out.getRowSequence() ) {
+            assertTrue( rseq.next() );
+        }
+        assertFalse( jobsFile.exists() );
+        for ( int i = 0; i < 100 && ! phases_.isEmpty(); i++ ) {
+            Thread.sleep( 50 );
+        }
+        assertTrue( phases_.isEmpty() );
+        Thread.sleep( 500 );
+        assertTrue( phases_.isEmpty() );
+    }
+
+    private StarTable runQuery( int npart, int parallel, String nretry,
+                                File jobsFile )
+            throws Exception {
+        return runQuery( npart, parallel, nretry, jobsFile, "finished" );
+    }
+
+    private StarTable runQuery( int npart, int parallel, String nretry,
+                                File jobsFile, String delete )
+            throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "tapurl", baseUrl_ )
+            .setValue( "interface", "tap1.0" )
+            .setValue( "adql", "SELECT x FROM t WHERE x >= 10" )
+            .setValue( "npart", Integer.toString( npart ) )
+            .setValue( "partcol", "x" )
+            .setValue( "partrange", "0," + ( NROW - 1 ) )
+            .setValue( "parallel", Integer.toString( parallel ) )
+            .setValue( "partretry", nretry )
+            .setValue( "poll", "50" )
+            .setValue( "delete", delete )
+            .setValue( "progress", "false" );
+        if ( jobsFile != null ) {
+            env.setValue( "partjobs", jobsFile.toString() );
+        }
+        new TapQuerier().createExecutable( env ).execute();
+        return env.getOutputTable( "omode" );
+    }
+
+    private static long[] readValues( StarTable table ) throws IOException {
+        List<Long> list = new ArrayList<Long>();
+        try ( RowSequence rseq = table.getRowSequence() ) {
+            while ( rseq.next() ) {
+                list.add( ((Number) rseq.getCell( 0 )).longValue() );
+            }
+        }
+        long[] values = new long[ list.size() ];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[ i ] = list.get( i ).longValue();
+        }
+        return values;
+    }
+
+    private static long[] range( int lo, int hi ) {
+        long[] values = new long[ hi - lo ];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[ i ] = lo + i;
+        }
+        return values;
+    }
+
+    private void handle( HttpExchange ex ) throws IOException {
+        String method = ex.getRequestMethod();
+        String path = ex.getRequestURI().getPath();
+        String[] parts = path.substring( "/tap/async".length() ).split( "/" );
+        String jobId = parts.length > 1 ? parts[ 1 ] : null;
+        if ( jobId == null && "POST".equals( method ) ) {
+            String query = readQuery( ex );
+            String id = "j" + nCreate_.incrementAndGet();
+            queries_.put( id, query );
+            phases_.put( id, "PENDING" );
+            redirect( ex, baseUrl_ + "/async/" + id );
+        }
+        else if ( jobId == null || ! phases_.containsKey( jobId ) ) {
+            send( ex, 404, "text/plain", "No such job" );
+        }
+        else if ( "DELETE".equals( method ) ) {
+            phases_.remove( jobId );
+            redirect( ex, baseUrl_ + "/async" );
+        }
+        else if ( "POST".equals( method ) ) {
+            readQuery( ex );
+            String lo = getBound( LO_REGEX, queries_.get( jobId ) );
+            boolean fail;
+            synchronized ( failOnce_ ) {
+                fail = failOnce_.remove( lo );
+            }
+            phases_.put( jobId, fail ? "ERROR" : "COMPLETED" );
+            redirect( ex, baseUrl_ + "/async/" + jobId );
+        }
+        else if ( parts.length == 2 ) {
+            send( ex, 200, "text/xml", jobXml( jobId, phases_.get( jobId ) ) );
+        }
+        else if ( path.endsWith( "/results/result" ) ) {
+            send( ex, 200, "application/x-votable+xml",
+                  resultVotable( queries_.get( jobId ) ) );
+        }
+        else {
+            send( ex, 404, "text/plain", "Not found" );
+        }
+    }
+
+    private static String readQuery( HttpExchange ex ) throws IOException {
+        byte[] buf;
+        try ( InputStream in = ex.getRequestBody() ) {
+            buf = IOUtils.readBytes( in, 1_000_000 );
+        }
+        String body = new String( buf, StandardCharsets.UTF_8 );
+        for ( String pair : body.split( "&" ) ) {
+            int ieq = pair.indexOf( '=' );
+            if ( ieq > 0 &&
+                 "QUERY".equalsIgnoreCase( pair.substring( 0, ieq ) ) ) {
+                return URLDecoder.decode( pair.substring( ieq + 1 ), "UTF-8" );
+            }
+        }
+        return null;
+    }
+
+    private static String getBound( Pattern regex, String query ) {
+        Matcher matcher = regex.matcher( query.replace( "x >= 10", "" ) );
+        return matcher.find() ? matcher.group( 1 ) : null;
+    }
+
+    private static String jobXml( String jobId, String phase ) {
+        return new StringBuffer()
+            .append( "<?xml version='1.0'?>\n" )
+            .append( "<uws:job xmlns:uws='http://www.ivoa.net/xml/UWS/v1.0'" )
+            .append( " version='1.1'>\n" )
+            .append( "<uws:jobId>" ).append( jobId ).append( "</uws:jobId>\n" )
+            .append( "<uws:phase>" ).append( phase ).append( "</uws:phase>\n" )
+            .append( "</uws:job>\n" )
+            .toString();
+    }
+
+    private static String resultVotable( String query ) {
+        String slo = getBound( LO_REGEX, query );
+        String shi = getBound( HI_REGEX, query );
+        int lo = Math.max( 10, slo == null ? 0 : Integer.parseInt( slo ) );
+        int hi = shi == null ? NROW : Integer.parseInt( shi );
+        StringBuffer sbuf = new StringBuffer()
+            .append( "<?xml version='1.0'?>\n" )
+            .append( "<VOTABLE version='1.4'"
+                   + " xmlns='http://www.ivoa.net/xml/VOTable/v1.3'>\n" )
+            .append( "<RESOURCE type='results'>\n" )
+            .append( "<INFO name='QUERY_STATUS' value='OK'/>\n" )
+            .append( "<TABLE>\n" )
+            .append( "<FIELD name='x' datatype='long'/>\n" )
+            .append( "<DATA><TABLEDATA>\n" );
+        for ( int i = lo; i < hi; i++ ) {
+            sbuf.append( "<TR><TD>" ).append( i ).append( "</TD></TR>\n" );
+        }
+        sbuf.append( "</TABLEDATA></DATA></TABLE></RESOURCE></VOTABLE>\n" );
+        return sbuf.toString();
+    }
+
+    private static void redirect( HttpExchange ex, String location )
+            throws IOException {
+        ex.getResponseHeaders().add( "Location", location );
+        ex.sendResponseHeaders( 303, -1 );
+        ex.close();
+    }
+
+    private static void send( HttpExchange ex, int code, String type,
+                              String content )
+            throws IOException {
+        byte[] buf = content.getBytes( StandardCharsets.UTF_8 );
+        ex.getResponseHeaders().add( "Content-Type", type );
+        ex.sendResponseHeaders( code, buf.length );
+        try ( OutputStream out = ex.getResponseBody() ) {
+            out.write( buf );
+        }
+        ex.close();
+    }
+}
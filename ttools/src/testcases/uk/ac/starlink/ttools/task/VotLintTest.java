@@ -108,6 +108,15 @@ public class VotLintTest extends TestCase {
             assertCodes( isFits ? new String[] { "I-FTZ" }
                                 : new String[] { "E-TSR" },
                          ex.execute( new ByteArrayInputStream( buf ) ) );
+
+            ex.streaming_ = true;
+            boolean isBinary = format == DataFormat.BINARY ||
+                               format == DataFormat.BINARY2;
+            assertCodes( isFits ? new String[] { "I-FTZ", "I-THT", "I-THD" }
+                       : isBinary ? new String[] { "E-TSR", "I-THB",
+                                                   "I-THT", "I-THD" }
+                                  : new String[] { "E-TSR", "I-THT", "I-THD" },
+                         ex.execute( new ByteArrayInputStream( buf ) ) );
         }
     }
 
@@ -134,6 +143,7 @@ public class VotLintTest extends TestCase {
         boolean ucd_ = true;
         Boolean unitPref_;
         boolean validate_ = true;
+        boolean streaming_;
         String sysid_;
 
         Message[] execute( DataSource datsrc )
@@ -151,7 +161,8 @@ public class VotLintTest extends TestCase {
                 }
             };
             new VotLint.VotLintExecutable( in, forceVersion_, ucd_, unitPref_,
-                                           validate_, sysid_, messager )
+                                           validate_, streaming_, sysid_,
+                                           messager )
                .execute();
             return msgList.toArray( new Message[ 0 ] );
         }
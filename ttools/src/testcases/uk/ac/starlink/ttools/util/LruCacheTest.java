@@ -0,0 +1,49 @@
+package uk.ac.starlink.ttools.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class LruCacheTest extends TestCase {
+
+    public void testEviction() {
+        List<String> evicted = new ArrayList<String>();
+        LruCache<Integer,String> cache =
+            new LruCache<Integer,String>( 10, s -> s.length(), evicted::add );
+        cache.put( 1, "aaa" );
+        cache.put( 2, "bbb" );
+        cache.put( 3, "ccc" );
+        assertEquals( 9, cache.getByteCount() );
+        assertEquals( "aaa", cache.get( 1 ) );
+        assertTrue( evicted.isEmpty() );
+
+        /* Least recently used entry is discarded. */
+        assertTrue( cache.put( 4, "dd" ) );
+        assertEquals( Arrays.asList( "bbb" ), evicted );
+        assertNull( cache.get( 2 ) );
+        assertEquals( 3, cache.size() );
+
+        /* Replaced values are discarded, but not re-puts of the same one. */
+        cache.put( 4, "ee" );
+        assertEquals( Arrays.asList( "bbb", "dd" ), evicted );
+        String ee = cache.get( 4 );
+        cache.put( 4, ee );
+        assertEquals( 2, evicted.size() );
+
+        /* Oversized values are not stored. */
+        assertFalse( cache.put( 5, "ffffffffffff" ) );
+        assertNull( cache.get( 5 ) );
+        assertEquals( "ffffffffffff", evicted.get( 2 ) );
+
+        /* Removed values are returned, not evicted. */
+        assertEquals( "aaa", cache.remove( 1 ) );
+        assertEquals( 3, evicted.size() );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getByteCount() );
+        assertEquals( 5, evicted.size() );
+        assertTrue( evicted.containsAll( Arrays.asList( "ccc", "ee" ) ) );
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.starlink.ttools.votlint;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import uk.ac.starlink.votable.VOTableVersion;
+
+public class VotLintContextTest extends TestCase {
+
+    private static final String DOC = String.join( "\n",
+        "<VOTABLE version='1.3'",
+        " xmlns='http://www.ivoa.net/xml/VOTable/v1.3'>",
+        "<RESOURCE>",
+        "<TABLE>",
+        "<FIELD ID='f1' name='a' datatype='int'/>",
+        "<FIELD ID='f2' name='b' datatype='int'/>",
+        "<FIELD ID='f3' name='c' datatype='int'/>",
+        "<FIELD ID='f4' name='d' datatype='int'/>",
+        "<FIELD ID='f4' name='e' datatype='int'/>",
+        "<FIELD ID='f5' name='f' datatype='int'/>",
+        "<GROUP name='g'>",
+        "<FIELDref ref='f1'/>",
+        "<FIELDref ref='f5'/>",
+        "<FIELDref ref='zz'/>",
+        "</GROUP>",
+        "<DATA><TABLEDATA>",
+        "<TR ID='r1'><TD>1</TD><TD>2</TD><TD>3</TD><TD>4</TD><TD>5</TD>",
+        "<TD>6</TD></TR>",
+        "</TABLEDATA></DATA>",
+        "</TABLE>",
+        "</RESOURCE>",
+        "</VOTABLE>" );
+
+    public void testSpill() throws Exception {
+        List<String> memCodes = lint( Integer.MAX_VALUE, false );
+        assertTrue( memCodes.contains( "E-DID" ) );
+        assertTrue( memCodes.contains( "E-NFI" ) );
+        for ( int max = 0; max < 8; max++ ) {
+            List<String> spillCodes = lint( max, false );
+            spillCodes.remove( "I-IDS" );
+            assertEquals( memCodes, spillCodes );
+        }
+        assertTrue( lint( 2, false ).contains( "I-IDS" ) );
+        assertFalse( lint( 20, false ).contains( "I-IDS" ) );
+    }
+
+    public void testThroughput() throws Exception {
+        List<String> codes = lint( Integer.MAX_VALUE, true );
+        assertTrue( codes.contains( "I-THT" ) );
+        codes.remove( "I-THT" );
+        assertEquals( lint( Integer.MAX_VALUE, false ), codes );
+    }
+
+    private static List<String> lint( int maxIds, boolean throughput )
+            throws Exception {
+        final List<String> codes = new ArrayList<String>();
+        SaxMessager messager = new SaxMessager() {
+            public void reportMessage( SaxMessager.Level level,
+                                       VotLintCode code, String msg,
+                                       Locator locator ) {
+                codes.add( level.toString().charAt( 0 ) + "-" + code );
+            }
+        };
+        VotLintContext context =
+            new VotLintContext( VOTableVersion.V13, false, messager );
+        context.setMaxMemoryIds( maxIds );
+        context.setReportThroughput( throughput );
+        new VotLinter( context )
+           .createParser( null )
+           .parse( new InputSource( new StringReader( DOC ) ) );
+        Collections.sort( codes );
+        return codes;
+    }
+}
@@ -0,0 +1,407 @@
+package uk.ac.starlink.vo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.util.ContentCoding;
+
+/**
+ * TapMetaReader implementation that supplies metadata from a
+ * {@link TapMetaCache} where it can, and otherwise from a reader
+ * obtained from a TapMetaPolicy.
+ * Metadata read from the service is written back to the cache
+ * a little while after it has been read.
+ *
+ * <p>The policy's own reader is only created when it is needed,
+ * since for some policies that in itself involves network queries.
+ */
+class CachingTapMetaReader implements TapMetaReader {
+
+    private final TapMetaCache cache_;
+    private final TapMetaPolicy policy_;
+    private final TapService service_;
+    private final ContentCoding coding_;
+    private final String key_;
+    private final File file_;
+    private final Object baseLock_;
+    private final Map<SchemaMeta,TableMeta[]> tablesMap_;
+    private final Map<TableMeta,ColumnMeta[]> columnsMap_;
+    private final Map<TableMeta,ForeignMeta[]> fkeysMap_;
+    private volatile TapMetaReader baseReader_;
+    private TapMetaCache.Entry entry_;
+    private SchemaMeta[] schemas_;
+    private boolean savePending_;
+    private boolean isStale_;
+
+    /** Delay between reading new metadata and writing it to the cache. */
+    private static final long SAVE_DELAY_MILLIS = 2000;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.vo" );
+
+    /**
+     * Constructor.
+     *
+     * @param  cache  cache
+     * @param  policy  policy used to read metadata from the service
+     * @param  service  TAP service description
+     * @param  coding  configures HTTP compression
+     */
+    CachingTapMetaReader( TapMetaCache cache, TapMetaPolicy policy,
+                          TapService service, ContentCoding coding ) {
+        cache_ = cache;
+        policy_ = policy;
+        service_ = service;
+        coding_ = coding;
+        URL tablesUrl = service.getTablesEndpoint();
+        key_ = new StringBuffer()
+              .append( policy.getName() )
+              .append( '\n' )
+              .append( service.getIdentity() )
+              .append( '\n' )
+              .append( tablesUrl == null ? "" : tablesUrl.toString() )
+              .toString();
+        file_ = cache.getEntryFile( key_ );
+        baseLock_ = new Object();
+        tablesMap_ = new IdentityHashMap<SchemaMeta,TableMeta[]>();
+        columnsMap_ = new IdentityHashMap<TableMeta,ColumnMeta[]>();
+        fkeysMap_ = new IdentityHashMap<TableMeta,ForeignMeta[]>();
+    }
+
+    public String getMeans() {
+        TapMetaReader baseReader = baseReader_;
+        if ( baseReader != null ) {
+            return baseReader.getMeans();
+        }
+        TapMetaCache.Entry entry = getEntry();
+        return entry != null && entry.means_ != null
+             ? entry.means_ + ", cached"
+             : policy_.getName();
+    }
+
+    public String getSource() {
+        TapMetaReader baseReader = baseReader_;
+        if ( baseReader != null ) {
+            return baseReader.getSource();
+        }
+        TapMetaCache.Entry entry = getEntry();
+        if ( entry != null && entry.source_ != null ) {
+            return entry.source_;
+        }
+        URL tablesUrl = service_.getTablesEndpoint();
+        return tablesUrl == null ? service_.getIdentity()
+                                 : tablesUrl.toString();
+    }
+
+    public SchemaMeta[] readSchemas() throws IOException {
+        TapMetaCache.Entry entry = null;
+        try {
+            entry = cache_.readEntry( file_, key_ );
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.WARNING,
+                         "Discarding unreadable TAP metadata cache entry "
+                       + file_, e );
+            file_.delete();
+        }
+        if ( entry != null ) {
+            logger_.info( "Read TAP metadata for " + service_.getIdentity()
+                        + " from cache " + file_ );
+            synchronized ( this ) {
+                entry_ = entry;
+                schemas_ = entry.schemas_;
+            }
+            cache_.schedule( this::revalidate, 0 );
+            return entry.schemas_;
+        }
+        else {
+            SchemaMeta[] schemas = getBaseReader().readSchemas();
+            synchronized ( this ) {
+                schemas_ = schemas;
+            }
+            scheduleSave();
+            return schemas;
+        }
+    }
+
+    public TableMeta[] readTables( SchemaMeta schema ) throws IOException {
+        TableMeta[] tables = getBaseReader().readTables( schema );
+        synchronized ( this ) {
+            tablesMap_.put( schema, tables );
+        }
+        scheduleSave();
+        return tables;
+    }
+
+    public ColumnMeta[] readColumns( TableMeta table ) throws IOException {
+
+        /* The cache read is done without holding the lock;
+         * if the entry file is replaced in the meantime, the read fails
+         * and the columns come from the service instead. */
+        TapMetaCache.Entry entry = getEntry();
+        if ( entry != null && entry.hasColumns( table ) ) {
+            try {
+                return cache_.readColumns( file_, entry, table );
+            }
+            catch ( IOException e ) {
+                logger_.log( Level.INFO,
+                             "Cached column read failed for " + table
+                           + ", will read from service", e );
+            }
+        }
+        ColumnMeta[] cols = getBaseReader().readColumns( table );
+        synchronized ( this ) {
+            columnsMap_.put( table, cols );
+        }
+        scheduleSave();
+        return cols;
+    }
+
+    public ForeignMeta[] readForeignKeys( TableMeta table )
+            throws IOException {
+        ForeignMeta[] fkeys = getBaseReader().readForeignKeys( table );
+        synchronized ( this ) {
+            fkeysMap_.put( table, fkeys );
+        }
+        scheduleSave();
+        return fkeys;
+    }
+
+    /**
+     * Returns the cache entry key used by this reader.
+     *
+     * @return  key
+     */
+    String getKey() {
+        return key_;
+    }
+
+    /**
+     * Writes the metadata currently known by this reader to the cache.
+     * This is done on a background thread following reads from
+     * the service, but may be called directly.
+     */
+    void save() {
+        final SchemaMeta[] schemas;
+        final TapMetaCache.Entry entry;
+        synchronized ( this ) {
+            savePending_ = false;
+            if ( isStale_ || schemas_ == null ) {
+                return;
+            }
+            schemas = schemas_;
+            entry = entry_;
+        }
+        TapMetaCache.Validators validators = entry == null
+                                           ? fetchValidators( null )
+                                           : entry.validators_;
+        if ( validators == null ) {
+            validators = TapMetaCache.Validators.NONE;
+        }
+        TapMetaReader baseReader = baseReader_;
+        String means = baseReader == null ? entry.means_
+                                          : baseReader.getMeans();
+        String source = baseReader == null ? entry.source_
+                                           : baseReader.getSource();
+        TapMetaCache.MetaSource metaSrc = new TapMetaCache.MetaSource() {
+            public TableMeta[] getTables( SchemaMeta schema ) {
+                TableMeta[] tables = schema.getTables();
+                if ( tables == null ) {
+                    synchronized ( CachingTapMetaReader.this ) {
+                        tables = tablesMap_.get( schema );
+                    }
+                }
+                return tables;
+            }
+            public ForeignMeta[] getForeignKeys( TableMeta table ) {
+                ForeignMeta[] fkeys = table.getForeignKeys();
+                if ( fkeys == null ) {
+                    synchronized ( CachingTapMetaReader.this ) {
+                        fkeys = fkeysMap_.get( table );
+                    }
+                }
+                return fkeys;
+            }
+            public byte[] getColumnBlock( TableMeta table ) {
+                ColumnMeta[] cols = table.getColumns();
+                if ( cols == null ) {
+                    synchronized ( CachingTapMetaReader.this ) {
+                        cols = columnsMap_.get( table );
+                    }
+                }
+                if ( cols != null ) {
+                    return TapMetaCache.encodeColumns( cols );
+                }
+                else if ( entry != null && entry.hasColumns( table ) ) {
+                    try {
+                        return cache_.readColumnBlock( file_, entry, table );
+                    }
+                    catch ( IOException e ) {
+                        return null;
+                    }
+                }
+                else {
+                    return null;
+                }
+            }
+        };
+        try {
+            TapMetaCache.Entry entry1 =
+                cache_.writeEntry( key_, validators, means, source,
+                                   schemas, metaSrc );
+            synchronized ( this ) {
+                if ( isStale_ || entry_ != entry ) {
+                    cache_.abandon( entry1 );
+                }
+                else {
+                    cache_.install( entry1, file_ );
+                    entry_ = entry1;
+                }
+            }
+            logger_.config( "Wrote TAP metadata cache entry " + file_ );
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.WARNING,
+                         "Failed to write TAP metadata cache entry "
+                       + file_, e );
+        }
+    }
+
+    /**
+     * Checks whether the cache entry supplied by this reader is still
+     * up to date, and if not replaces it with a freshly read one.
+     * This is done on a background thread when metadata is read
+     * from the cache, but may be called directly.
+     */
+    void revalidate() {
+        TapMetaCache.Entry entry = getEntry();
+        if ( entry == null ) {
+            return;
+        }
+        TapMetaCache.Validators validators0 = entry.validators_;
+        final boolean isStale;
+        if ( validators0.isEmpty() ) {
+            isStale = System.currentTimeMillis() - entry.time_
+                    > cache_.getMaxAge();
+        }
+        else {
+            TapMetaCache.Validators validators1 =
+                fetchValidators( validators0 );
+            isStale = validators1 != null
+                   && ! validators1.matches( validators0 );
+        }
+        if ( isStale ) {
+            synchronized ( this ) {
+                isStale_ = true;
+            }
+            refresh();
+        }
+    }
+
+    /**
+     * Reads all the metadata available up front from the service,
+     * and replaces the cache entry with it.
+     * The metadata supplied by this reader is not affected.
+     */
+    private void refresh() {
+        logger_.info( "Refreshing cached TAP metadata for "
+                    + service_.getIdentity() );
+        try {
+            TapMetaCache.Validators validators = fetchValidators( null );
+            if ( validators == null ) {
+                validators = TapMetaCache.Validators.NONE;
+            }
+            TapMetaReader rdr = policy_.createMetaReader( service_, coding_ );
+            SchemaMeta[] schemas = rdr.readSchemas();
+            TapMetaCache.MetaSource metaSrc = new TapMetaCache.MetaSource() {
+                public TableMeta[] getTables( SchemaMeta schema ) {
+                    return schema.getTables();
+                }
+                public ForeignMeta[] getForeignKeys( TableMeta table ) {
+                    return table.getForeignKeys();
+                }
+                public byte[] getColumnBlock( TableMeta table ) {
+                    ColumnMeta[] cols = table.getColumns();
+                    return cols == null ? null
+                                        : TapMetaCache.encodeColumns( cols );
+                }
+            };
+            TapMetaCache.Entry entry1 =
+                cache_.writeEntry( key_, validators, rdr.getMeans(),
+                                   rdr.getSource(), schemas, metaSrc );
+            synchronized ( this ) {
+                cache_.install( entry1, file_ );
+            }
+        }
+        catch ( IOException | RuntimeException e ) {
+            logger_.log( Level.WARNING,
+                         "Failed to refresh TAP metadata cache entry "
+                       + file_, e );
+        }
+    }
+
+    /**
+     * Returns the HTTP validators for the service's tables endpoint.
+     *
+     * @param  validators  previous validators, or null
+     * @return  current validators, or null if they can't be determined
+     */
+    private TapMetaCache.Validators
+            fetchValidators( TapMetaCache.Validators validators ) {
+        URL url = service_.getTablesEndpoint();
+        if ( url == null ) {
+            return null;
+        }
+        try {
+            return TapMetaCache.fetchValidators( url, validators );
+        }
+        catch ( IOException e ) {
+            logger_.log( Level.INFO,
+                         "Failed to check TAP metadata validity at " + url,
+                         e );
+            return null;
+        }
+    }
+
+    /**
+     * Arranges for the current metadata to be written to the cache
+     * in the near future.
+     */
+    private void scheduleSave() {
+        synchronized ( this ) {
+            if ( savePending_ || isStale_ ) {
+                return;
+            }
+            savePending_ = true;
+        }
+        cache_.schedule( this::save, SAVE_DELAY_MILLIS );
+    }
+
+    /**
+     * Returns the cache entry currently in use.
+     *
+     * @return  entry, or null
+     */
+    private synchronized TapMetaCache.Entry getEntry() {
+        return entry_;
+    }
+
+    /**
+     * Returns the reader supplied by this reader's policy,
+     * creating it if necessary.
+     *
+     * @return  base reader
+     */
+    private TapMetaReader getBaseReader() {
+        synchronized ( baseLock_ ) {
+            if ( baseReader_ == null ) {
+                baseReader_ = policy_.createMetaReader( service_, coding_ );
+            }
+            return baseReader_;
+        }
+    }
+}
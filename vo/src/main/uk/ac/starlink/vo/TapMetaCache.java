@@ -0,0 +1,964 @@
+package uk.ac.starlink.vo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import uk.ac.starlink.auth.AuthManager;
+import uk.ac.starlink.auth.UrlConnector;
+import uk.ac.starlink.util.ContentCoding;
+
+/**
+ * Persistent on-disk cache of TAP service table metadata.
+ *
+ * <p>Each entry in the cache holds the schema, table and foreign key
+ * metadata read from a given TAP service by a given {@link TapMetaPolicy},
+ * along with the column metadata for any tables whose columns
+ * have been read, in a compact binary form.
+ * When an entry is used, the table hierarchy is read straight away,
+ * but the column metadata for each table is only read from disk
+ * when it is requested.
+ * This means that metadata for a service which has been used before
+ * is available more or less instantly,
+ * rather than after a possibly lengthy network metadata query.
+ *
+ * <p>Cache entries are revalidated in the background when they are used,
+ * by making an HTTP conditional HEAD request to the service's VOSI tables
+ * endpoint with the ETag and Last-Modified values recorded when the
+ * entry was written.  If the service reports a change,
+ * or if no such validators are available and the entry is older than
+ * a given age, the metadata is re-read in the background and the entry
+ * is replaced.  The metadata already supplied is not affected,
+ * so changes to a service's metadata show up the next time it is used.
+ *
+ * <p>The total size of the cache directory is bounded;
+ * when it is exceeded the least recently used entries are deleted.
+ */
+public class TapMetaCache {
+
+    private final File dir_;
+    private final long maxBytes_;
+    private final long maxAge_;
+    private final ScheduledExecutorService executor_;
+
+    /**
+     * Name of system property giving the directory for the default cache.
+     * If not set, no metadata caching is done by default.
+     */
+    public static final String CACHEDIR_PROP = "tap.metacache.dir";
+
+    /** Default maximum total size of cache files in bytes. */
+    public static final long DFLT_MAXBYTES = 64L * 1024 * 1024;
+
+    /** Default age in milliseconds beyond which unvalidated entries
+     *  are refreshed (1 day). */
+    public static final long DFLT_MAXAGE = 24L * 60 * 60 * 1000;
+
+    private static final int MAGIC = 0x544d4331;   // "TMC1"
+    private static final String SUFFIX = ".tmc";
+    private static TapMetaCache dfltInstance_;
+    private static boolean dfltInit_;
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.vo" );
+
+    /**
+     * Constructor.
+     *
+     * @param  dir  directory in which to keep cache files;
+     *              created if it does not already exist
+     * @param  maxBytes  maximum total size of cache files in bytes
+     * @param  maxAge   age in milliseconds after which entries that
+     *                  cannot be revalidated using HTTP validators
+     *                  are refreshed
+     */
+    public TapMetaCache( File dir, long maxBytes, long maxAge ) {
+        dir_ = dir;
+        maxBytes_ = maxBytes;
+        maxAge_ = maxAge;
+        executor_ = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "TAP metadata cache" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Returns the directory in which this cache keeps its files.
+     *
+     * @return  cache directory
+     */
+    public File getDirectory() {
+        return dir_;
+    }
+
+    /**
+     * Returns a TapMetaReader that supplies metadata from this cache
+     * where available, and from a reader supplied by a given policy
+     * otherwise.  Metadata read using the policy is written back to
+     * this cache.
+     *
+     * <p>This method is cheap; in particular the policy's reader is only
+     * created if it is required.
+     *
+     * @param   policy  policy used to read metadata from the service
+     * @param   service  TAP service description
+     * @param   coding  configures HTTP compression
+     * @return   new metadata reader
+     */
+    public TapMetaReader createMetaReader( TapMetaPolicy policy,
+                                           TapService service,
+                                           ContentCoding coding ) {
+        return new CachingTapMetaReader( this, policy, service, coding );
+    }
+
+    /**
+     * Deletes all the entries in this cache.
+     */
+    public void clear() {
+        for ( File file : getEntryFiles() ) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the default instance of this class.
+     * This is configured by the {@link #CACHEDIR_PROP} system property;
+     * if that is not set, null is returned.
+     *
+     * @return  default cache, or null
+     */
+    public static synchronized TapMetaCache getDefaultInstance() {
+        if ( ! dfltInit_ ) {
+            dfltInit_ = true;
+            String dirname;
+            try {
+                dirname = System.getProperty( CACHEDIR_PROP );
+            }
+            catch ( SecurityException e ) {
+                dirname = null;
+            }
+            if ( dirname != null && dirname.trim().length() > 0 ) {
+                File dir = new File( dirname.trim() );
+                logger_.info( "TAP metadata cache directory: " + dir );
+                dfltInstance_ =
+                    new TapMetaCache( dir, DFLT_MAXBYTES, DFLT_MAXAGE );
+            }
+        }
+        return dfltInstance_;
+    }
+
+    /**
+     * Returns the age after which unvalidated entries should be refreshed.
+     *
+     * @return  maximum age in milliseconds
+     */
+    long getMaxAge() {
+        return maxAge_;
+    }
+
+    /**
+     * Schedules a task for execution on this cache's background thread.
+     *
+     * @param  task  task
+     * @param  delayMillis  delay before execution in milliseconds
+     */
+    void schedule( Runnable task, long delayMillis ) {
+        executor_.schedule( task, delayMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Returns the file used to store the entry with a given key.
+     * The file may or may not exist.
+     *
+     * @param  key  entry key
+     * @return  entry file
+     */
+    File getEntryFile( String key ) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance( "SHA-1" )
+                    .digest( key.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new AssertionError( "SHA-1 unavailable", e );
+        }
+        StringBuilder sbuf = new StringBuilder();
+        for ( byte b : digest ) {
+            sbuf.append( Integer.toHexString( ( b & 0xff ) | 0x100 )
+                                .substring( 1 ) );
+        }
+        return new File( dir_, sbuf.append( SUFFIX ).toString() );
+    }
+
+    /**
+     * Reads the table hierarchy from a cache entry.
+     * The column metadata is not read, but may be read subsequently
+     * using {@link #readColumns}.
+     * On success, the file is marked as recently used.
+     *
+     * @param  file  entry file
+     * @param  key   entry key
+     * @return   entry, or null if no entry with the given key exists
+     * @throws   IOException  if the file exists but cannot be read
+     */
+    Entry readEntry( File file, String key ) throws IOException {
+        if ( ! file.isFile() ) {
+            return null;
+        }
+        Entry entry;
+        try ( DataInputStream in =
+                  new DataInputStream(
+                      new BufferedInputStream(
+                          new FileInputStream( file ) ) ) ) {
+            if ( in.readInt() != MAGIC ) {
+                throw new IOException( "Not a TAP metadata cache file" );
+            }
+            long stamp = in.readLong();
+            long dataOffset = in.readLong();
+            if ( ! key.equals( readString( in ) ) ) {
+                return null;
+            }
+            long time = in.readLong();
+            Validators validators =
+                new Validators( readString( in ), in.readLong() );
+            String means = readString( in );
+            String source = readString( in );
+            Map<TableMeta,long[]> colRefs = new IdentityHashMap<>();
+            SchemaMeta[] schemas = readSchemas( in, colRefs );
+            entry = new Entry( stamp, dataOffset, time, validators,
+                               means, source, schemas, colRefs );
+        }
+        file.setLastModified( System.currentTimeMillis() );
+        return entry;
+    }
+
+    /**
+     * Writes a cache entry to a new temporary file in the cache directory.
+     * The result should be put in place using {@link #install}.
+     *
+     * @param  key   entry key
+     * @param  validators  HTTP validators for the metadata, not null
+     * @param  means   description of metadata acquisition means
+     * @param  source  description of metadata source
+     * @param  schemas  schema array
+     * @param  metaSrc  supplies metadata not directly available from
+     *                  the schema array
+     * @return   entry describing the written file, and temporary file
+     */
+    Entry writeEntry( String key, Validators validators,
+                      String means, String source, SchemaMeta[] schemas,
+                      MetaSource metaSrc )
+            throws IOException {
+        long time = System.currentTimeMillis();
+        ByteArrayOutputStream hdrBuf = new ByteArrayOutputStream();
+        ByteArrayOutputStream colBuf = new ByteArrayOutputStream();
+        Map<TableMeta,long[]> colRefs = new IdentityHashMap<>();
+        DataOutputStream hout = new DataOutputStream( hdrBuf );
+        writeString( hout, key );
+        hout.writeLong( time );
+        writeString( hout, validators.etag_ );
+        hout.writeLong( validators.lastModified_ );
+        writeString( hout, means );
+        writeString( hout, source );
+        writeSchemas( hout, schemas, metaSrc, colBuf, colRefs );
+        hout.flush();
+        long stamp = ThreadLocalRandom.current().nextLong();
+        long dataOffset = 4 + 8 + 8 + hdrBuf.size();
+        dir_.mkdirs();
+        File tmpFile = File.createTempFile( "tmc", ".tmp", dir_ );
+        try ( DataOutputStream out =
+                  new DataOutputStream(
+                      new BufferedOutputStream(
+                          new FileOutputStream( tmpFile ) ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeLong( stamp );
+            out.writeLong( dataOffset );
+            hdrBuf.writeTo( out );
+            colBuf.writeTo( out );
+        }
+        catch ( IOException e ) {
+            tmpFile.delete();
+            throw e;
+        }
+        Entry entry = new Entry( stamp, dataOffset, time, validators,
+                                 means, source, schemas, colRefs );
+        entry.tmpFile_ = tmpFile;
+        return entry;
+    }
+
+    /**
+     * Moves a newly written entry into place, replacing any previous
+     * version, and enforces this cache's size limit.
+     *
+     * @param  entry  entry returned by {@link #writeEntry}
+     * @param  file   destination entry file
+     */
+    void install( Entry entry, File file ) throws IOException {
+        File tmpFile = entry.tmpFile_;
+        try {
+            try {
+                Files.move( tmpFile.toPath(), file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( tmpFile.toPath(), file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally {
+            tmpFile.delete();
+            entry.tmpFile_ = null;
+        }
+        prune( file );
+    }
+
+    /**
+     * Discards a newly written entry without installing it.
+     *
+     * @param  entry  entry returned by {@link #writeEntry}
+     */
+    void abandon( Entry entry ) {
+        if ( entry.tmpFile_ != null ) {
+            entry.tmpFile_.delete();
+            entry.tmpFile_ = null;
+        }
+    }
+
+    /**
+     * Reads the column metadata for a table from a cache entry.
+     *
+     * @param  file  entry file
+     * @param  entry  entry read from or written to the file
+     * @param  table  table object from the entry's schema hierarchy
+     * @return  column array, or null if the entry does not contain
+     *          columns for the table
+     * @throws  IOException  if the file can't be read, for instance
+     *                       because it has been replaced since the
+     *                       entry was acquired
+     */
+    ColumnMeta[] readColumns( File file, Entry entry, TableMeta table )
+            throws IOException {
+        byte[] block = readColumnBlock( file, entry, table );
+        return block == null ? null : decodeColumns( block );
+    }
+
+    /**
+     * Reads the encoded column metadata for a table from a cache entry.
+     *
+     * @param  file  entry file
+     * @param  entry  entry read from or written to the file
+     * @param  table  table object from the entry's schema hierarchy
+     * @return  encoded column array, or null if the entry does not
+     *          contain columns for the table
+     */
+    byte[] readColumnBlock( File file, Entry entry, TableMeta table )
+            throws IOException {
+        long[] ref = entry.colRefs_.get( table );
+        if ( ref == null ) {
+            return null;
+        }
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "r" ) ) {
+            if ( raf.readInt() != MAGIC || raf.readLong() != entry.stamp_ ) {
+                throw new IOException( "Cache entry has been replaced" );
+            }
+            raf.seek( entry.dataOffset_ + ref[ 0 ] );
+            byte[] block = new byte[ (int) ref[ 1 ] ];
+            raf.readFully( block );
+            return block;
+        }
+    }
+
+    /**
+     * Encodes a column metadata array for storage in a cache entry.
+     *
+     * @param  cols  column array
+     * @return  encoded form
+     */
+    static byte[] encodeColumns( ColumnMeta[] cols ) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bout );
+        try {
+            out.writeInt( cols.length );
+            for ( ColumnMeta col : cols ) {
+                writeString( out, col.name_ );
+                writeString( out, col.description_ );
+                writeString( out, col.unit_ );
+                writeString( out, col.ucd_ );
+                writeString( out, col.utype_ );
+                writeString( out, col.dataType_ );
+                writeString( out, col.arraysize_ );
+                writeString( out, col.xtype_ );
+                String[] flags = col.flags_;
+                out.writeInt( flags == null ? -1 : flags.length );
+                if ( flags != null ) {
+                    for ( String flag : flags ) {
+                        writeString( out, flag );
+                    }
+                }
+                writeExtras( out, col.extras_ );
+            }
+            out.flush();
+        }
+        catch ( IOException e ) {
+            throw new AssertionError( e );
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * Decodes a column metadata array from its stored form.
+     *
+     * @param  block  encoded form
+     * @return  column array
+     */
+    static ColumnMeta[] decodeColumns( byte[] block ) throws IOException {
+        DataInputStream in =
+            new DataInputStream( new ByteArrayInputStream( block ) );
+        ColumnMeta[] cols = new ColumnMeta[ in.readInt() ];
+        for ( int ic = 0; ic < cols.length; ic++ ) {
+            ColumnMeta col = new ColumnMeta();
+            col.name_ = readString( in );
+            col.description_ = readString( in );
+            col.unit_ = readString( in );
+            col.ucd_ = readString( in );
+            col.utype_ = readString( in );
+            col.dataType_ = readString( in );
+            col.arraysize_ = readString( in );
+            col.xtype_ = readString( in );
+            int nflag = in.readInt();
+            if ( nflag >= 0 ) {
+                col.flags_ = new String[ nflag ];
+                for ( int i = 0; i < nflag; i++ ) {
+                    col.flags_[ i ] = readString( in );
+                }
+            }
+            readExtras( in, col.extras_ );
+            cols[ ic ] = col;
+        }
+        return cols;
+    }
+
+    /**
+     * Makes an HTTP HEAD request to a URL to find its current validators.
+     * If previous validators are supplied, the request is conditional
+     * on them.  Since no response body is requested, this is cheap
+     * even for large resources.
+     * If the server does not support HEAD, null is returned.
+     *
+     * @param  url  resource URL
+     * @param  validators  previous validators, or null
+     * @return   current validators (equal to the previous ones if the
+     *           resource is reported unchanged),
+     *           or null if they could not be determined
+     */
+    static Validators fetchValidators( URL url, Validators validators )
+            throws IOException {
+        UrlConnector connector = hconn -> {
+            hconn.setRequestMethod( "HEAD" );
+            ContentCoding.NONE.prepareRequest( hconn );
+            if ( validators != null && validators.etag_ != null ) {
+                hconn.setRequestProperty( "If-None-Match", validators.etag_ );
+            }
+            if ( validators != null && validators.lastModified_ > 0 ) {
+                hconn.setIfModifiedSince( validators.lastModified_ );
+            }
+            hconn.setInstanceFollowRedirects( false );
+            hconn.connect();
+        };
+        URLConnection conn =
+            AuthManager.getInstance().connect( url, connector );
+        try {
+            if ( conn instanceof HttpURLConnection ) {
+                int code = ((HttpURLConnection) conn).getResponseCode();
+                if ( code == HttpURLConnection.HTTP_NOT_MODIFIED &&
+                     validators != null ) {
+                    return validators;
+                }
+                else if ( code != HttpURLConnection.HTTP_OK ) {
+                    return null;
+                }
+            }
+            return new Validators( conn.getHeaderField( "ETag" ),
+                                   conn.getLastModified() );
+        }
+        finally {
+            if ( conn instanceof HttpURLConnection ) {
+                ((HttpURLConnection) conn).disconnect();
+            }
+        }
+    }
+
+    /**
+     * Returns the entry files currently in the cache directory.
+     *
+     * @return  file array
+     */
+    File[] getEntryFiles() {
+        File[] files = dir_.listFiles( f -> f.getName().endsWith( SUFFIX ) );
+        return files == null ? new File[ 0 ] : files;
+    }
+
+    /**
+     * Deletes least recently used entries until the total size of the
+     * cache is within its limit.
+     *
+     * @param  keep  file which should not be deleted, or null
+     */
+    private void prune( File keep ) {
+        File[] files = getEntryFiles();
+        long total = 0;
+        for ( File f : files ) {
+            total += f.length();
+        }
+        if ( total > maxBytes_ ) {
+            Arrays.sort( files,
+                         Comparator.comparingLong( File::lastModified ) );
+            for ( File f : files ) {
+                if ( total <= maxBytes_ ) {
+                    break;
+                }
+                if ( ! f.equals( keep ) ) {
+                    long leng = f.length();
+                    if ( f.delete() ) {
+                        logger_.config( "Evicted TAP metadata cache entry "
+                                      + f );
+                        total -= leng;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the schema hierarchy.
+     */
+    private static void writeSchemas( DataOutput out, SchemaMeta[] schemas,
+                                      MetaSource metaSrc,
+                                      ByteArrayOutputStream colBuf,
+                                      Map<TableMeta,long[]> colRefs )
+            throws IOException {
+        out.writeInt( schemas.length );
+        for ( SchemaMeta schema : schemas ) {
+            writeString( out, schema.name_ );
+            writeString( out, schema.title_ );
+            writeString( out, schema.description_ );
+            writeString( out, schema.utype_ );
+            writeInteger( out, schema.index_ );
+            writeExtras( out, schema.extras_ );
+            TableMeta[] tables = metaSrc.getTables( schema );
+            out.writeInt( tables == null ? -1 : tables.length );
+            if ( tables != null ) {
+                for ( TableMeta table : tables ) {
+                    writeString( out, table.type_ );
+                    writeString( out, table.name_ );
+                    writeString( out, table.title_ );
+                    writeString( out, table.description_ );
+                    writeString( out, table.utype_ );
+                    writeString( out, table.nrows_ );
+                    writeInteger( out, table.index_ );
+                    writeExtras( out, table.extras_ );
+                    byte[] colBlock = metaSrc.getColumnBlock( table );
+                    if ( colBlock == null ) {
+                        out.writeLong( -1 );
+                    }
+                    else {
+                        long[] ref = new long[] { colBuf.size(),
+                                                  colBlock.length };
+                        colBuf.write( colBlock );
+                        colRefs.put( table, ref );
+                        out.writeLong( ref[ 0 ] );
+                        out.writeInt( colBlock.length );
+                    }
+                    writeForeignKeys( out, metaSrc.getForeignKeys( table ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the schema hierarchy.
+     */
+    private static SchemaMeta[] readSchemas( DataInput in,
+                                             Map<TableMeta,long[]> colRefs )
+            throws IOException {
+        SchemaMeta[] schemas = new SchemaMeta[ in.readInt() ];
+        for ( int is = 0; is < schemas.length; is++ ) {
+            SchemaMeta schema = new SchemaMeta();
+            schema.name_ = readString( in );
+            schema.title_ = readString( in );
+            schema.description_ = readString( in );
+            schema.utype_ = readString( in );
+            schema.index_ = readInteger( in );
+            readExtras( in, schema.extras_ );
+            int ntable = in.readInt();
+            if ( ntable >= 0 ) {
+                TableMeta[] tables = new TableMeta[ ntable ];
+                for ( int it = 0; it < ntable; it++ ) {
+                    TableMeta table = new TableMeta();
+                    table.type_ = readString( in );
+                    table.name_ = readString( in );
+                    table.title_ = readString( in );
+                    table.description_ = readString( in );
+                    table.utype_ = readString( in );
+                    table.nrows_ = readString( in );
+                    table.index_ = readInteger( in );
+                    readExtras( in, table.extras_ );
+                    long colOffset = in.readLong();
+                    if ( colOffset >= 0 ) {
+                        colRefs.put( table,
+                                     new long[] { colOffset, in.readInt() } );
+                    }
+                    table.setForeignKeys( readForeignKeys( in ) );
+                    tables[ it ] = table;
+                }
+                schema.setTables( tables );
+            }
+            schemas[ is ] = schema;
+        }
+        return schemas;
+    }
+
+    /**
+     * Writes a foreign key array, which may be null.
+     */
+    private static void writeForeignKeys( DataOutput out,
+                                          ForeignMeta[] fkeys )
+            throws IOException {
+        out.writeInt( fkeys == null ? -1 : fkeys.length );
+        if ( fkeys != null ) {
+            for ( ForeignMeta fkey : fkeys ) {
+                writeString( out, fkey.targetTable_ );
+                writeString( out, fkey.description_ );
+                writeString( out, fkey.utype_ );
+                writeString( out, fkey.keyId_ );
+                ForeignMeta.Link[] links = fkey.links_;
+                out.writeInt( links == null ? -1 : links.length );
+                if ( links != null ) {
+                    for ( ForeignMeta.Link link : links ) {
+                        writeString( out, link.from_ );
+                        writeString( out, link.target_ );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a foreign key array, which may be null.
+     */
+    private static ForeignMeta[] readForeignKeys( DataInput in )
+            throws IOException {
+        int nkey = in.readInt();
+        if ( nkey < 0 ) {
+            return null;
+        }
+        ForeignMeta[] fkeys = new ForeignMeta[ nkey ];
+        for ( int ik = 0; ik < nkey; ik++ ) {
+            ForeignMeta fkey = new ForeignMeta();
+            fkey.targetTable_ = readString( in );
+            fkey.description_ = readString( in );
+            fkey.utype_ = readString( in );
+            fkey.keyId_ = readString( in );
+            int nlink = in.readInt();
+            if ( nlink >= 0 ) {
+                fkey.links_ = new ForeignMeta.Link[ nlink ];
+                for ( int il = 0; il < nlink; il++ ) {
+                    ForeignMeta.Link link = new ForeignMeta.Link();
+                    link.from_ = readString( in );
+                    link.target_ = readString( in );
+                    fkey.links_[ il ] = link;
+                }
+            }
+            fkeys[ ik ] = fkey;
+        }
+        return fkeys;
+    }
+
+    /**
+     * Writes a map of extra metadata items.  String, boolean and
+     * numeric values are preserved; other values are stored as strings.
+     */
+    private static void writeExtras( DataOutput out, Map<String,Object> map )
+            throws IOException {
+        out.writeInt( map.size() );
+        for ( Map.Entry<String,Object> entry : map.entrySet() ) {
+            writeString( out, entry.getKey() );
+            Object value = entry.getValue();
+            if ( value == null ) {
+                out.writeByte( 'n' );
+            }
+            else if ( value instanceof Integer ||
+                      value instanceof Short ||
+                      value instanceof Byte ) {
+                out.writeByte( 'i' );
+                out.writeInt( ((Number) value).intValue() );
+            }
+            else if ( value instanceof Long ) {
+                out.writeByte( 'j' );
+                out.writeLong( ((Long) value).longValue() );
+            }
+            else if ( value instanceof Float ) {
+                out.writeByte( 'f' );
+                out.writeFloat( ((Float) value).floatValue() );
+            }
+            else if ( value instanceof Double ) {
+                out.writeByte( 'd' );
+                out.writeDouble( ((Double) value).doubleValue() );
+            }
+            else if ( value instanceof Boolean ) {
+                out.writeByte( 'z' );
+                out.writeBoolean( ((Boolean) value).booleanValue() );
+            }
+            else {
+                out.writeByte( 's' );
+                writeString( out, value.toString() );
+            }
+        }
+    }
+
+    /**
+     * Reads a map of extra metadata items into a supplied map.
+     */
+    private static void readExtras( DataInput in, Map<String,Object> map )
+            throws IOException {
+        int n = in.readInt();
+        for ( int i = 0; i < n; i++ ) {
+            String key = readString( in );
+            byte type = in.readByte();
+            final Object value;
+            switch ( type ) {
+                case 'n':
+                    value = null;
+                    break;
+                case 'i':
+                    value = Integer.valueOf( in.readInt() );
+                    break;
+                case 'j':
+                    value = Long.valueOf( in.readLong() );
+                    break;
+                case 'f':
+                    value = Float.valueOf( in.readFloat() );
+                    break;
+                case 'd':
+                    value = Double.valueOf( in.readDouble() );
+                    break;
+                case 'z':
+                    value = Boolean.valueOf( in.readBoolean() );
+                    break;
+                case 's':
+                    value = readString( in );
+                    break;
+                default:
+                    throw new IOException( "Bad extras type " + type );
+            }
+            map.put( key, value );
+        }
+    }
+
+    /**
+     * Writes a string, which may be null or long.
+     */
+    private static void writeString( DataOutput out, String txt )
+            throws IOException {
+        if ( txt == null ) {
+            out.writeInt( -1 );
+        }
+        else {
+            byte[] buf = txt.getBytes( StandardCharsets.UTF_8 );
+            out.writeInt( buf.length );
+            out.write( buf );
+        }
+    }
+
+    /**
+     * Reads a string written by writeString.
+     */
+    private static String readString( DataInput in ) throws IOException {
+        int leng = in.readInt();
+        if ( leng < 0 ) {
+            return null;
+        }
+        byte[] buf = new byte[ leng ];
+        in.readFully( buf );
+        return new String( buf, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Writes an Integer, which may be null.
+     */
+    private static void writeInteger( DataOutput out, Integer value )
+            throws IOException {
+        out.writeBoolean( value != null );
+        if ( value != null ) {
+            out.writeInt( value.intValue() );
+        }
+    }
+
+    /**
+     * Reads an Integer written by writeInteger.
+     */
+    private static Integer readInteger( DataInput in ) throws IOException {
+        return in.readBoolean() ? Integer.valueOf( in.readInt() ) : null;
+    }
+
+    /**
+     * Supplies metadata items for writing to a cache entry
+     * which may not be available from the schema hierarchy itself.
+     */
+    interface MetaSource {
+
+        /**
+         * Returns the tables for a schema.
+         *
+         * @param  schema  schema
+         * @return  table array, or null if not known
+         */
+        TableMeta[] getTables( SchemaMeta schema );
+
+        /**
+         * Returns the encoded columns for a table.
+         *
+         * @param  table  table
+         * @return  column array as encoded by {@link #encodeColumns},
+         *          or null if not known
+         */
+        byte[] getColumnBlock( TableMeta table );
+
+        /**
+         * Returns the foreign keys for a table.
+         *
+         * @param  table  table
+         * @return  foreign key array, or null if not known
+         */
+        ForeignMeta[] getForeignKeys( TableMeta table );
+    }
+
+    /**
+     * HTTP validator values for a resource.
+     */
+    static class Validators {
+
+        final String etag_;
+        final long lastModified_;
+
+        /** Instance with no validation information. */
+        static final Validators NONE = new Validators( null, 0 );
+
+        /**
+         * Constructor.
+         *
+         * @param  etag  ETag header value, or null
+         * @param  lastModified  Last-Modified header value as epoch
+         *                       milliseconds, or 0
+         */
+        Validators( String etag, long lastModified ) {
+            etag_ = etag;
+            lastModified_ = lastModified;
+        }
+
+        /**
+         * Indicates whether this object contains any validation information.
+         *
+         * @return  true iff there are no validators
+         */
+        boolean isEmpty() {
+            return etag_ == null && lastModified_ <= 0;
+        }
+
+        /**
+         * Indicates whether the resource described by another validator
+         * set is apparently the same as this one.
+         * The ETag is used for comparison if present,
+         * otherwise the Last-Modified time.
+         *
+         * @param  other  other validators
+         * @return  true iff the resource appears unchanged
+         */
+        boolean matches( Validators other ) {
+            return etag_ != null || other.etag_ != null
+                 ? Objects.equals( etag_, other.etag_ )
+                 : lastModified_ == other.lastModified_;
+        }
+    }
+
+    /**
+     * Contains the content of a cache entry, apart from column metadata.
+     */
+    static class Entry {
+
+        final long stamp_;
+        final long dataOffset_;
+        final long time_;
+        final Validators validators_;
+        final String means_;
+        final String source_;
+        final SchemaMeta[] schemas_;
+        final Map<TableMeta,long[]> colRefs_;
+        File tmpFile_;
+
+        /**
+         * Constructor.
+         *
+         * @param  stamp  value identifying the file written
+         * @param  dataOffset  offset into file of column data section
+         * @param  time  epoch time in milliseconds at which entry was written
+         * @param  validators  HTTP validators
+         * @param  means   description of metadata acquisition means
+         * @param  source  description of metadata source
+         * @param  schemas  schema array
+         * @param  colRefs  map from tables to (offset,length) pairs
+         *                  locating their column data
+         */
+        Entry( long stamp, long dataOffset, long time, Validators validators,
+               String means, String source, SchemaMeta[] schemas,
+               Map<TableMeta,long[]> colRefs ) {
+            stamp_ = stamp;
+            dataOffset_ = dataOffset;
+            time_ = time;
+            validators_ = validators;
+            means_ = means;
+            source_ = source;
+            schemas_ = schemas;
+            colRefs_ = colRefs;
+        }
+
+        /**
+         * Indicates whether this entry has column metadata for a table.
+         *
+         * @param  table  table from this entry's schema hierarchy
+         * @return  true iff columns are available from the cache
+         */
+        boolean hasColumns( TableMeta table ) {
+            return colRefs_.containsKey( table );
+        }
+    }
+}
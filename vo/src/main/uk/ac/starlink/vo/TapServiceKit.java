@@ -40,6 +40,10 @@ import uk.ac.starlink.util.IOSupplier;
  *                  
  * <p>This class is intended for use with Swing; some methods must be
  * invoked from the Event Dispatch Thread as documented.
+ *
+ * <p>If a {@link TapMetaCache#getDefaultInstance default TapMetaCache}
+ * is configured, metadata is read through it, so that metadata for
+ * services which have been used before is available without delay.
  *                      
  * @author   Mark Taylor
  * @since    23 Mar 2015
@@ -51,6 +55,7 @@ public class TapServiceKit {
     private final TapMetaPolicy metaPolicy_;
     private final ContentCoding coding_;
     private final int queueLimit_;
+    private final TapMetaCache metaCache_;
     private final Map<Populator<?>,Collection<Runnable>> runningMap_;
     private ExecutorService metaExecutor_;
     private volatile FutureTask<TapMetaReader> rdrFuture_;
@@ -77,6 +82,7 @@ public class TapServiceKit {
         metaPolicy_ = metaPolicy;
         coding_ = coding;
         queueLimit_ = queueLimit;
+        metaCache_ = TapMetaCache.getDefaultInstance();
         runningMap_ = new HashMap<Populator<?>,Collection<Runnable>>();
     }
 
@@ -382,7 +388,10 @@ public class TapServiceKit {
         synchronized ( this ) {
             if ( rdrFuture_ == null ) {
                 rdrFuture_ = new FutureTask<TapMetaReader>(
-                    () -> metaPolicy_.createMetaReader( service_, coding_ )
+                    () -> metaCache_ == null
+                        ? metaPolicy_.createMetaReader( service_, coding_ )
+                        : metaCache_.createMetaReader( metaPolicy_, service_,
+                                                       coding_ )
                 );
                 rdrFuture_.run();  // synchronous
             }
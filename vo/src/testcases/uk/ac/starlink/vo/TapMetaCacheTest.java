@@ -0,0 +1,169 @@
+package uk.ac.starlink.vo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import uk.ac.starlink.util.ContentCoding;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.LogUtils;
+import uk.ac.starlink.util.TestCase;
+
+public class TapMetaCacheTest extends TestCase {
+
+    private HttpServer server_;
+    private TapService service_;
+    private volatile String etag_;
+    private final AtomicInteger nFetch_ = new AtomicInteger();
+    private final AtomicInteger nHead_ = new AtomicInteger();
+    private File dir_;
+
+    public TapMetaCacheTest() {
+        LogUtils.getLogger( "uk.ac.starlink.vo" ).setLevel( Level.WARNING );
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        byte[] tablesDoc;
+        try ( InputStream in = getClass()
+                              .getResourceAsStream( "gavo_tables.xml" ) ) {
+            tablesDoc = IOUtils.readBytes( in, 10_000_000 );
+        }
+        etag_ = "\"v1\"";
+        server_ = HttpServer.create( new InetSocketAddress( "localhost", 0 ),
+                                     0 );
+        server_.createContext( "/tap/tables", (HttpExchange ex) -> {
+            String etag = etag_;
+            ex.getResponseHeaders().add( "ETag", etag );
+            boolean isHead = "HEAD".equals( ex.getRequestMethod() );
+            if ( isHead ) {
+                nHead_.incrementAndGet();
+            }
+            if ( etag.equals( ex.getRequestHeaders()
+                                .getFirst( "If-None-Match" ) ) ) {
+                ex.sendResponseHeaders( 304, -1 );
+            }
+            else if ( isHead ) {
+                ex.getResponseHeaders().add( "Content-Type", "text/xml" );
+                ex.sendResponseHeaders( 200, -1 );
+            }
+            else {
+                nFetch_.incrementAndGet();
+                ex.getResponseHeaders().add( "Content-Type", "text/xml" );
+                ex.sendResponseHeaders( 200, tablesDoc.length );
+                try ( OutputStream out = ex.getResponseBody() ) {
+                    out.write( tablesDoc );
+                }
+            }
+            ex.close();
+        } );
+        server_.start();
+        URL url = new URL( "http://localhost:" + server_.getAddress().getPort()
+                         + "/tap" );
+        service_ = TapServices.createDefaultTapService( url );
+        dir_ = Files.createTempDirectory( "tmc" ).toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        server_.stop( 0 );
+        for ( File f : dir_.listFiles() ) {
+            f.delete();
+        }
+        dir_.delete();
+    }
+
+    public void testCache() throws IOException {
+        TapMetaCache cache = new TapMetaCache( dir_, 1_000_000_000, 100_000 );
+        TapMetaPolicy policy = TapMetaPolicy.VOSI10;
+
+        /* Read from service and write to cache. */
+        CachingTapMetaReader rdr1 = (CachingTapMetaReader)
+            cache.createMetaReader( policy, service_, ContentCoding.NONE );
+        SchemaMeta[] schemas1 = rdr1.readSchemas();
+        assertEquals( 1, nFetch_.get() );
+        rdr1.save();
+        assertEquals( 1, cache.getEntryFiles().length );
+
+        /* Validators are acquired without refetching the document. */
+        assertEquals( 1, nFetch_.get() );
+        assertEquals( 1, nHead_.get() );
+        assertEquals( "\"v1\"",
+                      cache.readEntry( cache.getEntryFile( rdr1.getKey() ),
+                                       rdr1.getKey() )
+                           .validators_.etag_ );
+
+        /* Read from cache, without refetching the document. */
+        int nf = nFetch_.get();
+        CachingTapMetaReader rdr2 = (CachingTapMetaReader)
+            cache.createMetaReader( policy, service_, ContentCoding.NONE );
+        SchemaMeta[] schemas2 = rdr2.readSchemas();
+        assertEquals( schemas1.length, schemas2.length );
+        int nCol = 0;
+        for ( int is = 0; is < schemas1.length; is++ ) {
+            SchemaMeta s1 = schemas1[ is ];
+            SchemaMeta s2 = schemas2[ is ];
+            assertEquals( s1.getName(), s2.getName() );
+            assertEquals( s1.getDescription(), s2.getDescription() );
+            TableMeta[] tables1 = s1.getTables();
+            TableMeta[] tables2 = s2.getTables();
+            assertEquals( tables1.length, tables2.length );
+            for ( int it = 0; it < tables1.length; it++ ) {
+                TableMeta t1 = tables1[ it ];
+                TableMeta t2 = tables2[ it ];
+                assertEquals( t1.getName(), t2.getName() );
+                assertEquals( t1.getExtras(), t2.getExtras() );
+                assertEquals( t1.getForeignKeys().length,
+                              t2.getForeignKeys().length );
+                assertNull( t2.getColumns() );
+                ColumnMeta[] cols1 = t1.getColumns();
+                ColumnMeta[] cols2 = rdr2.readColumns( t2 );
+                assertEquals( cols1.length, cols2.length );
+                for ( int ic = 0; ic < cols1.length; ic++ ) {
+                    ColumnMeta c1 = cols1[ ic ];
+                    ColumnMeta c2 = cols2[ ic ];
+                    assertEquals( c1.getName(), c2.getName() );
+                    assertEquals( c1.getDescription(), c2.getDescription() );
+                    assertEquals( c1.getUcd(), c2.getUcd() );
+                    assertEquals( c1.getUnit(), c2.getUnit() );
+                    assertEquals( c1.getDataType(), c2.getDataType() );
+                    assertEquals( c1.getArraysize(), c2.getArraysize() );
+                    assertArrayEquals( c1.getFlags(), c2.getFlags() );
+                    assertEquals( c1.getExtras(), c2.getExtras() );
+                    nCol++;
+                }
+            }
+        }
+        assertTrue( nCol > 10 );
+        rdr2.revalidate();
+        assertEquals( nf, nFetch_.get() );
+        assertTrue( nHead_.get() >= 2 );
+
+        /* Change the service metadata; revalidation should refetch. */
+        etag_ = "\"v2\"";
+        rdr2.revalidate();
+        assertTrue( nFetch_.get() > nf );
+        assertEquals( "\"v2\"",
+                      cache.readEntry( cache.getEntryFile( rdr2.getKey() ),
+                                       rdr2.getKey() )
+                           .validators_.etag_ );
+
+        /* Check eviction. */
+        TapMetaCache smallCache = new TapMetaCache( dir_, 1, 100_000 );
+        CachingTapMetaReader rdr3 = (CachingTapMetaReader)
+            smallCache.createMetaReader( TapMetaPolicy.VOSI11_MAX, service_,
+                                         ContentCoding.NONE );
+        rdr3.readSchemas();
+        rdr3.save();
+        File[] files = smallCache.getEntryFiles();
+        assertEquals( 1, files.length );
+        assertEquals( smallCache.getEntryFile( rdr3.getKey() ), files[ 0 ] );
+    }
+}